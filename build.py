@@ -291,12 +291,14 @@ CTX.INPUT['executors'] = """
  deleteexecutor.cpp
  executorfactory.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexcountexecutor.cpp
  indexscanexecutor.cpp
  insertexecutor.cpp
  limitexecutor.cpp
  materializedscanexecutor.cpp
  materializeexecutor.cpp
+ mergejoinexecutor.cpp
  mergereceiveexecutor.cpp
  nestloopexecutor.cpp
  nestloopindexexecutor.cpp
@@ -334,6 +336,7 @@ CTX.INPUT['plannodes'] = """
  abstractscannode.cpp
  aggregatenode.cpp
  deletenode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  indexcountnode.cpp
  tablecountnode.cpp
@@ -341,6 +344,7 @@ CTX.INPUT['plannodes'] = """
  limitnode.cpp
  materializenode.cpp
  materializedscanplannode.cpp
+ mergejoinnode.cpp
  mergereceivenode.cpp
  nestloopindexnode.cpp
  nestloopnode.cpp
@@ -501,12 +505,15 @@ if whichtests in ("${eetestsuite}", "execution"):
     """
 if whichtests in ("${eetestsuite}", "executors"):
     CTX.TESTS['executors'] = """
+    HashJoinExecutorTest
+    MergeJoinExecutorTest
     OptimizedProjectorTest
     MergeReceiveExecutorTest
     """
 
 if whichtests in ("${eetestsuite}", "expressions"):
     CTX.TESTS['expressions'] = """
+     expression_batch_test
      expression_test
      function_test
     """
@@ -52,8 +52,10 @@ LargeTempTableBlock* LargeTempTableBlockCache::fetchBlock(int64_t blockId) {
     auto listIt = mapIt->second;
     if (! (*listIt)->isResident()) {
         Topend* topend = ExecutorContext::getExecutorContext()->getTopend();
-        bool rc = topend->loadLargeTempTableBlock((*listIt)->id(), listIt->get());
-        assert(rc);
+        if (! topend->loadLargeTempTableBlock((*listIt)->id(), listIt->get())) {
+            throwDynamicSQLException("Could not load large temp table block %jd from disk",
+                                     (intmax_t)blockId);
+        }
         assert ((*listIt)->isPinned());
     }
     else {
@@ -71,6 +73,18 @@ LargeTempTableBlock* LargeTempTableBlockCache::fetchBlock(int64_t blockId) {
     return m_blockList.begin()->get();
 }
 
+void LargeTempTableBlockCache::prefetchBlock(int64_t blockId) {
+    auto mapIt = m_idToBlockMap.find(blockId);
+    if (mapIt == m_idToBlockMap.end()) {
+        throwDynamicSQLException("Request for unknown block ID in LargeTempTableBlockCache");
+    }
+
+    if (! (*(mapIt->second))->isResident()) {
+        Topend* topend = ExecutorContext::getExecutorContext()->getTopend();
+        topend->prefetchLargeTempTableBlock(blockId);
+    }
+}
+
 void LargeTempTableBlockCache::unpinBlock(int64_t blockId) {
     auto mapIt = m_idToBlockMap.find(blockId);
     if (mapIt == m_idToBlockMap.end()) {
@@ -125,7 +139,8 @@ void LargeTempTableBlockCache::increaseAllocatedMemory(int64_t numBytes) {
         while (m_totalAllocatedBytes > CACHE_SIZE_IN_BYTES()) {
             int64_t bytesBefore = m_totalAllocatedBytes;
             if (!storeABlock()) {
-                throw std::logic_error("could not store a block to make space");
+                throwDynamicSQLException("Could not store a large temp table block to make space "
+                                         "in the cache; check the large query swap quota");
             }
 
             assert(bytesBefore > m_totalAllocatedBytes);
@@ -30,6 +30,7 @@
 #include "common/types.h"
 
 class LargeTempTableTest_OverflowCache;
+class LargeTempTableTest_SerializedSpill;
 
 namespace voltdb {
 
@@ -47,6 +48,7 @@ class LargeTempTable;
 class LargeTempTableBlockCache {
 
     friend class ::LargeTempTableTest_OverflowCache;
+    friend class ::LargeTempTableTest_SerializedSpill;
 
  public:
 
@@ -68,6 +70,11 @@ class LargeTempTableBlockCache {
         necessary.  */
     LargeTempTableBlock* fetchBlock(int64_t blockId);
 
+    /** Hint that the specified block will be fetched soon.  If the
+        block is currently on disk the topend may start reading it
+        back in the background.  Does not pin the block. */
+    void prefetchBlock(int64_t blockId);
+
     /** The large temp table for this block is being destroyed, so
         release all resources associated with this block. */
     void releaseBlock(int64_t blockId);
@@ -17,6 +17,7 @@
 
 #ifndef POOL_HPP_
 #define POOL_HPP_
+#include <algorithm>
 #include <vector>
 #include <iostream>
 #include <stdint.h>
@@ -76,9 +77,12 @@ inline T nexthigher(T k) {
  */
 class Pool {
 public:
+    /// The number of purges in a window over which purgeKeepingRecentPeak tracks the chunks used.
+    static const int PURGE_WINDOW = 64;
 
     Pool() :
-        m_allocationSize(TEMP_POOL_CHUNK_SIZE), m_maxChunkCount(1), m_currentChunkIndex(0)
+        m_allocationSize(TEMP_POOL_CHUNK_SIZE), m_maxChunkCount(1), m_currentChunkIndex(0),
+        m_windowPeakChunkCount(0), m_lastWindowPeakChunkCount(0), m_purgesInWindow(0)
     {
         init();
     }
@@ -90,7 +94,8 @@ public:
         m_allocationSize(allocationSize),
 #endif
         m_maxChunkCount(static_cast<std::size_t>(maxChunkCount)),
-        m_currentChunkIndex(0)
+        m_currentChunkIndex(0),
+        m_windowPeakChunkCount(0), m_lastWindowPeakChunkCount(0), m_purgesInWindow(0)
     {
         init();
     }
@@ -219,6 +224,40 @@ public:
     inline void* allocateZeroes(std::size_t size) { return ::memset(allocate(size), 0, size); }
 
     inline void purge() {
+        purgeKeeping(m_maxChunkCount);
+    }
+
+    /*
+     * Like purge(), for a pool that is purged after every fragment. Chunks beyond
+     * maxChunkCount stay allocated as long as a purge within the current or the
+     * previous window of PURGE_WINDOW purges needed them, rather than being freed
+     * and allocated again by the next large fragment.
+     */
+    inline void purgeKeepingRecentPeak() {
+        m_windowPeakChunkCount = std::max(m_windowPeakChunkCount, m_currentChunkIndex + 1);
+        const std::size_t keep = std::max(m_maxChunkCount,
+                                          std::max(m_windowPeakChunkCount, m_lastWindowPeakChunkCount));
+        if (++m_purgesInWindow >= PURGE_WINDOW) {
+            m_lastWindowPeakChunkCount = m_windowPeakChunkCount;
+            m_windowPeakChunkCount = 0;
+            m_purgesInWindow = 0;
+        }
+        purgeKeeping(keep);
+    }
+
+    int64_t getAllocatedMemory()
+    {
+        int64_t total = 0;
+        total += m_chunks.size() * m_allocationSize;
+        for (int i = 0; i < m_oversizeChunks.size(); i++)
+        {
+            total += m_oversizeChunks[i].getSize();
+        }
+        return total;
+    }
+
+private:
+    inline void purgeKeeping(std::size_t maxChunkCount) {
         /*
          * Erase any oversize chunks that were allocated
          */
@@ -244,8 +283,8 @@ public:
         /*
          * If more then maxChunkCount chunks are allocated erase all extra chunks
          */
-        if (numChunks > m_maxChunkCount) {
-            for (std::size_t ii = m_maxChunkCount; ii < numChunks; ii++) {
+        if (numChunks > maxChunkCount) {
+            for (std::size_t ii = maxChunkCount; ii < numChunks; ii++) {
 #ifdef USE_MMAP
                 if (::munmap( m_chunks[ii].m_chunkData, m_chunks[ii].m_size) != 0) {
                     std::cout << strerror( errno ) << std::endl;
@@ -255,7 +294,7 @@ public:
                 delete []m_chunks[ii].m_chunkData;
 #endif
             }
-            m_chunks.resize(m_maxChunkCount);
+            m_chunks.resize(maxChunkCount);
         }
 
         numChunks = m_chunks.size();
@@ -264,21 +303,13 @@ public:
         }
     }
 
-    int64_t getAllocatedMemory()
-    {
-        int64_t total = 0;
-        total += m_chunks.size() * m_allocationSize;
-        for (int i = 0; i < m_oversizeChunks.size(); i++)
-        {
-            total += m_oversizeChunks[i].getSize();
-        }
-        return total;
-    }
-
-private:
     const uint64_t m_allocationSize;
     std::size_t m_maxChunkCount;
     std::size_t m_currentChunkIndex;
+    // Most chunks used between purges, in this window of purges and the one before it
+    std::size_t m_windowPeakChunkCount;
+    std::size_t m_lastWindowPeakChunkCount;
+    int m_purgesInWindow;
     std::vector<Chunk> m_chunks;
     /*
      * Oversize chunks that will be freed and not reused.
@@ -333,6 +364,8 @@ public:
         m_memTotal = 0;
     }
 
+    inline void purgeKeepingRecentPeak() { purge(); }
+
     int64_t getAllocatedMemory()
     {
         return m_memTotal;
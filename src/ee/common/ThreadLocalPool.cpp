@@ -24,8 +24,10 @@
 #include <boost/shared_ptr.hpp>
 #include <boost/unordered_map.hpp>
 
+#include <algorithm>
 #include <iostream>
 #include <pthread.h>
+#include <vector>
 
 namespace voltdb {
 
@@ -47,6 +49,10 @@ static pthread_key_t m_stringKey;
  * Thread local key for storing integer value of amount of memory allocated
  */
 static pthread_key_t m_keyAllocated;
+/**
+ * Thread local key for storing the temp table block storage kept for reuse
+ */
+static pthread_key_t m_blockKey;
 static pthread_once_t m_keyOnce = PTHREAD_ONCE_INIT;
 
 typedef boost::pool<voltdb_pool_allocator_new_delete> PoolForObjectSize;
@@ -58,10 +64,38 @@ typedef PairType* PairTypePtr;
 
 typedef boost::unordered_map<int32_t, boost::shared_ptr<CompactingPool> > CompactingStringStorage;
 
+/**
+ * Temp table block storage of one size, the blocks kept for reuse and the
+ * peak number in use, which limits how many are kept.
+ */
+struct TempBlocksOfSize {
+    std::vector<char*> m_free;
+    std::size_t m_inUse;
+    std::size_t m_windowPeak;
+    std::size_t m_lastWindowPeak;
+    TempBlocksOfSize() : m_inUse(0), m_windowPeak(0), m_lastWindowPeak(0) { }
+};
+
+struct TempBlockCache {
+    boost::unordered_map<std::size_t, TempBlocksOfSize> m_bySize;
+    ThreadLocalPool::TempBlockStats m_stats;
+    int m_batchesInWindow;
+    TempBlockCache() : m_batchesInWindow(0) { }
+    ~TempBlockCache() {
+        for (boost::unordered_map<std::size_t, TempBlocksOfSize>::iterator iter = m_bySize.begin();
+             iter != m_bySize.end(); ++iter) {
+            for (std::size_t ii = 0; ii < iter->second.m_free.size(); ii++) {
+                delete [] iter->second.m_free[ii];
+            }
+        }
+    }
+};
+
 static void createThreadLocalKey() {
     (void)pthread_key_create( &m_key, NULL);
     (void)pthread_key_create( &m_stringKey, NULL);
     (void)pthread_key_create( &m_keyAllocated, NULL);
+    (void)pthread_key_create( &m_blockKey, NULL);
 }
 
 ThreadLocalPool::ThreadLocalPool() {
@@ -72,6 +106,7 @@ ThreadLocalPool::ThreadLocalPool() {
                 new PairType(
                         1, new PoolsByObjectSize())));
         pthread_setspecific(m_stringKey, static_cast<const void*>(new CompactingStringStorage()));
+        pthread_setspecific(m_blockKey, static_cast<const void*>(new TempBlockCache()));
     } else {
         PairTypePtr p =
                 static_cast<PairTypePtr>(pthread_getspecific(m_key));
@@ -90,6 +125,8 @@ ThreadLocalPool::~ThreadLocalPool() {
             pthread_setspecific( m_key, NULL);
             delete static_cast<CompactingStringStorage*>(pthread_getspecific(m_stringKey));
             pthread_setspecific(m_stringKey, NULL);
+            delete static_cast<TempBlockCache*>(pthread_getspecific(m_blockKey));
+            pthread_setspecific(m_blockKey, NULL);
             delete static_cast<std::size_t*>(pthread_getspecific(m_keyAllocated));
             pthread_setspecific( m_keyAllocated, NULL);
         } else {
@@ -310,6 +347,76 @@ std::size_t ThreadLocalPool::getPoolAllocationSize() {
     return bytes_allocated;
 }
 
+char* ThreadLocalPool::allocateTempBlock(std::size_t size) {
+    TempBlockCache* cache = static_cast<TempBlockCache*>(pthread_getspecific(m_blockKey));
+    assert(cache != NULL);
+    TempBlocksOfSize& blocks = cache->m_bySize[size];
+    ++cache->m_stats.m_requested;
+    blocks.m_inUse++;
+    blocks.m_windowPeak = std::max(blocks.m_windowPeak, blocks.m_inUse);
+#ifndef MEMCHECK
+    if ( ! blocks.m_free.empty()) {
+        char* block = blocks.m_free.back();
+        blocks.m_free.pop_back();
+        ++cache->m_stats.m_reused;
+        cache->m_stats.m_cachedBytes -= size;
+        return block;
+    }
+#endif
+    return new char[size];
+}
+
+void ThreadLocalPool::freeTempBlock(std::size_t size, char* block) {
+    TempBlockCache* cache = static_cast<TempBlockCache*>(pthread_getspecific(m_blockKey));
+    if (cache == NULL) {
+        // The last pool reference of this thread is gone, there is nothing to keep it in
+        delete [] block;
+        return;
+    }
+    TempBlocksOfSize& blocks = cache->m_bySize[size];
+    assert(blocks.m_inUse > 0);
+    blocks.m_inUse--;
+#ifdef MEMCHECK
+    // Let valgrind see every block come and go
+    delete [] block;
+#else
+    blocks.m_free.push_back(block);
+    cache->m_stats.m_cachedBytes += size;
+#endif
+}
+
+void ThreadLocalPool::trimTempBlocks() {
+    TempBlockCache* cache = static_cast<TempBlockCache*>(pthread_getspecific(m_blockKey));
+    assert(cache != NULL);
+    const bool endOfWindow = ++cache->m_batchesInWindow >= TEMP_BLOCK_TRIM_WINDOW;
+    for (boost::unordered_map<std::size_t, TempBlocksOfSize>::iterator iter = cache->m_bySize.begin();
+         iter != cache->m_bySize.end(); ++iter) {
+        TempBlocksOfSize& blocks = iter->second;
+        const std::size_t peak = std::max(blocks.m_windowPeak, blocks.m_lastWindowPeak);
+        const std::size_t keep = peak > blocks.m_inUse ? peak - blocks.m_inUse : 0;
+        while (blocks.m_free.size() > keep) {
+            delete [] blocks.m_free.back();
+            blocks.m_free.pop_back();
+            cache->m_stats.m_cachedBytes -= iter->first;
+        }
+        if (endOfWindow) {
+            blocks.m_lastWindowPeak = blocks.m_windowPeak;
+            blocks.m_windowPeak = blocks.m_inUse;
+        }
+    }
+    if (endOfWindow) {
+        cache->m_batchesInWindow = 0;
+    }
+}
+
+ThreadLocalPool::TempBlockStats ThreadLocalPool::getTempBlockStats() {
+    TempBlockCache* cache = static_cast<TempBlockCache*>(pthread_getspecific(m_blockKey));
+    if (cache == NULL) {
+        return TempBlockStats();
+    }
+    return cache->m_stats;
+}
+
 char * voltdb_pool_allocator_new_delete::malloc(const size_type bytes) {
     (*static_cast< std::size_t* >(pthread_getspecific(m_keyAllocated))) += bytes + sizeof(std::size_t);
     //std::cout << "Pooled memory is " << ((*static_cast< std::size_t* >(pthread_getspecific(m_keyAllocated))) / (1024 * 1024)) << " after requested allocation " << (bytes / (1024 * 1024)) <<  std::endl;
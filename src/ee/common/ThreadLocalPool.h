@@ -21,6 +21,8 @@
 #include "boost/pool/pool.hpp"
 #include "boost/shared_ptr.hpp"
 
+#include <stdint.h>
+
 namespace voltdb {
 
 /**
@@ -78,6 +80,40 @@ public:
 
     static std::size_t getPoolAllocationSize();
 
+    /// Counters of the temp table block storage kept for reuse by this thread.
+    struct TempBlockStats {
+        int64_t m_requested;    // blocks requested since the thread started
+        int64_t m_reused;       // requests served by a block freed earlier
+        int64_t m_cachedBytes;  // bytes of freed blocks currently kept
+        TempBlockStats() : m_requested(0), m_reused(0), m_cachedBytes(0) { }
+    };
+
+    /// The number of batches in a window over which the peak temp block usage is tracked.
+    static const int TEMP_BLOCK_TRIM_WINDOW = 64;
+
+    /**
+     * Allocate the storage for a temp table block. Storage freed with freeTempBlock
+     * is kept and handed out again to requests of the same size, so that once the
+     * largest of a steady stream of fragments has run, temp tables stop allocating.
+     * The storage kept is trimmed back by trimTempBlocks.
+     */
+    static char* allocateTempBlock(std::size_t size);
+
+    /**
+     * Free the storage returned by allocateTempBlock, keeping it for reuse.
+     */
+    static void freeTempBlock(std::size_t size, char* block);
+
+    /**
+     * Called at the end of each batch of fragments to release the kept storage that
+     * recent batches didn't need: for each block size, what is kept plus what is in
+     * use is capped at the peak usage within the current and the previous window of
+     * TEMP_BLOCK_TRIM_WINDOW batches.
+     */
+    static void trimTempBlocks();
+
+    static TempBlockStats getTempBlockStats();
+
     /**
      * Allocate space from a page of objects of approximately the requested
      * size. There will be relatively small gaps of unused space between the
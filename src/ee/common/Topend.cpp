@@ -158,6 +158,9 @@ namespace voltdb {
         return false;
     }
 
+    void DummyTopend::prefetchLargeTempTableBlock(int64_t blockId) {
+    }
+
     int DummyTopend::callJavaUserDefinedFunction() {
         // We do not call any UDF here, directly return zero which means success.
         return 0;
@@ -93,6 +93,10 @@ class Topend {
     /** Delete any data for the specified block that is stored on disk. */
     virtual bool releaseLargeTempTableBlock(int64_t blockId) = 0;
 
+    /** Hint that the given stored block will be loaded soon, so its
+        data can be read from disk in the background. */
+    virtual void prefetchLargeTempTableBlock(int64_t blockId) = 0;
+
     // Call into the Java top end to execute a user-defined function.
     // The function Id for the function to be called and the parameter data is stored in a
     // buffer shared by the top end and the EE.
@@ -144,6 +148,8 @@ public:
 
     virtual bool releaseLargeTempTableBlock(int64_t blockId);
 
+    virtual void prefetchLargeTempTableBlock(int64_t blockId);
+
     int callJavaUserDefinedFunction();
 
     std::queue<int32_t> partitionIds;
@@ -191,6 +191,8 @@ enum PlanNodeType {
     //
     PLAN_NODE_TYPE_NESTLOOP         = 20,
     PLAN_NODE_TYPE_NESTLOOPINDEX    = 21,
+    PLAN_NODE_TYPE_HASHJOIN         = 22,
+    PLAN_NODE_TYPE_MERGEJOIN        = 23,
 
     //
     // Operator Nodes
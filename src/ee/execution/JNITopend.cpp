@@ -21,6 +21,9 @@
 #include "common/debuglog.h"
 #include "common/StreamBlock.h"
 #include "storage/table.h"
+#include "storage/LargeTempTableBlock.h"
+
+#include "boost/scoped_array.hpp"
 
 using namespace std;
 
@@ -99,6 +102,38 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
+    m_storeLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "storeLargeTempTableBlock", "(JLjava/nio/ByteBuffer;)Z");
+    if (m_storeLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_storeLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
+    m_loadLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "loadLargeTempTableBlock", "(JLjava/nio/ByteBuffer;)Z");
+    if (m_loadLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_loadLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
+    m_releaseLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "releaseLargeTempTableBlock", "(J)Z");
+    if (m_releaseLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_releaseLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
+    m_prefetchLargeTempTableBlockMID = m_jniEnv->GetMethodID(
+            jniClass, "prefetchLargeTempTableBlock", "(J)V");
+    if (m_prefetchLargeTempTableBlockMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_prefetchLargeTempTableBlockMID != 0);
+        throw std::exception();
+    }
+
     m_nextDependencyMID = m_jniEnv->GetMethodID(jniClass, "nextDependencyAsBytes", "(I)[B");
     if (m_nextDependencyMID == NULL) {
         m_jniEnv->ExceptionDescribe();
@@ -375,6 +410,97 @@ std::string JNITopend::decodeBase64AndDecompress(const std::string& base64Str) {
     return jbyteArrayToStdString(m_jniEnv, jni_frame, jbuf);
 }
 
+bool JNITopend::storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+    // Serialize the tuples so that pointers to non-inlined data don't
+    // need to survive the round trip through Java
+    CopySerializeOutput output;
+    block->serializeTo(output);
+
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to store large temp table block: jni frame error.");
+        throw std::exception();
+    }
+
+    jobject jbuffer = m_jniEnv->NewDirectByteBuffer(const_cast<char*>(output.data()), output.size());
+    if (jbuffer == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+
+    jboolean stored = m_jniEnv->CallBooleanMethod(m_javaExecutionEngine,
+                                                  m_storeLargeTempTableBlockMID,
+                                                  blockId,
+                                                  jbuffer);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+
+    if (stored != JNI_TRUE) {
+        return false;
+    }
+
+    block->setStoredSize(static_cast<int64_t>(output.size()));
+    block->releaseData();
+    return true;
+}
+
+bool JNITopend::loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+    int64_t storedSize = block->storedSize();
+    boost::scoped_array<char> bytes(new char[storedSize]);
+
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to load large temp table block: jni frame error.");
+        throw std::exception();
+    }
+
+    jobject jbuffer = m_jniEnv->NewDirectByteBuffer(bytes.get(), storedSize);
+    if (jbuffer == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+
+    jboolean loaded = m_jniEnv->CallBooleanMethod(m_javaExecutionEngine,
+                                                  m_loadLargeTempTableBlockMID,
+                                                  blockId,
+                                                  jbuffer);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+
+    if (loaded != JNI_TRUE) {
+        return false;
+    }
+
+    ReferenceSerializeInputBE input(bytes.get(), storedSize);
+    block->deserializeFrom(input);
+    return true;
+}
+
+bool JNITopend::releaseLargeTempTableBlock(int64_t blockId) {
+    jboolean released = m_jniEnv->CallBooleanMethod(m_javaExecutionEngine,
+                                                    m_releaseLargeTempTableBlockMID,
+                                                    blockId);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+    return released == JNI_TRUE;
+}
+
+void JNITopend::prefetchLargeTempTableBlock(int64_t blockId) {
+    m_jniEnv->CallVoidMethod(m_javaExecutionEngine,
+                             m_prefetchLargeTempTableBlockMID,
+                             blockId);
+    if (m_jniEnv->ExceptionCheck()) {
+        m_jniEnv->ExceptionDescribe();
+        throw std::exception();
+    }
+}
+
 int JNITopend::callJavaUserDefinedFunction() {
     return (int)m_jniEnv->CallIntMethod(m_javaExecutionEngine,
                                         m_callJavaUserDefinedFunctionMID);
@@ -64,20 +64,13 @@ public:
 
     std::string decodeBase64AndDecompress(const std::string& buffer);
 
-    bool storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
-        throw std::logic_error("unimplemented method called!");
-        return false;
-    }
+    bool storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block);
 
-    bool loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
-        throw std::logic_error("unimplemented method called!");
-        return false;;
-    }
+    bool loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block);
 
-    bool releaseLargeTempTableBlock(int64_t blockId) {
-        throw std::logic_error("unimplemented method called!");
-        return false;
-    }
+    bool releaseLargeTempTableBlock(int64_t blockId);
+
+    void prefetchLargeTempTableBlock(int64_t blockId);
 
     int callJavaUserDefinedFunction();
 
@@ -101,6 +94,10 @@ private:
     jmethodID m_reportDRConflictMID;
     jmethodID m_decodeBase64AndDecompressToBytesMID;
     jmethodID m_callJavaUserDefinedFunctionMID;
+    jmethodID m_storeLargeTempTableBlockMID;
+    jmethodID m_loadLargeTempTableBlockMID;
+    jmethodID m_releaseLargeTempTableBlockMID;
+    jmethodID m_prefetchLargeTempTableBlockMID;
     jclass m_exportManagerClass;
     jclass m_partitionDRGatewayClass;
     jclass m_decompressionClass;
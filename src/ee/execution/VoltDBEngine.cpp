@@ -435,12 +435,15 @@ int VoltDBEngine::executePlanFragments(int32_t numFragments,
         // at the end of each frag, rollup and reset counters
         m_executorContext->m_progressStats.rollUpForPlanFragment();
 
-        m_stringPool.purge();
+        m_stringPool.purgeKeepingRecentPeak();
     }
     m_perFragmentStatsOutput.writeIntAt(succeededFragmentsCountOffset, m_currentIndexInBatch);
 
     m_currentIndexInBatch = -1;
 
+    // release the temp table blocks kept for reuse that recent batches haven't needed
+    ThreadLocalPool::trimTempBlocks();
+
     return failures;
 }
 
@@ -700,6 +700,36 @@ inline void AggregateExecutorBase::advanceAggs(AggregateRow* aggregateRow, const
     }
 }
 
+void AggregateExecutorBase::advanceAggs(AggregateRow* aggregateRow, const TableTuple* tuples,
+                                        const int* selection, int count)
+{
+    assert(count <= AbstractExpression::BATCH_SIZE);
+    Agg** aggs = aggregateRow->m_aggregates;
+    NValue values[AbstractExpression::BATCH_SIZE];
+    for (int ii = 0; ii < m_aggTypes.size(); ii++) {
+        AbstractExpression* inputExpr = m_inputExpressions[ii];
+        if (inputExpr) {
+            inputExpr->evalBatch(tuples, selection, count, values);
+            for (int jj = 0; jj < count; jj++) {
+                aggs[ii]->advance(values[jj]);
+            }
+        }
+        else {
+            // COUNT(*)
+            for (int jj = 0; jj < count; jj++) {
+                aggs[ii]->advance(NValue());
+            }
+        }
+    }
+}
+
+void AggregateExecutorBase::p_execute_tuples(const TableTuple* tuples, const int* selection, int count)
+{
+    for (int ii = 0; ii < count && m_postfilter.isUnderLimit(); ii++) {
+        p_execute_tuple(tuples[selection[ii]]);
+    }
+}
+
 /*
  * Create an instance of an aggregator for the specified aggregate type.
  * The object is constructed in memory from the provided memory pool.
@@ -744,7 +774,7 @@ TableTuple AggregateExecutorBase::p_execute_init(const NValueArray& params,
     if (newTempTable != NULL) {
         m_tmpOutputTable = newTempTable;
     }
-    m_memoryPool.purge();
+    m_memoryPool.purgeKeepingRecentPeak();
     initCountingPredicate(params, parentPostfilter);
     m_pmp = pmp;
 
@@ -769,7 +799,7 @@ void AggregateExecutorBase::p_execute_finish()
 
     m_inProgressGroupByKeyTuple.move(NULL);
 
-    m_memoryPool.purge();
+    m_memoryPool.purgeKeepingRecentPeak();
 }
 
 AggregateHashExecutor::~AggregateHashExecutor() {}
@@ -952,6 +982,26 @@ void AggregateSerialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     advanceAggs(m_aggregateRow, nextTuple);
 }
 
+void AggregateSerialExecutor::p_execute_tuples(const TableTuple* tuples, const int* selection, int count)
+{
+    // Only a single group (the whole table) can take a batch at once,
+    // anything else has to look for group boundaries tuple by tuple.
+    if (m_groupByKeySchema->columnCount() != 0 || m_prePredicate != NULL) {
+        AggregateExecutorBase::p_execute_tuples(tuples, selection, count);
+        return;
+    }
+    if (count == 0) {
+        return;
+    }
+    int first = 0;
+    if (m_noInputRows) {
+        // The first input tuple still primes the system
+        AggregateSerialExecutor::p_execute_tuple(tuples[selection[0]]);
+        first = 1;
+    }
+    advanceAggs(m_aggregateRow, tuples, selection + first, count - first);
+}
+
 void AggregateSerialExecutor::p_execute_finish()
 {
     if (m_postfilter.isUnderLimit()) {
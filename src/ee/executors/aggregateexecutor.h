@@ -186,6 +186,12 @@ public:
      */
     virtual void p_execute_tuple(const TableTuple& nextTuple) = 0;
 
+    /**
+     * Evaluate a batch of tuples, tuples[selection[0..count-1]], in order.
+     * By default this is p_execute_tuple on each of them until LIMIT is met.
+     */
+    virtual void p_execute_tuples(const TableTuple* tuples, const int* selection, int count);
+
     /**
      * Last method to insert the results to output table and clean up memory or variables.
      */
@@ -207,6 +213,9 @@ protected:
 
     void advanceAggs(AggregateRow* aggregateRow, const TableTuple& tuple);
 
+    /// Advance the aggregates by a batch of tuples, one aggregate at a time.
+    void advanceAggs(AggregateRow* aggregateRow, const TableTuple* tuples, const int* selection, int count);
+
     /*
      * Create an instance of an aggregator for the specified aggregate type.
      * The object is constructed in memory from the provided memory pool.
@@ -307,6 +316,7 @@ public:
                               const TupleSchema * schema, TempTable* newTempTable  = NULL,
                               CountingPostfilter* parentPredicate = NULL);
     void p_execute_tuple(const TableTuple& nextTuple);
+    void p_execute_tuples(const TableTuple* tuples, const int* selection, int count);
     void p_execute_finish();
 
 protected:
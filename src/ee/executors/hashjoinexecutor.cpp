@@ -0,0 +1,548 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/executorcontext.hpp"
+#include "common/tabletuple.h"
+#include "common/TupleSchema.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "expressions/abstractexpression.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/LargeTempTable.h"
+#include "storage/LargeTempTableIterator.h"
+#include "storage/table.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/tabletuplefilter.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+#include "structures/CompactingHashTable.h"
+
+#include "boost/foreach.hpp"
+#include "boost/functional/hash.hpp"
+#include "boost/shared_ptr.hpp"
+#include "boost/scoped_ptr.hpp"
+
+#include <algorithm>
+#include <vector>
+
+using namespace std;
+using namespace voltdb;
+
+const static int8_t UNMATCHED_TUPLE(TableTupleFilter::ACTIVE_TUPLE);
+const static int8_t MATCHED_TUPLE(TableTupleFilter::ACTIVE_TUPLE + 1);
+
+// Build side key tuple -> address of the inner tuple it came from
+typedef CompactingHashTable<TableTuple, char*, TableTupleHasher, TableTupleEqualityChecker> HashJoinTable;
+
+// Per node cost of an entry in HashJoinTable, not counting its key tuple
+static const int64_t HASH_ENTRY_OVERHEAD = sizeof(TableTuple) + 4 * sizeof(void*);
+
+struct HashJoinExecutor::JoinState {
+    JoinState(const HashJoinPlanNode* node,
+              CountingPostfilter& postfilter,
+              TableTuple& joinTuple,
+              ProgressMonitorProxy& pmp)
+        : m_preJoinPredicate(node->getPreJoinPredicate())
+        , m_joinPredicate(node->getJoinPredicate())
+        , m_outerKeys(node->getOuterHashKeys())
+        , m_innerKeys(node->getInnerHashKeys())
+        , m_outerSchema(node->getInputTable(0)->schema())
+        , m_outerCols(node->getInputTable(0)->columnCount())
+        , m_innerCols(node->getInputTable(1)->columnCount())
+        , m_postfilter(postfilter)
+        , m_joinTuple(joinTuple)
+        , m_pmp(pmp)
+        , m_copyOutput(false)
+    { }
+
+    AbstractExpression* const m_preJoinPredicate;
+    AbstractExpression* const m_joinPredicate;
+    const std::vector<AbstractExpression*>& m_outerKeys;
+    const std::vector<AbstractExpression*>& m_innerKeys;
+    const TupleSchema* const m_outerSchema;
+    const int m_outerCols;
+    const int m_innerCols;
+    CountingPostfilter& m_postfilter;
+    TableTuple& m_joinTuple;
+    ProgressMonitorProxy& m_pmp;
+    // Set while joining spilled partitions, whose values are released with the partition
+    bool m_copyOutput;
+};
+
+namespace {
+
+/**
+ * Iterates over a spilled outer partition. The tuples live in LargeTempTable
+ * blocks that are released once the partition has been joined, so any
+ * uninlined values are copied out to the partition pool before the tuple
+ * is handed out.
+ */
+class SpilledOuterIterator {
+public:
+    SpilledOuterIterator(LargeTempTable* table, const TupleSchema* schema, Pool* pool)
+        : m_iterator(table->largeIterator())
+        , m_spilledTuple(schema)
+        , m_copy(schema)
+        , m_pool(pool)
+        , m_deepCopy(schema->getUninlinedObjectColumnCount() > 0)
+    { }
+
+    bool next(TableTuple& out) {
+        if ( ! m_iterator.next(m_spilledTuple)) {
+            return false;
+        }
+        if (m_deepCopy) {
+            m_copy.tuple().copyForPersistentInsert(m_spilledTuple, m_pool);
+            out.move(m_copy.tuple().address());
+        }
+        else {
+            out.move(m_spilledTuple.address());
+        }
+        return true;
+    }
+
+private:
+    LargeTempTableIterator m_iterator;
+    TableTuple m_spilledTuple;
+    StandAloneTupleStorage m_copy;
+    Pool* const m_pool;
+    const bool m_deepCopy;
+};
+
+}
+
+HashJoinExecutor::~HashJoinExecutor()
+{
+    TupleSchema::freeTupleSchema(m_keySchema);
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstractNode,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+    assert(limits);
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, limits)) {
+        return false;
+    }
+    m_limits = limits;
+
+    // NULL tuples for left and full joins
+    p_init_null_tuples(node->getInputTable(), node->getInputTable(1));
+
+    // The key columns take the type of the inner keys. Variable length keys
+    // are kept out of line at the widest size so that any outer value fits.
+    const std::vector<AbstractExpression*>& innerKeys = node->getInnerHashKeys();
+    std::vector<ValueType> keyColumnTypes;
+    std::vector<int32_t> keyColumnSizes;
+    std::vector<bool> keyColumnAllowNull;
+    std::vector<bool> keyColumnInBytes;
+    BOOST_FOREACH (AbstractExpression* expr, innerKeys) {
+        ValueType type = expr->getValueType();
+        keyColumnTypes.push_back(type);
+        if (isVariableLengthType(type)) {
+            keyColumnSizes.push_back(TupleSchema::COLUMN_MAX_VALUE_LENGTH);
+            keyColumnInBytes.push_back(true);
+        }
+        else {
+            keyColumnSizes.push_back(NValue::getTupleStorageSize(type));
+            keyColumnInBytes.push_back(false);
+        }
+        keyColumnAllowNull.push_back(true);
+    }
+    TupleSchema::freeTupleSchema(m_keySchema);
+    m_keySchema = TupleSchema::createTupleSchema(keyColumnTypes,
+                                                 keyColumnSizes,
+                                                 keyColumnAllowNull,
+                                                 keyColumnInBytes);
+    return true;
+}
+
+bool HashJoinExecutor::setKeyTuple(TableTuple& keyTuple,
+                                   const std::vector<AbstractExpression*>& keys,
+                                   const TableTuple* outerTuple,
+                                   const TableTuple* innerTuple,
+                                   Pool* pool)
+{
+    for (int ii = 0; ii < keys.size(); ii++) {
+        NValue value = keys[ii]->eval(outerTuple, innerTuple);
+        if (value.isNull()) {
+            return false;
+        }
+        keyTuple.setNValueAllocateForObjectCopies(ii, value, pool);
+    }
+    return true;
+}
+
+int64_t HashJoinExecutor::estimateBuildBytes(int64_t innerTupleCount) const
+{
+    const int64_t bucketBytes = HashJoinTable::bucketCountFor(innerTupleCount) * sizeof(void*);
+    return bucketBytes + innerTupleCount * (m_keySchema->tupleLength() + TUPLE_HEADER_SIZE + HASH_ENTRY_OVERHEAD);
+}
+
+int HashJoinExecutor::spillPartitionCount(int64_t innerTupleCount, int32_t innerTupleLength, int64_t loadBytes) const
+{
+    const int64_t buildBytes = estimateBuildBytes(innerTupleCount);
+    const int64_t memoryLimit = m_limits->getMemoryLimit();
+    if (memoryLimit < 0 || m_limits->getAllocated() + loadBytes + buildBytes <= memoryLimit) {
+        return 0;
+    }
+    // Aim for partitions that need at most half the limit, inner tuples and hash entries included
+    const int64_t innerBytes = buildBytes + innerTupleCount * innerTupleLength;
+    const int64_t wanted = 2 * innerBytes / std::max<int64_t>(memoryLimit, 1) + 2;
+    return static_cast<int>(std::min<int64_t>(wanted, MAX_SPILL_PARTITIONS));
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTable(1);
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    // Init the postfilter
+    CountingPostfilter postfilter(m_tmpOutputTable, node->getWherePredicate(), limit, offset);
+
+    TableTuple join_tuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+    } else {
+        join_tuple = m_tmpOutputTable->tempTuple();
+    }
+
+    JoinState state(node, postfilter, join_tuple, pmp);
+
+    // The inner table is already in memory, only the hash table would be added
+    const int64_t innerTupleCount = inner_table->activeTupleCount();
+    const int partitionCount = spillPartitionCount(innerTupleCount, inner_table->schema()->tupleLength(), 0);
+    if (partitionCount > 0) {
+        VOLT_DEBUG("HashJoin spilling %jd inner tuples into %d partitions",
+                   (intmax_t)innerTupleCount, partitionCount);
+        spillAndJoin(state, outer_table, inner_table, partitionCount);
+    }
+    else {
+        TableIterator outerIterator = outer_table->iteratorDeletingAsWeGo();
+        joinPartition(state, outerIterator, inner_table);
+    }
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    m_buildPool.purge();
+    m_probePool.purge();
+    m_partitionPool.purge();
+    cleanupInputTempTable(inner_table);
+    cleanupInputTempTable(outer_table);
+
+    return (true);
+}
+
+template <class OuterIterator>
+void HashJoinExecutor::joinPartition(JoinState& state, OuterIterator& outerIterator, Table* innerTable)
+{
+    CountingPostfilter& postfilter = state.m_postfilter;
+    ProgressMonitorProxy& pmp = state.m_pmp;
+    TableTuple& join_tuple = state.m_joinTuple;
+    const int outer_cols = state.m_outerCols;
+    const int inner_cols = state.m_innerCols;
+    const int keyLength = m_keySchema->tupleLength() + TUPLE_HEADER_SIZE;
+
+    //
+    // Build the hash table over the inner tuples. Tuples with a NULL key can
+    // not satisfy the equality so they are left out.
+    //
+    m_buildPool.purge();
+    HashJoinTable hashTable(false, innerTable->activeTupleCount());
+    TableTuple inner_tuple(innerTable->schema());
+    TableTuple buildKey(m_keySchema);
+    char* spareKeyStorage = NULL;
+    TableIterator iterator1 = innerTable->iterator();
+    while (iterator1.next(inner_tuple)) {
+        pmp.countdownProgress();
+        if (spareKeyStorage == NULL) {
+            spareKeyStorage = reinterpret_cast<char*>(m_buildPool.allocateZeroes(keyLength));
+        }
+        buildKey.move(spareKeyStorage);
+        if (setKeyTuple(buildKey, state.m_innerKeys, NULL, &inner_tuple, &m_buildPool)) {
+            hashTable.insert(buildKey, inner_tuple.address());
+            spareKeyStorage = NULL;
+        }
+    }
+
+    // The table filter to keep track of inner tuples that don't match any of outer tuples for FULL joins
+    TableTupleFilter innerTableFilter;
+    if (m_joinType == JOIN_TYPE_FULL) {
+        // Prepopulate the view with all inner tuples
+        innerTableFilter.init(innerTable);
+    }
+
+    AbstractExpression* preJoinPredicate = state.m_preJoinPredicate;
+    AbstractExpression* joinPredicate = state.m_joinPredicate;
+    const TableTuple& null_inner_tuple = m_null_inner_tuple.tuple();
+    TableTuple outer_tuple(state.m_outerSchema);
+    TableTuple probeKey(m_keySchema);
+    probeKey.move(m_buildPool.allocateZeroes(keyLength));
+
+    while (postfilter.isUnderLimit() && outerIterator.next(outer_tuple)) {
+        pmp.countdownProgress();
+
+        // populate output table's temp tuple with outer table's values
+        join_tuple.setNValues(0, outer_tuple, 0, outer_cols);
+
+        // did this probe find at least one match for this tuple?
+        bool outerMatch = false;
+        // For outer joins if outer tuple fails pre-join predicate
+        // (join expression based on the outer table only)
+        // it can't match any of inner tuples
+        if (preJoinPredicate == NULL || preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) {
+            m_probePool.purge();
+            if (setKeyTuple(probeKey, state.m_outerKeys, &outer_tuple, NULL, &m_probePool)) {
+                HashJoinTable::iterator match = hashTable.find(probeKey);
+                for (; postfilter.isUnderLimit() && ! match.isEnd(); match.moveNext()) {
+                    inner_tuple.move(match.value());
+                    // The hash keys are only part of the join predicate, apply all of it
+                    if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                        outerMatch = true;
+                        // The inner tuple passed the join predicate
+                        if (m_joinType == JOIN_TYPE_FULL) {
+                            // Mark it as matched
+                            innerTableFilter.updateTuple(inner_tuple, MATCHED_TUPLE);
+                        }
+                        // Filter the joined tuple
+                        if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                            // Matched! Complete the joined tuple with the inner column values.
+                            join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                            outputJoinTuple(state);
+                        }
+                    }
+                }
+            }
+        } // END IF PRE JOIN CONDITION
+
+        //
+        // Left Outer Join
+        //
+        if (m_joinType != JOIN_TYPE_INNER && !outerMatch && postfilter.isUnderLimit()) {
+            // Still needs to pass the filter
+            if (postfilter.eval(&outer_tuple, &null_inner_tuple)) {
+                // Matched! Complete the joined tuple with the inner column values.
+                join_tuple.setNValues(outer_cols, null_inner_tuple, 0, inner_cols);
+                outputJoinTuple(state);
+            }
+        } // END IF LEFT OUTER JOIN
+    } // END OUTER WHILE LOOP
+
+    //
+    // FULL Outer Join. Iterate over the unmatched inner tuples
+    //
+    if (m_joinType == JOIN_TYPE_FULL && postfilter.isUnderLimit()) {
+        // Preset outer columns to null
+        const TableTuple& null_outer_tuple = m_null_outer_tuple.tuple();
+        join_tuple.setNValues(0, null_outer_tuple, 0, outer_cols);
+
+        TableTupleFilter_iter<UNMATCHED_TUPLE> endItr = innerTableFilter.end<UNMATCHED_TUPLE>();
+        for (TableTupleFilter_iter<UNMATCHED_TUPLE> itr = innerTableFilter.begin<UNMATCHED_TUPLE>();
+                itr != endItr && postfilter.isUnderLimit(); ++itr) {
+            // Restore the tuple value
+            uint64_t tupleAddr = innerTableFilter.getTupleAddress(*itr);
+            inner_tuple.move((char *)tupleAddr);
+            // Still needs to pass the filter
+            assert(inner_tuple.isActive());
+            if (postfilter.eval(&null_outer_tuple, &inner_tuple)) {
+                // Passed! Complete the joined tuple with the inner column values.
+                join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                outputJoinTuple(state);
+            }
+        }
+    }
+}
+
+void HashJoinExecutor::outputJoinTuple(JoinState& state)
+{
+    TableTuple& join_tuple = state.m_joinTuple;
+    if (state.m_copyOutput) {
+        // The output outlives the partition pool, give it its own copy of the uninlined values
+        const TupleSchema* schema = join_tuple.getSchema();
+        for (uint16_t ii = 0; ii < schema->getUninlinedObjectColumnCount(); ii++) {
+            const uint16_t col = schema->getUninlinedObjectColumnInfoIndex(ii);
+            join_tuple.setNValueAllocateForObjectCopies(col, join_tuple.getNValue(col),
+                                                        ExecutorContext::getTempStringPool());
+        }
+    }
+    outputTuple(state.m_postfilter, join_tuple, state.m_pmp);
+}
+
+void HashJoinExecutor::spillAndJoin(JoinState& state, Table* outerTable, Table* innerTable, int partitionCount)
+{
+    Partitions outerPartitions;
+    Partitions innerPartitions;
+    createPartitions(outerPartitions, outerTable, "hashjoin_outer", partitionCount);
+    createPartitions(innerPartitions, innerTable, "hashjoin_inner", partitionCount);
+
+    {
+        TableIterator innerIterator = innerTable->iterator();
+        partitionTuples(state, innerIterator, innerTable->schema(), false, innerPartitions, 0);
+    }
+    cleanupInputTempTable(innerTable);
+    {
+        TableIterator outerIterator = outerTable->iteratorDeletingAsWeGo();
+        partitionTuples(state, outerIterator, outerTable->schema(), true, outerPartitions, 0);
+    }
+    cleanupInputTempTable(outerTable);
+
+    //
+    // The inner partition is brought back into memory so the hash table can
+    // point at its tuples. The uninlined values of both sides go to the
+    // partition pool, which is purged before the next partition, so the
+    // joined tuples are copied out as they are produced.
+    //
+    boost::scoped_ptr<TempTable> innerPartition(
+            TableFactory::buildCopiedTempTable("hashjoin_build", innerTable, m_limits));
+    state.m_copyOutput = true;
+    joinPartitions(state, outerPartitions, innerPartitions, innerPartition.get(), 0);
+    innerPartition->deleteAllTempTuples();
+    state.m_copyOutput = false;
+}
+
+void HashJoinExecutor::createPartitions(Partitions& partitions, const Table* table,
+                                        const std::string& name, int partitionCount)
+{
+    for (int ii = 0; ii < partitionCount; ii++) {
+        partitions.push_back(boost::shared_ptr<LargeTempTable>(
+                TableFactory::buildLargeTempTable(name,
+                                                  TupleSchema::createTupleSchema(table->schema()),
+                                                  table->getColumnNames())));
+    }
+}
+
+template <class Iterator>
+void HashJoinExecutor::partitionTuples(JoinState& state, Iterator& iterator, const TupleSchema* schema,
+                                       bool outer, Partitions& partitions, int depth)
+{
+    //
+    // Tuples with a NULL key can't match anything but outer joins still need
+    // to see them, they all go to the first partition. Every depth mixes the
+    // key hash differently so that a partition split again spreads out.
+    //
+    const std::vector<AbstractExpression*>& keys = outer ? state.m_outerKeys : state.m_innerKeys;
+    const bool keepNullKeys = outer ? (m_joinType != JOIN_TYPE_INNER) : (m_joinType == JOIN_TYPE_FULL);
+    StandAloneTupleStorage keyStorage(m_keySchema);
+    TableTuple key = keyStorage.tuple();
+    TableTuple tuple(schema);
+    while (iterator.next(tuple)) {
+        state.m_pmp.countdownProgress();
+        m_probePool.purge();
+        if (setKeyTuple(key, keys, outer ? &tuple : NULL, outer ? NULL : &tuple, &m_probePool)) {
+            size_t hash = key.hashCode();
+            if (depth > 0) {
+                boost::hash_combine(hash, depth);
+            }
+            partitions[hash % partitions.size()]->insertTuple(tuple);
+        }
+        else if (keepNullKeys) {
+            partitions[0]->insertTuple(tuple);
+        }
+    }
+    BOOST_FOREACH (boost::shared_ptr<LargeTempTable>& partition, partitions) {
+        partition->finishInserts();
+    }
+}
+
+void HashJoinExecutor::joinPartitions(JoinState& state, Partitions& outerPartitions, Partitions& innerPartitions,
+                                      TempTable* innerPartition, int depth)
+{
+    const TupleSchema* innerSchema = innerPartition->schema();
+    TableTuple inner_tuple(innerSchema);
+    for (int ii = 0; ii < innerPartitions.size() && state.m_postfilter.isUnderLimit(); ii++) {
+        innerPartition->deleteAllTempTuples();
+        m_partitionPool.purge();
+
+        // A skewed key hash can leave a partition that still doesn't fit, split it again
+        const int64_t innerTupleCount = innerPartitions[ii]->numTuples();
+        const int partitionCount = (depth < MAX_SPILL_DEPTH) ?
+                spillPartitionCount(innerTupleCount, innerSchema->tupleLength(),
+                                    innerTupleCount * innerSchema->tupleLength()) : 0;
+        if (partitionCount > 1) {
+            VOLT_DEBUG("HashJoin splitting a partition of %jd inner tuples into %d partitions",
+                       (intmax_t)innerTupleCount, partitionCount);
+            Partitions outerSplit;
+            Partitions innerSplit;
+            createPartitions(outerSplit, outerPartitions[ii].get(), "hashjoin_outer", partitionCount);
+            createPartitions(innerSplit, innerPartitions[ii].get(), "hashjoin_inner", partitionCount);
+            {
+                LargeTempTableIterator spilledInner = innerPartitions[ii]->largeIterator();
+                partitionTuples(state, spilledInner, innerSchema, false, innerSplit, depth + 1);
+            }
+            innerPartitions[ii].reset();
+            {
+                LargeTempTableIterator spilledOuter = outerPartitions[ii]->largeIterator();
+                partitionTuples(state, spilledOuter, outerPartitions[ii]->schema(), true, outerSplit, depth + 1);
+            }
+            outerPartitions[ii].reset();
+            joinPartitions(state, outerSplit, innerSplit, innerPartition, depth + 1);
+            continue;
+        }
+
+        {
+            // Iterators pin blocks, they have to go before their table does
+            LargeTempTableIterator spilledInner = innerPartitions[ii]->largeIterator();
+            while (spilledInner.next(inner_tuple)) {
+                innerPartition->insertTempTupleDeepCopy(inner_tuple, &m_partitionPool);
+            }
+        }
+        innerPartitions[ii].reset();
+        {
+            SpilledOuterIterator spilledOuter(outerPartitions[ii].get(), outerPartitions[ii]->schema(),
+                                              &m_partitionPool);
+            joinPartition(state, spilledOuter, innerPartition);
+        }
+        outerPartitions[ii].reset();
+    }
+}
@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREHASHJOINEXECUTOR_H
+#define HSTOREHASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/Pool.hpp"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+#include "boost/shared_ptr.hpp"
+
+#include <string>
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+class LargeTempTable;
+class TempTable;
+class TempTableLimits;
+class TupleSchema;
+
+/**
+ * Equi-join executor. The inner input is loaded into a hash table keyed on
+ * the inner hash key expressions and each outer tuple probes it once, so the
+ * cost is linear in the size of both inputs rather than their product.
+ *
+ * When the hash table for the inner input would not fit under the temp table
+ * memory limit, both inputs are first partitioned on the same key hash into
+ * LargeTempTables, which can page their blocks out through the topend, and
+ * the partitions are then joined pairwise. A partition whose inner side
+ * still doesn't fit is partitioned again on a differently mixed hash.
+ * Output order follows the outer input only when no partitioning was needed.
+ */
+class HashJoinExecutor : public AbstractJoinExecutor {
+    public:
+        HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+            AbstractJoinExecutor(engine, abstract_node),
+            m_keySchema(NULL),
+            m_limits(NULL) { }
+        ~HashJoinExecutor();
+
+        // Most partitions a spilled join is split into
+        static const int MAX_SPILL_PARTITIONS = 64;
+        // Most times a spilled partition is split again when its inner side still doesn't fit.
+        // Past that the partition is joined as it is, only many equal keys keep it that large.
+        static const int MAX_SPILL_DEPTH = 3;
+
+    private:
+        struct JoinState;
+
+        bool p_init(AbstractPlanNode*, TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        // Evaluate the keys against one side of the join into the key tuple.
+        // Returns false if any key is NULL, such a tuple can never match.
+        bool setKeyTuple(TableTuple& keyTuple, const std::vector<AbstractExpression*>& keys,
+                         const TableTuple* outerTuple, const TableTuple* innerTuple, Pool* pool);
+
+        // Rough number of bytes needed to hash the given number of inner tuples
+        int64_t estimateBuildBytes(int64_t innerTupleCount) const;
+
+        // Number of partitions to split the inner tuples into so that each one can be
+        // hashed within the memory limit, or 0 if they can be hashed as they are.
+        // loadBytes is what bringing the inner tuples into memory would still add.
+        int spillPartitionCount(int64_t innerTupleCount, int32_t innerTupleLength, int64_t loadBytes) const;
+
+        // Build a hash table over innerTable and probe it with every tuple from outerIterator
+        template <class OuterIterator>
+        void joinPartition(JoinState& state, OuterIterator& outerIterator, Table* innerTable);
+
+        // Hand the joined tuple to the output table or the inline aggregate
+        void outputJoinTuple(JoinState& state);
+
+        typedef std::vector<boost::shared_ptr<LargeTempTable> > Partitions;
+
+        // Partition both inputs on the key hash and join the partitions one by one
+        void spillAndJoin(JoinState& state, Table* outerTable, Table* innerTable, int partitionCount);
+
+        // Create the given number of empty partitions for tuples of the table
+        void createPartitions(Partitions& partitions, const Table* table, const std::string& name, int partitionCount);
+
+        // Route every tuple from iterator to the partition of its key hash at the given depth
+        template <class Iterator>
+        void partitionTuples(JoinState& state, Iterator& iterator, const TupleSchema* schema,
+                             bool outer, Partitions& partitions, int depth);
+
+        // Join the partitions pairwise, splitting again any whose inner side doesn't fit
+        void joinPartitions(JoinState& state, Partitions& outerPartitions, Partitions& innerPartitions,
+                            TempTable* innerPartition, int depth);
+
+        // Key tuples of the inner (build) side
+        TupleSchema* m_keySchema;
+        // Backs the key tuples of the hash table and is purged for every build
+        Pool m_buildPool;
+        // Backs the key tuple of the current probe
+        Pool m_probePool;
+        // Backs the uninlined values of the spilled partition being joined
+        Pool m_partitionPool;
+        TempTableLimits* m_limits;
+};
+
+}
+
+#endif
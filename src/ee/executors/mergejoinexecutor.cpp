@@ -0,0 +1,258 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "mergejoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "expressions/abstractexpression.h"
+#include "indexes/tableindex.h"
+#include "plannodes/indexscannode.h"
+#include "plannodes/mergejoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/persistenttable.h"
+#include "storage/table.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+
+#include <vector>
+
+using namespace std;
+using namespace voltdb;
+
+bool MergeJoinExecutor::p_init(AbstractPlanNode* abstractNode,
+                               TempTableLimits* limits)
+{
+    VOLT_TRACE("init MergeJoin Executor");
+    assert(limits);
+
+    MergeJoinPlanNode* node = dynamic_cast<MergeJoinPlanNode*>(m_abstractNode);
+    assert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, limits)) {
+        return false;
+    }
+    // The planner leaves FULL joins to the nest loops
+    assert(m_joinType != JOIN_TYPE_FULL);
+
+    // The inner side is the inlined index scan, walked in place as the NLIJ does
+    m_indexNode =
+        dynamic_cast<IndexScanPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_INDEXSCAN));
+    assert(m_indexNode);
+
+    // We need exactly one input table and a target table
+    assert(node->getInputTableCount() == 1);
+    assert(node->getInputTable());
+
+    node->getOutputColumnExpressions(m_outputExpressions);
+
+    PersistentTable* inner_table = dynamic_cast<PersistentTable*>(m_indexNode->getTargetTable());
+    assert(inner_table);
+
+    // Grab the Index from our inner table
+    // We'll throw an error if the index is missing
+    if (inner_table->index(m_indexNode->getTargetIndexName()) == NULL) {
+        VOLT_ERROR("Failed to retreive index '%s' from inner table '%s' for"
+                   " internal PlanNode '%s'",
+                   m_indexNode->getTargetIndexName().c_str(),
+                   inner_table->name().c_str(), m_indexNode->debug().c_str());
+        return false;
+    }
+
+    // NULL tuple for left joins
+    p_init_null_tuples(node->getInputTable(), inner_table);
+
+    return true;
+}
+
+bool MergeJoinExecutor::evalKeys(std::vector<NValue>& values,
+                                 const std::vector<AbstractExpression*>& keys,
+                                 const TableTuple* outerTuple,
+                                 const TableTuple* innerTuple)
+{
+    for (int ii = 0; ii < keys.size(); ii++) {
+        values[ii] = keys[ii]->eval(outerTuple, innerTuple);
+        if (values[ii].isNull()) {
+            return false;
+        }
+    }
+    return true;
+}
+
+int MergeJoinExecutor::compareKeys(const std::vector<NValue>& lhs, const std::vector<NValue>& rhs)
+{
+    assert(lhs.size() == rhs.size());
+    for (int ii = 0; ii < lhs.size(); ii++) {
+        int cmp = lhs[ii].compare(rhs[ii]);
+        if (cmp != VALUE_COMPARE_EQUAL) {
+            return cmp;
+        }
+    }
+    return VALUE_COMPARE_EQUAL;
+}
+
+bool MergeJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing MergeJoin...");
+
+    MergeJoinPlanNode* node = dynamic_cast<MergeJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 1);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    PersistentTable* inner_table = dynamic_cast<PersistentTable*>(m_indexNode->getTargetTable());
+    assert(inner_table);
+    TableIndex* index = inner_table->index(m_indexNode->getTargetIndexName());
+    assert(index);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    AbstractExpression *preJoinPredicate = node->getPreJoinPredicate();
+    AbstractExpression *joinPredicate = node->getJoinPredicate();
+    const std::vector<AbstractExpression*>& outerKeys = node->getOuterMergeKeys();
+    const std::vector<AbstractExpression*>& innerKeys = node->getInnerMergeKeys();
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    int outer_cols = outer_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    const TableTuple& null_inner_tuple = m_null_inner_tuple.tuple();
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    // Init the postfilter
+    CountingPostfilter postfilter(m_tmpOutputTable, node->getWherePredicate(), limit, offset);
+
+    TableTuple join_tuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+    } else {
+        join_tuple = m_tmpOutputTable->tempTuple();
+    }
+
+    // The inner tuples are visited in place through the index and stay put,
+    // so the run of inner tuples matching the current key is kept by address.
+    TableIterator iterator0 = outer_table->iteratorDeletingAsWeGo();
+    IndexCursor indexCursor(index->getTupleSchema());
+    index->moveToEnd(true, indexCursor);
+    TableTuple next_inner_tuple = index->nextValue(indexCursor);
+
+    std::vector<NValue> outerKey(outerKeys.size());
+    std::vector<NValue> innerKey(innerKeys.size());
+    // Key of the current inner run, taken from its first tuple
+    std::vector<NValue> runKey(innerKeys.size());
+    std::vector<char*> innerRun;
+    bool haveRun = false;
+
+    while (postfilter.isUnderLimit() && iterator0.next(outer_tuple)) {
+        pmp.countdownProgress();
+
+        // populate output table's temp tuple with outer table's values
+        join_tuple.setNValues(0, outer_tuple, 0, outer_cols);
+
+        // did this loop body find at least one match for this tuple?
+        bool outerMatch = false;
+        // For outer joins if outer tuple fails pre-join predicate
+        // (join expression based on the outer table only)
+        // it can't match any of inner tuples.
+        // An outer tuple with a NULL key doesn't match either, and leaves the inner side alone.
+        if ((preJoinPredicate == NULL || preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) &&
+                evalKeys(outerKey, outerKeys, &outer_tuple, NULL)) {
+
+            if ( ! haveRun || compareKeys(outerKey, runKey) != VALUE_COMPARE_EQUAL) {
+                // Move the inner side up to this key and collect the run of tuples
+                // that share it. Anything skipped on the way is smaller than every
+                // outer key still to come.
+                innerRun.clear();
+                haveRun = false;
+                while ( ! next_inner_tuple.isNullTuple()) {
+                    pmp.countdownProgress();
+                    if ( ! next_inner_tuple.isPendingDelete() &&
+                            evalKeys(innerKey, innerKeys, NULL, &next_inner_tuple)) {
+                        int cmp = compareKeys(innerKey, outerKey);
+                        if (cmp == VALUE_COMPARE_GREATERTHAN) {
+                            break;
+                        }
+                        if (cmp == VALUE_COMPARE_EQUAL) {
+                            if ( ! haveRun) {
+                                runKey = innerKey;
+                                haveRun = true;
+                            }
+                            innerRun.push_back(next_inner_tuple.address());
+                        }
+                    }
+                    next_inner_tuple = index->nextValue(indexCursor);
+                }
+            }
+
+            for (std::vector<char*>::const_iterator it = innerRun.begin();
+                    postfilter.isUnderLimit() && it != innerRun.end(); ++it) {
+                inner_tuple.move(*it);
+                // The merge keys are only part of the join predicate, apply all of it
+                if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                    outerMatch = true;
+                    // Filter the joined tuple
+                    if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                        // Matched! Complete the joined tuple with the inner column values.
+                        for (int col = outer_cols; col < join_tuple.sizeInValues(); ++col) {
+                            join_tuple.setNValue(col, m_outputExpressions[col]->eval(&outer_tuple, &inner_tuple));
+                        }
+                        outputTuple(postfilter, join_tuple, pmp);
+                    }
+                }
+            }
+        } // END IF PRE JOIN CONDITION
+
+        //
+        // Left Outer Join
+        //
+        if (m_joinType == JOIN_TYPE_LEFT && !outerMatch && postfilter.isUnderLimit()) {
+            // Still needs to pass the filter
+            if (postfilter.eval(&outer_tuple, &null_inner_tuple)) {
+                // Matched! Complete the joined tuple with the inner column values.
+                for (int col = outer_cols; col < join_tuple.sizeInValues(); ++col) {
+                    join_tuple.setNValue(col, m_outputExpressions[col]->eval(&outer_tuple, &null_inner_tuple));
+                }
+                outputTuple(postfilter, join_tuple, pmp);
+            }
+        } // END IF LEFT OUTER JOIN
+    } // END OUTER WHILE LOOP
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    cleanupInputTempTable(outer_table);
+
+    return (true);
+}
@@ -0,0 +1,65 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREMERGEJOINEXECUTOR_H
+#define HSTOREMERGEJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+class IndexScanPlanNode;
+class TempTableLimits;
+
+/**
+ * Equi-join executor for an outer input and an inline forward scan of an inner
+ * tree index, both sorted ascending on their merge keys. The inner index is
+ * walked in place, as the NLIJ does, rather than copied into a temp table.
+ * Both sides are walked side by side, each tuple is read once, and only the
+ * run of inner tuples sharing the current key is remembered so that
+ * consecutive outer tuples with the same key can all be paired with it.
+ * The output keeps the order of the outer input.
+ */
+class MergeJoinExecutor : public AbstractJoinExecutor {
+    public:
+        MergeJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+            AbstractJoinExecutor(engine, abstract_node), m_indexNode(NULL) { }
+
+    private:
+        bool p_init(AbstractPlanNode*, TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        // Evaluate the keys against one side of the join.
+        // Returns false if any key is NULL, such a tuple can never match.
+        static bool evalKeys(std::vector<NValue>& values, const std::vector<AbstractExpression*>& keys,
+                             const TableTuple* outerTuple, const TableTuple* innerTuple);
+
+        // Compare two sets of keys in the order the inputs are sorted on
+        static int compareKeys(const std::vector<NValue>& lhs, const std::vector<NValue>& rhs);
+
+        IndexScanPlanNode* m_indexNode;
+        std::vector<AbstractExpression*> m_outputExpressions;
+};
+
+}
+
+#endif
@@ -241,7 +241,17 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             temp_tuple = m_tmpOutputTable->tempTuple();
         }
 
-        while (postfilter.isUnderLimit() && iterator.next(tuple))
+        // Tuples of a persistent table stay put while it is scanned, which
+        // lets whole batches of them be filtered and projected at once.
+        // The temp tables of a subquery free their blocks as they go, and
+        // LIMIT/OFFSET or an inline insert want one tuple at a time.
+        bool batched = ! node->isSubQuery() && limit_node == NULL && m_insertExec == NULL;
+        if (batched) {
+            scanInBatches(iterator, input_table->schema(), predicate, projectionNode,
+                          temp_tuple, postfilter, pmp);
+        }
+
+        while ( ! batched && postfilter.isUnderLimit() && iterator.next(tuple))
         {
 #if   defined(VOLT_TRACE_ENABLED)
             int tuple_ctr = 0;
@@ -297,6 +307,83 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     return true;
 }
 
+void SeqScanExecutor::scanInBatches(TableIterator& iterator, const TupleSchema* inputSchema,
+                                    const AbstractExpression* predicate,
+                                    const ProjectionPlanNode* projectionNode,
+                                    const TableTuple& temp_tuple,
+                                    CountingPostfilter& postfilter,
+                                    ProgressMonitorProxy& pmp)
+{
+    const int batchSize = AbstractExpression::BATCH_SIZE;
+    std::vector<TableTuple> tuples(batchSize, TableTuple(inputSchema));
+    int selection[batchSize];
+
+    // Projected rows are built in a batch of tuples like temp_tuple,
+    // so that an inline aggregate can take them all at once too.
+    std::vector<TableTuple> projected;
+    std::vector<char> projectedStorage;
+    std::vector<NValue> values;
+    int identity[batchSize];
+    if (projectionNode != NULL) {
+        const TupleSchema* projectedSchema = temp_tuple.getSchema();
+        size_t tupleLength = projectedSchema->tupleLength() + TUPLE_HEADER_SIZE;
+        projectedStorage.resize(tupleLength * batchSize);
+        for (int ii = 0; ii < batchSize; ii++) {
+            projected.push_back(TableTuple(&projectedStorage[tupleLength * ii], projectedSchema));
+        }
+        values.resize(batchSize);
+        for (int ii = 0; ii < batchSize; ii++) {
+            identity[ii] = ii;
+        }
+    }
+
+    bool moreTuples = true;
+    while (moreTuples && postfilter.isUnderLimit()) {
+        int count = 0;
+        while (count < batchSize && (moreTuples = iterator.next(tuples[count]))) {
+            pmp.countdownProgress();
+            selection[count] = count;
+            ++count;
+        }
+        if (predicate != NULL) {
+            count = predicate->filterBatch(&tuples[0], selection, count);
+        }
+        if (count == 0) {
+            continue;
+        }
+
+        if (projectionNode != NULL) {
+            VOLT_TRACE("inline projection...");
+            const std::vector<AbstractExpression*>& exprs = projectionNode->getOutputColumnExpressions();
+            for (int ctr = 0; ctr < exprs.size(); ctr++) {
+                exprs[ctr]->evalBatch(&tuples[0], selection, count, &values[0]);
+                for (int ii = 0; ii < count; ii++) {
+                    projected[ii].setNValue(ctr, values[ii]);
+                }
+            }
+            if (m_aggExec != NULL) {
+                m_aggExec->p_execute_tuples(&projected[0], identity, count);
+            }
+            else {
+                for (int ii = 0; ii < count; ii++) {
+                    outputTuple(projected[ii]);
+                }
+            }
+        }
+        else if (m_aggExec != NULL) {
+            m_aggExec->p_execute_tuples(&tuples[0], selection, count);
+        }
+        else {
+            for (int ii = 0; ii < count; ii++) {
+                outputTuple(tuples[selection[ii]]);
+            }
+        }
+        for (int ii = 0; ii < count; ii++) {
+            pmp.countdownProgress();
+        }
+    }
+}
+
 /*
  * We may output a tuple to an inline aggregate or
  * inline insert node.  If there is a limit or projection, this will have
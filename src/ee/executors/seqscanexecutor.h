@@ -53,9 +53,13 @@
 
 namespace voltdb
 {
+    class AbstractExpression;
     class AggregateExecutorBase;
     struct CountingPostfilter;
     class InsertExecutor;
+    class ProgressMonitorProxy;
+    class ProjectionPlanNode;
+    class TableIterator;
 
     class SeqScanExecutor : public AbstractExecutor {
     public:
@@ -77,6 +81,18 @@ namespace voltdb
          */
         void outputTuple(TableTuple& tuple);
 
+        /**
+         * Scan a persistent table AbstractExpression::BATCH_SIZE tuples
+         * at a time, filtering, projecting and aggregating each batch with
+         * the batch evaluation of the expressions.
+         */
+        void scanInBatches(TableIterator& iterator, const TupleSchema* inputSchema,
+                           const AbstractExpression* predicate,
+                           const ProjectionPlanNode* projectionNode,
+                           const TableTuple& temp_tuple,
+                           CountingPostfilter& postfilter,
+                           ProgressMonitorProxy& pmp);
+
         // These are logically local variables to p_execute.
         // But we need to share them between p_execute and
         // outputTuple, so we save them here.  They come out of
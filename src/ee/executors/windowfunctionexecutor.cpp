@@ -439,7 +439,7 @@ bool WindowFunctionExecutor::p_init(AbstractPlanNode *init_node, TempTableLimits
      * Initialize the memory pool early, so that we can
      * use it for constructing temp. tuples.
      */
-    m_memoryPool.purge();
+    m_memoryPool.purgeKeepingRecentPeak();
 
     assert( getInProgressPartitionByKeyTuple().isNullTuple());
     assert( getInProgressOrderByKeyTuple().isNullTuple());
@@ -840,7 +840,7 @@ void WindowFunctionExecutor::p_execute_finish() {
     assert( getLastPartitionByKeyTuple().isNullTuple());
     assert( getLastOrderByKeyTuple().isNullTuple());
     assert( getBufferedInputTuple().isNullTuple());
-    m_memoryPool.purge();
+    m_memoryPool.purgeKeepingRecentPeak();
     VOLT_DEBUG("WindowFunctionExecutor::p_execute_finish() end\n");
 }
 
@@ -47,6 +47,8 @@
 
 #include "common/debuglog.h"
 #include "common/serializeio.h"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
 #include "common/types.h"
 #include "expressions/expressionutil.h"
 
@@ -96,6 +98,45 @@ AbstractExpression::hasParameter() const
     return (m_right && m_right->hasParameter());
 }
 
+void
+AbstractExpression::evalBatch(const TableTuple* tuples, const int* selection, int count,
+                              NValue* results) const
+{
+    assert(count <= BATCH_SIZE);
+    for (int ii = 0; ii < count; ii++) {
+        results[ii] = eval(&tuples[selection[ii]], NULL);
+    }
+}
+
+int
+AbstractExpression::filterBatch(const TableTuple* tuples, int* selection, int count) const
+{
+    NValue results[BATCH_SIZE];
+    evalBatch(tuples, selection, count, results);
+    int passed = 0;
+    for (int ii = 0; ii < count; ii++) {
+        if (results[ii].isTrue()) {
+            selection[passed++] = selection[ii];
+        }
+    }
+    return passed;
+}
+
+bool
+AbstractExpression::fillBatchWithBigInt(const NValue& value, int count, int64_t* values, bool* nulls)
+{
+    const bool isNull = value.isNull();
+    if ( ! isNull && ! isIntegralType(ValuePeeker::peekValueType(value))) {
+        return false;
+    }
+    const int64_t bigInt = isNull ? INT64_NULL : ValuePeeker::peekAsBigInt(value);
+    for (int ii = 0; ii < count; ii++) {
+        values[ii] = bigInt;
+        nulls[ii] = isNull;
+    }
+    return true;
+}
+
 bool
 AbstractExpression::initParamShortCircuits()
 {
@@ -73,6 +73,46 @@ class AbstractExpression {
 
     virtual NValue eval(const TableTuple *tuple1 = NULL, const TableTuple *tuple2 = NULL) const = 0;
 
+    /** The most tuples evalBatch and filterBatch take at once */
+    static const int BATCH_SIZE = 256;
+
+    /**
+     * Evaluate a batch of tuples, tuples[selection[0..count-1]], into
+     * results[0..count-1], as if eval(&tuple, NULL) were called on each in
+     * turn. The default does just that. Comparisons, conjunctions, arithmetic
+     * and value expressions override it to visit each node once per batch
+     * instead of once per tuple. count may not exceed BATCH_SIZE.
+     */
+    virtual void evalBatch(const TableTuple* tuples, const int* selection, int count,
+                           NValue* results) const;
+
+    /**
+     * Narrow the selection down to the tuples for which this expression is
+     * true, keeping their order, and return how many are left. Boolean
+     * expressions override it to skip materializing their results.
+     */
+    virtual int filterBatch(const TableTuple* tuples, int* selection, int count) const;
+
+    /**
+     * Evaluate a batch of an integer expression as raw int64 values, with
+     * NULLs flagged, to spare the NValues. Returns false when this expression
+     * can't, perhaps only for this batch, and the caller should fall back on
+     * evalBatch. Integer columns, constants and parameters and the integer
+     * arithmetic on them can; nothing else does by default.
+     */
+    virtual bool evalBatchAsBigInts(const TableTuple* tuples, const int* selection, int count,
+                                    int64_t* values, bool* nulls) const {
+        return false;
+    }
+
+    /**
+     * Is the value the same for every tuple, so that a batch only needs it
+     * once? True of constants and parameters.
+     */
+    bool isTupleIndependent() const {
+        return m_type == EXPRESSION_TYPE_VALUE_CONSTANT || m_type == EXPRESSION_TYPE_VALUE_PARAMETER;
+    }
+
     /** return true if self or descendent should be substitute()'d */
     virtual bool hasParameter() const;
 
@@ -143,6 +183,12 @@ class AbstractExpression {
                        AbstractExpression *left,
                        AbstractExpression *right);
 
+    /**
+     * evalBatchAsBigInts for a value that is the same for every tuple:
+     * fill the batch with it, if it is an integer or NULL.
+     */
+    static bool fillBatchWithBigInt(const NValue& value, int count, int64_t* values, bool* nulls);
+
   private:
     static AbstractExpression* buildExpressionTree_recurse(PlannerDomValue obj);
     bool initParamShortCircuits();
@@ -211,6 +211,51 @@ public:
     inline static bool isNullRejecting() { return true; }
 };
 
+// The comparisons that can also be made on raw integer values, which lets
+// ComparisonExpression::filterBatch compare integer operands without an
+// NValue per tuple. passes() is true where the comparison would be.
+template <typename OP>
+struct IntegerComparison {
+    static const bool supported = false;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return false; }
+};
+
+template <> struct IntegerComparison<CmpEq> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l == r; }
+};
+
+// Two NULLs are not distinct either
+template <> struct IntegerComparison<CmpNotDistinct> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return lnull ? rnull : ( ! rnull && l == r); }
+};
+
+template <> struct IntegerComparison<CmpNe> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l != r; }
+};
+
+template <> struct IntegerComparison<CmpLt> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l < r; }
+};
+
+template <> struct IntegerComparison<CmpGt> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l > r; }
+};
+
+template <> struct IntegerComparison<CmpLte> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l <= r; }
+};
+
+template <> struct IntegerComparison<CmpGte> {
+    static const bool supported = true;
+    inline static bool passes(int64_t l, bool lnull, int64_t r, bool rnull) { return ! (lnull || rnull) && l >= r; }
+};
+
 template <typename OP>
 class ComparisonExpression : public AbstractExpression {
 public:
@@ -255,6 +300,54 @@ public:
         return OP::compare(lnv, rnv);
     }
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const
+    {
+        assert(m_left != NULL);
+        assert(m_right != NULL);
+
+        NValue lnvs[BATCH_SIZE];
+        m_left->evalBatch(tuples, selection, count, lnvs);
+        if (m_right->isTupleIndependent()) {
+            NValue rnv = m_right->eval(NULL, NULL);
+            for (int ii = 0; ii < count; ii++) {
+                results[ii] = compareValues(lnvs[ii], rnv);
+            }
+            return;
+        }
+        compareWithRight(lnvs, tuples, selection, count, results);
+    }
+
+    int filterBatch(const TableTuple* tuples, int* selection, int count) const
+    {
+        assert(m_left != NULL);
+        assert(m_right != NULL);
+
+        int passed = 0;
+        if (IntegerComparison<OP>::supported && filterIntegers(tuples, selection, count, passed)) {
+            return passed;
+        }
+
+        NValue lnvs[BATCH_SIZE];
+        m_left->evalBatch(tuples, selection, count, lnvs);
+        if (m_right->isTupleIndependent()) {
+            NValue rnv = m_right->eval(NULL, NULL);
+            for (int ii = 0; ii < count; ii++) {
+                if (compareValues(lnvs[ii], rnv).isTrue()) {
+                    selection[passed++] = selection[ii];
+                }
+            }
+            return passed;
+        }
+        NValue results[BATCH_SIZE];
+        compareWithRight(lnvs, tuples, selection, count, results);
+        for (int ii = 0; ii < count; ii++) {
+            if (results[ii].isTrue()) {
+                selection[passed++] = selection[ii];
+            }
+        }
+        return passed;
+    }
+
     inline const char* traceEval(const TableTuple *tuple1, const TableTuple *tuple2) const
     {
         NValue lnv;
@@ -272,6 +365,60 @@ public:
     }
 
 private:
+    inline static NValue compareValues(const NValue& lnv, const NValue& rnv)
+    {
+        if ((lnv.isNull() || rnv.isNull()) && OP::isNullRejecting()) {
+            return NValue::getNullValue(VALUE_TYPE_BOOLEAN);
+        }
+        return OP::compare(lnv, rnv);
+    }
+
+    // Filter on two integer operands using their raw values. Returns false,
+    // having done nothing, if either can't provide them.
+    bool filterIntegers(const TableTuple* tuples, int* selection, int count, int& passed) const
+    {
+        int64_t lvalues[BATCH_SIZE];
+        bool lnulls[BATCH_SIZE];
+        int64_t rvalues[BATCH_SIZE];
+        bool rnulls[BATCH_SIZE];
+        if ( ! m_left->evalBatchAsBigInts(tuples, selection, count, lvalues, lnulls) ||
+                ! m_right->evalBatchAsBigInts(tuples, selection, count, rvalues, rnulls)) {
+            return false;
+        }
+        passed = 0;
+        for (int ii = 0; ii < count; ii++) {
+            // Branch free, as any part of a batch may pass
+            selection[passed] = selection[ii];
+            passed += IntegerComparison<OP>::passes(lvalues[ii], lnulls[ii], rvalues[ii], rnulls[ii]);
+        }
+        return true;
+    }
+
+    // Finish a batch given the values of the left side. As in eval, the right
+    // side is only evaluated where the left side doesn't decide the result.
+    void compareWithRight(const NValue* lnvs, const TableTuple* tuples, const int* selection, int count,
+                          NValue* results) const
+    {
+        int rightSelection[BATCH_SIZE];
+        int rightPositions[BATCH_SIZE];
+        int rightCount = 0;
+        for (int ii = 0; ii < count; ii++) {
+            if (lnvs[ii].isNull() && OP::isNullRejecting()) {
+                results[ii] = NValue::getNullValue(VALUE_TYPE_BOOLEAN);
+            }
+            else {
+                rightSelection[rightCount] = selection[ii];
+                rightPositions[rightCount++] = ii;
+            }
+        }
+
+        NValue rnvs[BATCH_SIZE];
+        m_right->evalBatch(tuples, rightSelection, rightCount, rnvs);
+        for (int ii = 0; ii < rightCount; ii++) {
+            results[rightPositions[ii]] = compareValues(lnvs[rightPositions[ii]], rnvs[ii]);
+        }
+    }
+
     AbstractExpression *m_left;
     AbstractExpression *m_right;
 };
@@ -52,6 +52,7 @@
 
 #include "expressions/abstractexpression.h"
 
+#include <algorithm>
 #include <string>
 
 namespace voltdb {
@@ -74,6 +75,10 @@ class ConjunctionExpression : public AbstractExpression
 
     NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const;
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const;
+
+    int filterBatch(const TableTuple* tuples, int* selection, int count) const;
+
     std::string debugInfo(const std::string &spacer) const {
         return (spacer + "ConjunctionExpression\n");
     }
@@ -130,5 +135,112 @@ ConjunctionExpression<ConjunctionOr>::eval(const TableTuple *tuple1,
     return NValue::getNullValue(VALUE_TYPE_BOOLEAN);
 }
 
+template<> inline void
+ConjunctionExpression<ConjunctionAnd>::evalBatch(const TableTuple* tuples, const int* selection,
+                                                 int count, NValue* results) const
+{
+    NValue leftBools[BATCH_SIZE];
+    m_left->evalBatch(tuples, selection, count, leftBools);
+    // Only the tuples not already decided by a False on the left go right
+    int rightSelection[BATCH_SIZE];
+    int rightPositions[BATCH_SIZE];
+    int rightCount = 0;
+    for (int ii = 0; ii < count; ii++) {
+        if (leftBools[ii].isFalse()) {
+            results[ii] = leftBools[ii];
+        }
+        else {
+            rightSelection[rightCount] = selection[ii];
+            rightPositions[rightCount++] = ii;
+        }
+    }
+    NValue rightBools[BATCH_SIZE];
+    m_right->evalBatch(tuples, rightSelection, rightCount, rightBools);
+    for (int ii = 0; ii < rightCount; ii++) {
+        int pos = rightPositions[ii];
+        if (leftBools[pos].isTrue() || rightBools[ii].isFalse()) {
+            results[pos] = rightBools[ii];
+        }
+        else {
+            results[pos] = NValue::getNullValue(VALUE_TYPE_BOOLEAN);
+        }
+    }
+}
+
+template<> inline void
+ConjunctionExpression<ConjunctionOr>::evalBatch(const TableTuple* tuples, const int* selection,
+                                                int count, NValue* results) const
+{
+    NValue leftBools[BATCH_SIZE];
+    m_left->evalBatch(tuples, selection, count, leftBools);
+    // Only the tuples not already decided by a True on the left go right
+    int rightSelection[BATCH_SIZE];
+    int rightPositions[BATCH_SIZE];
+    int rightCount = 0;
+    for (int ii = 0; ii < count; ii++) {
+        if (leftBools[ii].isTrue()) {
+            results[ii] = leftBools[ii];
+        }
+        else {
+            rightSelection[rightCount] = selection[ii];
+            rightPositions[rightCount++] = ii;
+        }
+    }
+    NValue rightBools[BATCH_SIZE];
+    m_right->evalBatch(tuples, rightSelection, rightCount, rightBools);
+    for (int ii = 0; ii < rightCount; ii++) {
+        int pos = rightPositions[ii];
+        if (leftBools[pos].isFalse() || rightBools[ii].isTrue()) {
+            results[pos] = rightBools[ii];
+        }
+        else {
+            results[pos] = NValue::getNullValue(VALUE_TYPE_BOOLEAN);
+        }
+    }
+}
+
+template<> inline int
+ConjunctionExpression<ConjunctionAnd>::filterBatch(const TableTuple* tuples, int* selection, int count) const
+{
+    // Only a True on both sides passes. Unlike eval, the right side is
+    // not evaluated where the left side is NULL, as that can't pass.
+    count = m_left->filterBatch(tuples, selection, count);
+    return m_right->filterBatch(tuples, selection, count);
+}
+
+template<> inline int
+ConjunctionExpression<ConjunctionOr>::filterBatch(const TableTuple* tuples, int* selection, int count) const
+{
+    int leftSelection[BATCH_SIZE];
+    std::copy(selection, selection + count, leftSelection);
+    int leftPassed = m_left->filterBatch(tuples, leftSelection, count);
+    if (leftPassed == count) {
+        return count;
+    }
+    // The tuples that didn't pass on the left get their chance on the right
+    int rightSelection[BATCH_SIZE];
+    int rightCount = 0;
+    for (int ii = 0, leftNext = 0; ii < count; ii++) {
+        if (leftNext < leftPassed && leftSelection[leftNext] == selection[ii]) {
+            ++leftNext;
+        }
+        else {
+            rightSelection[rightCount++] = selection[ii];
+        }
+    }
+    int rightPassed = m_right->filterBatch(tuples, rightSelection, rightCount);
+    // Merge the two back together in their original order
+    int passed = 0;
+    for (int ii = 0, leftNext = 0, rightNext = 0; ii < count; ii++) {
+        if (leftNext < leftPassed && leftSelection[leftNext] == selection[ii]) {
+            selection[passed++] = leftSelection[leftNext++];
+        }
+        else if (rightNext < rightPassed && rightSelection[rightNext] == selection[ii]) {
+            selection[passed++] = rightSelection[rightNext++];
+        }
+    }
+    return passed;
+}
+
 }
 #endif
@@ -73,6 +73,19 @@ class ConstantValueExpression : public AbstractExpression {
         return this->value;
     }
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const
+    {
+        for (int ii = 0; ii < count; ii++) {
+            results[ii] = this->value;
+        }
+    }
+
+    bool evalBatchAsBigInts(const TableTuple* tuples, const int* selection, int count,
+                            int64_t* values, bool* nulls) const
+    {
+        return fillBatchWithBigInt(this->value, count, values, nulls);
+    }
+
     std::string debugInfo(const std::string &spacer) const {
         return spacer + "OptimizedConstantValueExpression:" +
           value.debug() + "\n";
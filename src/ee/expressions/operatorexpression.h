@@ -107,6 +107,36 @@ class OperatorIsNullExpression : public AbstractExpression {
        }
    }
 
+   void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const {
+       assert(m_left);
+       m_left->evalBatch(tuples, selection, count, results);
+       for (int ii = 0; ii < count; ii++) {
+           results[ii] = results[ii].isNull() ? NValue::getTrue() : NValue::getFalse();
+       }
+   }
+
+   int filterBatch(const TableTuple* tuples, int* selection, int count) const {
+       assert(m_left);
+       int passed = 0;
+       int64_t bigInts[BATCH_SIZE];
+       bool nulls[BATCH_SIZE];
+       if (m_left->evalBatchAsBigInts(tuples, selection, count, bigInts, nulls)) {
+           for (int ii = 0; ii < count; ii++) {
+               selection[passed] = selection[ii];
+               passed += nulls[ii];
+           }
+           return passed;
+       }
+       NValue values[BATCH_SIZE];
+       m_left->evalBatch(tuples, selection, count, values);
+       for (int ii = 0; ii < count; ii++) {
+           if (values[ii].isNull()) {
+               selection[passed++] = selection[ii];
+           }
+       }
+       return passed;
+   }
+
    std::string debugInfo(const std::string &spacer) const {
        return (spacer + "OperatorIsNullExpression");
    }
@@ -203,24 +233,62 @@ private:
  * Binary operators.
  */
 
+/*
+ * opBigInts applies the operator to raw integers for the batch evaluation.
+ * It returns false where the result would not be a plain BIGINT (overflow,
+ * division by zero, the NULL value) and leaves those for op to report.
+ */
+
 class OpPlus {
 public:
     inline NValue op(NValue left, NValue right) const { return left.op_add(right); }
+    inline bool opBigInts(int64_t left, int64_t right, int64_t& result) const {
+        if ((right > 0 && left > INT64_MAX - right) || (right < 0 && left <= INT64_MIN - right)) {
+            return false;
+        }
+        result = left + right;
+        return true;
+    }
 };
 
 class OpMinus {
 public:
     inline NValue op(NValue left, NValue right) const { return left.op_subtract(right); }
+    inline bool opBigInts(int64_t left, int64_t right, int64_t& result) const {
+        if ((right < 0 && left > INT64_MAX + right) || (right > 0 && left <= INT64_MIN + right)) {
+            return false;
+        }
+        result = left - right;
+        return true;
+    }
 };
 
 class OpMultiply {
 public:
     inline NValue op(NValue left, NValue right) const { return left.op_multiply(right); }
+    inline bool opBigInts(int64_t left, int64_t right, int64_t& result) const {
+        if (left != 0 && right != 0) {
+            // Both magnitudes are below 2^63 as INT64_MIN is NULL
+            if (left > 0 ? (right > 0 ? left > INT64_MAX / right : right <= INT64_MIN / left)
+                         : (right > 0 ? left <= INT64_MIN / right : right < INT64_MAX / left)) {
+                return false;
+            }
+        }
+        result = left * right;
+        return true;
+    }
 };
 
 class OpDivide {
 public:
     inline NValue op(NValue left, NValue right) const { return left.op_divide(right); }
+    inline bool opBigInts(int64_t left, int64_t right, int64_t& result) const {
+        if (right == 0) {
+            return false;
+        }
+        result = left / right;
+        return true;
+    }
 };
 
 
@@ -247,6 +315,37 @@ class OperatorExpression : public AbstractExpression {
                        m_right->eval(tuple1, tuple2));
     }
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const
+    {
+        assert(m_left);
+        assert(m_right);
+        NValue rights[BATCH_SIZE];
+        m_left->evalBatch(tuples, selection, count, results);
+        m_right->evalBatch(tuples, selection, count, rights);
+        for (int ii = 0; ii < count; ii++) {
+            results[ii] = oper.op(results[ii], rights[ii]);
+        }
+    }
+
+    bool evalBatchAsBigInts(const TableTuple* tuples, const int* selection, int count,
+                            int64_t* values, bool* nulls) const
+    {
+        int64_t rights[BATCH_SIZE];
+        bool rightNulls[BATCH_SIZE];
+        if ( ! m_left->evalBatchAsBigInts(tuples, selection, count, values, nulls) ||
+                ! m_right->evalBatchAsBigInts(tuples, selection, count, rights, rightNulls)) {
+            return false;
+        }
+        bool fits = true;
+        for (int ii = 0; ii < count; ii++) {
+            nulls[ii] = nulls[ii] || rightNulls[ii];
+            if ( ! nulls[ii]) {
+                fits &= oper.opBigInts(values[ii], rights[ii], values[ii]);
+            }
+        }
+        return fits;
+    }
+
     std::string debugInfo(const std::string &spacer) const {
         return (spacer + "OptimizedOperatorExpression");
     }
@@ -75,6 +75,19 @@ public:
         return *m_paramValue;
     }
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const {
+        assert(m_paramValue != NULL);
+        for (int ii = 0; ii < count; ii++) {
+            results[ii] = *m_paramValue;
+        }
+    }
+
+    bool evalBatchAsBigInts(const TableTuple* tuples, const int* selection, int count,
+                            int64_t* values, bool* nulls) const {
+        assert(m_paramValue != NULL);
+        return fillBatchWithBigInt(*m_paramValue, count, values, nulls);
+    }
+
     bool hasParameter() const {
         // this class represents a parameter.
         return true;
@@ -83,6 +83,56 @@ class TupleValueExpression : public AbstractExpression {
         }
     }
 
+    void evalBatch(const TableTuple* tuples, const int* selection, int count, NValue* results) const {
+        // A batch only ever supplies tuple 1
+        if (tuple_idx != 0 && count > 0) {
+            throw SerializableEEException("TupleValueExpression::"
+                                          "evalBatch:"
+                                          " Couldn't find tuple 2 (possible index scan planning error)");
+        }
+        if (count == 0) {
+            return;
+        }
+        // The tuples of a batch share a schema, so the column is looked up once
+        const TupleSchema::ColumnInfo* columnInfo = tuples[selection[0]].getSchema()->getColumnInfo(value_idx);
+        const ValueType columnType = columnInfo->getVoltType();
+        const bool isInlined = columnInfo->inlined;
+        const uint32_t offset = TUPLE_HEADER_SIZE + columnInfo->offset;
+        for (int ii = 0; ii < count; ii++) {
+            results[ii] = NValue::initFromTupleStorage(tuples[selection[ii]].address() + offset,
+                                                       columnType, isInlined);
+        }
+    }
+
+    /**
+     * Read this column of a batch of tuples as raw integers, flagging NULLs.
+     * Returns false, having read nothing, unless it is an integer column.
+     */
+    bool evalBatchAsBigInts(const TableTuple* tuples, const int* selection, int count,
+                            int64_t* values, bool* nulls) const {
+        if (tuple_idx != 0 || count == 0) {
+            return false;
+        }
+        const TupleSchema::ColumnInfo* columnInfo = tuples[selection[0]].getSchema()->getColumnInfo(value_idx);
+        const uint32_t offset = TUPLE_HEADER_SIZE + columnInfo->offset;
+        switch (columnInfo->getVoltType()) {
+        case VALUE_TYPE_TINYINT:
+            readIntegers<int8_t>(tuples, selection, count, offset, INT8_NULL, values, nulls);
+            return true;
+        case VALUE_TYPE_SMALLINT:
+            readIntegers<int16_t>(tuples, selection, count, offset, INT16_NULL, values, nulls);
+            return true;
+        case VALUE_TYPE_INTEGER:
+            readIntegers<int32_t>(tuples, selection, count, offset, INT32_NULL, values, nulls);
+            return true;
+        case VALUE_TYPE_BIGINT:
+            readIntegers<int64_t>(tuples, selection, count, offset, INT64_NULL, values, nulls);
+            return true;
+        default:
+            return false;
+        }
+    }
+
     std::string debugInfo(const std::string &spacer) const {
         std::ostringstream buffer;
         buffer << spacer << "Optimized Column Reference[" << tuple_idx << ", " << value_idx << "]\n";
@@ -93,6 +143,16 @@ class TupleValueExpression : public AbstractExpression {
 
   protected:
 
+    template <typename T>
+    static void readIntegers(const TableTuple* tuples, const int* selection, int count, uint32_t offset,
+                             T nullValue, int64_t* values, bool* nulls) {
+        for (int ii = 0; ii < count; ii++) {
+            T value = *reinterpret_cast<const T*>(tuples[selection[ii]].address() + offset);
+            values[ii] = value;
+            nulls[ii] = (value == nullValue);
+        }
+    }
+
     const int tuple_idx;           // which tuple. defaults to tuple1
     const int value_idx;           // which (offset) column of the tuple
 };
@@ -0,0 +1,55 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREHASHJOINNODE_H
+#define HSTOREHASHJOINNODE_H
+
+#include "abstractjoinnode.h"
+
+namespace voltdb {
+
+/**
+ * Join node that builds a hash table over the inner input keyed on the
+ * inner hash key expressions, then probes it with the outer hash key
+ * expressions of each outer tuple. The keys come from the equality
+ * conjuncts of the join predicate, which is still evaluated in full for
+ * every candidate pair.
+ */
+class HashJoinPlanNode : public AbstractJoinPlanNode
+{
+public:
+    HashJoinPlanNode() { }
+    ~HashJoinPlanNode();
+    PlanNodeType getPlanNodeType() const;
+    std::string debugInfo(const std::string& spacer) const;
+
+    const std::vector<AbstractExpression*>& getOuterHashKeys() const { return m_outerHashKeys; }
+    const std::vector<AbstractExpression*>& getInnerHashKeys() const { return m_innerHashKeys; }
+
+protected:
+    void loadFromJSONObject(PlannerDomValue obj);
+
+private:
+    // Pairwise equal key expressions, evaluated against the outer and the
+    // inner tuple respectively.
+    OwningExpressionVector m_outerHashKeys;
+    OwningExpressionVector m_innerHashKeys;
+};
+
+} // namespace voltdb
+
+#endif
@@ -0,0 +1,54 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "mergejoinnode.h"
+
+#include "expressions/abstractexpression.h"
+
+#include <sstream>
+
+namespace voltdb {
+
+MergeJoinPlanNode::~MergeJoinPlanNode() { }
+
+PlanNodeType MergeJoinPlanNode::getPlanNodeType() const { return PLAN_NODE_TYPE_MERGEJOIN; }
+
+std::string MergeJoinPlanNode::debugInfo(const std::string& spacer) const
+{
+    std::ostringstream buffer;
+    buffer << AbstractJoinPlanNode::debugInfo(spacer);
+    buffer << spacer << "Outer Merge Keys:\n";
+    for (int ctr = 0, cnt = (int)m_outerMergeKeys.size(); ctr < cnt; ctr++) {
+        buffer << m_outerMergeKeys[ctr]->debug(spacer);
+    }
+    buffer << spacer << "Inner Merge Keys:\n";
+    for (int ctr = 0, cnt = (int)m_innerMergeKeys.size(); ctr < cnt; ctr++) {
+        buffer << m_innerMergeKeys[ctr]->debug(spacer);
+    }
+    return buffer.str();
+}
+
+void MergeJoinPlanNode::loadFromJSONObject(PlannerDomValue obj)
+{
+    AbstractJoinPlanNode::loadFromJSONObject(obj);
+    m_outerMergeKeys.loadExpressionArrayFromJSONObject("OUTER_MERGE_KEYS", obj);
+    m_innerMergeKeys.loadExpressionArrayFromJSONObject("INNER_MERGE_KEYS", obj);
+    assert(m_outerMergeKeys.size() == m_innerMergeKeys.size());
+    assert( ! m_outerMergeKeys.empty());
+}
+
+} // namespace voltdb
@@ -0,0 +1,54 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREMERGEJOINNODE_H
+#define HSTOREMERGEJOINNODE_H
+
+#include "abstractjoinnode.h"
+
+namespace voltdb {
+
+/**
+ * Join node over two inputs that both arrive in ascending order of their
+ * merge key expressions, typically from forward scans of tree indexes. The
+ * keys come from the equality conjuncts of the join predicate, which is
+ * still evaluated in full for every pair with equal keys.
+ */
+class MergeJoinPlanNode : public AbstractJoinPlanNode
+{
+public:
+    MergeJoinPlanNode() { }
+    ~MergeJoinPlanNode();
+    PlanNodeType getPlanNodeType() const;
+    std::string debugInfo(const std::string& spacer) const;
+
+    const std::vector<AbstractExpression*>& getOuterMergeKeys() const { return m_outerMergeKeys; }
+    const std::vector<AbstractExpression*>& getInnerMergeKeys() const { return m_innerMergeKeys; }
+
+protected:
+    void loadFromJSONObject(PlannerDomValue obj);
+
+private:
+    // Pairwise equal key expressions in the order both inputs are sorted on,
+    // evaluated against the outer and the inner tuple respectively.
+    OwningExpressionVector m_outerMergeKeys;
+    OwningExpressionVector m_innerMergeKeys;
+};
+
+} // namespace voltdb
+
+#endif
@@ -71,7 +71,7 @@ void LargeTempTable::finishInserts() {
 }
 
 LargeTempTableIterator LargeTempTable::largeIterator() {
-    return LargeTempTableIterator(this, m_blockIds.begin());
+    return LargeTempTableIterator(this, m_blockIds.begin(), m_blockIds.end());
 }
 
 LargeTempTable::~LargeTempTable() {
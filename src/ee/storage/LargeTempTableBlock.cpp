@@ -22,9 +22,11 @@ namespace voltdb {
 
 LargeTempTableBlock::LargeTempTableBlock(int64_t id, LargeTempTable *ltt)
     : m_id(id)
+    , m_ltt(ltt)
     , m_pool(new Pool(ltt->getTableAllocationSize() / 4, 1))
     , m_tupleBlockPointer(new TupleBlock(ltt, TBBucketPtr()))
     , m_isPinned(false)
+    , m_storedSize(0)
 {
     // Report the amount of memory used by this block.
     //
@@ -95,4 +97,32 @@ void LargeTempTableBlock::setData(TBPtr tbptr, std::unique_ptr<Pool> pool) {
     lttBlockCache->increaseAllocatedMemory(m_pool->getAllocatedMemory());
 }
 
+void LargeTempTableBlock::serializeTo(SerializeOutput& output) const {
+    assert(isResident());
+    const uint32_t tupleCount = m_tupleBlockPointer->unusedTupleBoundary();
+    TableTuple tuple(m_ltt->schema());
+    output.writeInt(static_cast<int32_t>(tupleCount));
+    char* data = m_tupleBlockPointer->address();
+    for (uint32_t i = 0; i < tupleCount; ++i) {
+        tuple.move(data);
+        tuple.serializeTo(output, true);
+        data += tuple.tupleLength();
+    }
+}
+
+void LargeTempTableBlock::deserializeFrom(SerializeInputBE& input) {
+    TBPtr tbptr(new TupleBlock(m_ltt, TBBucketPtr()));
+    std::unique_ptr<Pool> pool(new Pool(m_ltt->getTableAllocationSize() / 4, 1));
+    const int32_t tupleCount = input.readInt();
+    TableTuple target(m_ltt->schema());
+    for (int32_t i = 0; i < tupleCount; ++i) {
+        char* data;
+        std::tie(data, std::ignore) = tbptr->nextFreeTuple();
+        target.move(data);
+        target.deserializeFrom(input, pool.get());
+        target.setActiveTrue();
+    }
+    setData(tbptr, std::move(pool));
+}
+
 } // end namespace voltdb
@@ -21,6 +21,7 @@
 #include <utility>
 
 #include "common/Pool.hpp"
+#include "common/serializeio.h"
 
 #include "storage/TupleBlock.h"
 
@@ -67,6 +68,26 @@ class LargeTempTableBlock {
 
     void setData(TBPtr block, std::unique_ptr<Pool> pool);
 
+    /** Write the tuples of this block, including their non-inlined
+        data, to the given output so the block can be stored outside
+        of the EE.  The block must be resident. */
+    void serializeTo(SerializeOutput& output) const;
+
+    /** Rebuild the tuple block and pool of a stored block from the
+        output of serializeTo.  The block is pinned afterwards, as it
+        is after setData. */
+    void deserializeFrom(SerializeInputBE& input);
+
+    /** The number of bytes serializeTo wrote when the block was last
+        stored, 0 if it never was. */
+    int64_t storedSize() const {
+        return m_storedSize;
+    }
+
+    void setStoredSize(int64_t storedSize) {
+        m_storedSize = storedSize;
+    }
+
     virtual ~LargeTempTableBlock();
 
     bool isPinned() const {
@@ -97,9 +118,11 @@ class LargeTempTableBlock {
  private:
 
     int64_t m_id;
+    LargeTempTable* m_ltt;
     std::unique_ptr<Pool> m_pool;
     TBPtr m_tupleBlockPointer;
     bool m_isPinned;
+    int64_t m_storedSize;
 };
 
 } // end namespace voltdb
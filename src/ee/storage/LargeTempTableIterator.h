@@ -43,6 +43,7 @@ public:
         , m_activeTuples(that.m_activeTuples)
         , m_foundTuples(that.m_foundTuples)
         , m_blockIdIterator(that.m_blockIdIterator)
+        , m_blockIdEnd(that.m_blockIdEnd)
         , m_currBlock(that.m_currBlock)
         , m_currBlockId(that.m_currBlockId)
         , m_dataPtr(that.m_dataPtr)
@@ -56,11 +57,14 @@ public:
     inline virtual ~LargeTempTableIterator();
 
 protected:
- LargeTempTableIterator(Table* table, std::vector<int64_t>::iterator start)
+ LargeTempTableIterator(Table* table,
+                         std::vector<int64_t>::iterator start,
+                         std::vector<int64_t>::iterator end)
      : m_tupleLength(table->m_tupleLength)
         , m_activeTuples(table->m_tupleCount)
         , m_foundTuples(0)
         , m_blockIdIterator(start)
+        , m_blockIdEnd(end)
         , m_currBlock(NULL)
         , m_currBlockId(-1)
         , m_dataPtr(NULL)
@@ -79,6 +83,7 @@ private:
     uint32_t m_foundTuples;
 
     std::vector<int64_t>::iterator m_blockIdIterator;
+    std::vector<int64_t>::iterator m_blockIdEnd;
 
     LargeTempTableBlock* m_currBlock;
     int64_t m_currBlockId;
@@ -110,6 +115,12 @@ bool LargeTempTableIterator::next(TableTuple& out) {
 
             ++m_blockIdIterator;
 
+            // Give the topend a head start on reading the next block
+            // back from disk while we scan this one.
+            if (m_blockIdIterator != m_blockIdEnd) {
+                lttCache->prefetchBlock(*m_blockIdIterator);
+            }
+
             m_blockOffset = 0;
         } // end if we need to transition to the next block
         else {
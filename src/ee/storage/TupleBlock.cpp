@@ -24,8 +24,9 @@ namespace voltdb {
 
 volatile int tupleBlocksAllocated = 0;
 
-TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket) :
+TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket, bool tempTableBlock) :
         m_storage(NULL),
+        m_tempBlockSize(0),
         m_references(0),
         m_tupleLength(table->m_tupleLength),
         m_tuplesPerBlock(table->m_tuplesPerBlock),
@@ -43,7 +44,13 @@ TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket) :
         throwFatalException("Failed mmap");
     }
 #else
-    m_storage = new char[table->m_tableAllocationSize];
+    if (tempTableBlock) {
+        m_tempBlockSize = table->m_tableAllocationSize;
+        m_storage = ThreadLocalPool::allocateTempBlock(m_tempBlockSize);
+    }
+    else {
+        m_storage = new char[table->m_tableAllocationSize];
+    }
 #endif
     tupleBlocksAllocated++;
 }
@@ -56,7 +63,12 @@ TupleBlock::~TupleBlock() {
         throwFatalException("Failed munmap");
     }
 #else
-    delete []m_storage;
+    if (m_tempBlockSize != 0) {
+        ThreadLocalPool::freeTempBlock(m_tempBlockSize, m_storage);
+    }
+    else {
+        delete []m_storage;
+    }
 #endif
 }
 
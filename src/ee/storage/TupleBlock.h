@@ -89,7 +89,11 @@ class TupleBlock {
     friend void ::intrusive_ptr_add_ref(voltdb::TupleBlock * p);
     friend void ::intrusive_ptr_release(voltdb::TupleBlock * p);
 public:
-    TupleBlock(Table *table, TBBucketPtr bucket);
+    /**
+     * A block of a temp table takes its storage from the thread's pool of
+     * temp table blocks, which keeps it for reuse once the block is freed.
+     */
+    TupleBlock(Table *table, TBBucketPtr bucket, bool tempTableBlock = false);
 
     void* operator new(std::size_t sz)
     {
@@ -246,6 +250,8 @@ public:
     }
 private:
     char*   m_storage;
+    // The size of m_storage if it came from ThreadLocalPool::allocateTempBlock, otherwise 0
+    std::size_t m_tempBlockSize;
     uint32_t m_references;
     uint32_t m_tupleLength;
     uint32_t m_tuplesPerBlock;
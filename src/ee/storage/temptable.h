@@ -230,7 +230,7 @@ inline void TempTable::deleteAllTempTuples() {
 }
 
 inline TBPtr TempTable::allocateNextBlock() {
-    TBPtr block(new TupleBlock(this, TBBucketPtr()));
+    TBPtr block(new TupleBlock(this, TBBucketPtr(), true));
     m_data.push_back(block);
 
     if (m_limits) {
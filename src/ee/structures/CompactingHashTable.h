@@ -65,6 +65,7 @@ namespace voltdb {
         static const uint64_t MIN_LOAD_FACTOR = 15; // %
 
         static const uint64_t TABLE_SIZES[];
+        static const int TABLE_SIZE_COUNT = 32;
 
 #ifndef MEMCHECK
 
@@ -117,6 +118,7 @@ namespace voltdb {
         uint64_t m_count;                 // number of items in the hash
         uint64_t m_uniqueCount;           // number of unique keys
         int m_sizeIndex;                  // current bucket count (from array)
+        int m_minSizeIndex;               // the hash doesn't shrink below this bucket count
         ContiguousAllocator m_allocator;  // allocator supporting compaction
         Hasher m_hasher;                  // instance of the hashing function
         KeyEqChecker m_keyEq;             // instance of the key eq checker
@@ -156,6 +158,12 @@ namespace voltdb {
 
         /** Constructor allows passing in instances for the hasher and eq checkers */
         CompactingHashTable(bool unique, Hasher hasher = Hasher(), KeyEqChecker keyEq = KeyEqChecker(), DataEqChecker dataEq = DataEqChecker());
+        /**
+         * Constructor for a hash that is filled once with about expectedCount items.
+         * The buckets and the node chunks are sized for that many items up front instead
+         * of the roughly 1MB default, which is mostly wasted on a small hash.
+         */
+        CompactingHashTable(bool unique, uint64_t expectedCount, Hasher hasher = Hasher(), KeyEqChecker keyEq = KeyEqChecker(), DataEqChecker dataEq = DataEqChecker());
         ~CompactingHashTable();
 
         /** simple find */
@@ -176,6 +184,9 @@ namespace voltdb {
         /** Return bytes used for this index */
         size_t bytesAllocated() const { return m_allocator.bytesAllocated() + TABLE_SIZES[m_sizeIndex] * sizeof(HashNode*); }
 
+        /** Number of buckets a hash built for expectedCount items starts with */
+        static uint64_t bucketCountFor(uint64_t expectedCount) { return TABLE_SIZES[sizeIndexFor(expectedCount)]; }
+
         /** verification for debugging and testing */
         bool verify();
         /** Do we have a cached last buffer?  This is used in testing. */
@@ -197,6 +208,12 @@ namespace voltdb {
 
         /** see if the hash needs to grow or shrink */
         void checkLoadFactor();
+        /** smallest bucket count that holds expectedCount items without growing */
+        static int sizeIndexFor(uint64_t expectedCount);
+        /** nodes per allocator chunk for a hash of about expectedCount items */
+        static int32_t chunkSizeFor(uint64_t expectedCount);
+        /** allocate the buckets for the current size */
+        void allocateBuckets();
         /** grow/shrink the hash table */
         void resize(int newSizeIndex);
     };
@@ -250,11 +267,51 @@ namespace voltdb {
     m_count(0),
     m_uniqueCount(0),
     m_sizeIndex(BUCKET_INITIAL_INDEX),
+    m_minSizeIndex(BUCKET_INITIAL_INDEX),
     m_allocator((int32_t)(unique ? sizeof(HashNodeSmall) : sizeof(HashNode)), ALLOCATOR_CHUNK_SIZE),
     m_hasher(hasher),
     m_keyEq(keyEq),
     m_dataEq(dataEq)
     {
+        allocateBuckets();
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    CompactingHashTable<K, T, H, EK, ET>::CompactingHashTable(bool unique, uint64_t expectedCount, Hasher hasher, KeyEqChecker keyEq, DataEqChecker dataEq)
+    : m_unique(unique),
+    m_count(0),
+    m_uniqueCount(0),
+    m_sizeIndex(sizeIndexFor(expectedCount)),
+    m_minSizeIndex(m_sizeIndex < (int)BUCKET_INITIAL_INDEX ? m_sizeIndex : (int)BUCKET_INITIAL_INDEX),
+    m_allocator((int32_t)(unique ? sizeof(HashNodeSmall) : sizeof(HashNode)),
+                chunkSizeFor(expectedCount)),
+    m_hasher(hasher),
+    m_keyEq(keyEq),
+    m_dataEq(dataEq)
+    {
+        allocateBuckets();
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    int CompactingHashTable<K, T, H, EK, ET>::sizeIndexFor(uint64_t expectedCount) {
+        int sizeIndex = 0;
+        while (sizeIndex < TABLE_SIZE_COUNT - 1 && (expectedCount * 100) / TABLE_SIZES[sizeIndex] > MAX_LOAD_FACTOR) {
+            sizeIndex++;
+        }
+        return sizeIndex;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    int32_t CompactingHashTable<K, T, H, EK, ET>::chunkSizeFor(uint64_t expectedCount) {
+        uint64_t chunkSize = expectedCount < 16 ? 16 : expectedCount;
+        if (chunkSize > ALLOCATOR_CHUNK_SIZE) {
+            chunkSize = ALLOCATOR_CHUNK_SIZE;
+        }
+        return (int32_t)chunkSize;
+    }
+
+    template<class K, class T, class H, class EK, class ET>
+    void CompactingHashTable<K, T, H, EK, ET>::allocateBuckets() {
         // allocate the hash table and bzero it (bzero is crucial)
         void *memory = mmap(NULL, sizeof(HashNode*) * TABLE_SIZES[m_sizeIndex], PROT_WRITE, MAP_PRIVATE | MAP_ANON, -1, 0);
         assert(memory);
@@ -602,7 +659,7 @@ namespace voltdb {
         }
         else if(lf < MIN_LOAD_FACTOR) {
             // make sure the hash doesn't over-shrink
-            if (newSizeIndex != BUCKET_INITIAL_INDEX) {
+            if (newSizeIndex > m_minSizeIndex) {
                 newSizeIndex--;
             }
         }
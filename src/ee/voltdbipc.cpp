@@ -147,6 +147,8 @@ public:
 
     bool releaseLargeTempTableBlock(int64_t blockId);
 
+    void prefetchLargeTempTableBlock(int64_t blockId);
+
 
 private:
     voltdb::VoltDBEngine *m_engine;
@@ -188,6 +190,8 @@ private:
 
     void threadLocalPoolAllocations();
 
+    void tempBlockPoolStats();
+
     void applyBinaryLog(struct ipc_command*);
 
     void executeTask(struct ipc_command*);
@@ -535,6 +539,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           applyBinaryLog(cmd);
           result = kErrorCode_None;
           break;
+      case 30:
+          tempBlockPoolStats();
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -1560,6 +1568,16 @@ void VoltDBIPC::threadLocalPoolAllocations() {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::tempBlockPoolStats() {
+    ThreadLocalPool::TempBlockStats stats = ThreadLocalPool::getTempBlockStats();
+    char response[25];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(stats.m_requested);
+    *reinterpret_cast<int64_t*>(&response[9]) = htonll(stats.m_reused);
+    *reinterpret_cast<int64_t*>(&response[17]) = htonll(stats.m_cachedBytes);
+    writeOrDie(m_fd, (unsigned char*)response, 25);
+}
+
 int64_t VoltDBIPC::getQueuedExportBytes(int32_t partitionId, std::string signature) {
     m_reusedResultBuffer[0] = kErrorCode_getQueuedExportBytes;
     *reinterpret_cast<int32_t*>(&m_reusedResultBuffer[1]) = htonl(partitionId);
@@ -1683,6 +1701,10 @@ bool VoltDBIPC::releaseLargeTempTableBlock(int64_t blockId) {
     return false;
 }
 
+void VoltDBIPC::prefetchLargeTempTableBlock(int64_t blockId) {
+    // Prefetching is only a hint
+}
+
 void *eethread(void *ptr) {
     // copy and free the file descriptor ptr allocated by the select thread
     int *fdPtr = static_cast<int*>(ptr);
@@ -1268,6 +1268,20 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeGetT
     return ThreadLocalPool::getPoolAllocationSize();
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeGetTempBlockPoolStats
+ * Signature: ()[J
+ */
+SHAREDLIB_JNIEXPORT jlongArray JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeGetTempBlockPoolStats
+  (JNIEnv *env, jclass) {
+    ThreadLocalPool::TempBlockStats stats = ThreadLocalPool::getTempBlockStats();
+    jlong data[] = { stats.m_requested, stats.m_reused, stats.m_cachedBytes };
+    jlongArray retval = env->NewLongArray(3);
+    env->SetLongArrayRegion(retval, 0, 3, data);
+    return retval;
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeGetRSS
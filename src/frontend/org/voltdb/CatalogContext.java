@@ -189,7 +189,7 @@ public class CatalogContext {
         // by applying the existing schema, which are costly in the UAC MP blocking path.
         if (hasSchemaChange) {
             m_defaultProcs = new DefaultProcedureManager(database);
-            m_ptool = new PlannerTool(database, m_catalogInfo.m_catalogHash);
+            m_ptool = new PlannerTool(database, m_catalogInfo.m_catalogHash, plannerTool);
         } else {
             m_defaultProcs = defaultProcManager;
             m_ptool = plannerTool.updateWhenNoSchemaChange(database, m_catalogInfo.m_catalogHash);;
@@ -88,6 +88,7 @@ import org.voltdb.client.ProcedureCallback;
 import org.voltdb.client.TLSHandshaker;
 import org.voltdb.common.Constants;
 import org.voltdb.dtxn.InitiatorStats.InvocationInfo;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Iv2Trace;
 import org.voltdb.messaging.FastDeserializer;
@@ -908,6 +909,9 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
+        // Set when the client asked for a large result to be streamed back in frames
+        private ClientResponseChunker chunker;
+        private ClientResponseImpl frame;
 
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
@@ -923,7 +927,12 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         public void serialize(ByteBuffer buf) throws IOException
         {
             buf.putInt(buf.capacity() - 4);
-            clientResponse.flattenToBuffer(buf);
+            if (frame != null) {
+                frame.flattenToBuffer(buf);
+                enqueueNextFrame(cihm.connection, chunker);
+            } else {
+                clientResponse.flattenToBuffer(buf);
+            }
         }
 
         @Override
@@ -950,7 +959,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
 
             // Reuse the creation time of the original invocation to have accurate internal latency
-            if (restartTransaction(clientData.m_messageSize, clientData.m_creationTimeNanos)) {
+            if (restartTransaction(clientData.m_messageSize, clientData.m_creationTimeNanos,
+                    clientData.m_resultChunkBytes)) {
                 // If the transaction is successfully restarted, don't send a response to the
                 // client yet.
                 return DeferredSerialization.EMPTY_MESSAGE_LENGTH;
@@ -981,7 +991,14 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.setClusterRoundtrip((int)TimeUnit.NANOSECONDS.toMillis(delta));
             clientResponse.setHashes(null); // not part of wire protocol
 
-            return clientResponse.getSerializedSize() + 4;
+            final int size = clientResponse.getSerializedSize();
+            StageLatencyStats.record(response.getStageTimes());
+            if (ClientResponseChunker.shouldChunk(clientResponse, size, clientData.m_resultChunkBytes)) {
+                chunker = new ClientResponseChunker(clientResponse, clientData.m_resultChunkBytes);
+                frame = chunker.next();
+                return frame.getSerializedSize() + 4;
+            }
+            return size + 4;
         }
 
         @Override
@@ -998,7 +1015,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
          * @param messageSize the original message size when the invocation first came in
          * @return true if the transaction is restarted successfully, false otherwise.
          */
-        private boolean restartTransaction(int messageSize, long nowNanos)
+        private boolean restartTransaction(int messageSize, long nowNanos, int resultChunkBytes)
         {
             if (response.isMispartitioned()) {
                 // Restart a mis-partitioned transaction
@@ -1025,6 +1042,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     ProcedurePartitionInfo ppi = (ProcedurePartitionInfo)catProc.getAttachment();
                     int partition = InvocationDispatcher.getPartitionForProcedureParameter(ppi.index,
                             ppi.type, response.getInvocation());
+                    // the chunk size isn't serialized with the invocation, restore it for the retry
+                    response.getInvocation().setResultChunkBytes(resultChunkBytes);
                     m_dispatcher.createTransaction(cihm.connection.connectionId(),
                             response.getInvocation(),
                             isReadonly,
@@ -1045,6 +1064,54 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         }
     }
 
+    /*
+     * Queue the next frame of a streamed response behind the one just serialized. Frames are
+     * cut from the result only when the network thread gets around to writing them, so the
+     * pace of the stream follows the socket and only one frame is ever copied out at a time.
+     */
+    private static void enqueueNextFrame(Connection c, ClientResponseChunker chunker) {
+        if (chunker.hasNext()) {
+            c.writeStream().enqueue(new ResponseFrameWork(c, chunker));
+        }
+    }
+
+    /**
+     * One of the frames after the first of a response streamed back in chunks.
+     */
+    private static class ResponseFrameWork implements DeferredSerialization {
+        private final Connection m_connection;
+        private final ClientResponseChunker m_chunker;
+        private ClientResponseImpl m_frame;
+
+        private ResponseFrameWork(Connection connection, ClientResponseChunker chunker) {
+            m_connection = connection;
+            m_chunker = chunker;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            buf.putInt(buf.capacity() - 4);
+            m_frame.flattenToBuffer(buf);
+            m_frame = null;
+            enqueueNextFrame(m_connection, m_chunker);
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public int getSerializedSize() throws IOException {
+            m_frame = m_chunker.next();
+            return m_frame.getSerializedSize() + 4;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getName();
+        }
+    }
+
     CatalogContext getCatalogContext() {
         return m_catalogContext.get();
     }
@@ -1457,6 +1524,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * * return True if an error was generated and needs to be returned to the client
      */
     final ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) {
+        final long stageTimes[] = StageLatencyStats.sample();
         StoredProcedureInvocation task = new StoredProcedureInvocation();
         try {
             task.initFromBuffer(buf);
@@ -1465,6 +1533,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     ClientResponseImpl.UNEXPECTED_FAILURE,
                     new VoltTable[0], ex.getMessage(), ccxn.connectionId());
         }
+        StageLatencyStats.stamp(stageTimes, StageLatencyStats.Point.DISPATCH);
+        task.setStageTimes(stageTimes);
         AuthUser user =  m_catalogContext.get().authSystem.getUser(handler.getUserName());
         if (user == null) {
             String errorMessage = "User " + handler.getUserName() + " has been removed from the system via a catalog update";
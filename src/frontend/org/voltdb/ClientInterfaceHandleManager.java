@@ -113,8 +113,16 @@ public class ClientInterfaceHandleManager
         final long m_creationTimeNanos;
         final String m_procName;
         final long m_initiatorHSId;
+        // Frame size to stream a large response back in, 0 to send it whole
+        final int m_resultChunkBytes;
         Iv2InFlight(long ciHandle, long clientHandle,
                 int messageSize, long creationTimeNanos, String procName, long initiatorHSId)
+        {
+            this(ciHandle, clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId, 0);
+        }
+        Iv2InFlight(long ciHandle, long clientHandle,
+                int messageSize, long creationTimeNanos, String procName, long initiatorHSId,
+                int resultChunkBytes)
         {
             m_ciHandle = ciHandle;
             m_clientHandle = clientHandle;
@@ -122,6 +130,7 @@ public class ClientInterfaceHandleManager
             m_creationTimeNanos = creationTimeNanos;
             m_procName = procName;
             m_initiatorHSId = initiatorHSId;
+            m_resultChunkBytes = resultChunkBytes;
         }
     }
 
@@ -158,9 +167,10 @@ public class ClientInterfaceHandleManager
             @Override
             synchronized long getHandle(boolean isSinglePartition, int partitionId,
                     long clientHandle, int messageSize, long creationTimeNanos, String procName, long initiatorHSId,
-                    boolean readOnly, boolean isShortCircuitRead) {
+                    boolean readOnly, boolean isShortCircuitRead, int resultChunkBytes) {
                 return super.getHandle(isSinglePartition, partitionId,
-                        clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId, readOnly, isShortCircuitRead);
+                        clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId, readOnly, isShortCircuitRead,
+                        resultChunkBytes);
             }
             @Override
             synchronized Iv2InFlight findHandle(long ciHandle) {
@@ -210,6 +220,26 @@ public class ClientInterfaceHandleManager
             long initiatorHSId,
             boolean readOnly,
             boolean isShortCircuitRead)
+    {
+        return getHandle(isSinglePartition, partitionId, clientHandle, messageSize, creationTimeNanos,
+                procName, initiatorHSId, readOnly, isShortCircuitRead, 0);
+    }
+
+    /**
+     * Same as above, also recording the frame size the client asked for the response
+     * to be streamed back in, or 0 to send it whole.
+     */
+    long getHandle(
+            boolean isSinglePartition,
+            int partitionId,
+            long clientHandle,
+            int messageSize,
+            long creationTimeNanos,
+            String procName,
+            long initiatorHSId,
+            boolean readOnly,
+            boolean isShortCircuitRead,
+            int resultChunkBytes)
     {
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
         if (!isSinglePartition) {
@@ -228,7 +258,8 @@ public class ClientInterfaceHandleManager
         long ciHandle =
                 isShortCircuitRead ? m_shortCircuitHG.getNextHandle() : partitionStuff.m_generator.getNextHandle();
         Iv2InFlight inFlight =
-                new Iv2InFlight(ciHandle, clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId);
+                new Iv2InFlight(ciHandle, clientHandle, messageSize, creationTimeNanos, procName, initiatorHSId,
+                        resultChunkBytes);
 
         if (isShortCircuitRead) {
             /*
@@ -0,0 +1,112 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import org.voltdb.client.ClientResponse;
+
+/**
+ * Cuts a successful response into a sequence of frames for a client that asked for its
+ * results to be streamed. Every frame is a complete ClientResponseImpl with the same handle
+ * and status carrying a single chunk of one result table: the table's full schema and as many
+ * of its rows as fit in the chunk size, at least one. Each table produces at least one frame,
+ * so empty tables still reach the client with their schema, and the final frame is flagged
+ * so the client knows when to stop waiting.
+ *
+ * Frames are produced one at a time on demand, so only the frame being written is ever copied
+ * out of the original result rather than the whole response at once.
+ */
+final class ClientResponseChunker {
+    private final ClientResponseImpl m_response;
+    private final VoltTable m_tables[];
+    private final int m_chunkBytes;
+
+    // Next table to cut and the buffer offset of its next unsent row
+    private int m_tableIndex = 0;
+    private int m_rowOffset = -1;
+    private int m_rowsSent = 0;
+
+    ClientResponseChunker(ClientResponseImpl response, int chunkBytes) {
+        assert(chunkBytes > 0);
+        m_response = response;
+        m_tables = response.getResults();
+        m_chunkBytes = chunkBytes;
+    }
+
+    /**
+     * @return true if the response is worth streaming in frames of the given size. Must be
+     * called after the response's serialized size has been computed.
+     */
+    static boolean shouldChunk(ClientResponseImpl response, int serializedSize, int chunkBytes) {
+        return chunkBytes > 0 &&
+               response.getStatus() == ClientResponse.SUCCESS &&
+               response.getResults().length > 0 &&
+               response.getResults().length <= Short.MAX_VALUE &&
+               serializedSize > chunkBytes;
+    }
+
+    boolean hasNext() {
+        return m_tableIndex < m_tables.length;
+    }
+
+    /**
+     * @return the next frame, with the client handle and round trip time of the original response
+     */
+    ClientResponseImpl next() {
+        assert(hasNext());
+        final VoltTable table = m_tables[m_tableIndex];
+        if (m_rowOffset < 0) {
+            m_rowOffset = table.getRowStart() + VoltTableRow.ROW_COUNT_SIZE;
+            m_rowsSent = 0;
+        }
+
+        // Take whole rows until the next one would make the serialized chunk (length prefix,
+        // header, row count and rows) larger than the chunk size, but always at least one
+        final int start = m_rowOffset;
+        final int limit = start + m_chunkBytes - (4 + table.getRowStart() + VoltTableRow.ROW_COUNT_SIZE);
+        int end = start;
+        int rows = 0;
+        while (m_rowsSent + rows < table.getRowCount()) {
+            final int rowEnd = end + 4 + table.m_buffer.getInt(end);
+            if (rows > 0 && rowEnd > limit) {
+                break;
+            }
+            end = rowEnd;
+            rows++;
+        }
+        final VoltTable chunk = table.copyRowRange(start, end, rows);
+        m_rowsSent += rows;
+        final int chunkTableIndex = m_tableIndex;
+        if (m_rowsSent == table.getRowCount()) {
+            m_tableIndex++;
+            m_rowOffset = -1;
+        } else {
+            m_rowOffset = end;
+        }
+
+        ClientResponseImpl frame = new ClientResponseImpl(
+                m_response.getStatus(),
+                m_response.getAppStatus(),
+                m_response.getAppStatusString(),
+                new VoltTable[] { chunk },
+                m_response.getStatusString(),
+                m_response.getClientHandle());
+        frame.setClusterRoundtrip(m_response.getClusterRoundtrip());
+        frame.setChunk(chunkTableIndex, !hasNext());
+        return frame;
+    }
+}
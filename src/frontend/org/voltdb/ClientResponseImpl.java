@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
@@ -45,6 +46,12 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     private VoltTable[] results = new VoltTable[0];
     private int[] m_hashes = null;
 
+    // Set on the frames of a response that was streamed back in chunks, see ClientResponseChunker.
+    // Every frame carries one chunk of rows of result table m_chunkTableIndex, which is -1 for a
+    // response that was sent whole.
+    private short m_chunkTableIndex = -1;
+    private boolean m_lastChunk = false;
+
     private int clusterRoundTripTime = 0;
     private int clientRoundTripTime = 0;
     private long clientRoundTripTimeNanos = 0;
@@ -144,6 +151,35 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return m_hashes;
     }
 
+    /**
+     * Mark this response as one frame of a streamed result.
+     * @param tableIndex index of the result table the single table in this frame is a chunk of
+     * @param last true if this is the final frame for the invocation
+     */
+    public void setChunk(int tableIndex, boolean last) {
+        assert(tableIndex >= 0 && tableIndex <= Short.MAX_VALUE);
+        m_chunkTableIndex = (short)tableIndex;
+        m_lastChunk = last;
+    }
+
+    /**
+     * @return true if this response is one frame of a streamed result rather than a whole response
+     */
+    public boolean isChunk() {
+        return m_chunkTableIndex >= 0;
+    }
+
+    public int getChunkTableIndex() {
+        return m_chunkTableIndex;
+    }
+
+    /**
+     * @return true unless this is a frame of a streamed result that more frames will follow
+     */
+    public boolean isLastChunk() {
+        return m_chunkTableIndex < 0 || m_lastChunk;
+    }
+
     public void initFromBuffer(ByteBuffer buf) throws IOException {
         buf.get();//Skip version byte
         clientHandle = buf.getLong();
@@ -173,6 +209,16 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         } else {
             m_hashes = null;
         }
+        if ((presentFields & (1 << 3)) != 0) {
+            m_chunkTableIndex = buf.getShort();
+            m_lastChunk = buf.get() != 0;
+            if (m_chunkTableIndex < 0) {
+                throw new IOException("Chunk table index is negative: " + m_chunkTableIndex);
+            }
+        } else {
+            m_chunkTableIndex = -1;
+            m_lastChunk = false;
+        }
         int tableCount = buf.getShort();
         if (tableCount < 0) {
             throw new IOException("Table count is negative: " + tableCount);
@@ -211,6 +257,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             msgsize += 2; // short array len
             msgsize += m_hashes.length * 4; // array of ints
         }
+        if (m_chunkTableIndex >= 0) {
+            msgsize += 2 + 1; // chunk table index and last chunk flag
+        }
         for (VoltTable vt : results) {
             msgsize += vt.getSerializedSize();
         }
@@ -235,6 +284,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         if (m_hashes != null) {
             presentFields |= 1 << 4;
         }
+        if (m_chunkTableIndex >= 0) {
+            presentFields |= 1 << 3;
+        }
         buf.put(presentFields);
         buf.put(status);
         if (statusString != null) {
@@ -254,6 +306,10 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
                 buf.putInt(hash);
             }
         }
+        if (m_chunkTableIndex >= 0) {
+            buf.putShort(m_chunkTableIndex);
+            buf.put((byte) (m_lastChunk ? 1 : 0));
+        }
         buf.putShort((short) results.length);
         for (VoltTable vt : results)
         {
@@ -308,20 +364,7 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
-            js.object();
-
-            js.keySymbolValuePair(JSON_STATUS_KEY, status);
-            js.keySymbolValuePair(JSON_APPSTATUS_KEY, appStatus);
-            js.keySymbolValuePair(JSON_STATUSSTRING_KEY, statusString);
-            js.keySymbolValuePair(JSON_APPSTATUSSTRING_KEY, appStatusString);
-            js.key(JSON_RESULTS_KEY);
-            js.array();
-            for (VoltTable o : results) {
-                js.value(o);
-            }
-            js.endArray();
-
-            js.endObject();
+            toJSONWriter(js);
         }
         catch (JSONException e) {
             e.printStackTrace();
@@ -330,6 +373,32 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return js.toString();
     }
 
+    /**
+     * Write the JSON representation of this response to a writer, streaming the rows
+     * of each result table instead of building a string of each table first.
+     */
+    public void toJSONWriter(JSONWriter js) throws JSONException {
+        js.object();
+
+        js.keySymbolValuePair(JSON_STATUS_KEY, status);
+        js.keySymbolValuePair(JSON_APPSTATUS_KEY, appStatus);
+        js.keySymbolValuePair(JSON_STATUSSTRING_KEY, statusString);
+        js.keySymbolValuePair(JSON_APPSTATUSSTRING_KEY, appStatusString);
+        js.key(JSON_RESULTS_KEY);
+        js.array();
+        for (VoltTable o : results) {
+            if (o == null) {
+                js.valueNull();
+            }
+            else {
+                o.toJSONWriter(js);
+            }
+        }
+        js.endArray();
+
+        js.endObject();
+    }
+
     /**
      * @return MD5 hash as int of the tables in the result. Only hashes first bits of big results.
      */
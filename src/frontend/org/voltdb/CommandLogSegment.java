@@ -0,0 +1,412 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One preallocated file of the {@link GroupCommitCommandLog}.
+ *
+ * A segment is filled with zeroes when it is created so that appending to it never changes
+ * the file size, which lets the writer use fdatasync instead of a full fsync. The header
+ * records, for every partition, the txnId of the snapshot the log was started from or the
+ * highest txnId logged to the segments before this one, whichever is later. Once the older
+ * segments are truncated, a snapshot has to reach these to overlap the rest of the log.
+ * The header is followed by records, each one a length, a CRC32 of the payload and the
+ * payload. A zero length marks the end of the records in the segment.
+ *
+ * Segments are only written by the command log writer thread and read back by
+ * {@link DefaultCommandLogReinitiator} on recovery.
+ */
+final class CommandLogSegment {
+    static final int MAGIC = 0x56434C47; // VCLG
+    static final int VERSION = 1;
+    static final String PREFIX = "commandlog_";
+    static final String SUFFIX = ".vclog";
+
+    static final byte INVOCATION_RECORD = 1;
+    static final byte FAULT_RECORD = 2;
+
+    // length and CRC in front of every record payload
+    static final int RECORD_HEADER_SIZE = 8;
+    // type, txnId, uniqueId, spHandle, flags, involved partition count
+    static final int INVOCATION_FIXED_SIZE = 1 + 8 + 8 + 8 + 1 + 2;
+    static final byte SINGLE_PARTITION_FLAG = 1;
+
+    private static final int ZERO_FILL_CHUNK = 1024 * 1024;
+
+    final long m_id;
+    final File m_file;
+    private final RandomAccessFile m_raf;
+    private final FileChannel m_channel;
+    private long m_position = 0;
+
+    // Highest spHandle logged to this segment per partition, segments are retired once a
+    // truncation snapshot covers all of them
+    private final Map<Integer, Long> m_maxSpHandles = new HashMap<>();
+    // Highest multi-partition txnId logged to this segment
+    private long m_maxMpTxnId = Long.MIN_VALUE;
+
+    private CommandLogSegment(long id, File file) throws IOException {
+        m_id = id;
+        m_file = file;
+        m_raf = new RandomAccessFile(file, "rw");
+        m_channel = m_raf.getChannel();
+    }
+
+    static File fileFor(File dir, long id) {
+        return new File(dir, PREFIX + id + SUFFIX);
+    }
+
+    /**
+     * Create a zero filled segment of the given size. The header is written when the
+     * segment becomes the one being appended to.
+     */
+    static CommandLogSegment create(File dir, long id, long size) throws IOException {
+        final File file = fileFor(dir, id);
+        final CommandLogSegment segment = new CommandLogSegment(id, file);
+        try {
+            final ByteBuffer zeroes = ByteBuffer.allocateDirect(ZERO_FILL_CHUNK);
+            long position = 0;
+            while (position < size) {
+                zeroes.clear();
+                zeroes.limit((int)Math.min(ZERO_FILL_CHUNK, size - position));
+                while (zeroes.hasRemaining()) {
+                    position += segment.m_channel.write(zeroes, position);
+                }
+            }
+            segment.m_channel.force(true);
+        } catch (IOException e) {
+            segment.delete();
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Start appending to this segment.
+     * @param lastSeenTxnIds txnId per partition that everything before this segment is at or below
+     * @param lastSeenMpTxnId multi-partition txnId that everything before this segment is at or below
+     */
+    void activate(Map<Integer, Long> lastSeenTxnIds, long lastSeenMpTxnId) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4 + lastSeenTxnIds.size() * 12);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(m_id);
+        header.putLong(lastSeenMpTxnId);
+        header.putInt(lastSeenTxnIds.size());
+        for (Map.Entry<Integer, Long> e : lastSeenTxnIds.entrySet()) {
+            header.putInt(e.getKey());
+            header.putLong(e.getValue());
+        }
+        header.flip();
+        m_position = 0;
+        write(header);
+    }
+
+    long remaining() throws IOException {
+        return m_channel.size() - m_position;
+    }
+
+    boolean isEmpty() {
+        return m_maxSpHandles.isEmpty();
+    }
+
+    /**
+     * Append the buffer. Writing past the preallocated size grows the file.
+     */
+    void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            m_position += m_channel.write(buf, m_position);
+        }
+    }
+
+    /** Make everything written so far durable. Metadata is only forced if the file grew. */
+    void force(boolean metadata) throws IOException {
+        m_channel.force(metadata);
+    }
+
+    void updateMaxSpHandles(long maxSpHandles[]) {
+        for (int partition = 0; partition < maxSpHandles.length; partition++) {
+            if (maxSpHandles[partition] != Long.MIN_VALUE) {
+                Long current = m_maxSpHandles.get(partition);
+                if (current == null || current < maxSpHandles[partition]) {
+                    m_maxSpHandles.put(partition, maxSpHandles[partition]);
+                }
+            }
+        }
+    }
+
+    void updateMaxMpTxnId(long maxMpTxnId) {
+        m_maxMpTxnId = Math.max(m_maxMpTxnId, maxMpTxnId);
+    }
+
+    /**
+     * Raise the given per partition txnIds to the highest logged to this segment.
+     * @return the highest multi-partition txnId logged to this segment
+     */
+    long mergeMaxTxnIds(Map<Integer, Long> txnIds) {
+        for (Map.Entry<Integer, Long> e : m_maxSpHandles.entrySet()) {
+            txnIds.merge(e.getKey(), e.getValue(), Math::max);
+        }
+        return m_maxMpTxnId;
+    }
+
+    /**
+     * @return true if a snapshot taken at the given per partition txnIds contains every
+     * transaction logged to this segment
+     */
+    boolean isCoveredBy(Map<Integer, Long> snapshotTxnIds) {
+        for (Map.Entry<Integer, Long> e : m_maxSpHandles.entrySet()) {
+            final Long snapshotTxnId = snapshotTxnIds.get(e.getKey());
+            if (snapshotTxnId == null || snapshotTxnId < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        m_raf.close();
+    }
+
+    void delete() {
+        try {
+            close();
+        } catch (IOException ignored) {}
+        m_file.delete();
+    }
+
+    /**
+     * @return the ID of a segment file or -1 if the file isn't a segment
+     */
+    static long segmentId(File file) {
+        final String name = file.getName();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the segment files in the directory in the order they were written
+     */
+    static List<File> list(File dir) {
+        final File files[] = dir.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        final List<File> segments = new ArrayList<>();
+        for (File f : files) {
+            if (segmentId(f) >= 0) {
+                segments.add(f);
+            }
+        }
+        Collections.sort(segments, (a, b) -> Long.compare(segmentId(a), segmentId(b)));
+        return segments;
+    }
+
+    /**
+     * Lay out a record in front of a payload already written at payloadStart. The caller
+     * reserved RECORD_HEADER_SIZE bytes before the payload.
+     */
+    static void sealRecord(ByteBuffer buf, int payloadStart, CRC32 crc) {
+        final int payloadLength = buf.position() - payloadStart;
+        final ByteBuffer payload = buf.duplicate();
+        payload.limit(buf.position()).position(payloadStart);
+        crc.reset();
+        crc.update(payload);
+        buf.putInt(payloadStart - RECORD_HEADER_SIZE, payloadLength);
+        buf.putInt(payloadStart - 4, (int)crc.getValue());
+    }
+
+    /**
+     * A logged invocation as read back by the replay.
+     */
+    static final class LoggedInvocation {
+        final long m_txnId;
+        final long m_uniqueId;
+        final long m_spHandle;
+        final boolean m_isSinglePartition;
+        final int m_involvedPartitions[];
+        final StoredProcedureInvocation m_invocation;
+        final int m_serializedSize;
+
+        LoggedInvocation(ByteBuffer payload) throws IOException {
+            m_serializedSize = payload.remaining();
+            m_txnId = payload.getLong();
+            m_uniqueId = payload.getLong();
+            m_spHandle = payload.getLong();
+            m_isSinglePartition = (payload.get() & SINGLE_PARTITION_FLAG) != 0;
+            m_involvedPartitions = new int[payload.getShort()];
+            for (int ii = 0; ii < m_involvedPartitions.length; ii++) {
+                m_involvedPartitions[ii] = payload.getInt();
+            }
+            m_invocation = new StoredProcedureInvocation();
+            m_invocation.initFromBuffer(payload);
+        }
+
+        @Override
+        public String toString() {
+            return "LoggedInvocation " + m_invocation.getProcName() + " txnId " + m_txnId +
+                    " spHandle " + m_spHandle + " partitions " + Arrays.toString(m_involvedPartitions);
+        }
+    }
+
+    /**
+     * Sequential reader over the records of one segment file. Reading stops at the first
+     * zero length or at a record that fails its CRC, which is where a crash interrupted
+     * the last write.
+     */
+    static final class Reader implements Closeable {
+        final long m_id;
+        final long m_lastSeenMpTxnId;
+        final Map<Integer, Long> m_lastSeenTxnIds = new HashMap<>();
+        private final RandomAccessFile m_raf;
+        private final FileChannel m_channel;
+        private long m_position;
+        private boolean m_torn = false;
+        private final CRC32 m_crc = new CRC32();
+
+        Reader(File file) throws IOException {
+            m_raf = new RandomAccessFile(file, "r");
+            m_channel = m_raf.getChannel();
+            try {
+                ByteBuffer fixed = read(0, 4 + 4 + 8 + 8 + 4);
+                final int magic = fixed == null ? -1 : fixed.getInt();
+                if (magic == 0) {
+                    // Preallocated but never appended to
+                    m_id = segmentId(file);
+                    m_lastSeenMpTxnId = Long.MIN_VALUE;
+                    m_position = -1;
+                    return;
+                }
+                if (magic != MAGIC) {
+                    throw new IOException("Not a command log segment: " + file);
+                }
+                final int version = fixed.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported command log segment version " + version + ": " + file);
+                }
+                m_id = fixed.getLong();
+                m_lastSeenMpTxnId = fixed.getLong();
+                final int partitions = fixed.getInt();
+                ByteBuffer txnIds = read(fixed.capacity(), partitions * 12);
+                if (txnIds == null) {
+                    throw new IOException("Truncated command log segment header: " + file);
+                }
+                for (int ii = 0; ii < partitions; ii++) {
+                    m_lastSeenTxnIds.put(txnIds.getInt(), txnIds.getLong());
+                }
+                m_position = fixed.capacity() + txnIds.capacity();
+            } catch (IOException e) {
+                m_raf.close();
+                throw e;
+            }
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            if (position + length > m_channel.size()) {
+                return null;
+            }
+            final ByteBuffer buf = ByteBuffer.allocate(length);
+            while (buf.hasRemaining()) {
+                if (m_channel.read(buf, position + buf.position()) < 0) {
+                    return null;
+                }
+            }
+            buf.flip();
+            return buf;
+        }
+
+        /**
+         * @return the payload of the next record, starting with its type byte, or null at
+         * the end of the segment
+         */
+        ByteBuffer next() throws IOException {
+            if (m_position < 0) {
+                return null;
+            }
+            final ByteBuffer header = read(m_position, RECORD_HEADER_SIZE);
+            if (header == null) {
+                return null;
+            }
+            final int length = header.getInt();
+            final int crc = header.getInt();
+            if (length <= 0) {
+                return null;
+            }
+            final ByteBuffer payload = read(m_position + RECORD_HEADER_SIZE, length);
+            if (payload == null) {
+                m_torn = true;
+                return null;
+            }
+            m_crc.reset();
+            m_crc.update(payload);
+            if ((int)m_crc.getValue() != crc) {
+                m_torn = true;
+                return null;
+            }
+            payload.flip();
+            m_position += RECORD_HEADER_SIZE + length;
+            return payload;
+        }
+
+        /**
+         * @return the offset of the next record in the file
+         */
+        long position() {
+            return m_position;
+        }
+
+        /**
+         * @return true if the segment was preallocated but never written to
+         */
+        boolean isUnused() {
+            return m_position < 0;
+        }
+
+        /**
+         * @return true if reading stopped at a partially written record
+         */
+        boolean isTorn() {
+            return m_torn;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_raf.close();
+        }
+    }
+}
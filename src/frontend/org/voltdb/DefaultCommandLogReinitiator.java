@@ -17,17 +17,104 @@
 
 package org.voltdb;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.LeaderCache;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
 
 /**
  * The default command log reinitiator for community edition VoltDB.
+ *
+ * Replays the segments written by {@link GroupCommitCommandLog}. Each host replays the single
+ * partition transactions of the partitions it leads from its own segments, in log order, and
+ * marks the position of every multi-partition transaction in those streams with a sentinel.
+ * The host with the lowest ID replays the multi-partition transactions found in its segments
+ * and ends the log once every host has submitted its streams.
  */
 public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Most replayed transactions waiting for a response at any time
+    private static final int MAX_OUTSTANDING_TXNS = 10000;
+
+    private final int m_hostId;
+    private final StartAction m_startAction;
+    private final HostMessenger m_messenger;
+    private final Set<Integer> m_liveHosts;
+    private final List<File> m_segments;
+    private final Map<Integer, Long> m_maxLastSeenTxnByPartition;
+    private final Long m_maxLastSeenTxn;
+
     private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private Map<Integer, Long> m_snapshotTxnIds = Collections.emptyMap();
+    private long m_snapshotMpTxnId = Long.MIN_VALUE;
+    private volatile boolean m_hasReplayedTxns = false;
+    private int m_outstanding = 0;
+
+    public DefaultCommandLogReinitiator() {
+        m_hostId = -1;
+        m_startAction = StartAction.CREATE;
+        m_messenger = null;
+        m_liveHosts = Collections.emptySet();
+        m_segments = Collections.emptyList();
+        m_maxLastSeenTxnByPartition = null;
+        m_maxLastSeenTxn = null;
+    }
+
+    public DefaultCommandLogReinitiator(int hostId,
+                                        StartAction startAction,
+                                        HostMessenger messenger,
+                                        String clPath,
+                                        Set<Integer> liveHosts) {
+        m_hostId = hostId;
+        m_startAction = startAction;
+        m_messenger = messenger;
+        m_liveHosts = liveHosts;
+
+        // The oldest segment in use carries the positions the log starts from
+        List<File> segments = new ArrayList<>();
+        Map<Integer, Long> lastSeen = null;
+        Long lastSeenMp = null;
+        for (File file : CommandLogSegment.list(new File(clPath))) {
+            try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file)) {
+                if (reader.isUnused()) {
+                    continue;
+                }
+                if (lastSeen == null) {
+                    lastSeen = new HashMap<>(reader.m_lastSeenTxnIds);
+                    lastSeenMp = reader.m_lastSeenMpTxnId;
+                }
+                segments.add(file);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segment " + file, true, e);
+            }
+        }
+        m_segments = segments;
+        m_maxLastSeenTxnByPartition = lastSeen;
+        m_maxLastSeenTxn = lastSeenMp;
+        if (!segments.isEmpty()) {
+            LOG.info("Found " + segments.size() + " command log segments in " + clPath);
+        }
+    }
 
     @Override
     public void setCallback(Callback callback) {
@@ -39,34 +126,180 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
         new Thread(new Runnable() {
             @Override
             public void run() {
+                try {
+                    if (m_messenger != null && m_startAction.doesRecover()) {
+                        replaySegments();
+                    }
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Failed to replay the command log", true, e);
+                }
                 if (m_callback != null) {
                     m_callback.onReplayCompletion();
                 }
             }
-        }).start();
+        }, "Command Log Replay").start();
+    }
+
+    private void replaySegments() throws Exception {
+        final boolean replaysMp = m_hostId == Collections.min(m_liveHosts);
+        final Map<Integer, Long> leaders;
+        final LeaderCache leaderCache = new LeaderCache(m_messenger.getZK(), VoltZK.iv2masters);
+        leaderCache.start(true);
+        try {
+            leaders = leaderCache.pointInTimeCache();
+        } finally {
+            leaderCache.shutdown();
+        }
+
+        // Split the local log into per partition streams and the multi-partition transactions
+        final Map<Integer, List<CommandLogSegment.LoggedInvocation>> streams = new TreeMap<>();
+        final TreeMap<Long, CommandLogSegment.LoggedInvocation> mpTxns = new TreeMap<>();
+        for (File file : m_segments) {
+            try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file)) {
+                ByteBuffer payload;
+                while ((payload = reader.next()) != null) {
+                    if (payload.get() != CommandLogSegment.INVOCATION_RECORD) {
+                        continue;
+                    }
+                    final CommandLogSegment.LoggedInvocation txn = new CommandLogSegment.LoggedInvocation(payload);
+                    final int partition = TxnEgo.getPartitionId(txn.m_spHandle);
+                    final Long leader = leaders.get(partition);
+                    if (leader != null && CoreUtils.getHostIdFromHSId(leader) == m_hostId) {
+                        List<CommandLogSegment.LoggedInvocation> stream = streams.get(partition);
+                        if (stream == null) {
+                            stream = new ArrayList<>();
+                            streams.put(partition, stream);
+                        }
+                        stream.add(txn);
+                    }
+                    if (!txn.m_isSinglePartition && replaysMp && txn.m_txnId > m_snapshotMpTxnId) {
+                        mpTxns.put(txn.m_txnId, txn);
+                    }
+                }
+                if (reader.isTorn()) {
+                    LOG.info("Command log segment " + file + " ends with a partially written record, " +
+                             "replaying up to the last complete record");
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, List<CommandLogSegment.LoggedInvocation>> e : streams.entrySet()) {
+            final int partition = e.getKey();
+            final Long snapshotTxnId = m_snapshotTxnIds.get(partition);
+            final SimpleClientResponseAdapter adapter = bindAdapter(ClientInterface.CL_REPLAY_BASE_CID + partition,
+                                                                    "Command log replay partition " + partition);
+            int replayed = 0;
+            for (CommandLogSegment.LoggedInvocation txn : e.getValue()) {
+                if (snapshotTxnId != null && txn.m_spHandle <= snapshotTxnId) {
+                    continue;
+                }
+                if (txn.m_isSinglePartition) {
+                    initiate(adapter, txn, true, partition);
+                    replayed++;
+                } else if (txn.m_txnId > m_snapshotMpTxnId) {
+                    m_initiator.sendSentinel(txn.m_uniqueId, partition);
+                }
+            }
+            LOG.info("Replayed " + replayed + " single partition transactions for partition " + partition);
+        }
+
+        if (replaysMp) {
+            final SimpleClientResponseAdapter adapter =
+                    bindAdapter(ClientInterface.CL_REPLAY_BASE_CID + MpInitiator.MP_INIT_PID,
+                                "Command log replay multi-partition");
+            for (CommandLogSegment.LoggedInvocation txn : mpTxns.values()) {
+                initiate(adapter, txn, false, MpInitiator.MP_INIT_PID);
+            }
+            LOG.info("Replayed " + mpTxns.size() + " multi-partition transactions");
+        }
+
+        // Every host has to place its sentinels before the multi-partition log ends
+        final ZKCountdownLatch barrier =
+                new ZKCountdownLatch(m_messenger.getZK(), VoltZK.commandlog_replay_barrier, m_liveHosts.size());
+        barrier.countDown();
+        barrier.await();
+        if (replaysMp) {
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+
+        synchronized (this) {
+            while (m_outstanding > 0) {
+                wait();
+            }
+        }
+    }
+
+    private SimpleClientResponseAdapter bindAdapter(long cid, String name) {
+        final SimpleClientResponseAdapter adapter = new SimpleClientResponseAdapter(cid, name);
+        m_initiator.bindAdapter(adapter);
+        return adapter;
+    }
+
+    private void initiate(SimpleClientResponseAdapter adapter, CommandLogSegment.LoggedInvocation txn,
+                          boolean isSinglePartition, int partition) throws InterruptedException {
+        synchronized (this) {
+            while (m_outstanding >= MAX_OUTSTANDING_TXNS) {
+                wait();
+            }
+            m_outstanding++;
+        }
+        m_hasReplayedTxns = true;
+        final StoredProcedureInvocation invocation = txn.m_invocation;
+        invocation.setClientHandle(adapter.registerCallback(new SimpleClientResponseAdapter.Callback() {
+            @Override
+            public void handleResponse(ClientResponse response) {
+                if (response.getStatus() != ClientResponse.SUCCESS &&
+                        response.getStatus() != ClientResponse.USER_ABORT) {
+                    LOG.warn("Replayed " + txn + " failed: " + response.getStatusString());
+                }
+                responseReceived();
+            }
+        }));
+        if (!m_initiator.createTransaction(adapter.connectionId(), txn.m_txnId, txn.m_uniqueId, invocation,
+                                           false, isSinglePartition, false, partition,
+                                           txn.m_serializedSize, System.nanoTime())) {
+            VoltDB.crashGlobalVoltDB("Unable to replay " + txn, false, null);
+        }
+    }
+
+    private synchronized void responseReceived() {
+        m_outstanding--;
+        notifyAll();
     }
 
     @Override
     public boolean hasReplayedSegments() {
-        return false;
+        return !m_segments.isEmpty();
     }
 
     @Override
     public Long getMaxLastSeenTxn() {
-        return null;
+        return m_maxLastSeenTxn;
     }
 
     @Override
     public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
-        return null;
+        return m_maxLastSeenTxnByPartition;
     }
 
     @Override
     public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        if (info != null) {
+            m_snapshotTxnIds = info.partitionToTxnId;
+            m_snapshotMpTxnId = info.txnId;
+        } else {
+            m_snapshotTxnIds = Collections.emptyMap();
+            m_snapshotMpTxnId = Long.MIN_VALUE;
+        }
     }
 
     @Override
     public void returnAllSegments() {
+        for (File file : m_segments) {
+            if (!file.delete() && file.exists()) {
+                LOG.warn("Unable to delete replayed command log segment " + file);
+            }
+        }
     }
 
     @Override
@@ -77,7 +310,7 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 
     @Override
     public boolean hasReplayedTxns() {
-        return false;
+        return m_hasReplayedTxns;
     }
 
     @Override
@@ -87,6 +320,7 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 
     @Override
     public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
     }
 
     @Override
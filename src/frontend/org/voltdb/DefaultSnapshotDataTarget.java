@@ -46,6 +46,7 @@ import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
@@ -100,6 +101,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     @SuppressWarnings("unused")
     private final String m_tableName;
 
+    // Codec of the chunks, recorded in the header so restore can tell
+    private final CompressionCodec m_codec;
+
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
@@ -183,6 +187,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_codec = CompressionService.getCodec(CompressionService.Use.SNAPSHOT);
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
@@ -205,6 +210,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
             stringer.keySymbolValuePair("isReplicated", isReplicated);
             stringer.keySymbolValuePair("isCompressed", true);
+            stringer.keySymbolValuePair("compressionCodec", m_codec.name());
             stringer.keySymbolValuePair("checksumType", "CRC32C");
             stringer.keySymbolValuePair("timestamp", timestamp);
             /*
@@ -445,7 +451,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(m_codec, tupleData, cont);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
@@ -0,0 +1,601 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * File based command log for builds without the enterprise command log.
+ *
+ * Every site appends its initiations to one shared in-memory batch. A single writer thread
+ * swaps the batch out, appends it to the current preallocated {@link CommandLogSegment} and
+ * makes it durable, so one fdatasync covers everything logged while the previous one was in
+ * progress. After the write, the transactions of the batch are released through each site's
+ * {@link DurabilityListener}.
+ *
+ * In synchronous mode transactions don't execute until they are durable. The writer starts
+ * the next batch as soon as the previous sync completes, optionally waiting up to
+ * COMMAND_LOG_SYNC_BATCH_MICROS for it to grow, or until it holds the configured maximum
+ * number of transactions. In asynchronous mode transactions execute right away, and the
+ * writer flushes every fsync interval or maximum number of transactions, whichever comes
+ * first. Sites are throttled through the returned future if too much is waiting to be written.
+ *
+ * Segments filled once the configured log size is in use trigger a truncation snapshot, and
+ * are deleted once a truncation snapshot covers every transaction in them. On recovery the
+ * segments are replayed by {@link DefaultCommandLogReinitiator}.
+ */
+public class GroupCommitCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final long SEGMENT_BYTES = Long.getLong("COMMAND_LOG_SEGMENT_BYTES", 64L * 1024 * 1024);
+    // Extra time a synchronous batch may grow once the previous sync has completed
+    static final long SYNC_BATCH_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("COMMAND_LOG_SYNC_BATCH_MICROS", 0));
+    // Asynchronous logging throttles sites once this much is waiting to be written
+    static final long ASYNC_BACKPRESSURE_BYTES = 64L * 1024 * 1024;
+    // Wake the writer early once a batch holds this much
+    static final int MAX_BATCH_BYTES = 8 * 1024 * 1024;
+    private static final int INITIAL_BATCH_BYTES = 256 * 1024;
+
+    private static final ListenableFuture<Object> NO_BACKPRESSURE = Futures.immediateFuture(null);
+
+    /*
+     * Records appended by sites between two writes. Two of them alternate between being filled
+     * under m_lock and being written by the writer thread.
+     */
+    private static final class Batch {
+        ByteBuffer m_buf = ByteBuffer.allocateDirect(INITIAL_BATCH_BYTES);
+        int m_txns = 0;
+        int m_tasks = 0;
+        long m_startNanos = 0;
+        // Highest spHandle logged per partition, Long.MIN_VALUE if none
+        long m_maxSpHandles[] = new long[0];
+        long m_maxMpTxnId = Long.MIN_VALUE;
+        final List<SettableFuture<Boolean>> m_faults = new ArrayList<>();
+
+        boolean isEmpty() {
+            return m_tasks == 0 && m_buf.position() == 0 && m_faults.isEmpty();
+        }
+
+        void markStarted() {
+            if (isEmpty()) {
+                m_startNanos = System.nanoTime();
+            }
+        }
+
+        void ensureCapacity(int bytes) {
+            if (m_buf.remaining() < bytes) {
+                final int needed = m_buf.position() + bytes;
+                final ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(needed, m_buf.capacity() * 2));
+                m_buf.flip();
+                bigger.put(m_buf);
+                m_buf = bigger;
+            }
+        }
+
+        void noteSpHandle(long spHandle) {
+            final int partition = TxnEgo.getPartitionId(spHandle);
+            if (partition >= m_maxSpHandles.length) {
+                final int oldLength = m_maxSpHandles.length;
+                m_maxSpHandles = Arrays.copyOf(m_maxSpHandles, partition + 1);
+                Arrays.fill(m_maxSpHandles, oldLength, m_maxSpHandles.length, Long.MIN_VALUE);
+            }
+            m_maxSpHandles[partition] = Math.max(m_maxSpHandles[partition], spHandle);
+        }
+
+        void reset() {
+            m_buf.clear();
+            m_txns = 0;
+            m_tasks = 0;
+            Arrays.fill(m_maxSpHandles, Long.MIN_VALUE);
+            m_maxMpTxnId = Long.MIN_VALUE;
+            m_faults.clear();
+        }
+    }
+
+    private final boolean m_synchronous;
+    private final long m_fsyncIntervalNanos;
+    private final int m_maxTxns;
+    private final File m_logDir;
+    private final long m_segmentBytes;
+
+    // Guards the batches, the listeners and the backpressure futures
+    private final Object m_lock = new Object();
+    private Batch m_active = new Batch();
+    private Batch m_flushing = new Batch();
+    private final List<DurabilityListener> m_listeners = new ArrayList<>();
+    private final List<SettableFuture<Object>> m_backpressure = new ArrayList<>();
+    private long m_outstandingBytes = 0;
+    private int m_outstandingTxns = 0;
+    private boolean m_writerWaiting = false;
+    private boolean m_shutdown = false;
+    private final CRC32 m_crc = new CRC32();
+
+    // Guards the segments, taken by the writer around each write
+    private final Object m_segmentLock = new Object();
+    private CommandLogSegment m_current = null;
+    private final ArrayDeque<CommandLogSegment> m_filled = new ArrayDeque<>();
+    private Future<CommandLogSegment> m_spare = null;
+    private long m_nextSegmentId = 0;
+    private int m_maxSegments = 2;
+    private Map<Integer, Long> m_lastSeenTxnIds = new TreeMap<>();
+    private long m_lastSeenMpTxnId = Long.MIN_VALUE;
+    private boolean m_truncationRequested = false;
+    private volatile boolean m_initialized = false;
+
+    private final ExecutorService m_allocator =
+            CoreUtils.getSingleThreadExecutor("Command Log Segment Allocator");
+    private final Thread m_writer;
+    private volatile long m_lastSyncNanos = 0;
+    private volatile long m_syncIntervalNanos = 0;
+
+    public GroupCommitCommandLog(boolean synchronous,
+                                 int fsyncIntervalMillis,
+                                 int maxTxns,
+                                 String logPath,
+                                 String snapshotPath) {
+        this(synchronous, fsyncIntervalMillis, maxTxns, logPath, SEGMENT_BYTES);
+    }
+
+    GroupCommitCommandLog(boolean synchronous,
+                          int fsyncIntervalMillis,
+                          int maxTxns,
+                          String logPath,
+                          long segmentBytes) {
+        m_synchronous = synchronous;
+        m_segmentBytes = segmentBytes;
+        m_fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        m_maxTxns = maxTxns;
+        m_logDir = new File(logPath);
+        m_writer = new Thread(null, this::runWriter, "Command Log Writer", CoreUtils.SMALL_STACK_SIZE);
+        m_writer.setDaemon(true);
+        m_writer.start();
+    }
+
+    @Override
+    public void init(int logSize, long txnId, int partitionCount, String coreBinding,
+                     Map<Integer, Long> perPartitionTxnId) {
+        synchronized (m_segmentLock) {
+            if (m_initialized) {
+                return;
+            }
+            if (perPartitionTxnId != null) {
+                m_lastSeenTxnIds = new TreeMap<>(perPartitionTxnId);
+            }
+            m_lastSeenMpTxnId = txnId;
+            m_maxSegments = (int)Math.max(2, (logSize * 1024L * 1024L) / m_segmentBytes);
+            if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+                VoltDB.crashLocalVoltDB("Unable to create command log directory " + m_logDir, false, null);
+            }
+            // Segments of a previous run are deleted once replay and truncation are done,
+            // never reuse their IDs while they might still be around
+            for (File f : CommandLogSegment.list(m_logDir)) {
+                m_nextSegmentId = Math.max(m_nextSegmentId, CommandLogSegment.segmentId(f) + 1);
+            }
+            try {
+                m_current = CommandLogSegment.create(m_logDir, m_nextSegmentId++, m_segmentBytes);
+                m_current.activate(m_lastSeenTxnIds, m_lastSeenMpTxnId);
+                m_current.force(true);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to create command log segment in " + m_logDir, true, e);
+            }
+            allocateSpare();
+            m_initialized = true;
+        }
+        final SnapshotCompletionMonitor monitor = VoltDB.instance().getSnapshotCompletionMonitor();
+        if (monitor != null) {
+            monitor.addInterest(this);
+        }
+        LOG.info("Command log initialized in " + m_logDir + ", " + (m_synchronous ? "synchronous" : "asynchronous") +
+                 " with " + m_maxSegments + " segments of " + m_segmentBytes + " bytes");
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, int partitionCount, boolean isRejoin,
+                              String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        init(logSize, txnId, partitionCount, coreBinding, perPartitionTxnId);
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public ListenableFuture<Object> log(Iv2InitiateTaskMessage message,
+                                        long spHandle,
+                                        int[] involvedPartitions,
+                                        DurabilityListener listener,
+                                        TransactionTask durabilityHandle) {
+        // Reads are only tracked so they execute in order with the writes around them
+        final boolean write = message != null && !message.isReadOnly();
+        final int size = write ? invocationRecordSize(message, involvedPartitions) : 0;
+        ListenableFuture<Object> result = m_synchronous ? null : NO_BACKPRESSURE;
+        synchronized (m_lock) {
+            final Batch batch = m_active;
+            batch.markStarted();
+            if (write) {
+                appendInvocation(batch, message, spHandle, involvedPartitions, size);
+                m_outstandingBytes += size;
+                m_outstandingTxns++;
+            }
+            if (durabilityHandle != null) {
+                listener.addTransaction(durabilityHandle);
+                batch.m_tasks++;
+            }
+            if (!m_synchronous && m_outstandingBytes > ASYNC_BACKPRESSURE_BYTES) {
+                final SettableFuture<Object> backpressure = SettableFuture.create();
+                m_backpressure.add(backpressure);
+                result = backpressure;
+            }
+            if (m_writerWaiting || batch.m_txns >= m_maxTxns || batch.m_buf.position() >= MAX_BATCH_BYTES) {
+                m_lock.notify();
+            }
+        }
+        return result;
+    }
+
+    private static int invocationRecordSize(Iv2InitiateTaskMessage message, int[] involvedPartitions) {
+        final int involved = involvedPartitions == null ? 0 : involvedPartitions.length;
+        return CommandLogSegment.RECORD_HEADER_SIZE + CommandLogSegment.INVOCATION_FIXED_SIZE +
+               involved * 4 + message.getStoredProcedureInvocation().getSerializedSize();
+    }
+
+    private void appendInvocation(Batch batch, Iv2InitiateTaskMessage message, long spHandle,
+                                  int[] involvedPartitions, int size) {
+        batch.ensureCapacity(size);
+        final ByteBuffer buf = batch.m_buf;
+        buf.position(buf.position() + CommandLogSegment.RECORD_HEADER_SIZE);
+        final int payloadStart = buf.position();
+        buf.put(CommandLogSegment.INVOCATION_RECORD);
+        buf.putLong(message.getTxnId());
+        buf.putLong(message.getUniqueId());
+        buf.putLong(spHandle);
+        buf.put(message.isSinglePartition() ? CommandLogSegment.SINGLE_PARTITION_FLAG : 0);
+        if (involvedPartitions == null) {
+            buf.putShort((short)0);
+        } else {
+            buf.putShort((short)involvedPartitions.length);
+            for (int partition : involvedPartitions) {
+                buf.putInt(partition);
+            }
+        }
+        try {
+            message.getStoredProcedureInvocation().flattenToBuffer(buf);
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to serialize " + message + " to the command log", true, e);
+        }
+        CommandLogSegment.sealRecord(buf, payloadStart, m_crc);
+        batch.noteSpHandle(spHandle);
+        if (!message.isSinglePartition()) {
+            batch.m_maxMpTxnId = Math.max(batch.m_maxMpTxnId, message.getTxnId());
+        }
+        batch.m_txns++;
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId,
+                                               int partitionId, long spHandle) {
+        final SettableFuture<Boolean> written = SettableFuture.create();
+        final int size = CommandLogSegment.RECORD_HEADER_SIZE + 1 + 8 + 4 + 8 + 4 + survivorHSId.size() * 8;
+        synchronized (m_lock) {
+            final Batch batch = m_active;
+            batch.markStarted();
+            batch.ensureCapacity(size);
+            final ByteBuffer buf = batch.m_buf;
+            buf.position(buf.position() + CommandLogSegment.RECORD_HEADER_SIZE);
+            final int payloadStart = buf.position();
+            buf.put(CommandLogSegment.FAULT_RECORD);
+            buf.putLong(writerHSId);
+            buf.putInt(partitionId);
+            buf.putLong(spHandle);
+            buf.putInt(survivorHSId.size());
+            for (long hsId : survivorHSId) {
+                buf.putLong(hsId);
+            }
+            CommandLogSegment.sealRecord(buf, payloadStart, m_crc);
+            batch.m_faults.add(written);
+            m_outstandingBytes += size;
+            m_lock.notify();
+        }
+        return written;
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        synchronized (m_lock) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+        }
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+        synchronized (m_lock) {
+            m_listeners.add(durabilityListener);
+        }
+    }
+
+    /*
+     * Wait until the active batch should be written, or until shutdown
+     */
+    private void awaitBatch() throws InterruptedException {
+        while (!m_shutdown) {
+            final Batch batch = m_active;
+            if (batch.isEmpty()) {
+                m_writerWaiting = true;
+                try {
+                    m_lock.wait();
+                } finally {
+                    m_writerWaiting = false;
+                }
+                continue;
+            }
+            final long batchNanos = m_synchronous ? SYNC_BATCH_NANOS : m_fsyncIntervalNanos;
+            final long waited = System.nanoTime() - batch.m_startNanos;
+            if (waited >= batchNanos ||
+                    batch.m_txns >= m_maxTxns ||
+                    batch.m_buf.position() >= MAX_BATCH_BYTES ||
+                    !batch.m_faults.isEmpty()) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.timedWait(m_lock, batchNanos - waited);
+        }
+    }
+
+    private void runWriter() {
+        final List<CompletionChecks> checks = new ArrayList<>();
+        final List<DurabilityListener> listeners = new ArrayList<>();
+        try {
+            while (true) {
+                final Batch batch;
+                synchronized (m_lock) {
+                    awaitBatch();
+                    if (m_shutdown && m_active.isEmpty()) {
+                        return;
+                    }
+                    batch = m_active;
+                    m_active = m_flushing;
+                    m_flushing = batch;
+                    for (DurabilityListener listener : m_listeners) {
+                        listeners.add(listener);
+                        checks.add(listener.startNewTaskList(listener.getNumberOfTasks()));
+                    }
+                }
+
+                final int bytes = batch.m_buf.position();
+                if (bytes > 0) {
+                    write(batch);
+                }
+
+                for (int ii = 0; ii < listeners.size(); ii++) {
+                    listeners.get(ii).processDurabilityChecks(checks.get(ii));
+                }
+                listeners.clear();
+                checks.clear();
+                for (SettableFuture<Boolean> fault : batch.m_faults) {
+                    fault.set(true);
+                }
+
+                synchronized (m_lock) {
+                    m_outstandingBytes -= bytes;
+                    m_outstandingTxns -= batch.m_txns;
+                    if (m_outstandingBytes <= ASYNC_BACKPRESSURE_BYTES && !m_backpressure.isEmpty()) {
+                        for (SettableFuture<Object> backpressure : m_backpressure) {
+                            backpressure.set(null);
+                        }
+                        m_backpressure.clear();
+                    }
+                    batch.reset();
+                }
+            }
+        } catch (InterruptedException e) {
+            // shutdown
+        } catch (Throwable t) {
+            VoltDB.crashLocalVoltDB("Command log writer failed", true, t);
+        }
+    }
+
+    private void write(Batch batch) throws Exception {
+        synchronized (m_segmentLock) {
+            if (m_current == null) {
+                // Transactions replayed before the log is initialized are covered by the
+                // truncation snapshot that ends the replay
+                return;
+            }
+            final ByteBuffer buf = batch.m_buf;
+            buf.flip();
+            if (m_current.remaining() < buf.remaining() && !m_current.isEmpty()) {
+                rollSegment();
+            }
+            final boolean grows = m_current.remaining() < buf.remaining();
+            m_current.write(buf);
+            m_current.updateMaxSpHandles(batch.m_maxSpHandles);
+            m_current.updateMaxMpTxnId(batch.m_maxMpTxnId);
+            m_current.force(grows);
+        }
+        final long now = System.nanoTime();
+        if (m_lastSyncNanos != 0) {
+            m_syncIntervalNanos = now - m_lastSyncNanos;
+        }
+        m_lastSyncNanos = now;
+    }
+
+    private void allocateSpare() {
+        final long id = m_nextSegmentId++;
+        m_spare = m_allocator.submit(() -> CommandLogSegment.create(m_logDir, id, m_segmentBytes));
+    }
+
+    private void rollSegment() throws Exception {
+        m_current.force(true);
+        m_filled.add(m_current);
+        // Stamp the next segment with everything logged so far, so that once the filled
+        // segments are truncated recovery can't pick a snapshot that misses them
+        final long maxMpTxnId = m_current.mergeMaxTxnIds(m_lastSeenTxnIds);
+        m_lastSeenMpTxnId = Math.max(m_lastSeenMpTxnId, maxMpTxnId);
+        m_current = m_spare.get();
+        m_current.activate(m_lastSeenTxnIds, m_lastSeenMpTxnId);
+        allocateSpare();
+        if (m_filled.size() + 1 >= m_maxSegments) {
+            m_allocator.execute(() -> requestTruncationSnapshot(false));
+        }
+    }
+
+    @Override
+    public void requestTruncationSnapshot(final boolean queueIfPending) {
+        synchronized (m_segmentLock) {
+            if (m_truncationRequested && !queueIfPending) {
+                return;
+            }
+            m_truncationRequested = true;
+        }
+        final HostMessenger messenger = VoltDB.instance().getHostMessenger();
+        if (messenger == null) {
+            return;
+        }
+        try {
+            messenger.getZK().create(VoltZK.request_truncation_snapshot_node, null,
+                                     Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+        } catch (Exception e) {
+            LOG.warn("Unable to request a command log truncation snapshot", e);
+            synchronized (m_segmentLock) {
+                m_truncationRequested = false;
+            }
+        }
+    }
+
+    /**
+     * Delete filled segments once a truncation snapshot covers them.
+     */
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_segmentLock) {
+                m_truncationRequested = false;
+                final Iterator<CommandLogSegment> iter = m_filled.iterator();
+                while (iter.hasNext()) {
+                    final CommandLogSegment segment = iter.next();
+                    if (!segment.isCoveredBy(event.partitionTxnIds)) {
+                        break;
+                    }
+                    iter.remove();
+                    segment.delete();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Truncated command log segment " + segment.m_file);
+                    }
+                }
+            }
+        }
+        return new CountDownLatch(0);
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        synchronized (m_lock) {
+            m_shutdown = true;
+            m_lock.notify();
+        }
+        m_writer.join();
+        final SnapshotCompletionMonitor monitor = VoltDB.instance().getSnapshotCompletionMonitor();
+        if (monitor != null) {
+            monitor.removeInterest(this);
+        }
+        synchronized (m_segmentLock) {
+            try {
+                if (m_current != null) {
+                    m_current.force(true);
+                    m_current.close();
+                }
+                for (CommandLogSegment segment : m_filled) {
+                    segment.close();
+                }
+                if (m_spare != null) {
+                    m_spare.get().delete();
+                }
+            } catch (Exception e) {
+                LOG.warn("Failed to close the command log", e);
+            }
+        }
+        m_allocator.shutdown();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        // Synchronously logged tasks are offered by the durability listener once durable
+        return !m_synchronous;
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long outstandingBytes;
+        final long outstandingTxns;
+        synchronized (m_lock) {
+            outstandingBytes = m_outstandingBytes;
+            outstandingTxns = m_outstandingTxns;
+        }
+        final int inUse;
+        final int total;
+        synchronized (m_segmentLock) {
+            inUse = m_filled.size() + (m_current == null ? 0 : 1);
+            total = inUse + (m_spare == null ? 0 : 1);
+        }
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] = outstandingBytes;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] = outstandingTxns;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = inUse;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] = total;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] =
+                (int)TimeUnit.NANOSECONDS.toMillis(m_syncIntervalNanos);
+    }
+}
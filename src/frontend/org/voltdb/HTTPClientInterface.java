@@ -17,10 +17,14 @@
 
 package org.voltdb;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletResponse;
@@ -36,6 +40,10 @@ import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
 import org.ietf.jgss.Oid;
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONWriter;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.EstTime;
@@ -67,12 +75,20 @@ public class HTTPClientInterface {
     public static final String PARAM_PASSWORD = "Password";
     public static final String PARAM_HASHEDPASSWORD = "Hashedpassword";
     public static final String PARAM_ADMIN = "admin";
+    public static final String PARAM_PROCEDURE = "Procedure";
+    public static final String PARAM_PARAMETERS = "Parameters";
+    // JSON array of {"Procedure": name, "Parameters": [...]} objects, answered with an array of responses
+    public static final String PARAM_INVOCATIONS = "Invocations";
+
+    // Size of the buffer that responses are encoded into on their way to the response stream
+    static final int RESPONSE_BUFFER_SIZE = 8 * 1024;
     int m_timeout = 0;
 
     final boolean m_spnegoEnabled;
     final String m_servicePrincipal;
 
     final String m_timeoutResponse;
+    final ClientResponseImpl m_timeoutResponseImpl;
 
     private final Supplier<InternalConnectionHandler> m_invocationHandler =
             Suppliers.memoize(new Supplier<InternalConnectionHandler>() {
@@ -95,24 +111,59 @@ public class HTTPClientInterface {
         m_timeout = seconds * 1000;
     }
 
+    /**
+     * Collects the responses to the invocations of one request and resumes the request
+     * once all of them have arrived, or it times out. The resumed request then encodes
+     * the responses straight into the response stream with {@link #writeResponse}.
+     */
     class JSONProcCallback implements ProcedureCallback, ContinuationListener {
 
         final AtomicBoolean m_complete = new AtomicBoolean(false);
         final Continuation m_continuation;
         final String m_jsonp;
+        // True to answer with an array of responses, one for each invocation
+        final boolean m_batch;
+        final AtomicReferenceArray<ClientResponseImpl> m_responses;
+        final AtomicInteger m_outstanding;
 
         public JSONProcCallback(Continuation continuation, String jsonp) {
+            this(continuation, jsonp, 1, false);
+        }
+
+        public JSONProcCallback(Continuation continuation, String jsonp, int invocations, boolean batch) {
             assert continuation != null : "given continuation is null";
+            assert batch || invocations == 1 : "only a batch has more than one invocation";
 
             m_continuation = continuation;
             m_continuation.addContinuationListener(this);
             m_jsonp = jsonp;
+            m_batch = batch;
+            m_responses = new AtomicReferenceArray<>(invocations);
+            m_outstanding = new AtomicInteger(invocations);
+        }
+
+        /**
+         * @return the callback for the invocation at the given position of a batch
+         */
+        ProcedureCallback getCallback(final int index) {
+            if (index == 0) {
+                return this;
+            }
+            return new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    complete(index, clientResponse);
+                }
+            };
         }
 
         @Override
         public void clientCallback(ClientResponse clientResponse) throws Exception {
+            complete(0, clientResponse);
+        }
 
-            if (!m_complete.compareAndSet(false, true)) {
+        void complete(int index, ClientResponse clientResponse) {
+            if (m_complete.get()) {
                 if (clientResponse.getStatus() != ClientResponse.RESPONSE_UNKNOWN) {
                     m_rate_limited_log.log(
                             EstTime.currentTimeMillis(), Level.WARN, null,
@@ -121,14 +172,12 @@ public class HTTPClientInterface {
                 }
                 return;
             }
-            ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
-            String msg = rimpl.toJSONString();
-
-            // handle jsonp pattern
-            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
-            msg = asJsonp(m_jsonp, msg);
+            m_responses.set(index, (ClientResponseImpl) clientResponse);
+            if (m_outstanding.decrementAndGet() > 0 || !m_complete.compareAndSet(false, true)) {
+                return;
+            }
 
-            m_continuation.setAttribute("result", msg);
+            m_continuation.setAttribute("result", this);
             try {
                 m_continuation.resume();
             } catch (IllegalStateException e) {
@@ -138,6 +187,43 @@ public class HTTPClientInterface {
             }
         }
 
+        /**
+         * Encode the responses into the response stream, without building a string of
+         * them first. Invocations that didn't complete in time are answered with a timeout.
+         */
+        void writeResponse(HttpServletResponse response) throws IOException {
+            Writer out = new BufferedWriter(response.getWriter(), RESPONSE_BUFFER_SIZE);
+            // handle jsonp pattern
+            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
+            if (m_jsonp != null) {
+                out.write(m_jsonp);
+                out.write("( ");
+            }
+            try {
+                JSONWriter js = new JSONWriter(out);
+                if (m_batch) {
+                    js.array();
+                }
+                for (int i = 0; i < m_responses.length(); i++) {
+                    ClientResponseImpl r = m_responses.get(i);
+                    (r == null ? m_timeoutResponseImpl : r).toJSONWriter(js);
+                }
+                if (m_batch) {
+                    js.endArray();
+                }
+            } catch (JSONException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to serialize the response to JSON", e);
+            }
+            if (m_jsonp != null) {
+                out.write(" )");
+            }
+            // closing completes the response, which still gets a content length if it fits the output buffer
+            out.close();
+        }
+
         @Override
         public void onComplete(Continuation continuation) {
             if(!m_complete.get()) {
@@ -148,16 +234,52 @@ public class HTTPClientInterface {
         @Override
         public void onTimeout(Continuation continuation) {
             if (m_complete.compareAndSet(false, true)) {
-                m_continuation.setAttribute("result", m_timeoutResponse);
+                if (m_batch) {
+                    m_continuation.setAttribute("result", this);
+                } else {
+                    m_continuation.setAttribute("result", m_timeoutResponse);
+                }
                 m_continuation.resume();
             }
         }
     }
 
+    // One invocation of a batched request
+    static final class BatchedInvocation {
+        final String m_procName;
+        final Object[] m_params;
+
+        BatchedInvocation(String procName, Object[] params) {
+            m_procName = procName;
+            m_params = params;
+        }
+    }
+
+    /**
+     * Parse the invocations of a batched request.
+     * @throws JSONException if an invocation is malformed
+     */
+    static BatchedInvocation[] parseInvocations(String invocations) throws JSONException, IOException {
+        JSONArray array = new JSONArray(invocations);
+        BatchedInvocation[] batch = new BatchedInvocation[array.length()];
+        for (int i = 0; i < batch.length; i++) {
+            JSONObject invocation = array.getJSONObject(i);
+            String procName = invocation.getString(PARAM_PROCEDURE);
+            JSONArray params = invocation.optJSONArray(PARAM_PARAMETERS);
+            if (params == null && invocation.has(PARAM_PARAMETERS) && !invocation.isNull(PARAM_PARAMETERS)) {
+                throw new JSONException("Parameters of invocation " + i + " is not an array");
+            }
+            batch[i] = new BatchedInvocation(procName,
+                    params == null ? new Object[0] : ParameterSet.fromJSONArray(params).toArray());
+        }
+        return batch;
+    }
+
     public HTTPClientInterface() {
         final ClientResponseImpl r = new ClientResponseImpl(ClientResponse.CONNECTION_TIMEOUT,
                 new VoltTable[0], "Request Timeout");
         m_timeoutResponse = r.toJSONString();
+        m_timeoutResponseImpl = r;
         m_servicePrincipal = getAuthSystem().getServicePrincipal();
         m_spnegoEnabled = m_servicePrincipal != null && !m_servicePrincipal.isEmpty();
     }
@@ -223,11 +345,15 @@ public class HTTPClientInterface {
         }
 
         final Continuation continuation = ContinuationSupport.getContinuation(request);
-        String result = (String)continuation.getAttribute("result");
+        Object result = continuation.getAttribute("result");
         if (result != null) {
             try {
                 response.setStatus(HttpServletResponse.SC_OK);
-                response.getWriter().print(result);
+                if (result instanceof JSONProcCallback) {
+                    ((JSONProcCallback) result).writeResponse(response);
+                } else {
+                    response.getWriter().print((String) result);
+                }
                 request.setHandled(true);
             } catch (IllegalStateException | IOException e){
                // Thrown when we shut down the server via the JSON/HTTP (web studio) API
@@ -273,16 +399,37 @@ public class HTTPClientInterface {
                     return;
                 }
             }
-            String procName = request.getParameter("Procedure");
-            String params = request.getParameter("Parameters");
+            String procName = request.getParameter(PARAM_PROCEDURE);
+            String params = request.getParameter(PARAM_PARAMETERS);
+            String invocations = request.getParameter(PARAM_INVOCATIONS);
             String timeoutStr = request.getParameter(QUERY_TIMEOUT_PARAM);
 
             // null procs are bad news
-            if (procName == null) {
+            if (procName == null && invocations == null) {
                 badRequest(jsonp, "Procedure parameter is missing", response);
                 request.setHandled(true);
                 return;
             }
+            if (procName != null && invocations != null) {
+                badRequest(jsonp, "Procedure and Invocations parameters can't be given together", response);
+                request.setHandled(true);
+                return;
+            }
+            BatchedInvocation[] batch = null;
+            if (invocations != null) {
+                try {
+                    batch = parseInvocations(invocations);
+                } catch (Exception e) {
+                    badRequest(jsonp, "failed to parse invocations: " + e.getMessage(), response);
+                    request.setHandled(true);
+                    return;
+                }
+                if (batch.length == 0) {
+                    badRequest(jsonp, "Invocations parameter has no invocations", response);
+                    request.setHandled(true);
+                    return;
+                }
+            }
 
             int queryTimeout = -1;
             if (timeoutStr != null) {
@@ -308,9 +455,21 @@ public class HTTPClientInterface {
             continuation.suspend(response);
             suspended = true;
 
-            JSONProcCallback cb = new JSONProcCallback(continuation, jsonp);
             boolean success;
             String hostname = request.getRemoteHost();
+            if (batch != null) {
+                JSONProcCallback cb = new JSONProcCallback(continuation, jsonp, batch.length, true);
+                continuation.setAttribute("SQLSUBMITTED", Boolean.TRUE);
+                for (int i = 0; i < batch.length; i++) {
+                    ProcedureCallback icb = cb.getCallback(i);
+                    if (!callProcedure(hostname, authResult, queryTimeout, icb, batch[i].m_procName, batch[i].m_params)) {
+                        icb.clientCallback(new ClientResponseImpl(ClientResponse.SERVER_UNAVAILABLE,
+                                new VoltTable[0], "Server is not accepting work at this time."));
+                    }
+                }
+                return;
+            }
+            JSONProcCallback cb = new JSONProcCallback(continuation, jsonp);
             if (params != null) {
                 ParameterSet paramSet = null;
                 try {
@@ -17,11 +17,15 @@
 
 package org.voltdb;
 
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.ImporterServerAdapter;
 import org.voltdb.importer.ImporterStatsCollector;
+import org.voltdb.utils.CatalogUtil;
 
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -48,6 +52,57 @@ public class ImporterServerAdapterImpl implements ImporterServerAdapter {
                 .callProcedure(importer, backPressurePredicate, m_statsCollector, procCallback, proc, fieldList);
     }
 
+    @Override
+    public int getPartitionForRow(String tableName, Object[] row) {
+        Table table = getTable(tableName, row);
+        if (table.getIsreplicated()) {
+            return -1;
+        }
+        Column partitionColumn = table.getPartitioncolumn();
+        return TheHashinator.getPartitionForParameter(partitionColumn.getType(), row[partitionColumn.getIndex()]);
+    }
+
+    @Override
+    public boolean loadTable(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate, ProcedureCallback procCallback,
+            String tableName, boolean upsert, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return true;
+        }
+        Table catTable = getTable(tableName, rows.get(0));
+        VoltTable table = CatalogUtil.getVoltTable(catTable);
+        Object[] values = new Object[table.getColumnCount()];
+        for (Object[] row : rows) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ParameterConverter.tryToMakeCompatible(table.getColumnType(i).classFromType(), row[i]);
+            }
+            table.addRow(values);
+        }
+
+        final byte upsertMode = (byte) (upsert ? 1 : 0);
+        if (catTable.getIsreplicated()) {
+            return callProcedure(importer, backPressurePredicate, procCallback,
+                    "@LoadMultipartitionTable", catTable.getTypeName(), upsertMode, table);
+        }
+        // Same partitioning parameter as VoltBulkLoader sends, the value of the first row
+        final int partitionIndex = catTable.getPartitioncolumn().getIndex();
+        byte[] partitionParam = VoltType.valueToBytes(
+                table.fetchRow(0).get(partitionIndex, table.getColumnType(partitionIndex)));
+        return callProcedure(importer, backPressurePredicate, procCallback,
+                "@LoadSinglepartitionTable", partitionParam, catTable.getTypeName(), upsertMode, table);
+    }
+
+    private Table getTable(String tableName, Object[] row) {
+        Table table = VoltDB.instance().getCatalogContext().tables.getIgnoreCase(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Table " + tableName + " does not exist.");
+        }
+        if (row.length != table.getColumns().size()) {
+            throw new IllegalArgumentException("Row has " + row.length + " values but table " + tableName
+                    + " has " + table.getColumns().size() + " columns.");
+        }
+        return table;
+    }
+
     private InternalConnectionHandler getInternalConnectionHandler() {
         return VoltDB.instance().getClientInterface().getInternalConnectionHandler();
     }
@@ -61,4 +116,9 @@ public class ImporterServerAdapterImpl implements ImporterServerAdapter {
     public void reportQueued(String importerName, String procName) {
         m_statsCollector.reportQueued(importerName, procName);
     }
+
+    @Override
+    public void reportBatch(String importerName, String procName, int rowCount, long lagMillis) {
+        m_statsCollector.reportBatch(importerName, procName, rowCount, lagMillis);
+    }
 }
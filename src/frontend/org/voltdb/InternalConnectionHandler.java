@@ -143,7 +143,7 @@ public class InternalConnectionHandler {
 
         int[] partitions = null;
         try {
-            partitions = InvocationDispatcher.getPartitionsForProcedure(catProc, task);
+            partitions = getPartitionsForProcedure(catProc, task);
         } catch (Exception e) {
             String fmt = "Can not invoke procedure %s. Partition not found.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, procName);
@@ -165,6 +165,16 @@ public class InternalConnectionHandler {
         return true;
     }
 
+    private int[] getPartitionsForProcedure(Procedure catProc, StoredProcedureInvocation task) throws Exception {
+        // The partitioning parameter of LoadSinglepartitionTable is hashed as the type of
+        // the table's partitioning column, the same as when it comes from a client
+        if ("@LoadSinglepartitionTable".equals(task.getProcName())) {
+            return new int[] { InvocationDispatcher.getPartitionForLoadSinglepartitionTable(
+                    getCatalogContext().database.getTables(), task) };
+        }
+        return InvocationDispatcher.getPartitionsForProcedure(catProc, task);
+    }
+
     // Use null backPressurePredicate for no back pressure
     public boolean callProcedure(InternalConnectionContext caller,
                                  Function<Integer, Boolean> backPressurePredicate,
@@ -192,7 +202,7 @@ public class InternalConnectionHandler {
         }
         int[] partitions = null;
         try {
-            partitions = InvocationDispatcher.getPartitionsForProcedure(catProc, task);
+            partitions = getPartitionsForProcedure(catProc, task);
         } catch (Exception e) {
             String fmt = "Can not invoke procedure %s from streaming interface %s. Partition not found.";
             m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
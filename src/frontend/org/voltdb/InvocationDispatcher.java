@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
@@ -60,6 +61,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.common.Permission;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Iv2Trace;
 import org.voltdb.iv2.MpInitiator;
@@ -75,6 +77,7 @@ import org.voltdb.utils.VoltTrace;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableMap;
+import com.google_voltpatches.common.primitives.Ints;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 public final class InvocationDispatcher {
@@ -470,20 +473,29 @@ public final class InvocationDispatcher {
         // up above.  -rtb.
 
         int[] partitions = null;
+        int[] nPartitions = null;
         try {
             partitions = getPartitionsForProcedure(catProc, task);
+            nPartitions = getPartitionsForAdHocKeys(task);
         } catch (Exception e) {
             // unable to hash to a site, return an error
             return getMispartitionedErrorResponse(task, catProc, e);
         }
+        if (nPartitions == null && partitions.length > 1) {
+            nPartitions = partitions;
+        }
         boolean success = createTransaction(handler.connectionId(),
+                        Iv2InitiateTaskMessage.UNUSED_MP_TXNID,
+                        0, //unused timestammp
                         task,
                         catProc.getReadonly(),
                         catProc.getSinglepartition(),
                         catProc.getEverysite(),
                         partitions,
+                        nPartitions,
                         task.getSerializedSize(),
-                        nowNanos);
+                        nowNanos,
+                        false);  // is for replay.
         if (!success) {
             // when VoltDB.crash... is called, we close off the client interface
             // and it might not be possible to create new transactions.
@@ -720,9 +732,10 @@ public final class InvocationDispatcher {
                                      task.getProcName(),
                                      NTPROC_JUNK_ID,
                                      true,
-                                     true); // We are using shortcut read here on purpose
+                                     true,  // We are using shortcut read here on purpose
                                             // it's the simplest place to keep the handle because it
                                             // doesn't do as much work with partitions.
+                                     task.getResultChunkBytes());
 
         // note, once we get the handle above, any response to the client MUST be done
         // by sending an InitiateResponseMessage to the CI mailbox. Writing bytes to the wire, like we
@@ -794,9 +807,7 @@ public final class InvocationDispatcher {
         int partition = -1;
         try {
             CatalogMap<Table> tables = m_catalogContext.get().database.getTables();
-            int partitionParamType = getLoadSinglePartitionTablePartitionParamType(tables, task);
-            byte[] valueToHash = (byte[])task.getParameterAtIndex(0);
-            partition = TheHashinator.getPartitionForParameter(partitionParamType, valueToHash);
+            partition = getPartitionForLoadSinglepartitionTable(tables, task);
         }
         catch (Exception e) {
             authLog.warn(e.getMessage());
@@ -815,6 +826,19 @@ public final class InvocationDispatcher {
         return null;
     }
 
+    /**
+     * The partition of a LoadSinglepartitionTable invocation, hashed with the type of the
+     * partitioning column of its target table.
+     */
+    final static int getPartitionForLoadSinglepartitionTable(CatalogMap<Table> tables,
+                                                             StoredProcedureInvocation task)
+        throws Exception
+    {
+        int partitionParamType = getLoadSinglePartitionTablePartitionParamType(tables, task);
+        byte[] valueToHash = (byte[])task.getParameterAtIndex(0);
+        return TheHashinator.getPartitionForParameter(partitionParamType, valueToHash);
+    }
+
     /**
      * XXX: This should go away when we get rid of the legacy hashinator.
      */
@@ -1187,6 +1211,39 @@ public final class InvocationDispatcher {
             final int messageSize,
             long nowNanos,
             final boolean isForReplay)
+    {
+        return createTransaction(
+                connectionId,
+                txnId,
+                uniqueId,
+                invocation,
+                isReadOnly,
+                isSinglePartition,
+                isEveryPartition,
+                partitions,
+                (partitions == null) || (partitions.length < 2) ? null : partitions,
+                messageSize,
+                nowNanos,
+                isForReplay);
+    }
+
+    /**
+     * @param nPartitions the partitions of an n-partition transaction, or null
+     *                    to involve every partition in a multi-partition transaction
+     */
+    private boolean createTransaction(
+            final long connectionId,
+            final long txnId,
+            final long uniqueId,
+            final StoredProcedureInvocation invocation,
+            final boolean isReadOnly,
+            final boolean isSinglePartition,
+            final boolean isEveryPartition,
+            final int[] partitions,
+            final int[] nPartitions,
+            final int messageSize,
+            long nowNanos,
+            final boolean isForReplay)
     {
         assert(!isSinglePartition || (partitions.length == 1));
         final ClientInterfaceHandleManager cihm = m_cihm.get(connectionId);
@@ -1228,8 +1285,10 @@ public final class InvocationDispatcher {
             }
         }
 
+        // Only reads may have their results streamed back in chunks
         long handle = cihm.getHandle(isSinglePartition, isSinglePartition ? partitions[0] : -1, invocation.getClientHandle(),
-                messageSize, nowNanos, invocation.getProcName(), initiatorHSId, isReadOnly, isShortCircuitRead);
+                messageSize, nowNanos, invocation.getProcName(), initiatorHSId, isReadOnly, isShortCircuitRead,
+                isReadOnly ? invocation.getResultChunkBytes() : 0);
 
         Iv2InitiateTaskMessage workRequest =
             new Iv2InitiateTaskMessage(m_siteId,
@@ -1239,7 +1298,7 @@ public final class InvocationDispatcher {
                     uniqueId,
                     isReadOnly,
                     isSinglePartition,
-                    (partitions == null) || (partitions.length < 2) ? null : partitions,
+                    nPartitions,
                     invocation,
                     handle,
                     connectionId,
@@ -1257,6 +1316,12 @@ public final class InvocationDispatcher {
         }
 
         Iv2Trace.logCreateTransaction(workRequest);
+        // Only SP transactions are broken down, and stage stamps can only be compared on this host
+        if (invocation.getStageTimes() != null && isSinglePartition &&
+                CoreUtils.getHostIdFromHSId(initiatorHSId) == CoreUtils.getHostIdFromHSId(m_siteId)) {
+            workRequest.setStageTimes(invocation.getStageTimes());
+            StageLatencyStats.stamp(workRequest.getStageTimes(), StageLatencyStats.Point.INITIATE);
+        }
         m_mailbox.send(initiatorHSId, workRequest);
         return true;
     }
@@ -1282,6 +1347,49 @@ public final class InvocationDispatcher {
         }
     }
 
+    /**
+     * A multi-partition ad hoc read whose only table is filtered by an IN list on its
+     * partitioning column carries the keys of the list. Only the partitions they hash to
+     * can have matching rows, so it can run as an n-partition transaction over just those.
+     * @return the partitions in ascending order, or null if the work must go to all partitions
+     */
+    final static int[] getPartitionsForAdHocKeys(StoredProcedureInvocation task) {
+        byte[][] keys = getAdHocKeys(task);
+        if (keys == null) {
+            return null;
+        }
+        return getPartitionsForAdHocKeys(keys);
+    }
+
+    /**
+     * @return the IN-list keys a multi-partition ad hoc read carries, or null if it has none
+     */
+    public static byte[][] getAdHocKeys(StoredProcedureInvocation task) {
+        if ( ! "@AdHoc_RO_MP".equals(task.getProcName()) || task.getParams().size() < 2) {
+            return null;
+        }
+        Object param = task.getParameterAtIndex(0);
+        if ( ! (param instanceof byte[][]) || ((byte[][]) param).length == 0) {
+            return null;
+        }
+        return (byte[][]) param;
+    }
+
+    /**
+     * Hash the IN-list keys of an ad hoc read with the current hashinator.
+     * The MPI hashes them again before the read starts, in case the hashinator
+     * changed after the read was dispatched.
+     * @return the partitions in ascending order
+     */
+    public static int[] getPartitionsForAdHocKeys(byte[][] keys) {
+        Set<Integer> partitions = new TreeSet<Integer>();
+        for (byte[] key : keys) {
+            // Encoded the way the partitioning parameter of an SP ad hoc is.
+            partitions.add(TheHashinator.getPartitionForParameter(VoltType.VARBINARY, key));
+        }
+        return Ints.toArray(partitions);
+    }
+
     //Generate a mispartitioned response also log the message.
     private final static ClientResponseImpl getMispartitionedErrorResponse(StoredProcedureInvocation task,
             Procedure catProc, Exception ex) {
@@ -34,6 +34,9 @@ public class MemoryStats extends StatsSource {
         long indexMem = 0;
         long stringMem = 0;
         long pooledMem = 0;
+        long tempBlockRequests = 0;
+        long tempBlocksReused = 0;
+        long tempBlockCachedMem = 0;
     }
     Map<Long, PartitionMemRow> m_memoryStats = new TreeMap<Long, PartitionMemRow>();
 
@@ -82,6 +85,11 @@ public class MemoryStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("POOLEDMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER));
+        // temp table blocks the EE asked for, how many of those reused a freed block,
+        // and the memory of the freed blocks kept for reuse
+        columns.add(new VoltTable.ColumnInfo("TEMPBLOCKREQUESTS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("TEMPBLOCKSREUSED", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("TEMPBLOCKCACHED", VoltType.BIGINT));
     }
 
     @Override
@@ -95,6 +103,9 @@ public class MemoryStats extends StatsSource {
             totals.indexMem += pmr.indexMem;
             totals.stringMem += pmr.stringMem;
             totals.pooledMem += pmr.pooledMem;
+            totals.tempBlockRequests += pmr.tempBlockRequests;
+            totals.tempBlocksReused += pmr.tempBlocksReused;
+            totals.tempBlockCachedMem += pmr.tempBlockCachedMem;
         }
 
         // get system statistics
@@ -119,6 +130,9 @@ public class MemoryStats extends StatsSource {
         //in kb to make math simpler with other mem values.
         rowValues[columnNameToIndex.get("PHYSICALMEMORY")] = PlatformProperties.getPlatformProperties().ramInMegabytes * 1024;
         rowValues[columnNameToIndex.get("JAVAMAXHEAP")] = Runtime.getRuntime().maxMemory() / 1024;
+        rowValues[columnNameToIndex.get("TEMPBLOCKREQUESTS")] = totals.tempBlockRequests;
+        rowValues[columnNameToIndex.get("TEMPBLOCKSREUSED")] = totals.tempBlocksReused;
+        rowValues[columnNameToIndex.get("TEMPBLOCKCACHED")] = totals.tempBlockCachedMem / 1024;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -128,7 +142,8 @@ public class MemoryStats extends StatsSource {
                                               long tupleAllocatedMem,
                                               long indexMem,
                                               long stringMem,
-                                              long pooledMemory) {
+                                              long pooledMemory,
+                                              long[] tempBlockPoolStats) {
         PartitionMemRow pmr = new PartitionMemRow();
         pmr.tupleCount = tupleCount;
         pmr.tupleDataMem = tupleDataMem;
@@ -136,6 +151,9 @@ public class MemoryStats extends StatsSource {
         pmr.indexMem = indexMem;
         pmr.stringMem = stringMem;
         pmr.pooledMem = pooledMemory;
+        pmr.tempBlockRequests = tempBlockPoolStats[0];
+        pmr.tempBlocksReused = tempBlockPoolStats[1];
+        pmr.tempBlockCachedMem = tempBlockPoolStats[2];
         m_memoryStats.put(siteId, pmr);
     }
 }
@@ -65,6 +65,12 @@ public class ParameterSet implements JSONString {
     private final byte[][][] m_encodedStringArrays;
     // memoized serialized size (start assuming valid size for empty ParameterSet)
     private final int m_serializedSize;
+    /*
+     * The bytes the parameters were deserialized from, if the creator promised
+     * they won't change. Serializing the set copies them instead of encoding
+     * every parameter again.
+     */
+    private final ByteBuffer m_serializedParams;
 
     public static ParameterSet emptyParameterSet() {
         return fromArrayNoCopy();
@@ -263,7 +269,7 @@ public class ParameterSet implements JSONString {
             }
         }
 
-        return new ParameterSet(params, size, encodedStrings, encodedStringArrays);
+        return new ParameterSet(params, size, encodedStrings, encodedStringArrays, null);
     }
 
     public static ParameterSet fromJSONString(String json) throws JSONException, IOException {
@@ -309,14 +315,41 @@ public class ParameterSet implements JSONString {
 
         int size = buffer.position() - startPos;
 
-        return new ParameterSet(params, size, encodedStrings, encodedStringArrays);
+        return new ParameterSet(params, size, encodedStrings, encodedStringArrays, null);
+    }
+
+    /**
+     * Deserialize a parameter set that keeps a reference to the buffer it came from
+     * and serializes by copying those bytes. The caller must not modify or recycle the
+     * buffer for as long as the parameter set is in use. Direct buffers usually belong
+     * to a pool, so parameters read from one are deserialized as by
+     * {@link #fromByteBuffer(ByteBuffer)}.
+     */
+    public static ParameterSet fromByteBufferNoCopy(ByteBuffer buffer) throws IOException {
+        if (buffer.isDirect()) {
+            return fromByteBuffer(buffer);
+        }
+        ByteBuffer serializedParams = buffer.slice();
+        ParameterSet pset = fromByteBuffer(buffer);
+        serializedParams.limit(pset.m_serializedSize);
+        return new ParameterSet(pset.m_params, pset.m_serializedSize, pset.m_encodedStrings,
+                pset.m_encodedStringArrays, serializedParams.asReadOnlyBuffer());
     }
 
-    private ParameterSet(Object[] params, int serializedSize, byte[][] encodedStrings, byte[][][] encodedStringArrays) {
+    private ParameterSet(Object[] params, int serializedSize, byte[][] encodedStrings,
+            byte[][][] encodedStringArrays, ByteBuffer serializedParams) {
         m_params = params;
         m_serializedSize = serializedSize;
         m_encodedStrings = encodedStrings;
         m_encodedStringArrays = encodedStringArrays;
+        m_serializedParams = serializedParams;
+    }
+
+    /**
+     * @return true if serializing this set copies the bytes it was deserialized from
+     */
+    public boolean hasSerializedForm() {
+        return m_serializedParams != null;
     }
 
     static Object limitType(Object o) {
@@ -677,6 +710,11 @@ public class ParameterSet implements JSONString {
 
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
 
+        if (m_serializedParams != null) {
+            buf.put(m_serializedParams.duplicate());
+            return;
+        }
+
         buf.putShort((short)m_params.length);
 
         for (int i = 0; i < m_params.length; i++) {
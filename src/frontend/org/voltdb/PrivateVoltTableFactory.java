@@ -80,4 +80,13 @@ public abstract class PrivateVoltTableFactory {
     public static int getUnderlyingBufferSize(VoltTable vt) {
         return vt.m_buffer.position();
     }
+
+    /**
+     * End users should not call this method.
+     * Append the serialized rows of a table to another with the same column schema.
+     * @return false, with the target left as it was, if the column schemas differ
+     */
+    public static boolean appendRows(VoltTable target, VoltTable source) {
+        return target.appendRows(source);
+    }
 }
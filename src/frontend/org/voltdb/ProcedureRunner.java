@@ -426,7 +426,8 @@ public class ProcedureRunner {
             else {
                 assert(m_catProc.getStatements().size() == 1);
                 try {
-                    m_cachedSingleStmt.params = getCleanParams(m_cachedSingleStmt.stmt, false, paramList);
+                    m_cachedSingleStmt.params = getCleanParams(m_cachedSingleStmt.stmt, false,
+                            getInvocationParams(), paramList);
                     if (getNonVoltDBBackendIfExists() != null) {
                         // Backend handling, such as HSQL or PostgreSQL
                         VoltTable table =
@@ -651,7 +652,25 @@ public class ProcedureRunner {
 
         QueuedSQL queuedSQL = new QueuedSQL();
         queuedSQL.expectation = expectation;
-        queuedSQL.params = getCleanParams(stmt, true, args);
+        queuedSQL.params = getCleanParams(stmt, true, null, args);
+        queuedSQL.stmt = stmt;
+
+        m_batch.add(queuedSQL);
+    }
+
+    /**
+     * Queue a statement whose parameters arrived serialized, such as those of an
+     * ad hoc query. If none of the parameters needs cleaning up, the EE is handed
+     * the bytes they arrived in.
+     */
+    public void voltQueueSQL(final SQLStmt stmt, ParameterSet params) {
+        if (stmt == null) {
+            throw new IllegalArgumentException("SQLStmt parameter to voltQueueSQL(..) was null.");
+        }
+        assert(stmt.statementParamTypes != null);
+
+        QueuedSQL queuedSQL = new QueuedSQL();
+        queuedSQL.params = getCleanParams(stmt, true, params, params.toArray());
         queuedSQL.stmt = stmt;
 
         m_batch.add(queuedSQL);
@@ -724,7 +743,7 @@ public class ProcedureRunner {
                     throw new VoltAbortException(msg);
                 }
             }
-            queuedSQL.params = getCleanParams(queuedSQL.stmt, false, argumentParams);
+            queuedSQL.params = getCleanParams(queuedSQL.stmt, false, null, argumentParams);
 
             m_batch.add(queuedSQL);
         }
@@ -945,7 +964,23 @@ public class ProcedureRunner {
                 " Try explicitly using a " + preferredType + " parameter.");
     }
 
-    private final ParameterSet getCleanParams(SQLStmt stmt, boolean verifyTypeConv, Object... inArgs) {
+    /**
+     * @return the deserialized parameters of the invocation being run, or null
+     */
+    private ParameterSet getInvocationParams() {
+        if (m_txnState == null) {
+            return null;
+        }
+        StoredProcedureInvocation invocation = m_txnState.getInvocation();
+        return (invocation != null ? invocation.getParams() : null);
+    }
+
+    /**
+     * @param source parameters the arguments were taken from, or null. If every argument is
+     * the very object found in a source that still has its serialized form, the source is
+     * returned so the EE gets the serialized bytes as they are.
+     */
+    private final ParameterSet getCleanParams(SQLStmt stmt, boolean verifyTypeConv, ParameterSet source, Object... inArgs) {
         final byte stmtParamTypes[] = stmt.statementParamTypes;
         final int numParamTypes = stmtParamTypes.length;
         final Object[] args = new Object[numParamTypes];
@@ -956,11 +991,13 @@ public class ProcedureRunner {
                     " where " + numParamTypes + " was expected for statement " + stmt.getText());
         }
 
+        boolean reuseSource = source != null && source.hasSerializedForm() && source.size() == numParamTypes;
         for (int ii = 0; ii < numParamTypes; ii++) {
             VoltType type = VoltType.get(stmtParamTypes[ii]);
             // handle non-null values
             if (inArgs[ii] != null) {
                 args[ii] = inArgs[ii];
+                reuseSource = reuseSource && (inArgs[ii] == source.getParam(ii));
                 assert(type != VoltType.INVALID);
                 if (verifyTypeConv && type != VoltType.INVALID) {
                     throwIfInfeasibleTypeConversion(stmt, args[ii].getClass(), ii, type);
@@ -969,6 +1006,7 @@ public class ProcedureRunner {
             }
 
             // handle null values
+            reuseSource = false;
             switch (type) {
             case TINYINT:
                 args[ii] = Byte.MIN_VALUE;
@@ -1009,6 +1047,9 @@ public class ProcedureRunner {
                                              " for SQL stmt: " + stmt.getText());
             }
         }
+        if (reuseSource) {
+            return source;
+        }
         return ParameterSet.fromArrayNoCopy(args);
     }
 
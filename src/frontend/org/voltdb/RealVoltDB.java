@@ -130,6 +130,7 @@ import org.voltdb.dtxn.InitiatorStats;
 import org.voltdb.dtxn.LatencyHistogramStats;
 import org.voltdb.dtxn.LatencyStats;
 import org.voltdb.dtxn.LatencyUncompressedHistogramStats;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.export.ExportManager;
 import org.voltdb.importer.ImportManager;
@@ -138,6 +139,7 @@ import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Initiator;
 import org.voltdb.iv2.KSafetyStats;
 import org.voltdb.iv2.LeaderAppointer;
+import org.voltdb.iv2.MpFragmentWaitStats;
 import org.voltdb.iv2.MpInitiator;
 import org.voltdb.iv2.SpInitiator;
 import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
@@ -145,6 +147,8 @@ import org.voltdb.iv2.TxnEgo;
 import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.join.BalancePartitionsStatistics;
 import org.voltdb.join.ElasticJoinService;
+import org.voltdb.largequery.LargeBlockManager;
+import org.voltdb.largequery.LargeBlockStats;
 import org.voltdb.licensetool.LicenseApi;
 import org.voltdb.messaging.VoltDbMessageFactory;
 import org.voltdb.modular.ModuleManager;
@@ -170,6 +174,8 @@ import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.utils.CLibrary;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.CatalogUtil.CatalogAndDeployment;
+import org.voltdb.utils.CompressionCodec;
+import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.FailedLoginCounter;
 import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.InMemoryJarfile;
@@ -1286,6 +1292,10 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_latencyHistogramStats = new LatencyUncompressedHistogramStats(m_myHostId);
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY_HISTOGRAM,
                     0, m_latencyHistogramStats);
+            StageLatencyStats stageLatencyStats = new StageLatencyStats();
+            getStatsAgent().registerStatsSource(StatsSelector.STAGELATENCY, 0, stageLatencyStats);
+            MpFragmentWaitStats mpFragmentWaitStats = new MpFragmentWaitStats();
+            getStatsAgent().registerStatsSource(StatsSelector.MPWAIT, 0, mpFragmentWaitStats);
 
 
             BalancePartitionsStatistics rebalanceStats = new BalancePartitionsStatistics();
@@ -1293,6 +1303,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
             KSafetyStats kSafetyStats = new KSafetyStats();
             getStatsAgent().registerStatsSource(StatsSelector.KSAFETY, 0, kSafetyStats);
+
+            SnapshotRestoreStats snapshotRestoreStats = new SnapshotRestoreStats();
+            getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTRESTORE, 0, snapshotRestoreStats);
             m_cpuStats = new CpuStats();
             getStatsAgent().registerStatsSource(StatsSelector.CPU,
                     0, m_cpuStats);
@@ -1302,6 +1315,12 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             // ENG-6321
             m_commandLogStats = new CommandLogStats(m_commandLog);
             getStatsAgent().registerStatsSource(StatsSelector.COMMANDLOG, 0, m_commandLogStats);
+            try {
+                LargeBlockManager.startup(new VoltFile(getVoltDBRootPath(), LargeBlockManager.DEFAULT_SWAP_DIRECTORY));
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to set up the large query swap directory", false, e);
+            }
+            getStatsAgent().registerStatsSource(StatsSelector.LARGEQUERYSWAP, 0, new LargeBlockStats());
 
             // Dummy DRCONSUMER stats
             replaceDRConsumerStatsWithDummy();
@@ -1501,8 +1520,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
+            boolean usingCommandLog = (m_catalogContext.cluster.getLogconfig() != null)
                     && (m_catalogContext.cluster.getLogconfig().get("log") != null)
                     && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
             if (!usingCommandLog) {
@@ -2427,6 +2445,16 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 if (sysType.getSnapshot() != null) {
                     hostLog.info("Snapshot priority set to " + sysType.getSnapshot().getPriority() + " [0 - 10]");
                 }
+                if (sysType.getCompression() != null) {
+                    CompressionCodec snapshotCodec =
+                            CompressionCodec.valueOf(sysType.getCompression().getSnapshot().name());
+                    CompressionCodec overflowCodec =
+                            CompressionCodec.valueOf(sysType.getCompression().getOverflow().name());
+                    CompressionService.setCodec(CompressionService.Use.SNAPSHOT, snapshotCodec);
+                    CompressionService.setCodec(CompressionService.Use.OVERFLOW, overflowCodec);
+                    hostLog.info("Snapshot compression set to " + snapshotCodec +
+                                 ", overflow compression set to " + overflowCodec);
+                }
                 if (sysType.getQuery() != null) {
                     if (sysType.getQuery().getTimeout() > 0) {
                         hostLog.info("Query timeout set to " + sysType.getQuery().getTimeout() + " milliseconds");
@@ -3202,6 +3230,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 // shut down Export and its connectors.
                 ExportManager.instance().shutdown();
 
+                // Sites are gone, nothing will load spilled blocks anymore
+                LargeBlockManager.shutdown();
+
                 // After sites are terminated, shutdown the DRProducer.
                 // The DRProducer is shared by all sites; don't kill it while any site is active.
                 if (m_producerDRGateway != null) {
@@ -3818,7 +3849,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Progress of the snapshot save files read on this host, one row per table.
+ * Save files report into a process wide registry as they are read so offline
+ * tools that read save files don't need a running server, the stats source
+ * registered by the server just publishes whatever is in the registry.
+ */
+public class SnapshotRestoreStats extends StatsSource {
+
+    public enum StatName {
+        TABLE_NAME,
+        FILES,
+        BYTES_TOTAL,
+        BYTES_READ,
+        PERCENT_COMPLETE,
+        CHUNKS_READ,
+        CHUNKS_LOADED,
+        CHUNKS_CORRUPT,
+        BYTES_DECOMPRESSED,
+        DECOMPRESS_MILLIS,
+        THROUGHPUT_MBPS
+    };
+
+    /**
+     * Counters for every save file of one table. Updated concurrently by the
+     * threads reading, decompressing and loading chunks.
+     */
+    public static class TableProgress {
+        private final String m_tableName;
+        private final AtomicInteger m_files = new AtomicInteger();
+        private final AtomicLong m_bytesTotal = new AtomicLong();
+        private final AtomicLong m_bytesRead = new AtomicLong();
+        private final AtomicLong m_chunksRead = new AtomicLong();
+        private final AtomicLong m_chunksLoaded = new AtomicLong();
+        private final AtomicLong m_chunksCorrupt = new AtomicLong();
+        private final AtomicLong m_bytesDecompressed = new AtomicLong();
+        private final AtomicLong m_decompressNanos = new AtomicLong();
+        private volatile long m_startTime = 0;
+        private volatile long m_lastUpdateTime = 0;
+
+        private TableProgress(String tableName) {
+            m_tableName = tableName;
+        }
+
+        public void fileStarted(long fileBytes) {
+            if (m_startTime == 0) {
+                m_startTime = System.currentTimeMillis();
+            }
+            m_files.incrementAndGet();
+            m_bytesTotal.addAndGet(fileBytes);
+        }
+
+        public void chunkRead(long bytes) {
+            m_chunksRead.incrementAndGet();
+            m_bytesRead.addAndGet(bytes);
+            m_lastUpdateTime = System.currentTimeMillis();
+        }
+
+        public void chunkDecompressed(long bytes, long nanos) {
+            m_bytesDecompressed.addAndGet(bytes);
+            m_decompressNanos.addAndGet(nanos);
+        }
+
+        public void chunkCorrupt() {
+            m_chunksCorrupt.incrementAndGet();
+        }
+
+        public void chunkLoaded() {
+            m_chunksLoaded.incrementAndGet();
+            m_lastUpdateTime = System.currentTimeMillis();
+        }
+
+        public long getBytesRead() {
+            return m_bytesRead.get();
+        }
+
+        public long getChunksRead() {
+            return m_chunksRead.get();
+        }
+
+        public long getChunksLoaded() {
+            return m_chunksLoaded.get();
+        }
+
+        public long getChunksCorrupt() {
+            return m_chunksCorrupt.get();
+        }
+    }
+
+    private static final ConcurrentHashMap<String, TableProgress> s_tables =
+            new ConcurrentHashMap<String, TableProgress>();
+
+    /**
+     * @return the progress counters for a table, created on first use
+     */
+    public static TableProgress getTableProgress(String tableName) {
+        TableProgress progress = s_tables.get(tableName);
+        if (progress == null) {
+            progress = new TableProgress(tableName);
+            TableProgress existing = s_tables.putIfAbsent(tableName, progress);
+            if (existing != null) {
+                progress = existing;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Forget the progress of earlier restores, called when a new restore starts
+     */
+    public static void reset() {
+        s_tables.clear();
+    }
+
+    public SnapshotRestoreStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo(StatName.TABLE_NAME.name(), VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo(StatName.FILES.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.BYTES_TOTAL.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.BYTES_READ.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.PERCENT_COMPLETE.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.CHUNKS_READ.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.CHUNKS_LOADED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.CHUNKS_CORRUPT.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.BYTES_DECOMPRESSED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.DECOMPRESS_MILLIS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.THROUGHPUT_MBPS.name(), VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final TableProgress progress = (TableProgress)rowKey;
+        final long bytesTotal = progress.m_bytesTotal.get();
+        final long bytesRead = progress.m_bytesRead.get();
+        final long elapsed = progress.m_lastUpdateTime - progress.m_startTime;
+        rowValues[columnNameToIndex.get(StatName.TABLE_NAME.name())] = progress.m_tableName;
+        rowValues[columnNameToIndex.get(StatName.FILES.name())] = progress.m_files.get();
+        rowValues[columnNameToIndex.get(StatName.BYTES_TOTAL.name())] = bytesTotal;
+        rowValues[columnNameToIndex.get(StatName.BYTES_READ.name())] = bytesRead;
+        rowValues[columnNameToIndex.get(StatName.PERCENT_COMPLETE.name())] =
+                bytesTotal > 0 ? (int)Math.min(100, (bytesRead * 100) / bytesTotal) : 0;
+        rowValues[columnNameToIndex.get(StatName.CHUNKS_READ.name())] = progress.m_chunksRead.get();
+        rowValues[columnNameToIndex.get(StatName.CHUNKS_LOADED.name())] = progress.m_chunksLoaded.get();
+        rowValues[columnNameToIndex.get(StatName.CHUNKS_CORRUPT.name())] = progress.m_chunksCorrupt.get();
+        rowValues[columnNameToIndex.get(StatName.BYTES_DECOMPRESSED.name())] = progress.m_bytesDecompressed.get();
+        rowValues[columnNameToIndex.get(StatName.DECOMPRESS_MILLIS.name())] =
+                progress.m_decompressNanos.get() / 1000000;
+        rowValues[columnNameToIndex.get(StatName.THROUGHPUT_MBPS.name())] =
+                elapsed > 0 ? (bytesRead / (1024.0 * 1024.0)) / (elapsed / 1000.0) : 0.0;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        return new ArrayList<Object>(s_tables.values()).iterator();
+    }
+}
@@ -498,6 +498,12 @@ public class StatsAgent extends OpsAgent
         case SNAPSHOTSTATUS:
             stats = collectStats(StatsSelector.SNAPSHOTSTATUS, false);
             break;
+        case SNAPSHOTRESTORE:
+            stats = collectStats(StatsSelector.SNAPSHOTRESTORE, false);
+            break;
+        case PLANCACHE:
+            stats = collectStats(StatsSelector.PLANCACHE, interval);
+            break;
         case MEMORY:
             stats = collectStats(StatsSelector.MEMORY, interval);
             break;
@@ -544,6 +550,12 @@ public class StatsAgent extends OpsAgent
         case LATENCY_HISTOGRAM:
             stats = collectStats(StatsSelector.LATENCY_HISTOGRAM, interval);
             break;
+        case STAGELATENCY:
+            stats = collectStats(StatsSelector.STAGELATENCY, interval);
+            break;
+        case MPWAIT:
+            stats = collectStats(StatsSelector.MPWAIT, interval);
+            break;
         case MANAGEMENT:
             stats = collectManagementStats(interval);
             break;
@@ -565,6 +577,9 @@ public class StatsAgent extends OpsAgent
         case COMMANDLOG:
             stats = collectStats(StatsSelector.COMMANDLOG, false);
             break;
+        case LARGEQUERYSWAP:
+            stats = collectStats(StatsSelector.LARGEQUERYSWAP, false);
+            break;
         case IMPORTER:
             stats = collectStats(StatsSelector.IMPORTER, interval);
             break;
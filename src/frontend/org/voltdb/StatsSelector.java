@@ -26,14 +26,19 @@ public enum StatsSelector {
     LATENCY,          // invoked as @stat latency
     LATENCY_COMPRESSED,  // before V7.3 this was @Statistics LATENCY
     LATENCY_HISTOGRAM,
+    STAGELATENCY,     // sampled SP transaction latency broken down by stage of execution
+    MPWAIT,           // time the MP initiator waits on the slowest partition of each batch
     PARTITIONCOUNT,
     IOSTATS,
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
     PLANNER,          // info about planner and EE performance and cache usage
+    PLANCACHE,        // hit, miss and eviction counts of the ad hoc plan cache
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
     SNAPSHOTSTATUS,
+    SNAPSHOTRESTORE,  // progress and throughput of save files being restored on each host
+    LARGEQUERYSWAP,   // large temp table blocks spilled to disk and reload latency on each host
     PROCEDUREINPUT,
     PROCEDUREOUTPUT,
     PROCEDUREDETAIL,  // provides more granular statistics for procedure calls at a per-statement level.
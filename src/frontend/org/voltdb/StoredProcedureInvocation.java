@@ -72,6 +72,11 @@ public class StoredProcedureInvocation implements JSONString {
 
     private int m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
     private boolean m_allPartition = false;
+    // Only meaningful to the ClientInterface that took the invocation off the wire, so it
+    // is read but never written back out by flattenToBuffer()
+    private int m_resultChunkBytes = 0;
+    // Stage latency stamps of a sampled invocation, never serialized, see StageLatencyStats
+    private long m_stageTimes[] = null;
 
     public StoredProcedureInvocation getShallowCopy()
     {
@@ -92,6 +97,8 @@ public class StoredProcedureInvocation implements JSONString {
 
         copy.m_batchTimeout = m_batchTimeout;
         copy.m_allPartition = m_allPartition;
+        copy.m_resultChunkBytes = m_resultChunkBytes;
+        copy.m_stageTimes = m_stageTimes;
 
         return copy;
     }
@@ -185,6 +192,26 @@ public class StoredProcedureInvocation implements JSONString {
         return m_allPartition;
     }
 
+    /**
+     * @return the frame size the client asked large results to be streamed back in,
+     * or 0 if the whole response should be sent at once
+     */
+    public int getResultChunkBytes() {
+        return m_resultChunkBytes;
+    }
+
+    public void setResultChunkBytes(int chunkBytes) {
+        m_resultChunkBytes = chunkBytes;
+    }
+
+    public long[] getStageTimes() {
+        return m_stageTimes;
+    }
+
+    public void setStageTimes(long stageTimes[]) {
+        m_stageTimes = stageTimes;
+    }
+
     /** Read into an serialized parameter buffer to extract a single parameter */
     Object getParameterAtIndex(int partitionIndex) {
         try {
@@ -399,6 +426,8 @@ public class StoredProcedureInvocation implements JSONString {
         // set these to defaults so old versions don't worry about them
         m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
         m_allPartition = false;
+        m_resultChunkBytes = 0;
+        m_stageTimes = null;
 
         switch (type) {
             case ORIGINAL:
@@ -429,7 +458,9 @@ public class StoredProcedureInvocation implements JSONString {
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
+                // the invocation holds on to the serialized parameters anyway,
+                // let the EE get them without encoding them again
+                return ParameterSet.fromByteBufferNoCopy(duplicate);
             }
         });
     }
@@ -488,6 +519,9 @@ public class StoredProcedureInvocation implements JSONString {
                 // note this always returns true as it's just a flag
                 m_allPartition = ProcedureInvocationExtensions.readAllPartition(buf);
                 break;
+            case ProcedureInvocationExtensions.RESULT_CHUNK_BYTES:
+                m_resultChunkBytes = ProcedureInvocationExtensions.readResultChunkBytes(buf);
+                break;
             default:
                 ProcedureInvocationExtensions.skipUnknownExtension(buf);
                 break;
@@ -500,7 +534,9 @@ public class StoredProcedureInvocation implements JSONString {
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
+                // the invocation holds on to the serialized parameters anyway,
+                // let the EE get them without encoding them again
+                return ParameterSet.fromByteBufferNoCopy(duplicate);
             }
         });
     }
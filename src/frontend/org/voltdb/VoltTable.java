@@ -30,6 +30,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
 import org.voltdb.types.GeographyPointValue;
@@ -1557,42 +1558,51 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
+            toJSONWriter(js);
+        }
+        catch (JSONException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to serialized a table to JSON.", e);
+        }
+        return js.toString();
+    }
 
-            js.object();
+    /**
+     * Write a JSON representation of this table to a writer, one value at a time,
+     * without building a string of the whole table first.
+     * @param js The writer, positioned where a value may be written.
+     * @throws JSONException if the writer fails or the value is out of sequence.
+     */
+    public void toJSONWriter(JSONWriter js) throws JSONException {
+        js.object();
 
-            // status code (1 byte)
-            js.keySymbolValuePair(JSON_STATUS_KEY, getStatusCode());
+        // status code (1 byte)
+        js.keySymbolValuePair(JSON_STATUS_KEY, getStatusCode());
 
-            // column schema
-            js.key(JSON_SCHEMA_KEY).array();
-            for (int i = 0; i < getColumnCount(); i++) {
-                js.object();
-                js.keySymbolValuePair(JSON_NAME_KEY, getColumnName(i));
-                js.keySymbolValuePair(JSON_TYPE_KEY, getColumnType(i).getValue());
-                js.endObject();
-            }
-            js.endArray();
+        // column schema
+        js.key(JSON_SCHEMA_KEY).array();
+        for (int i = 0; i < getColumnCount(); i++) {
+            js.object();
+            js.keySymbolValuePair(JSON_NAME_KEY, getColumnName(i));
+            js.keySymbolValuePair(JSON_TYPE_KEY, getColumnType(i).getValue());
+            js.endObject();
+        }
+        js.endArray();
 
-            // row data
-            js.key(JSON_DATA_KEY).array();
-            VoltTableRow row = cloneRow();
-            row.resetRowPosition();
-            while (row.advanceRow()) {
-                js.array();
-                for (int i = 0; i < getColumnCount(); i++) {
-                    row.putJSONRep(i, js);
-                }
-                js.endArray();
+        // row data
+        js.key(JSON_DATA_KEY).array();
+        VoltTableRow row = cloneRow();
+        row.resetRowPosition();
+        while (row.advanceRow()) {
+            js.array();
+            for (int i = 0; i < getColumnCount(); i++) {
+                row.putJSONRep(i, js);
             }
             js.endArray();
-
-            js.endObject();
-        }
-        catch (JSONException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to serialized a table to JSON.", e);
         }
-        return js.toString();
+        js.endArray();
+
+        js.endObject();
     }
 
     /**
@@ -1776,6 +1786,71 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         return cloned;
     }
 
+    /**
+     * Copy the schema and the serialized rows between two buffer offsets into a new table
+     * sized exactly to fit them. Used to cut a large result into bounded chunks without
+     * decoding any rows.
+     *
+     * @param startOffset Offset of the length prefix of the first row to copy.
+     * @param endOffset Offset just past the end of the last row to copy.
+     * @param rowCount Number of rows between the two offsets.
+     * @return A table with the same column schema holding just those rows.
+     */
+    final VoltTable copyRowRange(int startOffset, int endOffset, int rowCount) {
+        assert(startOffset >= m_rowStart + ROW_COUNT_SIZE);
+        assert(endOffset >= startOffset && endOffset <= m_buffer.limit());
+        final VoltTable chunk = new VoltTable(m_extraMetadata);
+        chunk.m_colCount = m_colCount;
+        chunk.m_rowCount = rowCount;
+        chunk.m_rowStart = m_rowStart;
+
+        final ByteBuffer dup = m_buffer.duplicate();
+        chunk.m_buffer = ByteBuffer.allocate(m_rowStart + ROW_COUNT_SIZE + (endOffset - startOffset));
+        dup.limit(m_rowStart).position(0);
+        chunk.m_buffer.put(dup);
+        chunk.m_buffer.putInt(rowCount);
+        dup.limit(endOffset).position(startOffset);
+        chunk.m_buffer.put(dup);
+        assert(chunk.verifyTableInvariants());
+        return chunk;
+    }
+
+    /**
+     * Append all the rows of another table with the same column schema, copying
+     * their serialized form in one go rather than row by row.
+     *
+     * @param source Table whose rows are appended.
+     * @return false, with this table left as it was, if the column schemas differ.
+     */
+    final boolean appendRows(VoltTable source) {
+        assert(verifyTableInvariants());
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        if ( ! Arrays.equals(getSchemaString(), source.getSchemaString())) {
+            return false;
+        }
+
+        final ByteBuffer rows = source.m_buffer.duplicate();
+        rows.limit(source.m_buffer.position()).position(source.m_rowStart + ROW_COUNT_SIZE);
+        final int end = m_buffer.position();
+        if (m_buffer.capacity() - end < rows.remaining()) {
+            final ByteBuffer buf2 = ByteBuffer.allocate(Math.max(m_buffer.capacity() * 2, end + rows.remaining()));
+            m_buffer.limit(end);
+            m_buffer.position(0);
+            buf2.put(m_buffer);
+            m_buffer = buf2;
+        }
+        m_buffer.limit(m_buffer.capacity());
+        m_buffer.put(rows);
+        m_buffer.limit(m_buffer.position());
+
+        m_rowCount += source.getRowCount();
+        m_buffer.putInt(m_rowStart, m_rowCount);
+        assert(verifyTableInvariants());
+        return true;
+    }
+
     boolean testForUTF8Encoding(byte strbytes[]) {
         try {
             // this doesn't prove definitively that the string is UTF-8
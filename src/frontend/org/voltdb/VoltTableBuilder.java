@@ -0,0 +1,510 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.VoltDecimalHelper;
+
+/**
+ * <p>Builds a {@link VoltTable} a row at a time through typed setters, for procedures
+ * that return large results. Unlike {@link VoltTable#addRow(Object...)} nothing is boxed,
+ * and the rows are encoded into a pooled direct buffer that grows without leaving garbage
+ * on the heap. {@link #build()} copies the rows into a table that is exactly the size of
+ * the result, so the only heap allocation per result is the result itself.</p>
+ *
+ * <p>Set every column of a row, in any order, then call {@link #addRow()}. Byte arrays
+ * passed to the setters are referenced, not copied, until the row is added. A builder
+ * can be reused after {@link #build()} or {@link #clearRowData()}, so a procedure can
+ * keep one per result schema. It is not thread safe, and {@link #discard()} must be called
+ * once it is no longer needed to return the buffer to the pool.</p>
+ */
+public class VoltTableBuilder {
+
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+    private static final int DECIMAL_SIZE = VoltType.DECIMAL.getLengthInBytesForFixedTypes();
+
+    private final VoltType[] m_types;
+    // Offset of the row count, which follows the serialized schema
+    private final int m_rowStart;
+    private BBContainer m_container;
+    private ByteBuffer m_buffer;
+    private int m_rowCount = 0;
+
+    // Values of the row being built, by column
+    private final boolean[] m_isSet;
+    private final boolean[] m_isNull;
+    private final long[] m_longs;
+    private final double[] m_doubles;
+    private final byte[][] m_bytes;
+    private final int[] m_offsets;
+    private final int[] m_lengths;
+    private final Object[] m_objects;
+    // DECIMAL values are serialized when set, 16 bytes per column
+    private final ByteBuffer m_decimals;
+
+    /**
+     * Create a builder with the given schema.
+     * @param columns the columns of the tables to build, in order
+     */
+    public VoltTableBuilder(ColumnInfo... columns) {
+        this(DEFAULT_CAPACITY, columns);
+    }
+
+    /**
+     * Create a builder with the given schema.
+     * @param initialCapacity expected size in bytes of the serialized tables, the buffer
+     * grows beyond it as needed
+     * @param columns the columns of the tables to build, in order
+     */
+    public VoltTableBuilder(int initialCapacity, ColumnInfo... columns) {
+        // Let VoltTable validate the schema and serialize it
+        final ByteBuffer header = new VoltTable(columns).getBuffer();
+        m_rowStart = header.getInt(0) + 4;
+
+        final int colCount = columns.length;
+        m_types = new VoltType[colCount];
+        for (int i = 0; i < colCount; i++) {
+            m_types[i] = columns[i].type;
+        }
+        m_isSet = new boolean[colCount];
+        m_isNull = new boolean[colCount];
+        m_longs = new long[colCount];
+        m_doubles = new double[colCount];
+        m_bytes = new byte[colCount][];
+        m_offsets = new int[colCount];
+        m_lengths = new int[colCount];
+        m_objects = new Object[colCount];
+        m_decimals = ByteBuffer.allocate(colCount * DECIMAL_SIZE);
+
+        m_container = DBBPool.allocateDirectAndPool(Math.max(initialCapacity, header.remaining()));
+        m_buffer = m_container.b();
+        m_buffer.clear();
+        m_buffer.put(header);
+    }
+
+    private void checkColumn(int column) {
+        if (m_buffer == null) {
+            throw new IllegalStateException("VoltTableBuilder has been discarded");
+        }
+        if (column < 0 || column >= m_types.length) {
+            throw new IndexOutOfBoundsException("Column index " + column + " is out of range, the table has " +
+                                                m_types.length + " columns");
+        }
+    }
+
+    private VoltTypeException wrongType(int column, String setter) {
+        return new VoltTypeException(setter + " can't set column " + column + " of type " + m_types[column]);
+    }
+
+    private void set(int column) {
+        m_isSet[column] = true;
+        m_isNull[column] = false;
+    }
+
+    /**
+     * Set a column of the current row to NULL.
+     */
+    public VoltTableBuilder setNull(int column) {
+        checkColumn(column);
+        m_isSet[column] = true;
+        m_isNull[column] = true;
+        return this;
+    }
+
+    /**
+     * Set a TINYINT, SMALLINT, INTEGER, BIGINT or TIMESTAMP column of the current row.
+     * TIMESTAMP values are in microseconds since the epoch. The smallest value of each
+     * integer type is its NULL.
+     * @throws VoltTypeException if the column has another type or the value doesn't fit
+     */
+    public VoltTableBuilder setLong(int column, long value) {
+        checkColumn(column);
+        final long min, max;
+        switch (m_types[column]) {
+        case TINYINT:
+            min = Byte.MIN_VALUE;
+            max = Byte.MAX_VALUE;
+            break;
+        case SMALLINT:
+            min = Short.MIN_VALUE;
+            max = Short.MAX_VALUE;
+            break;
+        case INTEGER:
+            min = Integer.MIN_VALUE;
+            max = Integer.MAX_VALUE;
+            break;
+        case BIGINT:
+        case TIMESTAMP:
+            min = Long.MIN_VALUE;
+            max = Long.MAX_VALUE;
+            break;
+        default:
+            throw wrongType(column, "setLong");
+        }
+        if (value < min || value > max) {
+            throw new VoltTypeException("Cast of " + value + " to " + m_types[column] + " would overflow");
+        }
+        m_longs[column] = value;
+        set(column);
+        return this;
+    }
+
+    /**
+     * Set a FLOAT column of the current row.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setDouble(int column, double value) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.FLOAT) {
+            throw wrongType(column, "setDouble");
+        }
+        m_doubles[column] = value;
+        set(column);
+        return this;
+    }
+
+    /**
+     * Set a DECIMAL column of the current row. A null value sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     * @throws RuntimeException if the value has too many digits for a DECIMAL
+     */
+    public VoltTableBuilder setDecimal(int column, BigDecimal value) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.DECIMAL) {
+            throw wrongType(column, "setDecimal");
+        }
+        if (value == null) {
+            return setNull(column);
+        }
+        m_decimals.position(column * DECIMAL_SIZE);
+        VoltDecimalHelper.serializeBigDecimal(value, m_decimals);
+        set(column);
+        return this;
+    }
+
+    /**
+     * Set a STRING column of the current row from UTF-8 encoded bytes, which
+     * must not change until the row is added. A null array sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setString(int column, byte[] utf8) {
+        return setString(column, utf8, 0, utf8 == null ? 0 : utf8.length);
+    }
+
+    /**
+     * Set a STRING column of the current row from a range of UTF-8 encoded bytes,
+     * which must not change until the row is added. A null array sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setString(int column, byte[] utf8, int offset, int length) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.STRING) {
+            throw wrongType(column, "setString");
+        }
+        return setBytes(column, utf8, offset, length);
+    }
+
+    /**
+     * Set a STRING column of the current row. This encodes the string,
+     * prefer {@link #setString(int, byte[])} when the bytes are at hand.
+     * A null value sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setString(int column, String value) {
+        return setString(column, value == null ? null : value.getBytes(VoltTable.ROWDATA_ENCODING));
+    }
+
+    /**
+     * Set a VARBINARY column of the current row, the bytes must not change
+     * until the row is added. A null array sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setVarbinary(int column, byte[] value) {
+        return setVarbinary(column, value, 0, value == null ? 0 : value.length);
+    }
+
+    /**
+     * Set a VARBINARY column of the current row from a range of bytes, which
+     * must not change until the row is added. A null array sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setVarbinary(int column, byte[] value, int offset, int length) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.VARBINARY) {
+            throw wrongType(column, "setVarbinary");
+        }
+        return setBytes(column, value, offset, length);
+    }
+
+    private VoltTableBuilder setBytes(int column, byte[] value, int offset, int length) {
+        if (value == null) {
+            return setNull(column);
+        }
+        if (offset < 0 || length < 0 || offset + length > value.length) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length +
+                                                " is out of bounds of an array of " + value.length);
+        }
+        if (length > VoltType.MAX_VALUE_LENGTH) {
+            throw new VoltOverflowException("Value in VoltTableBuilder larger than allowed max " +
+                                            VoltType.humanReadableSize(VoltType.MAX_VALUE_LENGTH));
+        }
+        m_bytes[column] = value;
+        m_offsets[column] = offset;
+        m_lengths[column] = length;
+        set(column);
+        return this;
+    }
+
+    /**
+     * Set a GEOGRAPHY column of the current row. A null value sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setGeography(int column, GeographyValue value) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.GEOGRAPHY) {
+            throw wrongType(column, "setGeography");
+        }
+        if (value == null) {
+            return setNull(column);
+        }
+        m_objects[column] = value;
+        set(column);
+        return this;
+    }
+
+    /**
+     * Set a GEOGRAPHY_POINT column of the current row. A null value sets the column to NULL.
+     * @throws VoltTypeException if the column has another type
+     */
+    public VoltTableBuilder setGeographyPoint(int column, GeographyPointValue value) {
+        checkColumn(column);
+        if (m_types[column] != VoltType.GEOGRAPHY_POINT) {
+            throw wrongType(column, "setGeographyPoint");
+        }
+        if (value == null) {
+            return setNull(column);
+        }
+        m_objects[column] = value;
+        set(column);
+        return this;
+    }
+
+    // Serialized size of a column of the current row
+    private int columnSize(int column) {
+        switch (m_types[column]) {
+        case TINYINT:
+            return 1;
+        case SMALLINT:
+            return 2;
+        case INTEGER:
+            return 4;
+        case BIGINT:
+        case TIMESTAMP:
+        case FLOAT:
+            return 8;
+        case DECIMAL:
+            return DECIMAL_SIZE;
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.getLengthInBytes();
+        case STRING:
+        case VARBINARY:
+            return 4 + (m_isNull[column] ? 0 : m_lengths[column]);
+        case GEOGRAPHY:
+            return 4 + (m_isNull[column] ? 0 : ((GeographyValue)m_objects[column]).getLengthInBytes());
+        default:
+            throw new VoltTypeException("Unsupported type: " + m_types[column]);
+        }
+    }
+
+    /**
+     * Append the current row, every column of which must have been set, to the table.
+     * @throws IllegalStateException if a column was not set
+     * @throws VoltOverflowException if the row is too long
+     */
+    public void addRow() {
+        if (m_buffer == null) {
+            throw new IllegalStateException("VoltTableBuilder has been discarded");
+        }
+        int rowSize = 0;
+        for (int col = 0; col < m_types.length; col++) {
+            if (!m_isSet[col]) {
+                throw new IllegalStateException("Column " + col + " was not set in this row");
+            }
+            rowSize += columnSize(col);
+        }
+        if (rowSize > VoltTableRow.MAX_TUPLE_LENGTH) {
+            throw new VoltOverflowException(
+                    "Table row total length larger than allowed max " + VoltTableRow.MAX_TUPLE_LENGTH_STR);
+        }
+        ensureRemaining(4 + rowSize);
+
+        final ByteBuffer buf = m_buffer;
+        buf.putInt(rowSize);
+        for (int col = 0; col < m_types.length; col++) {
+            final boolean isNull = m_isNull[col];
+            switch (m_types[col]) {
+            case TINYINT:
+                buf.put(isNull ? VoltType.NULL_TINYINT : (byte)m_longs[col]);
+                break;
+            case SMALLINT:
+                buf.putShort(isNull ? VoltType.NULL_SMALLINT : (short)m_longs[col]);
+                break;
+            case INTEGER:
+                buf.putInt(isNull ? VoltType.NULL_INTEGER : (int)m_longs[col]);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                buf.putLong(isNull ? VoltType.NULL_BIGINT : m_longs[col]);
+                break;
+            case FLOAT:
+                buf.putDouble(isNull ? VoltType.NULL_FLOAT : m_doubles[col]);
+                break;
+            case DECIMAL:
+                if (isNull) {
+                    VoltDecimalHelper.serializeNull(buf);
+                }
+                else {
+                    for (int i = col * DECIMAL_SIZE,
+                            end = i + DECIMAL_SIZE; i < end; i++) {
+                        buf.put(m_decimals.get(i));
+                    }
+                }
+                break;
+            case STRING:
+            case VARBINARY:
+                if (isNull) {
+                    buf.putInt(VoltTable.NULL_STRING_INDICATOR);
+                }
+                else {
+                    buf.putInt(m_lengths[col]);
+                    buf.put(m_bytes[col], m_offsets[col], m_lengths[col]);
+                }
+                break;
+            case GEOGRAPHY:
+                if (isNull) {
+                    buf.putInt(VoltTable.NULL_STRING_INDICATOR);
+                }
+                else {
+                    final GeographyValue gv = (GeographyValue)m_objects[col];
+                    buf.putInt(gv.getLengthInBytes());
+                    gv.flattenToBuffer(buf);
+                }
+                break;
+            case GEOGRAPHY_POINT:
+                if (isNull) {
+                    GeographyPointValue.serializeNull(buf);
+                }
+                else {
+                    ((GeographyPointValue)m_objects[col]).flattenToBuffer(buf);
+                }
+                break;
+            default:
+                throw new VoltTypeException("Unsupported type: " + m_types[col]);
+            }
+        }
+        m_rowCount++;
+        resetRow();
+    }
+
+    // Forget the values of the current row, dropping references to the caller's objects
+    private void resetRow() {
+        Arrays.fill(m_isSet, false);
+        Arrays.fill(m_bytes, null);
+        Arrays.fill(m_objects, null);
+    }
+
+    // Grow the buffer by swapping it for a bigger pooled one
+    private void ensureRemaining(int bytes) {
+        if (m_buffer.remaining() >= bytes) {
+            return;
+        }
+        final int needed = m_buffer.position() + bytes;
+        final BBContainer bigger = DBBPool.allocateDirectAndPool(Math.max(needed, m_buffer.capacity() * 2));
+        final ByteBuffer newBuffer = bigger.b();
+        newBuffer.clear();
+        m_buffer.flip();
+        newBuffer.put(m_buffer);
+        m_container.discard();
+        m_container = bigger;
+        m_buffer = newBuffer;
+    }
+
+    /**
+     * @return the number of rows added since the last {@link #build()} or {@link #clearRowData()}
+     */
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    /**
+     * @return the size in bytes of the table that {@link #build()} would return
+     */
+    public int getSerializedSize() {
+        return m_buffer.position();
+    }
+
+    /**
+     * Drop the rows added so far, along with any columns set in the current row.
+     */
+    public void clearRowData() {
+        if (m_buffer == null) {
+            throw new IllegalStateException("VoltTableBuilder has been discarded");
+        }
+        m_buffer.position(m_rowStart + 4);
+        m_rowCount = 0;
+        resetRow();
+    }
+
+    /**
+     * Copy the rows added so far into a new table sized to fit them exactly, and start
+     * over with no rows. Columns set in a row that hasn't been added are kept.
+     * @return the table
+     */
+    public VoltTable build() {
+        if (m_buffer == null) {
+            throw new IllegalStateException("VoltTableBuilder has been discarded");
+        }
+        m_buffer.putInt(m_rowStart, m_rowCount);
+        final ByteBuffer rows = m_buffer.duplicate();
+        rows.flip();
+        final ByteBuffer table = ByteBuffer.allocate(rows.remaining());
+        table.put(rows);
+        m_buffer.position(m_rowStart + 4);
+        m_rowCount = 0;
+        return new VoltTable(table, false);
+    }
+
+    /**
+     * Return the buffer to the pool. The builder can't be used afterwards.
+     */
+    public void discard() {
+        if (m_container != null) {
+            m_container.discard();
+            m_container = null;
+            m_buffer = null;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.utils.CoreUtils;
+
+/**
+ * Map from client handle to the bookkeeping of an outstanding invocation.
+ *
+ * The table is split into a power of two number of stripes, each of which is an
+ * open addressed hash table of primitive long keys guarded by its own monitor.
+ * Handles handed out by the client are sequential so consecutive invocations
+ * land on different stripes and threads submitting concurrently rarely meet on
+ * the same lock. Keys are never boxed, and removal uses backward shift deletion
+ * so a stripe never accumulates tombstones under steady churn.
+ *
+ * Every operation is linearizable with respect to a single handle, which is all the
+ * Distributer relies on: exactly one of the response, timeout and connection loss
+ * paths wins the race to {@link #remove(long)} a given handle.
+ */
+final class CallbackTable<V> {
+
+    /**
+     * Looks at, and may change, the value of a handle while its stripe lock is held.
+     */
+    interface ValueAction<V> {
+        /**
+         * @return for {@link CallbackTable#removeIf}, true if the value is to be removed
+         */
+        boolean apply(V value);
+    }
+
+    private static final int MAX_STRIPES = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final Stripe<V>[] m_stripes;
+    private final int m_stripeMask;
+
+    CallbackTable() {
+        this(Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, CoreUtils.availableProcessors()) * 4)));
+    }
+
+    @SuppressWarnings("unchecked")
+    CallbackTable(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two: " + stripes);
+        }
+        m_stripes = (Stripe<V>[]) new Stripe<?>[stripes];
+        for (int ii = 0; ii < stripes; ii++) {
+            m_stripes[ii] = new Stripe<>(INITIAL_STRIPE_CAPACITY);
+        }
+        m_stripeMask = stripes - 1;
+    }
+
+    private Stripe<V> stripeFor(long handle) {
+        return m_stripes[(int)(handle ^ (handle >>> 32)) & m_stripeMask];
+    }
+
+    /**
+     * @return the value previously associated with the handle or null
+     */
+    V put(long handle, V value) {
+        assert(value != null);
+        return stripeFor(handle).put(handle, value);
+    }
+
+    V get(long handle) {
+        return stripeFor(handle).get(handle);
+    }
+
+    boolean containsKey(long handle) {
+        return get(handle) != null;
+    }
+
+    /**
+     * @return the value that was removed, or null if another thread got there first
+     */
+    V remove(long handle) {
+        return stripeFor(handle).remove(handle, null);
+    }
+
+    /**
+     * Remove the value of the handle only if the test returns true for it. The test and the removal
+     * happen under the stripe lock, so no {@link #update} of the handle can come in between.
+     * @return the value that was removed, or null if there was none or it didn't pass
+     */
+    V removeIf(long handle, ValueAction<? super V> test) {
+        return stripeFor(handle).remove(handle, test);
+    }
+
+    /**
+     * Apply an update to the value of the handle under the stripe lock.
+     * @return the value that was updated, or null if there was none
+     */
+    V update(long handle, ValueAction<? super V> update) {
+        return stripeFor(handle).update(handle, update);
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe<V> s : m_stripes) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        for (Stripe<V> s : m_stripes) {
+            if (s.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the values of the table into a list. Each stripe is copied under its own
+     * lock so the result is not an atomic snapshot of the whole table. Callers are
+     * expected to {@link #remove(long)} an entry before acting on it.
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Stripe<V> s : m_stripes) {
+            s.copyValuesTo(values);
+        }
+        return values;
+    }
+
+    private static final class Stripe<V> {
+        private long m_keys[];
+        private Object m_values[];
+        private int m_size;
+        private int m_shift;
+
+        Stripe(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            m_keys = new long[capacity];
+            m_values = new Object[capacity];
+            m_shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        // Fibonacci hashing spreads sequential handles evenly across the slots
+        private int slot(long handle) {
+            return (int)((handle * 0x9E3779B97F4A7C15L) >>> m_shift);
+        }
+
+        synchronized int size() {
+            return m_size;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long handle) {
+            final int mask = m_keys.length - 1;
+            for (int ii = slot(handle); m_values[ii] != null; ii = (ii + 1) & mask) {
+                if (m_keys[ii] == handle) {
+                    return (V)m_values[ii];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(long handle, V value) {
+            int mask = m_keys.length - 1;
+            int ii = slot(handle);
+            for (; m_values[ii] != null; ii = (ii + 1) & mask) {
+                if (m_keys[ii] == handle) {
+                    V old = (V)m_values[ii];
+                    m_values[ii] = value;
+                    return old;
+                }
+            }
+            m_keys[ii] = handle;
+            m_values[ii] = value;
+            // Keep the load factor at or below one half so probe sequences stay short
+            if (++m_size > (m_keys.length >>> 1)) {
+                rehash(m_keys.length << 1);
+            }
+            return null;
+        }
+
+        synchronized V update(long handle, ValueAction<? super V> update) {
+            final V value = get(handle);
+            if (value != null) {
+                update.apply(value);
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long handle, ValueAction<? super V> test) {
+            final int mask = m_keys.length - 1;
+            int ii = slot(handle);
+            for (; m_values[ii] != null; ii = (ii + 1) & mask) {
+                if (m_keys[ii] == handle) {
+                    break;
+                }
+            }
+            V old = (V)m_values[ii];
+            if (old == null || (test != null && !test.apply(old))) {
+                return null;
+            }
+            // Backward shift deletion: pull later members of the probe sequence into the hole
+            int hole = ii;
+            for (int jj = (hole + 1) & mask; m_values[jj] != null; jj = (jj + 1) & mask) {
+                final int home = slot(m_keys[jj]);
+                if (((jj - home) & mask) >= ((jj - hole) & mask)) {
+                    m_keys[hole] = m_keys[jj];
+                    m_values[hole] = m_values[jj];
+                    hole = jj;
+                }
+            }
+            m_values[hole] = null;
+            m_size--;
+            return old;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void copyValuesTo(List<V> out) {
+            if (m_size == 0) {
+                return;
+            }
+            for (Object o : m_values) {
+                if (o != null) {
+                    out.add((V)o);
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            final long oldKeys[] = m_keys;
+            final Object oldValues[] = m_values;
+            allocate(capacity);
+            final int mask = capacity - 1;
+            for (int ii = 0; ii < oldKeys.length; ii++) {
+                if (oldValues[ii] != null) {
+                    int jj = slot(oldKeys[ii]);
+                    while (m_values[jj] != null) {
+                        jj = (jj + 1) & mask;
+                    }
+                    m_keys[jj] = oldKeys[ii];
+                    m_values[jj] = oldValues[ii];
+                }
+            }
+        }
+    }
+}
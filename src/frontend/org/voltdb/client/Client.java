@@ -130,6 +130,27 @@ public interface Client {
     public ClientResponse callProcedureWithTimeout(int queryTimeout, String procName, Object... parameters)
     throws IOException, NoConnectionsException, ProcCallException;
 
+    /**
+     * <p>Synchronously invoke a read only procedure or ad hoc query and stream its results back in chunks.
+     * Blocks until the first part of the response is available. A {@link ProcCallException}
+     * is thrown if the response is anything other then success.</p>
+     *
+     * <p>Large results are sent by the server in frames of about <code>chunkBytes</code> bytes and
+     * handed to the caller a chunk at a time through the returned {@link StreamingClientResponse}, which
+     * cuts the memory needed on both ends and the time to the first row. Procedures that write, and
+     * servers that don't support streaming, return the whole result as usual.</p>
+     *
+     * @param chunkBytes approximate size in bytes of each frame of the result, must be positive.
+     * @param procName <code>class</code> name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return {@link StreamingClientResponse} iterating over the chunks of the results.
+     * @throws ProcCallException on any VoltDB specific failure.
+     * @throws NoConnectionsException if this {@link Client} instance is not connected to any servers.
+     * @throws IOException if there is a Java network or connection problem.
+     */
+    public StreamingClientResponse callProcedureStreaming(int chunkBytes, String procName, Object... parameters)
+    throws IOException, NoConnectionsException, ProcCallException;
+
     /**
      * <p>Asynchronously invoke a replicated procedure with timeout, by providing a callback that will be invoked by
      * the single thread backing the client instance when the procedure invocation receives a response.
@@ -17,6 +17,8 @@
 
 package org.voltdb.client;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * Collect the client's opinion of the operation of client affinity.  For the
  * given partition ID, affinityWrites tracks write transactions that the client
@@ -28,10 +30,20 @@ package org.voltdb.client;
 public class ClientAffinityStats {
 
     private int m_partitionId;
-    private long m_affinityWrites;
-    private long m_rrWrites;
-    private long m_affinityReads;
-    private long m_rrReads;
+    // Updated concurrently by every thread queueing invocations, see Distributer.queue()
+    private volatile long m_affinityWrites;
+    private volatile long m_rrWrites;
+    private volatile long m_affinityReads;
+    private volatile long m_rrReads;
+
+    private static final AtomicLongFieldUpdater<ClientAffinityStats> s_affinityWrites =
+            AtomicLongFieldUpdater.newUpdater(ClientAffinityStats.class, "m_affinityWrites");
+    private static final AtomicLongFieldUpdater<ClientAffinityStats> s_rrWrites =
+            AtomicLongFieldUpdater.newUpdater(ClientAffinityStats.class, "m_rrWrites");
+    private static final AtomicLongFieldUpdater<ClientAffinityStats> s_affinityReads =
+            AtomicLongFieldUpdater.newUpdater(ClientAffinityStats.class, "m_affinityReads");
+    private static final AtomicLongFieldUpdater<ClientAffinityStats> s_rrReads =
+            AtomicLongFieldUpdater.newUpdater(ClientAffinityStats.class, "m_rrReads");
 
     ClientAffinityStats(int partitionId, long affinityWrites, long rrWrites,
             long affinityReads, long rrReads)
@@ -74,7 +86,7 @@ public class ClientAffinityStats {
 
     void addAffinityWrite()
     {
-        m_affinityWrites++;
+        s_affinityWrites.incrementAndGet(this);
     }
 
     /**
@@ -89,7 +101,7 @@ public class ClientAffinityStats {
 
     void addRrWrite()
     {
-        m_rrWrites++;
+        s_rrWrites.incrementAndGet(this);
     }
 
     /**
@@ -105,7 +117,7 @@ public class ClientAffinityStats {
 
     void addAffinityRead()
     {
-        m_affinityReads++;
+        s_affinityReads.incrementAndGet(this);
     }
 
     /**
@@ -120,7 +132,7 @@ public class ClientAffinityStats {
 
     void addRrRead()
     {
-        m_rrReads++;
+        s_rrReads.incrementAndGet(this);
     }
 
     /**
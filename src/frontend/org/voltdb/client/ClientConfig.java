@@ -46,6 +46,7 @@ public class ClientConfig {
     static final long DEFAULT_CONNECTION_TIMOUT_MS = 2 * 60 * 1000; // default timeout is 2 minutes;
     static final long DEFAULT_INITIAL_CONNECTION_RETRY_INTERVAL_MS = 1000; // default initial connection retry interval is 1 second
     static final long DEFAULT_MAX_CONNECTION_RETRY_INTERVAL_MS = 8000; // default max connection retry interval is 8 seconds
+    static final int DEFAULT_COALESCING_MAX_BYTES = 16 * 1024; // flush a coalesced batch once it reaches 16k
 
     final ClientAuthScheme m_hashScheme;
     final String m_username;
@@ -69,6 +70,8 @@ public class ClientConfig {
     boolean m_topologyChangeAware = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
+    long m_coalescingWindowNanos = 0;
+    int m_coalescingMaxBytes = DEFAULT_COALESCING_MAX_BYTES;
 
     //For unit testing. This should really be in Environment class we should assemble all such there.
     public static final boolean ENABLE_SSL_FOR_TEST = Boolean.valueOf(
@@ -380,6 +383,31 @@ public class ClientConfig {
         m_sendReadsToReplicasBytDefaultIfCAEnabled = on;
     }
 
+    /**
+     * <p>Coalesce invocations bound for the same server connection into a single network write.
+     * An invocation is held for at most <code>windowMicros</code> microseconds, or until
+     * <code>maxBytes</code> of serialized invocations are pending on the connection, whichever
+     * comes first. This trades a small amount of latency for far fewer writes and selector wakeups
+     * when an application issues many small asynchronous calls.</p>
+     *
+     * <p>Defaults to off. Has no effect on the server, which receives the same messages.</p>
+     *
+     * @param windowMicros Maximum time an invocation is held before it is written, 0 disables coalescing.
+     * @param maxBytes Pending bytes on a connection that force an immediate write.
+     */
+    public void setInvocationCoalescing(long windowMicros, int maxBytes) {
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException(
+                    "Coalescing window must not be negative, " + windowMicros + " was specified");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException(
+                    "Coalescing byte budget must be greater than 0, " + maxBytes + " was specified");
+        }
+        m_coalescingWindowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        m_coalescingMaxBytes = maxBytes;
+    }
+
     /**
      * <p>Attempts to reconnect to a node with retry after connection loss. See the {@link ReconnectStatusListener}.</p>
      *
@@ -146,6 +146,7 @@ public final class ClientImpl implements Client {
         }
         m_username = username;
         m_distributer.setTopologyChangeAware(config.m_topologyChangeAware);
+        m_distributer.setInvocationCoalescing(config.m_coalescingWindowNanos, config.m_coalescingMaxBytes);
         if (config.m_topologyChangeAware) {
             m_ex = Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Topoaware thread"));
         }
@@ -320,6 +321,56 @@ public final class ClientImpl implements Client {
         return internalSyncCallProcedure(nanos, invocation);
     }
 
+    /**
+     * Synchronously invoke a procedure call, blocking until the first part of the result is
+     * available, and stream the rest of a large result back in chunks.
+     * @param chunkBytes approximate size in bytes of each frame of the result.
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return StreamingClientResponse iterating over the result chunks.
+     * @throws org.voltdb.client.ProcCallException
+     * @throws NoConnectionsException
+     */
+    @Override
+    public StreamingClientResponse callProcedureStreaming(int chunkBytes, String procName, Object... parameters)
+            throws IOException, NoConnectionsException, ProcCallException
+    {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Result chunk size must be positive: " + chunkBytes);
+        }
+        if (m_isShutdown) {
+            throw new NoConnectionsException("Client instance is shutdown");
+        }
+        if (m_blessedThreadIds.contains(Thread.currentThread().getId())) {
+            throw new IOException("Can't invoke a procedure synchronously from with the client callback thread " +
+                    " without deadlocking the client library");
+        }
+
+        long handle = m_handle.getAndIncrement();
+        ProcedureInvocation invocation = new ProcedureInvocation(
+                handle, BatchTimeoutOverrideType.NO_TIMEOUT, false, chunkBytes, procName, parameters);
+        StreamingClientResponse response = new StreamingClientResponse();
+        if (!internalAsyncCallProcedure(response.m_callback, Distributer.USE_DEFAULT_CLIENT_TIMEOUT, invocation)) {
+            final ClientResponseImpl r = new ClientResponseImpl(
+                    ClientResponse.GRACEFUL_FAILURE,
+                    ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                    "",
+                    new VoltTable[0],
+                    String.format("Unable to queue client request."));
+            throw new ProcCallException(r, "Unable to queue client request.", null);
+        }
+
+        try {
+            response.waitForFirstFrame();
+        } catch (final InterruptedException e) {
+            throw new java.io.InterruptedIOException("Interrupted while waiting for response");
+        }
+        if (response.getStatus() != ClientResponse.SUCCESS) {
+            throw new ProcCallException(response, response.getStatusString(), null);
+        }
+        return response;
+    }
+
     /**
      * Asynchronously invoke a procedure call.
      * @param callback TransactionCallback that will be invoked with procedure results.
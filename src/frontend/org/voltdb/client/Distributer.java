@@ -74,6 +74,7 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.ImmutableSortedMap;
 import com.google_voltpatches.common.collect.Maps;
@@ -102,6 +103,8 @@ class Distributer {
     // collection of connections to the cluster
     private final CopyOnWriteArrayList<NodeConnection> m_connections =
             new CopyOnWriteArrayList<>();
+    // snapshot of m_connections for index based round robin without holding the Distributer lock
+    private volatile NodeConnection m_connectionSnapshot[] = new NodeConnection[0];
 
     private final ArrayList<ClientStatusListenerExt> m_listeners = new ArrayList<>();
 
@@ -111,7 +114,7 @@ class Distributer {
     private final SSLContext m_sslContext;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -134,9 +137,14 @@ class Distributer {
         }
     }
 
-    private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
-    private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
-    private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
+    /*
+     * Routing tables are read without holding the Distributer lock on every invocation.
+     * Writers hold the lock, build a new map and publish it, so readers always see a
+     * complete topology.
+     */
+    private volatile ImmutableMap<Integer, NodeConnection> m_partitionMasters = ImmutableMap.of();
+    private volatile ImmutableMap<Integer, NodeConnection[]> m_partitionReplicas = ImmutableMap.of();
+    private final Map<Integer, NodeConnection> m_hostIdToConnection = new ConcurrentHashMap<>();
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
@@ -144,13 +152,13 @@ class Distributer {
     private final AtomicReference<ClientResponse> m_partitionUpdateStatus = new AtomicReference<ClientResponse>();
 
     //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
-    private HashinatorLite m_hashinator = null;
+    private volatile HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
@@ -158,6 +166,10 @@ class Distributer {
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
     private boolean m_topologyChangeAware;
 
+    // Invocation coalescing, a window of 0 writes every invocation as soon as it is queued
+    private long m_coalescingWindowNanos = 0;
+    private int m_coalescingMaxBytes = ClientConfig.DEFAULT_COALESCING_MAX_BYTES;
+
     //private final Timer m_timer;
     private final ScheduledExecutorService m_ex =
         Executors.newSingleThreadScheduledExecutor(
@@ -320,16 +332,10 @@ class Distributer {
         @Override
         public void run() {
             try {
-                // make a threadsafe copy of all connections
-                ArrayList<NodeConnection> connections = new ArrayList<>();
-                synchronized (Distributer.this) {
-                    connections.addAll(m_connections);
-                }
-
                 final long nowNanos = System.nanoTime();
 
-                // for each connection
-                for (final NodeConnection c : connections) {
+                // for each connection, m_connections is copy on write so iteration is threadsafe
+                for (final NodeConnection c : m_connections) {
                     // check for connection age
                     final long sinceLastResponse = Math.max(1, nowNanos - c.m_lastResponseTimeNanos);
 
@@ -346,11 +352,13 @@ class Distributer {
                         c.sendPing();
                     }
 
-                    // for each outstanding procedure
-                    for (final Map.Entry<Long, CallbackBookeeping> e : c.m_callbacks.entrySet()) {
-                        final long handle = e.getKey();
-                        final CallbackBookeeping cb = e.getValue();
+                    // nothing outstanding, don't bother walking the callback stripes
+                    if (c.m_callbacksToInvoke.get() == 0) {
+                        continue;
+                    }
 
+                    // for each outstanding procedure
+                    for (final CallbackBookeeping cb : c.m_callbacks.values()) {
                         // if the timeout is expired, call the callback and remove the
                         // bookeeping data
                         final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
@@ -363,7 +371,7 @@ class Distributer {
                                 continue;
                             }
 
-                            c.handleTimedoutCallback(handle, nowNanos);
+                            c.handleTimedoutCallback(cb.handle, nowNanos);
                         }
                     }
                 }
@@ -390,29 +398,58 @@ class Distributer {
     }
 
     class CallbackBookeeping {
-        public CallbackBookeeping(long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+        public CallbackBookeeping(long handle, long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
             assert(callback != null);
+            this.handle = handle;
             this.timestampNanos = timestampNanos;
             this.callback = callback;
             this.name = name;
             this.procedureTimeoutNanos = timeoutNanos;
             this.ignoreBackpressure = ignoreBackpressure;
         }
+        final long handle;
         long timestampNanos;
         //Timeout in ms 0 means use conenction specified procedure timeoutMS.
         final long procedureTimeoutNanos;
         ProcedureCallback callback;
         String name;
         boolean ignoreBackpressure;
+        // Set once the first frame of a streamed response arrives, the transaction is done
+        // and the rest of the frames are on their way so it can no longer time out.
+        // Only accessed under the callback table's stripe lock.
+        boolean partialResponseReceived;
     }
 
+    // Both run under the callback table's stripe lock, which makes streaming and timing out exclusive
+    private static final CallbackTable.ValueAction<CallbackBookeeping> MARK_STREAMING =
+            new CallbackTable.ValueAction<CallbackBookeeping>() {
+        @Override
+        public boolean apply(CallbackBookeeping cb) {
+            cb.partialResponseReceived = true;
+            return true;
+        }
+    };
+
+    private static final CallbackTable.ValueAction<CallbackBookeeping> NOT_STREAMING =
+            new CallbackTable.ValueAction<CallbackBookeeping>() {
+        @Override
+        public boolean apply(CallbackBookeeping cb) {
+            return !cb.partialResponseReceived;
+        }
+    };
+
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
-        private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
+        private final CallbackTable<CallbackBookeeping> m_callbacks = new CallbackTable<>();
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
 
+        // Serialized invocations waiting to go out in a single write when coalescing is enabled
+        private final ArrayList<ByteBuffer> m_coalesced = new ArrayList<>();
+        private int m_coalescedBytes = 0;
+        private long m_coalescedBatches = 0;
+
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
@@ -464,7 +501,7 @@ class Distributer {
             assert(callbacksToInvoke >= 0);
 
             //Optimistically submit the task
-            m_callbacks.put(handle, new CallbackBookeeping(nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
+            m_callbacks.put(handle, new CallbackBookeeping(handle, nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
 
             //Schedule the timeout to fire relative to the amount of time
             //spent getting to this point. Might fire immediately
@@ -501,10 +538,62 @@ class Distributer {
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
                 return;
             } else {
-                m_connection.writeStream().enqueue(c);
+                enqueueInvocation(c);
             }
         }
 
+        /*
+         * Without coalescing every invocation is its own write and, if the port is idle,
+         * its own selector wakeup. With coalescing the first invocation of a batch schedules
+         * a flush at the end of the window and the batch goes out early if it fills the
+         * byte budget. Batches are handed to the write stream while holding the lock so
+         * invocations queued by one thread reach the wire in the order they were queued.
+         */
+        private void enqueueInvocation(ByteBuffer buf) {
+            if (m_coalescingWindowNanos == 0) {
+                m_connection.writeStream().enqueue(buf);
+                return;
+            }
+            boolean scheduleFlush = false;
+            synchronized (m_coalesced) {
+                m_coalesced.add(buf);
+                m_coalescedBytes += buf.remaining();
+                if (m_coalescedBytes >= m_coalescingMaxBytes) {
+                    flushCoalesced();
+                } else {
+                    scheduleFlush = m_coalesced.size() == 1;
+                }
+            }
+            if (scheduleFlush) {
+                try {
+                    m_ex.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (m_coalesced) {
+                                flushCoalesced();
+                            }
+                        }
+                    }, m_coalescingWindowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException ree) {
+                    // shutting down, don't strand the batch
+                    synchronized (m_coalesced) {
+                        flushCoalesced();
+                    }
+                }
+            }
+        }
+
+        // Must hold the m_coalesced lock
+        private void flushCoalesced() {
+            if (m_coalesced.isEmpty()) {
+                return;
+            }
+            m_connection.writeStream().enqueue(m_coalesced.toArray(new ByteBuffer[m_coalesced.size()]));
+            m_coalesced.clear();
+            m_coalescedBytes = 0;
+            m_coalescedBatches++;
+        }
+
         /*
          * For high precision timeouts, submit a discrete task to a scheduled
          * executor service to time out the transaction. The timeout task
@@ -531,10 +620,12 @@ class Distributer {
          */
         void handleTimedoutCallback(long handle, long nowNanos) {
             //Callback doesn't have to be there, it may have already
-            //received a response or been expired by the periodic expiration task, or a discrete expiration task
-            final CallbackBookeeping cb = m_callbacks.remove(handle);
+            //received a response or been expired by the periodic expiration task, or a discrete expiration task.
+            //A response that is already streaming back can't time out, the check is atomic with the
+            //marking of the first frame so one can't arrive between the check and the removal
+            final CallbackBookeeping cb = m_callbacks.removeIf(handle, NOT_STREAMING);
 
-            //It was handled during the race
+            //It was handled during the race, or is streaming
             if (cb == null) {
                 return;
             }
@@ -676,6 +767,21 @@ class Distributer {
                 return;
             }
 
+            //Frames of a streamed response before the last one go to the callback
+            //but leave it in place for the frames that follow
+            if (!response.isLastChunk()) {
+                final CallbackBookeeping stuff = m_callbacks.update(handle, MARK_STREAMING);
+                if (stuff != null) {
+                    response.setClientRoundtrip(Math.max(1, nowNanos - stuff.timestampNanos));
+                    try {
+                        stuff.callback.clientCallback(response);
+                    } catch (Exception e) {
+                        uncaughtException(stuff.callback, response, e);
+                    }
+                }
+                return;
+            }
+
             //Race with expiration thread to be the first to remove the callback
             //from the map and process it
             final CallbackBookeeping stuff = m_callbacks.remove(response.getClientHandle());
@@ -747,20 +853,25 @@ class Distributer {
         public void stopping(Connection c) {
             super.stopping(c);
             m_isConnected = false;
+            //Anything still waiting to be coalesced gets a connection lost response below
+            synchronized (m_coalesced) {
+                m_coalesced.clear();
+                m_coalescedBytes = 0;
+            }
             //Prevent queueing of new work to this connection
             synchronized (Distributer.this) {
                 /*
                  * Repair all cluster topology data with the node connection removed
                  */
-                Iterator<Map.Entry<Integer, NodeConnection>> i = m_partitionMasters.entrySet().iterator();
-                while (i.hasNext()) {
-                    Map.Entry<Integer, NodeConnection> entry = i.next();
-                    if (entry.getValue() == this) {
-                        i.remove();
+                ImmutableMap.Builder<Integer, NodeConnection> masters = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection> entry : m_partitionMasters.entrySet()) {
+                    if (entry.getValue() != this) {
+                        masters.put(entry);
                     }
                 }
+                m_partitionMasters = masters.build();
 
-                i = m_hostIdToConnection.entrySet().iterator();
+                Iterator<Map.Entry<Integer, NodeConnection>> i = m_hostIdToConnection.entrySet().iterator();
                 while (i.hasNext()) {
                     Map.Entry<Integer, NodeConnection> entry = i.next();
                     if (entry.getValue() == this) {
@@ -768,33 +879,22 @@ class Distributer {
                     }
                 }
 
-                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = m_partitionReplicas.entrySet().iterator();
-                List<Pair<Integer, NodeConnection[]>> entriesToRewrite = new ArrayList<>();
-                while (i2.hasNext()) {
-                    Map.Entry<Integer, NodeConnection[]> entry = i2.next();
+                ImmutableMap.Builder<Integer, NodeConnection[]> replicas = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection[]> entry : m_partitionReplicas.entrySet()) {
+                    List<NodeConnection> survivors = new ArrayList<>(entry.getValue().length);
                     for (NodeConnection nc : entry.getValue()) {
-                        if (nc == this) {
-                            entriesToRewrite.add(Pair.of(entry.getKey(), entry.getValue()));
+                        if (nc != this) {
+                            survivors.add(nc);
                         }
                     }
-                }
-
-                for (Pair<Integer, NodeConnection[]> entry : entriesToRewrite) {
-                    m_partitionReplicas.remove(entry.getFirst());
-                    NodeConnection survivors[] = new NodeConnection[entry.getSecond().length - 1];
-                    if (survivors.length == 0) {
-                        break;
-                    }
-                    int zz = 0;
-                    for (int ii = 0; ii < entry.getSecond().length; ii++) {
-                        if (entry.getSecond()[ii] != this) {
-                            survivors[zz++] = entry.getSecond()[ii];
-                        }
+                    if (!survivors.isEmpty()) {
+                        replicas.put(entry.getKey(), survivors.toArray(new NodeConnection[survivors.size()]));
                     }
-                    m_partitionReplicas.put(entry.getFirst(), survivors);
                 }
+                m_partitionReplicas = replicas.build();
 
                 m_connections.remove(this);
+                m_connectionSnapshot = m_connections.toArray(new NodeConnection[0]);
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.connectionLost(
@@ -837,12 +937,11 @@ class Distributer {
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
-            for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
+            for (CallbackBookeeping callBk : m_callbacks.values()) {
                 //Check for race with other threads
-                if (m_callbacks.remove(e.getKey()) == null) {
+                if (m_callbacks.remove(callBk.handle) == null) {
                     continue;
                 }
-                final CallbackBookeeping callBk = e.getValue();
                 try {
                     callBk.callback.clientCallback(r);
                 }
@@ -931,6 +1030,19 @@ class Distributer {
         } while(more);
     }
 
+    /**
+     * Number of coalesced batches handed to the write streams of all connections, for tests
+     */
+    long getCoalescedBatchCount() {
+        long batches = 0;
+        for (NodeConnection cxn : m_connections) {
+            synchronized (cxn.m_coalesced) {
+                batches += cxn.m_coalescedBatches;
+            }
+        }
+        return batches;
+    }
+
     Distributer() {
         this( false,
                 ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
@@ -1046,6 +1158,7 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            m_connectionSnapshot = m_connections.toArray(new NodeConnection[0]);
         }
 
         if (m_useClientAffinity) {
@@ -1146,122 +1259,139 @@ class Distributer {
         boolean backpressure = true;
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Routing is lock free. m_connections is copy on write and the affinity tables are
+         * immutable snapshots published by the topology update path, so the only thing that
+         * needs the Distributer lock is reporting backpressure (see below).
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
+        final NodeConnection connections[] = m_connectionSnapshot;
+        final int totalConnections = connections.length;
 
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
-            }
+        if (totalConnections == 0) {
+            throw new NoConnectionsException("No connections.");
+        }
 
-            /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
-             */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
-                Procedure procedureInfo = null;
-                if (procedures != null) {
-                    procedureInfo = procedures.get(invocation.getProcName());
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
+         */
+        final HashinatorLite hashinator = m_hashinator;
+        if (m_useClientAffinity && (hashinator != null)) {
+            final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
+            Procedure procedureInfo = null;
+            if (procedures != null) {
+                procedureInfo = procedures.get(invocation.getProcName());
+            }
+            Integer hashedPartition = -1;
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (( ! procedureInfo.multiPart) &&
+                    // User may have passed too few parameters to allow dispatching.
+                    // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                    hashedPartition = hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
                 }
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
-                    }
-                    /*
-                     * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+                /*
+                 * If the procedure is read only and single part and the user wants it, load balance across replicas
+                 * This is probably slower for SAFE consistency.
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
                         }
-                    } else {
-                        /*
-                         * For writes or SAFE reads, this is the best way to go
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
                     }
+                } else {
+                    /*
+                     * For writes or SAFE reads, this is the best way to go
+                     */
+                    cxn = m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        backpressure = false;
+                    }
                 }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
-                    cxn = null;
+            }
+            if (cxn != null && !cxn.m_isConnected) {
+                // Would be nice to log something here
+                // Client affinity picked a connection that was actually disconnected.  Reset to null
+                // and let the round-robin choice pick a connection
+                cxn = null;
+            }
+            ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
+            if (stats == null) {
+                stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
+                ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                if (existing != null) {
+                    stats = existing;
                 }
-                ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
-                if (stats == null) {
-                    stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+            }
+            if (cxn != null) {
+                if (procedureInfo != null && procedureInfo.readOnly) {
+                    stats.addAffinityRead();
                 }
-                if (cxn != null) {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addAffinityRead();
-                    }
-                    else {
-                        stats.addAffinityWrite();
-                    }
+                else {
+                    stats.addAffinityWrite();
+                }
+            }
+            // account these here because we lose the partition ID and procedure info once we
+            // bust out of this scope.
+            else {
+                if (procedureInfo != null && procedureInfo.readOnly) {
+                    stats.addRrRead();
                 }
-                // account these here because we lose the partition ID and procedure info once we
-                // bust out of this scope.
                 else {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addRrRead();
-                    }
-                    else {
-                        stats.addRrWrite();
-                    }
+                    stats.addRrWrite();
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = connections[Math.abs(m_nextConnection.incrementAndGet() % totalConnections)];
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    // serialize and queue the invocation
+                    backpressure = false;
+                    break;
                 }
             }
+        }
 
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+        if (backpressure) {
+            /*
+             * Synchronization on Distributer.this pairs with offBackPressure. The write stream
+             * clears its backpressure flag before running that callback, so if the connection
+             * still reports backpressure while the lock is held the off notification is
+             * guaranteed to follow the on notification and the wakeup can't be lost.
+             * If it cleared in the meantime go ahead and use the connection.
+             */
+            synchronized (this) {
+                if (cxn != null && !cxn.hadBackPressure() && cxn.m_isConnected) {
+                    backpressure = false;
+                } else {
+                    cxn = null;
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
+                    }
                 }
             }
         }
 
         /*
-         * Do the heavy weight serialization outside the synchronized block.
-         * createWork synchronizes on an individual connection which allows for more concurrency
+         * Do the heavy weight serialization outside of any lock.
+         * createWork only touches a single stripe of the connection's callback table
          */
         if (cxn != null) {
             ByteBuffer buf = null;
@@ -1378,11 +1508,9 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        // the counters are updated atomically in queue(), so a per-entry copy is good enough
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1446,8 +1574,8 @@ class Distributer {
                     tables[1].getVarbinary("HASHCONFIG"),
                     cooked);
         }
-        m_partitionMasters.clear();
-        m_partitionReplicas.clear();
+        Map<Integer, NodeConnection> masters = new HashMap<>();
+        Map<Integer, NodeConnection[]> replicas = new HashMap<>();
         // The MPI's partition ID is 16383 (MpInitiator.MP_INIT_PID), so we shouldn't inadvertently
         // hash to it.  Go ahead and include it in the maps, we can use it at some point to
         // route MP transactions directly to the MPI node.
@@ -1465,13 +1593,15 @@ class Distributer {
                     unconnected.add(hostId);
                }
             }
-            m_partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
+            replicas.put(partition, connections.toArray(new NodeConnection[0]));
 
             Integer leaderHostId = Integer.valueOf(vt.getString("Leader").split(":")[0]);
             if (m_hostIdToConnection.containsKey(leaderHostId)) {
-                m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
+                masters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        m_partitionMasters = ImmutableMap.copyOf(masters);
+        m_partitionReplicas = ImmutableMap.copyOf(replicas);
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
@@ -1612,6 +1742,17 @@ class Distributer {
         m_topologyChangeAware = topoAware;
     }
 
+    /**
+     * Configure invocation coalescing. Must be called before any connections are created.
+     * @param windowNanos longest an invocation is held back, 0 disables coalescing
+     * @param maxBytes pending bytes on a connection that trigger an immediate write
+     */
+    void setInvocationCoalescing(long windowNanos, int maxBytes) {
+        assert(windowNanos >= 0 && maxBytes > 0);
+        m_coalescingWindowNanos = windowNanos;
+        m_coalescingMaxBytes = maxBytes;
+    }
+
     void createConnectionsUponTopologyChange() {
 
         if(!m_topologyChangeAware || m_createConnectionUponTopoChangeInProgress.get()) {
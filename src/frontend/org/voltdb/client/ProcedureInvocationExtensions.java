@@ -47,6 +47,7 @@ import java.nio.ByteBuffer;
 public abstract class ProcedureInvocationExtensions {
     public static final byte BATCH_TIMEOUT = 1;  // batch timeout
     public static final byte ALL_PARTITION = 2; // whether proc is part of run-everywhere
+    public static final byte RESULT_CHUNK_BYTES = 3; // stream results back in frames of about this size
 
     private static final int INTEGER_SIZE = 4;
 
@@ -87,6 +88,25 @@ public abstract class ProcedureInvocationExtensions {
         return true;
     }
 
+    public static void writeResultChunkBytesWithTypeByte(ByteBuffer buf, int chunkBytes) {
+        buf.put(RESULT_CHUNK_BYTES);
+        writeLength(buf, INTEGER_SIZE);
+        buf.putInt(chunkBytes);
+    }
+
+    public static int readResultChunkBytes(ByteBuffer buf) {
+        int len = readLength(buf);
+        if (len != INTEGER_SIZE) {
+            throw new IllegalStateException(
+                    "Result chunk size extension serialization length expected to be 4");
+        }
+        int chunkBytes = buf.getInt();
+        if (chunkBytes <= 0) {
+            throw new IllegalStateException("Invalid result chunk size deserialized: " + chunkBytes);
+        }
+        return chunkBytes;
+    }
+
     public static void skipUnknownExtension(ByteBuffer buf) {
         int len = readLength(buf);
         buf.position(buf.position() + len); // skip ahead
@@ -0,0 +1,224 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+
+/**
+ * <p>The response to {@link Client#callProcedureStreaming(int, String, Object...)}. A large
+ * result is sent back by the server in a series of bounded frames, and this response hands
+ * the rows to the caller a chunk at a time as the frames arrive instead of waiting for, and
+ * holding on to, the whole result.</p>
+ *
+ * <p>Each chunk returned by {@link #next()} is a {@link VoltTable} with the full schema of one
+ * of the procedure's result tables and a subset of its rows. Chunks arrive in order, every
+ * result table produces at least one chunk even if it is empty, and
+ * {@link #getCurrentTableIndex()} tells which result table the last chunk belongs to. A server
+ * that doesn't support streaming, or a result small enough to fit in a single frame, simply
+ * yields each whole table as one chunk.</p>
+ *
+ * <p>Status, application status and round trip times come from the first frame and are
+ * available as soon as the call returns. If the connection is lost part way through the
+ * stream, {@link #next()} throws an {@link IllegalStateException} carrying the status
+ * string of the failure.</p>
+ *
+ * <p>Chunks that have been received but not yet consumed are queued in memory, so a
+ * consumer should keep up with the stream to benefit from the bounded frames.</p>
+ */
+public class StreamingClientResponse implements ClientResponse, Iterator<VoltTable> {
+
+    private final LinkedBlockingQueue<ClientResponse> m_frames = new LinkedBlockingQueue<>();
+    private volatile ClientResponse m_first;
+
+    // Consumer side state, only touched by the thread iterating
+    private ClientResponse m_pending;
+    private int m_pendingTable = 0;
+    private boolean m_done = false;
+    private boolean m_started = false;
+    private int m_currentTableIndex = -1;
+    private VoltTable m_assembled[] = null;
+
+    StreamingClientResponse() {
+    }
+
+    /**
+     * The callback the client library delivers every frame to.
+     */
+    final ProcedureCallback m_callback = new ProcedureCallback() {
+        @Override
+        public void clientCallback(ClientResponse response) {
+            m_frames.offer(response);
+        }
+    };
+
+    /**
+     * Block until the first frame, or the whole response, has arrived.
+     */
+    void waitForFirstFrame() throws InterruptedException {
+        if (m_first == null) {
+            m_pending = m_frames.take();
+            m_first = m_pending;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!m_done && (m_pending == null || m_pendingTable >= tablesIn(m_pending))) {
+            if (m_pending != null && isLast(m_pending)) {
+                m_done = true;
+                break;
+            }
+            try {
+                m_pending = m_frames.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next result chunk", e);
+            }
+            m_pendingTable = 0;
+            if (m_pending.getStatus() != ClientResponse.SUCCESS) {
+                // Lost the connection or timed out part way through the stream
+                m_done = true;
+                throw new IllegalStateException(m_pending.getStatusString());
+            }
+        }
+        return !m_done;
+    }
+
+    @Override
+    public VoltTable next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        m_started = true;
+        if (m_pending instanceof ClientResponseImpl && ((ClientResponseImpl)m_pending).isChunk()) {
+            m_currentTableIndex = ((ClientResponseImpl)m_pending).getChunkTableIndex();
+        } else {
+            m_currentTableIndex = m_pendingTable;
+        }
+        return m_pending.getResults()[m_pendingTable++];
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return index of the result table the chunk last returned by {@link #next()} belongs to
+     */
+    public int getCurrentTableIndex() {
+        return m_currentTableIndex;
+    }
+
+    private static int tablesIn(ClientResponse response) {
+        return response.getResults().length;
+    }
+
+    private static boolean isLast(ClientResponse response) {
+        return !(response instanceof ClientResponseImpl) || ((ClientResponseImpl)response).isLastChunk();
+    }
+
+    /**
+     * Wait for the rest of the stream and put the chunks back together into whole tables.
+     * This gives up the memory savings of streaming and is only meant for handing the
+     * response to code that expects an ordinary {@link ClientResponse}.
+     *
+     * @throws IllegalStateException if chunks have already been consumed with {@link #next()}
+     */
+    @Override
+    public VoltTable[] getResults() {
+        if (m_assembled != null) {
+            return m_assembled;
+        }
+        if (m_started) {
+            throw new IllegalStateException("Results are already being streamed through next()");
+        }
+        List<List<VoltTable>> chunks = new ArrayList<>();
+        while (hasNext()) {
+            VoltTable chunk = next();
+            if (m_currentTableIndex >= chunks.size()) {
+                chunks.add(new ArrayList<VoltTable>());
+            }
+            chunks.get(m_currentTableIndex).add(chunk);
+        }
+        VoltTable tables[] = new VoltTable[chunks.size()];
+        for (int ii = 0; ii < tables.length; ii++) {
+            final List<VoltTable> parts = chunks.get(ii);
+            if (parts.size() == 1) {
+                tables[ii] = parts.get(0);
+                continue;
+            }
+            int bytes = 0;
+            for (VoltTable part : parts) {
+                bytes += part.getSerializedSize();
+            }
+            final VoltTable merged = parts.get(0).clone(bytes);
+            for (VoltTable part : parts) {
+                part.resetRowPosition();
+                while (part.advanceRow()) {
+                    merged.add(part);
+                }
+            }
+            tables[ii] = merged;
+        }
+        m_assembled = tables;
+        return tables;
+    }
+
+    @Override
+    public byte getStatus() {
+        return m_first.getStatus();
+    }
+
+    @Override
+    public byte getAppStatus() {
+        return m_first.getAppStatus();
+    }
+
+    @Override
+    public String getStatusString() {
+        return m_first.getStatusString();
+    }
+
+    @Override
+    public String getAppStatusString() {
+        return m_first.getAppStatusString();
+    }
+
+    @Override
+    public int getClusterRoundtrip() {
+        return m_first.getClusterRoundtrip();
+    }
+
+    @Override
+    public int getClientRoundtrip() {
+        return m_first.getClientRoundtrip();
+    }
+
+    @Override
+    public long getClientRoundtripNanos() {
+        return m_first.getClientRoundtripNanos();
+    }
+}
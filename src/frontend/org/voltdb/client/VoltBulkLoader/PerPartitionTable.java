@@ -20,15 +20,13 @@ package org.voltdb.client.VoltBulkLoader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
@@ -36,6 +34,7 @@ import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.ParameterConverter;
 import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
 import org.voltdb.VoltType;
 import org.voltdb.VoltTypeException;
 import org.voltdb.client.ClientImpl;
@@ -45,6 +44,11 @@ import org.voltdb.client.ProcedureCallback;
 /**
  * Partition specific table potentially shared by multiple VoltBulkLoader instances,
  * provided that they are all inserting to the same table.
+ *
+ * Rows are converted on the inserting thread and appended straight into the VoltTable
+ * of the batch being staged. A full batch is swapped for an empty one and handed to the
+ * partition's thread through a lock-free queue, and the partition's thread reuses the
+ * batch once the response to it has been handled.
  */
 public class PerPartitionTable {
     private static final VoltLogger loaderLog = new VoltLogger("LOADER");
@@ -54,8 +58,14 @@ public class PerPartitionTable {
     //The index in loader tables and the PartitionProcessor number
     final int m_partitionId;
     final boolean m_isMP;
-    //Queue for processing pending rows for this table
-    LinkedBlockingQueue<VoltBulkLoaderRow> m_partitionRowQueue;
+    //Batch rows are currently appended to, guarded by this
+    private Batch m_stagingBatch;
+    //Full batches waiting to be sent, in the order they were filled
+    private final ConcurrentLinkedQueue<Batch> m_fullBatches = new ConcurrentLinkedQueue<Batch>();
+    //Sent batches that can be reused
+    private final ConcurrentLinkedQueue<Batch> m_freeBatches = new ConcurrentLinkedQueue<Batch>();
+    //Rows that can still be staged before inserting blocks until a batch is sent
+    private final Semaphore m_stagingPermits;
 
     final ExecutorService m_es;
 
@@ -63,8 +73,6 @@ public class PerPartitionTable {
     final int m_partitionedColumnIndex;
     //Partitioned column type
     final VoltType m_partitionColumnType;
-    //Table used to build up requests to the PartitionProcessor
-    VoltTable m_table;
     //Column information
     final VoltTable.ColumnInfo m_columnInfo[];
     //Column types
@@ -82,15 +90,61 @@ public class PerPartitionTable {
     //Whether to retry insertion when the connection is lost
     final boolean m_autoReconnect;
 
+    /**
+     * Rows staged for one request, with the handle and the loader of every row.
+     */
+    private class Batch {
+        final VoltTable m_table = new VoltTable(m_columnInfo);
+        final Object[] m_rowHandles;
+        final VoltBulkLoader[] m_loaders;
+
+        Batch(int capacity) {
+            m_rowHandles = new Object[capacity];
+            m_loaders = new VoltBulkLoader[capacity];
+        }
+
+        int size() {
+            return m_table.getRowCount();
+        }
+
+        void add(VoltBulkLoader loader, Object rowHandle, Object[] row) {
+            final int index = m_table.getRowCount();
+            m_table.addRow(row);
+            m_rowHandles[index] = rowHandle;
+            m_loaders[index] = loader;
+        }
+
+        // Copy the rows out for row by row processing
+        List<VoltBulkLoaderRow> getRows() {
+            final List<VoltBulkLoaderRow> rows = new ArrayList<VoltBulkLoaderRow>(size());
+            for (int i = 0; i < size(); i++) {
+                final VoltTableRow row = m_table.fetchRow(i);
+                final Object[] rowData = new Object[m_columnTypes.length];
+                for (int col = 0; col < rowData.length; col++) {
+                    rowData[col] = row.get(col, m_columnTypes[col]);
+                    if (row.wasNull()) {
+                        rowData[col] = null;
+                    }
+                }
+                rows.add(new VoltBulkLoaderRow(m_loaders[i], m_rowHandles[i], rowData));
+            }
+            return rows;
+        }
+
+        void clear() {
+            Arrays.fill(m_rowHandles, 0, size(), null);
+            Arrays.fill(m_loaders, 0, size(), null);
+            m_table.clearRowData();
+        }
+    }
+
     // Callback for batch submissions to the Client. A failed request submits the entire
-    // batch of rows to m_failedQueue for row by row processing on m_failureProcessor.
+    // batch for row by row processing on m_es.
     class PartitionProcedureCallback implements ProcedureCallback {
-        final List<VoltBulkLoaderRow> m_batchRowList;
-        final Map<VoltBulkLoader, Long> m_batchSizes;
+        final Batch m_batch;
 
-        PartitionProcedureCallback(List<VoltBulkLoaderRow> batchRowList, Map<VoltBulkLoader, Long> batchSizes) {
-            m_batchRowList = batchRowList;
-            m_batchSizes = batchSizes;
+        PartitionProcedureCallback(Batch batch) {
+            m_batch = batch;
         }
 
         // Called by Client to inform us of the status of the bulk insert.
@@ -102,7 +156,9 @@ public class PerPartitionTable {
                     @Override
                     public void run() {
                         try {
-                            reinsertFailed(m_batchRowList);
+                            final List<VoltBulkLoaderRow> rows = m_batch.getRows();
+                            releaseBatch(m_batch);
+                            reinsertFailed(rows);
                         } catch (Exception e) {
                             loaderLog.error("Failed to re-insert failed batch", e);
                         }
@@ -110,6 +166,17 @@ public class PerPartitionTable {
                 });
             }
             else {
+                // Count the rows of each loader, the rows of a loader are usually adjacent
+                VoltBulkLoader loader = null;
+                long count = 0;
+                for (int i = 0; i < m_batch.size(); i++) {
+                    if (m_batch.m_loaders[i] != loader) {
+                        completeRows(loader, count);
+                        loader = m_batch.m_loaders[i];
+                        count = 0;
+                    }
+                    count++;
+                }
                 // For each row in the batch, notify the caller of success, so it can do any
                 // necessary bookkeeping (like managing offsets, for example). Do this in the executor
                 // so as not to hold up the callback.
@@ -117,20 +184,28 @@ public class PerPartitionTable {
                     m_es.execute(new Runnable() {
                         @Override
                         public void run() {
-                            for (VoltBulkLoaderRow r : m_batchRowList) {
-                                m_successCallback.success(r.m_rowHandle, response);
+                            for (int i = 0; i < m_batch.size(); i++) {
+                                m_successCallback.success(m_batch.m_rowHandles[i], response);
                             }
+                            releaseBatch(m_batch);
                         }
                     });
                 }
-                for (Map.Entry<VoltBulkLoader, Long> e : m_batchSizes.entrySet()) {
-                    e.getKey().m_loaderCompletedCnt.addAndGet(e.getValue());
-                    e.getKey().m_outstandingRowCount.addAndGet(-1 * e.getValue());
+                else {
+                    releaseBatch(m_batch);
                 }
+                completeRows(loader, count);
             }
         }
     }
 
+    private static void completeRows(VoltBulkLoader loader, long count) {
+        if (loader != null) {
+            loader.m_loaderCompletedCnt.addAndGet(count);
+            loader.m_outstandingRowCount.addAndGet(-1 * count);
+        }
+    }
+
     PerPartitionTable(ClientImpl clientImpl, String tableName, int partitionId, boolean isMP,
             VoltBulkLoader firstLoader, int minBatchTriggerSize, BulkLoaderSuccessCallback successCallback) {
         m_clientImpl = clientImpl;
@@ -138,7 +213,7 @@ public class PerPartitionTable {
         m_isMP = isMP;
         m_procName = firstLoader.m_procName;
         m_upsert = (byte) (firstLoader.m_upsert ? 1:0);
-        m_partitionRowQueue = new LinkedBlockingQueue<VoltBulkLoaderRow>(minBatchTriggerSize*5);
+        m_stagingPermits = new Semaphore(Math.max(1, minBatchTriggerSize)*5);
         m_minBatchTriggerSize = minBatchTriggerSize;
         m_columnInfo = firstLoader.m_colInfo;
         m_partitionedColumnIndex = firstLoader.m_partitionedColumnIndex;
@@ -146,7 +221,7 @@ public class PerPartitionTable {
         m_partitionColumnType = firstLoader.m_partitionColumnType;
         m_tableName = tableName;
         m_successCallback = successCallback;
-        m_table = new VoltTable(m_columnInfo);
+        m_stagingBatch = new Batch(Math.max(1, minBatchTriggerSize));
         m_autoReconnect = m_clientImpl.isAutoReconnectEnabled();
 
         m_es = CoreUtils.getSingleThreadExecutor(tableName + "-" + partitionId);
@@ -164,19 +239,50 @@ public class PerPartitionTable {
      }
 
     /**
-     * Synchronized so that when the a single batch is filled up, we only queue one task to
-     * drain the queue. The task will drain the queue until it doesn't contain a single batch.
+     * Convert the row and append it to the staged batch. The row has already been counted
+     * as outstanding by its loader. Blocks while as many rows as five batches hold are staged
+     * and not yet sent.
      */
-    synchronized void insertRowInTable(final VoltBulkLoaderRow nextRow) throws InterruptedException {
-        m_partitionRowQueue.put(nextRow);
-        if (m_partitionRowQueue.size() == m_minBatchTriggerSize) {
+    void insertRowInTable(VoltBulkLoader loader, Object rowHandle, Object[] rowData) throws InterruptedException {
+        Object row_args[] = new Object[rowData.length];
+        try {
+            for (int i = 0; i < row_args.length; i++) {
+                final VoltType type = m_columnTypes[i];
+                row_args[i] = ParameterConverter.tryToMakeCompatible(type.classFromType(),
+                        rowData[i]);
+            }
+        } catch (Exception e) {
+            failRow(loader, rowHandle, rowData, e.getMessage());
+            return;
+        }
+
+        try {
+            m_stagingPermits.acquire();
+        } catch (InterruptedException e) {
+            loader.m_outstandingRowCount.decrementAndGet();
+            throw e;
+        }
+        boolean full = false;
+        synchronized (this) {
+            try {
+                m_stagingBatch.add(loader, rowHandle, row_args);
+            } catch (Exception e) {
+                m_stagingPermits.release();
+                failRow(loader, rowHandle, rowData, e.getMessage());
+                return;
+            }
+            if (m_stagingBatch.size() >= m_minBatchTriggerSize) {
+                m_fullBatches.offer(m_stagingBatch);
+                m_stagingBatch = takeFreeBatch();
+                full = true;
+            }
+        }
+        if (full) {
             m_es.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        while (m_partitionRowQueue.size() >= m_minBatchTriggerSize) {
-                            loadTable(buildTable(), m_table);
-                        }
+                        sendFullBatches();
                     } catch (Exception e) {
                         loaderLog.error("Failed to load batch", e);
                     }
@@ -185,6 +291,41 @@ public class PerPartitionTable {
         }
     }
 
+    private void failRow(VoltBulkLoader loader, Object rowHandle, Object[] rowData, String errMessage) {
+        loader.generateError(rowHandle, rowData, errMessage);
+        loader.m_outstandingRowCount.decrementAndGet();
+    }
+
+    private Batch takeFreeBatch() {
+        final Batch batch = m_freeBatches.poll();
+        return batch != null ? batch : new Batch(Math.max(1, m_minBatchTriggerSize));
+    }
+
+    private void releaseBatch(Batch batch) {
+        batch.clear();
+        m_freeBatches.offer(batch);
+    }
+
+    /**
+     * Send the full batches in the order they were filled. Only runs on m_es.
+     */
+    private void sendFullBatches() throws Exception {
+        Batch batch;
+        while ((batch = m_fullBatches.poll()) != null) {
+            final int rowCount = batch.size();
+            try {
+                if (rowCount > 0) {
+                    loadTable(new PartitionProcedureCallback(batch), batch.m_table);
+                }
+                else {
+                    releaseBatch(batch);
+                }
+            } finally {
+                m_stagingPermits.release(rowCount);
+            }
+        }
+    }
+
     /**
      * Flush all queued rows even if they are smaller than the batch size. This does not
      * guarantee that they will be reinserted if any of them fail. To make sure all rows
@@ -194,7 +335,13 @@ public class PerPartitionTable {
         return m_es.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
-                loadTable(buildTable(), m_table);
+                synchronized (PerPartitionTable.this) {
+                    if (m_stagingBatch.size() > 0) {
+                        m_fullBatches.offer(m_stagingBatch);
+                        m_stagingBatch = takeFreeBatch();
+                    }
+                }
+                sendFullBatches();
                 return true;
             }
         });
@@ -257,43 +404,10 @@ public class PerPartitionTable {
                 }
             };
             loadTable(callback, tmpTable);
+            tmpTable.clearRowData();
         }
     }
 
-    private PartitionProcedureCallback buildTable() {
-        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
-        m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
-
-        Map<VoltBulkLoader, Long> batchSizes = new HashMap<>();
-        ListIterator<VoltBulkLoaderRow> it = buf.listIterator();
-        while (it.hasNext()) {
-            VoltBulkLoaderRow currRow = it.next();
-            VoltBulkLoader loader = currRow.m_loader;
-            Object row_args[];
-            row_args = new Object[currRow.m_rowData.length];
-            try {
-                for (int i = 0; i < row_args.length; i++) {
-                    final VoltType type = m_columnTypes[i];
-                    row_args[i] = ParameterConverter.tryToMakeCompatible(type.classFromType(),
-                            currRow.m_rowData[i]);
-                }
-            } catch (Exception e) {
-                loader.generateError(currRow.m_rowHandle, currRow.m_rowData, e.getMessage());
-                loader.m_outstandingRowCount.decrementAndGet();
-                it.remove();
-                continue;
-            }
-            m_table.addRow(row_args);
-
-            Long prevValue;
-            if ((prevValue = batchSizes.put(loader, 1L)) != null) {
-                batchSizes.put(loader, prevValue + 1);
-            }
-        }
-
-        return new PartitionProcedureCallback(buf, batchSizes);
-    }
-
     private void loadTable(ProcedureCallback callback, VoltTable toSend) throws Exception {
         if (toSend.getRowCount() <= 0) {
             return;
@@ -322,7 +436,6 @@ public class PerPartitionTable {
                 callback.clientCallback(r);
             }
         }
-        toSend.clearRowData();
     }
 
     private void load(ProcedureCallback callback, VoltTable toSend) throws Exception {
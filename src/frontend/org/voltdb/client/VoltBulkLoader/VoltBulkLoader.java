@@ -330,21 +330,21 @@ public class VoltBulkLoader {
             generateError(rowHandle, fieldList, errMsg);
             return;
         }
-        VoltBulkLoaderRow newRow = new VoltBulkLoaderRow(this, rowHandle, fieldList);
         if (m_isMP) {
-            m_partitionTable[m_firstPartitionTable].insertRowInTable(newRow);
+            partitionId = m_firstPartitionTable;
         }
         else {
             try {
                 partitionId = (int)m_clientImpl.getPartitionForParameter(
                         m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
-                m_partitionTable[partitionId].insertRowInTable(newRow);
             } catch (VoltTypeException e) {
                 generateError(rowHandle, fieldList, e.getMessage());
                 return;
             }
         }
+        // Counted before the row is staged, the response can arrive before insertRowInTable returns
         m_outstandingRowCount.incrementAndGet();
+        m_partitionTable[partitionId].insertRowInTable(this, rowHandle, fieldList);
     }
 
     /**
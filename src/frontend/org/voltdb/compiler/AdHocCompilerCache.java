@@ -17,20 +17,28 @@
 
 package org.voltdb.compiler;
 
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltdb.catalog.CatalogType;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Table;
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
+import org.voltdb.planner.CorePlan;
 import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.RemovalListener;
+import com.google_voltpatches.common.cache.RemovalNotification;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,9 +51,17 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are concurrent maps bounded by the estimated memory of what they
+ * hold rather than by entry count. Once a level is full a new entry is only
+ * admitted if its key has been looked up repeatedly in the recent past, so a
+ * burst of one off queries can't flush the statements that keep coming back.
+ *
+ * A cache belongs to one catalog, but when the catalog changes the plans that
+ * only touch tables the change left alone are carried into the new catalog's
+ * cache instead of being thrown away.
  */
-public class AdHocCompilerCache implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class AdHocCompilerCache {
 
     //////////////////////////////////////////////////////////////////////////
     // STATIC CODE TO MANAGE CACHE LIFETIMES / GLOBALNESS
@@ -55,188 +71,231 @@ public class AdHocCompilerCache implements Serializable {
     private static Cache<String, AdHocCompilerCache> m_catalogHashMatch =
             CacheBuilder.newBuilder().weakValues().build();
 
+    // Cache of the most recent catalog, the one reported through @Statistics PLANCACHE
+    private static volatile AdHocCompilerCache m_currentCache = null;
+
     public static void clearHashCache() {
         m_catalogHashMatch.invalidateAll();
+        m_currentCache = null;
     }
 
     /**
      * Get the global cache for a given hash of the catalog. Note that there can be only
      * one cache per catalogHash at a time.
      */
-    public synchronized static AdHocCompilerCache getCacheForCatalogHash(byte[] catalogHash) {
+    public static AdHocCompilerCache getCacheForCatalogHash(byte[] catalogHash) {
+        return getCacheForCatalogHash(catalogHash, null, null);
+    }
+
+    /**
+     * Get the global cache for a given hash of the catalog. If there isn't one yet it is
+     * seeded with the plans in the previous catalog's cache that touch none of the changed
+     * tables.
+     *
+     * @param catalogHash   hash of the new catalog
+     * @param previous      cache of the catalog being replaced, or null
+     * @param changedTables tables whose definition changed, or null if all plans are suspect
+     */
+    public synchronized static AdHocCompilerCache getCacheForCatalogHash(byte[] catalogHash,
+                                                                      AdHocCompilerCache previous,
+                                                                      Set<String> changedTables) {
         String hashString = Encoder.hexEncode(catalogHash);
         AdHocCompilerCache cache = m_catalogHashMatch.getIfPresent(hashString);
         if (cache == null) {
-            cache = new AdHocCompilerCache();
+            if (previous == null) {
+                cache = new AdHocCompilerCache();
+            } else {
+                cache = new AdHocCompilerCache(previous);
+                cache.carryOver(previous, catalogHash, changedTables);
+            }
             m_catalogHashMatch.put(hashString, cache);
         }
+        m_currentCache = cache;
         return cache;
     }
 
+    /**
+     * @return the cache of the most recently installed catalog, or null
+     */
+    static AdHocCompilerCache getCurrentCache() {
+        return m_currentCache;
+    }
+
+    /**
+     * Find the tables whose definition differs between two versions of a database.
+     * Added and dropped tables count as changed.
+     *
+     * @return the names of the changed tables, or null if something every plan may
+     * depend on changed
+     */
+    public static Set<String> getChangedTables(Database prev, Database next) {
+        if (!prev.getFunctions().equals(next.getFunctions())) {
+            return null;
+        }
+        Set<String> changed = new TreeSet<String>();
+        for (Table table : prev.getTables()) {
+            if (!samePlanningSchema(table, next.getTables().get(table.getTypeName()))) {
+                changed.add(table.getTypeName());
+            }
+        }
+        for (Table table : next.getTables()) {
+            if (prev.getTables().get(table.getTypeName()) == null) {
+                changed.add(table.getTypeName());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compare only what the planner reads from a table: its columns and indexes, how it is
+     * partitioned, the view it materializes and what SWAP TABLES validates. Statistics such as
+     * the estimated tuple count don't invalidate plans.
+     */
+    private static boolean samePlanningSchema(Table prev, Table next) {
+        if (next == null) {
+            return false;
+        }
+        return prev.getColumns().equals(next.getColumns()) &&
+               prev.getIndexes().equals(next.getIndexes()) &&
+               prev.getIsreplicated() == next.getIsreplicated() &&
+               sameName(prev.getPartitioncolumn(), next.getPartitioncolumn()) &&
+               sameName(prev.getMaterializer(), next.getMaterializer()) &&
+               prev.getMvhandlerinfo().equals(next.getMvhandlerinfo()) &&
+               prev.getTuplelimit() == next.getTuplelimit() &&
+               prev.getIsdred() == next.getIsdred();
+    }
+
+    private static boolean sameName(CatalogType prev, CatalogType next) {
+        if (prev == null || next == null) {
+            return prev == next;
+        }
+        return prev.getTypeName().equals(next.getTypeName());
+    }
+
     //////////////////////////////////////////////////////////////////////////
     // PER-INSTANCE AWESOMEC CACHING CODE
     //////////////////////////////////////////////////////////////////////////
 
-    // cache sizes determined at construction time
-    final int MAX_LITERAL_ENTRIES;
-    // max cache size for parameterized plans
-    final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
-    final int MAX_CORE_ENTRIES;
+    // max cache memory for literal plans
+    final long MAX_LITERAL_MEM;
+    // max cache memory for parameterized plans
+    final long MAX_CORE_MEM;
 
     /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    final Level<AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
-
-    /** {@see this#startPeriodicStatsPrinting() } */
-    Timer m_statsTimer = null;
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are never modified once cached, adding a variant replaces the list. */
+    final Level<List<BoundPlan>> m_coreCache;
+
+    private static final Weigher<String, AdHocPlannedStatement> LITERAL_WEIGHER =
+            new Weigher<String, AdHocPlannedStatement>() {
+                @Override
+                public int weigh(String sql, AdHocPlannedStatement plan) {
+                    return 2 * sql.length() + plan.getSerializedSize();
+                }
+            };
+
+    private static final Weigher<String, List<BoundPlan>> CORE_WEIGHER =
+            new Weigher<String, List<BoundPlan>>() {
+                @Override
+                public int weigh(String parsedToken, List<BoundPlan> boundVariants) {
+                    int weight = 2 * parsedToken.length();
+                    for (BoundPlan boundPlan : boundVariants) {
+                        weight += boundPlan.m_core.getSerializedSize();
+                    }
+                    return weight;
+                }
+            };
 
     /**
      * Constructor with default cache sizes.
      */
     private AdHocCompilerCache() {
-        this(1000, 1000);
+        this(Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024),
+             Long.getLong("ADHOC_COMPILER_CACHE_MAX_CORE_MEM_BYTES", 32*1024*1024));
     }
 
     /**
      * Constructor with specific cache sizes is only called directly for testing.
      *
-     * @param maxLiteralEntries cache size for literals
      * @param maxLiteralMem cache memory for literals
+     * @param maxCoreMem cache memory for parameterized plans
      */
-    AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries) {
-        MAX_LITERAL_ENTRIES = maxLiteralEntries;
-        MAX_CORE_ENTRIES = maxCoreEntries;
-
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
+    AdHocCompilerCache(long maxLiteralMem, long maxCoreMem) {
+        this(maxLiteralMem, maxCoreMem, new LevelStats(), new LevelStats());
     }
 
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
+    /**
+     * Constructor for the cache of a new catalog, keeps sizes and counts going
+     */
+    private AdHocCompilerCache(AdHocCompilerCache previous) {
+        this(previous.MAX_LITERAL_MEM, previous.MAX_CORE_MEM,
+             previous.m_literalCache.m_stats, previous.m_coreCache.m_stats);
+    }
 
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
+    private AdHocCompilerCache(long maxLiteralMem, long maxCoreMem,
+                               LevelStats literalStats, LevelStats coreStats) {
+        MAX_LITERAL_MEM = maxLiteralMem;
+        MAX_CORE_MEM = maxCoreMem;
+        m_literalCache = new Level<AdHocPlannedStatement>(MAX_LITERAL_MEM, LITERAL_WEIGHER, literalStats);
+        m_coreCache = new Level<List<BoundPlan>>(MAX_CORE_MEM, CORE_WEIGHER, coreStats);
+    }
 
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
+    /**
+     * Copy the plans of another catalog's cache that don't touch any of the changed
+     * tables, marking them as planned against the new catalog.
+     */
+    private void carryOver(AdHocCompilerCache previous, byte[] catalogHash, Set<String> changedTables) {
+        // Literal plans share cores with the parameterized plans, keep sharing them
+        IdentityHashMap<CorePlan, CorePlan> cores = new IdentityHashMap<CorePlan, CorePlan>();
+
+        for (Map.Entry<String, List<BoundPlan>> e : previous.m_coreCache.entries()) {
+            List<BoundPlan> kept = new ArrayList<BoundPlan>(e.getValue().size());
+            for (BoundPlan boundPlan : e.getValue()) {
+                CorePlan core = carryOver(boundPlan.m_core, catalogHash, changedTables, cores);
+                if (core != null) {
+                    kept.add(new BoundPlan(core, boundPlan.m_constants));
+                }
             }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
+            if (kept.isEmpty()) {
+                m_coreCache.m_stats.m_invalidations.incrementAndGet();
+            } else {
+                m_coreCache.carry(e.getKey(), Collections.unmodifiableList(kept));
             }
-            return value;
         }
 
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
+        for (Map.Entry<String, AdHocPlannedStatement> e : previous.m_literalCache.entries()) {
+            CorePlan core = carryOver(e.getValue().core, catalogHash, changedTables, cores);
+            if (core == null) {
+                m_literalCache.m_stats.m_invalidations.incrementAndGet();
+            } else {
+                m_literalCache.carry(e.getKey(), e.getValue().withCore(core));
+            }
         }
     }
 
-    /**
-     * Stats printing method used during development.
-     * Probably shouldn't live past real stats integration.
-     */
-    synchronized void printStats() {
-        String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
-        String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
-
-        System.out.print(line1 + line2);
-        System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
+    private static CorePlan carryOver(CorePlan core, byte[] catalogHash, Set<String> changedTables,
+                                      IdentityHashMap<CorePlan, CorePlan> cores) {
+        if (cores.containsKey(core)) {
+            return cores.get(core);
+        }
+        CorePlan carried = null;
+        Set<String> tables = core.getTablesTouched();
+        if (changedTables != null && tables != null && Collections.disjoint(tables, changedTables)) {
+            carried = core.withCatalogHash(catalogHash);
+        }
+        cores.put(core, carried);
+        return carried;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.get(sql);
     }
 
     /**
@@ -244,13 +303,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.get(parsedToken);
     }
 
     /**
@@ -271,12 +325,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -288,26 +342,25 @@ public class AdHocCompilerCache implements Serializable {
         // it means that a query can not be both user parameterized query and auto parameterized query.
         assert(!hasUserQuestionMarkParameters || !hasAutoParameterizedException);
 
-        // uncomment this to get some raw stdout cache performance stats every 5s
-        //startPeriodicStatsPrinting();
-
         // deal with L2 cache
         if (! hasAutoParameterizedException) {
-            BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
-            // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
-            if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
+            // deal with the parameterized plan cache first, retrying if another planner
+            // changed the variants for this token underneath us
+            while (true) {
+                List<BoundPlan> boundVariants = m_coreCache.peek(parsedToken);
+                if (boundVariants == null) {
+                    // Note that there is an edge case in which more than one plan is getting counted as one
+                    // "plan insertion". This only happens when two different plans arose from the same parameterized
+                    // query (token) because one invocation used the correct constants to trigger an expression index and
+                    // another invocation did not.  These are not counted separately because they are not evicted
+                    // separately. It seems saner to use consistent units when counting insertions vs. evictions.
+                    if (m_coreCache.putIfAbsent(parsedToken, Collections.singletonList(unmatched)) == null) {
+                        break;
+                    }
+                    continue;
+                }
+                BoundPlan matched = null;
                 for (BoundPlan boundPlan : boundVariants) {
                     if (boundPlan.equals(unmatched)) {
                         matched = boundPlan;
@@ -321,42 +374,21 @@ public class AdHocCompilerCache implements Serializable {
                         plan = new AdHocPlannedStatement(planIn, matched.m_core);
                         plan.setBoundConstants(matched.m_constants);
                     }
+                    break;
+                }
+                List<BoundPlan> extended = new ArrayList<BoundPlan>(boundVariants.size() + 1);
+                extended.addAll(boundVariants);
+                extended.add(unmatched);
+                if (m_coreCache.replace(parsedToken, boundVariants, Collections.unmodifiableList(extended))) {
+                    break;
                 }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
-            if (cachedPlan == null) {
-                //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
-            }
-            else {
-                assert(cachedPlan.equals(plan));
-            }
-        }
-    }
-
-    /**
-     * Start a timer that prints cache stats to the console every 5s.
-     * Used for development until we get better stats integration.
-     */
-    public void startPeriodicStatsPrinting() {
-        if (m_statsTimer == null) {
-            m_statsTimer = new Timer();
-            m_statsTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    printStats();
-                }
-            }, 5000, 5000);
+            AdHocPlannedStatement cachedPlan = m_literalCache.putIfAbsent(sql, plan);
+            assert(cachedPlan == null || cachedPlan.equals(plan));
         }
     }
 
@@ -375,4 +407,183 @@ public class AdHocCompilerCache implements Serializable {
     public int getCoreCacheSize() {
         return m_coreCache.size();
     }
+
+    /**
+     * Hit, miss and churn counts of one cache level. They outlive the cache, the
+     * cache of a new catalog picks up the counts of the cache it replaces.
+     */
+    static final class LevelStats {
+        final AtomicLong m_hits = new AtomicLong();
+        final AtomicLong m_misses = new AtomicLong();
+        final AtomicLong m_insertions = new AtomicLong();
+        final AtomicLong m_evictions = new AtomicLong();
+        final AtomicLong m_rejections = new AtomicLong();
+        final AtomicLong m_invalidations = new AtomicLong();
+        final AtomicLong m_carriedOver = new AtomicLong();
+    }
+
+    /**
+     * One level of the cache, a concurrent map bounded by the weight of its entries
+     * with frequency based admission once it is full.
+     */
+    static final class Level<V> {
+        // A key has to have been looked up this many times recently to displace other entries
+        static final int ADMISSION_FREQUENCY = 2;
+        // Lock stripes, each one evicts within its own share of the weight
+        static final int CONCURRENCY_LEVEL = 4;
+
+        private final Cache<String, V> m_cache;
+        private final Weigher<String, V> m_weigher;
+        private final long m_maxWeight;
+        private final AtomicLong m_weight = new AtomicLong();
+        private final FrequencySketch m_sketch = new FrequencySketch(8192);
+        final LevelStats m_stats;
+
+        Level(long maxWeight, Weigher<String, V> weigher, LevelStats stats) {
+            this(maxWeight, CONCURRENCY_LEVEL, weigher, stats);
+        }
+
+        Level(long maxWeight, int concurrencyLevel, Weigher<String, V> weigher, LevelStats stats) {
+            m_maxWeight = maxWeight;
+            m_weigher = weigher;
+            m_stats = stats;
+            m_cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxWeight)
+                    .concurrencyLevel(concurrencyLevel)
+                    .weigher(weigher)
+                    .removalListener(new RemovalListener<String, V>() {
+                        @Override
+                        public void onRemoval(RemovalNotification<String, V> notification) {
+                            m_weight.addAndGet(-m_weigher.weigh(notification.getKey(), notification.getValue()));
+                            if (notification.wasEvicted()) {
+                                m_stats.m_evictions.incrementAndGet();
+                            }
+                        }
+                    })
+                    .build();
+        }
+
+        V get(String key) {
+            m_sketch.increment(key.hashCode());
+            V value = m_cache.getIfPresent(key);
+            if (value != null) {
+                m_stats.m_hits.incrementAndGet();
+            } else {
+                m_stats.m_misses.incrementAndGet();
+            }
+            return value;
+        }
+
+        // Look without counting a hit or a miss
+        V peek(String key) {
+            return m_cache.getIfPresent(key);
+        }
+
+        private boolean admit(String key, int weight) {
+            if (m_weight.get() + weight <= m_maxWeight ||
+                    m_sketch.frequency(key.hashCode()) >= ADMISSION_FREQUENCY) {
+                return true;
+            }
+            m_stats.m_rejections.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * @return the value already cached for the key, or null if the new value was
+         * cached or turned away
+         */
+        V putIfAbsent(String key, V value) {
+            final int weight = m_weigher.weigh(key, value);
+            if (!admit(key, weight)) {
+                return null;
+            }
+            V existing = m_cache.asMap().putIfAbsent(key, value);
+            if (existing == null) {
+                m_weight.addAndGet(weight);
+                m_stats.m_insertions.incrementAndGet();
+            }
+            return existing;
+        }
+
+        boolean replace(String key, V oldValue, V newValue) {
+            if (m_cache.asMap().replace(key, oldValue, newValue)) {
+                m_weight.addAndGet(m_weigher.weigh(key, newValue));
+                return true;
+            }
+            return false;
+        }
+
+        // Insert an entry carried over from a previous catalog's cache
+        void carry(String key, V value) {
+            m_cache.put(key, value);
+            m_weight.addAndGet(m_weigher.weigh(key, value));
+            m_stats.m_carriedOver.incrementAndGet();
+        }
+
+        List<Map.Entry<String, V>> entries() {
+            return new ArrayList<Map.Entry<String, V>>(m_cache.asMap().entrySet());
+        }
+
+        int size() {
+            return (int)m_cache.size();
+        }
+
+        long weight() {
+            return m_weight.get();
+        }
+    }
+
+    /**
+     * Approximate count of how often each key was looked up recently, a count-min
+     * sketch of saturating counters. Every counter is halved after a number of
+     * lookups proportional to the width so the counts follow the current workload.
+     * Increments racing from several threads can be lost, that only makes an
+     * estimate a little low.
+     */
+    static final class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+        // odd multipliers, one per row
+        private static final int[] SEEDS = { 0x97CB3127, 0xB15A1B5D, 0x3C6EF373, 0xA54FF53B };
+
+        private final byte[][] m_rows;
+        private final int m_shift;
+        private final int m_resetPeriod;
+        private int m_additions = 0;
+
+        FrequencySketch(int width) {
+            assert(Integer.bitCount(width) == 1);
+            m_rows = new byte[SEEDS.length][width];
+            m_shift = 32 - Integer.numberOfTrailingZeros(width);
+            m_resetPeriod = 10 * width;
+        }
+
+        private int index(int hash, int row) {
+            return ((hash ^ (hash >>> 16)) * SEEDS[row]) >>> m_shift;
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < m_rows.length; row++) {
+                final int ii = index(hash, row);
+                if (m_rows[row][ii] < MAX_COUNT) {
+                    m_rows[row][ii]++;
+                }
+            }
+            if (++m_additions >= m_resetPeriod) {
+                m_additions = 0;
+                for (byte[] counters : m_rows) {
+                    for (int ii = 0; ii < counters.length; ii++) {
+                        counters[ii] >>= 1;
+                    }
+                }
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < m_rows.length; row++) {
+                frequency = Math.min(frequency, m_rows[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Effectiveness of the ad hoc plan cache of the current catalog, one row for
+ * the literal level and one for the parameterized level. Counts run on across
+ * catalog updates, interval requests report the change since the last interval
+ * request.
+ */
+public class AdHocCompilerCacheStats extends StatsSource {
+
+    public enum StatName {
+        CACHE_LEVEL,
+        ENTRIES,
+        SIZE_BYTES,
+        HITS,
+        MISSES,
+        HIT_RATE,
+        INSERTIONS,
+        EVICTIONS,
+        REJECTIONS,
+        INVALIDATIONS,
+        CARRIED_OVER
+    };
+
+    public enum CacheLevel {
+        LITERAL,
+        PARAMETERIZED
+    };
+
+    // Counts reported by the last interval request
+    private final long[][] m_lastInterval = new long[CacheLevel.values().length][7];
+
+    public AdHocCompilerCacheStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo(StatName.CACHE_LEVEL.name(), VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo(StatName.ENTRIES.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.SIZE_BYTES.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.HITS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.MISSES.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.HIT_RATE.name(), VoltType.FLOAT));
+        columns.add(new VoltTable.ColumnInfo(StatName.INSERTIONS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.EVICTIONS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.REJECTIONS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.INVALIDATIONS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.CARRIED_OVER.name(), VoltType.BIGINT));
+    }
+
+    private static class Row {
+        final CacheLevel m_level;
+        final AdHocCompilerCache.Level<?> m_cache;
+        final long[] m_counts;
+
+        Row(CacheLevel level, AdHocCompilerCache.Level<?> cache, long[] counts) {
+            m_level = level;
+            m_cache = cache;
+            m_counts = counts;
+        }
+    }
+
+    private static long[] counts(AdHocCompilerCache.LevelStats stats) {
+        return new long[] {
+                stats.m_hits.get(),
+                stats.m_misses.get(),
+                stats.m_insertions.get(),
+                stats.m_evictions.get(),
+                stats.m_rejections.get(),
+                stats.m_invalidations.get(),
+                stats.m_carriedOver.get() };
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Row row = (Row)rowKey;
+        final long[] c = row.m_counts;
+        final long queries = c[0] + c[1];
+        rowValues[columnNameToIndex.get(StatName.CACHE_LEVEL.name())] = row.m_level.name();
+        rowValues[columnNameToIndex.get(StatName.ENTRIES.name())] = row.m_cache.size();
+        rowValues[columnNameToIndex.get(StatName.SIZE_BYTES.name())] = row.m_cache.weight();
+        rowValues[columnNameToIndex.get(StatName.HITS.name())] = c[0];
+        rowValues[columnNameToIndex.get(StatName.MISSES.name())] = c[1];
+        rowValues[columnNameToIndex.get(StatName.HIT_RATE.name())] = queries > 0 ? (double)c[0] / queries : 0.0;
+        rowValues[columnNameToIndex.get(StatName.INSERTIONS.name())] = c[2];
+        rowValues[columnNameToIndex.get(StatName.EVICTIONS.name())] = c[3];
+        rowValues[columnNameToIndex.get(StatName.REJECTIONS.name())] = c[4];
+        rowValues[columnNameToIndex.get(StatName.INVALIDATIONS.name())] = c[5];
+        rowValues[columnNameToIndex.get(StatName.CARRIED_OVER.name())] = c[6];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected synchronized Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        ArrayList<Object> rows = new ArrayList<Object>();
+        AdHocCompilerCache cache = AdHocCompilerCache.getCurrentCache();
+        if (cache == null) {
+            return rows.iterator();
+        }
+        rows.add(makeRow(CacheLevel.LITERAL, cache.m_literalCache, interval));
+        rows.add(makeRow(CacheLevel.PARAMETERIZED, cache.m_coreCache, interval));
+        return rows.iterator();
+    }
+
+    private Row makeRow(CacheLevel level, AdHocCompilerCache.Level<?> cache, boolean interval) {
+        long[] counts = counts(cache.m_stats);
+        if (interval) {
+            long[] last = m_lastInterval[level.ordinal()];
+            long[] delta = new long[counts.length];
+            for (int ii = 0; ii < counts.length; ii++) {
+                delta[ii] = counts[ii] - last[ii];
+            }
+            m_lastInterval[level.ordinal()] = counts;
+            counts = delta;
+        }
+        return new Row(level, cache, counts);
+    }
+}
@@ -69,6 +69,16 @@ public class AdHocPlannedStatement {
         this(original.sql, coreIn, original.extractedParamValues, null);
     }
 
+    /**
+     * Copy of this statement running a different core plan, keeping the parameters
+     * and the bound constants.
+     */
+    AdHocPlannedStatement withCore(CorePlan coreIn) {
+        AdHocPlannedStatement copy = new AdHocPlannedStatement(sql, coreIn, extractedParamValues, boundParamIndexes);
+        copy.boundParamStrings = boundParamStrings;
+        return copy;
+    }
+
     private void validate() {
         assert(core != null);
         assert(core.aggregatorFragment != null);
@@ -135,8 +145,8 @@ public class AdHocPlannedStatement {
         byte[] sql = new byte[sqlLength];
         buf.get(sql);
 
-        // params
-        ParameterSet parameterSet = ParameterSet.fromByteBuffer(buf);
+        // params, kept serialized in buf so they reach the EE without being encoded again
+        ParameterSet parameterSet = ParameterSet.fromByteBufferNoCopy(buf);
 
         return new AdHocPlannedStatement(sql, core, parameterSet, null);
     }
@@ -200,6 +210,10 @@ public class AdHocPlannedStatement {
         return extractedParamValues.toArray();
     }
 
+    public ParameterSet extractedParams() {
+        return extractedParamValues;
+    }
+
     public boolean hasExtractedParams() {
         return extractedParamValues.size() > 0;
     }
@@ -18,6 +18,7 @@
 package org.voltdb.compiler;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -303,6 +304,14 @@ public class AdHocPlannedStmtBatch implements Cloneable {
         return ParameterSet.fromByteBuffer(buf).toArray();
     }
 
+    /**
+     * Deserialize the combined parameters, keeping them serialized in the buffer
+     * so they can be handed to the EE as they are.
+     */
+    public static ParameterSet userParamSetFromBuffer(ByteBuffer buf) throws IOException {
+        return ParameterSet.fromByteBufferNoCopy(buf);
+    }
+
     /**
      * Deserialize the second part of the statement batch -- the statements.
      */
@@ -344,6 +353,53 @@ public class AdHocPlannedStmtBatch implements Cloneable {
         return partitionParamValue;
     }
 
+    /*
+     * Return the partitioning key values of a multi-partition statement batch whose only
+     * statement reads a single partitioned table through an IN list on its partitioning column,
+     * or null if there is no such list. Each key is converted to the type of the partitioning
+     * column and encoded like the partitioning parameter of an SP batch, so that it can be
+     * hashed to its partition. NULL keys match no rows and are left out.
+     */
+    public byte[][] partitioningInListKeys() {
+        if (userPartitionKey != null || plannedStatements.size() != 1) {
+            return null;
+        }
+        AdHocPlannedStatement stmt = plannedStatements.get(0);
+        int[] paramIndexes = stmt.core.getPartitioningInListParamIndexes();
+        Object[] constants = stmt.core.getPartitioningInListValues();
+        if (paramIndexes == null || constants == null) {
+            return null;
+        }
+        Object[] params = stmt.hasExtractedParams() ? stmt.extractedParamArray() : userParamSet;
+        Class<?> keyClass = stmt.core.getPartitioningInListType().classFromType();
+        List<byte[]> keys = new ArrayList<>();
+        for (int paramIndex : paramIndexes) {
+            if (params == null || paramIndex >= params.length) {
+                return null;
+            }
+            Object param = params[paramIndex];
+            if (param != null && param.getClass().isArray() && ! (param instanceof byte[])) {
+                for (int ii = 0; ii < Array.getLength(param); ii++) {
+                    addPartitioningKey(keys, keyClass, Array.get(param, ii));
+                }
+            }
+            else {
+                addPartitioningKey(keys, keyClass, param);
+            }
+        }
+        for (Object constant : constants) {
+            addPartitioningKey(keys, keyClass, constant);
+        }
+        return keys.toArray(new byte[keys.size()][]);
+    }
+
+    private static void addPartitioningKey(List<byte[]> keys, Class<?> keyClass, Object value) {
+        byte[] key = VoltType.valueToBytes(ParameterConverter.tryToMakeCompatible(keyClass, value));
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
     /**
      * Return the "EXPLAIN" string of the batched statement at the index
      * @param i the index
@@ -55,6 +55,7 @@ import org.voltdb.planner.SubPlanAssembler;
 import org.voltdb.planner.parseinfo.StmtTableScan;
 import org.voltdb.planner.parseinfo.StmtTargetTableScan;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.PlanNodeTree;
@@ -731,7 +732,7 @@ public class MaterializedViewProcessor {
 
     private boolean needsWarningForJoinQueryView(PlanNodeTree pnt) {
         for (AbstractPlanNode apn : pnt.getNodeList()) {
-            if (apn instanceof NestLoopPlanNode) {
+            if (apn instanceof NestLoopPlanNode || apn instanceof HashJoinPlanNode) {
                 return true;
             }
         }
@@ -17,6 +17,7 @@
 
 package org.voltdb.compiler;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hsqldb_voltpatches.HSQLInterface;
@@ -55,16 +56,33 @@ public class PlannerTool {
 
     private final HSQLInterface m_hsql;
     private static PlannerStatsCollector m_plannerStats;
+    private static AdHocCompilerCacheStats m_cacheStats;
 
     private static final int AD_HOC_JOINED_TABLE_LIMIT = 5;
 
     public PlannerTool(final Database database, byte[] catalogHash)
+    {
+        this(database, catalogHash, null);
+    }
+
+    /**
+     * Create a planner tool for a changed schema. Cached plans of the previous
+     * planner tool that only touch tables the change left alone stay cached.
+     *
+     * @param previous planner tool of the catalog being replaced, or null
+     */
+    public PlannerTool(final Database database, byte[] catalogHash, PlannerTool previous)
     {
         assert(database != null);
 
         m_database = database;
         m_catalogHash = catalogHash;
-        m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
+        if (previous == null) {
+            m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
+        } else {
+            m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash, previous.m_cache,
+                    AdHocCompilerCache.getChangedTables(previous.m_database, database));
+        }
 
         // LOAD HSQL
         m_hsql = HSQLInterface.loadHsqldb();
@@ -95,6 +113,8 @@ public class PlannerTool {
                     if (statsAgent != null) {
                         m_plannerStats = new PlannerStatsCollector(-1);
                         statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
+                        m_cacheStats = new AdHocCompilerCacheStats();
+                        statsAgent.registerStatsSource(StatsSelector.PLANCACHE, 0, m_cacheStats);
                     }
                 }
             }
@@ -104,7 +124,9 @@ public class PlannerTool {
     public PlannerTool updateWhenNoSchemaChange(Database database, byte[] catalogHash) {
         m_database = database;
         m_catalogHash = catalogHash;
-        m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
+        // No table changed, every cached plan is still good
+        m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash, m_cache,
+                Collections.<String>emptySet());
 
         return this;
     }
@@ -316,6 +338,9 @@ public class PlannerTool {
                 // to -1 and to null, respectively.
                 core.setPartitioningParamIndex(partitioning.getInferredParameterIndex());
                 core.setPartitioningParamValue(partitioning.getInferredPartitioningValue());
+                core.setPartitioningInList(partitioning.getInListParameterIndexes(),
+                                           partitioning.getInListValues(),
+                                           partitioning.getInListValueType());
 
 
                 assert(parsedToken != null);
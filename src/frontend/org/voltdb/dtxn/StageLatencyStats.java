@@ -0,0 +1,208 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/** Source of @Statistics STAGELATENCY, which breaks the latency of single partition
+ * transactions down by the stage of execution the time was spent in.
+ *
+ * A sampled transaction carries a small array of System.nanoTime() stamps, one per
+ * {@link Point}, from the client interface through the SP scheduler and the site and back.
+ * Only a sampled transaction allocates anything. When its response is written to the client,
+ * the time between each pair of consecutive points is recorded in a histogram for the
+ * corresponding {@link Stage}. Stamps don't travel to initiators on other hosts, since
+ * nanoTime can't be compared across hosts, so only transactions initiated on the host
+ * that received them are measured. Multi-partition and NT procedures aren't measured.
+ * Measurement starts once the network has read a whole invocation, the time spent reading
+ * its bytes off the socket isn't included.
+ *
+ * One row per stage per host. All times are in microseconds. Interval requests report
+ * the transactions completed since the last interval request.
+ */
+public class StageLatencyStats extends StatsSource {
+
+    /** One in this many transactions is sampled, 0 disables sampling altogether */
+    public static final int SAMPLE_INTERVAL = Integer.getInteger("STAGE_LATENCY_SAMPLE_INTERVAL", 16);
+
+    /** Points in the life of a sampled transaction, in order */
+    public enum Point {
+        RECEIVED,   // whole invocation handed to the client interface by the network
+        DISPATCH,   // invocation deserialized, dispatch begins
+        INITIATE,   // sent to the initiator mailbox
+        SCHEDULE,   // received by the SP scheduler
+        LOG,        // sequenced and handed to the command log
+        DURABLE,    // made durable by synchronous command logging, else same as LOG
+        SITE_QUEUE, // released by the transaction task queue to the site task queue
+        EXECUTE,    // picked up by the site
+        RESPOND,    // execution finished, response sent back
+        WRITE       // response serialized for the client connection
+    }
+
+    public enum Stage {
+        DESERIALIZE(Point.RECEIVED, Point.DISPATCH),
+        DISPATCH(Point.DISPATCH, Point.INITIATE),
+        INITIATOR_MAILBOX(Point.INITIATE, Point.SCHEDULE),
+        SCHEDULER(Point.SCHEDULE, Point.LOG),
+        DURABILITY(Point.LOG, Point.DURABLE),
+        ORDERING(Point.DURABLE, Point.SITE_QUEUE),
+        SITE_QUEUE(Point.SITE_QUEUE, Point.EXECUTE),
+        EXECUTION(Point.EXECUTE, Point.RESPOND),
+        RESPONSE(Point.RESPOND, Point.WRITE),
+        TOTAL(Point.RECEIVED, Point.WRITE);
+
+        final int m_from;
+        final int m_to;
+
+        Stage(Point from, Point to) {
+            m_from = from.ordinal();
+            m_to = to.ordinal();
+        }
+    }
+
+    private static final int POINT_COUNT = Point.values().length;
+    private static final Stage STAGES[] = Stage.values();
+
+    private static final AbstractHistogram s_histograms[] = new AbstractHistogram[STAGES.length];
+    static {
+        for (int ii = 0; ii < s_histograms.length; ii++) {
+            s_histograms[ii] = LatencyHistogramStats.constructHistogram(true);
+        }
+    }
+
+    /**
+     * Decide whether to sample a transaction that just came off the wire.
+     * @return the stamps to carry along with the transaction, with {@link Point#RECEIVED}
+     * stamped, or null if the transaction isn't sampled
+     */
+    public static long[] sample() {
+        if (SAMPLE_INTERVAL <= 0 ||
+                (SAMPLE_INTERVAL > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) != 0)) {
+            return null;
+        }
+        final long times[] = new long[POINT_COUNT];
+        times[Point.RECEIVED.ordinal()] = System.nanoTime();
+        return times;
+    }
+
+    /**
+     * Stamp the current time at a point, if the transaction is sampled
+     */
+    public static void stamp(long times[], Point point) {
+        if (times != null) {
+            times[point.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stamp {@link Point#WRITE} and record every stage whose two ends were stamped.
+     */
+    public static void record(long times[]) {
+        if (times == null) {
+            return;
+        }
+        times[Point.WRITE.ordinal()] = System.nanoTime();
+        if (times[Point.DURABLE.ordinal()] == 0) {
+            times[Point.DURABLE.ordinal()] = times[Point.LOG.ordinal()];
+        }
+        for (int ii = 0; ii < STAGES.length; ii++) {
+            final long from = times[STAGES[ii].m_from];
+            final long to = times[STAGES[ii].m_to];
+            if (from != 0 && to != 0) {
+                recordValue(s_histograms[ii], Math.max(0, to - from) / 1000);
+            }
+        }
+    }
+
+    private static void recordValue(AbstractHistogram histogram, long micros) {
+        histogram.recordValue(Math.min(micros, histogram.getHighestTrackableValue()));
+    }
+
+    // Snapshot of every stage as of the last interval request
+    private AbstractHistogram m_lastInterval[] = null;
+
+    public StageLatencyStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("STAGE", VoltType.STRING));
+        columns.add(new ColumnInfo("COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MEAN",  VoltType.FLOAT));   // microseconds
+        columns.add(new ColumnInfo("P50",   VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P95",   VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99",   VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99.9", VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("MAX",   VoltType.BIGINT));  // microseconds
+    }
+
+    private static class Row {
+        final Stage m_stage;
+        final AbstractHistogram m_histogram;
+
+        Row(Stage stage, AbstractHistogram histogram) {
+            m_stage = stage;
+            m_histogram = histogram;
+        }
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Row row = (Row)rowKey;
+        final AbstractHistogram h = row.m_histogram;
+        rowValues[columnNameToIndex.get("STAGE")] = row.m_stage.name();
+        rowValues[columnNameToIndex.get("COUNT")] = h.getTotalCount();
+        rowValues[columnNameToIndex.get("MEAN")]  = h.getTotalCount() > 0 ? h.getMean() : 0.0;
+        rowValues[columnNameToIndex.get("P50")]   = h.getValueAtPercentile(50D);
+        rowValues[columnNameToIndex.get("P95")]   = h.getValueAtPercentile(95D);
+        rowValues[columnNameToIndex.get("P99")]   = h.getValueAtPercentile(99D);
+        rowValues[columnNameToIndex.get("P99.9")] = h.getValueAtPercentile(99.9D);
+        rowValues[columnNameToIndex.get("MAX")]   = h.getMaxValue();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected synchronized Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final AbstractHistogram current[] = new AbstractHistogram[STAGES.length];
+        for (int ii = 0; ii < STAGES.length; ii++) {
+            current[ii] = s_histograms[ii].copy();
+        }
+        ArrayList<Object> rows = new ArrayList<Object>(STAGES.length);
+        for (int ii = 0; ii < STAGES.length; ii++) {
+            AbstractHistogram h = current[ii];
+            if (interval && m_lastInterval != null) {
+                h = h.copy();
+                h.subtract(m_lastInterval[ii]);
+            }
+            rows.add(new Row(STAGES[ii], h));
+        }
+        if (interval) {
+            m_lastInterval = current;
+        }
+        return rows.iterator();
+    }
+}
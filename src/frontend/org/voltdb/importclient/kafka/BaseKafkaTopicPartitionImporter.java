@@ -66,6 +66,9 @@ import kafka.network.BlockingChannel;
  * This base class provides the implementation for manual offset management of a single Kafka partition of a given topic. An instance of this
  * class must provide an implementation of the executeVolt() method, which executes a procedure or database function in the
  * appropriate manner.
+ *
+ * Subclasses that can load many messages in one transaction extend BatchingKafkaTopicPartitionImporter instead. They
+ * only load batches when the importer is configured with a batchsize.
  */
 public abstract class BaseKafkaTopicPartitionImporter {
 
@@ -74,6 +77,9 @@ public abstract class BaseKafkaTopicPartitionImporter {
     private final static PartitionOffsetRequestInfo EARLIEST_OFFSET =
             new PartitionOffsetRequestInfo(kafka.api.OffsetRequest.EarliestTime(), 1);
 
+    // Value of BatchingKafkaTopicPartitionImporter.getBatchPartition() for a message that must be submitted on its own
+    public static final int NO_BATCH_PARTITION = Integer.MIN_VALUE;
+
     public static final int KAFKA_IMPORTER_MAX_SHUTDOWN_WAIT_TIME_SECONDS = Integer.getInteger("KAFKA_IMPORTER_MAX_SHUTDOWN_WAIT_TIME_SECONDS", 60);
 
     private final int m_waitSleepMs = 1;
@@ -91,6 +97,9 @@ public abstract class BaseKafkaTopicPartitionImporter {
     protected final KafkaStreamImporterConfig m_config;
     private HostAndPort m_coordinator;
     private final FetchRequestBuilder m_fetchRequestBuilder;
+    // This importer if it loads batches, null if it submits every message on its own
+    private final BatchingKafkaTopicPartitionImporter m_batching;
+    private final TopicPartitionBatcher m_batcher;
 
     //Counters for commit policies.
     private long m_lastCommitTime = 0;
@@ -111,12 +120,23 @@ public abstract class BaseKafkaTopicPartitionImporter {
         m_coordinator = m_config.getPartitionLeader();
         m_topicAndPartition = new TopicAndPartition(config.getTopic(), config.getPartition());
         m_fetchRequestBuilder = new FetchRequestBuilder().clientId(KafkaStreamImporterConfig.CLIENT_ID);
+        m_batching = this instanceof BatchingKafkaTopicPartitionImporter ? (BatchingKafkaTopicPartitionImporter) this : null;
         if (m_config.getCommitPolicy() == KafkaImporterCommitPolicy.TIME && m_config.getTriggerValue() > 0) {
             m_gapTracker = new SimpleTracker();
         }
         else {
             m_gapTracker = new DurableTracker(Integer.getInteger("KAFKA_IMPORT_GAP_LEAD", 32_768));
         }
+        m_batcher = new TopicPartitionBatcher(m_config.getBatchSize(), new TopicPartitionBatcher.Target() {
+            @Override
+            public boolean invoke(Object[] params, TopicPartitionInvocationCallback cb) {
+                return BaseKafkaTopicPartitionImporter.this.invoke(params, cb);
+            }
+            @Override
+            public boolean invokeBatch(int partition, List<Object[]> rows, long receivedMillis, TopicPartitionBatchCallback cb) {
+                return m_batching.invokeBatch(partition, rows, receivedMillis, cb);
+            }
+        }, m_gapTracker, m_dead, m_pauseOffset, m_lifecycle, m_logger);
     }
 
     public URI getResourceID()  {
@@ -399,6 +419,7 @@ public abstract class BaseKafkaTopicPartitionImporter {
 
             int sleepCounter = 1;
             while (m_lifecycle.shouldRun()) {
+                m_batcher.submitFailedBatches(callbackTracker);
                 if (m_currentOffset.get() < 0) {
                     getOffsetCoordinator();
                     if (m_offsetManager.get() == null) {
@@ -464,6 +485,7 @@ public abstract class BaseKafkaTopicPartitionImporter {
                     continue;
                 }
                 sleepCounter = 1;
+                final long receivedMillis = System.currentTimeMillis();
                 for (MessageAndOffset messageAndOffset : fetchResponse.messageSet(m_topicAndPartition.topic(), m_topicAndPartition.partition())) {
                     //You may be catchin up so dont sleep.
                     currentFetchCount++;
@@ -479,19 +501,11 @@ public abstract class BaseKafkaTopicPartitionImporter {
                         m_gapTracker.submit(messageAndOffset.nextOffset());
                         params = formatter.transform(payload);
 
-                        TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(messageAndOffset.offset(),
-                                messageAndOffset.nextOffset(), callbackTracker, m_gapTracker, m_dead, m_pauseOffset);
-
                         if (m_lifecycle.hasTransaction()) {
-                            if (invoke(params, cb)) {
-                                callbackTracker.produceWork();
-                            }
-                            else {
-                                if (m_logger.isDebugEnabled()) {
-                                    m_logger.debug(null, "Failed to process Invocation possibly bad data: " + Arrays.toString(params));
-                                }
-                                m_gapTracker.commit(messageAndOffset.nextOffset());
-                            }
+                            final int partition = m_batching == null || m_config.getBatchSize() == KafkaStreamImporterConfig.NO_BATCHING
+                                    ? NO_BATCH_PARTITION : m_batching.getBatchPartition(params);
+                            m_batcher.submit(partition, messageAndOffset.offset(), messageAndOffset.nextOffset(), params,
+                                    receivedMillis, callbackTracker);
                         }
 
                     } catch (FormatException e) {
@@ -504,6 +518,7 @@ public abstract class BaseKafkaTopicPartitionImporter {
                         break;
                     }
                 }
+                m_batcher.endFetch(callbackTracker);
                 if (!m_lifecycle.shouldRun()) {
                     break;
                 }
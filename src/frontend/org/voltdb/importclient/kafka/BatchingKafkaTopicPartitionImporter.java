@@ -0,0 +1,47 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.importclient.kafka;
+
+import java.util.List;
+
+import org.voltdb.importer.ImporterLifecycle;
+import org.voltdb.importer.ImporterLogger;
+
+/*
+ * A partition importer that can load many messages in one transaction. The messages of each fetch are grouped
+ * by VoltDB partition and submitted up to the configured batch size at a time, and the offsets of a batch are
+ * committed once the batch is acknowledged.
+ */
+public abstract class BatchingKafkaTopicPartitionImporter extends BaseKafkaTopicPartitionImporter {
+
+    public BatchingKafkaTopicPartitionImporter(KafkaStreamImporterConfig config, ImporterLifecycle lifecycle, ImporterLogger logger)
+    {
+        super(config, lifecycle, logger);
+    }
+
+    /*
+     * Returns the VoltDB partition of the supplied data, so that messages can be grouped by partition and submitted
+     * with invokeBatch(), or NO_BATCH_PARTITION to submit the message on its own with invoke().
+     */
+    public abstract int getBatchPartition(Object[] params);
+
+    /*
+     * Submit a batch of messages that all belong to the given VoltDB partition, in one transaction.
+     * receivedMillis is when the oldest message of the batch was fetched.
+     */
+    public abstract boolean invokeBatch(int partition, List<Object[]> rows, long receivedMillis, TopicPartitionBatchCallback cb);
+}
@@ -319,7 +319,8 @@ public class KafkaExternalLoader implements ImporterLifecycle, ImporterLogger {
         FormatterBuilder builder = createFormatterBuilder(properties);
 
         return KafkaStreamImporterConfig.getConfigsForPartitions(brokerKey, brokerList, properties.topic, properties.groupid,
-                                                properties.procedure, properties.timeout, properties.buffersize, properties.commitpolicy, builder);
+                                                properties.procedure, KafkaStreamImporterConfig.NO_BATCHING,
+                                                properties.timeout, properties.buffersize, properties.commitpolicy, builder);
     }
 
     /*
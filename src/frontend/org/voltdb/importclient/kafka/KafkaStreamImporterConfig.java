@@ -50,6 +50,8 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     public static final String CLIENT_ID = "voltdb-importer";
     private static final String GROUP_ID = "voltdb";
     private static final int KAFKA_DEFAULT_BROKER_PORT = 9092;
+    // Batch size of an importer that calls its procedure once per message
+    public static final int NO_BATCHING = 0;
 
     // We don't allow period in topic names because we construct URIs using it
     private static final Pattern legalTopicNamesPattern = Pattern.compile("[a-zA-Z0-9\\_-]+");
@@ -62,6 +64,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     private final int m_fetchSize;
     private final int m_soTimeout;
     private final String m_procedure;
+    private final int m_batchSize;
     private final int m_partition;
     private HostAndPort m_partitionLeader;
     private final FormatterBuilder m_formatterBuilder;
@@ -69,7 +72,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     private final long m_triggerValue;
 
     public KafkaStreamImporterConfig(URI uri, List<HostAndPort> brokers, String topic, int partition, HostAndPort partitionLeader,
-            String groupId, int fetchSize, int soTimeout, String procedure, String commitPolicy,
+            String groupId, int fetchSize, int soTimeout, String procedure, int batchSize, String commitPolicy,
             FormatterBuilder formatterBuilder)
     {
         m_uri = uri;
@@ -81,6 +84,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
         m_fetchSize = fetchSize;
         m_soTimeout = soTimeout;
         m_procedure = procedure;
+        m_batchSize = batchSize;
         KafkaImporterCommitPolicy cp;
         m_commitPolicy = KafkaImporterCommitPolicy.fromString(commitPolicy);
         m_triggerValue = KafkaImporterCommitPolicy.fromStringTriggerValue(commitPolicy, m_commitPolicy);
@@ -125,6 +129,16 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     }
 
 
+    /**
+     * Most messages sent to the server in one transaction when the procedure is a table's
+     * default insert or upsert procedure, or NO_BATCHING if batchsize isn't configured.
+     */
+    public int getBatchSize()
+    {
+        return m_batchSize;
+    }
+
+
     public int getPartition()
     {
         return m_partition;
@@ -180,6 +194,20 @@ public class KafkaStreamImporterConfig implements ImporterConfig
             throw new IllegalArgumentException("Missing procedure.");
         }
 
+        // Batching is only done when asked for, the loads are counted under @Load*Table
+        String batchSizeStr = props.getProperty("batchsize", "").trim();
+        int batchSize = NO_BATCHING;
+        if (!batchSizeStr.isEmpty()) {
+            try {
+                batchSize = Integer.parseInt(batchSizeStr);
+                if (batchSize <= 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid batchsize specification: " + batchSizeStr);
+            }
+        }
+
         //comma separated list of topics.
         String topics = props.getProperty("topics", "").trim();
         if (topics.isEmpty()) {
@@ -206,7 +234,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
                 throw new IllegalArgumentException("topic name " + topic + " is illegal, contains a character other than ASCII alphanumerics, '_' and '-'");
             }
             try {
-                configs.putAll(getConfigsForPartitions(key, hapList, topic, groupId, procedure, soTimeout, fetchSize, commitPolicy, formatterBuilder));
+                configs.putAll(getConfigsForPartitions(key, hapList, topic, groupId, procedure, batchSize, soTimeout, fetchSize, commitPolicy, formatterBuilder));
             } catch(Exception e) {
                 m_logger.warn(String.format("Error trying to get partition information for topic [%s] on host [%s]", topic, hapList.get(0).getHost()), e);
             }
@@ -230,7 +258,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
     }
 
     public static Map<URI, KafkaStreamImporterConfig> getConfigsForPartitions(String key, List<HostAndPort> brokerList,
-            final String topic, String groupId, String procedure, int soTimeout, int fetchSize, String commitPolicy, FormatterBuilder formatterBuilder)
+            final String topic, String groupId, String procedure, int batchSize, int soTimeout, int fetchSize, String commitPolicy, FormatterBuilder formatterBuilder)
     {
         SimpleConsumer consumer = null;
         Map<URI, KafkaStreamImporterConfig> configs = new HashMap<>();
@@ -274,7 +302,7 @@ public class KafkaStreamImporterConfig implements ImporterConfig
                         }
                         KafkaStreamImporterConfig config = new KafkaStreamImporterConfig(uri, brokerList, topic,
                                 part.partitionId(), new HostAndPort(leader.host(), leader.port()),
-                                groupId, fetchSize, soTimeout, procedure, commitPolicy, formatterBuilder);
+                                groupId, fetchSize, soTimeout, procedure, batchSize, commitPolicy, formatterBuilder);
                         configs.put(uri, config);
                     }
                 }
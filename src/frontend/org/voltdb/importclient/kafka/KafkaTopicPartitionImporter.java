@@ -17,6 +17,7 @@
 package org.voltdb.importclient.kafka;
 
 import java.net.URI;
+import java.util.List;
 
 import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.ImporterLifecycle;
@@ -25,17 +26,37 @@ import org.voltdb.importer.Invocation;
 
 /**
  * Implementation that imports from a single partition of a Kafka topic.
+ * When <code>batchsize</code> is configured and the procedure is the default insert or upsert procedure
+ * of a table, <code>TABLE.insert</code> or <code>TABLE.upsert</code>, the messages of each fetch are
+ * grouped by VoltDB partition and loaded up to <code>batchsize</code> messages per transaction. The
+ * importer statistics then count these loads under <code>@LoadSinglepartitionTable</code> or
+ * <code>@LoadMultipartitionTable</code> instead of the procedure. Otherwise every message is a call
+ * of the procedure.
  */
 
 public class KafkaTopicPartitionImporter extends AbstractImporter
 {
     private VoltInternalTopicPartitionImporter delegate;
     private boolean hasTransaction = true;
+    // Table that messages are loaded into in batches, or null to call the procedure per message
+    private final String m_table;
+    private final boolean m_upsert;
 
     private static String KAFKA_IMPORTER_NAME = "KafkaImporter";
 
     public KafkaTopicPartitionImporter(KafkaStreamImporterConfig config) {
         delegate = new VoltInternalTopicPartitionImporter(config, this, this);
+        final String procedure = config.getProcedure();
+        final int dot = procedure.lastIndexOf('.');
+        final String action = procedure.substring(dot + 1);
+        if (config.getBatchSize() != KafkaStreamImporterConfig.NO_BATCHING
+                && dot > 0 && ("insert".equalsIgnoreCase(action) || "upsert".equalsIgnoreCase(action))) {
+            m_table = procedure.substring(0, dot);
+            m_upsert = "upsert".equalsIgnoreCase(action);
+        } else {
+            m_table = null;
+            m_upsert = false;
+        }
     }
 
     @Override
@@ -72,7 +93,7 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
         hasTransaction = flag;
     }
 
-    class VoltInternalTopicPartitionImporter extends BaseKafkaTopicPartitionImporter {
+    class VoltInternalTopicPartitionImporter extends BatchingKafkaTopicPartitionImporter {
 
         public VoltInternalTopicPartitionImporter(KafkaStreamImporterConfig config, ImporterLifecycle lifecycle, ImporterLogger logger) {
             super(config, lifecycle, logger);
@@ -83,6 +104,24 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
             return callProcedure(new Invocation(m_config.getProcedure(), params), cb);
         }
 
+        @Override
+        public int getBatchPartition(Object[] params) {
+            if (m_table == null || params == null) {
+                return NO_BATCH_PARTITION;
+            }
+            try {
+                return getPartitionForRow(m_table, params);
+            } catch (Exception e) {
+                // The procedure reports what is wrong with the row
+                return NO_BATCH_PARTITION;
+            }
+        }
+
+        @Override
+        public boolean invokeBatch(int partition, List<Object[]> rows, long receivedMillis, TopicPartitionBatchCallback cb) {
+            return callLoadTable(m_table, partition, m_upsert, rows, receivedMillis, cb);
+        }
+
     }
 
 }
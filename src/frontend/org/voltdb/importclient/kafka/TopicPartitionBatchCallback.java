@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.importclient.kafka;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importclient.kafka.BaseKafkaTopicPartitionImporter.PendingWorkTracker;
+import org.voltdb.importclient.kafka.TopicPartitionInvocationCallback.PausedOffsetCalculator;
+import org.voltdb.importer.CommitTracker;
+
+//Per topic per partition that we are responsible for.
+//Callback for each batch of messages, all of one VoltDB partition, loaded in one transaction.
+//The offsets of the batch are committed together once the batch is acknowledged. A batch that
+//fails is handed back to the fetcher, which submits its messages one at a time.
+public class TopicPartitionBatchCallback implements ProcedureCallback
+{
+    private final List<Object[]> m_rows;
+    private final long[] m_offsets;
+    private final long[] m_nextOffsets;
+    private final PendingWorkTracker m_callbackTracker;
+    private final CommitTracker m_tracker;
+    private final AtomicBoolean m_dontCommit;
+    private final AtomicLong m_pauseOffset;
+    private final Queue<TopicPartitionBatchCallback> m_failedBatches;
+
+    public TopicPartitionBatchCallback(
+            final List<Object[]> rows,
+            final long[] offsets,
+            final long[] nextOffsets,
+            final PendingWorkTracker callbackTracker,
+            final CommitTracker tracker,
+            final AtomicBoolean dontCommit,
+            final AtomicLong pauseOffset,
+            final Queue<TopicPartitionBatchCallback> failedBatches) {
+        m_rows = rows;
+        m_offsets = offsets;
+        m_nextOffsets = nextOffsets;
+        m_callbackTracker = callbackTracker;
+        m_tracker = tracker;
+        m_dontCommit = dontCommit;
+        m_pauseOffset = pauseOffset;
+        m_failedBatches = failedBatches;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse response) throws Exception {
+
+        m_callbackTracker.consumeWork();
+        switch (response.getStatus()) {
+        case ClientResponse.SUCCESS:
+            if (!m_dontCommit.get()) {
+                for (int i = 0; i < m_rows.size(); i++) {
+                    m_tracker.commit(m_nextOffsets[i]);
+                }
+            }
+            break;
+        case ClientResponse.SERVER_UNAVAILABLE:
+            // Offsets are in order within a batch, so the first one is the lowest
+            m_pauseOffset.accumulateAndGet(m_offsets[0], new PausedOffsetCalculator());
+            break;
+        default:
+            m_failedBatches.offer(this);
+            break;
+        }
+    }
+
+    public List<Object[]> getRows() {
+        return m_rows;
+    }
+
+    public long getOffset(int row) {
+        return m_offsets[row];
+    }
+
+    public long getNextOffset(int row) {
+        return m_nextOffsets[row];
+    }
+}
@@ -0,0 +1,160 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.importclient.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.importclient.kafka.BaseKafkaTopicPartitionImporter.PendingWorkTracker;
+import org.voltdb.importer.CommitTracker;
+import org.voltdb.importer.ImporterLifecycle;
+import org.voltdb.importer.ImporterLogger;
+
+//Submits the messages of a topic partition's fetches for the partition fetcher.
+//Messages with a batch partition are grouped by VoltDB partition and submitted up to
+//the configured batch size at a time. Whatever is left at the end of a fetch is submitted
+//before the next fetch. A batch that fails to load is handed back by its callback and
+//submitted again a message at a time, so only the bad messages are rejected.
+final class TopicPartitionBatcher
+{
+    //Where the messages go, the importer's invoke() and invokeBatch().
+    interface Target {
+        boolean invoke(Object[] params, TopicPartitionInvocationCallback cb);
+        boolean invokeBatch(int partition, List<Object[]> rows, long receivedMillis, TopicPartitionBatchCallback cb);
+    }
+
+    private final int m_batchSize;
+    private final Target m_target;
+    private final CommitTracker m_gapTracker;
+    private final AtomicBoolean m_dead;
+    private final AtomicLong m_pauseOffset;
+    private final ImporterLifecycle m_lifecycle;
+    private final ImporterLogger m_logger;
+    // Messages of the current fetch waiting to be submitted, by VoltDB partition
+    private final Map<Integer, PendingBatch> m_batches = new HashMap<>();
+    // Batches that failed to load, to be submitted a message at a time by the fetcher
+    private final Queue<TopicPartitionBatchCallback> m_failedBatches = new ConcurrentLinkedQueue<>();
+
+    TopicPartitionBatcher(int batchSize, Target target, CommitTracker gapTracker, AtomicBoolean dead,
+            AtomicLong pauseOffset, ImporterLifecycle lifecycle, ImporterLogger logger) {
+        m_batchSize = batchSize;
+        m_target = target;
+        m_gapTracker = gapTracker;
+        m_dead = dead;
+        m_pauseOffset = pauseOffset;
+        m_lifecycle = lifecycle;
+        m_logger = logger;
+    }
+
+    //Submit a message of the current fetch, on its own if its partition is NO_BATCH_PARTITION.
+    void submit(int partition, long offset, long nextOffset, Object[] params, long receivedMillis,
+            PendingWorkTracker callbackTracker) {
+        if (partition == BaseKafkaTopicPartitionImporter.NO_BATCH_PARTITION || m_batchSize <= 0) {
+            submitMessage(offset, nextOffset, params, callbackTracker);
+            return;
+        }
+        PendingBatch batch = m_batches.get(partition);
+        if (batch == null) {
+            batch = new PendingBatch(receivedMillis);
+            m_batches.put(partition, batch);
+        }
+        if (batch.add(offset, nextOffset, params)) {
+            m_batches.remove(partition);
+            submitBatch(partition, batch, callbackTracker);
+        }
+    }
+
+    //Submit what is left of the current fetch, so messages wait no longer than one fetch.
+    void endFetch(PendingWorkTracker callbackTracker) {
+        for (Map.Entry<Integer, PendingBatch> e : m_batches.entrySet()) {
+            submitBatch(e.getKey(), e.getValue(), callbackTracker);
+        }
+        m_batches.clear();
+    }
+
+    void submitFailedBatches(PendingWorkTracker callbackTracker) {
+        TopicPartitionBatchCallback batch;
+        while (m_lifecycle.shouldRun() && (batch = m_failedBatches.poll()) != null) {
+            submitMessages(batch, callbackTracker);
+        }
+    }
+
+    private void submitMessage(long offset, long nextOffset, Object[] params, PendingWorkTracker callbackTracker) {
+        TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(offset,
+                nextOffset, callbackTracker, m_gapTracker, m_dead, m_pauseOffset);
+
+        if (m_target.invoke(params, cb)) {
+            callbackTracker.produceWork();
+        }
+        else {
+            if (m_logger.isDebugEnabled()) {
+                m_logger.debug(null, "Failed to process Invocation possibly bad data: " + Arrays.toString(params));
+            }
+            m_gapTracker.commit(nextOffset);
+        }
+    }
+
+    private void submitBatch(int partition, PendingBatch batch, PendingWorkTracker callbackTracker) {
+        TopicPartitionBatchCallback cb = new TopicPartitionBatchCallback(batch.m_rows, batch.m_offsets,
+                batch.m_nextOffsets, callbackTracker, m_gapTracker, m_dead, m_pauseOffset, m_failedBatches);
+
+        if (m_target.invokeBatch(partition, batch.m_rows, batch.m_receivedMillis, cb)) {
+            callbackTracker.produceWork();
+        }
+        else {
+            submitMessages(cb, callbackTracker);
+        }
+    }
+
+    //Submit the messages of a batch one at a time, so only the bad ones are rejected.
+    private void submitMessages(TopicPartitionBatchCallback batch, PendingWorkTracker callbackTracker) {
+        List<Object[]> rows = batch.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            submitMessage(batch.getOffset(i), batch.getNextOffset(i), rows.get(i), callbackTracker);
+        }
+    }
+
+    //Messages of one VoltDB partition waiting to be submitted together.
+    private final class PendingBatch {
+        final List<Object[]> m_rows;
+        final long[] m_offsets;
+        final long[] m_nextOffsets;
+        final long m_receivedMillis;
+
+        PendingBatch(long receivedMillis) {
+            m_rows = new ArrayList<>(m_batchSize);
+            m_offsets = new long[m_batchSize];
+            m_nextOffsets = new long[m_batchSize];
+            m_receivedMillis = receivedMillis;
+        }
+
+        //Returns true when the batch is full.
+        boolean add(long offset, long nextOffset, Object[] params) {
+            m_offsets[m_rows.size()] = offset;
+            m_nextOffsets[m_rows.size()] = nextOffset;
+            m_rows.add(params);
+            return m_rows.size() == m_offsets.length;
+        }
+    }
+}
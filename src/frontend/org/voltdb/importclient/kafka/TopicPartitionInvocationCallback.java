@@ -51,7 +51,7 @@ public class TopicPartitionInvocationCallback implements ProcedureCallback
         m_pauseOffset = pauseOffset;
     }
 
-    private static class PausedOffsetCalculator implements LongBinaryOperator {
+    static class PausedOffsetCalculator implements LongBinaryOperator {
         @Override
         public long applyAsLong(long currentValue, long givenUpdate) {
             if (currentValue == -1){
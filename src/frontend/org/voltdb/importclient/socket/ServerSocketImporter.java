@@ -17,17 +17,24 @@
 
 package org.voltdb.importclient.socket;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.Socket;
-import java.net.SocketException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.voltcore.logging.Level;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.Invocation;
 import org.voltdb.importer.formatter.FormatException;
@@ -36,15 +43,46 @@ import org.voltdb.importer.formatter.Formatter;
 /**
  * Importer that listens on a server socket for data. Data is expected in CSV format currently,
  * which will be parsed and sent to the procedure specified in the configuration.
+ *
+ * <p>One thread serves all the client connections with a selector, and lines are parsed
+ * straight out of each connection's read buffer. When the procedure is the default insert
+ * or upsert procedure of a table, <code>TABLE.insert</code> or <code>TABLE.upsert</code>,
+ * rows are grouped by partition and loaded up to <code>batchsize</code> rows per transaction.
+ * The rows of a batch that fails are retried one at a time with the procedure, so only the
+ * bad rows are rejected. Any other procedure is called once per row. While the server is on
+ * back pressure the thread stops reading, which pushes back on the clients through TCP.
+ * A client that sends a line longer than <code>maxlinelength</code> bytes is disconnected.
  */
 public class ServerSocketImporter extends AbstractImporter {
 
+    // Initial size of the read buffer of a connection, which grows to fit longer lines
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private final ServerSocketImporterConfig m_config;
-    private List<ClientConnectionHandler> m_clients = new ArrayList<>();
+    private final String m_procedure;
+    // Table that rows are loaded into in batches, or null to call the procedure per row
+    private final String m_table;
+    private final boolean m_upsert;
+    // Rows waiting to be loaded, by partition id
+    private final Map<Integer, List<Object[]>> m_batches = new HashMap<>();
+    // Batches that failed to load, to be retried a row at a time by the selector thread
+    private final Queue<List<Object[]>> m_failedBatches = new ConcurrentLinkedQueue<>();
+    private volatile Selector m_selector;
+    private Formatter m_formatter;
 
     public ServerSocketImporter(ServerSocketImporterConfig config)
     {
         m_config = config;
+        m_procedure = config.getProcedure();
+        final int dot = m_procedure.lastIndexOf('.');
+        final String action = m_procedure.substring(dot + 1);
+        if (dot > 0 && ("insert".equalsIgnoreCase(action) || "upsert".equalsIgnoreCase(action))) {
+            m_table = m_procedure.substring(0, dot);
+            m_upsert = "upsert".equalsIgnoreCase(action);
+        } else {
+            m_table = null;
+            m_upsert = false;
+        }
     }
 
     @Override
@@ -74,22 +112,49 @@ public class ServerSocketImporter extends AbstractImporter {
             warn(e, "Error closing socket importer server socket on port " + m_config.getPort());
         }
 
-        for (ClientConnectionHandler client : m_clients) {
-            client.stopClient();
+        // The selector thread closes the client connections on its way out
+        Selector selector = m_selector;
+        if (selector != null) {
+            selector.wakeup();
         }
     }
 
     private void startListening()
     {
-        try {
-            while (shouldRun()) {
-                Socket clientSocket = m_config.getServerSocket().accept();
-                ClientConnectionHandler ch = new ClientConnectionHandler(clientSocket, m_config.getProcedure());
-                m_clients.add(ch);
-                ch.start();
+        m_formatter = m_config.getFormatterBuilder().create();
+        ServerSocketChannel server = m_config.getServerSocket();
+        try (Selector selector = Selector.open()) {
+            m_selector = selector;
+            try {
+                server.configureBlocking(false);
+                server.register(selector, SelectionKey.OP_ACCEPT);
+                while (shouldRun()) {
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext() && shouldRun()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            acceptClient(selector, server);
+                        } else if (key.isReadable()) {
+                            ((ClientConnection) key.attachment()).read();
+                        }
+                    }
+                    retryFailedBatches();
+                    loadBatches();
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof ClientConnection) {
+                        ((ClientConnection) key.attachment()).close();
+                    }
+                }
             }
         } catch(IOException e) {
-            if (e instanceof SocketException && m_config.getServerSocket().isClosed() && !shouldRun()) {
+            if (!server.isOpen() && !shouldRun()) {
                 warn(null, "Client connection request for " + getName() + " on port " + m_config.getPort()
                     + " failed as socket was closed during importer shutdown");
             } else {
@@ -98,47 +163,190 @@ public class ServerSocketImporter extends AbstractImporter {
         }
     }
 
-    //This is ClientConnection handler to read and dispatch data to stored procedure.
-    private class ClientConnectionHandler extends Thread
+    private void acceptClient(Selector selector, ServerSocketChannel server) throws IOException
     {
-        private final Socket m_clientSocket;
-        private final String m_procedure;
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new ClientConnection(channel));
+        } catch(IOException e) {
+            if (!server.isOpen()) {
+                throw e;
+            }
+            rateLimitedLog(Level.WARN, e, "Unexpected error accepting a client connection for %s on port %d",
+                    getName(), m_config.getPort());
+        }
+    }
 
-        public ClientConnectionHandler(Socket clientSocket, String procedure)
+    private void handleLine(byte[] bytes, int offset, int length)
+    {
+        Object params[] = null;
+        try {
+            // Formatters read from the array offset to the limit, which the slice sets to the line
+            params = m_formatter.transform(ByteBuffer.wrap(bytes, offset, length).slice());
+        } catch (FormatException e) {
+            rateLimitedLog(Level.ERROR, e, "Failed to tranform data: %s",
+                    new String(bytes, offset, length, StandardCharsets.UTF_8));
+            return;
+        }
+        if (params == null) {
+            return;
+        }
+        if (m_table == null) {
+            insertRow(params);
+            return;
+        }
+
+        int partition;
+        try {
+            partition = getPartitionForRow(m_table, params);
+        } catch (Exception e) {
+            // The procedure reports what is wrong with the row
+            insertRow(params);
+            return;
+        }
+        List<Object[]> batch = m_batches.get(partition);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            m_batches.put(partition, batch);
+        }
+        batch.add(params);
+        if (batch.size() >= m_config.getBatchSize()) {
+            m_batches.remove(partition);
+            loadBatch(partition, batch);
+        }
+    }
+
+    private void insertRow(Object[] params)
+    {
+        Invocation invocation = new Invocation(m_procedure, params);
+        if (!callProcedure(invocation)) {
+            rateLimitedLog(Level.ERROR, null, "Socket importer insertion failed");
+        }
+    }
+
+    private void loadBatch(int partition, List<Object[]> rows)
+    {
+        boolean queued = callLoadTable(m_table, partition, m_upsert, rows, response -> {
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_failedBatches.offer(rows);
+                Selector selector = m_selector;
+                if (selector != null) {
+                    selector.wakeup();
+                }
+            }
+        });
+        if (!queued && shouldRun()) {
+            for (Object[] row : rows) {
+                insertRow(row);
+            }
+        }
+    }
+
+    // Every round of the selector loads what it read, so rows wait no longer than one round
+    private void loadBatches()
+    {
+        for (Map.Entry<Integer, List<Object[]>> e : m_batches.entrySet()) {
+            loadBatch(e.getKey(), e.getValue());
+        }
+        m_batches.clear();
+    }
+
+    private void retryFailedBatches()
+    {
+        List<Object[]> rows;
+        while (shouldRun() && (rows = m_failedBatches.poll()) != null) {
+            for (Object[] row : rows) {
+                insertRow(row);
+            }
+        }
+    }
+
+    //This is ClientConnection handler to read lines and dispatch them to the stored procedure.
+    private class ClientConnection
+    {
+        private final SocketChannel m_clientSocket;
+        private ByteBuffer m_buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // Bytes at the start of the buffer already searched for the end of a line
+        private int m_scanned = 0;
+
+        public ClientConnection(SocketChannel clientSocket)
         {
             m_clientSocket = clientSocket;
-            m_procedure = procedure;
         }
 
-        @Override
-        public void run()
+        public void read()
         {
+            int read;
             try {
-                BufferedReader in = new BufferedReader(
-                        new InputStreamReader(m_clientSocket.getInputStream()));
-                Formatter formatter = m_config.getFormatterBuilder().create();
-                Object params[] = null;
-                while (shouldRun()) {
-                    String line = in.readLine();
-                    if (line == null) {
-                        break; // end of stream
-                    }
-                    try{
-                        params = formatter.transform(ByteBuffer.wrap(line.getBytes()));
-                        //You should convert your data to params here.
-                        if (params == null) continue;
-                        Invocation invocation = new Invocation(m_procedure, params);
-                        if (!callProcedure(invocation)) {
-                            rateLimitedLog(Level.ERROR, null, "Socket importer insertion failed");
-                        }
-                   } catch (FormatException e){
-                       rateLimitedLog(Level.ERROR, e, "Failed to tranform data: %s" ,line);
-                  }
-                }
+                read = m_clientSocket.read(m_buffer);
             } catch (IOException ioe) {
                 error(ioe, "IO exception reading from client socket connection in socket importer");
+                close();
+                return;
+            }
+            if (read < 0) {
+                handleLines(true); // end of stream
+                close();
+            } else if (!handleLines(false)) {
+                close();
+            }
+        }
+
+        // Returns false if the client sent a line that is too long and has to be dropped
+        private boolean handleLines(boolean endOfStream)
+        {
+            final byte[] bytes = m_buffer.array();
+            final int end = m_buffer.position();
+            final int maxLineLength = m_config.getMaxLineLength();
+            int lineStart = 0;
+            for (int i = m_scanned; i < end; i++) {
+                if (bytes[i] == '\n') {
+                    int lineEnd = (i > lineStart && bytes[i - 1] == '\r') ? i - 1 : i;
+                    if (lineEnd - lineStart > maxLineLength) {
+                        lineTooLong();
+                        return false;
+                    }
+                    handleLine(bytes, lineStart, lineEnd - lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            final int remaining = end - lineStart;
+            if (remaining > maxLineLength) {
+                lineTooLong();
+                return false;
+            }
+            if (endOfStream) {
+                if (remaining > 0) {
+                    handleLine(bytes, lineStart, remaining);
+                }
+                return true;
             }
 
+            // Keep the partial line at the front of the buffer, in a bigger one if it fills it
+            if (remaining == bytes.length) {
+                ByteBuffer grown = ByteBuffer.allocate(bytes.length * 2);
+                grown.put(bytes, 0, remaining);
+                m_buffer = grown;
+            } else {
+                System.arraycopy(bytes, lineStart, bytes, 0, remaining);
+                m_buffer.position(remaining);
+            }
+            m_scanned = remaining;
+            return true;
+        }
+
+        private void lineTooLong()
+        {
+            rateLimitedLog(Level.ERROR, null, "Socket importer client %s sent a line longer than %d bytes, dropping the connection",
+                    m_clientSocket.socket().getRemoteSocketAddress(), m_config.getMaxLineLength());
+        }
+
+        public void close()
+        {
             try {
                 m_clientSocket.close();
                 info(null, "Client Closed.");
@@ -146,10 +354,5 @@ public class ServerSocketImporter extends AbstractImporter {
                 warn(e, "Error closing socket importer connection");
             }
         }
-
-        public void stopClient()
-        {
-            // nothing to do for now
-        }
     }
 }
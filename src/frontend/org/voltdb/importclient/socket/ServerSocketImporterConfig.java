@@ -18,9 +18,10 @@
 package org.voltdb.importclient.socket;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Properties;
 
 import org.voltdb.importer.ImporterConfig;
@@ -32,12 +33,16 @@ import org.voltdb.importer.formatter.FormatterBuilder;
 public class ServerSocketImporterConfig implements ImporterConfig
 {
     private static final String SOCKET_IMPORTER_URI_SCHEME = "socketimporter";
+    private static final int DEFAULT_BATCH_SIZE = 200;
+    private static final int DEFAULT_MAX_LINE_LENGTH = 4 * 1024 * 1024;
 
     private final URI m_resourceID;
     private final FormatterBuilder m_formatterBuilder;
     private final String m_procedure;
     private final int m_port;
-    private final ServerSocket m_serverSocket;
+    private final int m_batchSize;
+    private final int m_maxLineLength;
+    private final ServerSocketChannel m_serverSocket;
 
     public ServerSocketImporterConfig(Properties props, FormatterBuilder formatterBuilder)
     {
@@ -58,9 +63,37 @@ public class ServerSocketImporterConfig implements ImporterConfig
             throw new IllegalArgumentException("Invalid port specification: " + portStr);
         }
 
+        String batchSizeStr = propsCopy.getProperty("batchsize", String.valueOf(DEFAULT_BATCH_SIZE));
         try {
-            m_serverSocket = new ServerSocket(m_port);
+            m_batchSize = Integer.parseInt(batchSizeStr);
+            if (m_batchSize <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid batchsize specification: " + batchSizeStr);
+        }
+
+        String maxLineLengthStr = propsCopy.getProperty("maxlinelength", String.valueOf(DEFAULT_MAX_LINE_LENGTH));
+        try {
+            m_maxLineLength = Integer.parseInt(maxLineLengthStr);
+            if (m_maxLineLength <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid maxlinelength specification: " + maxLineLengthStr);
+        }
+
+        ServerSocketChannel serverSocket = null;
+        try {
+            serverSocket = ServerSocketChannel.open();
+            serverSocket.bind(new InetSocketAddress(m_port));
+            m_serverSocket = serverSocket;
         } catch(IOException e) {
+            if (serverSocket != null) {
+                try {
+                    serverSocket.close();
+                } catch(IOException ignore) {}
+            }
             throw new IllegalArgumentException("Error starting socket importer listener on port: " + m_port, e);
         }
 
@@ -89,7 +122,24 @@ public class ServerSocketImporterConfig implements ImporterConfig
         return m_port;
     }
 
-    public ServerSocket getServerSocket()
+    /**
+     * Most rows sent to the server in one transaction when the procedure is a table's
+     * default insert or upsert procedure.
+     */
+    public int getBatchSize()
+    {
+        return m_batchSize;
+    }
+
+    /**
+     * Longest line in bytes a client may send. A client that sends a longer one is disconnected.
+     */
+    public int getMaxLineLength()
+    {
+        return m_maxLineLength;
+    }
+
+    public ServerSocketChannel getServerSocket()
     {
         return m_serverSocket;
     }
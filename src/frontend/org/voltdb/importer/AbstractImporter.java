@@ -18,11 +18,13 @@
 package org.voltdb.importer;
 
 import java.net.URI;
+import java.util.List;
 import java.util.function.Function;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.InternalConnectionContext;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 
 
@@ -120,6 +122,77 @@ public abstract class AbstractImporter
         }
     }
 
+    /**
+     * This may be used by importer implementations that load rows straight into a table
+     * to batch the rows by partition for <code>callLoadTable</code>.
+     *
+     * @param tableName the name of the table
+     * @param row the column values of the row, in the order of the table's columns
+     * @return the partition id, or -1 if the table is replicated
+     * @throws IllegalArgumentException if the table doesn't exist or the row doesn't match it
+     */
+    protected final int getPartitionForRow(String tableName, Object[] row)
+    {
+        return m_importServerAdapter.getPartitionForRow(tableName, row);
+    }
+
+    /**
+     * This may be used by importer implementations to load a batch of rows into a table
+     * in one transaction, instead of executing the table's insert procedure once per row.
+     * All the rows must have the partition given, as returned by <code>getPartitionForRow</code>.
+     *
+     * @param tableName the name of the table
+     * @param partition the partition of the rows, or -1 if the table is replicated
+     * @param upsert true to update rows whose primary key already exists, false to insert them
+     * @param rows the column values of each row, in the order of the table's columns
+     * @param callback the callback that will receive the load's status
+     * @return returns true if the load was queued successfully; false otherwise
+     */
+    protected final boolean callLoadTable(String tableName, int partition, boolean upsert,
+                                          List<Object[]> rows, ProcedureCallback callback)
+    {
+        return callLoadTable(tableName, partition, upsert, rows, System.currentTimeMillis(), callback);
+    }
+
+    /**
+     * Same as <code>callLoadTable</code> above, for importers that know when they received
+     * the rows. The time from then until the rows are loaded is reported in the importer
+     * statistics as the lag of the batch.
+     *
+     * @param tableName the name of the table
+     * @param partition the partition of the rows, or -1 if the table is replicated
+     * @param upsert true to update rows whose primary key already exists, false to insert them
+     * @param rows the column values of each row, in the order of the table's columns
+     * @param receivedMillis System.currentTimeMillis() when the oldest row of the batch was received
+     * @param callback the callback that will receive the load's status
+     * @return returns true if the load was queued successfully; false otherwise
+     */
+    protected final boolean callLoadTable(String tableName, int partition, boolean upsert,
+                                          List<Object[]> rows, long receivedMillis, ProcedureCallback callback)
+    {
+        final String procName = partition < 0 ? "@LoadMultipartitionTable" : "@LoadSinglepartitionTable";
+        final int rowCount = rows.size();
+        final ProcedureCallback batchCallback = response -> {
+            if (response.getStatus() == ClientResponse.SUCCESS) {
+                m_importServerAdapter.reportBatch(getName(), procName, rowCount,
+                                                  System.currentTimeMillis() - receivedMillis);
+            }
+            if (callback != null) {
+                callback.clientCallback(response);
+            }
+        };
+        try {
+            boolean result = m_importServerAdapter.loadTable(this, m_backPressurePredicate,
+                                                             batchCallback, tableName, upsert, rows);
+            reportStat(result, procName);
+            return result;
+        } catch (Exception ex) {
+            rateLimitedLog(Level.ERROR, ex, "%s: Error trying to import", getName());
+            reportFailureStat(procName);
+            return false;
+        }
+    }
+
     /**
      * Called to stop the importer from processing more data.
      */
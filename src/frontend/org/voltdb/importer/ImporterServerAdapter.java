@@ -19,6 +19,7 @@ package org.voltdb.importer;
 
 import org.voltdb.client.ProcedureCallback;
 
+import java.util.List;
 import java.util.function.Function;
 
 
@@ -49,6 +50,35 @@ public interface ImporterServerAdapter {
      */
     public boolean callProcedure(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate, ProcedureCallback callback, String proc, Object... fieldList);
 
+    /**
+     * This is used by importers to find the partition that a row of a table belongs to,
+     * so that rows can be batched by partition for {@link #loadTable}.
+     *
+     * @param tableName the name of the table
+     * @param row the column values of the row, in the order of the table's columns
+     * @return the partition id, or -1 if the table is replicated
+     * @throws IllegalArgumentException if the table doesn't exist or the row doesn't match it
+     * @throws org.voltdb.VoltTypeException if the partitioning value can't be converted to the
+     * type of the partitioning column
+     */
+    public int getPartitionForRow(String tableName, Object[] row);
+
+    /**
+     * This is used by importers to load a batch of rows into a table in one transaction.
+     * The rows of a partitioned table must all belong to one partition.
+     *
+     * @param importer the calling importer instance
+     * @param backPressurePredicate the predicate to check when the partition is on back pressure,
+     *                              as for {@link #callProcedure}
+     * @param callback the callback object that will receive the load's execution status
+     * @param tableName the name of the table
+     * @param upsert true to update rows whose primary key already exists, false to insert them
+     * @param rows the column values of each row, in the order of the table's columns
+     * @return returns true if the load was queued successfully; false otherwise.
+     */
+    public boolean loadTable(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate, ProcedureCallback callback,
+            String tableName, boolean upsert, List<Object[]> rows);
+
     /**
      * This should be used by importers to report failure while trying to execute a procedure.
      *
@@ -68,4 +98,15 @@ public interface ImporterServerAdapter {
      * @param procName the name of the procedure that the importer was trying to execute
      */
     public void reportQueued(String importerName, String procName);
+
+    /**
+     * This should be used by importers to report that a batch of rows was loaded successfully.
+     *
+     * @param importerName the name of the importer
+     * @param procName the name of the procedure that loaded the batch
+     * @param rowCount the number of rows in the batch
+     * @param lagMillis milliseconds from when the importer received the oldest row of the batch
+     * until the load completed
+     */
+    public void reportBatch(String importerName, String procName, int rowCount, long lagMillis);
 }
@@ -33,6 +33,8 @@ import com.google_voltpatches.common.collect.ImmutableMap;
 
 /**
  * Maintains success, failure, pending and other relevant counts per importer.
+ * Importers that load rows in batches also report the number of batches, their average
+ * size and the lag, in milliseconds, from receiving the rows until they were loaded.
  */
 
 public class ImporterStatsCollector extends SiteStatsSource
@@ -44,6 +46,10 @@ public class ImporterStatsCollector extends SiteStatsSource
     public static final String FAILURE_COUNT_COL = "FAILURES";
     public static final String PENDING_COUNT_COL = "OUTSTANDING_REQUESTS";
     public static final String RETRY_COUNT_COL = "RETRIES";
+    public static final String BATCH_COUNT_COL = "BATCHES";
+    public static final String AVG_BATCH_SIZE_COL = "AVG_BATCH_SIZE";
+    public static final String AVG_LAG_COL = "AVG_LAG";
+    public static final String MAX_LAG_COL = "MAX_LAG";
 
     // Holds stats info for each known importer-procname combination.
     // Using AtomicReferences with ImmutableMap to avoid locking and faster access
@@ -103,6 +109,17 @@ public class ImporterStatsCollector extends SiteStatsSource
         statsInfo.m_retryCount.incrementAndGet();
     }
 
+    // A batch of rows loaded in one transaction succeeded
+    public void reportBatch(String importerName, String procName, int rowCount, long lagMillis) {
+        StatsInfo statsInfo = getStatsInfo(importerName, procName);
+        final long lag = Math.max(0, lagMillis);
+        statsInfo.m_batchCount.incrementAndGet();
+        statsInfo.m_batchRowCount.addAndGet(rowCount);
+        statsInfo.m_lagTotal.addAndGet(lag);
+        statsInfo.m_maxLag.accumulateAndGet(lag, Math::max);
+        statsInfo.m_intervalMaxLag.accumulateAndGet(lag, Math::max);
+    }
+
     private StatsInfo getStatsInfo(String importerName, String procName) {
         ImmutableMap<String, AtomicReference<ImmutableMap<String, StatsInfo>>> existingMap;
         ImmutableMap<String, AtomicReference<ImmutableMap<String, StatsInfo>>> newMap;
@@ -153,6 +170,7 @@ public class ImporterStatsCollector extends SiteStatsSource
         rowValues[columnNameToIndex.get(FAILURE_COUNT_COL)] = getFailureCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(PENDING_COUNT_COL)] = getPendingCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(RETRY_COUNT_COL)] = getRetryCountUpdateLast(stats);
+        updateBatchColumnsUpdateLast(stats, rowValues);
 
         super.updateStatsRow(rowKey, rowValues);
     }
@@ -203,6 +221,30 @@ public class ImporterStatsCollector extends SiteStatsSource
         return value;
     }
 
+    // Batch size and lag are averaged over the batches since the last interval, if this is an interval
+    private void updateBatchColumnsUpdateLast(StatsInfo stats, Object rowValues[]) {
+        long batches = stats.m_batchCount.get();
+        long rows = stats.m_batchRowCount.get();
+        long lag = stats.m_lagTotal.get();
+        long maxLag = stats.m_maxLag.get();
+        if (m_isInterval) {
+            final long currentBatches = batches;
+            final long currentRows = rows;
+            final long currentLag = lag;
+            batches -= stats.m_lastBatchCount;
+            rows -= stats.m_lastBatchRowCount;
+            lag -= stats.m_lastLagTotal;
+            maxLag = stats.m_intervalMaxLag.getAndSet(0);
+            stats.m_lastBatchCount = currentBatches;
+            stats.m_lastBatchRowCount = currentRows;
+            stats.m_lastLagTotal = currentLag;
+        }
+
+        rowValues[columnNameToIndex.get(BATCH_COUNT_COL)] = batches;
+        rowValues[columnNameToIndex.get(AVG_BATCH_SIZE_COL)] = batches == 0 ? 0L : rows / batches;
+        rowValues[columnNameToIndex.get(AVG_LAG_COL)] = batches == 0 ? 0L : lag / batches;
+        rowValues[columnNameToIndex.get(MAX_LAG_COL)] = maxLag;
+    }
 
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
@@ -219,6 +261,10 @@ public class ImporterStatsCollector extends SiteStatsSource
         columns.add(new ColumnInfo(FAILURE_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(PENDING_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(RETRY_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(BATCH_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(AVG_BATCH_SIZE_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(AVG_LAG_COL, VoltType.BIGINT)); // milliseconds
+        columns.add(new ColumnInfo(MAX_LAG_COL, VoltType.BIGINT)); // milliseconds
     }
 
     private class StatsInfo
@@ -229,10 +275,18 @@ public class ImporterStatsCollector extends SiteStatsSource
         AtomicLong m_failureCount = new AtomicLong(0);
         AtomicLong m_pendingCount = new AtomicLong(0);
         AtomicLong m_retryCount = new AtomicLong(0);
+        AtomicLong m_batchCount = new AtomicLong(0);
+        AtomicLong m_batchRowCount = new AtomicLong(0);
+        AtomicLong m_lagTotal = new AtomicLong(0);
+        AtomicLong m_maxLag = new AtomicLong(0);
+        AtomicLong m_intervalMaxLag = new AtomicLong(0);
         long m_lastSuccessCount = 0;
         long m_lastFailureCount = 0;
         long m_lastPendingCount = 0;
         long m_lastRetryCount = 0;
+        long m_lastBatchCount = 0;
+        long m_lastBatchRowCount = 0;
+        long m_lastLagTotal = 0;
 
         public StatsInfo(String importerName, String procName) {
             m_importerName = importerName;
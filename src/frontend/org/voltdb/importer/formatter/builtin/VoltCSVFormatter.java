@@ -26,10 +26,18 @@ import org.voltdb.importer.formatter.Formatter;
 
 import au.com.bytecode.opencsv_voltpatches.CSVParser;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 
 public class VoltCSVFormatter implements Formatter {
     final CSVParser m_parser;
+    // Lines are decoded into a reused buffer and parsed from there, without a String per line
+    private final CharsetDecoder m_decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer m_line = CharBuffer.allocate(1024);
 
     public VoltCSVFormatter (String formatName, Properties prop) {
 
@@ -72,12 +80,11 @@ public class VoltCSVFormatter implements Formatter {
 
     @Override
     public Object[] transform(ByteBuffer payload) throws FormatException {
-        String line = null;
+        if (payload == null) {
+            return null;
+        }
+        final CharBuffer line = decode(payload);
         try {
-            if (payload == null) {
-                return null;
-            }
-            line = new String(payload.array(), payload.arrayOffset(), payload.limit(), StandardCharsets.UTF_8);
             Object list[] = m_parser.parseLine(line);
             if (list != null) {
                 for (int i = 0; i < list.length; i++) {
@@ -93,4 +100,18 @@ public class VoltCSVFormatter implements Formatter {
             throw new FormatException("failed to format " + line, e);
         }
     }
+
+    // UTF-8 never decodes to more chars than it has bytes
+    private CharBuffer decode(ByteBuffer payload) {
+        final ByteBuffer bytes = ByteBuffer.wrap(payload.array(), payload.arrayOffset(), payload.limit());
+        if (m_line.capacity() < bytes.remaining()) {
+            m_line = CharBuffer.allocate(bytes.remaining());
+        }
+        m_line.clear();
+        m_decoder.reset();
+        m_decoder.decode(bytes, m_line, true);
+        m_decoder.flush(m_line);
+        m_line.flip();
+        return m_line;
+    }
 }
@@ -113,6 +113,8 @@ public class VoltSuperCSVFormatter implements Formatter {
         if (payload == null) {
             return null;
         }
+        // The SuperCSV tokenizer takes its input a String line at a time, so unlike
+        // VoltCSVFormatter this one can't parse the payload in place.
         String line = new String(payload.array(), payload.arrayOffset(), payload.limit(), StandardCharsets.UTF_8);
         m_tokenizer.setSourceString(line);
         List<String> dataList;
@@ -0,0 +1,323 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json_voltpatches.JSONObject;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.jni.Sha1Wrapper;
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.planner.ActivePlanRepository;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.OrderByPlanNode;
+import org.voltdb.plannodes.PlanNodeTree;
+import org.voltdb.plannodes.ReceivePlanNode;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * Stages the dependency tables of a batch of distributed fragments on the MPI as the
+ * partitions answer, so that less of the work feeding the coordinator fragment is left
+ * for after the slowest partition.
+ *
+ * The coordinator fragment itself can't start early. It runs as a borrow task on the buddy
+ * site, and holding that site while other partitions are still working could deadlock
+ * concurrent MP reads. Its input can be prepared early though:
+ * <ul>
+ * <li>The tables of a dependency that a plain RECEIVE unions are appended to one staged
+ * table, one block copy of their serialized rows each. The receive executor pulls every
+ * table across JNI with a call and a copy of its own, so it is left with two of them to
+ * pull once the slowest partition answers, however many partitions there are.</li>
+ * <li>The tables of a dependency that a MERGERECEIVE merges are sorted runs, one per
+ * partition. Runs that cover the same number of partitions are merged pairwise as they come
+ * in, so the merge receive executor is left with a few runs instead of one per partition.
+ * This is only done when every sort key is a column of an integer or timestamp type, whose
+ * order is matched exactly here.</li>
+ * </ul>
+ * The last table of a dependency is handed over as it is. Staging it would only add to the
+ * wait that staging is meant to shorten.
+ */
+final class MpDependencyStager {
+
+    /**
+     * The order of the rows of the runs of a MERGERECEIVE dependency.
+     * With no keys, rows can come in any order, as for a plain RECEIVE.
+     */
+    static final class RowOrder implements Comparator<VoltTableRow> {
+        private final int[] m_columns;
+        private final VoltType[] m_types;
+        private final boolean[] m_descending;
+
+        RowOrder(int[] columns, VoltType[] types, boolean[] descending) {
+            m_columns = columns;
+            m_types = types;
+            m_descending = descending;
+        }
+
+        boolean isAnyOrder() {
+            return m_columns.length == 0;
+        }
+
+        // A table from a partition that doesn't have the planned key columns is left alone
+        boolean fits(VoltTable table) {
+            for (int ii = 0; ii < m_columns.length; ii++) {
+                if (m_columns[ii] >= table.getColumnCount() ||
+                        table.getColumnType(m_columns[ii]) != m_types[ii]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // A NULL of these types is stored as the smallest value of the type,
+        // which sorts it first, as the EE does.
+        private static long keyValue(VoltTableRow row, int column, VoltType type) {
+            return type == VoltType.TIMESTAMP ? row.getTimestampAsLong(column) : row.getLong(column);
+        }
+
+        @Override
+        public int compare(VoltTableRow lhs, VoltTableRow rhs) {
+            for (int ii = 0; ii < m_columns.length; ii++) {
+                int cmp = Long.compare(keyValue(lhs, m_columns[ii], m_types[ii]),
+                                       keyValue(rhs, m_columns[ii], m_types[ii]));
+                if (cmp != 0) {
+                    return m_descending[ii] ? -cmp : cmp;
+                }
+            }
+            return 0;
+        }
+    }
+
+    static final RowOrder ANY_ORDER = new RowOrder(new int[0], new VoltType[0], new boolean[0]);
+    // Cached for plans whose input isn't staged
+    private static final RowOrder NOT_STAGED = new RowOrder(new int[0], new VoltType[0], new boolean[0]);
+
+    // Coordinator fragment plans are looked at once, keyed like the plans of the ActivePlanRepository
+    private static final Map<Sha1Wrapper, RowOrder> s_ordersByPlanHash =
+            new LinkedHashMap<Sha1Wrapper, RowOrder>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Sha1Wrapper, RowOrder> eldest) {
+                    return size() > ExecutionEngine.EE_PLAN_CACHE_SIZE;
+                }
+            };
+
+    // The order of the input of each staged dependency
+    private final Map<Integer, RowOrder> m_orders;
+    // The staged table of each RECEIVE dependency, once there is one
+    private final Map<Integer, VoltTable> m_unions = new HashMap<>();
+    // The number of partition tables merged into each run of each MERGERECEIVE dependency
+    private final Map<Integer, List<Integer>> m_runSizes = new HashMap<>();
+
+    MpDependencyStager(Map<Integer, RowOrder> orders) {
+        m_orders = orders;
+    }
+
+    /**
+     * Set up the staging of the input dependencies of a coordinator task.
+     * Every fragment with a single input dependency is looked at.
+     */
+    static MpDependencyStager forCoordinatorTask(FragmentTaskMessage task) {
+        Map<Integer, RowOrder> orders = new HashMap<>();
+        if (task != null && ! task.isSysProcTask()) {
+            for (int i = 0; i < task.getFragmentCount(); i++) {
+                List<Integer> inputDepIds = task.getInputDepIds(i);
+                if (inputDepIds == null || inputDepIds.size() != 1) {
+                    continue;
+                }
+                RowOrder order = orderForPlan(task.getPlanHash(i), task.getFragmentPlan(i));
+                if (order != null) {
+                    orders.put(inputDepIds.get(0), order);
+                }
+            }
+        }
+        return new MpDependencyStager(orders);
+    }
+
+    private static RowOrder orderForPlan(byte[] planHash, byte[] plan) {
+        if (planHash == null) {
+            return null;
+        }
+        Sha1Wrapper key = new Sha1Wrapper(planHash);
+        RowOrder order;
+        synchronized (s_ordersByPlanHash) {
+            order = s_ordersByPlanHash.get(key);
+        }
+        if (order == null) {
+            // Ad hoc plans come with the task, the others are in the repository
+            if (plan == null) {
+                plan = ActivePlanRepository.planForPlanHash(planHash);
+                if (plan == null) {
+                    return null;
+                }
+            }
+            order = NOT_STAGED;
+            try {
+                PlanNodeTree tree = new PlanNodeTree();
+                tree.loadFromJSONPlan(new JSONObject(new String(plan, Constants.UTF8ENCODING)),
+                                      VoltDB.instance().getCatalogContext().database);
+                RowOrder planOrder = orderForPlan(tree.getRootPlanNode());
+                if (planOrder != null) {
+                    order = planOrder;
+                }
+            }
+            catch (Exception e) {
+                // The input of a plan that can't be read here is left as it comes
+            }
+            synchronized (s_ordersByPlanHash) {
+                s_ordersByPlanHash.put(key, order);
+            }
+        }
+        return order == NOT_STAGED ? null : order;
+    }
+
+    /**
+     * @return the order in which the receive node of a coordinator fragment takes its input,
+     * or null if the input can't be staged
+     */
+    static RowOrder orderForPlan(AbstractPlanNode root) {
+        List<AbstractPlanNode> receives = root.findAllNodesOfClass(AbstractReceivePlanNode.class);
+        if (receives.size() != 1) {
+            return null;
+        }
+        AbstractPlanNode receive = receives.get(0);
+        if (receive instanceof ReceivePlanNode) {
+            return ANY_ORDER;
+        }
+        OrderByPlanNode orderBy = (OrderByPlanNode) receive.getInlinePlanNode(PlanNodeType.ORDERBY);
+        if (orderBy == null) {
+            return null;
+        }
+        List<AbstractExpression> sortExprs = orderBy.getSortExpressions();
+        List<SortDirectionType> sortDirs = orderBy.getSortDirections();
+        int[] columns = new int[sortExprs.size()];
+        VoltType[] types = new VoltType[sortExprs.size()];
+        boolean[] descending = new boolean[sortExprs.size()];
+        for (int ii = 0; ii < sortExprs.size(); ii++) {
+            AbstractExpression sortExpr = sortExprs.get(ii);
+            if ( ! (sortExpr instanceof TupleValueExpression)) {
+                return null;
+            }
+            VoltType type = sortExpr.getValueType();
+            if (type == null || ! type.isBackendIntegerType()) {
+                return null;
+            }
+            columns[ii] = ((TupleValueExpression) sortExpr).getColumnIndex();
+            if (columns[ii] < 0) {
+                return null;
+            }
+            types[ii] = type;
+            descending[ii] = sortDirs.get(ii) == SortDirectionType.DESC;
+        }
+        return new RowOrder(columns, types, descending);
+    }
+
+    /**
+     * Add a partition's table to the tables of its dependency, staging it if it can be.
+     *
+     * @param depId The dependency the table belongs to.
+     * @param table The table of the partition.
+     * @param tables The tables collected for the dependency so far.
+     * @param last true if no other partition's table is expected for the dependency.
+     */
+    void stage(int depId, VoltTable table, List<VoltTable> tables, boolean last) {
+        RowOrder order = m_orders.get(depId);
+        if (order != null && ! order.fits(table)) {
+            m_orders.remove(depId);
+            order = null;
+        }
+        if (order == null || last) {
+            tables.add(table);
+            return;
+        }
+
+        if (order.isAnyOrder()) {
+            VoltTable staged = m_unions.get(depId);
+            if (staged == null) {
+                if (tables.isEmpty()) {
+                    // Nothing to append to yet, don't copy the first table on its own
+                    tables.add(table);
+                    return;
+                }
+                assert(tables.size() == 1);
+                staged = new VoltTable(tables.get(0).getTableSchema());
+                PrivateVoltTableFactory.appendRows(staged, tables.get(0));
+                tables.set(0, staged);
+                m_unions.put(depId, staged);
+            }
+            if ( ! PrivateVoltTableFactory.appendRows(staged, table)) {
+                // A table with other column types is handed over on its own
+                m_orders.remove(depId);
+                tables.add(table);
+            }
+            return;
+        }
+
+        // Merge the runs like a binary counter, so that every row is copied
+        // about log2(partitions) times in all and no more than that.
+        List<Integer> runSizes = m_runSizes.get(depId);
+        if (runSizes == null) {
+            runSizes = new ArrayList<>();
+            m_runSizes.put(depId, runSizes);
+        }
+        assert(runSizes.size() == tables.size());
+        tables.add(table);
+        runSizes.add(1);
+        int runs = tables.size();
+        while (runs >= 2 && runSizes.get(runs - 1).equals(runSizes.get(runs - 2))) {
+            VoltTable merged = merge(tables.get(runs - 2), tables.remove(runs - 1), order);
+            tables.set(runs - 2, merged);
+            runSizes.set(runs - 2, runSizes.remove(runs - 1) * 2);
+            runs--;
+        }
+    }
+
+    private static VoltTable merge(VoltTable lhs, VoltTable rhs, RowOrder order) {
+        VoltTable merged = new VoltTable(lhs.getTableSchema());
+        lhs.resetRowPosition();
+        rhs.resetRowPosition();
+        boolean moreLhs = lhs.advanceRow();
+        boolean moreRhs = rhs.advanceRow();
+        while (moreLhs || moreRhs) {
+            if (moreLhs && ( ! moreRhs || order.compare(lhs, rhs) <= 0)) {
+                merged.add(lhs);
+                moreLhs = lhs.advanceRow();
+            }
+            else {
+                merged.add(rhs);
+                moreRhs = rhs.advanceRow();
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,193 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.LatencyHistogramStats;
+
+/** Source of @Statistics MPWAIT, which shows how long the multi-partition initiator
+ * waits on the fragment responses of each batch of distributed work, and which
+ * partitions keep it waiting.
+ *
+ * Every batch sent to the partitions records three things: the time from sending the
+ * fragments to the first response (FIRST_RESPONSE), the time from the first response to
+ * the last one (STRAGGLER_WAIT), and for every partition, how long after the first response
+ * its own response arrived (PARTITION_LAG). The coordinator fragment can't run until the
+ * last response is in, so STRAGGLER_WAIT is the part of MP latency owed to the slowest
+ * partition. SLOWEST counts the batches in which a partition answered last.
+ *
+ * Rows for the whole host have a PARTITION_ID of -1. All times are in microseconds.
+ * Interval requests report the batches completed since the last interval request.
+ */
+public class MpFragmentWaitStats extends StatsSource {
+
+    public enum Wait {
+        FIRST_RESPONSE,
+        STRAGGLER_WAIT,
+        PARTITION_LAG
+    }
+
+    private static class PartitionWait {
+        final AbstractHistogram m_lag = LatencyHistogramStats.constructHistogram(true);
+        final AtomicLong m_slowest = new AtomicLong();
+    }
+
+    private static final AbstractHistogram s_firstResponse = LatencyHistogramStats.constructHistogram(true);
+    private static final AbstractHistogram s_stragglerWait = LatencyHistogramStats.constructHistogram(true);
+    private static final ConcurrentMap<Integer, PartitionWait> s_partitions =
+            new ConcurrentHashMap<Integer, PartitionWait>();
+
+    /**
+     * Record the responses to one batch of distributed fragments.
+     * @param sentNanos System.nanoTime() when the fragments were sent
+     * @param arrivalNanos System.nanoTime() when each partition's response arrived, by partition id
+     */
+    public static void record(long sentNanos, Map<Integer, Long> arrivalNanos) {
+        if (arrivalNanos.isEmpty()) {
+            return;
+        }
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        int slowest = -1;
+        for (Map.Entry<Integer, Long> e : arrivalNanos.entrySet()) {
+            final long arrival = e.getValue();
+            first = Math.min(first, arrival);
+            if (arrival > last) {
+                last = arrival;
+                slowest = e.getKey();
+            }
+        }
+        recordValue(s_firstResponse, first - sentNanos);
+        recordValue(s_stragglerWait, last - first);
+        for (Map.Entry<Integer, Long> e : arrivalNanos.entrySet()) {
+            PartitionWait wait = s_partitions.get(e.getKey());
+            if (wait == null) {
+                s_partitions.putIfAbsent(e.getKey(), new PartitionWait());
+                wait = s_partitions.get(e.getKey());
+            }
+            recordValue(wait.m_lag, e.getValue() - first);
+            if (e.getKey() == slowest) {
+                wait.m_slowest.incrementAndGet();
+            }
+        }
+    }
+
+    private static void recordValue(AbstractHistogram histogram, long nanos) {
+        histogram.recordValue(Math.min(Math.max(0, nanos) / 1000, histogram.getHighestTrackableValue()));
+    }
+
+    // Snapshot of every row as of the last interval request
+    private Map<Object, Row> m_lastInterval = null;
+
+    public MpFragmentWaitStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("WAIT",         VoltType.STRING));
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("COUNT",        VoltType.BIGINT));
+        columns.add(new ColumnInfo("SLOWEST",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("MEAN",         VoltType.FLOAT));   // microseconds
+        columns.add(new ColumnInfo("P50",          VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P95",          VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99",          VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99.9",        VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("MAX",          VoltType.BIGINT));  // microseconds
+    }
+
+    private static class Row {
+        final Wait m_wait;
+        final int m_partitionId;
+        final AbstractHistogram m_histogram;
+        final long m_slowest;
+
+        Row(Wait wait, int partitionId, AbstractHistogram histogram, long slowest) {
+            m_wait = wait;
+            m_partitionId = partitionId;
+            m_histogram = histogram;
+            m_slowest = slowest;
+        }
+
+        Object key() {
+            return m_wait == Wait.PARTITION_LAG ? m_partitionId : m_wait;
+        }
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Row row = (Row)rowKey;
+        final AbstractHistogram h = row.m_histogram;
+        rowValues[columnNameToIndex.get("WAIT")]         = row.m_wait.name();
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = row.m_partitionId;
+        rowValues[columnNameToIndex.get("COUNT")]        = h.getTotalCount();
+        rowValues[columnNameToIndex.get("SLOWEST")]      = row.m_slowest;
+        rowValues[columnNameToIndex.get("MEAN")]         = h.getTotalCount() > 0 ? h.getMean() : 0.0;
+        rowValues[columnNameToIndex.get("P50")]          = h.getValueAtPercentile(50D);
+        rowValues[columnNameToIndex.get("P95")]          = h.getValueAtPercentile(95D);
+        rowValues[columnNameToIndex.get("P99")]          = h.getValueAtPercentile(99D);
+        rowValues[columnNameToIndex.get("P99.9")]        = h.getValueAtPercentile(99.9D);
+        rowValues[columnNameToIndex.get("MAX")]          = h.getMaxValue();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected synchronized Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final ArrayList<Row> current = new ArrayList<Row>();
+        current.add(new Row(Wait.FIRST_RESPONSE, -1, s_firstResponse.copy(), 0));
+        current.add(new Row(Wait.STRAGGLER_WAIT, -1, s_stragglerWait.copy(), 0));
+        for (Map.Entry<Integer, PartitionWait> e : new TreeMap<Integer, PartitionWait>(s_partitions).entrySet()) {
+            current.add(new Row(Wait.PARTITION_LAG, e.getKey(),
+                                e.getValue().m_lag.copy(), e.getValue().m_slowest.get()));
+        }
+
+        ArrayList<Object> rows = new ArrayList<Object>(current.size());
+        for (Row row : current) {
+            final Row last = (interval && m_lastInterval != null) ? m_lastInterval.get(row.key()) : null;
+            if (last == null) {
+                rows.add(row);
+            }
+            else {
+                AbstractHistogram h = row.m_histogram.copy();
+                h.subtract(last.m_histogram);
+                rows.add(new Row(row.m_wait, row.m_partitionId, h, row.m_slowest - last.m_slowest));
+            }
+        }
+        if (interval) {
+            m_lastInterval = new HashMap<Object, Row>();
+            for (Row row : current) {
+                m_lastInterval.put(row.key(), row);
+            }
+        }
+        return rows.iterator();
+    }
+}
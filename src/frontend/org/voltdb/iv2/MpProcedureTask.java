@@ -22,12 +22,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.voltcore.logging.Level;
 import org.voltcore.messaging.Mailbox;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.InvocationDispatcher;
 import org.voltdb.SiteProcedureConnection;
 import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
@@ -38,7 +40,9 @@ import org.voltdb.rejoin.TaskLog;
 import org.voltdb.utils.LogKeys;
 import org.voltdb.utils.VoltTrace;
 
+import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.Maps;
+import com.google_voltpatches.common.primitives.Ints;
 
 /**
  * Implements the Multi-partition procedure ProcedureTask.
@@ -57,6 +61,11 @@ public class MpProcedureTask extends ProcedureTask
     final private AtomicReference<Map<Integer, Long>> m_restartMastersMap = new AtomicReference<Map<Integer, Long>>();
     boolean m_isRestart = false;
     final Iv2InitiateTaskMessage m_msg;
+    // The partitions of a read that doesn't involve all of them, null otherwise
+    private Set<Integer> m_involvedPartitions = null;
+    // All of the masters, for a read whose partitions change when its keys are re-hashed
+    private List<Long> m_allMasters = null;
+    private Map<Integer, Long> m_allPartitionMasters = null;
 
     MpProcedureTask(Mailbox mailbox, String procName, TransactionTaskQueue queue,
                   Iv2InitiateTaskMessage msg, List<Long> pInitiators, Map<Integer, Long> partitionMasters,
@@ -73,6 +82,61 @@ public class MpProcedureTask extends ProcedureTask
         m_restartMastersMap.set(new HashMap<Integer, Long>());
     }
 
+    /**
+     * A read that only involves some of the partitions. Its fragments only go to
+     * the masters of those partitions, also after the masters change.
+     */
+    MpProcedureTask(Mailbox mailbox, String procName, TransactionTaskQueue queue,
+                  Iv2InitiateTaskMessage msg, Map<Integer, Long> involvedPartitionMasters,
+                  List<Long> allMasters, Map<Integer, Long> allPartitionMasters,
+                  long buddyHSId, boolean isRestart)
+    {
+        this(mailbox, procName, queue, msg, new ArrayList<Long>(involvedPartitionMasters.values()),
+             involvedPartitionMasters, buddyHSId, isRestart);
+        assert(msg.isReadOnly());
+        m_involvedPartitions = ImmutableSet.copyOf(involvedPartitionMasters.keySet());
+        m_allMasters = new ArrayList<Long>(allMasters);
+        m_allPartitionMasters = new HashMap<Integer, Long>(allPartitionMasters);
+    }
+
+    /**
+     * The keys of a read that only involves some of the partitions were hashed when it was
+     * dispatched. Hash them again with the current hashinator, and send the read to the
+     * partitions they hash to now, so that it doesn't miss rows that moved in between.
+     * Called by the queue when the read starts, after every earlier write, including
+     * any that changed the hashinator, has completed.
+     */
+    void rehashInvolvedPartitions()
+    {
+        if (m_involvedPartitions == null) {
+            return;
+        }
+        final byte[][] keys = InvocationDispatcher.getAdHocKeys(m_msg.getStoredProcedureInvocation());
+        final Set<Integer> partitions = keys == null ? null :
+            ImmutableSet.copyOf(Ints.asList(InvocationDispatcher.getPartitionsForAdHocKeys(keys)));
+        if (m_involvedPartitions.equals(partitions)) {
+            return;
+        }
+        if (partitions == null || !m_allPartitionMasters.keySet().containsAll(partitions)) {
+            // A partition unknown to this MPI can't be left to the others, read all of them
+            m_involvedPartitions = null;
+        }
+        else {
+            m_involvedPartitions = partitions;
+        }
+        updateMasters(m_allMasters, m_allPartitionMasters);
+    }
+
+    private Map<Integer, Long> involvedMasters(Map<Integer, Long> partitionMasters)
+    {
+        if (m_involvedPartitions == null) {
+            return partitionMasters;
+        }
+        Map<Integer, Long> involved = new HashMap<Integer, Long>(partitionMasters);
+        involved.keySet().retainAll(m_involvedPartitions);
+        return involved;
+    }
+
     /**
      * Update the list of partition masters in the event of a failure/promotion.
      * Currently only thread-"safe" by virtue of only calling this on
@@ -80,6 +144,12 @@ public class MpProcedureTask extends ProcedureTask
      */
     public void updateMasters(List<Long> masters, Map<Integer, Long> partitionMasters)
     {
+        if (m_involvedPartitions != null) {
+            m_allMasters = new ArrayList<Long>(masters);
+            m_allPartitionMasters = new HashMap<Integer, Long>(partitionMasters);
+            partitionMasters = involvedMasters(partitionMasters);
+            masters = new ArrayList<Long>(partitionMasters.values());
+        }
         m_initiatorHSIds.clear();
         m_initiatorHSIds.addAll(masters);
         ((MpTransactionState)getTransactionState()).updateMasters(masters, partitionMasters);
@@ -93,6 +163,7 @@ public class MpProcedureTask extends ProcedureTask
      */
     public void doRestart(List<Long> masters, Map<Integer, Long> partitionMasters)
     {
+        // All of the masters are kept, updateMasters() picks the involved ones at restart
         List<Long> copy = new ArrayList<Long>(masters);
         m_restartMasters.set(copy);
 
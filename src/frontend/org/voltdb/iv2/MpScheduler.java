@@ -306,14 +306,7 @@ public class MpScheduler extends Scheduler
 
         int[] nPartitionIds = message.getNParitionIds();
         if (nPartitionIds != null) {
-            HashMap<Integer, Long> involvedPartitionMasters = new HashMap<>();
-            for (int partitionId : nPartitionIds) {
-                involvedPartitionMasters.put(partitionId, m_partitionMasters.get(partitionId));
-            }
-
-            task = instantiateNpProcedureTask(m_mailbox, procedureName,
-                    m_pendingTasks, mp, involvedPartitionMasters,
-                    m_buddyHSIds.get(m_nextBuddy), false);
+            task = createNpProcedureTask(procedureName, mp, nPartitionIds, false);
         }
 
 
@@ -328,6 +321,35 @@ public class MpScheduler extends Scheduler
         m_pendingTasks.offer(task);
     }
 
+    /**
+     * Create the task of a transaction that only involves the given partitions.
+     * An ad hoc read that an IN list confines to some of the partitions needs no
+     * n-partition locking, it only has to leave the other partitions out of its fan-out.
+     * @return null if the transaction has to run on all partitions
+     */
+    private MpProcedureTask createNpProcedureTask(String procedureName, Iv2InitiateTaskMessage mp,
+                                                  int[] nPartitionIds, boolean isRestart)
+    {
+        HashMap<Integer, Long> involvedPartitionMasters = new HashMap<>();
+        for (int partitionId : nPartitionIds) {
+            involvedPartitionMasters.put(partitionId, m_partitionMasters.get(partitionId));
+        }
+
+        if (mp.isReadOnly() && "@AdHoc_RO_MP".equals(procedureName)) {
+            // A partition unknown to this MPI can't be left to the others, play it safe.
+            if (involvedPartitionMasters.containsValue(null)) {
+                return null;
+            }
+            return new MpProcedureTask(m_mailbox, procedureName,
+                    m_pendingTasks, mp, involvedPartitionMasters,
+                    m_iv2Masters, m_partitionMasters,
+                    m_buddyHSIds.get(m_nextBuddy), isRestart);
+        }
+        return instantiateNpProcedureTask(m_mailbox, procedureName,
+                m_pendingTasks, mp, involvedPartitionMasters,
+                m_buddyHSIds.get(m_nextBuddy), isRestart);
+    }
+
     /**
      * Hacky way to only run @BalancePartitions as n-partition transactions for now.
      * @return true if it's an n-partition transaction
@@ -405,6 +427,12 @@ public class MpScheduler extends Scheduler
             // if cannot figure out the involved partitions, run it as an MP txn
         }
 
+        // A read confined to some partitions by an IN list stays confined to them
+        int[] nPartitionIds = message.getNParitionIds();
+        if (task == null && nPartitionIds != null && "@AdHoc_RO_MP".equals(procedureName)) {
+            task = createNpProcedureTask(procedureName, mp, nPartitionIds, true);
+        }
+
         if (task == null) {
             task = new MpProcedureTask(m_mailbox, procedureName,
                     m_pendingTasks, mp, m_iv2Masters, m_partitionMasters,
@@ -68,10 +68,14 @@ public class MpTransactionState extends TransactionState
     Map<Integer, Set<Long>> m_remoteDeps;
     Map<Integer, List<VoltTable>> m_remoteDepTables =
         new HashMap<Integer, List<VoltTable>>();
+    // Stages the remote dependency tables for the coordinator fragment as they arrive
+    MpDependencyStager m_remoteDepStager;
     final List<Long> m_useHSIds = new ArrayList<Long>();
     final Map<Integer, Long> m_masterHSIds = Maps.newHashMap();
     long m_buddyHSId;
     FragmentTaskMessage m_remoteWork = null;
+    // When m_remoteWork was sent, for MpFragmentWaitStats
+    long m_remoteWorkSentNanos = 0;
     FragmentTaskMessage m_localWork = null;
     boolean m_haveDistributedInitTask = false;
     boolean m_isRestart = false;
@@ -180,6 +184,7 @@ public class MpTransactionState extends TransactionState
                 }
             }
             // send to all non-local sites
+            m_remoteWorkSentNanos = System.nanoTime();
             if (non_local_hsids.length > 0) {
                 m_mbox.send(non_local_hsids, m_remoteWork);
             }
@@ -245,10 +250,13 @@ public class MpTransactionState extends TransactionState
             // Create some record of expected dependencies for tracking
             m_remoteDeps = createTrackedDependenciesFromTask(m_remoteWork,
                                                              m_useHSIds);
+            m_remoteDepStager = MpDependencyStager.forCoordinatorTask(m_localWork);
             // if there are remote deps, block on them
             // FragmentResponses indicating failure will throw an exception
             // which will propagate out of handleReceivedFragResponse and
             // cause ProcedureRunner to do the right thing and cause rollback.
+            // Note when each site answered to see how long the slowest one holds up the batch.
+            final Map<Long, Long> arrivalNanos = new HashMap<Long, Long>();
             while (!checkDoneReceivingFragResponses()) {
                 FragmentResponseMessage msg = pollForResponses();
                 if (traceLog != null) {
@@ -261,8 +269,14 @@ public class MpTransactionState extends TransactionState
                 if (expectedMsg) {
                     // Will roll-back and throw if this message has an exception
                     checkForException(msg);
+                    if (!arrivalNanos.containsKey(msg.getExecutorSiteId())) {
+                        arrivalNanos.put(msg.getExecutorSiteId(), System.nanoTime());
+                    }
                 }
             }
+            if (!usedNullFragment) {
+                recordFragmentWait(arrivalNanos);
+            }
         }
         // satisified. Clear this defensively. Procedure runner is sloppy with
         // cleaning up if it decides new work is necessary that is local-only.
@@ -331,6 +345,18 @@ public class MpTransactionState extends TransactionState
         return results;
     }
 
+    private void recordFragmentWait(Map<Long, Long> arrivalNanosBySite)
+    {
+        Map<Integer, Long> arrivalNanos = new HashMap<Integer, Long>();
+        for (Entry<Integer, Long> e : m_masterHSIds.entrySet()) {
+            Long arrival = arrivalNanosBySite.get(e.getValue());
+            if (arrival != null) {
+                arrivalNanos.put(e.getKey(), arrival);
+            }
+        }
+        MpFragmentWaitStats.record(m_remoteWorkSentNanos, arrivalNanos);
+    }
+
     private FragmentResponseMessage pollForResponses()
     {
         FragmentResponseMessage msg = null;
@@ -402,7 +428,7 @@ public class MpTransactionState extends TransactionState
             }
             // null dependency table is from a joining node, has no content, drop it
             if (table.getStatusCode() != VoltTableUtil.NULL_DEPENDENCY_STATUS) {
-                tables.add(table);
+                m_remoteDepStager.stage(depId, table, tables, localRemotes.isEmpty());
             }
         }
         else {
@@ -199,6 +199,10 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
                 {
                     task = m_backlog.pollFirst();
                     assert(task.getTransactionState().isReadOnly());
+                    if (task instanceof MpProcedureTask) {
+                        // The writes before it are done, the hashinator can't change under it
+                        ((MpProcedureTask)task).rehashInvolvedPartitions();
+                    }
                     m_currentReads.put(task.getTxnId(), task);
                     taskQueueOffer(task);
                     retval = true;
@@ -1341,7 +1341,8 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                             tupleAllocatedMem,
                                             indexMem,
                                             stringMem,
-                                            m_ee.getThreadLocalPoolAllocations());
+                                            m_ee.getThreadLocalPoolAllocations(),
+                                            m_ee.getTempBlockPoolStats());
             }
         }
     }
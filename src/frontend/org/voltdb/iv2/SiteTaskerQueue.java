@@ -17,16 +17,56 @@
 
 package org.voltdb.iv2;
 
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import org.jctools_voltpatches.queues.MessagePassingQueue;
+import org.jctools_voltpatches.queues.MpscChunkedArrayQueue;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.QueueDepthTracker;
 import org.voltdb.StarvationTracker;
+import org.voltdb.VoltDB;
 
-/** SiteTaskerScheduler orders SiteTaskers for execution. */
+/**
+ * SiteTaskerScheduler orders SiteTaskers for execution.
+ *
+ * Any number of threads may offer, but take, poll and peek must only be called by the
+ * single thread that runs the site. Tasks are handed off through a pre-allocated multi
+ * producer single consumer ring, so offering does not allocate once the ring has grown
+ * to the working set. The site drains the ring in batches into a private array and runs
+ * tasks from there, touching the shared indices once per batch instead of once per task.
+ * Threads other than the site that need to know how long the head of the queue has been
+ * waiting use {@link #getHeadOfferTime()}.
+ */
 public class SiteTaskerQueue
 {
-    private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    // Ring starts with this many slots and grows, without copying, as far as it ever needs to
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    // Most tasks the site pulls from the ring per batch
+    static final int DRAIN_BATCH_SIZE = 64;
+
+    private final MpscChunkedArrayQueue<SiteTasker> m_tasks =
+            new MpscChunkedArrayQueue<SiteTasker>(INITIAL_CAPACITY, MAX_CAPACITY, false);
+
+    // Consumer private batch, m_batch[m_batchHead, m_batchTail) hold tasks not yet handed out
+    private final SiteTasker m_batch[] = new SiteTasker[DRAIN_BATCH_SIZE];
+    private int m_batchHead = 0;
+    private int m_batchTail = 0;
+    private final MessagePassingQueue.Consumer<SiteTasker> m_batchFiller =
+            new MessagePassingQueue.Consumer<SiteTasker>() {
+                @Override
+                public void accept(SiteTasker task) {
+                    m_batch[m_batchTail++] = task;
+                }
+            };
+
+    // Site thread parked in take(), producers unpark it after offering
+    private volatile Thread m_waiter = null;
+
+    // Offer time of the oldest task not yet handed to the site, 0 when there is none
+    private final AtomicLong m_headOfferTime = new AtomicLong(0);
+
     private StarvationTracker m_starvationTracker;
     private QueueDepthTracker m_queueDepthTracker;
     private int m_partitionId;
@@ -42,18 +82,41 @@ public class SiteTaskerQueue
     public boolean offer(SiteTasker task)
     {
         task.setQueueOfferTime();
+        final long offerTime = task.getQueueOfferTime();
         // update tracker before enqueue the task
         // prevent another thread from polling a task and decrementing
         // the queue depth before it is incremented
         // i.e. avoid queueDepth < 0
         m_queueDepthTracker.offerUpdate();
-        return m_tasks.offer(task);
+        if (!m_tasks.offer(task)) {
+            // Callers don't expect a site queue to reject work
+            VoltDB.crashLocalVoltDB("Site task queue for partition " + m_partitionId +
+                    " exceeded " + MAX_CAPACITY + " tasks", true, null);
+            return false;
+        }
+        offerHeadOfferTime(offerTime);
+        final Thread waiter = m_waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return true;
+    }
+
+    /*
+     * Producer side of the head offer time, run after the task is in the ring. Only wins if the
+     * site had nothing waiting, see publishHeadOfferTime. The site may already have taken the
+     * task by then, in which case the time is stale until the site next finds the ring empty
+     * and clears it in nextTask.
+     */
+    void offerHeadOfferTime(long offerTime)
+    {
+        m_headOfferTime.compareAndSet(0, offerTime);
     }
 
     // Block on the site tasker queue.
     public SiteTasker take() throws InterruptedException
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task = nextTask();
 
         if (task == null) {
             m_starvationTracker.beginStarvation();
@@ -62,7 +125,7 @@ public class SiteTaskerQueue
             return task;
         }
         try {
-            task = CoreUtils.queueSpinTake(m_tasks);
+            task = spinTake();
             // task is never null
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
             return task;
@@ -71,24 +134,112 @@ public class SiteTaskerQueue
         }
     }
 
+    /*
+     * Spin for QUEUE_SPIN_MICROS like CoreUtils.queueSpinTake and then park until a producer
+     * unparks us. m_waiter is published before re-checking the ring and producers read it after
+     * their offer, so either the re-check sees the task or the producer sees the waiter.
+     */
+    private SiteTasker spinTake() throws InterruptedException
+    {
+        SiteTasker task;
+        if (CoreUtils.QUEUE_SPIN_MICROSECONDS > 0) {
+            final long start = System.nanoTime();
+            do {
+                if ((task = nextTask()) != null) {
+                    return task;
+                }
+            } while (System.nanoTime() - start <= CoreUtils.QUEUE_SPIN_MICROSECONDS);
+        }
+        m_waiter = Thread.currentThread();
+        try {
+            while ((task = nextTask()) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return task;
+        } finally {
+            m_waiter = null;
+        }
+    }
+
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task = nextTask();
         if (task != null) {
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
         }
         return task;
     }
 
-    // Non-blocking peek on the site tasker queue.
+    // Non-blocking peek on the site tasker queue. Only the site thread may peek.
     public SiteTasker peek()
     {
-        return m_tasks.peek();
+        if (m_batchHead == m_batchTail) {
+            drainBatch();
+        }
+        return m_batchHead == m_batchTail ? null : m_batch[m_batchHead];
     }
 
     public boolean isEmpty() {
-        return m_tasks.isEmpty();
+        return m_batchHead == m_batchTail && m_tasks.isEmpty();
+    }
+
+    public int size() {
+        return (m_batchTail - m_batchHead) + m_tasks.size();
+    }
+
+    /**
+     * @return the time in nanoseconds the oldest waiting task was offered, or 0 if nothing is
+     * waiting. Safe to call from any thread.
+     */
+    public long getHeadOfferTime() {
+        return m_headOfferTime.get();
+    }
+
+    private SiteTasker nextTask()
+    {
+        if (m_batchHead == m_batchTail) {
+            if (drainBatch() == 0) {
+                // Nothing waits, drop an offer time a producer published after we took its task
+                if (m_headOfferTime.get() != 0) {
+                    m_headOfferTime.set(0);
+                }
+                return null;
+            }
+        }
+        final SiteTasker task = m_batch[m_batchHead];
+        m_batch[m_batchHead++] = null;
+        publishHeadOfferTime();
+        return task;
+    }
+
+    private int drainBatch()
+    {
+        m_batchHead = 0;
+        m_batchTail = 0;
+        return m_tasks.drain(m_batchFiller, DRAIN_BATCH_SIZE);
+    }
+
+    /*
+     * After handing out a task, advertise the offer time of the task behind it. If there isn't
+     * one yet, reset to 0 and look again so a producer racing with us either shows up in the
+     * second look or finds 0 and installs its own offer time.
+     */
+    private void publishHeadOfferTime()
+    {
+        SiteTasker next = peek();
+        if (next != null) {
+            m_headOfferTime.set(next.getQueueOfferTime());
+            return;
+        }
+        m_headOfferTime.set(0);
+        next = peek();
+        if (next != null) {
+            m_headOfferTime.compareAndSet(0, next.getQueueOfferTime());
+        }
     }
 
     public void setStarvationTracker(StarvationTracker tracker) {
@@ -96,7 +247,7 @@ public class SiteTaskerQueue
     }
 
     public QueueDepthTracker setupQueueDepthTracker(long siteId) {
-        m_queueDepthTracker = new QueueDepthTracker(siteId, m_tasks);
+        m_queueDepthTracker = new QueueDepthTracker(siteId, this);
         return m_queueDepthTracker;
     }
 }
@@ -29,6 +29,7 @@ import org.voltdb.SiteProcedureConnection;
 import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.BatchTimeoutOverrideType;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.rejoin.TaskLog;
@@ -57,6 +58,12 @@ public class SpProcedureTask extends ProcedureTask
        super(initiator, procName, new SpTransactionState(msg), queue);
     }
 
+    /** Stage latency stamps if this transaction is sampled, otherwise null */
+    long[] getStageTimes() {
+        final Iv2InitiateTaskMessage msg = ((SpTransactionState)m_txnState).m_initiationMsg;
+        return msg == null ? null : msg.getStageTimes();
+    }
+
     @Override
     protected void durabilityTraceEnd() {
         final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
@@ -89,6 +96,11 @@ public class SpProcedureTask extends ProcedureTask
 
         // cast up here .. ugly.
         SpTransactionState txnState = (SpTransactionState)m_txnState;
+        final long stageTimes[] = getStageTimes();
+        if (stageTimes != null) {
+            stageTimes[StageLatencyStats.Point.SITE_QUEUE.ordinal()] = getQueueOfferTime();
+            StageLatencyStats.stamp(stageTimes, StageLatencyStats.Point.EXECUTE);
+        }
 
         InitiateResponseMessage response;
         int originalTimeout = siteConnection.getBatchTimeout();
@@ -111,6 +123,7 @@ public class SpProcedureTask extends ProcedureTask
         }
         completeInitiateTask(siteConnection);
         response.m_sourceHSId = m_initiator.getHSId();
+        StageLatencyStats.stamp(stageTimes, StageLatencyStats.Point.RESPOND);
         m_initiator.deliver(response);
         if (EXEC_TRACE_ENABLED) {
             execLog.l7dlog( Level.TRACE, LogKeys.org_voltdb_ExecutionSite_SendingCompletedWUToDtxn.name(), null);
@@ -48,6 +48,7 @@ import org.voltdb.SystemProcedureCatalog;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.dtxn.TransactionState;
 import org.voltdb.iv2.SiteTasker.SiteTaskerRunnable;
 import org.voltdb.messaging.BorrowTaskMessage;
@@ -428,6 +429,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             throw new RuntimeException("SpScheduler.handleIv2InitiateTaskMessage " +
                     "should never receive multi-partition initiations.");
         }
+        StageLatencyStats.stamp(message.getStageTimes(), StageLatencyStats.Point.SCHEDULE);
 
         final String procedureName = message.getStoredProcedureName();
         long newSpHandle;
@@ -509,6 +511,8 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     message.isForReplay());
 
             msg.setSpHandle(newSpHandle);
+            // Only the local copy carries the stage stamps, replicas would race on them
+            msg.setStageTimes(message.getStageTimes());
             logRepair(msg);
             // Also, if this is a vanilla single-part procedure, make the TXNID
             // be the SpHandle (for now)
@@ -607,6 +611,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         final String procedureName = msg.getStoredProcedureName();
         final SpProcedureTask task =
             new SpProcedureTask(m_mailbox, procedureName, m_pendingTasks, msg);
+        StageLatencyStats.stamp(msg.getStageTimes(), StageLatencyStats.Point.LOG);
         if (!shortcutRead) {
             ListenableFuture<Object> durabilityBackpressureFuture =
                     m_cl.log(msg, msg.getSpHandle(), null, m_durabilityListener, task);
@@ -778,6 +783,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             if (result == DuplicateCounter.DONE) {
                 m_duplicateCounters.remove(dcKey);
                 setRepairLogTruncationHandle(spHandle);
+                // A replica may have answered last, its response doesn't carry the stage stamps
+                if (counter.m_openMessage instanceof Iv2InitiateTaskMessage) {
+                    ((InitiateResponseMessage)counter.getLastResponse()).setStageTimes(
+                            ((Iv2InitiateTaskMessage)counter.m_openMessage).getStageTimes());
+                }
                 m_mailbox.send(counter.m_destinationId, counter.getLastResponse());
             }
             else if (result == DuplicateCounter.MISMATCH) {
@@ -71,12 +71,10 @@ public class TickProducer extends SiteTasker implements Runnable
     {
         m_taskQueue.offer(this);
         // check if previous task is running for more than threshold
-        SiteTasker task = m_taskQueue.peek();
+        // this runs on the scheduler thread, which must not peek the site's queue
         long currentTime = System.nanoTime();
-        long headOfQueueOfferTime;
-        if (task != null) {
-            headOfQueueOfferTime = task.getQueueOfferTime();
-        } else {
+        long headOfQueueOfferTime = m_taskQueue.getHeadOfferTime();
+        if (headOfQueueOfferTime == 0) {
             headOfQueueOfferTime = currentTime;
         }
         if (headOfQueueOfferTime != m_previousTaskTimestamp) {
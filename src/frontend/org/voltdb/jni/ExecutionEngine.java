@@ -723,6 +723,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 
     public abstract long getThreadLocalPoolAllocations();
 
+    /**
+     * Get the counters of the temp table block storage the EE keeps for reuse.
+     * @return blocks requested, requests served by reusing a block, and bytes kept for reuse
+     */
+    public abstract long[] getTempBlockPoolStats();
+
     public abstract byte[] loadTable(
         int tableId, VoltTable table, long txnId, long spHandle,
         long lastCommittedSpHandle, long uniqueId, boolean returnUniqueViolations, boolean shouldDRStream,
@@ -1047,6 +1053,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected static native long nativeGetThreadLocalPoolAllocations();
 
+    /**
+     * Retrieve the thread local counters of temp table block reuse
+     * @return blocks requested, requests served by reusing a block, and bytes kept for reuse
+     */
+    protected static native long[] nativeGetTempBlockPoolStats();
+
     /**
      * @param nextUndoToken The undo token to associate with future work
      * @return true for success false for failure
@@ -131,7 +131,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         GetUSOs(25),
         updateHashinator(27),
         executeTask(28),
-        applyBinaryLog(29);
+        applyBinaryLog(29),
+        GetTempBlockPoolStats(30);
         Commands(final int id) {
             m_id = id;
         }
@@ -1717,6 +1718,30 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    @Override
+    public long[] getTempBlockPoolStats() {
+        m_data.clear();
+        m_data.putInt(Commands.GetTempBlockPoolStats.m_id);
+        try {
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer stats = ByteBuffer.allocate(24);
+            while (stats.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(stats);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            stats.flip();
+            return new long[] { stats.getLong(), stats.getLong(), stats.getLong() };
+        } catch (final Exception e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public byte[] executeTask(TaskType taskType, ByteBuffer task) {
         m_data.clear();
@@ -38,6 +38,7 @@ import org.voltdb.common.Constants;
 import org.voltdb.exceptions.EEException;
 import org.voltdb.exceptions.SerializableException;
 import org.voltdb.iv2.DeterminismHash;
+import org.voltdb.largequery.LargeBlockManager;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.SerializationHelper;
@@ -739,6 +740,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeGetThreadLocalPoolAllocations();
     }
 
+    @Override
+    public long[] getTempBlockPoolStats() {
+        return nativeGetTempBlockPoolStats();
+    }
+
     /*
      * Instead of using the reusable output buffer to get results for the next batch,
      * use this buffer allocated by the EE. This is for one time use.
@@ -749,6 +755,32 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         m_fallbackBuffer = buffer;
     }
 
+    /*
+     * Large temp table blocks the EE evicts from its block cache are kept by the
+     * LargeBlockManager. Returning false makes the EE fail the query.
+     */
+    public boolean storeLargeTempTableBlock(long blockId, ByteBuffer block) {
+        LargeBlockManager manager = LargeBlockManager.getInstance();
+        return manager != null && manager.storeBlock(m_siteId, blockId, block);
+    }
+
+    public boolean loadLargeTempTableBlock(long blockId, ByteBuffer block) {
+        LargeBlockManager manager = LargeBlockManager.getInstance();
+        return manager != null && manager.loadBlock(m_siteId, blockId, block);
+    }
+
+    public boolean releaseLargeTempTableBlock(long blockId) {
+        LargeBlockManager manager = LargeBlockManager.getInstance();
+        return manager != null && manager.releaseBlock(m_siteId, blockId);
+    }
+
+    public void prefetchLargeTempTableBlock(long blockId) {
+        LargeBlockManager manager = LargeBlockManager.getInstance();
+        if (manager != null) {
+            manager.prefetchBlock(m_siteId, blockId);
+        }
+    }
+
     public int callJavaUserDefinedFunction() {
         m_udfBuffer.clear();
         m_udfBuffer.getInt(); // skip the buffer size integer, it is only used by VoltDB IPC.
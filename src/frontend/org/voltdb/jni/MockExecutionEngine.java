@@ -236,6 +236,11 @@ public class MockExecutionEngine extends ExecutionEngine {
         return 0L;
     }
 
+    @Override
+    public long[] getTempBlockPoolStats() {
+        return new long[3];
+    }
+
     @Override
     public byte[] executeTask(TaskType taskType, ByteBuffer task) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,357 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.largequery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.RateLimitedLogger;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Spill store for the blocks of large temp tables that the EE evicts from its
+ * block cache. There is one instance per process, shared by all sites. Each
+ * block is written to its own file in the swap directory, named after the site
+ * that owns it and the EE's id for the block, and deleted again once the EE
+ * loads it back or releases it.
+ *
+ * The EE tells us which block its iterators will want next, so the file can be
+ * read on a background thread while the current block is being scanned.
+ *
+ * The swap directory and the disk quota are taken from the LARGE_QUERY_SWAP_PATH
+ * and LARGE_QUERY_SWAP_QUOTA_MB system properties. Stores that would exceed the
+ * quota are refused, which fails the query in the EE instead of filling the disk.
+ */
+public class LargeBlockManager {
+
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    public static final String DEFAULT_SWAP_DIRECTORY = "large_query_swap";
+    static final long DEFAULT_QUOTA_MB = 10 * 1024;
+
+    private static volatile LargeBlockManager s_instance = null;
+
+    private final File m_swapDir;
+    private final long m_quotaBytes;
+
+    // Size in bytes of every block currently on disk
+    private final Map<BlockId, Long> m_storedBlocks = new ConcurrentHashMap<>();
+    // Reads started ahead of time by prefetch, claimed by load
+    private final Map<BlockId, ListenableFuture<ByteBuffer>> m_prefetches = new ConcurrentHashMap<>();
+    private final ListeningExecutorService m_prefetchExecutor =
+            CoreUtils.getCachedSingleThreadExecutor("Large Query Swap Prefetch", 15000);
+
+    private final AtomicLong m_diskBytes = new AtomicLong();
+    private final AtomicLong m_storedBlockCount = new AtomicLong();
+    private final AtomicLong m_storedByteCount = new AtomicLong();
+    private final AtomicLong m_loadedBlockCount = new AtomicLong();
+    private final AtomicLong m_loadedByteCount = new AtomicLong();
+    private final AtomicLong m_prefetchHits = new AtomicLong();
+    private final AtomicLong m_totalLoadNanos = new AtomicLong();
+    private final AtomicLong m_maxLoadNanos = new AtomicLong();
+
+    static final class BlockId {
+        final long m_siteId;
+        final long m_blockId;
+
+        BlockId(long siteId, long blockId) {
+            m_siteId = siteId;
+            m_blockId = blockId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockId)) {
+                return false;
+            }
+            BlockId other = (BlockId)o;
+            return m_siteId == other.m_siteId && m_blockId == other.m_blockId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(m_siteId) * 31 + Long.hashCode(m_blockId);
+        }
+
+        String fileName() {
+            return "ltt_" + CoreUtils.getHostIdFromHSId(m_siteId) + "_" +
+                    CoreUtils.getSiteIdFromHSId(m_siteId) + "_" + m_blockId + ".block";
+        }
+    }
+
+    /**
+     * Create the process wide instance. The swap directory is created if needed
+     * and emptied of blocks left behind by an earlier process.
+     *
+     * @param defaultSwapDir directory to use if LARGE_QUERY_SWAP_PATH is not set
+     */
+    public static synchronized void startup(File defaultSwapDir) throws IOException {
+        String path = System.getProperty("LARGE_QUERY_SWAP_PATH");
+        File swapDir = path != null ? new File(path) : defaultSwapDir;
+        long quotaBytes = Long.getLong("LARGE_QUERY_SWAP_QUOTA_MB", DEFAULT_QUOTA_MB) * 1024 * 1024;
+        startup(swapDir, quotaBytes);
+    }
+
+    static synchronized void startup(File swapDir, long quotaBytes) throws IOException {
+        if (s_instance != null) {
+            s_instance.shutdownInstance();
+        }
+        s_instance = new LargeBlockManager(swapDir, quotaBytes);
+    }
+
+    public static synchronized void shutdown() {
+        if (s_instance != null) {
+            s_instance.shutdownInstance();
+            s_instance = null;
+        }
+    }
+
+    /**
+     * @return the process wide instance, or null if {@link #startup(File)} has
+     * not been called
+     */
+    public static LargeBlockManager getInstance() {
+        return s_instance;
+    }
+
+    private LargeBlockManager(File swapDir, long quotaBytes) throws IOException {
+        m_swapDir = swapDir;
+        m_quotaBytes = quotaBytes;
+        if (!m_swapDir.exists() && !m_swapDir.mkdirs()) {
+            throw new IOException("Unable to create large query swap directory " + m_swapDir);
+        }
+        if (!m_swapDir.isDirectory() || !m_swapDir.canWrite()) {
+            throw new IOException("Large query swap path " + m_swapDir + " is not a writable directory");
+        }
+        deleteBlockFiles();
+    }
+
+    private void shutdownInstance() {
+        m_prefetchExecutor.shutdownNow();
+        try {
+            m_prefetchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+        }
+        m_prefetches.clear();
+        m_storedBlocks.clear();
+        deleteBlockFiles();
+    }
+
+    private void deleteBlockFiles() {
+        File[] files = m_swapDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getName().startsWith("ltt_") && f.getName().endsWith(".block")) {
+                f.delete();
+            }
+        }
+    }
+
+    File getSwapDirectory() {
+        return m_swapDir;
+    }
+
+    private File fileFor(BlockId id) {
+        return new File(m_swapDir, id.fileName());
+    }
+
+    /**
+     * Write the remaining bytes of the buffer out as the given block.
+     *
+     * @return false if the block could not be stored because of the quota or an
+     * IO error
+     */
+    public boolean storeBlock(long siteId, long blockId, ByteBuffer block) {
+        final BlockId id = new BlockId(siteId, blockId);
+        final long size = block.remaining();
+        if (m_diskBytes.addAndGet(size) > m_quotaBytes) {
+            m_diskBytes.addAndGet(-size);
+            RateLimitedLogger.tryLogForMessage(System.currentTimeMillis(), 60, TimeUnit.SECONDS, LOG, Level.WARN,
+                    "Large query swap quota of %d MB is exhausted, queries that need to spill more " +
+                    "data to %s will fail. This message is rate limited to once every 60 seconds.",
+                    m_quotaBytes / (1024 * 1024), m_swapDir);
+            return false;
+        }
+
+        final File file = fileFor(id);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        } catch (IOException e) {
+            m_diskBytes.addAndGet(-size);
+            file.delete();
+            LOG.error("Unable to store large query block to " + file, e);
+            return false;
+        }
+
+        m_storedBlocks.put(id, size);
+        m_storedBlockCount.incrementAndGet();
+        m_storedByteCount.addAndGet(size);
+        return true;
+    }
+
+    /**
+     * Start reading a stored block in the background so a later
+     * {@link #loadBlock(long, long, ByteBuffer)} doesn't wait on the disk.
+     */
+    public void prefetchBlock(long siteId, long blockId) {
+        final BlockId id = new BlockId(siteId, blockId);
+        final Long size = m_storedBlocks.get(id);
+        if (size == null || m_prefetches.containsKey(id)) {
+            return;
+        }
+        final File file = fileFor(id);
+        ListenableFuture<ByteBuffer> future = m_prefetchExecutor.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws Exception {
+                ByteBuffer buffer = ByteBuffer.allocate(size.intValue());
+                readFile(file, buffer);
+                buffer.flip();
+                return buffer;
+            }
+        });
+        m_prefetches.put(id, future);
+    }
+
+    /**
+     * Read a stored block into the buffer and remove it from disk. The buffer
+     * must have exactly as many bytes remaining as were stored.
+     *
+     * @return false if the block is unknown or could not be read
+     */
+    public boolean loadBlock(long siteId, long blockId, ByteBuffer block) {
+        final long start = System.nanoTime();
+        final BlockId id = new BlockId(siteId, blockId);
+        final Long size = m_storedBlocks.get(id);
+        if (size == null || size != block.remaining()) {
+            LOG.error("Request to load unknown large query block " + blockId + " for site " +
+                    CoreUtils.hsIdToString(siteId));
+            return false;
+        }
+
+        boolean loaded = false;
+        ListenableFuture<ByteBuffer> prefetch = m_prefetches.remove(id);
+        if (prefetch != null) {
+            try {
+                block.put(prefetch.get());
+                m_prefetchHits.incrementAndGet();
+                loaded = true;
+            } catch (InterruptedException | ExecutionException e) {
+                // Fall back to reading it here
+                block.clear();
+            }
+        }
+
+        final File file = fileFor(id);
+        if (!loaded) {
+            try {
+                readFile(file, block);
+            } catch (IOException e) {
+                LOG.error("Unable to load large query block from " + file, e);
+                return false;
+            }
+        }
+
+        discard(id, file, size);
+
+        final long elapsed = System.nanoTime() - start;
+        m_loadedBlockCount.incrementAndGet();
+        m_loadedByteCount.addAndGet(size);
+        m_totalLoadNanos.addAndGet(elapsed);
+        long max;
+        while (elapsed > (max = m_maxLoadNanos.get()) && !m_maxLoadNanos.compareAndSet(max, elapsed)) {}
+        return true;
+    }
+
+    /**
+     * Forget a stored block whose table no longer exists.
+     *
+     * @return false if the block is unknown
+     */
+    public boolean releaseBlock(long siteId, long blockId) {
+        final BlockId id = new BlockId(siteId, blockId);
+        final ListenableFuture<ByteBuffer> prefetch = m_prefetches.remove(id);
+        if (prefetch != null) {
+            prefetch.cancel(false);
+        }
+        final Long size = m_storedBlocks.get(id);
+        if (size == null) {
+            return false;
+        }
+        discard(id, fileFor(id), size);
+        return true;
+    }
+
+    private void discard(BlockId id, File file, long size) {
+        m_storedBlocks.remove(id);
+        m_diskBytes.addAndGet(-size);
+        if (!file.delete()) {
+            LOG.warn("Unable to delete large query block file " + file);
+        }
+    }
+
+    private static void readFile(File file, ByteBuffer buffer) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() != buffer.remaining()) {
+                throw new IOException("Large query block file " + file + " has " + channel.size() +
+                        " bytes, expected " + buffer.remaining());
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of large query block file " + file);
+                }
+            }
+        }
+    }
+
+    void populateStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long loads = m_loadedBlockCount.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.STORED_BLOCKS)] = m_storedBlockCount.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.STORED_BYTES)] = m_storedByteCount.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.LOADED_BLOCKS)] = loads;
+        rowValues[columnNameToIndex.get(LargeBlockStats.LOADED_BYTES)] = m_loadedByteCount.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.PREFETCH_HITS)] = m_prefetchHits.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.DISK_BLOCKS)] = (long)m_storedBlocks.size();
+        rowValues[columnNameToIndex.get(LargeBlockStats.DISK_BYTES)] = m_diskBytes.get();
+        rowValues[columnNameToIndex.get(LargeBlockStats.DISK_QUOTA_BYTES)] = m_quotaBytes;
+        rowValues[columnNameToIndex.get(LargeBlockStats.AVG_LOAD_MICROS)] =
+                loads == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(m_totalLoadNanos.get() / loads);
+        rowValues[columnNameToIndex.get(LargeBlockStats.MAX_LOAD_MICROS)] =
+                TimeUnit.NANOSECONDS.toMicros(m_maxLoadNanos.get());
+    }
+}
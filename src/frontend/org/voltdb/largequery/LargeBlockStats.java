@@ -0,0 +1,80 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.largequery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * One row per host describing how much large temp table data the EE has
+ * spilled through the {@link LargeBlockManager} and how long it took to
+ * read it back.
+ */
+public class LargeBlockStats extends StatsSource {
+
+    public static final String STORED_BLOCKS = "STORED_BLOCKS";
+    public static final String STORED_BYTES = "STORED_BYTES";
+    public static final String LOADED_BLOCKS = "LOADED_BLOCKS";
+    public static final String LOADED_BYTES = "LOADED_BYTES";
+    public static final String PREFETCH_HITS = "PREFETCH_HITS";
+    public static final String DISK_BLOCKS = "DISK_BLOCKS";
+    public static final String DISK_BYTES = "DISK_BYTES";
+    public static final String DISK_QUOTA_BYTES = "DISK_QUOTA_BYTES";
+    public static final String AVG_LOAD_MICROS = "AVG_LOAD_MICROS";
+    public static final String MAX_LOAD_MICROS = "MAX_LOAD_MICROS";
+
+    public LargeBlockStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo(STORED_BLOCKS, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(STORED_BYTES, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(LOADED_BLOCKS, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(LOADED_BYTES, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(PREFETCH_HITS, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(DISK_BLOCKS, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(DISK_BYTES, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(DISK_QUOTA_BYTES, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(AVG_LOAD_MICROS, VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(MAX_LOAD_MICROS, VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        ((LargeBlockManager)rowKey).populateStats(columnNameToIndex, rowValues);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        LargeBlockManager manager = LargeBlockManager.getInstance();
+        if (manager == null) {
+            return Collections.emptyIterator();
+        }
+        return Collections.<Object>singletonList(manager).iterator();
+    }
+}
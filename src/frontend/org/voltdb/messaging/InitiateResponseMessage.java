@@ -52,6 +52,8 @@ public class InitiateResponseMessage extends VoltMessage {
     private boolean m_mispartitioned;
     private StoredProcedureInvocation m_invocation;
     private Pair<Long, byte[]> m_currentHashinatorConfig;
+    // not serialized, stage latency stamps of a sampled transaction, see StageLatencyStats
+    private long m_stageTimes[] = null;
 
     /** Empty constructor for de-serialization */
     public InitiateResponseMessage()
@@ -95,6 +97,7 @@ public class InitiateResponseMessage extends VoltMessage {
         m_clientInterfaceHandle = task.getClientInterfaceHandle();
         m_connectionId = task.getConnectionId();
         m_readOnly = task.isReadOnly();
+        m_stageTimes = task.getStageTimes();
     }
 
     /**
@@ -176,6 +179,14 @@ public class InitiateResponseMessage extends VoltMessage {
         return m_mispartitioned;
     }
 
+    public long[] getStageTimes() {
+        return m_stageTimes;
+    }
+
+    public void setStageTimes(long stageTimes[]) {
+        m_stageTimes = stageTimes;
+    }
+
     public StoredProcedureInvocation getInvocation() {
         return m_invocation;
     }
@@ -56,6 +56,8 @@ public class Iv2InitiateTaskMessage extends TransactionInfoBaseMessage {
 
     // not serialized.
     AtomicBoolean m_isDurable;
+    // not serialized, stage latency stamps of a sampled transaction, see StageLatencyStats
+    long m_stageTimes[] = null;
 
     /** Empty constructor for de-serialization */
     Iv2InitiateTaskMessage() {
@@ -142,6 +144,14 @@ public class Iv2InitiateTaskMessage extends TransactionInfoBaseMessage {
         return m_invocation;
     }
 
+    public long[] getStageTimes() {
+        return m_stageTimes;
+    }
+
+    public void setStageTimes(long stageTimes[]) {
+        m_stageTimes = stageTimes;
+    }
+
     public String getStoredProcedureName() {
         assert(m_invocation != null);
         return m_invocation.getProcName();
@@ -38,6 +38,9 @@ public class AccessPath {
     boolean nestLoopIndexJoin = false;
     boolean requiresSendReceive = false;
     boolean keyIterate = false;
+    // Set on the copy of an inner table access path that offers a hash join
+    // (naive path) or a merge join (index path) in place of the nest loop.
+    boolean keyedJoin = false;
     IndexLookupType lookupType = IndexLookupType.EQ;
     SortDirectionType sortDirection = SortDirectionType.INVALID;
     // The initial expression is needed to adjust (forward) the start of the reverse
@@ -77,6 +80,34 @@ public class AccessPath {
     //
     final List<AbstractExpression> m_finalExpressionOrder = new ArrayList<>();
 
+    AccessPath() {
+    }
+
+    /**
+     * Copy an access path so that an alternative join of the same
+     * inner table access can be planned next to the original one.
+     */
+    AccessPath(AccessPath other) {
+        index = other.index;
+        use = other.use;
+        nestLoopIndexJoin = other.nestLoopIndexJoin;
+        requiresSendReceive = other.requiresSendReceive;
+        keyIterate = other.keyIterate;
+        keyedJoin = other.keyedJoin;
+        lookupType = other.lookupType;
+        sortDirection = other.sortDirection;
+        initialExpr.addAll(other.initialExpr);
+        indexExprs.addAll(other.indexExprs);
+        endExprs.addAll(other.endExprs);
+        otherExprs.addAll(other.otherExprs);
+        joinExprs.addAll(other.joinExprs);
+        bindings.addAll(other.bindings);
+        eliminatedPostExprs.addAll(other.eliminatedPostExprs);
+        m_windowFunctionUsesIndex = other.m_windowFunctionUsesIndex;
+        m_stmtOrderByIsCompatible = other.m_stmtOrderByIsCompatible;
+        m_finalExpressionOrder.addAll(other.m_finalExpressionOrder);
+    }
+
     @Override
     public String toString() {
         String retval = "";
@@ -88,6 +119,7 @@ public class AccessPath {
         retval += "DIR:   " + sortDirection.toString() + "\n";
         retval += "ITER?: " + String.valueOf(keyIterate) + "\n";
         retval += "NLIJ?: " + String.valueOf(nestLoopIndexJoin) + "\n";
+        retval += "KEYED?: " + String.valueOf(keyedJoin) + "\n";
 
         retval += "IDX EXPRS:\n";
         int i = 0;
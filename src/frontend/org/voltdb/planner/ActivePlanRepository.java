@@ -239,6 +239,18 @@ public abstract class ActivePlanRepository {
         return frag.plan;
     }
 
+    /**
+     * Get the full JSON plan for a given plan hash, or null if it isn't loaded.
+     */
+    public static byte[] planForPlanHash(byte[] planHash) {
+        Sha1Wrapper key = new Sha1Wrapper(planHash);
+        FragInfo frag = null;
+        synchronized (FragInfo.class) {
+            frag = m_plansByHash.get(key);
+        }
+        return frag == null ? null : frag.plan;
+    }
+
     @Deprecated
     public static void addFragmentForTest(long fragmentId, byte[] plan, String stmtText) {
         Sha1Wrapper key = new Sha1Wrapper(new byte[20]);
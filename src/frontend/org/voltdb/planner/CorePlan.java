@@ -21,11 +21,20 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.AdHocPlannedStatement;
+import org.voltdb.planner.parseinfo.StmtTargetTableScan;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.SwapTablesPlanNode;
+import org.voltdb.types.PlanNodeType;
 
 /**
  * CorePlan is an immutable representation of a SQL execution plan.
@@ -68,6 +77,22 @@ public class CorePlan {
     private int partitioningParamIndex = -1;
     private Object partitioningParamValue = null;
 
+    /**
+     * If multi-partition but filtered by an IN list on the partitioning column
+     * of its only table, which of the parameters and which constants make up the list?
+     * Only the partitions their values hash to need to run the collector fragment.
+     * (Not serialized either, for the same reason.)
+     */
+    private int[] partitioningInListParamIndexes = null;
+    private Object[] partitioningInListValues = null;
+    private VoltType partitioningInListType = null;
+
+    /**
+     * Names of the tables the plan reads or writes, or null if unknown.
+     * (Not serialized, only the ad hoc plan cache needs it.)
+     */
+    private final Set<String> tablesTouched;
+
     /**
      * Constructor from QueryPlanner output.
      *
@@ -101,6 +126,7 @@ public class CorePlan {
         this.catalogHash = catalogHash;
         parameterTypes = plan.parameterTypes();
         readOnly = plan.isReadOnly();
+        tablesTouched = tablesTouchedBy(plan.rootPlanGraph, plan.subPlanGraph);
     }
 
     /***
@@ -130,6 +156,61 @@ public class CorePlan {
         this.readOnly = isReadOnly;
         this.parameterTypes = paramTypes;
         this.catalogHash = catalogHash;
+        this.tablesTouched = null;
+    }
+
+    private CorePlan(CorePlan other, byte[] catalogHash) {
+        aggregatorFragment = other.aggregatorFragment;
+        collectorFragment = other.collectorFragment;
+        aggregatorHash = other.aggregatorHash;
+        collectorHash = other.collectorHash;
+        isReplicatedTableDML = other.isReplicatedTableDML;
+        readOnly = other.readOnly;
+        parameterTypes = other.parameterTypes;
+        partitioningParamIndex = other.partitioningParamIndex;
+        partitioningParamValue = other.partitioningParamValue;
+        partitioningInListParamIndexes = other.partitioningInListParamIndexes;
+        partitioningInListValues = other.partitioningInListValues;
+        partitioningInListType = other.partitioningInListType;
+        tablesTouched = other.tablesTouched;
+        this.catalogHash = catalogHash;
+    }
+
+    private static Set<String> tablesTouchedBy(AbstractPlanNode... planGraphs) {
+        Map<String, StmtTargetTableScan> tablesRead = new TreeMap<>();
+        Set<String> tables = new TreeSet<>();
+        for (AbstractPlanNode planGraph : planGraphs) {
+            if (planGraph == null) {
+                continue;
+            }
+            planGraph.getTablesAndIndexes(tablesRead, new ArrayList<String>());
+            String updated = planGraph.getUpdatedTable();
+            if (updated != null) {
+                tables.add(updated);
+            }
+            for (AbstractPlanNode swap : planGraph.findAllNodesOfType(PlanNodeType.SWAPTABLES)) {
+                tables.add(((SwapTablesPlanNode)swap).getOtherTargetTableName());
+            }
+        }
+        for (StmtTargetTableScan scan : tablesRead.values()) {
+            tables.add(scan.getTableName());
+        }
+        return tables;
+    }
+
+    /**
+     * Copy of this plan marked as good for another catalog, used when a catalog
+     * change leaves every table the plan touches alone.
+     */
+    public CorePlan withCatalogHash(byte[] catalogHash) {
+        return new CorePlan(this, catalogHash);
+    }
+
+    /**
+     * @return names of the tables the plan reads or writes, or null if they are not known
+     */
+    public Set<String> getTablesTouched() {
+        return tablesTouched;
     }
 
     @Override
@@ -292,6 +373,21 @@ public class CorePlan {
         return partitioningParamValue;
     }
 
+    public void setPartitioningInList(int[] paramIndexes, Object[] values, VoltType type) {
+        partitioningInListParamIndexes = paramIndexes;
+        partitioningInListValues = values;
+        partitioningInListType = type;
+    }
+    public int[] getPartitioningInListParamIndexes() {
+        return partitioningInListParamIndexes;
+    }
+    public Object[] getPartitioningInListValues() {
+        return partitioningInListValues;
+    }
+    public VoltType getPartitioningInListType() {
+        return partitioningInListType;
+    }
+
     public VoltType getPartitioningParamType() {
         if (partitioningParamIndex < 0 || partitioningParamIndex >= parameterTypes.length) {
             return VoltType.NULL;
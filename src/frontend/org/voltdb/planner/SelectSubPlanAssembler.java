@@ -25,7 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.voltdb.VoltType;
+import org.voltdb.catalog.ColumnRef;
 import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Index;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
@@ -33,17 +36,25 @@ import org.voltdb.planner.parseinfo.BranchNode;
 import org.voltdb.planner.parseinfo.JoinNode;
 import org.voltdb.planner.parseinfo.StmtSubqueryScan;
 import org.voltdb.planner.parseinfo.StmtTableScan;
+import org.voltdb.planner.parseinfo.StmtTargetTableScan;
 import org.voltdb.planner.parseinfo.SubqueryLeafNode;
     import org.voltdb.plannodes.IndexSortablePlanNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.IndexUseForOrderBy;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
+import org.voltdb.plannodes.MergeJoinPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.plannodes.SeqScanPlanNode;
+import org.voltdb.types.ExpressionType;
+import org.voltdb.types.IndexLookupType;
+import org.voltdb.types.IndexType;
 import org.voltdb.types.JoinType;
+import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.PermutationGenerator;
 
 /**
@@ -310,6 +321,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                     // This join order, at least, is not worth trying to plan.
                     continue;
                 }
+                m_partitioning.analyzeForPartitioningInList(scans, joinTree.getAllFilters());
             }
 
             generateMorePlansForJoinTree(joinTree);
@@ -512,9 +524,49 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             innerChildNode.m_accessPaths.addAll(innerOuterAccessPaths);
         }
 
+        // Offer a hash join over the naive path and a merge join over the tree index paths
+        // next to the nest loops. Each is planned as a separate alternative that the plan
+        // selector keeps only when its estimates come out lower. The best plan of a subquery scan is shared by all the plans of a join
+        // order and only stays linked to the last one, so the estimates of the others
+        // miss it and would favor the alternative. Leave those statements to the nest loops.
+        if (m_parsedStmt.getSubqueryScans().isEmpty()) {
+            List<AccessPath> keyedJoinPaths = new ArrayList<>();
+            for (AccessPath innerAccessPath : innerChildNode.m_accessPaths) {
+                if (mayHaveKeyedJoin(parentNode, innerAccessPath)) {
+                    AccessPath keyedJoinPath = new AccessPath(innerAccessPath);
+                    keyedJoinPath.keyedJoin = true;
+                    keyedJoinPaths.add(keyedJoinPath);
+                }
+            }
+            innerChildNode.m_accessPaths.addAll(keyedJoinPaths);
+        }
+
         assert(innerChildNode.m_accessPaths.size() > 0);
     }
 
+    /**
+     * A quick check that saves planning a hash or merge join alternative
+     * that getHashJoinNode or getMergeJoinNode would certainly turn down.
+     *
+     * @param parentNode The join node of the inner table.
+     * @param innerAccessPath An access path of the inner table.
+     * @return true if the access path is the naive one and the join has an equality to hash on,
+     * or if it is a tree index path of an unfiltered inner table of an INNER or LEFT join.
+     */
+    private static boolean mayHaveKeyedJoin(BranchNode parentNode, AccessPath innerAccessPath) {
+        if (innerAccessPath.index != null) {
+            return parentNode.getJoinType() != JoinType.FULL &&
+                    parentNode.m_joinInnerList.isEmpty() &&
+                    isMergeableIndex(innerAccessPath.index);
+        }
+        for (AbstractExpression expr : parentNode.m_joinInnerOuterList) {
+            if (expr.getExpressionType() == ExpressionType.COMPARE_EQUAL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * generate all possible plans for the tree.
      *
@@ -722,7 +774,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -763,6 +814,23 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
+
+            // The hash join alternative of the naive path competes with this NLJ and the
+            // NLIJs of the indexed paths on its estimates. The send/receive special case
+            // stays with NLJ, the MV fix-up expects it there.
+            AbstractJoinPlanNode nljNode = null;
+            if (innerAccessPath.keyedJoin) {
+                if (needInnerSendReceive || ! (innerPlan instanceof SeqScanPlanNode)) {
+                    return null;
+                }
+                nljNode = getHashJoinNode(joinNode, outerPlan, joinClauses);
+                if (nljNode == null) {
+                    return null;
+                }
+            }
+            else {
+                nljNode = new NestLoopPlanNode();
+            }
             nljNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -784,19 +852,29 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             ajNode = nljNode;
         }
         else if (canHaveNLIJ) {
-            NestLoopIndexPlanNode nlijNode = new NestLoopIndexPlanNode();
+            // The merge join alternative of an index path competes with this NLIJ on its estimates.
+            if (innerAccessPath.keyedJoin) {
+                MergeJoinPlanNode mjNode = getMergeJoinNode(joinNode, outerPlan, innerAccessPath);
+                if (mjNode == null) {
+                    return null;
+                }
+                ajNode = mjNode;
+            }
+            else {
+                NestLoopIndexPlanNode nlijNode = new NestLoopIndexPlanNode();
 
-            IndexScanPlanNode innerNode = (IndexScanPlanNode) innerPlan;
-            // Set IndexScan predicate. The INNER join expressions for a FULL join come from
-            // the innerAccessPath.joinExprs and need to be combined with the other join expressions
-            innerNode.setPredicate(innerAccessPath.joinExprs, innerAccessPath.otherExprs);
+                IndexScanPlanNode innerNode = (IndexScanPlanNode) innerPlan;
+                // Set IndexScan predicate. The INNER join expressions for a FULL join come from
+                // the innerAccessPath.joinExprs and need to be combined with the other join expressions
+                innerNode.setPredicate(innerAccessPath.joinExprs, innerAccessPath.otherExprs);
 
-            nlijNode.addInlinePlanNode(innerPlan);
+                nlijNode.addInlinePlanNode(innerPlan);
 
-            // combine the tails plan graph with the new head node
-            nlijNode.addAndLinkChild(outerPlan);
+                // combine the tails plan graph with the new head node
+                nlijNode.addAndLinkChild(outerPlan);
 
-            ajNode = nlijNode;
+                ajNode = nlijNode;
+            }
         }
         else {
             m_recentErrorMsg =
@@ -810,6 +888,238 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Build a hash join node if the join clauses include at least one equality between
+     * an expression of the outer tables only and an expression of the same type of the
+     * inner tables only. Every such equality becomes a pair of hash keys.
+     *
+     * @param joinNode The join node to build the plan for.
+     * @param outerPlan The outer node plan-sub-graph.
+     * @param joinClauses The clauses the join will be filtered on.
+     * @return The hash join node, or null if there is no key to hash on or
+     * if the outer plan delivers index order that the hash join would not preserve.
+     */
+    private static HashJoinPlanNode getHashJoinNode(BranchNode joinNode,
+                                                    AbstractPlanNode outerPlan,
+                                                    List<AbstractExpression> joinClauses) {
+        // Order by, group by and window functions can all take their order from an
+        // outer index scan, don't take that away from them.
+        AbstractPlanNode outerLeaf = outerPlan;
+        while (outerLeaf instanceof AbstractJoinPlanNode) {
+            outerLeaf = outerLeaf.getChild(0);
+        }
+        if (outerLeaf instanceof IndexScanPlanNode) {
+            return null;
+        }
+
+        Collection<String> outerTables = joinNode.getLeftNode().generateTableJoinOrder();
+        Collection<String> innerTables = joinNode.getRightNode().generateTableJoinOrder();
+        HashJoinPlanNode hjNode = null;
+        for (AbstractExpression clause : joinClauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                continue;
+            }
+            AbstractExpression outerKey = clause.getLeft();
+            AbstractExpression innerKey = clause.getRight();
+            if ( ! isHashKeyOf(outerKey, outerTables) || ! isHashKeyOf(innerKey, innerTables)) {
+                outerKey = clause.getRight();
+                innerKey = clause.getLeft();
+                if ( ! isHashKeyOf(outerKey, outerTables) || ! isHashKeyOf(innerKey, innerTables)) {
+                    continue;
+                }
+            }
+            if (outerKey.getValueType() != innerKey.getValueType()) {
+                continue;
+            }
+            if (hjNode == null) {
+                hjNode = new HashJoinPlanNode();
+            }
+            hjNode.addHashKey(outerKey, innerKey);
+        }
+        return hjNode;
+    }
+
+    /**
+     * Build a merge join node as an alternative to the NLIJ for the given inner access path if
+     * neither table is filtered on its own and both tables have a tree index
+     * whose leading columns are pairwise equal in the join clauses. The outer scan is
+     * turned into a forward scan of its index and the inner one into a full forward scan
+     * of the index the NLIJ would have probed, inlined like the NLIJ's so that the
+     * executor walks the index in place instead of copying the inner table.
+     *
+     * @param joinNode The join node to build the plan for.
+     * @param outerPlan The outer node plan-sub-graph.
+     * @param innerAccessPath The NLIJ access path of the inner table.
+     * @return The merge join node with the outer child linked, or null if it doesn't apply.
+     */
+    private static MergeJoinPlanNode getMergeJoinNode(BranchNode joinNode,
+                                                      AbstractPlanNode outerPlan,
+                                                      AccessPath innerAccessPath) {
+        // A FULL join keeps its inner-only join clauses at the join node,
+        // leave it to the nest loops.
+        if (joinNode.getJoinType() == JoinType.FULL) {
+            return null;
+        }
+        StmtTableScan innerScan = joinNode.getRightNode().getTableScan();
+        if ( ! (innerScan instanceof StmtTargetTableScan) || ! isMergeableIndex(innerAccessPath.index)) {
+            return null;
+        }
+
+        // Both sides have to read their whole tables for the merge to pay off.
+        // Any filter on the inner table alone is better served by the index probes.
+        if ( ! joinNode.m_joinInnerList.isEmpty()) {
+            return null;
+        }
+        List<Index> outerIndexes = new ArrayList<>();
+        StmtTableScan outerScan = null;
+        if (outerPlan instanceof SeqScanPlanNode) {
+            SeqScanPlanNode seqScan = (SeqScanPlanNode) outerPlan;
+            outerScan = seqScan.getTableScan();
+            if (seqScan.getPredicate() != null || ! (outerScan instanceof StmtTargetTableScan)) {
+                return null;
+            }
+            outerIndexes.addAll(outerScan.getIndexes());
+        }
+        else if (outerPlan instanceof IndexScanPlanNode) {
+            IndexScanPlanNode indexScan = (IndexScanPlanNode) outerPlan;
+            outerScan = indexScan.getTableScan();
+            if (indexScan.getPredicate() != null || indexScan.isReverseScan() ||
+                    ! indexScan.getSearchKeyExpressions().isEmpty() ||
+                    indexScan.getEndExpression() != null) {
+                return null;
+            }
+            outerIndexes.add(indexScan.getCatalogIndex());
+        }
+        else {
+            return null;
+        }
+
+        // Pick the outer index with the longest run of leading columns
+        // equal to the leading columns of the inner index
+        List<ColumnRef> innerColumns =
+                CatalogUtil.getSortedCatalogItems(innerAccessPath.index.getColumns(), "index");
+        Index outerIndex = null;
+        List<AbstractExpression> mergeClauses = new ArrayList<>();
+        for (Index index : outerIndexes) {
+            if ( ! isMergeableIndex(index)) {
+                continue;
+            }
+            List<ColumnRef> outerColumns = CatalogUtil.getSortedCatalogItems(index.getColumns(), "index");
+            List<AbstractExpression> clauses = new ArrayList<>();
+            for (int ii = 0; ii < outerColumns.size() && ii < innerColumns.size(); ii++) {
+                AbstractExpression clause = findMergeClause(joinNode.m_joinInnerOuterList,
+                        outerScan.getTableAlias(), outerColumns.get(ii).getColumn().getTypeName(),
+                        innerScan.getTableAlias(), innerColumns.get(ii).getColumn().getTypeName());
+                if (clause == null) {
+                    break;
+                }
+                clauses.add(clause);
+            }
+            if (clauses.size() > mergeClauses.size()) {
+                outerIndex = index;
+                mergeClauses = clauses;
+            }
+        }
+        if (outerIndex == null) {
+            return null;
+        }
+
+        MergeJoinPlanNode mjNode = new MergeJoinPlanNode();
+        for (AbstractExpression clause : mergeClauses) {
+            TupleValueExpression left = (TupleValueExpression) clause.getLeft();
+            if (left.getTableAlias().equals(outerScan.getTableAlias())) {
+                mjNode.addMergeKey(clause.getLeft(), clause.getRight());
+            }
+            else {
+                mjNode.addMergeKey(clause.getRight(), clause.getLeft());
+            }
+        }
+
+        if (outerPlan instanceof SeqScanPlanNode) {
+            IndexScanPlanNode outerIndexScan = new IndexScanPlanNode(outerScan, outerIndex);
+            outerIndexScan.setLookupType(IndexLookupType.GTE);
+            outerPlan = outerIndexScan;
+        }
+        IndexScanPlanNode innerIndexScan = new IndexScanPlanNode(innerScan, innerAccessPath.index);
+        innerIndexScan.setLookupType(IndexLookupType.GTE);
+
+        mjNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinNode.m_joinInnerOuterList));
+        mjNode.addAndLinkChild(outerPlan);
+        mjNode.addInlinePlanNode(innerIndexScan);
+        return mjNode;
+    }
+
+    /**
+     * @return true if a full forward scan of the index visits every row of
+     * its table in the order of its columns
+     */
+    private static boolean isMergeableIndex(Index index) {
+        if (index == null) {
+            return false;
+        }
+        if (index.getType() != IndexType.BALANCED_TREE.getValue() &&
+                index.getType() != IndexType.BTREE.getValue()) {
+            return false;
+        }
+        // Expression indexes aren't matched against the join clauses,
+        // partial indexes don't cover the whole table.
+        return index.getExpressionsjson().isEmpty() && index.getPredicatejson().isEmpty();
+    }
+
+    /**
+     * @return the clause of the list that equates the two given columns, if any
+     */
+    private static AbstractExpression findMergeClause(List<AbstractExpression> clauses,
+                                                      String outerAlias, String outerColumn,
+                                                      String innerAlias, String innerColumn) {
+        for (AbstractExpression clause : clauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL ||
+                    ! (clause.getLeft() instanceof TupleValueExpression) ||
+                    ! (clause.getRight() instanceof TupleValueExpression)) {
+                continue;
+            }
+            TupleValueExpression left = (TupleValueExpression) clause.getLeft();
+            TupleValueExpression right = (TupleValueExpression) clause.getRight();
+            if (left.getValueType() != right.getValueType()) {
+                continue;
+            }
+            if ((isColumn(left, outerAlias, outerColumn) && isColumn(right, innerAlias, innerColumn)) ||
+                    (isColumn(left, innerAlias, innerColumn) && isColumn(right, outerAlias, outerColumn))) {
+                return clause;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isColumn(TupleValueExpression tve, String tableAlias, String columnName) {
+        return tableAlias.equals(tve.getTableAlias()) && columnName.equals(tve.getColumnName());
+    }
+
+    /**
+     * @return true if the expression can be hashed and only references the given tables
+     */
+    private static boolean isHashKeyOf(AbstractExpression expr, Collection<String> tableAliases) {
+        VoltType type = expr.getValueType();
+        // 0.0 and -0.0 are equal but hash apart, and the geo types don't hash at all
+        if (type == null || type == VoltType.FLOAT ||
+                type == VoltType.GEOGRAPHY || type == VoltType.GEOGRAPHY_POINT) {
+            return false;
+        }
+        if (expr.hasSubquerySubexpression()) {
+            return false;
+        }
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(expr);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if ( ! tableAliases.contains(tve.getTableAlias())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * A method to filter out single-TVE expressions.
      *
@@ -17,6 +17,7 @@
 
 package org.voltdb.planner;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,13 +27,17 @@ import java.util.Set;
 import org.voltdb.VoltType;
 import org.voltdb.catalog.Column;
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.AbstractSubqueryExpression;
 import org.voltdb.expressions.ConstantValueExpression;
+import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.ParameterValueExpression;
 import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.expressions.VectorValueExpression;
 import org.voltdb.planner.parseinfo.StmtSubqueryScan;
 import org.voltdb.planner.parseinfo.StmtTableScan;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
 import org.voltdb.plannodes.SchemaColumn;
+import org.voltdb.types.ExpressionType;
 
 /**
  * Represents the partitioning of the data underlying a statement.
@@ -116,6 +121,15 @@ public class StatementPartitioning implements Cloneable{
      * Any constant/parameter-based expressions found to be equality-filtering partitioning columns.
      */
     private final Set<AbstractExpression> m_inferredExpression = new HashSet<AbstractExpression>();
+    /*
+     * For a multi-partition statement that scans a single partitioned table whose partitioning column
+     * is filtered by an IN list, the parameters and the constant values making up the list.
+     * Only the partitions these values hash to can have matching rows.
+     * If null, there is no such IN list.
+     */
+    private int[] m_inListParameterIndexes = null;
+    private Object[] m_inListValues = null;
+    private VoltType m_inListValueType = null;
     /*
      * The actual number of partitioned table scans in the query (when supported, self-joins should count as multiple).
      */
@@ -502,6 +516,117 @@ public class StatementPartitioning implements Cloneable{
         }
     }
 
+    /**
+     * Look for an IN list of constants and/or parameters on the partitioning column of a
+     * multi-partition statement that scans a single partitioned table and nothing else,
+     * e.g. "WHERE pk IN (?, ?, ?)". The statement still needs two fragments, but only the
+     * partitions the IN list values hash to can contribute rows, so it can be sent to just those.
+     *
+     * @param scans The tables scanned by the statement.
+     * @param filters All of the statement's filters, combined with AND.
+     */
+    public void analyzeForPartitioningInList(Collection<StmtTableScan> scans, AbstractExpression filters) {
+        m_inListParameterIndexes = null;
+        m_inListValues = null;
+        m_inListValueType = null;
+        if ( ! m_inferPartitioning || isInferredSingle() || filters == null || scans.size() != 1) {
+            return;
+        }
+        StmtTableScan tableScan = scans.iterator().next();
+        if (tableScan.getIsReplicated() || (tableScan instanceof StmtSubqueryScan)) {
+            return;
+        }
+        // A subquery could read other partitioned tables.
+        if (filters.hasAnySubexpressionOfClass(AbstractSubqueryExpression.class)) {
+            return;
+        }
+        for (AbstractExpression filter : ExpressionUtil.uncombineAny(filters)) {
+            if (filter.getExpressionType() != ExpressionType.COMPARE_IN ||
+                    ! (filter.getLeft() instanceof TupleValueExpression)) {
+                continue;
+            }
+            TupleValueExpression column = (TupleValueExpression) filter.getLeft();
+            if ( ! canCoverPartitioningColumn(column, tableScan.getPartitioningColumns())) {
+                continue;
+            }
+            if (addPartitioningInList(column.getValueType(), filter.getRight())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param valueType the type of the partitioning column
+     * @param inList the right hand side of an IN filtering the partitioning column
+     * @return true if every value of the list is a constant or a parameter, and got recorded
+     */
+    private boolean addPartitioningInList(VoltType valueType, AbstractExpression inList) {
+        List<AbstractExpression> elements;
+        if (inList instanceof VectorValueExpression) {
+            elements = inList.getArgs();
+        }
+        else if (inList instanceof ParameterValueExpression &&
+                ((ParameterValueExpression) inList).getParamIsVector()) {
+            // A single array parameter holds the whole list.
+            elements = new ArrayList<AbstractExpression>();
+            elements.add(inList);
+        }
+        else {
+            return false;
+        }
+        List<Integer> parameterIndexes = new ArrayList<Integer>();
+        List<Object> values = new ArrayList<Object>();
+        for (AbstractExpression element : elements) {
+            if (element instanceof ParameterValueExpression) {
+                parameterIndexes.add(((ParameterValueExpression) element).getParameterIndex());
+            }
+            else if (element instanceof ConstantValueExpression) {
+                // NULL never matches, so it needs no partition.
+                if (((ConstantValueExpression) element).getValue() == null) {
+                    continue;
+                }
+                Object value = ConstantValueExpression.extractPartitioningValue(valueType, element);
+                if (value == null) {
+                    return false;
+                }
+                values.add(value);
+            }
+            else {
+                return false;
+            }
+        }
+        m_inListParameterIndexes = new int[parameterIndexes.size()];
+        for (int ii = 0; ii < m_inListParameterIndexes.length; ii++) {
+            m_inListParameterIndexes[ii] = parameterIndexes.get(ii);
+        }
+        m_inListValues = values.toArray();
+        m_inListValueType = valueType;
+        return true;
+    }
+
+    /**
+     * @return the indexes of the parameters in the partitioning column's IN list,
+     *         or null if the statement has no such list
+     */
+    public int[] getInListParameterIndexes() {
+        return m_inListParameterIndexes;
+    }
+
+    /**
+     * @return the constant values in the partitioning column's IN list,
+     *         or null if the statement has no such list
+     */
+    public Object[] getInListValues() {
+        return m_inListValues;
+    }
+
+    /**
+     * @return the type of the partitioning column filtered by the IN list
+     */
+    public VoltType getInListValueType() {
+        return m_inListValueType;
+    }
+
     public boolean isJoinValid() {
         return m_joinValid;
     }
@@ -584,6 +709,9 @@ public class StatementPartitioning implements Cloneable{
         m_inferredExpression.clear();
         m_inferredParameterIndex = -1;
         m_inferredValue = null;
+        m_inListParameterIndexes = null;
+        m_inListValues = null;
+        m_inListValueType = null;
         m_isDML = false;
         setJoinValid(true);
         setJoinInvalidReason(null);
@@ -56,6 +56,10 @@ public abstract class AbstractJoinPlanNode extends AbstractPlanNode implements I
     protected NodeSchema m_outputSchemaPreInlineAgg = null;
     private final IndexUseForOrderBy m_indexUse = new IndexUseForOrderBy();
 
+    // Caps the per outer tuple estimates so that the sum over a plan with nested joins
+    // can't overflow, while still being far above the estimates of any plan worth picking
+    private static final long MAX_PER_OUTER_TUPLE_ESTIMATE = 1L << 50;
+
     protected AbstractJoinPlanNode() {
         super();
     }
@@ -394,6 +398,23 @@ public abstract class AbstractJoinPlanNode extends AbstractPlanNode implements I
         }
     }
 
+    /**
+     * Estimate the work of doing something once for every tuple of the outer child,
+     * like rescanning the inner child for the NLJ or probing its index for the NLIJ.
+     * The estimate is capped so that the estimates of nested joins can't overflow.
+     *
+     * @param outerChild the outer child of the join
+     * @param perTupleEstimate the work done for one outer tuple
+     * @return the work done for all the outer tuples
+     */
+    protected static long estimatePerOuterTuple(AbstractPlanNode outerChild, long perTupleEstimate) {
+        final long outerTupleCount = Math.max(1, outerChild.getEstimatedOutputTupleCount());
+        if (perTupleEstimate > MAX_PER_OUTER_TUPLE_ESTIMATE / outerTupleCount) {
+            return MAX_PER_OUTER_TUPLE_ESTIMATE;
+        }
+        return outerTupleCount * perTupleEstimate;
+    }
+
     /**
      * Discount join node child estimates based on the number of its filters
      *
@@ -411,8 +432,9 @@ public abstract class AbstractJoinPlanNode extends AbstractPlanNode implements I
         AbstractExpression predicate = null;
         if (childNode instanceof AbstractScanPlanNode) {
             predicate = ((AbstractScanPlanNode) childNode).getPredicate();
-        } else if (childNode instanceof NestLoopPlanNode) {
-            predicate = ((NestLoopPlanNode) childNode).getWherePredicate();
+        } else if (childNode instanceof NestLoopPlanNode || childNode instanceof HashJoinPlanNode ||
+                childNode instanceof MergeJoinPlanNode) {
+            predicate = ((AbstractJoinPlanNode) childNode).getWherePredicate();
         } else if (childNode instanceof NestLoopIndexPlanNode) {
             AbstractPlanNode inlineIndexScan = ((NestLoopIndexPlanNode) childNode).getInlinePlanNode(PlanNodeType.INDEXSCAN);
             assert(inlineIndexScan != null);
@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * Equi-join that hashes the inner child on its side of the join's equality
+ * conjuncts and probes the hash table once per outer tuple. The join predicate
+ * is still applied in full to every pair the probe turns up.
+ *
+ * The executor may partition both inputs to disk when the hash table would not
+ * fit in temp table memory, so unlike the nested loop joins this node never
+ * claims to preserve the order of its outer child.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_KEYS,
+        INNER_HASH_KEYS;
+    }
+
+    // Pairwise equal key expressions over the outer and the inner child
+    private List<AbstractExpression> m_outerHashKeys = new ArrayList<>();
+    private List<AbstractExpression> m_innerHashKeys = new ArrayList<>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerHashKeys.isEmpty() || m_outerHashKeys.size() != m_innerHashKeys.size()) {
+            throw new Exception("ERROR: Hash join needs matching outer and inner hash keys");
+        }
+        for (AbstractExpression expr : m_outerHashKeys) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            expr.validate();
+        }
+    }
+
+    public List<AbstractExpression> getOuterHashKeys() {
+        return m_outerHashKeys;
+    }
+
+    public List<AbstractExpression> getInnerHashKeys() {
+        return m_innerHashKeys;
+    }
+
+    /**
+     * @param outerKey an expression over the outer child only
+     * @param innerKey an expression over the inner child only, of the same type
+     */
+    public void addHashKey(AbstractExpression outerKey, AbstractExpression innerKey) {
+        assert(outerKey.getValueType() == innerKey.getValueType());
+        m_outerHashKeys.add(outerKey.clone());
+        m_innerHashKeys.add(innerKey.clone());
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        assert(m_children.size() == 2);
+        AbstractPlanNode outer = m_children.get(0);
+        AbstractPlanNode inner = m_children.get(1);
+        // A probe of the hash table returns the inner tuples matching the keys, which is
+        // estimated like the probe of a non-unique index by the NLIJ: 90% of the inner
+        // scaled down by 0.1 for every key.
+        long innerMatches = (long) (inner.m_estimatedOutputTupleCount * 0.90 *
+                Math.pow(0.10, m_innerHashKeys.size()));
+        m_estimatedOutputTupleCount = outer.m_estimatedOutputTupleCount + Math.max(1, innerMatches);
+        // Each side is read once, the outer to probe and the inner to build, where the
+        // NLJ rescans the inner for every outer tuple. On top of that every inner tuple
+        // the scan delivers is hashed and entered into the hash table, so against a
+        // single row outer the NLJ still comes out cheaper.
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(outer) +
+                inner.m_estimatedProcessedTupleCount + inner.m_estimatedOutputTupleCount;
+    }
+
+    @Override
+    public void resolveColumnIndexes() {
+        super.resolveColumnIndexes();
+        final NodeSchema outer_schema = m_children.get(0).getOutputSchema();
+        final NodeSchema inner_schema = m_children.get(1).getOutputSchema();
+        resolvePredicate(m_outerHashKeys, outer_schema, inner_schema);
+        resolvePredicate(m_innerHashKeys, outer_schema, inner_schema);
+    }
+
+    @Override
+    public void resolveSortDirection() {
+        m_sortDirection = SortDirectionType.INVALID;
+    }
+
+    @Override
+    public boolean isOutputOrdered(List<AbstractExpression> sortExpressions, List<SortDirectionType> sortDirections) {
+        return false;
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_KEYS.name()).array(m_outerHashKeys);
+        stringer.key(Members.INNER_HASH_KEYS.name()).array(m_innerHashKeys);
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db) throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashKeys, jobj,
+                Members.OUTER_HASH_KEYS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashKeys, jobj,
+                Members.INNER_HASH_KEYS.name(), null);
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" + explainFilters(indent);
+    }
+
+}
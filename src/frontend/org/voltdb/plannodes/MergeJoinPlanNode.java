@@ -0,0 +1,271 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.AbstractSubqueryExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Equi-join of an outer child and an inline forward scan of an inner tree index,
+ * both delivering their tuples in ascending order of the merge keys. Each side is
+ * read once, in step with the other, instead of probing the inner index once per
+ * outer tuple the way a NestLoopIndexPlanNode does. Like the NLIJ, the inner index
+ * is walked in place, so the inner table is never copied into a temp table.
+ * The join predicate is still applied in full to every pair with equal keys.
+ *
+ * The output follows the order of the outer child.
+ */
+public class MergeJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_MERGE_KEYS,
+        INNER_MERGE_KEYS;
+    }
+
+    // Pairwise equal key expressions over the outer and the inner child
+    private List<AbstractExpression> m_outerMergeKeys = new ArrayList<>();
+    private List<AbstractExpression> m_innerMergeKeys = new ArrayList<>();
+
+    public MergeJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.MERGEJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if ( ! m_inlineNodes.containsKey(PlanNodeType.INDEXSCAN)) {
+            throw new Exception("ERROR: No inline PlanNode with type '" + PlanNodeType.INDEXSCAN + "' was set for " + this);
+        }
+        if (m_outerMergeKeys.isEmpty() || m_outerMergeKeys.size() != m_innerMergeKeys.size()) {
+            throw new Exception("ERROR: Merge join needs matching outer and inner merge keys");
+        }
+        for (AbstractExpression expr : m_outerMergeKeys) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerMergeKeys) {
+            expr.validate();
+        }
+    }
+
+    public IndexScanPlanNode getInlineIndexScan() {
+        IndexScanPlanNode indexScan =
+                (IndexScanPlanNode) getInlinePlanNode(PlanNodeType.INDEXSCAN);
+        assert(indexScan != null);
+        return indexScan;
+    }
+
+    public List<AbstractExpression> getOuterMergeKeys() {
+        return m_outerMergeKeys;
+    }
+
+    public List<AbstractExpression> getInnerMergeKeys() {
+        return m_innerMergeKeys;
+    }
+
+    /**
+     * Keys must be added in the order of the children's sort, most significant first.
+     *
+     * @param outerKey an expression over the outer child only
+     * @param innerKey an expression over the inner child only, of the same type
+     */
+    public void addMergeKey(AbstractExpression outerKey, AbstractExpression innerKey) {
+        assert(outerKey.getValueType() == innerKey.getValueType());
+        m_outerMergeKeys.add(outerKey.clone());
+        m_innerMergeKeys.add(innerKey.clone());
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        // Each side is read once. Unlike the hash join, nothing gets built from the
+        // inner tuples, they are only compared against the current outer key as the
+        // inline scan delivers them, so the inline scan is charged once. Where the NLIJ
+        // descends the index for every outer tuple, the merge only walks it forward.
+        // The inline scan reads the whole index, so the output is not estimated from
+        // it: the matches for an outer tuple are estimated like the NLIJ's probe of a
+        // non-unique index, 90% of the inner scaled down by 0.1 for every key.
+        assert(m_children.size() == 1);
+        IndexScanPlanNode indexScan = getInlineIndexScan();
+        long innerMatches = (long) (indexScan.getEstimatedOutputTupleCount() * 0.90 *
+                Math.pow(0.10, m_innerMergeKeys.size()));
+        m_estimatedOutputTupleCount = Math.max(1, innerMatches) + childOutputTupleCountEstimate;
+        m_estimatedProcessedTupleCount = indexScan.getEstimatedProcessedTupleCount() +
+                discountEstimatedProcessedTupleCount(m_children.get(0));
+    }
+
+    @Override
+    public void generateOutputSchema(Database db) {
+        // The inner side is the inlined index scan, as for the NLIJ
+        IndexScanPlanNode inlineScan = getInlineIndexScan();
+        inlineScan.generateOutputSchema(db);
+        assert(m_children.size() == 1);
+        m_children.get(0).generateOutputSchema(db);
+        m_outputSchemaPreInlineAgg =
+            m_children.get(0).getOutputSchema().
+            join(inlineScan.getOutputSchema()).copyAndReplaceWithTVE();
+        m_hasSignificantOutputSchema = true;
+
+        generateRealOutputSchema(db);
+
+        // Generate the output schema for subqueries
+        Collection<AbstractExpression> subqueryExpressions = findAllSubquerySubexpressions();
+        for (AbstractExpression subqueryExpression : subqueryExpressions) {
+            assert(subqueryExpression instanceof AbstractSubqueryExpression);
+            ((AbstractSubqueryExpression) subqueryExpression).generateOutputSchema(db);
+        }
+    }
+
+    @Override
+    public void resolveColumnIndexes() {
+        IndexScanPlanNode inlineScan = getInlineIndexScan();
+        assert(m_children.size() == 1);
+        m_children.get(0).resolveColumnIndexes();
+
+        LimitPlanNode limit = (LimitPlanNode)getInlinePlanNode(PlanNodeType.LIMIT);
+        if (limit != null) {
+            // output schema of limit node has not been used
+            limit.m_outputSchema = m_outputSchemaPreInlineAgg;
+            limit.m_hasSignificantOutputSchema = false;
+        }
+
+        // The inline scan has no temp table, inner expressions read the
+        // index-scanned table directly, so they resolve against its complete schema.
+        final NodeSchema completeInnerTableSchema = inlineScan.getTableSchema();
+        final NodeSchema outerSchema = m_children.get(0).getOutputSchema();
+        resolvePredicate(m_outerMergeKeys, outerSchema, completeInnerTableSchema);
+        resolvePredicate(m_innerMergeKeys, outerSchema, completeInnerTableSchema);
+        resolvePredicate(m_preJoinPredicate, outerSchema, completeInnerTableSchema);
+        resolvePredicate(m_joinPredicate, outerSchema, completeInnerTableSchema);
+        resolvePredicate(m_wherePredicate, outerSchema, completeInnerTableSchema);
+
+        // Resolve subquery expression indexes
+        resolveSubqueryColumnIndexes();
+
+        // Resolve TVE indexes for each schema column.
+        for (int i = 0; i < m_outputSchemaPreInlineAgg.size(); ++i) {
+            SchemaColumn col = m_outputSchemaPreInlineAgg.getColumns().get(i);
+
+            // These are all TVEs.
+            assert(col.getExpression() instanceof TupleValueExpression);
+            TupleValueExpression tve = (TupleValueExpression)col.getExpression();
+
+            int index;
+            int tableIdx;
+            if (i < outerSchema.size()) {
+                tableIdx = 0; // 0 for outer table
+                index = outerSchema.getIndexOfTve(tve);
+                if (index >= 0) {
+                    tve.setColumnIndex(index);
+                }
+            }
+            else {
+                tableIdx = 1;   // 1 for inner table
+                index = tve.setColumnIndexUsingSchema(completeInnerTableSchema);
+            }
+
+            if (index == -1) {
+                throw new RuntimeException("Unable to find index for column: " +
+                                           col.toString());
+            }
+
+            tve.setTableIndex(tableIdx);
+        }
+
+        // Order the outer and the inner columns by TVE index separately, as the NLIJ does
+        m_outputSchemaPreInlineAgg.sortByTveIndex(0, outerSchema.size());
+        m_outputSchemaPreInlineAgg.sortByTveIndex(outerSchema.size(), m_outputSchemaPreInlineAgg.size());
+        m_hasSignificantOutputSchema = true;
+
+        resolveRealOutputSchema();
+    }
+
+    @Override
+    public boolean isOrderDeterministic() {
+        if ( ! super.isOrderDeterministic()) {
+            return false;
+        }
+        IndexScanPlanNode indexScan = getInlineIndexScan();
+        if ( ! indexScan.isOrderDeterministic()) {
+            m_nondeterminismDetail = indexScan.m_nondeterminismDetail;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasInlinedIndexScanOfTable(String tableName) {
+        if (getInlineIndexScan().getTargetTableName().equals(tableName)) {
+            return true;
+        }
+        return getChild(0).hasInlinedIndexScanOfTable(tableName);
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_MERGE_KEYS.name()).array(m_outerMergeKeys);
+        stringer.key(Members.INNER_MERGE_KEYS.name()).array(m_innerMergeKeys);
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db) throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        AbstractExpression.loadFromJSONArrayChild(m_outerMergeKeys, jobj,
+                Members.OUTER_MERGE_KEYS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerMergeKeys, jobj,
+                Members.INNER_MERGE_KEYS.name(), null);
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerMergeKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerMergeKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "MERGE " + this.m_joinType.toString() + " JOIN" + explainFilters(indent);
+    }
+
+}
@@ -225,16 +225,19 @@ public class NestLoopIndexPlanNode extends AbstractJoinPlanNode {
     @Override
     public void computeCostEstimates(long childOutputTupleCountEstimate, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
 
-        // Add the cost of the inlined index scan to the cost of processing the input tuples.
-        // This isn't really a fair representation of what's going on, as the index is scanned once
-        // per input tuple, but I think it will still cause the plan selector to pick the join
-        // order with the lowest total access cost.
+        // The inlined index scan is estimated as one probe of the index, but the index is
+        // probed once per outer tuple. Charge a descent of the index for each of them on top
+        // of the matches, so that walking both sides in order once, as the merge join does,
+        // can come out ahead when the outer side is large.
 
         IndexScanPlanNode indexScan = getInlineIndexScan();
 
         m_estimatedOutputTupleCount = indexScan.getEstimatedOutputTupleCount() + childOutputTupleCountEstimate;
         // Discount outer child estimates based on the number of its filters
-        m_estimatedProcessedTupleCount = indexScan.getEstimatedProcessedTupleCount() + discountEstimatedProcessedTupleCount(m_children.get(0));
+        AbstractPlanNode outer = m_children.get(0);
+        m_estimatedProcessedTupleCount = indexScan.getEstimatedProcessedTupleCount() +
+                discountEstimatedProcessedTupleCount(outer) +
+                estimatePerOuterTuple(outer, 1);
     }
 
     public IndexScanPlanNode getInlineIndexScan() {
@@ -40,10 +40,12 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
     {
 
         m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        // The inner child is rescanned for every outer tuple.
         // Discount outer child estimates based on the number of its filters
         assert(m_children.size() == 2);
-        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(m_children.get(0)) +
-                m_children.get(1).m_estimatedProcessedTupleCount;
+        AbstractPlanNode outer = m_children.get(0);
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(outer) +
+                estimatePerOuterTuple(outer, m_children.get(1).m_estimatedProcessedTupleCount);
     }
 
     @Override
@@ -76,8 +76,8 @@ public abstract class AdHocBase extends VoltSystemProcedure {
         // the final param is the byte array we need
         byte[] serializedBatchData = (byte[]) params.getParam(params.size() - 1);
 
-        Pair<Object[], AdHocPlannedStatement[]> data = decodeSerializedBatchData(serializedBatchData);
-        Object[] userparams = data.getFirst();
+        Pair<ParameterSet, AdHocPlannedStatement[]> data = decodeSerializedBatchData(serializedBatchData);
+        Object[] userparams = data.getFirst().toArray();
         AdHocPlannedStatement[] statements = data.getSecond();
 
         StringBuilder sb = new StringBuilder();
@@ -109,7 +109,7 @@ public abstract class AdHocBase extends VoltSystemProcedure {
         String sql = new String(statement.sql, Charsets.UTF_8);
         sb.append(sql);
 
-        Object[] params = paramsForStatement(statement, userparams);
+        Object[] params = userparams.length > 0 ? userparams : statement.extractedParamArray();
         // convert params to strings of a certain max length
         for (int i = 0; i < params.length; i++) {
             Object param = params[i];
@@ -132,33 +132,34 @@ public abstract class AdHocBase extends VoltSystemProcedure {
      * This code was pulled out of runAdHoc so it could be shared there and with
      * adHocSQLStringFromPlannedStatement.
      */
-    public static Pair<Object[], AdHocPlannedStatement[]> decodeSerializedBatchData(byte[] serializedBatchData) {
+    public static Pair<ParameterSet, AdHocPlannedStatement[]> decodeSerializedBatchData(byte[] serializedBatchData) {
         // Collections must be the same size since they all contain slices of the same data.
         assert(serializedBatchData != null);
 
+        // The parameters keep referring to the batch data, which nothing modifies
         ByteBuffer buf = ByteBuffer.wrap(serializedBatchData);
         AdHocPlannedStatement[] statements = null;
-        Object[] userparams = null;
+        ParameterSet userparams = null;
         try {
-            userparams = AdHocPlannedStmtBatch.userParamsFromBuffer(buf);
+            userparams = AdHocPlannedStmtBatch.userParamSetFromBuffer(buf);
             statements = AdHocPlannedStmtBatch.planArrayFromBuffer(buf);
         }
         catch (IOException e) {
             throw new VoltAbortException(e);
         }
-        return new Pair<Object[], AdHocPlannedStatement[]>(userparams, statements);
+        return new Pair<ParameterSet, AdHocPlannedStatement[]>(userparams, statements);
     }
 
     /**
      * Get the params for a specific SQL statement within a batch.
      * Note that there is usually a batch size of one.
      */
-    static Object[] paramsForStatement(AdHocPlannedStatement statement, Object[] userparams) {
+    static ParameterSet paramsForStatement(AdHocPlannedStatement statement, ParameterSet userparams) {
         // When there are no user-provided parameters, statements may have parameterized constants.
-        if (userparams.length > 0) {
+        if (userparams.size() > 0) {
             return userparams;
         } else {
-            return statement.extractedParamArray();
+            return statement.extractedParams();
         }
     }
 
@@ -174,8 +175,8 @@ public abstract class AdHocBase extends VoltSystemProcedure {
      */
     public VoltTable[] runAdHoc(SystemProcedureExecutionContext ctx, byte[] serializedBatchData) {
 
-        Pair<Object[], AdHocPlannedStatement[]> data = decodeSerializedBatchData(serializedBatchData);
-        Object[] userparams = data.getFirst();
+        Pair<ParameterSet, AdHocPlannedStatement[]> data = decodeSerializedBatchData(serializedBatchData);
+        ParameterSet userparams = data.getFirst();
         AdHocPlannedStatement[] statements = data.getSecond();
 
         if (statements.length == 0) {
@@ -214,8 +215,7 @@ public abstract class AdHocBase extends VoltSystemProcedure {
                     statement.core.parameterTypes,
                     m_site);
 
-            Object[] params = paramsForStatement(statement, userparams);
-            voltQueueSQL(stmt, params);
+            m_runner.voltQueueSQL(stmt, paramsForStatement(statement, userparams));
         }
 
         return voltExecuteSQL(true);
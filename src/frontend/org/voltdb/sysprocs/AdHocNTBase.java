@@ -454,11 +454,21 @@ public abstract class AdHocNTBase extends UpdateApplicationBase {
         else {
             if (plannedStmtBatch.isReadOnly()) {
                 procedureName = "@AdHoc_RO_MP";
+                // Send the keys of an IN list on the partitioning column along, so that the
+                // read goes only to the partitions they hash to.
+                byte[][] keys = null;
+                try {
+                    keys = plannedStmtBatch.partitioningInListKeys();
+                }
+                catch (VoltTypeException vte) {
+                    // Leave it to the execution to report the bad parameter.
+                }
+                params = new Object[] { keys == null ? new byte[0][] : keys, buf.array() };
             }
             else {
                 procedureName = "@AdHoc_RW_MP";
+                params = new Object[] { buf.array() };
             }
-            params = new Object[] { buf.array() };
         }
 
         return callProcedure(procedureName, params);
@@ -37,11 +37,13 @@ public class AdHoc_RO_MP extends AdHocBase {
      * Use the base class implementation.
      *
      * @param ctx execution context
+     * @param partitioningKeys keys that picked the partitions to read, only used for routing
      * @param serializedBatchData serialized batch data
      *
      * @return  results as VoltTable array
      */
-    public VoltTable[] run(SystemProcedureExecutionContext ctx, byte[] serializedBatchData) {
+    public VoltTable[] run(SystemProcedureExecutionContext ctx, byte[][] partitioningKeys,
+                           byte[] serializedBatchData) {
         return runAdHoc(ctx, serializedBatchData);
     }
 
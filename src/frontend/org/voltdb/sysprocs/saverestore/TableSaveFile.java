@@ -26,10 +26,15 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.Checksum;
 
@@ -41,11 +46,13 @@ import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
+import org.voltdb.SnapshotRestoreStats;
 import org.voltdb.messaging.FastDeserializer;
-import org.voltdb.utils.CompressionService;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.PosixAdvise;
 
 /**
@@ -90,6 +97,30 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
             org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    private static final int COMPRESSED_CHUNKSIZE = CompressionCodec.maxCompressedLengthOfAny(DEFAULT_CHUNKSIZE);
+
+    /**
+     * Number of threads, shared by every save file being read, that verify and decompress
+     * version 2 chunks while the thread reading the file moves on to the next chunk. How many
+     * chunks of one file are in flight at once is still bounded by the read ahead.
+     */
+    public static final int DECOMPRESSION_THREADS = Integer.getInteger("SNAPSHOT_RESTORE_DECOMPRESSION_THREADS",
+            Math.max(1, Math.min(8, CoreUtils.availableProcessors() / 2)));
+
+    private static ThreadPoolExecutor s_decompressionPool = null;
+
+    private static synchronized Executor getDecompressionPool() {
+        if (s_decompressionPool == null) {
+            s_decompressionPool = new ThreadPoolExecutor(
+                    DECOMPRESSION_THREADS, DECOMPRESSION_THREADS,
+                    10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    CoreUtils.getThreadFactory(null, "Restore Decompressor", CoreUtils.SMALL_STACK_SIZE, true, null));
+            s_decompressionPool.allowCoreThreadTimeOut(true);
+        }
+        return s_decompressionPool;
+    }
+
     public TableSaveFile(
             FileInputStream fis,
             int readAheadChunks,
@@ -243,6 +274,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_codec = CompressionCodec.SNAPPY;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -288,6 +320,13 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                // Save files from before the codec could be chosen are all Snappy
+                try {
+                    m_codec = CompressionCodec.valueOf(obj.optString("compressionCodec", "SNAPPY"));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Save file compressed with unknown codec " +
+                                          obj.optString("compressionCodec"));
+                }
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -404,6 +443,12 @@ public class TableSaveFile
             while (!m_availableChunks.isEmpty()) {
                 m_availableChunks.poll().discard();
             }
+            for (Container c : m_pendingChunks.values()) {
+                if (c != null) {
+                    c.discard();
+                }
+            }
+            m_pendingChunks.clear();
             notifyAll();
         }
 
@@ -432,10 +477,15 @@ public class TableSaveFile
         }
         if (!m_hasMoreChunks.get()) {
             final Container c = m_availableChunks.poll();
+            if (c != null) {
+                m_progress.chunkLoaded();
+            }
             return c;
         }
 
         if (m_chunkReader == null) {
+            m_progress = SnapshotRestoreStats.getTableProgress(m_tableName);
+            m_progress.fileStarted(m_saveFile.size());
             m_chunkReader = new ChunkReader();
             m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
             m_chunkReaderThread.start();
@@ -454,6 +504,7 @@ public class TableSaveFile
         }
         if (c != null) {
             m_chunkReads.release();
+            m_progress.chunkLoaded();
         } else {
             if (m_chunkReaderException != null) {
                 throw m_chunkReaderException;
@@ -483,6 +534,7 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionCodec m_codec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
@@ -519,6 +571,46 @@ public class TableSaveFile
     private ChunkReader m_chunkReader = null;
     private Thread m_chunkReaderThread = null;
     private IOException m_chunkReaderException = null;
+    private SnapshotRestoreStats.TableProgress m_progress = null;
+
+    /*
+     * Chunks that finished decompressing ahead of an earlier chunk, keyed by the order
+     * they were read in. A null value is a chunk that was dropped. Guarded by this.
+     */
+    private final HashMap<Long, Container> m_pendingChunks = new HashMap<Long, Container>();
+    private long m_nextChunkSequence = 0;
+    private int m_chunksDecompressing = 0;
+    private final ConcurrentLinkedQueue<BBContainer> m_compressedBuffers = new ConcurrentLinkedQueue<BBContainer>();
+
+    private synchronized void publishChunk(long sequence, Container c) {
+        m_pendingChunks.put(sequence, c);
+        while (m_pendingChunks.containsKey(m_nextChunkSequence)) {
+            final Container next = m_pendingChunks.remove(m_nextChunkSequence++);
+            if (next != null) {
+                m_availableChunks.offer(next);
+            }
+        }
+        notifyAll();
+    }
+
+    private void skipChunk(long sequence) {
+        publishChunk(sequence, null);
+        m_chunkReads.release();
+    }
+
+    private synchronized void failChunkReader(IOException e) {
+        m_hasMoreChunks.set(false);
+        if (m_chunkReaderException == null) {
+            m_chunkReaderException = e;
+        }
+        notifyAll();
+    }
+
+    private synchronized void markAllPartitionsCorrupted() {
+        for (int partitionId : m_partitionIds) {
+            m_corruptedPartitions.add(partitionId);
+        }
+    }
 
     /**
      * Thread to read chunks from the disk
@@ -528,137 +620,226 @@ public class TableSaveFile
         /*
          * The old method was out of hand. Going to start a new one with a different format
          * that should be easier to understand and validate.
+         *
+         * Reading is pipelined. This thread only does IO, pulling the compressed payload of
+         * each chunk into a buffer of its own and handing it to the decompression pool, which
+         * verifies the CRC and decompresses while this thread reads ahead. Chunks are numbered
+         * as they are read and published in file order regardless of the order they finish in.
          */
         private void readChunksV2() {
-            //For reading the compressed input.
-            final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
-            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
             long sinceLastFAdvise = Long.MAX_VALUE;
             long positionAtLastFAdvise = 0;
+            long sequence = 0;
+            boolean reachedEOF = false;
 
-            while (m_hasMoreChunks.get()) {
-                if (sinceLastFAdvise > 1024 * 1024 * 48) {
-                    sinceLastFAdvise = 0;
-                    VoltLogger log = new VoltLogger("SNAPSHOT");
-                    try {
-                        final long position = m_saveFile.position();
-                        long retval = PosixAdvise.fadvise(
-                                m_fd,
-                                position,
-                                position + 1024 * 1024 * 64,
-                                PosixAdvise.POSIX_FADV_WILLNEED);
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
-                        }
-
-                        //Get aligned start and end position
-                        final long fadviseStart = positionAtLastFAdvise;
-                        //-1 because we don't want to drop the last page because
-                        //We will be reading it soon
-                        positionAtLastFAdvise = ((position / Bits.pageSize()) - 1) * Bits.pageSize();
-                        final long length = positionAtLastFAdvise - fadviseStart;
-                        if (length > 0) {
-                            retval = PosixAdvise.fadvise(
+            try {
+                while (!reachedEOF && m_hasMoreChunks.get()) {
+                    if (sinceLastFAdvise > 1024 * 1024 * 48) {
+                        sinceLastFAdvise = 0;
+                        VoltLogger log = new VoltLogger("SNAPSHOT");
+                        try {
+                            final long position = m_saveFile.position();
+                            long retval = PosixAdvise.fadvise(
                                     m_fd,
-                                    fadviseStart,
-                                    length,
-                                    PosixAdvise.POSIX_FADV_DONTNEED);
-                        }
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                                    position,
+                                    position + 1024 * 1024 * 64,
+                                    PosixAdvise.POSIX_FADV_WILLNEED);
+                            if (retval != 0) {
+                                log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                            }
+
+                            //Get aligned start and end position
+                            final long fadviseStart = positionAtLastFAdvise;
+                            //-1 because we don't want to drop the last page because
+                            //We will be reading it soon
+                            positionAtLastFAdvise = ((position / Bits.pageSize()) - 1) * Bits.pageSize();
+                            final long length = positionAtLastFAdvise - fadviseStart;
+                            if (length > 0) {
+                                retval = PosixAdvise.fadvise(
+                                        m_fd,
+                                        fadviseStart,
+                                        length,
+                                        PosixAdvise.POSIX_FADV_DONTNEED);
+                            }
+                            if (retval != 0) {
+                                log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                            }
+                            positionAtLastFAdvise = position;
+                        } catch (Throwable t) {
+                            log.info("Exception attempting fadvise", t);
                         }
-                        positionAtLastFAdvise = position;
-                    } catch (Throwable t) {
-                        log.info("Exception attempting fadvise", t);
                     }
-                }
-
-                /*
-                 * Limit the number of chunk materialized into memory at one time
-                 */
-                try {
-                    m_chunkReads.acquire();
-                } catch (InterruptedException e) {
-                    fileInputBufferC.discard();
-                    return;
-                }
-                boolean expectedAnotherChunk = false;
-                Container c = null;
-                try {
 
                     /*
-                     * Get the length of the next chunk, partition id, crc for partition id, and length prefix,
-                     * and then the CRC of the compressed payload
+                     * Limit the number of chunk materialized into memory at one time
                      */
-                    ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
-                    while (chunkLengthB.hasRemaining()) {
-                        final int read = m_saveFile.read(chunkLengthB);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                        sinceLastFAdvise += read;
+                    try {
+                        m_chunkReads.acquire();
+                    } catch (InterruptedException e) {
+                        return;
                     }
-                    int nextChunkLength = chunkLengthB.getInt(0);
-                    expectedAnotherChunk = true;
+                    boolean expectedAnotherChunk = false;
+                    BBContainer compressedC = null;
+                    try {
 
-                    /*
-                     * Get the partition id and its CRC (CRC now covers length prefix) and validate it. Validating the
-                     * partition ID for the chunk separately makes it possible to
-                     * continue processing chunks from other partitions if only one partition
-                     * has corrupt chunks in the file.
-                     */
-                    assert(m_checksumType == ChecksumType.CRC32C);
-                    final Checksum partitionIdCRC = new PureJavaCrc32C();
-                    final int nextChunkPartitionId = chunkLengthB.getInt(4);
-                    final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
+                        /*
+                         * Get the length of the next chunk, partition id, crc for partition id, and length prefix,
+                         * and then the CRC of the compressed payload
+                         */
+                        ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
+                        while (chunkLengthB.hasRemaining()) {
+                            final int read = m_saveFile.read(chunkLengthB);
+                            if (read == -1) {
+                                throw new EOFException();
+                            }
+                            sinceLastFAdvise += read;
+                        }
+                        int nextChunkLength = chunkLengthB.getInt(0);
+                        expectedAnotherChunk = true;
 
-                    partitionIdCRC.update(chunkLengthB.array(), 0, 8);
-                    int generatedValue = (int)partitionIdCRC.getValue();
-                    if (generatedValue != nextChunkPartitionIdCRC) {
-                        chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
+                        /*
+                         * Get the partition id and its CRC (CRC now covers length prefix) and validate it. Validating the
+                         * partition ID for the chunk separately makes it possible to
+                         * continue processing chunks from other partitions if only one partition
+                         * has corrupt chunks in the file.
+                         */
+                        assert(m_checksumType == ChecksumType.CRC32C);
+                        final Checksum partitionIdCRC = new PureJavaCrc32C();
+                        final int nextChunkPartitionId = chunkLengthB.getInt(4);
+                        final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
+
+                        partitionIdCRC.update(chunkLengthB.array(), 0, 8);
+                        int generatedValue = (int)partitionIdCRC.getValue();
+                        if (generatedValue != nextChunkPartitionIdCRC) {
+                            chunkLengthB.position(0);
+                            markAllPartitionsCorrupted();
+                            throw new IOException("Chunk partition ID CRC check failed. " +
+                                    "This corrupts all partitions in this file");
                         }
-                        throw new IOException("Chunk partition ID CRC check failed. " +
-                                "This corrupts all partitions in this file");
-                    }
 
-                    /*
-                     * CRC for the data portion of the chunk
-                     */
-                    final int nextChunkCRC = chunkLengthB.getInt(12);
+                        /*
+                         * CRC for the data portion of the chunk
+                         */
+                        final int nextChunkCRC = chunkLengthB.getInt(12);
 
-                    /*
-                     * Sanity check the length value to ensure there isn't
-                     * a runtime exception or OOM.
-                     */
-                    if (nextChunkLength < 0) {
-                        throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
-                    }
+                        /*
+                         * Sanity check the length value to ensure there isn't
+                         * a runtime exception or OOM.
+                         */
+                        if (nextChunkLength < 0) {
+                            throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
+                        }
 
-                    if (nextChunkLength > fileInputBuffer.capacity()) {
-                        throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
-                                "> DEFAULT_CHUNKSIZE bytes");
-                    }
+                        if (nextChunkLength > COMPRESSED_CHUNKSIZE) {
+                            throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
+                                    "> DEFAULT_CHUNKSIZE bytes");
+                        }
 
-                    /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
-                     */
-                    fileInputBuffer.clear();
-                    fileInputBuffer.limit(nextChunkLength);
-                    while (fileInputBuffer.hasRemaining()) {
-                        final int read = m_saveFile.read(fileInputBuffer);
-                        if (read == -1) {
-                            throw new EOFException();
+                        /*
+                         * Go fetch the compressed data, the CRC check and decompression
+                         * happen on the decompression pool
+                         */
+                        compressedC = getCompressedBuffer();
+                        final ByteBuffer fileInputBuffer = compressedC.b();
+                        fileInputBuffer.clear();
+                        fileInputBuffer.limit(nextChunkLength);
+                        while (fileInputBuffer.hasRemaining()) {
+                            final int read = m_saveFile.read(fileInputBuffer);
+                            if (read == -1) {
+                                throw new EOFException();
+                            }
+                            sinceLastFAdvise += read;
                         }
-                        sinceLastFAdvise += read;
+                        fileInputBuffer.flip();
+                        m_progress.chunkRead(chunkLengthB.capacity() + nextChunkLength);
+
+                        final ChunkDecompressor decompressor =
+                                new ChunkDecompressor(sequence++, nextChunkPartitionId, nextChunkCRC, compressedC);
+                        synchronized (TableSaveFile.this) {
+                            m_chunksDecompressing++;
+                        }
+                        compressedC = null;
+                        getDecompressionPool().execute(decompressor);
+                    } catch (EOFException eof) {
+                        reachedEOF = true;
+                        if (expectedAnotherChunk) {
+                            failChunkReader(new IOException(
+                                    "Expected to find another chunk but reached end of file instead"));
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        failChunkReader(e);
+                    } catch (BufferUnderflowException e) {
+                        failChunkReader(new IOException(e));
+                    } catch (BufferOverflowException e) {
+                        failChunkReader(new IOException(e));
+                    } catch (IndexOutOfBoundsException e) {
+                        failChunkReader(new IOException(e));
+                    } finally {
+                        if (compressedC != null) m_compressedBuffers.offer(compressedC);
                     }
-                    fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                }
+            } finally {
+                awaitDecompressors();
+                BBContainer cont;
+                while ((cont = m_compressedBuffers.poll()) != null) {
+                    cont.discard();
+                }
+            }
+        }
+
+        private BBContainer getCompressedBuffer() {
+            BBContainer c = m_compressedBuffers.poll();
+            if (c == null) {
+                c = DBBPool.allocateDirect(COMPRESSED_CHUNKSIZE);
+            }
+            return c;
+        }
+
+        /*
+         * Wait for every chunk handed to the decompression pool to be published or
+         * dropped so that the end of the chunk stream is only signalled once it is real
+         * and nothing touches the buffers after close() frees them.
+         */
+        private void awaitDecompressors() {
+            boolean interrupted = false;
+            synchronized (TableSaveFile.this) {
+                while (m_chunksDecompressing > 0) {
+                    try {
+                        TableSaveFile.this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Verifies the CRC of one chunk's compressed payload and decompresses it into a
+         * VoltTable serialization, runs on the decompression pool.
+         */
+        private class ChunkDecompressor implements Runnable {
+            private final long m_sequence;
+            private final int m_partitionId;
+            private final int m_crc;
+            private final BBContainer m_compressed;
+
+            ChunkDecompressor(long sequence, int partitionId, int crc, BBContainer compressed) {
+                m_sequence = sequence;
+                m_partitionId = partitionId;
+                m_crc = crc;
+                m_compressed = compressed;
+            }
+
+            @Override
+            public void run() {
+                Container c = null;
+                try {
+                    final ByteBuffer fileInputBuffer = m_compressed.b();
+                    final long startTime = System.nanoTime();
 
                     /*
                      * Validate the rest of the chunk. This can fail if the data is corrupted
@@ -666,11 +847,14 @@ public class TableSaveFile
                      */
                     final int calculatedCRC =
                             DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
+                    if (calculatedCRC != m_crc) {
+                        m_progress.chunkCorrupt();
+                        synchronized (TableSaveFile.this) {
+                            m_corruptedPartitions.add(m_partitionId);
+                        }
                         if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
+                            skipChunk(m_sequence);
+                            return;
                         } else {
                             throw new IOException("CRC mismatch in saved table chunk");
                         }
@@ -682,52 +866,50 @@ public class TableSaveFile
                      * be sucked straight in. There is a little funny business to overwrite the
                      * partition id that is not part of the serialization format
                      */
-                    c = getOutputBuffer(nextChunkPartitionId);
+                    c = getOutputBuffer(m_partitionId);
 
                     /*
                      * If the length value is wrong or not all data made it to disk this read will
                      * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
+                     * so all partitions are now corrupt.
                      */
-                    boolean completedRead = false;
+                    final int uncompressedLength;
                     try {
+                        uncompressedLength = m_codec.uncompressedLength(fileInputBuffer);
                         final ByteBuffer buf = c.b();
                         /*
                          * Assemble a VoltTable out of the chunk of tuples.
                          * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
+                         * then copy the tuple data. The header is shared with the other
+                         * decompressors so use a private view of it.
                          */
+                        final ByteBuffer tableHeader = m_tableHeader.duplicate();
                         buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
+                        buf.limit(uncompressedLength + tableHeader.capacity());
+                        tableHeader.position(0);
+                        buf.put(tableHeader);
                         //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
+                        m_codec.uncompress(fileInputBuffer, buf);
+                    } catch (IOException | RuntimeException e) {
+                        m_progress.chunkCorrupt();
+                        markAllPartitionsCorrupted();
+                        if (m_continueOnCorruptedChunk) {
+                            skipChunk(m_sequence);
+                            return;
+                        } else {
+                            throw new IOException("Failed decompression of saved table chunk", e);
                         }
                     }
+                    m_progress.chunkDecompressed(uncompressedLength, System.nanoTime() - startTime);
 
                     /*
                      * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
                      * in case it is the length value that is corrupted
                      */
                     if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
+                        if (!m_relevantPartitionIds.contains(m_partitionId)) {
+                            skipChunk(m_sequence);
+                            return;
                         }
                     }
 
@@ -735,57 +917,27 @@ public class TableSaveFile
                      * VoltTable wants the buffer at the home position 0
                      */
                     c.b().position(0);
-
-                    synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
-                        TableSaveFile.this.notifyAll();
-                    }
-                } catch (EOFException eof) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks.set(false);
-                        if (expectedAnotherChunk) {
-                            m_chunkReaderException = new IOException(
-                                    "Expected to find another chunk but reached end of file instead");
-                        }
-                        TableSaveFile.this.notifyAll();
-                    }
+                    publishChunk(m_sequence, c);
+                    c = null;
                 } catch (IOException e) {
-                    e.printStackTrace();
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks.set(false);
-                        m_chunkReaderException = e;
-                        TableSaveFile.this.notifyAll();
-                    }
-                } catch (BufferUnderflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks.set(false);
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
-                } catch (BufferOverflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks.set(false);
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
-                    }
-                } catch (IndexOutOfBoundsException e) {
+                    failChunkReader(e);
+                } catch (RuntimeException e) {
+                    failChunkReader(new IOException(e));
+                } finally {
+                    if (c != null) c.discard();
+                    m_compressedBuffers.offer(m_compressed);
                     synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks.set(false);
-                        m_chunkReaderException = new IOException(e);
+                        m_chunksDecompressing--;
                         TableSaveFile.this.notifyAll();
                     }
-                } finally {
-                    if (c != null) c.discard();
                 }
             }
-            fileInputBufferC.discard();
         }
 
         private void readChunks() {
             //For reading the compressed input.
             BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+                    DBBPool.allocateDirect(COMPRESSED_CHUNKSIZE);
             ByteBuffer fileInputBuffer = fileInputBufferC.b();
             while (m_hasMoreChunks.get()) {
                 /*
@@ -880,7 +1032,7 @@ public class TableSaveFile
                             }
                         }
                         fileInputBuffer.flip();
-                        nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        nextChunkLength = m_codec.uncompressedLength(fileInputBuffer);
                     }
 
                     /*
@@ -926,7 +1078,7 @@ public class TableSaveFile
                         c.b().position(c.b().position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b().position();
                         if (isCompressed()) {
-                            CompressionService.decompressBuffer(fileInputBuffer, c.b());
+                            m_codec.uncompress(fileInputBuffer, c.b());
                             c.b().position(c.b().limit());
                         } else {
                             while (c.b().hasRemaining()) {
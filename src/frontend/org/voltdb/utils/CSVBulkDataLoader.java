@@ -22,6 +22,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltdb.ParameterConverter;
+import org.voltdb.VoltType;
 import org.voltdb.client.ClientImpl;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
@@ -38,12 +40,14 @@ public class CSVBulkDataLoader implements CSVDataLoader {
     private final BulkLoaderErrorHandler m_errHandler;
     private final AtomicLong m_failedInsertCount = new AtomicLong(0);
     private final BulkLoaderSuccessCallback m_successCallback;
+    private final Class<?>[] m_columnClasses;
 
     public CSVBulkDataLoader(ClientImpl client, String tableName, int batchSize, boolean upsertMode,
             BulkLoaderErrorHandler errHandler) throws Exception    {
         m_loader = client.getNewBulkLoader(tableName, batchSize, upsertMode, new CsvFailureCallback());
         m_errHandler = errHandler;
         m_successCallback = null;
+        m_columnClasses = getColumnClasses(m_loader.getColumnTypes());
     }
 
     public CSVBulkDataLoader(ClientImpl client, String tableName, int batchSize, boolean upsertMode,
@@ -51,6 +55,15 @@ public class CSVBulkDataLoader implements CSVDataLoader {
         m_loader = client.getNewBulkLoader(tableName, batchSize, upsertMode, new CsvFailureCallback(), successCallback);
         m_errHandler = errHandler;
         m_successCallback = successCallback;
+        m_columnClasses = getColumnClasses(m_loader.getColumnTypes());
+    }
+
+    private static Class<?>[] getColumnClasses(VoltType[] columnTypes) {
+        final Class<?>[] classes = new Class<?>[columnTypes.length];
+        for (int i = 0; i < columnTypes.length; i++) {
+            classes[i] = columnTypes[i].classFromType();
+        }
+        return classes;
     }
 
     public CSVBulkDataLoader(ClientImpl client, String tableName, int batchSize,
@@ -92,7 +105,30 @@ public class CSVBulkDataLoader implements CSVDataLoader {
 
     @Override
     public void insertRow(RowWithMetaData metaData, Object[] values) throws InterruptedException {
-        m_loader.insertRow(metaData, values);
+        m_loader.insertRow(metaData, convertRow(values));
+    }
+
+    /**
+     * Convert the fields to the column types on the thread inserting the row, so that the
+     * parsing threads share the conversion instead of the bulk loader doing all of it.
+     * A row that doesn't convert is passed on as it is, and the bulk loader reports it
+     * like before.
+     */
+    private Object[] convertRow(Object[] values) {
+        if (values == null || values.length != m_columnClasses.length) {
+            return values;
+        }
+        final Object[] converted = new Object[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    converted[i] = ParameterConverter.tryToMakeCompatible(m_columnClasses[i], values[i]);
+                }
+            }
+        } catch (Exception e) {
+            return values;
+        }
+        return converted;
     }
 
     @Override
@@ -36,8 +36,9 @@ import com.google_voltpatches.common.collect.HashBiMap;
 
 /**
  *
- * This is a single thread reader which feeds the lines after validating syntax
- * to CSVDataLoader.
+ * This reader feeds the lines after validating syntax to CSVDataLoader. It reads the whole
+ * input by itself, or, when a CSVFileSplitter is set, it is one of several readers that each
+ * take ranges of the file from the splitter until the file is done.
  *
  */
 class CSVFileReader implements Runnable {
@@ -59,6 +60,7 @@ class CSVFileReader implements Runnable {
     static CSVLoader.CSVConfig m_config = null;
     static Client m_csvClient = null;
     static ICsvListReader m_listReader = null;
+    static CSVFileSplitter m_splitter = null;
     long m_parsingTime = 0;
     private static final Map<VoltType, String> m_blankStrings = new EnumMap<VoltType, String>(VoltType.class);
     private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
@@ -66,8 +68,9 @@ class CSVFileReader implements Runnable {
     private final BulkLoaderErrorHandler m_errHandler;
     private final VoltType[] m_columnTypes;
     private final int m_columnCount;
-    private int headerlen;
-    private Integer[] order;
+    // The header is read once before the readers start and shared by all of them
+    private static int headerlen;
+    private static Integer[] order;
 
     static {
         m_blankStrings.put(VoltType.TINYINT, "0");
@@ -82,9 +85,29 @@ class CSVFileReader implements Runnable {
     }
 
     public static void initializeReader(CSVLoader.CSVConfig config, Client csvClient, ICsvListReader reader) {
+        initializeReader(config, csvClient, reader, null);
+    }
+
+    public static void initializeReader(CSVLoader.CSVConfig config, Client csvClient, ICsvListReader reader,
+            CSVFileSplitter splitter) {
         m_config = config;
         m_csvClient = csvClient;
         m_listReader = reader;
+        m_splitter = splitter;
+        m_totalRowCount.set(0);
+        m_totalLineCount.set(0);
+    }
+
+    /**
+     * Read the header from the start of the input and map the file columns to the table
+     * columns. Must be called before any reader starts.
+     */
+    public static void initializeHeader(CSVDataLoader loader) {
+        if (!checkHeader(loader)) {
+            m_log.error("In the CSV file " + m_config.file + ", the header "+ m_listReader.getUntokenizedRow() +" does not match "
+                    + "an existing column in the table " + m_config.table + ".");
+            System.exit(-1);
+        }
     }
 
     public CSVFileReader(CSVDataLoader loader, BulkLoaderErrorHandler errorHandler)    {
@@ -96,36 +119,64 @@ class CSVFileReader implements Runnable {
 
     @Override
     public void run() {
-        List<String> lineList;
-        //if header option is true, check whether csv first line is valid
-        if (m_config.header) {
-            if (!checkHeader()) {
-                m_log.error("In the CSV file " + m_config.file + ", the header "+ m_listReader.getUntokenizedRow() +" does not match "
-                        + "an existing column in the table " + m_config.table + ".");
-                System.exit(-1);
+        if (m_splitter == null) {
+            readRows(m_listReader, 0, m_config.skip);
+            return;
+        }
+
+        try {
+            CSVFileSplitter.Chunk chunk;
+            while ((chunk = m_splitter.take()) != null) {
+                final ICsvListReader reader = m_splitter.open(chunk);
+                try {
+                    if (!readRows(reader, chunk.m_lineOffset, 0)) {
+                        break;
+                    }
+                } finally {
+                    reader.close();
+                }
             }
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
         }
+    }
 
-        while ((m_config.limitrows-- > 0)) {
+    /**
+     * Read rows until the reader is done.
+     * @param reader     the reader to take rows from
+     * @param lineOffset the number of physical lines in the file before the reader's first line
+     * @param skip       the number of lines the reader skips
+     * @return false if loading should stop, true if the reader ran out of rows
+     */
+    private boolean readRows(ICsvListReader reader, long lineOffset, long skip) {
+        List<String> lineList;
+        long lineCount = 0;
+        boolean done = false;
+
+        // Rows are only limited when the input is read by a single reader
+        while (m_splitter != null || m_config.limitrows-- > 0) {
             if (m_errHandler.hasReachedErrorLimit()) {
                 break;
             }
 
             try {
-                //Initial setting of m_totalLineCount
-                if (m_listReader.getLineNumber() == 0) {
-                    m_totalLineCount.set(m_config.skip);
+                //Initial setting of lineCount
+                if (reader.getLineNumber() == 0) {
+                    lineCount = skip;
                 } else {
-                    m_totalLineCount.set(m_listReader.getLineNumber());
+                    lineCount = reader.getLineNumber();
                 }
                 long st = System.nanoTime();
-                lineList = m_listReader.read();
+                lineList = reader.read();
                 long end = System.nanoTime();
                 m_parsingTime += (end - st);
                 if (lineList == null) {
-                    if (m_totalLineCount.get() > m_listReader.getLineNumber()) {
-                        m_totalLineCount.set(m_listReader.getLineNumber());
+                    if (lineCount > reader.getLineNumber()) {
+                        lineCount = reader.getLineNumber();
                     }
+                    done = true;
                     break;
                 }
                 m_totalRowCount.incrementAndGet();
@@ -139,8 +190,8 @@ class CSVFileReader implements Runnable {
                 String[] reorderValues = new String[m_columnCount];
                 if ((lineCheckResult = checkparams_trimspace_reorder(lineValues, reorderValues)) != null) {
                     final RowWithMetaData metaData
-                            = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                    m_totalLineCount.get() + 1);
+                            = new RowWithMetaData(reader.getUntokenizedRow(),
+                                    lineOffset + lineCount + 1);
                     if (m_errHandler.handleError(metaData, null, lineCheckResult)) {
                         break;
                     }
@@ -148,15 +199,15 @@ class CSVFileReader implements Runnable {
                 }
 
                 RowWithMetaData lineData
-                        = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                m_listReader.getLineNumber());
+                        = new RowWithMetaData(reader.getUntokenizedRow(),
+                                lineOffset + reader.getLineNumber());
                 m_loader.insertRow(lineData, reorderValues);
             } catch (SuperCsvException e) {
-                //Catch rows that can not be read by superCSV m_listReader.
+                //Catch rows that can not be read by superCSV reader.
                 // e.g. items without quotes when strictquotes is enabled.
                 final RowWithMetaData metaData
-                        = new RowWithMetaData(m_listReader.getUntokenizedRow(),
-                                m_totalLineCount.get() + 1);
+                        = new RowWithMetaData(reader.getUntokenizedRow(),
+                                lineOffset + lineCount + 1);
                 if (m_errHandler.handleError(metaData, null, e.getMessage())) {
                     break;
                 }
@@ -168,23 +219,16 @@ class CSVFileReader implements Runnable {
                 break;
             }
         }
-
-        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
-        try {
-            m_log.debug("Waiting for CSVDataLoader to finish.");
-            m_loader.close();
-            m_log.debug("CSVDataLoader Done.");
-        } catch (Exception ex) {
-            m_log.warn("Stopped processing because of connection error. "
-                    + "A report will be generated with what we processed so far. Error: " + ex);
-        }
+        m_totalLineCount.addAndGet(lineCount);
+        return done;
     }
 
-    private boolean checkHeader() {
+    private static boolean checkHeader(CSVDataLoader loader) {
+        final int columnCount = loader.getColumnTypes().length;
         try {
             String[] firstline = m_listReader.getHeader(false);
             Set<String> firstset = new HashSet<String>();
-            BiMap<Integer, String> colNames = HashBiMap.create(m_loader.getColumnNames());
+            BiMap<Integer, String> colNames = HashBiMap.create(loader.getColumnNames());
             headerlen = firstline.length;
             // remove duplicate.
             for (String name : firstline) {
@@ -195,7 +239,7 @@ class CSVFileReader implements Runnable {
                 }
             }
             // whether column num matches.
-            if (headerlen < m_columnCount) {
+            if (headerlen < columnCount) {
                 return false;
             } else {
                 // whether column name has according table column.
@@ -205,7 +249,7 @@ class CSVFileReader implements Runnable {
                         matchColCount++;
                     }
                 }
-                if (matchColCount != m_columnCount) {
+                if (matchColCount != columnCount) {
                     return false;
                 }
             }
@@ -0,0 +1,297 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Splits a CSV file into byte ranges that each begin at the start of a record, so that
+ * several CSVFileReaders can tokenize one file in parallel.
+ *
+ * The file is memory mapped and scanned once, a byte at a time, by the splitter thread.
+ * The scan only tracks what the Tokenizer would do with quotes, escapes and line breaks,
+ * which is enough to tell whether a line break ends a record or sits inside a quoted value.
+ * Each range is queued as soon as it is found, together with the number of physical lines
+ * before it, so the readers can start parsing while the rest of the file is still scanned
+ * and can still report absolute line numbers. Readers map their range and decode it
+ * straight from the page cache.
+ *
+ * Splitting only works for charsets in which the separator, quote, escape and line break
+ * characters are single bytes that never appear inside another character, see canSplit().
+ */
+class CSVFileSplitter implements Runnable {
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+
+    /**
+     * Smallest range handed to a reader, settable so that tests can split small files.
+     */
+    static long MIN_CHUNK_BYTES = Long.getLong("CSVLOADER_MIN_CHUNK_BYTES", 1024 * 1024);
+    private static final long MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+    // Size of the windows the scan maps the file in
+    private static final int SCAN_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * A range of the file that starts at the beginning of a record.
+     */
+    static class Chunk {
+        final long m_start;
+        final long m_end;
+        // Number of physical lines in the file before m_start
+        final long m_lineOffset;
+
+        Chunk(long start, long end, long lineOffset) {
+            m_start = start;
+            m_end = end;
+            m_lineOffset = lineOffset;
+        }
+    }
+
+    private static final Chunk END_OF_FILE = new Chunk(-1, -1, -1);
+
+    private final CSVLoader.CSVConfig m_config;
+    private final CsvPreference m_csvPreference;
+    private final Charset m_charset;
+    private final RandomAccessFile m_file;
+    private final FileChannel m_channel;
+    private final long m_chunkBytes;
+    private final LinkedBlockingQueue<Chunk> m_chunks = new LinkedBlockingQueue<Chunk>();
+    // Physical lines skipped or taken by the header before the first range
+    private volatile long m_skippedLines = 0;
+
+    /**
+     * Whether the input described by the configuration can be split at byte offsets.
+     */
+    static boolean canSplit(CSVLoader.CSVConfig config) {
+        if (config.parsers <= 1 || config.file.equals("") || config.limitrows != Integer.MAX_VALUE) {
+            return false;
+        }
+        if (config.separator > 0x7f || config.quotechar > 0x7f || config.escape > 0x7f) {
+            return false;
+        }
+        final Charset charset;
+        try {
+            charset = Charset.forName(config.charset);
+        } catch (Exception e) {
+            return false;
+        }
+        // UTF-8 multi-byte sequences never contain ASCII bytes
+        if (!charset.equals(StandardCharsets.UTF_8) && charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+        final byte[] special = {'\n', '\r', (byte) config.separator, (byte) config.quotechar, (byte) config.escape};
+        return new String(special, charset).equals(new String(special, StandardCharsets.US_ASCII));
+    }
+
+    CSVFileSplitter(CSVLoader.CSVConfig config, CsvPreference csvPreference) throws IOException {
+        m_config = config;
+        m_csvPreference = csvPreference;
+        m_charset = Charset.forName(config.charset);
+        m_file = new RandomAccessFile(new File(config.file), "r");
+        m_channel = m_file.getChannel();
+        // Aim for several ranges per reader so that a reader that gets slow rows doesn't hold up the end
+        m_chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, m_channel.size() / (config.parsers * 8L)));
+    }
+
+    /**
+     * Wait for the next range of the file, or return null when the whole file has been handed out.
+     */
+    Chunk take() throws InterruptedException {
+        Chunk chunk = m_chunks.take();
+        if (chunk == END_OF_FILE) {
+            // Leave the marker for the other readers
+            m_chunks.put(END_OF_FILE);
+            return null;
+        }
+        return chunk;
+    }
+
+    /**
+     * The number of physical lines before the first range, only known once the scan is done.
+     */
+    long getSkippedLines() {
+        return m_skippedLines;
+    }
+
+    /**
+     * Open a reader over one range. It has no lines to skip and no header since the ranges
+     * begin after both.
+     */
+    ICsvListReader open(Chunk chunk) throws IOException {
+        final MappedByteBuffer buf = m_channel.map(MapMode.READ_ONLY, chunk.m_start, chunk.m_end - chunk.m_start);
+        final Tokenizer tokenizer = new Tokenizer(new InputStreamReader(new MappedInputStream(buf), m_charset),
+                m_csvPreference, m_config.strictquotes, m_config.escape, m_config.columnsizelimit, 0, false);
+        return new CsvListReader(tokenizer, m_csvPreference);
+    }
+
+    void close() {
+        try {
+            m_file.close();
+        } catch (IOException e) {
+            m_log.warn("Error closing CSV file: " + e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            scan();
+        } catch (IOException e) {
+            m_log.error("Failed to read CSV file " + m_config.file + ": " + e);
+        } finally {
+            m_chunks.offer(END_OF_FILE);
+        }
+    }
+
+    private void scan() throws IOException {
+        final long size = m_channel.size();
+        final byte quote = (byte) m_config.quotechar;
+        final byte escape = (byte) m_config.escape;
+
+        long pos = 0;
+        long lines = 0;
+        boolean prevCR = false;
+
+        // Skip the lines the Tokenizer would skip. With a header, the first non-blank line
+        // is the header and the skip count includes it.
+        final long skip = m_config.header ? m_config.skip + 1 : m_config.skip;
+        boolean sawHeader = !m_config.header;
+        boolean blankLine = true;
+        ByteBuffer window = null;
+        long windowStart = 0;
+        while (pos < size) {
+            if (window == null || pos - windowStart >= window.limit()) {
+                windowStart = pos;
+                window = m_channel.map(MapMode.READ_ONLY, pos, Math.min(SCAN_WINDOW_BYTES, size - pos));
+            }
+            final byte b = window.get((int) (pos - windowStart));
+            // Stop at the first data line, unless it is the \n of a \r\n line break
+            if (lines >= skip && sawHeader && !(prevCR && b == '\n')) {
+                break;
+            }
+            pos++;
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' || !prevCR) {
+                    lines++;
+                    if (!blankLine) {
+                        sawHeader = true;
+                    }
+                    blankLine = true;
+                }
+                prevCR = (b == '\r');
+                continue;
+            }
+            prevCR = false;
+            if ((b & 0xff) > ' ') {
+                blankLine = false;
+            }
+        }
+        m_skippedLines = lines;
+
+        boolean inQuotes = false;
+        boolean escaped = false;
+        prevCR = false;
+        long chunkStart = pos;
+        long chunkLines = lines;
+        while (pos < size) {
+            windowStart = pos;
+            window = m_channel.map(MapMode.READ_ONLY, pos, Math.min(SCAN_WINDOW_BYTES, size - pos));
+            final int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                final byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' || !prevCR) {
+                        lines++;
+                    }
+                    prevCR = (b == '\r');
+                    escaped = false;
+                    // A line break outside quotes ends the record, split after it if the range is big enough
+                    if (b == '\n' && !inQuotes && windowStart + i + 1 - chunkStart >= m_chunkBytes) {
+                        m_chunks.offer(new Chunk(chunkStart, windowStart + i + 1, chunkLines));
+                        chunkStart = windowStart + i + 1;
+                        chunkLines = lines;
+                    }
+                    continue;
+                }
+                prevCR = false;
+                if (inQuotes) {
+                    // A doubled quote leaves and re-enters quotes
+                    if (b == quote) {
+                        inQuotes = false;
+                    }
+                } else if (escaped) {
+                    escaped = false;
+                } else if (b == escape) {
+                    escaped = true;
+                } else if (b == quote) {
+                    inQuotes = true;
+                }
+            }
+            pos += limit;
+        }
+        if (chunkStart < size) {
+            m_chunks.offer(new Chunk(chunkStart, size, chunkLines));
+        }
+    }
+
+    /**
+     * Reads a mapped range without copying it into an intermediate buffer.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final ByteBuffer m_buf;
+
+        MappedInputStream(ByteBuffer buf) {
+            m_buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return m_buf.hasRemaining() ? (m_buf.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!m_buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, m_buf.remaining());
+            m_buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return m_buf.remaining();
+        }
+    }
+}
@@ -314,6 +314,9 @@ public class CSVLoader implements BulkLoaderErrorHandler {
         @Option(desc = "Batch Size for processing.")
         public int batch = 200;
 
+        @Option(desc = "number of threads parsing the input file (default: 1)")
+        int parsers = 1;
+
         @Option(desc = "First line of csv file is column name.", hasArg = false)
         boolean header = DEFAULT_HEADER;
 
@@ -356,6 +359,9 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (parsers < 1) {
+                exitWithMessageAndUsage("number of parsers must be >= 1");
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -446,6 +452,14 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             m_log.error("CSV file '" + config.file + "' could not be found.");
             System.exit(-1);
         }
+        // Several parsers split the file by byte ranges, otherwise the reader above reads all of it
+        CSVFileSplitter splitter = null;
+        if (CSVFileSplitter.canSplit(config)) {
+            splitter = new CSVFileSplitter(config, csvPreference);
+        } else if (config.parsers > 1) {
+            m_log.warn("The input is read by a single parser. Several parsers need an input file, " +
+                    "no --limitrows and a charset the file can be split in.");
+        }
         // Split server list
         final String[] serverlist = config.servers.split(",");
 
@@ -496,17 +510,52 @@ public class CSVLoader implements BulkLoaderErrorHandler {
                 listener.setLoader(dataLoader);
             }
 
-            CSVFileReader.initializeReader(cfg, csvClient, listReader);
+            CSVFileReader.initializeReader(cfg, csvClient, listReader, splitter);
+            if (config.header) {
+                CSVFileReader.initializeHeader(dataLoader);
+            }
 
-            CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
+            final CSVFileReader[] csvReaders = new CSVFileReader[splitter == null ? 1 : config.parsers];
+            final Thread[] readerThreads = new Thread[csvReaders.length];
+            for (int i = 0; i < csvReaders.length; i++) {
+                csvReaders[i] = new CSVFileReader(dataLoader, errHandler);
+                readerThreads[i] = new Thread(csvReaders[i]);
+                readerThreads[i].setName(csvReaders.length == 1 ? "CSVFileReader" : "CSVFileReader-" + i);
+                readerThreads[i].setDaemon(true);
+            }
 
-            Thread readerThread = new Thread(csvReader);
-            readerThread.setName("CSVFileReader");
-            readerThread.setDaemon(true);
+            Thread splitterThread = null;
+            if (splitter != null) {
+                splitterThread = new Thread(splitter);
+                splitterThread.setName("CSVFileSplitter");
+                splitterThread.setDaemon(true);
+                splitterThread.start();
+            }
 
-            //Wait for reader to finish.
-            readerThread.start();
-            readerThread.join();
+            //Wait for readers to finish.
+            for (Thread readerThread : readerThreads) {
+                readerThread.start();
+            }
+            for (Thread readerThread : readerThreads) {
+                readerThread.join();
+            }
+
+            //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+            try {
+                m_log.debug("Waiting for CSVDataLoader to finish.");
+                dataLoader.close();
+                m_log.debug("CSVDataLoader Done.");
+            } catch (Exception ex) {
+                m_log.warn("Stopped processing because of connection error. "
+                        + "A report will be generated with what we processed so far. Error: " + ex);
+            }
+
+            if (splitter != null) {
+                // The scan may still be running if the readers stopped early
+                splitterThread.join();
+                CSVFileReader.m_totalLineCount.addAndGet(splitter.getSkippedLines());
+                splitter.close();
+            }
 
             insertTimeEnd = System.currentTimeMillis();
 
@@ -514,7 +563,12 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            // The readers parse side by side, so parsing took as long as the busiest one
+            long parsingTime = 0;
+            for (CSVFileReader csvReader : csvReaders) {
+                parsingTime = Math.max(parsingTime, csvReader.m_parsingTime);
+            }
+            readerTime = parsingTime / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
@@ -0,0 +1,308 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.xerial.snappy.Snappy;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * The block compression codecs that can be chosen for data written to disk.
+ * The id of a codec is recorded next to the data it compressed, so it must never change
+ * and data written before codecs were selectable, which has no id, is Snappy.
+ *
+ * All of the buffer methods follow the conventions of Snappy's direct buffer API:
+ * the input is everything between position and limit and is not consumed,
+ * the output is written starting at its position, which does not move,
+ * and the limit of the output is set to the end of what was written.
+ *
+ * Snappy is the default. LZ4 compresses and decompresses faster at about the same ratio.
+ * DEFLATE is much denser but costs several times the CPU to compress and decompress.
+ * LZ4 and DEFLATE blocks are framed with a 4 byte uncompressed length by {@link FramedBlockCodec}.
+ */
+public enum CompressionCodec {
+    SNAPPY(0, new SnappyCodec()),
+    LZ4(1, new LZ4BlockCodec()),
+    DEFLATE(2, new DeflateBlockCodec());
+
+    private final int m_id;
+    private final Codec m_codec;
+
+    private CompressionCodec(int id, Codec codec) {
+        m_id = id;
+        m_codec = codec;
+    }
+
+    /**
+     * @return the id recorded with data compressed by this codec
+     */
+    public int id() {
+        return m_id;
+    }
+
+    public static CompressionCodec fromId(int id) throws IOException {
+        for (CompressionCodec codec : values()) {
+            if (codec.m_id == id) {
+                return codec;
+            }
+        }
+        throw new IOException("Unknown compression codec id " + id);
+    }
+
+    /**
+     * @return the largest compressed block any of the codecs can produce from this many bytes
+     */
+    public static int maxCompressedLengthOfAny(int uncompressedSize) {
+        int max = 0;
+        for (CompressionCodec codec : values()) {
+            max = Math.max(max, codec.maxCompressedLength(uncompressedSize));
+        }
+        return max;
+    }
+
+    public int maxCompressedLength(int uncompressedSize) {
+        return m_codec.maxCompressedLength(uncompressedSize);
+    }
+
+    /**
+     * @return the length of the compressed block
+     */
+    public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+        return m_codec.compress(uncompressed, compressed);
+    }
+
+    public int uncompressedLength(ByteBuffer compressed) throws IOException {
+        return m_codec.uncompressedLength(compressed);
+    }
+
+    /**
+     * @return the length of the uncompressed data
+     */
+    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+        return m_codec.uncompress(compressed, uncompressed);
+    }
+
+    private interface Codec {
+        int maxCompressedLength(int uncompressedSize);
+        int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException;
+        int uncompressedLength(ByteBuffer compressed) throws IOException;
+        int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException;
+    }
+
+    private static final class SnappyCodec implements Codec {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return Snappy.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+            return Snappy.compress(uncompressed, compressed);
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            return Snappy.uncompressedLength(compressed);
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            return Snappy.uncompress(compressed, uncompressed);
+        }
+    }
+
+    /**
+     * Base of the Java codecs, which only work on arrays. The buffers are staged through
+     * per thread scratch arrays and each block is framed with its uncompressed length,
+     * so the subclasses only compress and uncompress a block between two arrays.
+     */
+    private static abstract class FramedBlockCodec implements Codec {
+        private static final int FRAME_HEADER_BYTES = 4;
+
+        private static final ThreadLocal<byte[][]> s_scratch = new ThreadLocal<byte[][]>() {
+            @Override
+            protected byte[][] initialValue() {
+                return new byte[2][1024 * 32];
+            }
+        };
+
+        private static byte[] scratch(int index, int length) {
+            final byte[][] scratch = s_scratch.get();
+            if (scratch[index].length < length) {
+                scratch[index] = new byte[Math.max(scratch[index].length * 2, length)];
+            }
+            return scratch[index];
+        }
+
+        /**
+         * @return the largest block, without its frame header, compressed from this many bytes
+         */
+        abstract int maxBlockLength(int uncompressedSize);
+
+        /**
+         * @return the length of the compressed block written to the start of out
+         */
+        abstract int compressBlock(byte[] in, int length, byte[] out) throws IOException;
+
+        abstract void uncompressBlock(byte[] in, int length, byte[] out, int uncompressedLength) throws IOException;
+
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return FRAME_HEADER_BYTES + maxBlockLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+            final int length = uncompressed.remaining();
+            final byte[] in = scratch(0, length);
+            final byte[] out = scratch(1, maxBlockLength(length));
+            uncompressed.duplicate().get(in, 0, length);
+            final int compressedLength = compressBlock(in, length, out);
+            if (compressed.remaining() < FRAME_HEADER_BYTES + compressedLength) {
+                throw new IOException("Output buffer too small for the compressed block");
+            }
+            final ByteBuffer dest = compressed.duplicate();
+            dest.putInt(length);
+            dest.put(out, 0, compressedLength);
+            compressed.limit(dest.position());
+            return FRAME_HEADER_BYTES + compressedLength;
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.remaining() < FRAME_HEADER_BYTES) {
+                throw new IOException("Compressed block is too short");
+            }
+            final int length = compressed.duplicate().getInt(compressed.position());
+            if (length < 0) {
+                throw new IOException("Compressed block has a negative uncompressed length");
+            }
+            return length;
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            final int uncompressedLength = uncompressedLength(compressed);
+            if (uncompressed.remaining() < uncompressedLength) {
+                throw new IOException("Output buffer too small for the uncompressed block");
+            }
+            final int length = compressed.remaining() - FRAME_HEADER_BYTES;
+            final byte[] in = scratch(0, length);
+            final byte[] out = scratch(1, uncompressedLength);
+            final ByteBuffer src = compressed.duplicate();
+            src.position(src.position() + FRAME_HEADER_BYTES);
+            src.get(in, 0, length);
+            uncompressBlock(in, length, out, uncompressedLength);
+            final ByteBuffer dest = uncompressed.duplicate();
+            dest.put(out, 0, uncompressedLength);
+            uncompressed.limit(dest.position());
+            return uncompressedLength;
+        }
+    }
+
+    private static final class LZ4BlockCodec extends FramedBlockCodec {
+        private final LZ4Compressor m_compressor = LZ4Factory.fastestInstance().fastCompressor();
+        private final LZ4SafeDecompressor m_decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+        @Override
+        int maxBlockLength(int uncompressedSize) {
+            return m_compressor.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        int compressBlock(byte[] in, int length, byte[] out) throws IOException {
+            try {
+                return m_compressor.compress(in, 0, length, out, 0, out.length);
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        void uncompressBlock(byte[] in, int length, byte[] out, int uncompressedLength) throws IOException {
+            try {
+                if (m_decompressor.decompress(in, 0, length, out, 0, uncompressedLength) != uncompressedLength) {
+                    throw new IOException("LZ4 block decompressed to an unexpected length");
+                }
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static final class DeflateBlockCodec extends FramedBlockCodec {
+        private static final ThreadLocal<Deflater> s_deflater = new ThreadLocal<Deflater>() {
+            @Override
+            protected Deflater initialValue() {
+                return new Deflater();
+            }
+        };
+        private static final ThreadLocal<Inflater> s_inflater = new ThreadLocal<Inflater>() {
+            @Override
+            protected Inflater initialValue() {
+                return new Inflater();
+            }
+        };
+
+        @Override
+        int maxBlockLength(int uncompressedSize) {
+            // zlib's deflateBound() plus its header and trailer
+            return uncompressedSize + (uncompressedSize >> 12) + (uncompressedSize >> 14) +
+                    (uncompressedSize >> 25) + 13 + 6;
+        }
+
+        @Override
+        int compressBlock(byte[] in, int length, byte[] out) throws IOException {
+            final Deflater deflater = s_deflater.get();
+            deflater.reset();
+            deflater.setInput(in, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == out.length) {
+                    throw new IOException("Deflated block exceeds the maximum compressed length");
+                }
+                compressedLength += deflater.deflate(out, compressedLength, out.length - compressedLength);
+            }
+            return compressedLength;
+        }
+
+        @Override
+        void uncompressBlock(byte[] in, int length, byte[] out, int uncompressedLength) throws IOException {
+            final Inflater inflater = s_inflater.get();
+            inflater.reset();
+            inflater.setInput(in, 0, length);
+            try {
+                if (inflater.inflate(out, 0, uncompressedLength) != uncompressedLength || !inflater.finished()) {
+                    throw new IOException("Deflated block inflated to an unexpected length");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -50,6 +50,27 @@ public final class CompressionService {
         };
     }
 
+    /**
+     * The kinds of data written to disk whose compression codec can be chosen in the deployment file
+     */
+    public enum Use {
+        SNAPSHOT,   // native format snapshot save files
+        OVERFLOW    // persistent binary deque segments, e.g. export overflow
+    }
+
+    private static final CompressionCodec m_codecs[] = new CompressionCodec[Use.values().length];
+    static {
+        Arrays.fill(m_codecs, CompressionCodec.SNAPPY);
+    }
+
+    public static void setCodec(Use use, CompressionCodec codec) {
+        m_codecs[use.ordinal()] = codec;
+    }
+
+    public static CompressionCodec getCodec(Use use) {
+        return m_codecs[use.ordinal()];
+    }
+
     private static class IOBuffers {
         private final BBContainer input;
         private final BBContainer output;
@@ -129,6 +150,11 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(CompressionCodec.SNAPPY, inBuffer, outBufferC);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final CompressionCodec codec,
+            final ByteBuffer inBuffer, final BBContainer outBufferC) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -140,7 +166,7 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                codec.compress(inBuffer, outBuffer);
                 final int crc32c =
                         DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
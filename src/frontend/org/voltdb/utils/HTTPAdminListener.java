@@ -1026,6 +1026,10 @@ public class HTTPAdminListener {
         int poolsize = Integer.getInteger("HTTP_POOL_SIZE", 50);
         int timeout = Integer.getInteger("HTTP_REQUEST_TIMEOUT_SECONDS", 15);
         int cacheMaxAge = Integer.getInteger("HTTP_STATIC_CACHE_MAXAGE", 24*60*60); // 24 hours
+        // Keep-alive tuning for clients that send many requests over one connection
+        boolean keepAlive = Boolean.valueOf(System.getProperty("HTTP_KEEP_ALIVE", "true"));
+        int idleTimeout = Integer.getInteger("HTTP_IDLE_TIMEOUT_SECONDS", 30);
+        int outputBufferSize = Integer.getInteger("HTTP_OUTPUT_BUFFER_SIZE", 32 * 1024);
 
         String resolvedIntf = intf == null ? "" : intf.trim().isEmpty() ? ""
                 : HostAndPort.fromHost(intf).withDefaultPort(port).toString();
@@ -1066,7 +1070,9 @@ public class HTTPAdminListener {
             if (sslContextFactory == null) { // basic HTTP
                 // The socket channel connector seems to be faster for our use
                 //SelectChannelConnector connector = new SelectChannelConnector();
-                connector = new ServerConnector(m_server);
+                HttpConfiguration httpConfig = getHttpConfiguration(keepAlive, outputBufferSize);
+                connector = new ServerConnector(m_server, new HttpConnectionFactory(httpConfig));
+                connector.setIdleTimeout(idleTimeout * 1000L);
 
                 if (intf != null && !intf.trim().isEmpty()) {
                     connector.setHost(intf);
@@ -1077,7 +1083,10 @@ public class HTTPAdminListener {
                 connector.open();
                 m_server.addConnector(connector);
             } else { // HTTPS
-                m_server.addConnector(getSSLServerConnector(sslContextFactory, intf, port));
+                HttpConfiguration httpsConfig = getHttpConfiguration(keepAlive, outputBufferSize);
+                connector = getSSLServerConnector(sslContextFactory, httpsConfig, intf, port);
+                connector.setIdleTimeout(idleTimeout * 1000L);
+                m_server.addConnector(connector);
             }
 
             //m_server.setConnectors(new Connector[] { connector, sslConnector });
@@ -1152,10 +1161,17 @@ public class HTTPAdminListener {
         }
     }
 
-    private ServerConnector getSSLServerConnector(SslContextFactory sslContextFactory, String intf, int port)
-        throws IOException {
+    private static HttpConfiguration getHttpConfiguration(boolean keepAlive, int outputBufferSize) {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setPersistentConnectionsEnabled(keepAlive);
+        // Responses up to this size are sent with a content length, larger ones are chunked
+        httpConfig.setOutputBufferSize(outputBufferSize);
+        return httpConfig;
+    }
+
+    private ServerConnector getSSLServerConnector(SslContextFactory sslContextFactory, HttpConfiguration httpsConfig,
+            String intf, int port) throws IOException {
         // SSL HTTP Configuration
-        HttpConfiguration httpsConfig = new HttpConfiguration();
         httpsConfig.setSecureScheme("ssl");
         httpsConfig.setSecurePort(port);
         //Add this customizer to indicate we are in ssl land
@@ -0,0 +1,608 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DeferredSerialization;
+import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
+
+import com.google_voltpatches.common.base.Preconditions;
+
+/**
+ * A segment with the same on disk format as {@link PBDRegularSegment} that is accessed through
+ * a memory mapping instead of positioned channel reads and writes.
+ *
+ * The segment being appended to maps the full CHUNK_SIZE up front and appends by copying or
+ * compressing straight into the mapping, the unused tail of the file is truncated away when the
+ * segment is closed. Uncompressed entries are returned to readers as read only slices of the
+ * mapping without any copy, and compressed entries are decompressed directly out of the mapping.
+ *
+ * The appender publishes an entry by writing its bytes and then the volatile entry count, so a
+ * reader that has claimed an entry (see {@link MMapSegmentReader#claim()}) can slice or decompress
+ * it without holding the deque lock while the appender keeps going. Each returned container pins
+ * the mapping, which is only unmapped once the segment is closed and every container is discarded.
+ */
+public class PBDMMapSegment extends PBDSegment {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    private final Map<String, MMapSegmentReader> m_readCursors = new HashMap<>();
+    private final Map<String, MMapSegmentReader> m_closedCursors = new HashMap<>();
+
+    //ID of this segment
+    private final Long m_index;
+
+    private volatile int m_numOfEntries = -1;
+    private volatile int m_size = -1;
+
+    //Mapping of the file, null when the segment is closed
+    private MappedRegion m_region = null;
+    //Appender's view of the mapping, positioned at the end of the last entry. Null if opened for read only
+    private ByteBuffer m_writeBuf = null;
+
+    /**
+     * A mapping shared by the segment and the containers handed out from it. Unmapped when
+     * the last reference is released.
+     */
+    private static final class MappedRegion {
+        private final DBBPool.MBBContainer m_mapping;
+        private final AtomicInteger m_refs = new AtomicInteger(1);
+
+        MappedRegion(MappedByteBuffer buf) {
+            m_mapping = DBBPool.wrapMBB(buf);
+        }
+
+        MappedByteBuffer buffer() {
+            return m_mapping.b();
+        }
+
+        ByteBuffer slice(int offset, int length) {
+            ByteBuffer dup = m_mapping.b().duplicate();
+            dup.limit(offset + length);
+            dup.position(offset);
+            return dup.slice();
+        }
+
+        void retain() {
+            m_refs.incrementAndGet();
+        }
+
+        void release() {
+            if (m_refs.decrementAndGet() == 0) {
+                m_mapping.discard();
+            }
+        }
+    }
+
+    public PBDMMapSegment(Long index, File file) {
+        super(file);
+        m_index = index;
+        reset();
+    }
+
+    @Override
+    public long segmentId()
+    {
+        return m_index;
+    }
+
+    @Override
+    public File file()
+    {
+        return m_file;
+    }
+
+    @Override
+    public void reset()
+    {
+        m_syncedSinceLastEdit = false;
+    }
+
+    @Override
+    public int getNumEntries() throws IOException
+    {
+        if (m_closed) {
+            open(false, false);
+            closeReadersAndFile();
+        }
+        return m_numOfEntries;
+    }
+
+    @Override
+    public boolean isBeingPolled()
+    {
+        return !m_readCursors.isEmpty();
+    }
+
+    @Override
+    public boolean isOpenForReading(String cursorId) {
+        return m_readCursors.containsKey(cursorId);
+    }
+
+    @Override
+    public PBDSegmentReader openForRead(String cursorId) throws IOException
+    {
+        Preconditions.checkNotNull(cursorId, "Reader id must be non-null");
+        if (m_readCursors.containsKey(cursorId) || m_closedCursors.containsKey(cursorId)) {
+            throw new IOException("Segment is already open for reading for cursor " + cursorId);
+        }
+
+        if (m_closed) {
+            open(false, false);
+        }
+        MMapSegmentReader reader = new MMapSegmentReader(cursorId);
+        m_readCursors.put(cursorId, reader);
+        return reader;
+    }
+
+    @Override
+    public PBDSegmentReader getReader(String cursorId) {
+        PBDSegmentReader reader = m_closedCursors.get(cursorId);
+        return (reader == null) ? m_readCursors.get(cursorId) : reader;
+    }
+
+    @Override
+    protected void openForWrite(boolean emptyFile) throws IOException {
+        open(true, emptyFile);
+    }
+
+    private void open(boolean forWrite, boolean emptyFile) throws IOException {
+        if (!m_closed) {
+            throw new IOException("Segment is already opened");
+        }
+
+        if (!m_file.exists()) {
+            if (!forWrite) {
+                throw new IOException("File " + m_file + " does not exist");
+            }
+            m_syncedSinceLastEdit = false;
+        }
+        assert(m_ras == null);
+        m_ras = new RandomAccessFile(m_file, forWrite ? "rw" : "r");
+        m_fc = m_ras.getChannel();
+
+        try {
+            if (forWrite) {
+                m_region = new MappedRegion(m_fc.map(MapMode.READ_WRITE, 0, CHUNK_SIZE));
+                m_writeBuf = m_region.buffer().duplicate();
+                if (emptyFile) {
+                    initNumEntries(0, 0);
+                    m_writeBuf.position(SEGMENT_HEADER_BYTES);
+                } else {
+                    readHeader();
+                    m_writeBuf.position(endOfEntries());
+                }
+            } else {
+                m_region = new MappedRegion(m_fc.map(MapMode.READ_ONLY, 0, m_fc.size()));
+                readHeader();
+            }
+        } catch (IOException e) {
+            m_closed = false;
+            closeReadersAndFile();
+            throw e;
+        }
+
+        m_closed = false;
+    }
+
+    private void readHeader() {
+        final ByteBuffer buf = m_region.buffer();
+        if (buf.capacity() >= SEGMENT_HEADER_BYTES) {
+            m_size = buf.getInt(SIZE_OFFSET);
+            m_numOfEntries = buf.getInt(COUNT_OFFSET);
+        } else {
+            m_size = 0;
+            m_numOfEntries = 0;
+        }
+    }
+
+    private int endOfEntries() throws IOException {
+        final ByteBuffer buf = m_region.buffer();
+        int offset = SEGMENT_HEADER_BYTES;
+        for (int ii = 0; ii < m_numOfEntries; ii++) {
+            final int length = buf.getInt(offset);
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+            offset += OBJECT_HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    @Override
+    protected void initNumEntries(int count, int size) throws IOException {
+        if (m_writeBuf == null) throw new IOException("Segment is not open for write");
+        m_writeBuf.putInt(COUNT_OFFSET, count);
+        m_writeBuf.putInt(SIZE_OFFSET, size);
+        m_size = size;
+        m_numOfEntries = count;
+        m_syncedSinceLastEdit = false;
+    }
+
+    private void incrementNumEntries(int size)
+    {
+        final int numOfEntries = m_numOfEntries + 1;
+        final int totalSize = m_size + size;
+        m_writeBuf.putInt(COUNT_OFFSET, numOfEntries);
+        m_writeBuf.putInt(SIZE_OFFSET, totalSize);
+        m_size = totalSize;
+        // Volatile write of the count publishes the entry to readers
+        m_numOfEntries = numOfEntries;
+    }
+
+    /**
+     * Bytes of space available for inserting more entries
+     * @return
+     */
+    private int remaining() {
+        //Subtract 8 for the length and size prefix, same as PBDRegularSegment
+        return PBDSegment.CHUNK_SIZE - m_writeBuf.position() - SEGMENT_HEADER_BYTES;
+    }
+
+    @Override
+    public void closeAndDelete() throws IOException {
+        close();
+        m_file.delete();
+
+        m_numOfEntries = -1;
+        m_size = -1;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return m_closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_closedCursors.clear();
+        closeReadersAndFile();
+    }
+
+    private void closeReadersAndFile() throws IOException {
+        m_readCursors.clear();
+        try {
+            if (m_writeBuf != null && m_fc != null) {
+                // The mapping grew the file to CHUNK_SIZE, only keep what was written
+                m_fc.truncate(m_writeBuf.position());
+            }
+        } finally {
+            try {
+                if (m_ras != null) {
+                    m_ras.close();
+                }
+            } finally {
+                // Containers still held by readers keep the mapping alive
+                if (m_region != null) {
+                    m_region.release();
+                }
+                m_region = null;
+                m_writeBuf = null;
+                m_ras = null;
+                m_fc = null;
+                m_closed = true;
+                reset();
+            }
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        if (!m_syncedSinceLastEdit && m_writeBuf != null) {
+            m_region.buffer().force();
+        }
+        m_syncedSinceLastEdit = true;
+    }
+
+    @Override
+    public boolean hasAllFinishedReading() throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+
+        if (m_readCursors.size() == 0) return false;
+
+        for (MMapSegmentReader reader : m_readCursors.values()) {
+            if (reader.m_objectReadIndex < m_numOfEntries) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        if (m_writeBuf == null) throw new IOException("Segment is not open for write");
+        final ByteBuffer buf = cont.b();
+        final int remaining = buf.remaining();
+        if (remaining < 32 || !buf.isDirect()) compress = false;
+        final CompressionCodec codec = CompressionService.getCodec(CompressionService.Use.OVERFLOW);
+        final int maxCompressedSize = (compress ? codec.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
+        if (remaining() < maxCompressedSize) return false;
+
+        m_syncedSinceLastEdit = false;
+
+        try {
+            final int entryStart = m_writeBuf.position();
+            final int payloadStart = entryStart + OBJECT_HEADER_BYTES;
+            final int length;
+            m_writeBuf.position(payloadStart);
+            if (compress) {
+                length = codec.compress(buf, m_writeBuf.slice());
+            } else {
+                m_writeBuf.put(buf);
+                length = remaining;
+            }
+            m_writeBuf.putInt(entryStart, length);
+            m_writeBuf.putInt(entryStart + 4, compress ? compressedFlags(codec) : NO_FLAGS);
+            m_writeBuf.position(payloadStart + length);
+
+            incrementNumEntries(remaining);
+        } finally {
+            cont.discard();
+        }
+
+        return true;
+    }
+
+    @Override
+    public int offer(DeferredSerialization ds) throws IOException
+    {
+        if (m_closed) throw new IOException("closed");
+        if (m_writeBuf == null) throw new IOException("Segment is not open for write");
+        final int fullSize = ds.getSerializedSize() + OBJECT_HEADER_BYTES;
+        if (remaining() < fullSize) return -1;
+
+        m_syncedSinceLastEdit = false;
+
+        final int entryStart = m_writeBuf.position();
+        final ByteBuffer dest = m_writeBuf.slice();
+        dest.limit(fullSize);
+        final int written = PBDUtils.writeDeferredSerialization(dest, ds);
+        m_writeBuf.position(entryStart + OBJECT_HEADER_BYTES + written);
+
+        incrementNumEntries(written);
+        return written;
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * The on disk format is shared with {@link PBDRegularSegment}, and truncation rewrites and
+     * shortens the file in place, so it is done through a regular segment over the same file.
+     */
+    @Override
+    int parseAndTruncate(BinaryDeque.BinaryDequeTruncator truncator) throws IOException {
+        if (!m_closed) throw new IOException(("Segment should not be open before truncation"));
+        return new PBDRegularSegment(m_index, m_file).parseAndTruncate(truncator);
+    }
+
+    /**
+     * An entry that a reader has claimed but not yet materialized into a container.
+     */
+    class ClaimedEntry {
+        private final MMapSegmentReader m_reader;
+        private final MappedRegion m_entryRegion;
+        private final int m_offset;
+        private final int m_length;
+        private final int m_uncompressedLength;
+        // Null if the entry isn't compressed
+        private final CompressionCodec m_codec;
+
+        private ClaimedEntry(MMapSegmentReader reader, MappedRegion region, int offset, int length,
+                int uncompressedLength, CompressionCodec codec) {
+            m_reader = reader;
+            m_entryRegion = region;
+            m_offset = offset;
+            m_length = length;
+            m_uncompressedLength = uncompressedLength;
+            m_codec = codec;
+        }
+
+        /**
+         * Slice or decompress the entry out of the mapping. Does not need the deque lock.
+         * The mapping is unpinned if this throws, the caller must then {@link #abandon()} the entry.
+         */
+        BBContainer materialize(OutputContainerFactory factory) throws IOException {
+            BBContainer retcont = null;
+            try {
+                final ByteBuffer payload = m_entryRegion.slice(m_offset, m_length);
+                if (m_codec == null) {
+                    // Zero copy, the slice pins the mapping until it is discarded
+                    return m_reader.wrapContainer(payload.asReadOnlyBuffer(), null, m_entryRegion);
+                }
+                retcont = factory.getContainer(m_uncompressedLength);
+                retcont.b().limit(m_uncompressedLength);
+                m_codec.uncompress(payload, retcont.b());
+            } catch (IOException | RuntimeException e) {
+                if (retcont != null) {
+                    retcont.discard();
+                }
+                m_entryRegion.release();
+                throw e;
+            }
+            m_entryRegion.release();
+            return m_reader.wrapContainer(retcont.b(), retcont, null);
+        }
+
+        /**
+         * Count an entry that failed to materialize as discarded, nobody else ever will.
+         * Must be called with the deque lock held.
+         */
+        void abandon() {
+            m_reader.m_discardCount++;
+        }
+    }
+
+    class MMapSegmentReader implements PBDSegmentReader {
+        private final String m_cursorId;
+        private long m_readOffset = SEGMENT_HEADER_BYTES;
+        //Index of the next object to read, not an offset into the file
+        private int m_objectReadIndex = 0;
+        private int m_bytesRead = 0;
+        private int m_discardCount = 0;
+        private boolean m_closed = false;
+
+        public MMapSegmentReader(String cursorId) {
+            assert(cursorId != null);
+            m_cursorId = cursorId;
+        }
+
+        @Override
+        public boolean hasMoreEntries() throws IOException {
+            return m_objectReadIndex < m_numOfEntries;
+        }
+
+        @Override
+        public boolean allReadAndDiscarded() throws IOException {
+            return m_discardCount == m_numOfEntries;
+        }
+
+        /**
+         * Advance this reader past the next entry and pin the mapping for it. This is the only
+         * part of a poll that touches reader or segment state, the copy or decompression is done
+         * by {@link ClaimedEntry#materialize(OutputContainerFactory)}.
+         *
+         * @return the claimed entry or null if all entries were already read by this reader
+         */
+        ClaimedEntry claim() throws IOException {
+            if (m_closed) throw new IOException("Reader closed");
+
+            if (!hasMoreEntries()) {
+                return null;
+            }
+
+            final ByteBuffer buf = m_region.buffer();
+            final int offset = (int)m_readOffset;
+            final int length = buf.getInt(offset);
+            final int flags = buf.getInt(offset + 4);
+            final CompressionCodec codec = codecFromFlags(flags);
+
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+
+            final int payloadOffset = offset + OBJECT_HEADER_BYTES;
+            final int uncompressedLen;
+            if (codec != null) {
+                uncompressedLen = codec.uncompressedLength(m_region.slice(payloadOffset, length));
+            } else {
+                uncompressedLen = length;
+            }
+
+            m_region.retain();
+            m_readOffset = payloadOffset + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+
+            return new ClaimedEntry(this, m_region, payloadOffset, length, uncompressedLen, codec);
+        }
+
+        @Override
+        public BBContainer poll(OutputContainerFactory factory) throws IOException {
+            ClaimedEntry entry = claim();
+            if (entry == null) {
+                return null;
+            }
+            try {
+                return entry.materialize(factory);
+            } catch (IOException | RuntimeException e) {
+                entry.abandon();
+                throw e;
+            }
+        }
+
+        private BBContainer wrapContainer(ByteBuffer buf, final BBContainer retcont, final MappedRegion pinned) {
+            return new DBBPool.BBContainer(buf) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    if (retcont != null) {
+                        retcont.discard();
+                    }
+                    if (pinned != null) {
+                        pinned.release();
+                    }
+                    m_discardCount++;
+                }
+            };
+        }
+
+        @Override
+        public int uncompressedBytesToRead() {
+            if (m_closed) throw new RuntimeException("Reader closed");
+
+            return m_size - m_bytesRead;
+        }
+
+        @Override
+        public long readOffset() {
+            return m_readOffset;
+        }
+
+        @Override
+        public int readIndex() {
+            return m_objectReadIndex;
+        }
+
+        @Override
+        public void rewindReadOffset(int byBytes) {
+            m_readOffset -= byBytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_closed = true;
+            m_readCursors.remove(m_cursorId);
+            m_closedCursors.put(m_cursorId, this);
+            if (m_readCursors.isEmpty()) {
+                closeReadersAndFile();
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+            return m_closed;
+        }
+    }
+}
@@ -41,6 +41,7 @@ import java.util.Map;
  */
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
+    private static final String TRUNCATOR_CURSOR = "__truncator__";
 
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
     private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
@@ -266,7 +267,8 @@ public class PBDRegularSegment extends PBDSegment {
         final ByteBuffer buf = cont.b();
         final int remaining = buf.remaining();
         if (remaining < 32 || !buf.isDirect()) compress = false;
-        final int maxCompressedSize = (compress ? CompressionService.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
+        final CompressionCodec codec = CompressionService.getCodec(CompressionService.Use.OVERFLOW);
+        final int maxCompressedSize = (compress ? codec.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
         if (remaining() < maxCompressedSize) return false;
 
         m_syncedSinceLastEdit = false;
@@ -277,11 +279,11 @@ public class PBDRegularSegment extends PBDSegment {
 
             if (compress) {
                 destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
-                final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
+                final int compressedSize = codec.compress(buf, destBuf.b());
                 destBuf.b().limit(compressedSize);
 
                 m_tmpHeaderBuf.b().putInt(compressedSize);
-                m_tmpHeaderBuf.b().putInt(FLAG_COMPRESSED);
+                m_tmpHeaderBuf.b().putInt(compressedFlags(codec));
             } else {
                 destBuf = cont;
                 m_tmpHeaderBuf.b().putInt(remaining);
@@ -339,7 +341,78 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     @Override
-    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException
+    int parseAndTruncate(BinaryDeque.BinaryDequeTruncator truncator) throws IOException {
+        if (!m_closed) throw new IOException(("Segment should not be open before truncation"));
+
+        openForWrite(false);
+        PBDSegmentReader reader = openForRead(TRUNCATOR_CURSOR);
+
+        // Do stuff
+        final int initialEntryCount = getNumEntries();
+        int entriesTruncated = 0;
+        int sizeInBytes = 0;
+
+        DBBPool.BBContainer cont;
+        while (true) {
+            final long beforePos = reader.readOffset();
+
+            cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            if (cont == null) {
+                break;
+            }
+
+            final int compressedLength = (int) (reader.readOffset() - beforePos - OBJECT_HEADER_BYTES);
+            final int uncompressedLength = cont.b().limit();
+
+            try {
+                //Handoff the object to the truncator and await a decision
+                BinaryDeque.TruncatorResponse retval = truncator.parse(cont);
+                if (retval == null) {
+                    //Nothing to do, leave the object alone and move to the next
+                    sizeInBytes += uncompressedLength;
+                } else {
+                    //If the returned bytebuffer is empty, remove the object and truncate the file
+                    if (retval.status == BinaryDeque.TruncatorResponse.Status.FULL_TRUNCATE) {
+                        if (reader.readIndex() == 1) {
+                            /*
+                             * If truncation is occuring at the first object
+                             * Whammo! Delete the file.
+                             */
+                            entriesTruncated = -1;
+                        } else {
+                            entriesTruncated = initialEntryCount - (reader.readIndex() - 1);
+                            //Don't forget to update the number of entries in the file
+                            initNumEntries(reader.readIndex() - 1, sizeInBytes);
+                            m_fc.truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
+                        }
+                    } else {
+                        assert retval.status == BinaryDeque.TruncatorResponse.Status.PARTIAL_TRUNCATE;
+                        entriesTruncated = initialEntryCount - reader.readIndex();
+                        //Partial object truncation
+                        reader.rewindReadOffset(compressedLength + OBJECT_HEADER_BYTES);
+                        final long partialEntryBeginOffset = reader.readOffset();
+                        m_fc.position(partialEntryBeginOffset);
+
+                        final int written = writeTruncatedEntry(retval, compressedLength);
+                        sizeInBytes += written;
+
+                        initNumEntries(reader.readIndex(), sizeInBytes);
+                        m_fc.truncate(partialEntryBeginOffset + written + OBJECT_HEADER_BYTES);
+                    }
+
+                    break;
+                }
+            } finally {
+                cont.discard();
+            }
+        }
+
+        close();
+
+        return entriesTruncated;
+    }
+
+    private int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException
     {
         int written = 0;
         final DBBPool.BBContainer partialCont = DBBPool.allocateDirect(length);
@@ -410,7 +483,7 @@ public class PBDRegularSegment extends PBDSegment {
                 m_tmpHeaderBuf.b().flip();
                 final int length = m_tmpHeaderBuf.b().getInt();
                 final int flags = m_tmpHeaderBuf.b().getInt();
-                final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+                final CompressionCodec codec = codecFromFlags(flags);
                 final int uncompressedLen;
 
                 if (length < 1) {
@@ -418,7 +491,7 @@ public class PBDRegularSegment extends PBDSegment {
                 }
 
                 final DBBPool.BBContainer retcont;
-                if (compressed) {
+                if (codec != null) {
                     final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
                     try {
                         while (compressedBuf.b().hasRemaining()) {
@@ -429,10 +502,10 @@ public class PBDRegularSegment extends PBDSegment {
                         }
                         compressedBuf.b().flip();
 
-                        uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
+                        uncompressedLen = codec.uncompressedLength(compressedBuf.bDR());
                         retcont = factory.getContainer(uncompressedLen);
                         retcont.b().limit(uncompressedLen);
-                        CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
+                        codec.uncompress(compressedBuf.bDR(), retcont.b());
                     } finally {
                         compressedBuf.discard();
                     }
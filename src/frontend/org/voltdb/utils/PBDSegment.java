@@ -96,9 +96,12 @@ public abstract class PBDSegment {
         public boolean isClosed();
     }
 
-    private static final String TRUNCATOR_CURSOR = "__truncator__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
+    // The id of the codec of a compressed entry is kept in the second byte of its flags,
+    // entries written before the codec could be chosen have 0 there, which is Snappy
+    static final int CODEC_SHIFT = 8;
+    static final int CODEC_MASK = 0xFF;
 
     static final int COUNT_OFFSET = 0;
     static final int SIZE_OFFSET = 4;
@@ -106,6 +109,20 @@ public abstract class PBDSegment {
     // Has to be able to hold at least one object (compressed or not)
     public static final int CHUNK_SIZE = Integer.getInteger("PBDSEGMENT_CHUNK_SIZE", 1024 * 1024 * 64);
     static final int OBJECT_HEADER_BYTES = 8;
+
+    static int compressedFlags(CompressionCodec codec) {
+        return FLAG_COMPRESSED | (codec.id() << CODEC_SHIFT);
+    }
+
+    /**
+     * @return the codec of an entry with these flags, null if the entry isn't compressed
+     */
+    static CompressionCodec codecFromFlags(int flags) throws IOException {
+        if ((flags & FLAG_COMPRESSED) == 0) {
+            return null;
+        }
+        return CompressionCodec.fromId((flags >>> CODEC_SHIFT) & CODEC_MASK);
+    }
     static final int SEGMENT_HEADER_BYTES = 8;
     protected final File m_file;
 
@@ -165,8 +182,6 @@ public abstract class PBDSegment {
     // TODO: javadoc
     abstract int size();
 
-    abstract protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException;
-
     /**
      * Parse the segment and truncate the file if necessary.
      * @param truncator    A caller-supplied truncator that decides where in the segment to truncate
@@ -174,74 +189,5 @@ public abstract class PBDSegment {
      * of available objects in the PBD. -1 means that this whole segment should be removed.
      * @throws IOException
      */
-    int parseAndTruncate(BinaryDeque.BinaryDequeTruncator truncator) throws IOException {
-        if (!m_closed) throw new IOException(("Segment should not be open before truncation"));
-
-        openForWrite(false);
-        PBDSegmentReader reader = openForRead(TRUNCATOR_CURSOR);
-
-        // Do stuff
-        final int initialEntryCount = getNumEntries();
-        int entriesTruncated = 0;
-        int sizeInBytes = 0;
-
-        DBBPool.BBContainer cont;
-        while (true) {
-            final long beforePos = reader.readOffset();
-
-            cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
-            if (cont == null) {
-                break;
-            }
-
-            final int compressedLength = (int) (reader.readOffset() - beforePos - OBJECT_HEADER_BYTES);
-            final int uncompressedLength = cont.b().limit();
-
-            try {
-                //Handoff the object to the truncator and await a decision
-                BinaryDeque.TruncatorResponse retval = truncator.parse(cont);
-                if (retval == null) {
-                    //Nothing to do, leave the object alone and move to the next
-                    sizeInBytes += uncompressedLength;
-                } else {
-                    //If the returned bytebuffer is empty, remove the object and truncate the file
-                    if (retval.status == BinaryDeque.TruncatorResponse.Status.FULL_TRUNCATE) {
-                        if (reader.readIndex() == 1) {
-                            /*
-                             * If truncation is occuring at the first object
-                             * Whammo! Delete the file.
-                             */
-                            entriesTruncated = -1;
-                        } else {
-                            entriesTruncated = initialEntryCount - (reader.readIndex() - 1);
-                            //Don't forget to update the number of entries in the file
-                            initNumEntries(reader.readIndex() - 1, sizeInBytes);
-                            m_fc.truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
-                        }
-                    } else {
-                        assert retval.status == BinaryDeque.TruncatorResponse.Status.PARTIAL_TRUNCATE;
-                        entriesTruncated = initialEntryCount - reader.readIndex();
-                        //Partial object truncation
-                        reader.rewindReadOffset(compressedLength + OBJECT_HEADER_BYTES);
-                        final long partialEntryBeginOffset = reader.readOffset();
-                        m_fc.position(partialEntryBeginOffset);
-
-                        final int written = writeTruncatedEntry(retval, compressedLength);
-                        sizeInBytes += written;
-
-                        initNumEntries(reader.readIndex(), sizeInBytes);
-                        m_fc.truncate(partialEntryBeginOffset + written + OBJECT_HEADER_BYTES);
-                    }
-
-                    break;
-                }
-            } finally {
-                cont.discard();
-            }
-        }
-
-        close();
-
-        return entriesTruncated;
-    }
+    abstract int parseAndTruncate(BinaryDeque.BinaryDequeTruncator truncator) throws IOException;
 }
@@ -77,7 +77,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     /**
      * Used to read entries from the PBD. Multiple readers may be active at the same time,
-     * but only one read or write may happen concurrently.
+     * but only one read or write may happen concurrently. With memory mapped segments only
+     * claiming the next entry is done under the deque lock, copying it out is not.
      */
     private class ReadCursor implements BinaryDequeReader {
         private final String m_cursorId;
@@ -94,6 +95,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         @Override
         public BBContainer poll(OutputContainerFactory ocf) throws IOException {
+            final PBDSegment segment;
+            final PBDMMapSegment.ClaimedEntry entry;
             synchronized (PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("PBD.ReadCursor.poll(): " + m_cursorId + " - Reader has been closed");
@@ -117,12 +120,30 @@ public class PersistentBinaryDeque implements BinaryDeque {
                     segmentReader = m_segment.getReader(m_cursorId);
                     if (segmentReader == null) segmentReader = m_segment.openForRead(m_cursorId);
                 }
-                BBContainer retcont = segmentReader.poll(ocf);
-
-                m_numRead++;
-                assertions();
-                assert (retcont.b() != null);
-                return wrapRetCont(m_segment, retcont);
+                if (segmentReader instanceof PBDMMapSegment.MMapSegmentReader) {
+                    entry = ((PBDMMapSegment.MMapSegmentReader)segmentReader).claim();
+                    segment = m_segment;
+                    m_numRead++;
+                    assertions();
+                } else {
+                    BBContainer retcont = segmentReader.poll(ocf);
+
+                    m_numRead++;
+                    assertions();
+                    assert (retcont.b() != null);
+                    return wrapRetCont(m_segment, retcont);
+                }
+            }
+            // The entry is claimed and its mapping pinned, slicing or decompressing it
+            // doesn't need to hold up the writer and the other cursors
+            try {
+                return wrapRetCont(segment, entry.materialize(ocf));
+            } catch (IOException | RuntimeException e) {
+                // The claimed entry will never be discarded, keep the segment deletable
+                synchronized (PersistentBinaryDeque.this) {
+                    entry.abandon();
+                }
+                throw e;
             }
         }
 
@@ -237,6 +258,12 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     public static final OutputContainerFactory UNSAFE_CONTAINER_FACTORY = new UnsafeOutputContainerFactory();
 
+    /**
+     * Back segments with memory mappings ({@link PBDMMapSegment}) instead of file channel I/O.
+     * Read when each deque is created so tests can switch it.
+     */
+    static final String USE_MMAP_PROPERTY = "PBDSEGMENT_USE_MMAP";
+
     /**
      * Processors also log using this facility.
      */
@@ -244,6 +271,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     private final File m_path;
     private final String m_nonce;
+    private final boolean m_useMMap = Boolean.getBoolean(USE_MMAP_PROPERTY);
     private boolean m_initializedFromExistingFiles = false;
     private boolean m_awaitingTruncation = false;
 
@@ -483,6 +511,9 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     private PBDSegment newSegment(long segmentId, File file) {
+        if (m_useMMap) {
+            return new PBDMMapSegment(segmentId, file);
+        }
         return new PBDRegularSegment(segmentId, file);
     }
 
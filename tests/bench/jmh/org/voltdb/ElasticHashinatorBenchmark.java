@@ -0,0 +1,81 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Partition routing of a single parameter, done by the client for every
+ * affinity aware call and by the ClientInterface for every single partition call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticHashinatorBenchmark {
+
+    @Param({"8", "64"})
+    public int partitions;
+
+    private ElasticHashinator m_hashinator;
+    private final long m_longKeys[] = new long[1024];
+    private final String m_stringKeys[] = new String[1024];
+    private int m_next = 0;
+
+    @Setup
+    public void setup() {
+        m_hashinator = new ElasticHashinator(
+                ElasticHashinator.getConfigureBytes(partitions, ElasticHashinator.DEFAULT_TOTAL_TOKENS), false);
+        for (int i = 0; i < m_longKeys.length; i++) {
+            m_longKeys[i] = i * 0x9E3779B97F4A7C15L;
+            m_stringKeys[i] = "customer_" + i;
+        }
+    }
+
+    @Benchmark
+    public int hashLong() {
+        m_next = (m_next + 1) & (m_longKeys.length - 1);
+        return m_hashinator.getHashedPartitionForParameter(VoltType.BIGINT, m_longKeys[m_next]);
+    }
+
+    @Benchmark
+    public int hashString() {
+        m_next = (m_next + 1) & (m_stringKeys.length - 1);
+        return m_hashinator.getHashedPartitionForParameter(VoltType.STRING, m_stringKeys[m_next]);
+    }
+}
@@ -0,0 +1,98 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Serialization of procedure invocation parameters, on the path of every client
+ * call and every fragment sent to a remote site.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterSetBenchmark {
+
+    @Param({"SCALARS", "STRINGS", "ARRAYS"})
+    public String shape;
+
+    private ParameterSet m_params;
+    private ByteBuffer m_buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("SCALARS".equals(shape)) {
+            m_params = ParameterSet.fromArrayNoCopy(1L, 2, (short)3, (byte)4, 5.0d,
+                    new TimestampType(System.currentTimeMillis() * 1000), new BigDecimal("12345.678900000000"));
+        } else if ("STRINGS".equals(shape)) {
+            m_params = ParameterSet.fromArrayNoCopy("customer_0000001", "a somewhat longer string value for a varchar column",
+                    "x", new byte[64], 42L);
+        } else {
+            long longs[] = new long[128];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = i * 31L;
+            }
+            String strings[] = new String[32];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = "value_" + i;
+            }
+            m_params = ParameterSet.fromArrayNoCopy(longs, strings, 7);
+        }
+        m_buffer = ByteBuffer.allocate(m_params.getSerializedSize());
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() throws IOException {
+        m_buffer.clear();
+        m_params.flattenToBuffer(m_buffer);
+        return m_buffer;
+    }
+
+    @Benchmark
+    public ParameterSet roundTrip() throws IOException {
+        m_buffer.clear();
+        m_params.flattenToBuffer(m_buffer);
+        m_buffer.flip();
+        return ParameterSet.fromByteBuffer(m_buffer);
+    }
+}
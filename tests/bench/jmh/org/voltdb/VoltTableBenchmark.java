@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Building result tables row by row and walking them the way client code does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltTableBenchmark {
+
+    @Param({"10", "1000"})
+    public int rows;
+
+    private static final ColumnInfo COLUMNS[] = new ColumnInfo[] {
+        new ColumnInfo("ID", VoltType.BIGINT),
+        new ColumnInfo("QTY", VoltType.INTEGER),
+        new ColumnInfo("PRICE", VoltType.FLOAT),
+        new ColumnInfo("NAME", VoltType.STRING),
+        new ColumnInfo("TS", VoltType.TIMESTAMP)
+    };
+
+    private VoltTable m_table;
+    private final TimestampType m_ts = new TimestampType(0);
+
+    @Setup
+    public void setup() {
+        m_table = build();
+    }
+
+    private VoltTable build() {
+        VoltTable t = new VoltTable(COLUMNS);
+        for (int i = 0; i < rows; i++) {
+            t.addRow((long)i, i % 100, i * 1.5d, "name_" + (i & 1023), m_ts);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public VoltTable buildTable() {
+        return build();
+    }
+
+    @Benchmark
+    public void iterateTable(Blackhole bh) {
+        m_table.resetRowPosition();
+        while (m_table.advanceRow()) {
+            bh.consume(m_table.getLong(0));
+            bh.consume(m_table.getLong(1));
+            bh.consume(m_table.getDouble(2));
+            bh.consume(m_table.getString(3));
+            bh.consume(m_table.getTimestampAsLong(4));
+        }
+    }
+}
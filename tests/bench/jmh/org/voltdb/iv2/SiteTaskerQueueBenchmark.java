@@ -0,0 +1,127 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.rejoin.TaskLog;
+
+/**
+ * Handoff from the network and scheduler threads to a site through its SiteTaskerQueue.
+ * Producers in each group offer while a single consumer polls, as the site thread does.
+ * Producers stop offering while MAX_OUTSTANDING tasks are queued so the measurement is
+ * of the handoff rather than of the queue growing without bound.
+ *
+ * The one and three producer groups show how the queue scales with contention, the
+ * consumer's score is the rate at which the site receives work.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SiteTaskerQueueBenchmark {
+
+    private static final int MAX_OUTSTANDING = 4096;
+
+    private static final SiteTasker TASK = new SiteTasker() {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {
+        }
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog) {
+        }
+    };
+
+    private SiteTaskerQueue m_queue;
+    private final AtomicInteger m_outstanding = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        m_queue = new SiteTaskerQueue(0);
+        m_queue.setStarvationTracker(new StarvationTracker(0));
+        m_queue.setupQueueDepthTracker(0);
+    }
+
+    private boolean offer() {
+        if (m_outstanding.get() >= MAX_OUTSTANDING) {
+            return false;
+        }
+        m_outstanding.incrementAndGet();
+        return m_queue.offer(TASK);
+    }
+
+    private SiteTasker poll() {
+        SiteTasker task = m_queue.poll();
+        if (task != null) {
+            m_outstanding.decrementAndGet();
+        }
+        return task;
+    }
+
+    @Benchmark
+    @Group("oneProducer")
+    @GroupThreads(1)
+    public boolean oneProducerOffer() {
+        return offer();
+    }
+
+    @Benchmark
+    @Group("oneProducer")
+    @GroupThreads(1)
+    public SiteTasker oneProducerPoll() {
+        return poll();
+    }
+
+    @Benchmark
+    @Group("threeProducers")
+    @GroupThreads(3)
+    public boolean threeProducersOffer() {
+        return offer();
+    }
+
+    @Benchmark
+    @Group("threeProducers")
+    @GroupThreads(1)
+    public SiteTasker threeProducersPoll() {
+        return poll();
+    }
+}
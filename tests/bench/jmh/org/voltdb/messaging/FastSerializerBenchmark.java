@@ -0,0 +1,104 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Primitive, string and varbinary encoding through FastSerializer and back through
+ * FastDeserializer, on heap and direct buffers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastSerializerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private static final int VALUES = 16;
+
+    private FastSerializer m_fs;
+    private final byte m_varbinary[] = new byte[100];
+    private final String m_string = "a string of some modest length";
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        m_fs = new FastSerializer(true, direct);
+        write();
+        m_serialized = m_fs.getBBContainer().b().duplicate();
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_fs.discard();
+    }
+
+    private void write() throws IOException {
+        m_fs.clear();
+        for (int i = 0; i < VALUES; i++) {
+            m_fs.writeLong(i);
+            m_fs.writeInt(i);
+            m_fs.writeString(m_string);
+            m_fs.writeVarbinary(m_varbinary);
+        }
+    }
+
+    @Benchmark
+    public FastSerializer serialize() throws IOException {
+        write();
+        return m_fs;
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole bh) throws IOException {
+        FastDeserializer fds = new FastDeserializer(m_serialized.duplicate());
+        for (int i = 0; i < VALUES; i++) {
+            bh.consume(fds.readLong());
+            bh.consume(fds.readInt());
+            bh.consume(fds.readString());
+            bh.consume(fds.readVarbinary());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * Compression round trips on direct buffers, as done for PBD segments and snapshot blocks,
+ * and on byte arrays, as done for catalogs and hashinator configs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionServiceBenchmark {
+
+    @Param({"4096", "2097152"})
+    public int size;
+
+    private BBContainer m_input;
+    private BBContainer m_compressed;
+    private BBContainer m_output;
+    private byte m_bytes[];
+
+    @Setup
+    public void setup() throws IOException {
+        // Table-like data: a small alphabet with runs compresses about as well as real tuples
+        m_bytes = new byte[size];
+        Random r = new Random(0);
+        for (int i = 0; i < size; i++) {
+            m_bytes[i] = (byte)('a' + r.nextInt(i % 64 < 48 ? 4 : 26));
+        }
+        m_input = DBBPool.allocateDirect(size);
+        m_input.b().put(m_bytes).flip();
+        m_compressed = DBBPool.allocateDirect(CompressionService.maxCompressedLength(size));
+        m_output = DBBPool.allocateDirect(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_input.discard();
+        m_compressed.discard();
+        m_output.discard();
+    }
+
+    @Benchmark
+    public ByteBuffer directRoundTrip() throws IOException {
+        ByteBuffer in = m_input.b();
+        ByteBuffer compressed = m_compressed.b();
+        ByteBuffer out = m_output.b();
+        in.position(0);
+        compressed.clear();
+        int compressedSize = CompressionService.compressBuffer(in, compressed);
+        compressed.limit(compressedSize);
+        out.clear();
+        CompressionService.decompressBuffer(compressed, out);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] bytesRoundTrip() throws IOException {
+        return CompressionService.decompressBytes(CompressionService.compressBytes(m_bytes));
+    }
+}
@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+/**
+ * Steady state offer and poll through a PBD, the export and DR overflow path.
+ * Each invocation appends one object and consumes one so the deque stays short
+ * and segments roll over at their natural rate. The deque lives in the directory
+ * named by the jmh.pbd.dir system property, /tmp by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentBinaryDequeBenchmark {
+
+    private static final String NONCE = "jmh_pbd";
+    private static final String CURSOR_ID = "jmh";
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    // direct payloads are compressed on offer, heap payloads are written as is
+    @Param({"false", "true"})
+    public boolean direct;
+
+    @Param({"false", "true"})
+    public boolean mmap;
+
+    private File m_dir;
+    private PersistentBinaryDeque m_pbd;
+    private BinaryDequeReader m_reader;
+    private ByteBuffer m_payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        m_dir = new File(System.getProperty("jmh.pbd.dir", "/tmp"), "jmh_pbd_" + System.nanoTime());
+        if (!m_dir.mkdirs()) {
+            throw new IOException("Unable to create " + m_dir);
+        }
+        System.setProperty(PersistentBinaryDeque.USE_MMAP_PROPERTY, Boolean.toString(mmap));
+        m_pbd = new PersistentBinaryDeque(NONCE, m_dir, new VoltLogger("HOST"));
+        m_reader = m_pbd.openForRead(CURSOR_ID);
+        m_payload = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            m_payload.put((byte)(i % 61));
+        }
+        m_payload.flip();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        m_pbd.closeAndDelete();
+        m_dir.delete();
+    }
+
+    @Benchmark
+    public int offerPoll() throws IOException {
+        // the PBD takes ownership of the offered container and discards it
+        BBContainer cont;
+        if (direct) {
+            cont = DBBPool.allocateDirectAndPool(size);
+            cont.b().put(m_payload.duplicate()).flip();
+        } else {
+            cont = DBBPool.wrapBB(m_payload.duplicate());
+        }
+        m_pbd.offer(cont);
+        BBContainer polled = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        try {
+            return polled.b().remaining();
+        } finally {
+            polled.discard();
+        }
+    }
+}
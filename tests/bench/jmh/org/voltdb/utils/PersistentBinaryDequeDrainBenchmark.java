@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+/**
+ * Time to drain an export style backlog of BACKLOG objects from a PBD that was
+ * closed and reopened, so every segment is read back from disk. Each iteration
+ * polls exactly the backlog written by its setup, divide BACKLOG by the score
+ * for the drain rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = PersistentBinaryDequeDrainBenchmark.BACKLOG)
+@Measurement(iterations = 10, batchSize = PersistentBinaryDequeDrainBenchmark.BACKLOG)
+@Fork(1)
+public class PersistentBinaryDequeDrainBenchmark {
+
+    static final int BACKLOG = 2048;
+    private static final String NONCE = "jmh_pbd_drain";
+    private static final String CURSOR_ID = "jmh";
+
+    // export blocks are up to 2MB, most are much smaller
+    @Param({"16384", "262144"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    @Param({"false", "true"})
+    public boolean mmap;
+
+    private File m_dir;
+    private PersistentBinaryDeque m_pbd;
+    private BinaryDequeReader m_reader;
+
+    @Setup(Level.Iteration)
+    public void fillBacklog() throws IOException {
+        m_dir = new File(System.getProperty("jmh.pbd.dir", "/tmp"), "jmh_pbd_drain_" + System.nanoTime());
+        if (!m_dir.mkdirs()) {
+            throw new IOException("Unable to create " + m_dir);
+        }
+        System.setProperty(PersistentBinaryDeque.USE_MMAP_PROPERTY, Boolean.toString(mmap));
+        PersistentBinaryDeque pbd = new PersistentBinaryDeque(NONCE, m_dir, new VoltLogger("HOST"));
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            payload.put((byte)(i % 61));
+        }
+        payload.flip();
+        for (int i = 0; i < BACKLOG; i++) {
+            BBContainer cont = DBBPool.allocateDirectAndPool(size);
+            cont.b().put(payload.duplicate()).flip();
+            pbd.offer(cont, compress);
+        }
+        pbd.sync();
+        pbd.close();
+
+        m_pbd = new PersistentBinaryDeque(NONCE, m_dir, new VoltLogger("HOST"));
+        m_reader = m_pbd.openForRead(CURSOR_ID);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        m_pbd.closeAndDelete();
+        m_dir.delete();
+    }
+
+    @Benchmark
+    public int drain() throws IOException {
+        BBContainer polled = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        try {
+            return polled.b().remaining();
+        } finally {
+            polled.discard();
+        }
+    }
+}
@@ -50,10 +50,14 @@
  */
 
 #include "harness.h"
+
+#include "common/ThreadLocalPool.h"
+
 #include <cstdlib>
 #include <iostream>
 
 using namespace std;
+using namespace voltdb;
 
 namespace voltdb {
 int TestOnlyAllocationSizeForObject(int input);
@@ -159,6 +163,57 @@ TEST_F(ThreadLocalPoolTest, AllocationSizingRandom)
     }
 }
 
+TEST_F(ThreadLocalPoolTest, TempBlockReuse)
+{
+    ThreadLocalPool tlPool;
+    const std::size_t size = 131072;
+    char* first = ThreadLocalPool::allocateTempBlock(size);
+    char* second = ThreadLocalPool::allocateTempBlock(size);
+    ThreadLocalPool::freeTempBlock(size, first);
+    ThreadLocalPool::freeTempBlock(size, second);
+    char* third = ThreadLocalPool::allocateTempBlock(size);
+    // A block of another size is never reused for this one
+    char* other = ThreadLocalPool::allocateTempBlock(size * 2);
+
+    ThreadLocalPool::TempBlockStats stats = ThreadLocalPool::getTempBlockStats();
+    EXPECT_EQ(4, stats.m_requested);
+#ifndef MEMCHECK
+    EXPECT_TRUE(third == first || third == second);
+    EXPECT_EQ(1, stats.m_reused);
+    EXPECT_EQ(size, stats.m_cachedBytes);
+#endif
+    ThreadLocalPool::freeTempBlock(size, third);
+    ThreadLocalPool::freeTempBlock(size * 2, other);
+}
+
+TEST_F(ThreadLocalPoolTest, TempBlockTrimming)
+{
+    ThreadLocalPool tlPool;
+    const std::size_t size = 131072;
+    // One batch uses three blocks at once
+    char* blocks[3];
+    for (int ii = 0; ii < 3; ii++) {
+        blocks[ii] = ThreadLocalPool::allocateTempBlock(size);
+    }
+    for (int ii = 0; ii < 3; ii++) {
+        ThreadLocalPool::freeTempBlock(size, blocks[ii]);
+    }
+
+    // Following batches use one, the other two are kept for this window and the next one
+    for (int ii = 0; ii < 2 * ThreadLocalPool::TEMP_BLOCK_TRIM_WINDOW; ii++) {
+        ThreadLocalPool::freeTempBlock(size, ThreadLocalPool::allocateTempBlock(size));
+        ThreadLocalPool::trimTempBlocks();
+    }
+#ifndef MEMCHECK
+    EXPECT_EQ(3 * size, ThreadLocalPool::getTempBlockStats().m_cachedBytes);
+#endif
+    ThreadLocalPool::freeTempBlock(size, ThreadLocalPool::allocateTempBlock(size));
+    ThreadLocalPool::trimTempBlocks();
+#ifndef MEMCHECK
+    EXPECT_EQ(size, ThreadLocalPool::getTempBlockStats().m_cachedBytes);
+#endif
+}
+
 int main() {
     return TestSuite::globalInstance()->runAll();
 }
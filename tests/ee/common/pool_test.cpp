@@ -110,6 +110,35 @@ TEST_F(PoolTest, OversizeTest) {
     EXPECT_NE(space, NULL);
 }
 
+TEST_F(PoolTest, PurgeKeepingRecentPeakTest) {
+#ifndef MEMCHECK
+    const int64_t chunkSize = 100000;
+    Pool testPool(chunkSize, 1);
+    Pool plainPool(chunkSize, 1);
+    // Fill three chunks of each pool
+    for (int ii = 0; ii < 3; ii++) {
+        EXPECT_NE(testPool.allocate(80000), NULL);
+        EXPECT_NE(plainPool.allocate(80000), NULL);
+    }
+    EXPECT_EQ(3 * chunkSize, testPool.getAllocatedMemory());
+
+    plainPool.purge();
+    EXPECT_EQ(chunkSize, plainPool.getAllocatedMemory());
+
+    // The chunks needed recently are kept through this window and the next one
+    testPool.purgeKeepingRecentPeak();
+    for (int ii = 1; ii < 2 * Pool::PURGE_WINDOW; ii++) {
+        EXPECT_EQ(3 * chunkSize, testPool.getAllocatedMemory());
+        // Small fragments reuse the first chunk
+        EXPECT_NE(testPool.allocate(1000), NULL);
+        testPool.purgeKeepingRecentPeak();
+    }
+    EXPECT_EQ(3 * chunkSize, testPool.getAllocatedMemory());
+    testPool.purgeKeepingRecentPeak();
+    EXPECT_EQ(chunkSize, testPool.getAllocatedMemory());
+#endif
+}
+
 int main() {
     return TestSuite::globalInstance()->runAll();
 }
@@ -0,0 +1,314 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/NValue.hpp"
+#include "common/PlannerDomValue.h"
+#include "common/Topend.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "common/valuevector.h"
+#include "execution/VoltDBEngine.h"
+#include "executors/hashjoinexecutor.h"
+#include "plannodes/abstractplannode.h"
+#include "plannodes/seqscannode.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+
+#include "test_utils/Tools.hpp"
+
+#include "boost/foreach.hpp"
+#include "boost/scoped_ptr.hpp"
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+
+namespace {
+
+// Stands for NULL in the rows handed to and returned by the join
+const int64_t NULL_VALUE = INT64_MIN;
+
+typedef std::vector<int64_t> Row;
+
+std::string tupleValueJson(int tableIdx, int columnIdx) {
+    std::ostringstream json;
+    json << "{\"TYPE\": 32, \"VALUE_TYPE\": 6, \"COLUMN_IDX\": " << columnIdx;
+    if (tableIdx > 0) {
+        json << ", \"TABLE_IDX\": " << tableIdx;
+    }
+    json << "}";
+    return json.str();
+}
+
+std::string outputColumnJson(const char* name, int columnIdx) {
+    return std::string("{\"COLUMN_NAME\": \"") + name + "\", \"EXPRESSION\": " +
+            tupleValueJson(0, columnIdx) + "}";
+}
+
+/*
+ * The plan node the planner produces for
+ *     SELECT * FROM OUTER_T <joinType> JOIN INNER_T ON OUTER_T.B = INNER_T.B
+ * where OUTER_T has columns (A, B) and INNER_T has columns (B, C), all BIGINT.
+ */
+std::string hashJoinJson(const std::string& joinType) {
+    std::ostringstream json;
+    json << "{\"ID\": 1, \"PLAN_NODE_TYPE\": \"HASHJOIN\", \"JOIN_TYPE\": \"" << joinType << "\", "
+         << "\"OUTER_HASH_KEYS\": [" << tupleValueJson(0, 1) << "], "
+         << "\"INNER_HASH_KEYS\": [" << tupleValueJson(1, 0) << "], "
+         << "\"JOIN_PREDICATE\": {\"TYPE\": 10, \"VALUE_TYPE\": 23, "
+         << "\"LEFT\": " << tupleValueJson(1, 0) << ", \"RIGHT\": " << tupleValueJson(0, 1) << "}, "
+         << "\"PRE_JOIN_PREDICATE\": null, \"WHERE_PREDICATE\": null, "
+         << "\"OUTPUT_SCHEMA\": [" << outputColumnJson("A", 0) << ", " << outputColumnJson("B", 1) << ", "
+         << outputColumnJson("B", 2) << ", " << outputColumnJson("C", 3) << "]}";
+    return json.str();
+}
+
+TempTable* buildInputTable(const std::string& name, const char* col0, const char* col1,
+                           const std::vector<Row>& rows) {
+    std::vector<std::string> names;
+    names.push_back(col0);
+    names.push_back(col1);
+    TempTable* table = TableFactory::buildTempTable(name,
+                                                    Tools::buildSchema(VALUE_TYPE_BIGINT, VALUE_TYPE_BIGINT),
+                                                    names,
+                                                    NULL);
+    TableTuple& tuple = table->tempTuple();
+    BOOST_FOREACH (const Row& row, rows) {
+        for (int ii = 0; ii < row.size(); ii++) {
+            tuple.setNValue(ii, row[ii] == NULL_VALUE ?
+                            NValue::getNullValue(VALUE_TYPE_BIGINT) : ValueFactory::getBigIntValue(row[ii]));
+        }
+        table->insertTempTuple(tuple);
+    }
+    return table;
+}
+
+// Does the output keep the order of an outer input that is sorted on A?
+bool isOrderedByOuter(const std::vector<Row>& rows) {
+    for (int ii = 1; ii < rows.size(); ii++) {
+        if (rows[ii][0] != NULL_VALUE && rows[ii - 1][0] > rows[ii][0]) {
+            return false;
+        }
+    }
+    return true;
+}
+
+} // end unnamed namespace
+
+class HashJoinExecutorTest : public Test {
+public:
+    HashJoinExecutorTest()
+        : m_topend(new DummyTopend())
+        , m_engine(new VoltDBEngine(m_topend.get()))
+    {
+        m_engine->initialize(1, 1, 0, 0, "", 0, 1024, DEFAULT_TEMP_TABLE_MEMORY, false);
+    }
+
+protected:
+    /*
+     * Join the outer rows (A, B) to the inner rows (B, C) on B with the given
+     * temp table memory limit and return the output rows in the order the
+     * executor produced them.
+     */
+    std::vector<Row> executeJoin(const std::string& joinType,
+                                 const std::vector<Row>& outerRows,
+                                 const std::vector<Row>& innerRows,
+                                 int64_t memoryLimit) {
+        TempTableLimits limits(memoryLimit);
+        PlannerDomRoot root(hashJoinJson(joinType).c_str());
+        boost::scoped_ptr<AbstractPlanNode> join(AbstractPlanNode::fromJSONObject(root.rootObject()));
+
+        // The scans only stand in for the children, they hand out the input tables
+        SeqScanPlanNode outerScan;
+        SeqScanPlanNode innerScan;
+        outerScan.setOutputTable(buildInputTable("OUTER_T", "A", "B", outerRows));
+        innerScan.setOutputTable(buildInputTable("INNER_T", "B", "C", innerRows));
+        join->addChild(&outerScan);
+        join->addChild(&innerScan);
+
+        HashJoinExecutor executor(m_engine.get(), join.get());
+        EXPECT_TRUE(executor.init(m_engine.get(), &limits));
+        NValueArray params;
+        EXPECT_TRUE(executor.execute(params));
+
+        std::vector<Row> result;
+        Table* output = join->getOutputTable();
+        TableTuple tuple(output->schema());
+        TableIterator iterator = output->iterator();
+        while (iterator.next(tuple)) {
+            Row row;
+            for (int ii = 0; ii < output->columnCount(); ii++) {
+                NValue value = tuple.getNValue(ii);
+                row.push_back(value.isNull() ? NULL_VALUE : ValuePeeker::peekBigInt(value));
+            }
+            result.push_back(row);
+        }
+        executor.cleanupTempOutputTable();
+        return result;
+    }
+
+    // What the join should return, worked out by comparing every pair of rows
+    static std::vector<Row> expectedJoin(const std::string& joinType,
+                                         const std::vector<Row>& outerRows,
+                                         const std::vector<Row>& innerRows) {
+        std::vector<Row> result;
+        std::vector<bool> innerMatched(innerRows.size(), false);
+        BOOST_FOREACH (const Row& outer, outerRows) {
+            bool outerMatched = false;
+            for (int ii = 0; ii < innerRows.size(); ii++) {
+                const Row& inner = innerRows[ii];
+                if (outer[1] != NULL_VALUE && outer[1] == inner[0]) {
+                    Row row(outer);
+                    row.insert(row.end(), inner.begin(), inner.end());
+                    result.push_back(row);
+                    outerMatched = true;
+                    innerMatched[ii] = true;
+                }
+            }
+            if ( ! outerMatched && joinType != "INNER") {
+                Row row(outer);
+                row.push_back(NULL_VALUE);
+                row.push_back(NULL_VALUE);
+                result.push_back(row);
+            }
+        }
+        if (joinType == "FULL") {
+            for (int ii = 0; ii < innerRows.size(); ii++) {
+                if ( ! innerMatched[ii]) {
+                    Row row(2, NULL_VALUE);
+                    row.insert(row.end(), innerRows[ii].begin(), innerRows[ii].end());
+                    result.push_back(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    void assertSameRows(std::vector<Row> expected, std::vector<Row> actual) {
+        std::sort(expected.begin(), expected.end());
+        std::sort(actual.begin(), actual.end());
+        ASSERT_EQ(expected.size(), actual.size());
+        for (int ii = 0; ii < expected.size(); ii++) {
+            ASSERT_TRUE(expected[ii] == actual[ii]);
+        }
+    }
+
+    static Row makeRow(int64_t first, int64_t second) {
+        Row row;
+        row.push_back(first);
+        row.push_back(second);
+        return row;
+    }
+
+private:
+    boost::scoped_ptr<Topend> m_topend;
+    boost::scoped_ptr<VoltDBEngine> m_engine;
+};
+
+/*
+ * Duplicate keys on both sides and NULL keys, joined in memory.
+ */
+TEST_F(HashJoinExecutorTest, InMemory) {
+    std::vector<Row> outerRows;
+    outerRows.push_back(makeRow(1, 10));
+    outerRows.push_back(makeRow(2, 10));
+    outerRows.push_back(makeRow(3, 20));
+    outerRows.push_back(makeRow(4, NULL_VALUE));
+    outerRows.push_back(makeRow(5, 40));
+    std::vector<Row> innerRows;
+    innerRows.push_back(makeRow(10, 100));
+    innerRows.push_back(makeRow(30, 300));
+    innerRows.push_back(makeRow(10, 200));
+    innerRows.push_back(makeRow(NULL_VALUE, 400));
+    innerRows.push_back(makeRow(40, 500));
+
+    const char* joinTypes[] = { "INNER", "LEFT", "FULL" };
+    BOOST_FOREACH (const char* joinType, joinTypes) {
+        std::vector<Row> result = executeJoin(joinType, outerRows, innerRows, DEFAULT_TEMP_TABLE_MEMORY);
+        assertSameRows(expectedJoin(joinType, outerRows, innerRows), result);
+        if (std::string(joinType) != "FULL") {
+            // Without partitioning the probes follow the outer input
+            ASSERT_TRUE(isOrderedByOuter(result));
+        }
+    }
+}
+
+/*
+ * The hash table for the inner rows would need about 1.4MB, more than the
+ * limit, so both sides are partitioned to large temp tables first. The limit
+ * still leaves room for the output and the partition being joined.
+ */
+TEST_F(HashJoinExecutorTest, Spill) {
+    const int64_t memoryLimit = 1200 * 1000;
+    std::vector<Row> outerRows;
+    for (int ii = 0; ii < 2000; ii++) {
+        outerRows.push_back(makeRow(ii, (ii % 10 == 0) ? NULL_VALUE : ii));
+    }
+    // Every key 10 times over, some of them NULL
+    std::vector<Row> innerRows;
+    for (int ii = 0; ii < 20000; ii++) {
+        innerRows.push_back(makeRow((ii % 1000 == 999) ? NULL_VALUE : ii % 2000, ii));
+    }
+
+    const char* joinTypes[] = { "INNER", "LEFT", "FULL" };
+    BOOST_FOREACH (const char* joinType, joinTypes) {
+        std::vector<Row> result = executeJoin(joinType, outerRows, innerRows, memoryLimit);
+        assertSameRows(expectedJoin(joinType, outerRows, innerRows), result);
+        // The partitions were joined one after the other
+        ASSERT_FALSE(isOrderedByOuter(result));
+    }
+}
+
+/*
+ * Most inner rows share one key, so that partition can't be split small
+ * enough. It is split again up to HashJoinExecutor::MAX_SPILL_DEPTH times
+ * and then joined as it is.
+ */
+TEST_F(HashJoinExecutorTest, SpillSkewedKey) {
+    const int64_t memoryLimit = 1200 * 1000;
+    std::vector<Row> outerRows;
+    outerRows.push_back(makeRow(1, 7));
+    outerRows.push_back(makeRow(2, 8));
+    std::vector<Row> innerRows;
+    for (int ii = 0; ii < 20000; ii++) {
+        innerRows.push_back(makeRow((ii < 17000) ? 7 : 100000 + ii, ii));
+    }
+
+    const char* joinTypes[] = { "INNER", "LEFT" };
+    BOOST_FOREACH (const char* joinType, joinTypes) {
+        std::vector<Row> result = executeJoin(joinType, outerRows, innerRows, memoryLimit);
+        assertSameRows(expectedJoin(joinType, outerRows, innerRows), result);
+    }
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,370 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/NValue.hpp"
+#include "common/PlannerDomValue.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "common/valuevector.h"
+#include "execution/VoltDBEngine.h"
+#include "executors/mergejoinexecutor.h"
+#include "plannodes/abstractplannode.h"
+#include "plannodes/seqscannode.h"
+#include "storage/persistenttable.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+
+#include "test_utils/Tools.hpp"
+#include "test_utils/plan_testing_baseclass.h"
+
+#include "boost/foreach.hpp"
+#include "boost/scoped_ptr.hpp"
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+
+namespace {
+
+// Stands for NULL in the rows handed to and returned by the join
+const int64_t NULL_VALUE = INT64_MIN;
+
+typedef std::vector<int64_t> Row;
+
+/*
+ * The catalog for
+ *     CREATE TABLE INNER_T (B BIGINT, C BIGINT);
+ *     CREATE INDEX INNER_T_B ON INNER_T (B);
+ * The merge join walks INNER_T_B in place, so the inner side has to be a
+ * persistent table with a tree index.
+ */
+const char *catalogString =
+    "add / clusters cluster\n"
+    "set /clusters#cluster localepoch 0\n"
+    "set $PREV securityEnabled false\n"
+    "set $PREV httpdportno 0\n"
+    "set $PREV jsonapi false\n"
+    "set $PREV networkpartition false\n"
+    "set $PREV heartbeatTimeout 0\n"
+    "set $PREV useddlschema false\n"
+    "set $PREV drConsumerEnabled false\n"
+    "set $PREV drProducerEnabled false\n"
+    "set $PREV drRole \"\"\n"
+    "set $PREV drClusterId 0\n"
+    "set $PREV drProducerPort 0\n"
+    "set $PREV drMasterHost \"\"\n"
+    "set $PREV drFlushInterval 0\n"
+    "set $PREV preferredSource 0\n"
+    "add /clusters#cluster databases database\n"
+    "set /clusters#cluster/databases#database schema \"\"\n"
+    "set $PREV isActiveActiveDRed false\n"
+    "set $PREV securityprovider \"\"\n"
+    "add /clusters#cluster/databases#database tables INNER_T\n"
+    "set /clusters#cluster/databases#database/tables#INNER_T isreplicated true\n"
+    "set $PREV partitioncolumn null\n"
+    "set $PREV estimatedtuplecount 0\n"
+    "set $PREV materializer null\n"
+    "set $PREV signature \"INNER_T|bb\"\n"
+    "set $PREV tuplelimit 2147483647\n"
+    "set $PREV isDRed false\n"
+    "add /clusters#cluster/databases#database/tables#INNER_T columns B\n"
+    "set /clusters#cluster/databases#database/tables#INNER_T/columns#B index 0\n"
+    "set $PREV type 6\n"
+    "set $PREV size 8\n"
+    "set $PREV nullable true\n"
+    "set $PREV name \"B\"\n"
+    "set $PREV defaultvalue null\n"
+    "set $PREV defaulttype 0\n"
+    "set $PREV aggregatetype 0\n"
+    "set $PREV matviewsource null\n"
+    "set $PREV matview null\n"
+    "set $PREV inbytes false\n"
+    "add /clusters#cluster/databases#database/tables#INNER_T columns C\n"
+    "set /clusters#cluster/databases#database/tables#INNER_T/columns#C index 1\n"
+    "set $PREV type 6\n"
+    "set $PREV size 8\n"
+    "set $PREV nullable true\n"
+    "set $PREV name \"C\"\n"
+    "set $PREV defaultvalue null\n"
+    "set $PREV defaulttype 0\n"
+    "set $PREV aggregatetype 0\n"
+    "set $PREV matviewsource null\n"
+    "set $PREV matview null\n"
+    "set $PREV inbytes false\n"
+    "add /clusters#cluster/databases#database/tables#INNER_T indexes INNER_T_B\n"
+    "set /clusters#cluster/databases#database/tables#INNER_T/indexes#INNER_T_B unique false\n"
+    "set $PREV assumeUnique false\n"
+    "set $PREV countable true\n"
+    "set $PREV type 1\n"
+    "set $PREV expressionsjson \"\"\n"
+    "set $PREV predicatejson \"\"\n"
+    "set $PREV isSafeWithNonemptySources true\n"
+    "add /clusters#cluster/databases#database/tables#INNER_T/indexes#INNER_T_B columns B\n"
+    "set /clusters#cluster/databases#database/tables#INNER_T/indexes#INNER_T_B/columns#B index 0\n"
+    "set $PREV column /clusters#cluster/databases#database/tables#INNER_T/columns#B\n";
+
+std::string tupleValueJson(int tableIdx, int columnIdx) {
+    std::ostringstream json;
+    json << "{\"TYPE\": 32, \"VALUE_TYPE\": 6, \"COLUMN_IDX\": " << columnIdx;
+    if (tableIdx > 0) {
+        json << ", \"TABLE_IDX\": " << tableIdx;
+    }
+    json << "}";
+    return json.str();
+}
+
+std::string outputColumnJson(const char* name, const std::string& expression) {
+    return std::string("{\"COLUMN_NAME\": \"") + name + "\", \"EXPRESSION\": " + expression + "}";
+}
+
+/*
+ * The plan node the planner produces for
+ *     SELECT * FROM OUTER_T <joinType> JOIN INNER_T ON OUTER_T.B = INNER_T.B
+ * where OUTER_T has columns (A, B), is read in B order and INNER_T is
+ * walked through INNER_T_B.
+ */
+std::string mergeJoinJson(const std::string& joinType) {
+    std::ostringstream json;
+    json << "{\"ID\": 1, \"PLAN_NODE_TYPE\": \"MERGEJOIN\", \"JOIN_TYPE\": \"" << joinType << "\", "
+         << "\"INLINE_NODES\": [{\"ID\": 2, \"PLAN_NODE_TYPE\": \"INDEXSCAN\", "
+         << "\"LOOKUP_TYPE\": \"GTE\", \"SORT_DIRECTION\": \"INVALID\", "
+         << "\"TARGET_INDEX_NAME\": \"INNER_T_B\", \"TARGET_TABLE_ALIAS\": \"INNER_T\", "
+         << "\"TARGET_TABLE_NAME\": \"INNER_T\"}], "
+         << "\"OUTER_MERGE_KEYS\": [" << tupleValueJson(0, 1) << "], "
+         << "\"INNER_MERGE_KEYS\": [" << tupleValueJson(1, 0) << "], "
+         << "\"JOIN_PREDICATE\": {\"TYPE\": 10, \"VALUE_TYPE\": 23, "
+         << "\"LEFT\": " << tupleValueJson(1, 0) << ", \"RIGHT\": " << tupleValueJson(0, 1) << "}, "
+         << "\"PRE_JOIN_PREDICATE\": null, \"WHERE_PREDICATE\": null, "
+         << "\"OUTPUT_SCHEMA\": [" << outputColumnJson("A", tupleValueJson(0, 0)) << ", "
+         << outputColumnJson("B", tupleValueJson(0, 1)) << ", "
+         << outputColumnJson("B", tupleValueJson(1, 0)) << ", "
+         << outputColumnJson("C", tupleValueJson(1, 1)) << "]}";
+    return json.str();
+}
+
+NValue bigIntOrNull(int64_t value) {
+    return value == NULL_VALUE ? NValue::getNullValue(VALUE_TYPE_BIGINT) : ValueFactory::getBigIntValue(value);
+}
+
+TempTable* buildOuterTable(const std::vector<Row>& rows) {
+    std::vector<std::string> names;
+    names.push_back("A");
+    names.push_back("B");
+    TempTable* table = TableFactory::buildTempTable("OUTER_T",
+                                                    Tools::buildSchema(VALUE_TYPE_BIGINT, VALUE_TYPE_BIGINT),
+                                                    names,
+                                                    NULL);
+    TableTuple& tuple = table->tempTuple();
+    BOOST_FOREACH (const Row& row, rows) {
+        for (int ii = 0; ii < row.size(); ii++) {
+            tuple.setNValue(ii, bigIntOrNull(row[ii]));
+        }
+        table->insertTempTuple(tuple);
+    }
+    return table;
+}
+
+// The index puts NULL keys first, so the outer side is read in that order too
+bool lessByKey(const Row& lhs, const Row& rhs) {
+    return lhs[1] < rhs[1];
+}
+
+// Does the output keep the order of the outer input?
+bool isOrderedByKey(const std::vector<Row>& rows) {
+    for (int ii = 1; ii < rows.size(); ii++) {
+        if (rows[ii - 1][1] > rows[ii][1]) {
+            return false;
+        }
+    }
+    return true;
+}
+
+} // end unnamed namespace
+
+class MergeJoinExecutorTest : public PlanTestingBaseClass<EngineTestTopend> {
+public:
+    MergeJoinExecutorTest() {
+        initialize(catalogString);
+    }
+
+protected:
+    void loadInnerTable(const std::vector<Row>& rows) {
+        PersistentTable* table = getPersistentTableAndId("INNER_T", NULL, NULL);
+        ASSERT_TRUE(table != NULL);
+        BOOST_FOREACH (const Row& row, rows) {
+            TableTuple& tuple = table->tempTuple();
+            for (int ii = 0; ii < row.size(); ii++) {
+                tuple.setNValue(ii, bigIntOrNull(row[ii]));
+            }
+            ASSERT_TRUE(table->insertTuple(tuple));
+        }
+    }
+
+    /*
+     * Join the outer rows (A, B), which must be sorted on B, to the rows
+     * (B, C) loaded into INNER_T on B and return the output rows in the
+     * order the executor produced them.
+     */
+    std::vector<Row> executeJoin(const std::string& joinType, const std::vector<Row>& outerRows) {
+        TempTableLimits limits(DEFAULT_TEMP_TABLE_MEMORY);
+        PlannerDomRoot root(mergeJoinJson(joinType).c_str());
+        boost::scoped_ptr<AbstractPlanNode> join(AbstractPlanNode::fromJSONObject(root.rootObject()));
+
+        // The scan only stands in for the outer child, it hands out the input table
+        SeqScanPlanNode outerScan;
+        outerScan.setOutputTable(buildOuterTable(outerRows));
+        join->addChild(&outerScan);
+
+        MergeJoinExecutor executor(m_engine.get(), join.get());
+        EXPECT_TRUE(executor.init(m_engine.get(), &limits));
+        NValueArray params;
+        EXPECT_TRUE(executor.execute(params));
+
+        std::vector<Row> result;
+        Table* output = join->getOutputTable();
+        TableTuple tuple(output->schema());
+        TableIterator iterator = output->iterator();
+        while (iterator.next(tuple)) {
+            Row row;
+            for (int ii = 0; ii < output->columnCount(); ii++) {
+                NValue value = tuple.getNValue(ii);
+                row.push_back(value.isNull() ? NULL_VALUE : ValuePeeker::peekBigInt(value));
+            }
+            result.push_back(row);
+        }
+        executor.cleanupTempOutputTable();
+        return result;
+    }
+
+    // What the join should return, worked out by comparing every pair of rows
+    static std::vector<Row> expectedJoin(const std::string& joinType,
+                                         const std::vector<Row>& outerRows,
+                                         const std::vector<Row>& innerRows) {
+        std::vector<Row> result;
+        BOOST_FOREACH (const Row& outer, outerRows) {
+            bool outerMatched = false;
+            BOOST_FOREACH (const Row& inner, innerRows) {
+                if (outer[1] != NULL_VALUE && outer[1] == inner[0]) {
+                    Row row(outer);
+                    row.insert(row.end(), inner.begin(), inner.end());
+                    result.push_back(row);
+                    outerMatched = true;
+                }
+            }
+            if ( ! outerMatched && joinType == "LEFT") {
+                Row row(outer);
+                row.push_back(NULL_VALUE);
+                row.push_back(NULL_VALUE);
+                result.push_back(row);
+            }
+        }
+        return result;
+    }
+
+    void assertSameRows(std::vector<Row> expected, std::vector<Row> actual) {
+        std::sort(expected.begin(), expected.end());
+        std::sort(actual.begin(), actual.end());
+        ASSERT_EQ(expected.size(), actual.size());
+        for (int ii = 0; ii < expected.size(); ii++) {
+            ASSERT_TRUE(expected[ii] == actual[ii]);
+        }
+    }
+
+    static Row makeRow(int64_t first, int64_t second) {
+        Row row;
+        row.push_back(first);
+        row.push_back(second);
+        return row;
+    }
+};
+
+/*
+ * Duplicate keys on both sides, NULL keys on both sides, and keys that
+ * only appear on one side, below, between and above the keys of the other.
+ */
+TEST_F(MergeJoinExecutorTest, DuplicateKeys) {
+    std::vector<Row> outerRows;
+    outerRows.push_back(makeRow(1, NULL_VALUE));
+    outerRows.push_back(makeRow(2, 10));
+    outerRows.push_back(makeRow(3, 10));
+    outerRows.push_back(makeRow(4, 10));
+    outerRows.push_back(makeRow(5, 20));
+    outerRows.push_back(makeRow(6, 40));
+    outerRows.push_back(makeRow(7, 40));
+    outerRows.push_back(makeRow(8, 60));
+    std::vector<Row> innerRows;
+    innerRows.push_back(makeRow(40, 400));
+    innerRows.push_back(makeRow(5, 50));
+    innerRows.push_back(makeRow(10, 100));
+    innerRows.push_back(makeRow(NULL_VALUE, 0));
+    innerRows.push_back(makeRow(30, 300));
+    innerRows.push_back(makeRow(10, 200));
+    innerRows.push_back(makeRow(40, 500));
+    innerRows.push_back(makeRow(70, 700));
+    loadInnerTable(innerRows);
+
+    const char* joinTypes[] = { "INNER", "LEFT" };
+    BOOST_FOREACH (const char* joinType, joinTypes) {
+        std::vector<Row> result = executeJoin(joinType, outerRows);
+        assertSameRows(expectedJoin(joinType, outerRows, innerRows), result);
+        // The outer side is read once, in order
+        ASSERT_TRUE(isOrderedByKey(result));
+    }
+}
+
+/*
+ * Long runs of the same key on both sides, so that each inner run is
+ * joined to many outer tuples before the inner side moves on.
+ */
+TEST_F(MergeJoinExecutorTest, LongRuns) {
+    std::vector<Row> outerRows;
+    for (int ii = 0; ii < 2000; ii++) {
+        outerRows.push_back(makeRow(ii, (ii % 100 == 0) ? NULL_VALUE : ii / 20));
+    }
+    std::sort(outerRows.begin(), outerRows.end(), lessByKey);
+    // Every other key, 15 times over, in no particular order
+    std::vector<Row> innerRows;
+    for (int ii = 0; ii < 1500; ii++) {
+        innerRows.push_back(makeRow((ii * 7) % 100 * 2, ii));
+    }
+    loadInnerTable(innerRows);
+
+    const char* joinTypes[] = { "INNER", "LEFT" };
+    BOOST_FOREACH (const char* joinType, joinTypes) {
+        std::vector<Row> result = executeJoin(joinType, outerRows);
+        assertSameRows(expectedJoin(joinType, outerRows, innerRows), result);
+        ASSERT_TRUE(isOrderedByKey(result));
+    }
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
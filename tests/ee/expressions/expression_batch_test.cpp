@@ -0,0 +1,272 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This file contains original code and/or modifications of original code.
+ * Any modifications made by VoltDB Inc. are licensed under the following
+ * terms and conditions:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/NValue.hpp"
+#include "common/SQLException.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/expressions.h"
+
+#include <boost/scoped_array.hpp>
+#include <boost/scoped_ptr.hpp>
+
+#include <cstdlib>
+#include <vector>
+
+using namespace voltdb;
+
+/*
+ * Compares AbstractExpression::evalBatch and filterBatch with eval.
+ */
+
+namespace {
+
+// Columns A BIGINT, B BIGINT (nullable), C INTEGER
+const int COL_A = 0;
+const int COL_B = 1;
+const int COL_C = 2;
+
+AbstractExpression* tve(int column) {
+    return new TupleValueExpression(0, column);
+}
+
+AbstractExpression* constant(int64_t value) {
+    return new ConstantValueExpression(ValueFactory::getBigIntValue(value));
+}
+
+// A + B > 1000
+AbstractExpression* sumGreaterThan() {
+    return new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+            new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, tve(COL_A), tve(COL_B)),
+            constant(1000));
+}
+
+// A + B > 1000 AND C < 500
+AbstractExpression* conjunction() {
+    return new ConjunctionExpression<ConjunctionAnd>(EXPRESSION_TYPE_CONJUNCTION_AND,
+            sumGreaterThan(),
+            new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, tve(COL_C), constant(500)));
+}
+
+// (A + B > 1000 AND C < 500) OR B IS NULL,
+// which mixes in an expression without a batch implementation of its own
+AbstractExpression* disjunction() {
+    return new ConjunctionExpression<ConjunctionOr>(EXPRESSION_TYPE_CONJUNCTION_OR,
+            conjunction(),
+            new OperatorIsNullExpression(tve(COL_B)));
+}
+
+}
+
+class ExpressionBatchTest : public Test {
+public:
+    ExpressionBatchTest() : m_schema(NULL) { }
+
+    ~ExpressionBatchTest() {
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    void populate(int rows) {
+        std::vector<ValueType> types;
+        std::vector<int32_t> sizes;
+        std::vector<bool> allowNull;
+        types.push_back(VALUE_TYPE_BIGINT);
+        sizes.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+        allowNull.push_back(false);
+        types.push_back(VALUE_TYPE_BIGINT);
+        sizes.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+        allowNull.push_back(true);
+        types.push_back(VALUE_TYPE_INTEGER);
+        sizes.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER));
+        allowNull.push_back(false);
+        m_schema = TupleSchema::createTupleSchemaForTest(types, sizes, allowNull);
+
+        const int tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+        m_storage.reset(new char[static_cast<size_t>(tupleLength) * rows]);
+        m_tuples.clear();
+        srand(42);
+        for (int ii = 0; ii < rows; ii++) {
+            TableTuple tuple(&m_storage[static_cast<size_t>(tupleLength) * ii], m_schema);
+            tuple.setNValue(COL_A, ValueFactory::getBigIntValue(rand() % 1000));
+            // About one row in ten has a NULL B
+            tuple.setNValue(COL_B, (rand() % 10 == 0) ?
+                            NValue::getNullValue(VALUE_TYPE_BIGINT) :
+                            ValueFactory::getBigIntValue(rand() % 1000));
+            tuple.setNValue(COL_C, ValueFactory::getIntegerValue(rand() % 1000));
+            m_tuples.push_back(tuple);
+        }
+    }
+
+    // Evaluate the expression over every other tuple, batch by batch,
+    // and check each result against eval of the same tuple.
+    void checkBatchMatchesEval(const AbstractExpression* expr) {
+        const int batchSize = AbstractExpression::BATCH_SIZE;
+        int selection[batchSize];
+        NValue results[batchSize];
+        int start = 0;
+        while (start < m_tuples.size()) {
+            int count = 0;
+            for (int ii = start; ii < m_tuples.size() && count < batchSize; ii += 2) {
+                selection[count++] = ii - start;
+            }
+            expr->evalBatch(&m_tuples[start], selection, count, results);
+            for (int ii = 0; ii < count; ii++) {
+                NValue expected = expr->eval(&m_tuples[start + selection[ii]], NULL);
+                ASSERT_EQ(expected.isNull(), results[ii].isNull());
+                if (ValuePeeker::peekValueType(expected) == VALUE_TYPE_BOOLEAN) {
+                    ASSERT_EQ(expected.isTrue(), results[ii].isTrue());
+                }
+                else if ( ! expected.isNull()) {
+                    ASSERT_EQ(ValuePeeker::peekAsBigInt(expected), ValuePeeker::peekAsBigInt(results[ii]));
+                }
+            }
+            start += 2 * batchSize;
+        }
+    }
+
+    // Filter all the tuples, batch by batch, and check the survivors are
+    // exactly the tuples eval passes, in scan order
+    void checkFilterMatchesEval(const AbstractExpression* predicate) {
+        const int batchSize = AbstractExpression::BATCH_SIZE;
+        int selection[batchSize];
+        for (int start = 0; start < m_tuples.size(); start += batchSize) {
+            int count = std::min(batchSize, static_cast<int>(m_tuples.size()) - start);
+            for (int ii = 0; ii < count; ii++) {
+                selection[ii] = ii;
+            }
+            int passed = predicate->filterBatch(&m_tuples[start], selection, count);
+            int next = 0;
+            for (int ii = 0; ii < count; ii++) {
+                if (predicate->eval(&m_tuples[start + ii], NULL).isTrue()) {
+                    ASSERT_TRUE(next < passed);
+                    ASSERT_EQ(ii, selection[next]);
+                    ++next;
+                }
+            }
+            ASSERT_EQ(passed, next);
+        }
+    }
+
+protected:
+    TupleSchema* m_schema;
+    boost::scoped_array<char> m_storage;
+    std::vector<TableTuple> m_tuples;
+};
+
+TEST_F(ExpressionBatchTest, ArithmeticAndComparison) {
+    populate(10000);
+    boost::scoped_ptr<AbstractExpression> sum(
+            new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, tve(COL_A), tve(COL_B)));
+    checkBatchMatchesEval(sum.get());
+    boost::scoped_ptr<AbstractExpression> comparison(sumGreaterThan());
+    checkBatchMatchesEval(comparison.get());
+}
+
+TEST_F(ExpressionBatchTest, Conjunctions) {
+    populate(10000);
+    boost::scoped_ptr<AbstractExpression> andExpr(conjunction());
+    checkBatchMatchesEval(andExpr.get());
+    boost::scoped_ptr<AbstractExpression> orExpr(disjunction());
+    checkBatchMatchesEval(orExpr.get());
+}
+
+TEST_F(ExpressionBatchTest, FilterBatch) {
+    populate(10000);
+    boost::scoped_ptr<AbstractExpression> andExpr(conjunction());
+    checkFilterMatchesEval(andExpr.get());
+    boost::scoped_ptr<AbstractExpression> orExpr(disjunction());
+    checkFilterMatchesEval(orExpr.get());
+}
+
+TEST_F(ExpressionBatchTest, IntegerComparisons) {
+    populate(10000);
+    // A = B, where B may be NULL
+    boost::scoped_ptr<AbstractExpression> equal(
+            new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, tve(COL_A), tve(COL_B)));
+    checkFilterMatchesEval(equal.get());
+    // B IS NOT DISTINCT FROM NULL
+    boost::scoped_ptr<AbstractExpression> notDistinct(
+            new ComparisonExpression<CmpNotDistinct>(EXPRESSION_TYPE_COMPARE_NOTDISTINCT, tve(COL_B),
+                    new ConstantValueExpression(NValue::getNullValue(VALUE_TYPE_BIGINT))));
+    checkFilterMatchesEval(notDistinct.get());
+    // A * B >= 250000
+    boost::scoped_ptr<AbstractExpression> product(
+            new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO,
+                    new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, tve(COL_A), tve(COL_B)),
+                    constant(250000)));
+    checkFilterMatchesEval(product.get());
+    // A - B <> A / (C + 1)
+    boost::scoped_ptr<AbstractExpression> mixed(
+            new ComparisonExpression<CmpNe>(EXPRESSION_TYPE_COMPARE_NOTEQUAL,
+                    new OperatorExpression<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, tve(COL_A), tve(COL_B)),
+                    new OperatorExpression<OpDivide>(EXPRESSION_TYPE_OPERATOR_DIVIDE, tve(COL_A),
+                            new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, tve(COL_C), constant(1)))));
+    checkFilterMatchesEval(mixed.get());
+}
+
+TEST_F(ExpressionBatchTest, IntegerOverflow) {
+    populate(1000);
+    // A + (INT64_MAX - 500) > 0 overflows for some A, which still has to be reported
+    boost::scoped_ptr<AbstractExpression> overflow(
+            new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                    new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, tve(COL_A),
+                            constant(INT64_MAX - 500)),
+                    constant(0)));
+    int selection[AbstractExpression::BATCH_SIZE];
+    for (int ii = 0; ii < AbstractExpression::BATCH_SIZE; ii++) {
+        selection[ii] = ii;
+    }
+    bool thrown = false;
+    try {
+        overflow->filterBatch(&m_tuples[0], selection, AbstractExpression::BATCH_SIZE);
+    }
+    catch (const SQLException& e) {
+        thrown = true;
+    }
+    ASSERT_TRUE(thrown);
+}
+
+TEST_F(ExpressionBatchTest, ScanPredicates) {
+    // Not a multiple of the batch size, so the last batch is a partial one
+    populate(AbstractExpression::BATCH_SIZE * 40 + 17);
+    boost::scoped_ptr<AbstractExpression> comparison(
+            new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, tve(COL_C), constant(500)));
+    checkFilterMatchesEval(comparison.get());
+    boost::scoped_ptr<AbstractExpression> andExpr(conjunction());
+    checkFilterMatchesEval(andExpr.get());
+    boost::scoped_ptr<AbstractExpression> orExpr(disjunction());
+    checkFilterMatchesEval(orExpr.get());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
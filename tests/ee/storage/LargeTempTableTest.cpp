@@ -68,13 +68,39 @@ protected:
 class LTTTopend : public voltdb::DummyTopend {
 public:
 
+    LTTTopend()
+        : m_serializeBlocks(false)
+        , m_prefetchCount(0)
+    {
+    }
+
     bool storeLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+        if (m_serializeBlocks) {
+            // Round trip through bytes, the way JNITopend does
+            CopySerializeOutput output;
+            block->serializeTo(output);
+            m_bytesMap[blockId] = std::string(output.data(), output.size());
+            block->setStoredSize(output.size());
+            block->releaseData();
+            return true;
+        }
+
         std::pair<TBPtr, std::unique_ptr<Pool>> blockAndPool = block->releaseData();
         m_map.insert(std::make_pair(blockId, StoredBlock(blockAndPool.first, std::move(blockAndPool.second))));
         return true;
     }
 
     bool loadLargeTempTableBlock(int64_t blockId, LargeTempTableBlock* block) {
+        if (m_serializeBlocks) {
+            auto it = m_bytesMap.find(blockId);
+            assert(it != m_bytesMap.end());
+            assert(it->second.size() == block->storedSize());
+            ReferenceSerializeInputBE input(it->second.data(), it->second.size());
+            block->deserializeFrom(input);
+            m_bytesMap.erase(it);
+            return true;
+        }
+
         auto it = m_map.find(blockId);
         StoredBlock &sb = it->second;
         block->setData(sb.releaseBlock(), sb.releasePool());
@@ -83,6 +109,10 @@ public:
     }
 
     bool releaseLargeTempTableBlock(int64_t blockId) {
+        if (m_bytesMap.erase(blockId) > 0) {
+            return true;
+        }
+
         auto it = m_map.find(blockId);
         if (it == m_map.end()) {
             assert(false);
@@ -95,8 +125,21 @@ public:
         return true;
     }
 
+    void prefetchLargeTempTableBlock(int64_t blockId) {
+        assert(m_map.find(blockId) != m_map.end() || m_bytesMap.find(blockId) != m_bytesMap.end());
+        ++m_prefetchCount;
+    }
+
     size_t storedBlockCount() const {
-        return m_map.size();
+        return m_map.size() + m_bytesMap.size();
+    }
+
+    void setSerializeBlocks(bool serializeBlocks) {
+        m_serializeBlocks = serializeBlocks;
+    }
+
+    int prefetchCount() const {
+        return m_prefetchCount;
     }
 
     ~LTTTopend() {
@@ -136,6 +179,9 @@ private:
     };
 
     std::map<int64_t, StoredBlock> m_map;
+    std::map<int64_t, std::string> m_bytesMap;
+    bool m_serializeBlocks;
+    int m_prefetchCount;
 };
 
 
@@ -402,6 +448,81 @@ TEST_F(LargeTempTableTest, OverflowCache) {
     ASSERT_EQ(0, topend->storedBlockCount());
 }
 
+TEST_F(LargeTempTableTest, SerializedSpill) {
+    LargeTempTableBlockCache* lttBlockCache = ExecutorContext::getExecutorContext()->lttBlockCache();
+    LTTTopend* topend = static_cast<LTTTopend*>(ExecutorContext::getExecutorContext()->getTopend());
+    topend->setSerializeBlocks(true);
+
+#ifndef MEMCHECK
+    voltdb::LargeTempTableBlockCache::CACHE_SIZE_IN_BYTES() = 400000;
+#else
+    voltdb::LargeTempTableBlockCache::CACHE_SIZE_IN_BYTES() = 80000;
+#endif
+
+    // Variable length values that are not inlined have to survive
+    // being written out as bytes and read back into a new pool.
+    TupleSchema* schema = Tools::buildSchema(VALUE_TYPE_BIGINT,
+                                             VALUE_TYPE_DOUBLE,
+                                             std::make_pair(VALUE_TYPE_VARCHAR, 15),
+                                             std::make_pair(VALUE_TYPE_VARCHAR, 256));
+
+    std::vector<std::string> names{
+        "pk",
+        "val",
+        "text0",
+        "text1"
+    };
+
+    voltdb::LargeTempTable *ltt = TableFactory::buildLargeTempTable(
+        "ltmp",
+        schema,
+        names);
+    ltt->incrementRefcount();
+
+    StandAloneTupleStorage tupleWrapper(schema);
+    TableTuple tuple = tupleWrapper.tuple();
+
+    const int NUM_TUPLES = 3000;
+    for (int i = 0; i < NUM_TUPLES; ++i) {
+        std::string shortText(15, 'a' + (i % 26));
+        std::string longText(20 + (i % 40), 'A' + (i % 26));
+        Tools::setTupleValues(&tuple, i, 0.5 * i, shortText, longText);
+        ltt->insertTuple(tuple);
+    }
+
+    ltt->finishInserts();
+
+    ASSERT_EQ(0, lttBlockCache->numPinnedEntries());
+    ASSERT_TRUE(lttBlockCache->totalBlockCount() > lttBlockCache->residentBlockCount());
+    ASSERT_TRUE(topend->storedBlockCount() > 0);
+
+    {
+        LargeTempTableIterator iter = ltt->largeIterator();
+        TableTuple iterTuple(ltt->schema());
+        int i = 0;
+        while (iter.next(iterTuple)) {
+            std::string shortText(15, 'a' + (i % 26));
+            std::string longText(20 + (i % 40), 'A' + (i % 26));
+            assertTupleValuesEqual(&iterTuple, i, 0.5 * i, shortText, longText);
+            ++i;
+        }
+
+        ASSERT_EQ(NUM_TUPLES, i);
+    }
+
+    // The iterator asks for the next block ahead of time whenever it
+    // is on disk.
+    ASSERT_TRUE(topend->prefetchCount() > 0);
+
+    ltt->decrementRefcount();
+
+    ASSERT_EQ(0, lttBlockCache->totalBlockCount());
+    ASSERT_EQ(0, lttBlockCache->allocatedMemory());
+    ASSERT_EQ(0, topend->storedBlockCount());
+
+    topend->setSerializeBlocks(false);
+}
+
 int main() {
 
     assert (voltdb::ExecutorContext::getExecutorContext() == NULL);
@@ -301,6 +301,29 @@ TEST_F(CompactingHashTest, ShrinkAndGrowMulti) {
     volt.verify();
 }
 
+TEST_F(CompactingHashTest, Presized) {
+    const uint64_t EXPECTED = 100;
+    const uint64_t ITERATIONS = 10000;
+
+    voltdb::CompactingHashTable<uint64_t,uint64_t> presized(false, EXPECTED);
+    voltdb::CompactingHashTable<uint64_t,uint64_t> standard(false);
+    ASSERT_EQ(voltdb::CompactingHashTable<uint64_t,uint64_t>::bucketCountFor(EXPECTED) * sizeof(void*),
+              presized.bytesAllocated());
+    ASSERT_TRUE(presized.bytesAllocated() < standard.bytesAllocated());
+
+    // It grows past the expected size and shrinks back to it like any other hash
+    for (uint64_t i = 0; i < ITERATIONS; i++)
+        ASSERT_TRUE(presized.insert(i, i) == NULL);
+
+    presized.verify();
+
+    for (uint64_t i = 0; i < ITERATIONS; i++)
+        ASSERT_TRUE(presized.erase(i, i));
+
+    presized.verify();
+    ASSERT_EQ(0, presized.size());
+}
+
 TEST_F(CompactingHashTest, Benchmark) {
     const int ITERATIONS = 10000;
 
@@ -307,6 +307,20 @@ public class TestAdHocQueries extends AdHocQueryTester {
                 assertEquals(1, modCount.asScalarLong());
             }
 
+            // An IN list on the partitioning column only reads the partitions of its keys
+            VoltTable inList;
+            inList = m_client.callProcedure("@AdHoc", String.format("SELECT PARTVAL FROM PARTED1 WHERE PARTVAL IN (%d, %d) ORDER BY PARTVAL;",
+                    hashableA, hashableB)).getResults()[0];
+            assertEquals(2, inList.getRowCount());
+            inList = m_client.callProcedure("@AdHoc", String.format("SELECT PARTVAL FROM PARTED1 WHERE PARTVAL IN (%d, %d);",
+                    hashableA, hashableC)).getResults()[0];
+            assertEquals(1, inList.getRowCount());
+            assertEquals(hashableA, inList.asScalarLong());
+            inList = m_client.callProcedure("@AdHoc", "SELECT PARTVAL FROM PARTED1 WHERE PARTVAL IN (?, ?, ?);",
+                    hashableB, hashableD, null).getResults()[0];
+            assertEquals(1, inList.getRowCount());
+            assertEquals(hashableB, inList.asScalarLong());
+
             runAllAdHocSPtests(hashableA, hashableB, hashableC, hashableD);
         }
         finally {
@@ -0,0 +1,154 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.client.BatchTimeoutOverrideType;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocation;
+
+public class TestClientResponseChunker extends TestCase {
+
+    private static VoltTable makeTable(int rows) {
+        VoltTable t = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                                    new VoltTable.ColumnInfo("NAME", VoltType.STRING));
+        for (int ii = 0; ii < rows; ii++) {
+            // vary the row width so chunk boundaries don't line up neatly
+            t.addRow(ii, new String(new char[ii % 37]).replace('\0', 'x'));
+        }
+        return t;
+    }
+
+    private static ClientResponseImpl roundTrip(ClientResponseImpl response) throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(response.getSerializedSize());
+        response.flattenToBuffer(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        ClientResponseImpl copy = new ClientResponseImpl();
+        copy.initFromBuffer(buf);
+        return copy;
+    }
+
+    /*
+     * Cut a response into frames, send each over the wire format and check the rows come
+     * out the other end in order, with every frame inside the chunk size
+     */
+    @Test
+    public void testChunksReassemble() throws Exception {
+        VoltTable tables[] = { makeTable(5000), makeTable(0), makeTable(3) };
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                (byte)7, "app", tables, null, 42);
+        response.setClusterRoundtrip(11);
+        final int chunkBytes = 4096;
+        int size = response.getSerializedSize();
+        assertTrue(ClientResponseChunker.shouldChunk(response, size, chunkBytes));
+        assertFalse(ClientResponseChunker.shouldChunk(response, size, 0));
+        assertFalse(ClientResponseChunker.shouldChunk(response, size, size));
+
+        ClientResponseChunker chunker = new ClientResponseChunker(response, chunkBytes);
+        List<List<VoltTable>> received = new ArrayList<>();
+        for (int ii = 0; ii < tables.length; ii++) {
+            received.add(new ArrayList<VoltTable>());
+        }
+        int frames = 0;
+        boolean sawLast = false;
+        while (chunker.hasNext()) {
+            ClientResponseImpl frame = roundTrip(chunker.next());
+            frames++;
+            assertFalse(sawLast);
+            assertTrue(frame.isChunk());
+            assertEquals(42, frame.getClientHandle());
+            assertEquals(ClientResponse.SUCCESS, frame.getStatus());
+            assertEquals(7, frame.getAppStatus());
+            assertEquals("app", frame.getAppStatusString());
+            assertEquals(11, frame.getClusterRoundtrip());
+            assertEquals(1, frame.getResults().length);
+            assertTrue(frame.getResults()[0].getSerializedSize() <= chunkBytes);
+            received.get(frame.getChunkTableIndex()).add(frame.getResults()[0]);
+            sawLast = frame.isLastChunk();
+        }
+        assertTrue(sawLast);
+        assertTrue(frames > 10);
+
+        for (int ii = 0; ii < tables.length; ii++) {
+            assertFalse(received.get(ii).isEmpty());
+            VoltTable expected = tables[ii];
+            expected.resetRowPosition();
+            for (VoltTable chunk : received.get(ii)) {
+                assertEquals(expected.getColumnCount(), chunk.getColumnCount());
+                assertEquals("NAME", chunk.getColumnName(1));
+                while (chunk.advanceRow()) {
+                    assertTrue(expected.advanceRow());
+                    assertEquals(expected.getLong(0), chunk.getLong(0));
+                    assertEquals(expected.getString(1), chunk.getString(1));
+                }
+            }
+            assertFalse(expected.advanceRow());
+        }
+    }
+
+    @Test
+    public void testWholeResponseIsNotAChunk() throws Exception {
+        ClientResponseImpl response = roundTrip(new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { makeTable(10) }, null, 1));
+        assertFalse(response.isChunk());
+        assertTrue(response.isLastChunk());
+        assertEquals(10, response.getResults()[0].getRowCount());
+
+        // failures always go back whole
+        ClientResponseImpl failure = new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE,
+                new VoltTable[] { makeTable(1000) }, "nope", 1);
+        assertFalse(ClientResponseChunker.shouldChunk(failure, failure.getSerializedSize(), 16));
+    }
+
+    @Test
+    public void testChunkSizeExtension() throws Exception {
+        ProcedureInvocation pi = new ProcedureInvocation(5, BatchTimeoutOverrideType.NO_TIMEOUT,
+                false, 65536, "Report", 1L, "two");
+        ByteBuffer buf = ByteBuffer.allocate(pi.getSerializedSize());
+        pi.flattenToBuffer(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.initFromBuffer(buf);
+        assertEquals(65536, spi.getResultChunkBytes());
+        assertEquals("Report", spi.getProcName());
+        assertEquals(2, spi.getParams().size());
+
+        // the chunk size stays with the ClientInterface and is not forwarded
+        ByteBuffer out = ByteBuffer.allocate(spi.getSerializedSize());
+        spi.flattenToBuffer(out);
+        out.flip();
+        StoredProcedureInvocation forwarded = new StoredProcedureInvocation();
+        forwarded.initFromBuffer(out);
+        assertEquals(0, forwarded.getResultChunkBytes());
+        assertEquals(2, forwarded.getParams().size());
+    }
+}
@@ -0,0 +1,363 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.sysprocs.saverestore.SnapshotPathType;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestGroupCommitCommandLog {
+
+    private File m_dir;
+    private GroupCommitCommandLog m_log;
+
+    /*
+     * Counts the tasks handed to it and the tasks released by each durability check
+     */
+    static class CountingListener implements DurabilityListener {
+        private int m_tasks = 0;
+        final List<Integer> m_durableBatches = new ArrayList<>();
+        final CountDownLatch m_allDurable;
+        int m_durable = 0;
+
+        CountingListener(int expected) {
+            m_allDurable = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void setUniqueIdListener(DurableUniqueIdListener listener) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public void addTransaction(TransactionTask pendingTask) {
+            m_tasks++;
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return m_tasks;
+        }
+
+        @Override
+        public CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            final int tasks = m_tasks;
+            m_tasks = 0;
+            return new CompletionChecks() {
+                @Override
+                public CompletionChecks startNewCheckList(int startSize) {
+                    return null;
+                }
+
+                @Override
+                public void addTask(TransactionTask task) {}
+
+                @Override
+                public void setLastDurableUniqueId(long uniqueId) {}
+
+                @Override
+                public boolean isChanged() {
+                    return tasks > 0;
+                }
+
+                @Override
+                public int getTaskListSize() {
+                    return tasks;
+                }
+
+                @Override
+                public void processChecks() {}
+            };
+        }
+
+        @Override
+        public void processDurabilityChecks(CompletionChecks completionChecks) {
+            final int tasks = completionChecks.getTaskListSize();
+            synchronized (this) {
+                m_durableBatches.add(tasks);
+                m_durable += tasks;
+            }
+            for (int ii = 0; ii < tasks; ii++) {
+                m_allDurable.countDown();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        m_dir = new File("/tmp/" + System.getProperty("user.name") + "/groupcommitlog");
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_log != null) {
+            m_log.shutdown();
+        }
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private GroupCommitCommandLog start(boolean synchronous, int fsyncIntervalMillis) {
+        m_log = new GroupCommitCommandLog(synchronous, fsyncIntervalMillis, Integer.MAX_VALUE,
+                                          m_dir.getPath(), m_dir.getPath());
+        final Map<Integer, Long> lastSeen = new HashMap<>();
+        lastSeen.put(0, TxnEgo.makeZero(0).getTxnId());
+        m_log.init(1024, Long.MIN_VALUE, 1, null, lastSeen);
+        return m_log;
+    }
+
+    private static Iv2InitiateTaskMessage makeInvocation(long spHandle, boolean readOnly) {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName(readOnly ? "Select" : "Insert");
+        spi.setParams(spHandle, "value " + spHandle);
+        Iv2InitiateTaskMessage msg =
+                new Iv2InitiateTaskMessage(0, 0, Iv2InitiateTaskMessage.UNUSED_TRUNC_HANDLE,
+                                           spHandle, spHandle, readOnly, true, spi, 0, 0, false);
+        msg.setSpHandle(spHandle);
+        return msg;
+    }
+
+    private static List<CommandLogSegment.LoggedInvocation> readAll(File dir) throws Exception {
+        List<CommandLogSegment.LoggedInvocation> txns = new ArrayList<>();
+        for (File file : CommandLogSegment.list(dir)) {
+            try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(file)) {
+                ByteBuffer payload;
+                while ((payload = reader.next()) != null) {
+                    assertEquals(CommandLogSegment.INVOCATION_RECORD, payload.get());
+                    txns.add(new CommandLogSegment.LoggedInvocation(payload));
+                }
+                assertFalse(reader.isTorn());
+            }
+        }
+        return txns;
+    }
+
+    @Test
+    public void testSynchronousLogIsDurableBeforeRelease() throws Exception {
+        start(true, 200);
+        assertFalse(m_log.canOfferTask());
+        CountingListener listener = new CountingListener(100);
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo ego = TxnEgo.makeZero(0);
+        List<Long> spHandles = new ArrayList<>();
+        for (int ii = 0; ii < 100; ii++) {
+            ego = ego.makeNext();
+            spHandles.add(ego.getTxnId());
+            assertNull(m_log.log(makeInvocation(ego.getTxnId(), false), ego.getTxnId(), null,
+                                 listener, mock(TransactionTask.class)));
+        }
+        // Reads are released in order with the writes but never written
+        ego = ego.makeNext();
+        m_log.log(makeInvocation(ego.getTxnId(), true), ego.getTxnId(), null, listener, null);
+
+        assertTrue(listener.m_allDurable.await(10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        List<CommandLogSegment.LoggedInvocation> txns = readAll(m_dir);
+        assertEquals(spHandles.size(), txns.size());
+        for (int ii = 0; ii < txns.size(); ii++) {
+            assertEquals(spHandles.get(ii).longValue(), txns.get(ii).m_spHandle);
+            assertTrue(txns.get(ii).m_isSinglePartition);
+            assertEquals("Insert", txns.get(ii).m_invocation.getProcName());
+            assertEquals(spHandles.get(ii), txns.get(ii).m_invocation.getParameterAtIndex(0));
+        }
+    }
+
+    @Test
+    public void testAsynchronousLogDoesNotBlock() throws Exception {
+        start(false, 5);
+        assertTrue(m_log.canOfferTask());
+        CountingListener listener = new CountingListener(10);
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo ego = TxnEgo.makeZero(0);
+        for (int ii = 0; ii < 10; ii++) {
+            ego = ego.makeNext();
+            ListenableFuture<Object> backpressure =
+                    m_log.log(makeInvocation(ego.getTxnId(), false), ego.getTxnId(), null,
+                              listener, mock(TransactionTask.class));
+            assertNotNull(backpressure);
+            assertTrue(backpressure.isDone());
+        }
+        assertTrue(listener.m_allDurable.await(10, TimeUnit.SECONDS));
+        // Everything logged within the interval shares a sync
+        synchronized (listener) {
+            assertTrue(listener.m_durableBatches.size() < 10);
+        }
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        start(true, 200);
+        CountingListener listener = new CountingListener(5);
+        m_log.registerDurabilityListener(listener);
+        TxnEgo ego = TxnEgo.makeZero(0);
+        for (int ii = 0; ii < 5; ii++) {
+            ego = ego.makeNext();
+            m_log.log(makeInvocation(ego.getTxnId(), false), ego.getTxnId(), null,
+                      listener, mock(TransactionTask.class));
+        }
+        assertTrue(listener.m_allDurable.await(10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        // Cut the last record short, as if the host died in the middle of the write
+        File segment = CommandLogSegment.list(m_dir).get(0);
+        long lastRecord = -1;
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(segment)) {
+            long position = reader.position();
+            while (reader.next() != null) {
+                lastRecord = position;
+                position = reader.position();
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(lastRecord + CommandLogSegment.RECORD_HEADER_SIZE + 3);
+        }
+
+        try (CommandLogSegment.Reader reader = new CommandLogSegment.Reader(segment)) {
+            int count = 0;
+            while (reader.next() != null) {
+                count++;
+            }
+            assertEquals(4, count);
+            assertTrue(reader.isTorn());
+        }
+    }
+
+    @Test
+    public void testReinitiatorFindsLogStart() throws Exception {
+        start(true, 200);
+        CountingListener listener = new CountingListener(1);
+        m_log.registerDurabilityListener(listener);
+        long spHandle = TxnEgo.makeZero(0).makeNext().getTxnId();
+        m_log.log(makeInvocation(spHandle, false), spHandle, null, listener, mock(TransactionTask.class));
+        assertTrue(listener.m_allDurable.await(10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        DefaultCommandLogReinitiator reinitiator =
+                new DefaultCommandLogReinitiator(0, StartAction.RECOVER, null, m_dir.getPath(), null);
+        assertTrue(reinitiator.hasReplayedSegments());
+        assertEquals(Long.valueOf(TxnEgo.makeZero(0).getTxnId()),
+                     reinitiator.getMaxLastSeenTxnByPartition().get(0));
+
+        reinitiator.returnAllSegments();
+        assertTrue(CommandLogSegment.list(m_dir).isEmpty());
+    }
+
+    @Test
+    public void testTruncationMovesLogStartForward() throws Exception {
+        // Small segments so a few hundred transactions roll through several of them
+        m_log = new GroupCommitCommandLog(true, 200, Integer.MAX_VALUE, m_dir.getPath(), 4096);
+        final Map<Integer, Long> lastSeen = new HashMap<>();
+        final long startTxnId = TxnEgo.makeZero(0).getTxnId();
+        lastSeen.put(0, startTxnId);
+        m_log.init(1024, Long.MIN_VALUE, 1, null, lastSeen);
+        CountingListener listener = new CountingListener(300);
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo ego = TxnEgo.makeZero(0);
+        List<Long> spHandles = new ArrayList<>();
+        for (int ii = 0; ii < 300; ii++) {
+            ego = ego.makeNext();
+            spHandles.add(ego.getTxnId());
+            m_log.log(makeInvocation(ego.getTxnId(), false), ego.getTxnId(), null,
+                      listener, mock(TransactionTask.class));
+            if (ii % 10 == 9) {
+                // Wait for the batch so the segments fill up one batch at a time
+                while (listener.m_allDurable.getCount() > 300 - ii - 1) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        assertTrue(listener.m_allDurable.await(10, TimeUnit.SECONDS));
+        final List<File> before = CommandLogSegment.list(m_dir);
+        assertTrue(before.size() > 3);
+
+        // A truncation snapshot half way through the log deletes the segments it covers
+        final Map<Integer, Long> snapshotTxnIds = new HashMap<>();
+        snapshotTxnIds.put(0, spHandles.get(150));
+        m_log.snapshotCompleted(SnapshotCompletionInterest.SnapshotCompletionEvent.newInstanceForTest(
+                m_dir.getPath(), SnapshotPathType.SNAP_CL, "truncation", Long.MIN_VALUE, snapshotTxnIds,
+                true, 0, 0));
+        m_log.shutdown();
+        m_log = null;
+
+        final List<File> after = CommandLogSegment.list(m_dir);
+        assertTrue(after.size() < before.size());
+        // The remaining segments hold the tail of the log, the last transaction before them
+        // is the highest one that was truncated
+        final int remaining = readAll(m_dir).size();
+        final long maxTruncated = spHandles.get(spHandles.size() - remaining - 1);
+        assertTrue(maxTruncated <= spHandles.get(150));
+
+        // The oldest remaining segment starts after everything that was truncated, so the
+        // snapshot the log was started from no longer overlaps it
+        DefaultCommandLogReinitiator reinitiator =
+                new DefaultCommandLogReinitiator(0, StartAction.RECOVER, null, m_dir.getPath(), null);
+        final long logStart = reinitiator.getMaxLastSeenTxnByPartition().get(0);
+        assertEquals(maxTruncated, logStart);
+        assertTrue(logStart > startTxnId);
+        reinitiator.returnAllSegments();
+    }
+}
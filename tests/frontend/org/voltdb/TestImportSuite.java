@@ -43,6 +43,7 @@ import org.voltdb.client.Client;
 import org.voltdb.client.ClientImpl;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.importer.ImporterStatsCollector;
 import org.voltdb.regressionsuites.LocalCluster;
 import org.voltdb.regressionsuites.MultiConfigSuiteBuilder;
 import org.voltdb.regressionsuites.RegressionSuite;
@@ -279,9 +280,11 @@ public class TestImportSuite extends RegressionSuite {
 
     private static Map<String, String> expectedStatRows = new HashMap<>();
     static {
-        expectedStatRows.put("SocketServerImporter", "importTable.insert");
+        expectedStatRows.put("SocketServerImporter", "@LoadSinglepartitionTable");
         expectedStatRows.put("Log4jSocketHandlerImporter", "log_events.insert");
     };
+    // Loads the rows of importTable.insert in batches, so takes no more invocations than rows
+    private static final String BATCHING_IMPORTER = "SocketServerImporter";
     private static final String CONN_HOST_COL = "CONNECTION_HOSTNAME";
     private static final String PROC_NAME_COL = "PROCEDURE_NAME";
     private static final String INVOCATIONS_COL = "INVOCATIONS";
@@ -341,8 +344,11 @@ public class TestImportSuite extends RegressionSuite {
         }
 
         assertEquals(expectedStatRows.size(), statsRollup.size());
-        for (long invocations : statsRollup.values()) {
-            if (min<0) {
+        for (Map.Entry<String, Long> e : statsRollup.entrySet()) {
+            long invocations = e.getValue();
+            if (BATCHING_IMPORTER.equals(e.getKey())) {
+                assertTrue(invocations > 0 && invocations <= count);
+            } else if (min<0) {
                 assertEquals(count, invocations);
             } else {
                 assertTrue(invocations>=min && invocations <= count);
@@ -350,11 +356,48 @@ public class TestImportSuite extends RegressionSuite {
         }
     }
 
+    // The rows loaded in batches are reported with the batch counts, sizes and lag of the load procedure
+    private void verifyBatchStats(Client client, int count) throws Exception {
+        long end = System.currentTimeMillis() + 20000;
+        long batches = 0;
+        long rows = 0;
+        while (System.currentTimeMillis() < end) {
+            batches = 0;
+            rows = 0;
+            VoltTable stats = client.callProcedure("@Statistics", "IMPORTER", 0).getResults()[0];
+            while (stats.advanceRow()) {
+                long batchCount = stats.getLong(ImporterStatsCollector.BATCH_COUNT_COL);
+                if (!BATCHING_IMPORTER.equals(stats.getString(ImporterStatsCollector.IMPORTER_NAME_COL))) {
+                    assertEquals(0, batchCount);
+                    continue;
+                }
+                assertEquals(expectedStatRows.get(BATCHING_IMPORTER),
+                             stats.getString(ImporterStatsCollector.PROC_NAME_COL));
+                long avgBatchSize = stats.getLong(ImporterStatsCollector.AVG_BATCH_SIZE_COL);
+                long avgLag = stats.getLong(ImporterStatsCollector.AVG_LAG_COL);
+                assertTrue(avgLag >= 0 && avgLag <= stats.getLong(ImporterStatsCollector.MAX_LAG_COL));
+                if (batchCount > 0) {
+                    assertTrue(avgBatchSize >= 1);
+                }
+                batches += batchCount;
+                rows += batchCount * avgBatchSize;
+            }
+            if (batches > 0) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertTrue(batches > 0);
+        assertTrue(batches <= count);
+        assertTrue(rows <= count);
+    }
+
     public void testImportSimpleData() throws Exception {
         System.out.println("testImportSimpleData");
 
         pushDataToImporters(100, 1);
         verifyData(m_client, 100);
+        verifyBatchStats(m_client, 100);
     }
 
     public void testImportMultipleTimes() throws Exception {
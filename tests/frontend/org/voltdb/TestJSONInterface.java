@@ -1368,6 +1368,89 @@ public class TestJSONInterface extends TestCase {
         }
     }
 
+    public void testBatchedInvocations() throws Exception {
+        try {
+            String simpleSchema
+                    = "CREATE TABLE foo (\n"
+                    + "    bar BIGINT NOT NULL,\n"
+                    + "    baz VARCHAR(20),\n"
+                    + "    PRIMARY KEY (bar)\n"
+                    + ");";
+
+            VoltProjectBuilder builder = new VoltProjectBuilder();
+            builder.addLiteralSchema(simpleSchema);
+            builder.addPartitionInfo("foo", "bar");
+            builder.addStmtProcedure("Insert", "insert into foo values (?,?);");
+            builder.addStmtProcedure("Select", "select * from foo order by bar;");
+            builder.setHTTPDPort(8095);
+            boolean success = builder.compile(Configuration.getPathToCatalogForTest("json.jar"));
+            assertTrue(success);
+
+            VoltDB.Configuration config = new VoltDB.Configuration();
+            config.m_pathToCatalog = config.setPathToCatalogForTest("json.jar");
+            config.m_pathToDeployment = builder.getPathToDeployment();
+            server = new ServerThread(config);
+            server.start();
+            server.waitForInitialization();
+
+            // several inserts, one that violates the primary key, and a read in one POST
+            String invocations = "["
+                    + "{\"Procedure\":\"Insert\",\"Parameters\":[1,\"one\"]},"
+                    + "{\"Procedure\":\"Insert\",\"Parameters\":[2,\"two\"]},"
+                    + "{\"Procedure\":\"Insert\",\"Parameters\":[2,\"again\"]},"
+                    + "{\"Procedure\":\"@AdHoc\",\"Parameters\":[\"select count(*) from foo;\"]}"
+                    + "]";
+            Map<String,String> params = new HashMap<>();
+            params.put("Invocations", invocations);
+            String responseJSON = callProcOverJSONRaw(params, 200);
+            JSONArray responses = new JSONArray(responseJSON);
+            assertEquals(4, responses.length());
+            assertEquals(ClientResponse.SUCCESS, responseFromJSON(responses.getJSONObject(0).toString()).status);
+            assertEquals(ClientResponse.SUCCESS, responseFromJSON(responses.getJSONObject(1).toString()).status);
+            assertEquals(ClientResponse.GRACEFUL_FAILURE, responseFromJSON(responses.getJSONObject(2).toString()).status);
+            assertEquals(ClientResponse.SUCCESS, responseFromJSON(responses.getJSONObject(3).toString()).status);
+
+            // invocations without parameters, wrapped in jsonp
+            params.put("Invocations", "[{\"Procedure\":\"Select\"}]");
+            params.put("jsonp", "fooBar");
+            responseJSON = callProcOverJSONRaw(params, 200);
+            assertTrue(responseJSON.startsWith("fooBar("));
+            assertTrue(responseJSON.endsWith(")"));
+            responses = new JSONArray(responseJSON.substring("fooBar(".length(), responseJSON.length() - 1));
+            assertEquals(1, responses.length());
+            Response r = responseFromJSON(responses.getJSONObject(0).toString());
+            assertEquals(ClientResponse.SUCCESS, r.status);
+            assertEquals(2, r.results[0].getRowCount());
+            assertTrue(r.results[0].advanceRow());
+            assertEquals("one", r.results[0].getString(1));
+            params.remove("jsonp");
+
+            // bad requests
+            params.put("Procedure", "Select");
+            responseJSON = callProcOverJSONRaw(params, 400);
+            assertTrue(responseJSON.contains("can't be given together"));
+            params.remove("Procedure");
+
+            params.put("Invocations", "[{\"Parameters\":[1]}]");
+            responseJSON = callProcOverJSONRaw(params, 400);
+            assertTrue(responseJSON.contains("failed to parse invocations"));
+
+            params.put("Invocations", "not json");
+            responseJSON = callProcOverJSONRaw(params, 400);
+            assertTrue(responseJSON.contains("failed to parse invocations"));
+
+            params.put("Invocations", "[]");
+            responseJSON = callProcOverJSONRaw(params, 400);
+            assertTrue(responseJSON.contains("has no invocations"));
+        } finally {
+            if (server != null) {
+                server.shutdown();
+                server.join();
+            }
+            server = null;
+        }
+    }
+
     public void testProcTimeout() throws Exception {
         try {
             String simpleSchema
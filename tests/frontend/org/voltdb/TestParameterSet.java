@@ -537,4 +537,40 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    public void testNoCopyKeepsSerializedBytes() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(5L, "ABCDE", null, new int[] {1, 2, 3});
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize() + 4);
+        buf.putShort((short)7);
+        pset.flattenToBuffer(buf);
+        buf.putShort((short)9);
+        buf.flip();
+        buf.getShort();
+
+        // parameters in the middle of a buffer, the bytes after them aren't part of the set
+        ParameterSet noCopy = ParameterSet.fromByteBufferNoCopy(buf);
+        assertEquals(9, buf.getShort());
+        assertTrue(noCopy.hasSerializedForm());
+        assertEquals(pset.getSerializedSize(), noCopy.getSerializedSize());
+        assertTrue(Arrays.deepEquals(pset.toArray(), noCopy.toArray()));
+
+        ByteBuffer expected = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(expected);
+        ByteBuffer actual = ByteBuffer.allocate(noCopy.getSerializedSize());
+        noCopy.flattenToBuffer(actual);
+        assertFalse(actual.hasRemaining());
+        assertTrue(Arrays.equals(expected.array(), actual.array()));
+
+        // serializing twice gives the same bytes
+        actual.clear();
+        noCopy.flattenToBuffer(actual);
+        assertTrue(Arrays.equals(expected.array(), actual.array()));
+
+        // direct buffers are usually pooled, the set doesn't hold on to them
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.capacity());
+        direct.put(expected.array());
+        direct.flip();
+        assertFalse(ParameterSet.fromByteBufferNoCopy(direct).hasSerializedForm());
+        assertFalse(pset.hasSerializedForm());
+    }
 }
@@ -1231,6 +1231,54 @@ public class TestVoltTable extends TestCase {
         }
     }
 
+    public void testAppendRows() {
+        int rowCount = 1000;
+        int numberOfPartitions = 20;
+        Random r = new Random(0);
+
+        for (int j = 0; j < 10; j++) {
+            TableHelper th = new TableHelper();
+            VoltTable t = th.getTotallyRandomTable("foo", true).table;
+            th.randomFill(t, rowCount, 500);
+
+            VoltTable[] partitioned_tables = new VoltTable[numberOfPartitions];
+            for (int i = 0; i < partitioned_tables.length; i++) {
+                partitioned_tables[i] = t.clone(100);
+            }
+            t.resetRowPosition();
+            while (t.advanceRow()) {
+                partitioned_tables[r.nextInt(numberOfPartitions)].add(t);
+            }
+
+            // Appending the tables whole matches adding their rows one by one,
+            // whether they were built here or read from a buffer
+            VoltTable added = t.clone(100);
+            VoltTable appended = t.clone(0);
+            for (int i = 0; i < partitioned_tables.length; i++) {
+                VoltTable pt = partitioned_tables[i];
+                pt.resetRowPosition();
+                while (pt.advanceRow()) {
+                    added.add(pt);
+                }
+                if (i % 2 == 1) {
+                    pt = PrivateVoltTableFactory.createVoltTableFromBuffer(
+                            PrivateVoltTableFactory.getTableDataReference(pt), true);
+                }
+                assertTrue(PrivateVoltTableFactory.appendRows(appended, pt));
+            }
+            assertEquals(rowCount, appended.getRowCount());
+            assertTrue(appended.equals(added));
+        }
+
+        // Rows of other column types are not appended
+        VoltTable ints = new VoltTable(new ColumnInfo("A", VoltType.INTEGER));
+        ints.addRow(1);
+        VoltTable strings = new VoltTable(new ColumnInfo("A", VoltType.STRING));
+        strings.addRow("one");
+        assertFalse(PrivateVoltTableFactory.appendRows(ints, strings));
+        assertEquals(1, ints.getRowCount());
+    }
+
     public void testSchemaChangeAddRow() {
         int rowCount = 100;
         Random r = new Random(0);
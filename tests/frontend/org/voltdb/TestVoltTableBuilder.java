@@ -0,0 +1,218 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+
+public class TestVoltTableBuilder extends TestCase {
+
+    private static final GeographyValue GEOG_VALUE = GeographyValue.fromWKT("POLYGON((0 0, 0 1, -1 1, -1 0, 0 0))");
+    private static final GeographyPointValue GEOG_PT_VALUE = GeographyPointValue.fromWKT("POINT(-122.0264 36.9719)");
+
+    private static final ColumnInfo[] ALL_TYPES = {
+        new ColumnInfo("TINY", VoltType.TINYINT),
+        new ColumnInfo("SMALL", VoltType.SMALLINT),
+        new ColumnInfo("INT", VoltType.INTEGER),
+        new ColumnInfo("BIG", VoltType.BIGINT),
+        new ColumnInfo("TS", VoltType.TIMESTAMP),
+        new ColumnInfo("FLT", VoltType.FLOAT),
+        new ColumnInfo("DEC", VoltType.DECIMAL),
+        new ColumnInfo("STR", VoltType.STRING),
+        new ColumnInfo("BIN", VoltType.VARBINARY),
+        new ColumnInfo("GEOG", VoltType.GEOGRAPHY),
+        new ColumnInfo("PT", VoltType.GEOGRAPHY_POINT)
+    };
+
+    private VoltTableBuilder m_builder;
+
+    @Override
+    public void setUp() {
+        m_builder = new VoltTableBuilder(ALL_TYPES);
+    }
+
+    @Override
+    public void tearDown() {
+        m_builder.discard();
+    }
+
+    // Set the columns out of order, to show the order doesn't matter
+    private void addRow(VoltTableBuilder builder, int i) {
+        builder.setString(7, ("row " + i).getBytes(StandardCharsets.UTF_8))
+               .setVarbinary(8, new byte[] { 1, 2, (byte)i })
+               .setGeography(9, GEOG_VALUE)
+               .setGeographyPoint(10, GEOG_PT_VALUE)
+               .setLong(0, i % 100)
+               .setLong(1, i)
+               .setLong(2, i * 10)
+               .setLong(3, i * 1000000000000L)
+               .setLong(4, 1500000000000000L + i)
+               .setDouble(5, i / 4.0)
+               .setDecimal(6, new BigDecimal(i).movePointLeft(2))
+               .addRow();
+    }
+
+    private void addRow(VoltTable table, int i) {
+        table.addRow((byte)(i % 100), (short)i, i * 10, i * 1000000000000L, 1500000000000000L + i,
+                     i / 4.0, new BigDecimal(i).movePointLeft(2), "row " + i, new byte[] { 1, 2, (byte)i },
+                     GEOG_VALUE, GEOG_PT_VALUE);
+    }
+
+    public void testMatchesAddRow() {
+        VoltTable expected = new VoltTable(ALL_TYPES);
+        for (int i = 0; i < 10; i++) {
+            addRow(m_builder, i);
+            addRow(expected, i);
+        }
+        assertEquals(10, m_builder.getRowCount());
+        assertEquals(expected.getBuffer().limit(), m_builder.getSerializedSize());
+
+        VoltTable actual = m_builder.build();
+        assertEquals(expected.getBuffer(), actual.getBuffer());
+        assertTrue(expected.hasSameContents(actual));
+        // Sized exactly
+        assertEquals(actual.getBuffer().limit(), actual.getBuffer().capacity());
+        assertEquals(0, m_builder.getRowCount());
+    }
+
+    public void testNulls() {
+        VoltTable expected = new VoltTable(ALL_TYPES);
+        Object[] nulls = new Object[ALL_TYPES.length];
+        expected.addRow(nulls);
+        for (int i = 0; i < ALL_TYPES.length; i++) {
+            m_builder.setNull(i);
+        }
+        m_builder.addRow();
+        // Null values passed to the object setters are NULLs too
+        m_builder.setLong(0, Byte.MIN_VALUE).setLong(1, Short.MIN_VALUE).setLong(2, Integer.MIN_VALUE)
+                 .setLong(3, Long.MIN_VALUE).setLong(4, Long.MIN_VALUE).setDouble(5, VoltType.NULL_FLOAT)
+                 .setDecimal(6, null).setString(7, (String)null).setVarbinary(8, null)
+                 .setGeography(9, null).setGeographyPoint(10, null).addRow();
+        expected.addRow(nulls);
+
+        VoltTable actual = m_builder.build();
+        assertEquals(expected.getBuffer(), actual.getBuffer());
+        actual.advanceRow();
+        for (int i = 0; i < ALL_TYPES.length; i++) {
+            actual.get(i, ALL_TYPES[i].type);
+            assertTrue(actual.wasNull());
+        }
+    }
+
+    public void testGrowsAndIsReusable() {
+        VoltTableBuilder builder = new VoltTableBuilder(128, ALL_TYPES);
+        try {
+            for (int round = 0; round < 3; round++) {
+                VoltTable expected = new VoltTable(ALL_TYPES);
+                for (int i = 0; i < 5000; i++) {
+                    addRow(builder, i);
+                    addRow(expected, i);
+                }
+                VoltTable actual = builder.build();
+                assertEquals(5000, actual.getRowCount());
+                assertEquals(expected.getBuffer(), actual.getBuffer());
+            }
+
+            addRow(builder, 1);
+            builder.clearRowData();
+            VoltTable empty = builder.build();
+            assertEquals(0, empty.getRowCount());
+            assertEquals(new VoltTable(ALL_TYPES).getBuffer(), empty.getBuffer());
+        }
+        finally {
+            builder.discard();
+        }
+    }
+
+    public void testStringRange() {
+        VoltTableBuilder builder = new VoltTableBuilder(new ColumnInfo("STR", VoltType.STRING));
+        try {
+            byte[] bytes = "xxhelloxx".getBytes(StandardCharsets.UTF_8);
+            builder.setString(0, bytes, 2, 5).addRow();
+            VoltTable table = builder.build();
+            table.advanceRow();
+            assertEquals("hello", table.getString(0));
+
+            try {
+                builder.setString(0, bytes, 5, 5);
+                fail();
+            }
+            catch (IndexOutOfBoundsException expected) {}
+        }
+        finally {
+            builder.discard();
+        }
+    }
+
+    public void testErrors() {
+        try {
+            m_builder.setDouble(0, 1.0);
+            fail();
+        }
+        catch (VoltTypeException expected) {}
+        try {
+            m_builder.setLong(0, 128);
+            fail();
+        }
+        catch (VoltTypeException expected) {}
+        try {
+            m_builder.setLong(2, Integer.MAX_VALUE + 1L);
+            fail();
+        }
+        catch (VoltTypeException expected) {}
+        try {
+            m_builder.setString(8, "not binary");
+            fail();
+        }
+        catch (VoltTypeException expected) {}
+        try {
+            m_builder.setLong(ALL_TYPES.length, 1);
+            fail();
+        }
+        catch (IndexOutOfBoundsException expected) {}
+
+        // A row missing a column can't be added
+        m_builder.setLong(0, 1);
+        try {
+            m_builder.addRow();
+            fail();
+        }
+        catch (IllegalStateException expected) {}
+        assertEquals(0, m_builder.getRowCount());
+
+        VoltTableBuilder discarded = new VoltTableBuilder(ALL_TYPES);
+        discarded.discard();
+        try {
+            discarded.build();
+            fail();
+        }
+        catch (IllegalStateException expected) {}
+    }
+}
@@ -343,6 +343,13 @@ public class MockVoltClient implements Client {
         return null;
     }
 
+    @Override
+    public StreamingClientResponse callProcedureStreaming(int chunkBytes, String procName, Object... parameters)
+        throws IOException, NoConnectionsException, ProcCallException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public boolean callProcedureWithTimeout(ProcedureCallback callback,
             int batchTimeout, String procName, Object... parameters)
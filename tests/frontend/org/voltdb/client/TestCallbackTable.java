@@ -0,0 +1,221 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.client.CallbackTable.ValueAction;
+
+public class TestCallbackTable extends TestCase {
+
+    private static final ValueAction<AtomicBoolean> MARK = b -> { b.set(true); return true; };
+    private static final ValueAction<AtomicBoolean> MARKED = b -> b.get();
+    private static final ValueAction<AtomicBoolean> UNMARKED = b -> !b.get();
+
+    @Test
+    public void testPutGetRemove() {
+        CallbackTable<String> table = new CallbackTable<>(4);
+        assertTrue(table.isEmpty());
+        assertNull(table.put(1, "one"));
+        assertNull(table.put(-1, "minus one"));
+        assertNull(table.put(Long.MAX_VALUE - 1, "topo"));
+        assertEquals(3, table.size());
+        assertEquals("one", table.get(1));
+        assertEquals("minus one", table.get(-1));
+        assertEquals("topo", table.get(Long.MAX_VALUE - 1));
+        assertNull(table.get(2));
+
+        assertEquals("one", table.put(1, "uno"));
+        assertEquals(3, table.size());
+
+        assertEquals("uno", table.remove(1));
+        assertNull(table.remove(1));
+        assertFalse(table.containsKey(1));
+        assertEquals(2, table.size());
+        assertEquals(2, table.values().size());
+    }
+
+    @Test
+    public void testRemoveIfAndUpdate() {
+        CallbackTable<AtomicBoolean> table = new CallbackTable<>(4);
+        table.put(1, new AtomicBoolean());
+        assertNull(table.update(2, MARK));
+        assertNull(table.removeIf(2, UNMARKED));
+
+        assertNotNull(table.update(1, MARK));
+        assertNull(table.removeIf(1, UNMARKED));
+        assertTrue(table.containsKey(1));
+        assertTrue(table.removeIf(1, MARKED).get());
+        assertTrue(table.isEmpty());
+    }
+
+    /*
+     * One thread marks each handle while another removes it only if it is unmarked, the
+     * way a streamed response races a timeout. Exactly one of them must win every handle.
+     */
+    @Test
+    public void testRemoveIfRacesUpdate() throws Exception {
+        final CallbackTable<AtomicBoolean> table = new CallbackTable<>();
+        final int handles = 100000;
+        for (long h = 0; h < handles; h++) {
+            table.put(h, new AtomicBoolean());
+        }
+        final boolean marked[] = new boolean[handles];
+        final boolean removed[] = new boolean[handles];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread marker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int h = 0; h < handles; h++) {
+                        marked[h] = table.update(h, MARK) != null;
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        Thread remover = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int h = 0; h < handles; h++) {
+                        removed[h] = table.removeIf(h, UNMARKED) != null;
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        marker.start();
+        remover.start();
+        start.countDown();
+        marker.join();
+        remover.join();
+        for (int h = 0; h < handles; h++) {
+            assertTrue(marked[h] != removed[h]);
+            assertEquals(marked[h], table.containsKey(h));
+        }
+    }
+
+    /*
+     * Random churn checked against a HashMap, exercises growth and backward shift deletion
+     */
+    @Test
+    public void testChurnMatchesHashMap() {
+        CallbackTable<Long> table = new CallbackTable<>(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random r = new Random(42);
+        long nextHandle = 0;
+        for (int ii = 0; ii < 200000; ii++) {
+            if (r.nextInt(3) != 0 || expected.isEmpty()) {
+                long handle = nextHandle++;
+                table.put(handle, handle);
+                expected.put(handle, handle);
+            } else {
+                // remove something that is outstanding, or a handle that was never there
+                long handle = r.nextInt((int)nextHandle + 10);
+                assertEquals(expected.remove(handle), table.remove(handle));
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue(), table.get(e.getKey()));
+        }
+        for (Long v : table.values()) {
+            assertTrue(expected.containsKey(v));
+        }
+    }
+
+    /*
+     * Several threads race to remove every handle, each one must be claimed exactly once
+     */
+    @Test
+    public void testConcurrentRemoveClaimsOnce() throws Exception {
+        final CallbackTable<Long> table = new CallbackTable<>();
+        final int handles = 100000;
+        final int threads = 4;
+        final AtomicLong nextHandle = new AtomicLong();
+        final AtomicInteger claimed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads * 2);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long h;
+                        while ((h = nextHandle.getAndIncrement()) < handles) {
+                            table.put(h, h);
+                        }
+                    } catch (InterruptedException e) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (long h = 0; h < handles; h++) {
+                            while (nextHandle.get() <= h) {
+                                Thread.yield();
+                            }
+                            if (table.remove(h) != null) {
+                                claimed.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        // Removers may have raced ahead of the matching put, sweep up what is left
+        for (Long v : table.values()) {
+            if (table.remove(v) != null) {
+                claimed.incrementAndGet();
+            }
+        }
+        assertEquals(handles, claimed.get());
+        assertTrue(table.isEmpty());
+    }
+}
@@ -528,6 +528,65 @@ public class TestDistributer extends TestCase {
         }
     }
 
+    @Test
+    public void testQueueCoalesced() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        MockVolt volt0 = null;
+        int handle = 0;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+
+            // Every invocation below serializes to the same frame size
+            final int frameSize = 4 + new ProcedureInvocation(1, "i1", new Integer(1)).getSerializedSize();
+
+            // A window far longer than the test, so only a full byte budget of three frames flushes
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            dist.setInvocationCoalescing(TimeUnit.HOURS.toNanos(1), 3 * frameSize);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            assertTrue(volt0.handler != null);
+
+            for (int i = 0; i < 3; i++) {
+                dist.queue(new ProcedureInvocation(++handle, "i1", new Integer(1)),
+                           new ProcCallback(), true, System.nanoTime(), 0);
+            }
+            dist.drain();
+            assertEquals(3, volt0.handler.roundTrips.get());
+            assertEquals(1, dist.getCoalescedBatchCount());
+
+            // Enough invocations to fill the budget many times over, every frame still decodes
+            for (int i = 0; i < 201; i++) {
+                dist.queue(new ProcedureInvocation(++handle, "i1", new Integer(1)),
+                           new ProcCallback(), true, System.nanoTime(), 0);
+            }
+            dist.drain();
+            assertEquals(204, volt0.handler.roundTrips.get());
+            assertEquals(68, dist.getCoalescedBatchCount());
+
+            // A batch that never fills the budget goes out when the window closes
+            Distributer windowed = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            windowed.setInvocationCoalescing(TimeUnit.MILLISECONDS.toNanos(10), 1024 * frameSize);
+            windowed.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            windowed.queue(new ProcedureInvocation(++handle, "i1", new Integer(1)),
+                           new ProcCallback(), true, System.nanoTime(), 0);
+            windowed.drain();
+            assertEquals(1, windowed.getCoalescedBatchCount());
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+        }
+    }
+
     @Test
     public void testQueueMixed() throws Exception {
         // TODO: write a mock server that can grock ssl
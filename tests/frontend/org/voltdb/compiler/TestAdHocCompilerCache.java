@@ -0,0 +1,173 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.planner.BoundPlan;
+
+import com.google_voltpatches.common.cache.Weigher;
+
+import junit.framework.TestCase;
+
+public class TestAdHocCompilerCache extends TestCase {
+
+    private static final String BASE_DDL =
+            "CREATE TABLE A (ID INTEGER NOT NULL, VAL INTEGER);\n" +
+            "CREATE TABLE B (ID INTEGER NOT NULL, VAL INTEGER);\n";
+
+    private static final Weigher<String, String> LENGTH_WEIGHER = new Weigher<String, String>() {
+        @Override
+        public int weigh(String key, String value) {
+            return value.length();
+        }
+    };
+
+    private static Database compile(String ddl) throws Exception {
+        File ddlFile = VoltProjectBuilder.writeStringToTempFile(ddl);
+        ddlFile.deleteOnExit();
+        Catalog catalog = new VoltCompiler(false).compileCatalogFromDDL(ddlFile.getAbsolutePath());
+        assertNotNull(catalog);
+        return catalog.getClusters().get("cluster").getDatabases().get("database");
+    }
+
+    public void testFrequencySketch() {
+        AdHocCompilerCache.FrequencySketch sketch = new AdHocCompilerCache.FrequencySketch(64);
+        assertEquals(0, sketch.frequency("hot".hashCode()));
+        for (int ii = 0; ii < 20; ii++) {
+            sketch.increment("hot".hashCode());
+        }
+        // counters saturate
+        assertEquals(15, sketch.frequency("hot".hashCode()));
+        assertTrue(sketch.frequency("cold".hashCode()) < 15);
+
+        // enough other traffic halves the counts
+        for (int ii = 0; ii < 640; ii++) {
+            sketch.increment(ii * 7919);
+        }
+        assertTrue(sketch.frequency("hot".hashCode()) < 15);
+    }
+
+    public void testAdmissionAndEviction() {
+        AdHocCompilerCache.LevelStats stats = new AdHocCompilerCache.LevelStats();
+        AdHocCompilerCache.Level<String> level =
+                new AdHocCompilerCache.Level<String>(100, 1, LENGTH_WEIGHER, stats);
+
+        // room to spare, everything goes in
+        for (int ii = 0; ii < 5; ii++) {
+            assertNull(level.get("k" + ii));
+            assertNull(level.putIfAbsent("k" + ii, "0123456789"));
+        }
+        assertEquals(5, level.size());
+        assertEquals(50, level.weight());
+        assertEquals("0123456789", level.putIfAbsent("k0", "other"));
+        assertEquals("0123456789", level.get("k0"));
+        assertEquals(1, stats.m_hits.get());
+        assertEquals(5, stats.m_misses.get());
+        assertEquals(5, stats.m_insertions.get());
+
+        // a full level turns away keys seen once
+        assertNull(level.putIfAbsent("big", "0123456789012345678901234567890123456789012345678901234567890"));
+        assertEquals(1, stats.m_rejections.get());
+        assertNull(level.get("big"));
+
+        // but lets in keys that keep coming back, evicting to make room
+        for (int ii = 0; ii < 3; ii++) {
+            level.get("big2");
+        }
+        assertNull(level.putIfAbsent("big2", "0123456789012345678901234567890123456789012345678901234567890"));
+        assertEquals(6, stats.m_insertions.get());
+        assertTrue(stats.m_evictions.get() > 0);
+        assertTrue(level.weight() <= 100);
+        assertEquals(level.weight(), weightOf(level));
+
+        // replace only wins against the expected value
+        String current = level.get("big2");
+        assertNotNull(current);
+        assertFalse(level.replace("big2", "stale", "new"));
+        assertTrue(level.replace("big2", current, "new"));
+        assertEquals("new", level.get("big2"));
+        assertEquals(level.weight(), weightOf(level));
+    }
+
+    private static long weightOf(AdHocCompilerCache.Level<String> level) {
+        long weight = 0;
+        for (Map.Entry<String, String> e : level.entries()) {
+            weight += LENGTH_WEIGHER.weigh(e.getKey(), e.getValue());
+        }
+        return weight;
+    }
+
+    public void testChangedTables() throws Exception {
+        Database base = compile(BASE_DDL);
+        assertTrue(AdHocCompilerCache.getChangedTables(base, compile(BASE_DDL)).isEmpty());
+
+        Database alteredB = compile(BASE_DDL + "CREATE INDEX B_VAL ON B (VAL);\n" +
+                                    "CREATE TABLE C (ID INTEGER NOT NULL);\n");
+        assertEquals("[B, C]", AdHocCompilerCache.getChangedTables(base, alteredB).toString());
+        assertEquals("[B, C]", AdHocCompilerCache.getChangedTables(alteredB, base).toString());
+
+        // statistics don't matter to plans, partitioning does
+        Database reestimated = compile(BASE_DDL);
+        reestimated.getTables().get("A").setEstimatedtuplecount(1000000);
+        assertTrue(AdHocCompilerCache.getChangedTables(base, reestimated).isEmpty());
+        Database partitionedA = compile(BASE_DDL + "PARTITION TABLE A ON COLUMN ID;\n");
+        assertEquals("[A]", AdHocCompilerCache.getChangedTables(base, partitionedA).toString());
+    }
+
+    public void testPlansSurviveUnrelatedSchemaChange() throws Exception {
+        AdHocCompilerCache.clearHashCache();
+        Database base = compile(BASE_DDL);
+        PlannerTool first = new PlannerTool(base, new byte[] { 1 });
+        AdHocPlannedStatement planA = first.planSqlForTest("select VAL from A where ID = 1;");
+        first.planSqlForTest("select VAL from B where ID = 1;");
+        first.planSqlForTest("select A.VAL from A, B where A.ID = B.ID;");
+        AdHocCompilerCache firstCache = AdHocCompilerCache.getCacheForCatalogHash(new byte[] { 1 });
+        assertEquals(3, firstCache.getCoreCacheSize());
+
+        Database alteredB = compile(BASE_DDL + "CREATE INDEX B_VAL ON B (VAL);\n");
+        new PlannerTool(alteredB, new byte[] { 2 }, first);
+        AdHocCompilerCache secondCache = AdHocCompilerCache.getCacheForCatalogHash(new byte[] { 2 });
+        assertNotSame(firstCache, secondCache);
+
+        // only the plan that touches A alone is still good
+        assertEquals(1, secondCache.getCoreCacheSize());
+        assertEquals(1, secondCache.getLiteralCacheSize());
+        AdHocPlannedStatement carried = secondCache.getWithSQL("select VAL from A where ID = 1;");
+        assertNotNull(carried);
+        assertTrue(carried.core.wasPlannedAgainstHash(new byte[] { 2 }));
+        assertFalse(planA.core.wasPlannedAgainstHash(new byte[] { 2 }));
+        assertNull(secondCache.getWithSQL("select VAL from B where ID = 1;"));
+
+        // the literal and parameterized levels still share the carried core
+        List<BoundPlan> variants = secondCache.m_coreCache.entries().get(0).getValue();
+        assertSame(carried.core, variants.get(0).m_core);
+        assertEquals(2, secondCache.m_coreCache.m_stats.m_invalidations.get());
+        assertEquals(1, secondCache.m_coreCache.m_stats.m_carriedOver.get());
+    }
+}
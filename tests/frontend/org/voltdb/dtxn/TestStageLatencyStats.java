@@ -0,0 +1,148 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.dtxn.StageLatencyStats.Point;
+import org.voltdb.dtxn.StageLatencyStats.Stage;
+
+public class TestStageLatencyStats extends TestCase {
+
+    private StageLatencyStats m_stats;
+
+    @Override
+    public void setUp() {
+        m_stats = new StageLatencyStats();
+        // The histograms are process wide, start every test from a fresh interval
+        m_stats.getStatsRows(true, System.currentTimeMillis());
+    }
+
+    private int column(String name) {
+        return new VoltTable(m_stats.getColumnSchema().toArray(new ColumnInfo[0])).getColumnIndex(name);
+    }
+
+    private Map<String, Object[]> intervalRows() {
+        Map<String, Object[]> rows = new HashMap<>();
+        int stageCol = column("STAGE");
+        for (Object[] row : m_stats.getStatsRows(true, System.currentTimeMillis())) {
+            rows.put((String)row[stageCol], row);
+        }
+        return rows;
+    }
+
+    private long count(Map<String, Object[]> rows, Stage stage) {
+        return (Long)rows.get(stage.name())[column("COUNT")];
+    }
+
+    private long max(Map<String, Object[]> rows, Stage stage) {
+        return (Long)rows.get(stage.name())[column("MAX")];
+    }
+
+    // Stamp every point up to and excluding WRITE, one millisecond apart, ending now
+    private static long[] stamps(Point... skip) {
+        long times[] = new long[Point.values().length];
+        long t = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Point.WRITE.ordinal());
+        for (Point p : Point.values()) {
+            if (p != Point.WRITE) {
+                times[p.ordinal()] = t;
+            }
+            t += TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        for (Point p : skip) {
+            times[p.ordinal()] = 0;
+        }
+        return times;
+    }
+
+    @Test
+    public void testEveryStageRecorded() {
+        StageLatencyStats.record(stamps());
+        Map<String, Object[]> rows = intervalRows();
+        assertEquals(Stage.values().length, rows.size());
+        for (Stage stage : Stage.values()) {
+            assertEquals(stage.name(), 1, count(rows, stage));
+        }
+        // Stamps are a millisecond apart
+        assertTrue(max(rows, Stage.SCHEDULER) >= 990 && max(rows, Stage.SCHEDULER) <= 1010);
+        assertTrue(max(rows, Stage.TOTAL) >= TimeUnit.MILLISECONDS.toMicros(Point.WRITE.ordinal()) - 10);
+
+        // Nothing new in the next interval
+        rows = intervalRows();
+        assertEquals(0, count(rows, Stage.TOTAL));
+    }
+
+    @Test
+    public void testAsyncCommandLogHasNoDurabilityWait() {
+        StageLatencyStats.record(stamps(Point.DURABLE));
+        Map<String, Object[]> rows = intervalRows();
+        assertEquals(1, count(rows, Stage.DURABILITY));
+        assertEquals(0, max(rows, Stage.DURABILITY));
+        assertTrue(max(rows, Stage.ORDERING) >= 1990);
+    }
+
+    @Test
+    public void testOnlyStampedStagesRecorded() {
+        // Never reached an initiator on this host
+        StageLatencyStats.record(stamps(Point.SCHEDULE, Point.LOG, Point.DURABLE, Point.SITE_QUEUE,
+                Point.EXECUTE, Point.RESPOND));
+        Map<String, Object[]> rows = intervalRows();
+        assertEquals(1, count(rows, Stage.DESERIALIZE));
+        assertEquals(1, count(rows, Stage.DISPATCH));
+        assertEquals(1, count(rows, Stage.TOTAL));
+        assertEquals(0, count(rows, Stage.INITIATOR_MAILBOX));
+        assertEquals(0, count(rows, Stage.EXECUTION));
+        assertEquals(0, count(rows, Stage.RESPONSE));
+
+        // Unsampled transactions are ignored
+        StageLatencyStats.record(null);
+        StageLatencyStats.stamp(null, Point.EXECUTE);
+        assertEquals(0, count(intervalRows(), Stage.TOTAL));
+    }
+
+    @Test
+    public void testSample() {
+        int sampled = 0;
+        for (int ii = 0; ii < 10000; ii++) {
+            long times[] = StageLatencyStats.sample();
+            if (times != null) {
+                assertTrue(times[Point.RECEIVED.ordinal()] != 0);
+                assertEquals(0, times[Point.DISPATCH.ordinal()]);
+                sampled++;
+            }
+        }
+        if (StageLatencyStats.SAMPLE_INTERVAL <= 0) {
+            assertEquals(0, sampled);
+        } else {
+            assertTrue(sampled > 0 && sampled < 10000 * 2 / StageLatencyStats.SAMPLE_INTERVAL + 1);
+        }
+    }
+}
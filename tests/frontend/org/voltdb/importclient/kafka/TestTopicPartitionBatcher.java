@@ -0,0 +1,270 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.importclient.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.voltcore.logging.Level;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.importclient.kafka.BaseKafkaTopicPartitionImporter.PendingWorkTracker;
+import org.voltdb.importer.CommitTracker;
+import org.voltdb.importer.ImporterLifecycle;
+import org.voltdb.importer.ImporterLogger;
+
+import junit.framework.TestCase;
+
+public class TestTopicPartitionBatcher extends TestCase {
+
+    private static final int BATCH_SIZE = 3;
+    private static final long RECEIVED_MILLIS = 12345L;
+
+    // Stands in for the importer, keeps what it was given
+    private static class StubTarget implements TopicPartitionBatcher.Target {
+        final List<Object[]> m_messages = new ArrayList<>();
+        final List<TopicPartitionInvocationCallback> m_messageCallbacks = new ArrayList<>();
+        final List<Integer> m_batchPartitions = new ArrayList<>();
+        final List<List<Object[]>> m_batches = new ArrayList<>();
+        final List<TopicPartitionBatchCallback> m_batchCallbacks = new ArrayList<>();
+        boolean m_acceptBatches = true;
+
+        @Override
+        public boolean invoke(Object[] params, TopicPartitionInvocationCallback cb) {
+            m_messages.add(params);
+            m_messageCallbacks.add(cb);
+            return true;
+        }
+
+        @Override
+        public boolean invokeBatch(int partition, List<Object[]> rows, long receivedMillis, TopicPartitionBatchCallback cb) {
+            assertEquals(RECEIVED_MILLIS, receivedMillis);
+            if (!m_acceptBatches) {
+                return false;
+            }
+            m_batchPartitions.add(partition);
+            m_batches.add(new ArrayList<>(rows));
+            m_batchCallbacks.add(cb);
+            return true;
+        }
+    }
+
+    private static class StubTracker implements CommitTracker {
+        final List<Long> m_commits = new ArrayList<>();
+
+        @Override
+        public void submit(long offset) {
+        }
+
+        @Override
+        public long commit(long commit) {
+            m_commits.add(commit);
+            return commit;
+        }
+
+        @Override
+        public void resetTo(long offset) {
+        }
+    }
+
+    private static class StubLifecycle implements ImporterLifecycle, ImporterLogger {
+        @Override
+        public boolean shouldRun() {
+            return true;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public boolean hasTransaction() {
+            return true;
+        }
+
+        @Override
+        public void rateLimitedLog(Level level, Throwable cause, String format, Object... args) {
+        }
+
+        @Override
+        public void info(Throwable t, String msgFormat, Object... args) {
+        }
+
+        @Override
+        public void warn(Throwable t, String msgFormat, Object... args) {
+        }
+
+        @Override
+        public void error(Throwable t, String msgFormat, Object... args) {
+        }
+
+        @Override
+        public void debug(Throwable t, String msgFormat, Object... args) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    }
+
+    private final StubTarget m_target = new StubTarget();
+    private final StubTracker m_tracker = new StubTracker();
+    private final AtomicBoolean m_dead = new AtomicBoolean(false);
+    private final AtomicLong m_pauseOffset = new AtomicLong(-1);
+    private final PendingWorkTracker m_callbackTracker = new PendingWorkTracker();
+    private final StubLifecycle m_lifecycle = new StubLifecycle();
+    private final TopicPartitionBatcher m_batcher = new TopicPartitionBatcher(BATCH_SIZE, m_target, m_tracker,
+            m_dead, m_pauseOffset, m_lifecycle, m_lifecycle);
+
+    // A fetch of messages at offsets 100, 102, 104... that alternate between VoltDB partitions 0 and 1.
+    // The message at offset 100 + 2 * unbatched has no batch partition.
+    private void fetch(int messages, int unbatched) {
+        for (int i = 0; i < messages; i++) {
+            long offset = 100 + 2 * i;
+            int partition = i == unbatched ? BaseKafkaTopicPartitionImporter.NO_BATCH_PARTITION : i % 2;
+            m_batcher.submit(partition, offset, offset + 2, new Object[] { i }, RECEIVED_MILLIS, m_callbackTracker);
+        }
+        m_batcher.endFetch(m_callbackTracker);
+    }
+
+    private static ClientResponse response(byte status) {
+        return new ClientResponseImpl(status, new VoltTable[0], null);
+    }
+
+    private static void assertRows(List<Object[]> rows, int... messages) {
+        assertEquals(messages.length, rows.size());
+        for (int i = 0; i < messages.length; i++) {
+            assertEquals(messages[i], rows.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void testMessagesAreGroupedByPartition() {
+        fetch(9, 4);
+
+        // Full batches go as they fill up, the rest at the end of the fetch
+        assertEquals(4, m_target.m_batches.size());
+        assertEquals(Integer.valueOf(1), m_target.m_batchPartitions.get(0));
+        assertRows(m_target.m_batches.get(0), 1, 3, 5);
+        assertEquals(Integer.valueOf(0), m_target.m_batchPartitions.get(1));
+        assertRows(m_target.m_batches.get(1), 0, 2, 6);
+        for (int i = 2; i < 4; i++) {
+            assertRows(m_target.m_batches.get(i), m_target.m_batchPartitions.get(i) == 0 ? 8 : 7);
+        }
+
+        assertRows(m_target.m_messages, 4);
+        assertEquals(100 + 2 * 4, m_target.m_messageCallbacks.get(0).getOffset());
+    }
+
+    @Test
+    public void testLeftoversOfAFetchAreSubmitted() {
+        fetch(2, -1);
+        assertEquals(2, m_target.m_batches.size());
+        assertRows(m_target.m_batches.get(0), 0);
+        assertRows(m_target.m_batches.get(1), 1);
+        assertTrue(m_target.m_messages.isEmpty());
+
+        // Nothing is carried over to the next fetch
+        m_batcher.endFetch(m_callbackTracker);
+        assertEquals(2, m_target.m_batches.size());
+    }
+
+    @Test
+    public void testBatchCommitsItsOffsets() throws Exception {
+        fetch(6, -1);
+        assertEquals(2, m_target.m_batches.size());
+
+        m_target.m_batchCallbacks.get(0).clientCallback(response(ClientResponse.SUCCESS));
+        assertEquals(3, m_tracker.m_commits.size());
+        assertEquals(Long.valueOf(102), m_tracker.m_commits.get(0));
+        assertEquals(Long.valueOf(106), m_tracker.m_commits.get(1));
+        assertEquals(Long.valueOf(110), m_tracker.m_commits.get(2));
+        assertEquals(1, m_callbackTracker.getCallbackCount());
+
+        // A stopped importer doesn't commit
+        m_dead.set(true);
+        m_target.m_batchCallbacks.get(1).clientCallback(response(ClientResponse.SUCCESS));
+        assertEquals(3, m_tracker.m_commits.size());
+        assertEquals(2, m_callbackTracker.getCallbackCount());
+    }
+
+    @Test
+    public void testUnavailableServerPausesAtTheFirstOffset() throws Exception {
+        fetch(6, -1);
+        m_target.m_batchCallbacks.get(1).clientCallback(response(ClientResponse.SERVER_UNAVAILABLE));
+        assertEquals(102, m_pauseOffset.get());
+        m_target.m_batchCallbacks.get(0).clientCallback(response(ClientResponse.SERVER_UNAVAILABLE));
+        assertEquals(100, m_pauseOffset.get());
+        assertTrue(m_tracker.m_commits.isEmpty());
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToMessages() throws Exception {
+        fetch(6, -1);
+        m_target.m_batchCallbacks.get(0).clientCallback(response(ClientResponse.GRACEFUL_FAILURE));
+        assertTrue(m_tracker.m_commits.isEmpty());
+        assertTrue(m_target.m_messages.isEmpty());
+
+        // The fetcher submits the messages of the failed batch one at a time
+        m_batcher.submitFailedBatches(m_callbackTracker);
+        assertRows(m_target.m_messages, 0, 2, 4);
+        for (int i = 0; i < 3; i++) {
+            TopicPartitionInvocationCallback cb = m_target.m_messageCallbacks.get(i);
+            assertEquals(100 + 4 * i, cb.getOffset());
+            cb.clientCallback(response(i == 1 ? ClientResponse.GRACEFUL_FAILURE : ClientResponse.SUCCESS));
+        }
+        // Each message commits its offset, failed or not
+        assertEquals(3, m_tracker.m_commits.size());
+        assertEquals(Long.valueOf(102), m_tracker.m_commits.get(0));
+        assertEquals(Long.valueOf(106), m_tracker.m_commits.get(1));
+        assertEquals(Long.valueOf(110), m_tracker.m_commits.get(2));
+
+        // Only once
+        m_batcher.submitFailedBatches(m_callbackTracker);
+        assertEquals(3, m_target.m_messages.size());
+    }
+
+    @Test
+    public void testRejectedBatchFallsBackToMessages() {
+        m_target.m_acceptBatches = false;
+        fetch(4, -1);
+        assertTrue(m_target.m_batches.isEmpty());
+        assertEquals(4, m_target.m_messages.size());
+    }
+
+    @Test
+    public void testNoBatching() {
+        TopicPartitionBatcher batcher = new TopicPartitionBatcher(KafkaStreamImporterConfig.NO_BATCHING, m_target,
+                m_tracker, m_dead, m_pauseOffset, m_lifecycle, m_lifecycle);
+        batcher.submit(0, 100, 101, new Object[] { 0 }, RECEIVED_MILLIS, m_callbackTracker);
+        batcher.endFetch(m_callbackTracker);
+        assertTrue(m_target.m_batches.isEmpty());
+        assertRows(m_target.m_messages, 0);
+    }
+}
@@ -0,0 +1,278 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ConstantValueExpression;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.iv2.MpDependencyStager.RowOrder;
+import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.MergeReceivePlanNode;
+import org.voltdb.plannodes.OrderByPlanNode;
+import org.voltdb.plannodes.ReceivePlanNode;
+import org.voltdb.plannodes.SendPlanNode;
+import org.voltdb.types.SortDirectionType;
+
+public class TestMpDependencyStager extends TestCase {
+
+    private static final int DEP_ID = 7;
+
+    private static AbstractExpression column(int index, VoltType type) {
+        TupleValueExpression tve = new TupleValueExpression("T", "C" + index, index);
+        tve.setValueType(type);
+        return tve;
+    }
+
+    private static RowOrder orderForReceive(AbstractReceivePlanNode receive) {
+        SendPlanNode send = new SendPlanNode();
+        send.addAndLinkChild(receive);
+        return MpDependencyStager.orderForPlan(send);
+    }
+
+    // Sorted on A ascending, then on B descending
+    private static RowOrder mergeOrder() {
+        OrderByPlanNode orderBy = new OrderByPlanNode();
+        orderBy.addSort(column(0, VoltType.INTEGER), SortDirectionType.ASC);
+        orderBy.addSort(column(1, VoltType.TIMESTAMP), SortDirectionType.DESC);
+        MergeReceivePlanNode receive = new MergeReceivePlanNode();
+        receive.addInlinePlanNode(orderBy);
+        return orderForReceive(receive);
+    }
+
+    private static MpDependencyStager stager(RowOrder order) {
+        Map<Integer, RowOrder> orders = new HashMap<>();
+        if (order != null) {
+            orders.put(DEP_ID, order);
+        }
+        return new MpDependencyStager(orders);
+    }
+
+    private static VoltTable table(List<Object[]> rows) {
+        VoltTable table = new VoltTable(new ColumnInfo("A", VoltType.INTEGER),
+                                        new ColumnInfo("B", VoltType.TIMESTAMP),
+                                        new ColumnInfo("C", VoltType.STRING));
+        for (Object[] row : rows) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static int compareKeys(Object[] lhs, Object[] rhs) {
+        // NULLs first, A ascending, B descending
+        Integer lhsA = (Integer) lhs[0];
+        Integer rhsA = (Integer) rhs[0];
+        if (lhsA == null || rhsA == null) {
+            if (lhsA != rhsA) {
+                return lhsA == null ? -1 : 1;
+            }
+        }
+        else if ( ! lhsA.equals(rhsA)) {
+            return lhsA.compareTo(rhsA);
+        }
+        return -Long.compare((Long) lhs[1], (Long) rhs[1]);
+    }
+
+    // One partition's sorted run, with some NULLs and duplicate keys
+    private static List<Object[]> sortedRun(Random rand, int partition) {
+        List<Object[]> rows = new ArrayList<>();
+        int count = rand.nextInt(20);
+        for (int i = 0; i < count; i++) {
+            Integer a = rand.nextInt(8) == 0 ? null : rand.nextInt(10);
+            rows.add(new Object[] { a, (long) rand.nextInt(5), "p" + partition + "r" + i });
+        }
+        Collections.sort(rows, TestMpDependencyStager::compareKeys);
+        return rows;
+    }
+
+    private static List<Object[]> rowsOf(VoltTable table) {
+        List<Object[]> rows = new ArrayList<>();
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            int a = (int) table.getLong(0);
+            rows.add(new Object[] {
+                    table.wasNull() ? null : a, table.getTimestampAsLong(1), table.getString(2) });
+        }
+        return rows;
+    }
+
+    private static List<String> tags(List<Object[]> rows) {
+        List<String> tags = new ArrayList<>();
+        for (Object[] row : rows) {
+            tags.add((String) row[2]);
+        }
+        Collections.sort(tags);
+        return tags;
+    }
+
+    @Test
+    public void testOrderForPlan() {
+        assertSame(MpDependencyStager.ANY_ORDER, orderForReceive(new ReceivePlanNode()));
+
+        RowOrder order = mergeOrder();
+        assertNotNull(order);
+        assertFalse(order.isAnyOrder());
+
+        // Strings are compared differently by the EE, leave them to the merge receive
+        OrderByPlanNode byString = new OrderByPlanNode();
+        byString.addSort(column(2, VoltType.STRING), SortDirectionType.ASC);
+        MergeReceivePlanNode receive = new MergeReceivePlanNode();
+        receive.addInlinePlanNode(byString);
+        assertNull(orderForReceive(receive));
+
+        // So are sort keys that are not plain columns
+        OrderByPlanNode byExpression = new OrderByPlanNode();
+        byExpression.addSort(new ConstantValueExpression(), SortDirectionType.ASC);
+        receive = new MergeReceivePlanNode();
+        receive.addInlinePlanNode(byExpression);
+        assertNull(orderForReceive(receive));
+    }
+
+    @Test
+    public void testReceiveTablesAreAppended() {
+        Random rand = new Random(0);
+        MpDependencyStager stager = stager(MpDependencyStager.ANY_ORDER);
+        List<VoltTable> tables = new ArrayList<>();
+        List<Object[]> allRows = new ArrayList<>();
+        VoltTable last = null;
+        for (int partition = 0; partition < 6; partition++) {
+            List<Object[]> rows = sortedRun(rand, partition);
+            allRows.addAll(rows);
+            last = table(rows);
+            stager.stage(DEP_ID, last, tables, partition == 5);
+        }
+
+        // Everything but the last table is appended to one table
+        assertEquals(2, tables.size());
+        assertSame(last, tables.get(1));
+        List<Object[]> stagedRows = new ArrayList<>();
+        for (VoltTable table : tables) {
+            stagedRows.addAll(rowsOf(table));
+        }
+        assertEquals(tags(allRows), tags(stagedRows));
+    }
+
+    @Test
+    public void testMergeReceiveRunsArePreMerged() {
+        Random rand = new Random(1);
+        MpDependencyStager stager = stager(mergeOrder());
+        List<VoltTable> tables = new ArrayList<>();
+        List<Object[]> allRows = new ArrayList<>();
+        for (int partition = 0; partition < 7; partition++) {
+            List<Object[]> rows = sortedRun(rand, partition);
+            allRows.addAll(rows);
+            stager.stage(DEP_ID, table(rows), tables, partition == 6);
+        }
+
+        // The first six runs are merged into runs of four and two, the last is left alone
+        assertEquals(3, tables.size());
+        List<Object[]> stagedRows = new ArrayList<>();
+        for (VoltTable table : tables) {
+            List<Object[]> run = rowsOf(table);
+            for (int i = 1; i < run.size(); i++) {
+                assertTrue(compareKeys(run.get(i - 1), run.get(i)) <= 0);
+            }
+            stagedRows.addAll(run);
+        }
+        assertEquals(tags(allRows), tags(stagedRows));
+    }
+
+    // Stage a table per partition, the slowest one last, and return what the receive executor is handed
+    private static List<VoltTable> stageAll(MpDependencyStager stager, List<VoltTable> partitionTables) {
+        List<VoltTable> tables = new ArrayList<>();
+        for (int partition = 0; partition < partitionTables.size(); partition++) {
+            stager.stage(DEP_ID, partitionTables.get(partition), tables, partition == partitionTables.size() - 1);
+        }
+        return tables;
+    }
+
+    @Test
+    public void testLessIsLeftAfterSlowestPartition() {
+        final int partitions = 48;
+        Random rand = new Random(2);
+        List<VoltTable> partitionTables = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            partitionTables.add(table(sortedRun(rand, partition)));
+        }
+        VoltTable slowest = partitionTables.get(partitions - 1);
+
+        // Unstaged, every table is pulled and merged by the coordinator fragment
+        // once the slowest partition has answered
+        assertEquals(partitions, stageAll(stager(null), partitionTables).size());
+
+        // A RECEIVE is left with the union of the others and the slowest table
+        List<VoltTable> tables = stageAll(stager(MpDependencyStager.ANY_ORDER), partitionTables);
+        assertEquals(2, tables.size());
+        assertSame(slowest, tables.get(1));
+
+        // A MERGERECEIVE is left with runs of 32, 8, 4, 2 and 1 tables and the slowest table
+        tables = stageAll(stager(mergeOrder()), partitionTables);
+        assertEquals(Integer.bitCount(partitions - 1) + 1, tables.size());
+        assertSame(slowest, tables.get(tables.size() - 1));
+    }
+
+    @Test
+    public void testMismatchedTablesAreNotStaged() {
+        MpDependencyStager stager = stager(mergeOrder());
+        List<VoltTable> tables = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            VoltTable table = new VoltTable(new ColumnInfo("A", VoltType.STRING),
+                                            new ColumnInfo("B", VoltType.TIMESTAMP));
+            table.addRow("p" + partition, 0L);
+            stager.stage(DEP_ID, table, tables, false);
+        }
+        assertEquals(3, tables.size());
+
+        // Neither are dependencies the coordinator fragment doesn't stage
+        stager = stager(null);
+        tables.clear();
+        for (int partition = 0; partition < 3; partition++) {
+            stager.stage(DEP_ID, table(new ArrayList<Object[]>()), tables, false);
+        }
+        assertEquals(3, tables.size());
+
+        // A RECEIVE table with other column types isn't appended to the union
+        stager = stager(MpDependencyStager.ANY_ORDER);
+        tables.clear();
+        for (int partition = 0; partition < 2; partition++) {
+            stager.stage(DEP_ID, table(new ArrayList<Object[]>()), tables, false);
+        }
+        VoltTable other = new VoltTable(new ColumnInfo("A", VoltType.STRING));
+        stager.stage(DEP_ID, other, tables, false);
+        assertEquals(2, tables.size());
+        assertSame(other, tables.get(1));
+    }
+}
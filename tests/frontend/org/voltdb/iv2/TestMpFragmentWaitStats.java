@@ -0,0 +1,127 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.iv2.MpFragmentWaitStats.Wait;
+
+public class TestMpFragmentWaitStats extends TestCase {
+
+    private MpFragmentWaitStats m_stats;
+
+    @Override
+    public void setUp() {
+        m_stats = new MpFragmentWaitStats();
+        // The histograms are process wide, start every test from a fresh interval
+        m_stats.getStatsRows(true, System.currentTimeMillis());
+    }
+
+    private int column(String name) {
+        return new VoltTable(m_stats.getColumnSchema().toArray(new ColumnInfo[0])).getColumnIndex(name);
+    }
+
+    private List<Object[]> intervalRows() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] row : m_stats.getStatsRows(true, System.currentTimeMillis())) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private Object[] row(List<Object[]> rows, Wait wait, int partitionId) {
+        for (Object[] row : rows) {
+            if (wait.name().equals(row[column("WAIT")]) && partitionId == (Integer)row[column("PARTITION_ID")]) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    private long value(List<Object[]> rows, Wait wait, int partitionId, String column) {
+        return (Long)row(rows, wait, partitionId)[column(column)];
+    }
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    @Test
+    public void testStraggler() {
+        long sent = System.nanoTime();
+        Map<Integer, Long> arrivals = new HashMap<>();
+        arrivals.put(0, sent + millis(1));
+        arrivals.put(1, sent + millis(2));
+        arrivals.put(2, sent + millis(11));
+        MpFragmentWaitStats.record(sent, arrivals);
+
+        List<Object[]> rows = intervalRows();
+        assertEquals(2 + 3, rows.size());
+        assertEquals(1, value(rows, Wait.FIRST_RESPONSE, -1, "COUNT"));
+        assertEquals(1000, value(rows, Wait.FIRST_RESPONSE, -1, "MAX"), 5);
+        assertEquals(10000, value(rows, Wait.STRAGGLER_WAIT, -1, "MAX"), 10);
+        assertEquals(0, value(rows, Wait.PARTITION_LAG, 0, "MAX"));
+        assertEquals(1000, value(rows, Wait.PARTITION_LAG, 1, "MAX"), 5);
+        assertEquals(10000, value(rows, Wait.PARTITION_LAG, 2, "MAX"), 10);
+        assertEquals(0, value(rows, Wait.PARTITION_LAG, 0, "SLOWEST"));
+        assertEquals(0, value(rows, Wait.PARTITION_LAG, 1, "SLOWEST"));
+        assertEquals(1, value(rows, Wait.PARTITION_LAG, 2, "SLOWEST"));
+    }
+
+    @Test
+    public void testInterval() {
+        long sent = System.nanoTime();
+        Map<Integer, Long> arrivals = new HashMap<>();
+        arrivals.put(0, sent + millis(1));
+        arrivals.put(1, sent + millis(3));
+        MpFragmentWaitStats.record(sent, arrivals);
+        MpFragmentWaitStats.record(sent, arrivals);
+        List<Object[]> rows = intervalRows();
+        assertEquals(2, value(rows, Wait.STRAGGLER_WAIT, -1, "COUNT"));
+        assertEquals(2, value(rows, Wait.PARTITION_LAG, 1, "SLOWEST"));
+
+        // Partition 0 is the slowest in the next interval
+        arrivals.put(0, sent + millis(4));
+        MpFragmentWaitStats.record(sent, arrivals);
+        rows = intervalRows();
+        assertEquals(1, value(rows, Wait.STRAGGLER_WAIT, -1, "COUNT"));
+        assertEquals(1, value(rows, Wait.PARTITION_LAG, 0, "SLOWEST"));
+        assertEquals(0, value(rows, Wait.PARTITION_LAG, 1, "SLOWEST"));
+
+        // Nothing new, and no responses means nothing to record
+        MpFragmentWaitStats.record(sent, new HashMap<Integer, Long>());
+        rows = intervalRows();
+        assertEquals(0, value(rows, Wait.FIRST_RESPONSE, -1, "COUNT"));
+        assertEquals(0, value(rows, Wait.PARTITION_LAG, 0, "COUNT"));
+    }
+}
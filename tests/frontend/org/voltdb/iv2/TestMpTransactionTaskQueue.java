@@ -34,12 +34,21 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
+import org.voltcore.messaging.Mailbox;
+import org.voltdb.InvocationDispatcher;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
 public class TestMpTransactionTaskQueue extends TestCase
 {
@@ -150,4 +159,68 @@ public class TestMpTransactionTaskQueue extends TestCase
         verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
         verify(m_MPpool).doWork(eq(readtxnid2), any(TransactionTask.class));
     }
+
+    // An ad hoc read confined by its IN-list keys to the partitions they hashed to at dispatch
+    MpProcedureTask makeConfinedReadTask(long txnid, byte[] key, int dispatchPartition,
+                                         Map<Integer, Long> partitionMasters)
+    {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName("@AdHoc_RO_MP");
+        spi.setParams(new byte[][] { key }, new byte[0]);
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(0, 0, Iv2InitiateTaskMessage.UNUSED_TRUNC_HANDLE,
+                txnid, 0, true, false, new int[] { dispatchPartition }, spi, 0, 0, false);
+        Map<Integer, Long> involved = new HashMap<Integer, Long>();
+        involved.put(dispatchPartition, partitionMasters.get(dispatchPartition));
+        return new MpProcedureTask(mock(Mailbox.class), "@AdHoc_RO_MP", m_dut, msg, involved,
+                new ArrayList<Long>(partitionMasters.values()), partitionMasters, 0L, false);
+    }
+
+    // A confined read whose key hashes elsewhere by the time it starts goes where the key hashes now
+    @Test
+    public void testConfinedReadRehashedWhenStarted()
+    {
+        TheHashinator.initialize(TheHashinator.getConfiguredHashinatorClass(), TheHashinator.getConfigureBytes(8));
+        Map<Integer, Long> partitionMasters = new HashMap<Integer, Long>();
+        for (int i = 0; i < 8; i++) {
+            partitionMasters.put(i, 100L + i);
+        }
+        byte[] key = VoltType.valueToBytes(42L);
+        int partition = InvocationDispatcher.getPartitionsForAdHocKeys(new byte[][] { key })[0];
+
+        // The read waits behind a write, which could have changed the hashinator
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID).makeNext();
+        long writetxnid = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(writetxnid, false));
+        txnId = txnId.makeNext();
+        MpProcedureTask read = makeConfinedReadTask(txnId.getTxnId(), key, (partition + 1) % 8, partitionMasters);
+        m_dut.offer(read);
+        assertEquals(Arrays.asList(100L + (partition + 1) % 8), read.m_initiatorHSIds);
+
+        m_dut.flush(writetxnid);
+        verify(m_MPpool).doWork(eq(txnId.getTxnId()), any(TransactionTask.class));
+        assertEquals(Arrays.asList(100L + partition), read.m_initiatorHSIds);
+        assertEquals(Arrays.asList(100L + partition), ((MpTransactionState)read.getTransactionState()).m_useHSIds);
+    }
+
+    // A confined read whose key now hashes to a partition the MPI has no master for reads all partitions
+    @Test
+    public void testConfinedReadFallsBackToAllPartitions()
+    {
+        TheHashinator.initialize(TheHashinator.getConfiguredHashinatorClass(), TheHashinator.getConfigureBytes(8));
+        byte[] key = VoltType.valueToBytes(42L);
+        int partition = InvocationDispatcher.getPartitionsForAdHocKeys(new byte[][] { key })[0];
+        Map<Integer, Long> partitionMasters = new HashMap<Integer, Long>();
+        for (int i = 0; i < 8; i++) {
+            if (i != partition) {
+                partitionMasters.put(i, 100L + i);
+            }
+        }
+
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID).makeNext();
+        MpProcedureTask read = makeConfinedReadTask(txnId.getTxnId(), key, (partition + 1) % 8, partitionMasters);
+        m_dut.offer(read);
+        verify(m_MPpool).doWork(eq(txnId.getTxnId()), any(TransactionTask.class));
+        assertEquals(7, read.m_initiatorHSIds.size());
+        assertTrue(read.m_initiatorHSIds.containsAll(partitionMasters.values()));
+    }
 }
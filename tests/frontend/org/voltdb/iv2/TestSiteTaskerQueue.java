@@ -0,0 +1,167 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.voltdb.StarvationTracker;
+
+import junit.framework.TestCase;
+
+public class TestSiteTaskerQueue extends TestCase
+{
+    private static class CountingTask extends SiteTasker.SiteTaskerRunnable {
+        final int m_producer;
+        final int m_seq;
+
+        CountingTask(int producer, int seq) {
+            m_producer = producer;
+            m_seq = seq;
+        }
+
+        @Override
+        void run() {
+        }
+    }
+
+    private static SiteTaskerQueue getSiteTaskerQueue() {
+        SiteTaskerQueue queue = new SiteTaskerQueue(0);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        return queue;
+    }
+
+    @Test
+    public void testFifoAcrossBatches() throws Exception
+    {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertEquals(0, queue.getHeadOfferTime());
+
+        int count = SiteTaskerQueue.DRAIN_BATCH_SIZE * 3 + 7;
+        for (int i = 0; i < count; i++) {
+            queue.offer(new CountingTask(0, i));
+        }
+        assertEquals(count, queue.size());
+        for (int i = 0; i < count; i++) {
+            CountingTask peeked = (CountingTask)queue.peek();
+            assertEquals(i, peeked.m_seq);
+            // the head offer time always belongs to the task the site will see next
+            assertEquals(peeked.getQueueOfferTime(), queue.getHeadOfferTime());
+            CountingTask task = (CountingTask)(i % 2 == 0 ? queue.take() : queue.poll());
+            assertSame(peeked, task);
+        }
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getHeadOfferTime());
+    }
+
+    /*
+     * Several producers offer while the site blocks in take(), every task must arrive once
+     * and in the order its producer offered it.
+     */
+    @Test
+    public void testConcurrentProducers() throws Exception
+    {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        final int producers = 4;
+        final int perProducer = 50000;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perProducer; i++) {
+                            queue.offer(new CountingTask(producer, i));
+                            if (i % 1000 == 0) {
+                                // let the site drain and park now and then
+                                Thread.sleep(1);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+
+        int next[] = new int[producers];
+        for (int i = 0; i < producers * perProducer; i++) {
+            CountingTask task = (CountingTask)queue.take();
+            assertEquals(next[task.m_producer]++, task.m_seq);
+        }
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.getHeadOfferTime());
+    }
+
+    /*
+     * A producer that is slow to publish its offer time after putting the task in the ring
+     * must not leave the head offer time pointing at a task the site has already run once
+     * the site looks at the queue again.
+     */
+    @Test
+    public void testLateOfferTimeOfTakenTask() throws Exception
+    {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        CountingTask first = new CountingTask(0, 0);
+        queue.offer(first);
+        assertSame(first, queue.take());
+        assertEquals(0, queue.getHeadOfferTime());
+
+        // replay the producer's publish of a task that was taken before it got to run
+        queue.offerHeadOfferTime(first.getQueueOfferTime());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getHeadOfferTime());
+
+        // a task that is still waiting keeps its offer time
+        CountingTask second = new CountingTask(0, 1);
+        queue.offer(second);
+        assertEquals(second.getQueueOfferTime(), queue.getHeadOfferTime());
+        queue.offerHeadOfferTime(first.getQueueOfferTime());
+        assertEquals(second.getQueueOfferTime(), queue.getHeadOfferTime());
+        assertSame(second, queue.take());
+        assertEquals(0, queue.getHeadOfferTime());
+    }
+
+    @Test
+    public void testTakeIsInterruptible() throws Exception
+    {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        Thread.currentThread().interrupt();
+        try {
+            queue.take();
+            fail("take() should have been interrupted");
+        } catch (InterruptedException expected) {
+        }
+    }
+}
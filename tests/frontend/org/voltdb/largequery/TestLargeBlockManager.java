@@ -0,0 +1,180 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.largequery;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.utils.VoltFile;
+
+public class TestLargeBlockManager extends TestCase {
+
+    private static final long SITE_ID = CoreUtils.getHSIdFromHostAndSite(0, 1);
+    private static final long OTHER_SITE_ID = CoreUtils.getHSIdFromHostAndSite(0, 2);
+
+    private File m_swapDir;
+    private LargeBlockManager m_manager;
+
+    @Override
+    public void setUp() throws Exception {
+        m_swapDir = new File(System.getProperty("java.io.tmpdir"), "test_large_query_swap_" + System.nanoTime());
+        LargeBlockManager.startup(m_swapDir, 1024 * 1024);
+        m_manager = LargeBlockManager.getInstance();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        LargeBlockManager.shutdown();
+        VoltFile.recursivelyDelete(m_swapDir);
+    }
+
+    private static ByteBuffer randomBlock(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        buf.put(bytes);
+        buf.flip();
+        return buf;
+    }
+
+    private Object[] statsRow() {
+        LargeBlockStats stats = new LargeBlockStats();
+        return stats.getStatsRows(false, System.currentTimeMillis())[0];
+    }
+
+    private long stat(String name) {
+        LargeBlockStats stats = new LargeBlockStats();
+        int index = new VoltTable(stats.getColumnSchema().toArray(new ColumnInfo[0])).getColumnIndex(name);
+        return (Long)statsRow()[index];
+    }
+
+    private int blockFileCount() {
+        return m_swapDir.list().length;
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        assertTrue(m_manager.storeBlock(SITE_ID, 7, randomBlock(10000, 7)));
+        // Block ids are only unique within a site
+        assertTrue(m_manager.storeBlock(OTHER_SITE_ID, 7, randomBlock(5000, 8)));
+        assertEquals(2, blockFileCount());
+        assertEquals(15000, stat(LargeBlockStats.DISK_BYTES));
+
+        ByteBuffer loaded = ByteBuffer.allocateDirect(10000);
+        assertTrue(m_manager.loadBlock(SITE_ID, 7, loaded));
+        loaded.flip();
+        assertEquals(randomBlock(10000, 7), loaded);
+
+        // Loading removes the block from disk
+        assertEquals(1, blockFileCount());
+        assertFalse(m_manager.loadBlock(SITE_ID, 7, ByteBuffer.allocateDirect(10000)));
+
+        loaded = ByteBuffer.allocateDirect(5000);
+        assertTrue(m_manager.loadBlock(OTHER_SITE_ID, 7, loaded));
+        loaded.flip();
+        assertEquals(randomBlock(5000, 8), loaded);
+
+        assertEquals(0, blockFileCount());
+        assertEquals(2, stat(LargeBlockStats.STORED_BLOCKS));
+        assertEquals(2, stat(LargeBlockStats.LOADED_BLOCKS));
+        assertEquals(15000, stat(LargeBlockStats.LOADED_BYTES));
+        assertEquals(0, stat(LargeBlockStats.DISK_BYTES));
+        assertEquals(0, stat(LargeBlockStats.PREFETCH_HITS));
+    }
+
+    @Test
+    public void testPrefetch() {
+        for (int ii = 0; ii < 4; ii++) {
+            assertTrue(m_manager.storeBlock(SITE_ID, ii, randomBlock(20000, ii)));
+        }
+        for (int ii = 0; ii < 4; ii++) {
+            m_manager.prefetchBlock(SITE_ID, ii);
+            // Asking again for a block already being read is harmless
+            m_manager.prefetchBlock(SITE_ID, ii);
+        }
+        for (int ii = 0; ii < 4; ii++) {
+            ByteBuffer loaded = ByteBuffer.allocateDirect(20000);
+            assertTrue(m_manager.loadBlock(SITE_ID, ii, loaded));
+            loaded.flip();
+            assertEquals(randomBlock(20000, ii), loaded);
+        }
+        assertEquals(4, stat(LargeBlockStats.PREFETCH_HITS));
+        assertEquals(0, blockFileCount());
+
+        // Prefetching something that isn't on disk does nothing
+        m_manager.prefetchBlock(SITE_ID, 42);
+        assertFalse(m_manager.loadBlock(SITE_ID, 42, ByteBuffer.allocateDirect(10)));
+    }
+
+    @Test
+    public void testRelease() {
+        assertTrue(m_manager.storeBlock(SITE_ID, 1, randomBlock(1000, 1)));
+        assertTrue(m_manager.storeBlock(SITE_ID, 2, randomBlock(1000, 2)));
+        m_manager.prefetchBlock(SITE_ID, 2);
+
+        assertTrue(m_manager.releaseBlock(SITE_ID, 1));
+        assertTrue(m_manager.releaseBlock(SITE_ID, 2));
+        assertFalse(m_manager.releaseBlock(SITE_ID, 2));
+
+        assertEquals(0, blockFileCount());
+        assertEquals(0, stat(LargeBlockStats.DISK_BLOCKS));
+        assertEquals(0, stat(LargeBlockStats.LOADED_BLOCKS));
+    }
+
+    @Test
+    public void testQuota() {
+        assertEquals(1024 * 1024, stat(LargeBlockStats.DISK_QUOTA_BYTES));
+        assertTrue(m_manager.storeBlock(SITE_ID, 1, randomBlock(600 * 1024, 1)));
+        // Would go over the quota
+        assertFalse(m_manager.storeBlock(SITE_ID, 2, randomBlock(600 * 1024, 2)));
+        assertEquals(1, blockFileCount());
+
+        // Space is given back once a block is loaded
+        assertTrue(m_manager.loadBlock(SITE_ID, 1, ByteBuffer.allocateDirect(600 * 1024)));
+        assertTrue(m_manager.storeBlock(SITE_ID, 2, randomBlock(600 * 1024, 2)));
+        assertTrue(m_manager.releaseBlock(SITE_ID, 2));
+    }
+
+    @Test
+    public void testStartupClearsLeftoverBlocks() throws Exception {
+        LargeBlockManager.shutdown();
+        // As if an earlier process died without cleaning up
+        assertTrue(new File(m_swapDir, "ltt_0_1_1.block").createNewFile());
+        File other = new File(m_swapDir, "not_a_block");
+        assertTrue(other.createNewFile());
+
+        LargeBlockManager.startup(m_swapDir, 1024 * 1024);
+        m_manager = LargeBlockManager.getInstance();
+        assertEquals(1, blockFileCount());
+        assertTrue(other.exists());
+        assertEquals(0, stat(LargeBlockStats.DISK_BLOCKS));
+    }
+}
@@ -352,8 +352,11 @@ public class TestDeterminism extends PlannerTestCase {
         tryPostSubOrderBy = "order by 1, 2, 3, 4";
         assertPlanDeterminismNeedsOrdering(sql, tryOrderBy, tryPostSubOrderBy);
 
+        // Both tables have a unique tree index leading with the join column,
+        // so the merge join returns the rows in index order even in the faster mode.
         sql = "select X.a, X.z as xz, Y.z as yz from tuniqcombo X, tunique Y where X.a = Y.a";
-        assertPlanNeedsSaferDeterminismCombo(sql);
+        assertPlanDeterminismCore(sql, ORDERED, CONSISTENT, DeterminismMode.FASTER);
+        assertPlanDeterminismCore(sql + " LIMIT 2", ORDERED, CONSISTENT, DeterminismMode.FASTER);
 
         sql = "select X.a, X.z as xz, Y.z as yz from tuniqcombo X, tunique Y order by X.a, X.b, Y.a";
         assertPlanNeedsSaferDeterminismCombo(sql);
@@ -954,7 +957,9 @@ public class TestDeterminism extends PlannerTestCase {
                 "from ttree_with_key as l join ttree_with_key as r " +
                 "on l.a = r.a and l.b = r.b and l.c = r.c " +
                 "order by l.a, r.b, l.c limit 1;";
-        assertPlanDeterminismCore(sql, ENG8677IsFixed, ENG8677IsFixed, DeterminismMode.FASTER);
+        // The merge join on the primary key reads both copies in primary key order,
+        // which gets this one right without the theorem.
+        assertPlanDeterminismCore(sql, ORDERED, CONSISTENT, DeterminismMode.FASTER);
 
         // This is probably not possible. Let A be the matrix
         //          | 1  1  1 |
@@ -27,12 +27,18 @@ import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.voltcore.messaging.HostMessenger;
 import org.voltdb.CatalogContext;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.VoltType;
 import org.voltdb.compiler.AdHocPlannedStatement;
+import org.voltdb.compiler.AdHocPlannedStmtBatch;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.settings.ClusterSettings;
@@ -171,4 +177,71 @@ public class TestPlannerTool extends TestCase {
         // would return a Stream Closed error
         m_pt.planSqlForTest("select * from A;");
     }
+
+    public void testPartitioningInList() throws IOException
+    {
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("CREATE TABLE P (ID BIGINT NOT NULL, V VARCHAR(10), PRIMARY KEY(ID));");
+        builder.addPartitionInfo("P", "ID");
+        builder.addLiteralSchema("CREATE TABLE R (ID BIGINT NOT NULL, V VARCHAR(10));");
+        builder.addStmtProcedure("MakeCompileHappy",
+                                 "SELECT * FROM P WHERE ID = ?;",
+                                 "P.ID: 0");
+
+        final File jar = new File("testinlist-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("testinlist-oop.jar");
+        byte[] bytes = MiscUtils.fileToBytes(new File("testinlist-oop.jar"));
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog c = new Catalog();
+        c.execute(serializedCatalog);
+        DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(), NodeSettings.create());
+        CatalogContext context = new CatalogContext(c, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+
+        m_pt = new PlannerTool(context.database, context.getCatalogHash());
+
+        // Constants get parameterized, the keys come from the extracted parameters
+        AdHocPlannedStatement result = m_pt.planSqlForTest("select V from P where ID in (3, 5, 7) and V = 'a';");
+        assertNotNull(result.core.collectorFragment);
+        assertEquals(3, result.core.getPartitioningInListParamIndexes().length);
+        assertEquals(VoltType.BIGINT, result.core.getPartitioningInListType());
+        assertEquals(Arrays.asList(3L, 5L, 7L), keysOf(batchOf(result, null)));
+
+        // User parameters, one of them NULL
+        result = m_pt.planSql("select V from P where ID in (?, ?, ?);",
+                StatementPartitioning.inferPartitioning(), false, new Object[] { 1, 2, 3 }, false);
+        assertEquals(3, result.core.getPartitioningInListParamIndexes().length);
+        assertEquals(Arrays.asList(4L, 6L), keysOf(batchOf(result, new Object[] { 4, null, "6" })));
+
+        // A single array parameter
+        result = m_pt.planSql("select V from P where ID in ?;",
+                StatementPartitioning.inferPartitioning(), false, new Object[] { new long[] { 1 } }, false);
+        assertEquals(Arrays.asList(8L, 9L), keysOf(batchOf(result, new Object[] { new long[] { 8, 9 } })));
+
+        // Not confined to the partitions of the keys
+        result = m_pt.planSqlForTest("select V from P where ID in (3, 5) or V = 'a';");
+        assertNull(batchOf(result, null).partitioningInListKeys());
+        result = m_pt.planSqlForTest("select V from P where ID + 1 in (3, 5);");
+        assertNull(batchOf(result, null).partitioningInListKeys());
+        result = m_pt.planSqlForTest("select P.V from P, R where P.ID in (3, 5) and P.V = R.V;");
+        assertNull(batchOf(result, null).partitioningInListKeys());
+
+        // Equality still makes it single partition
+        result = m_pt.planSqlForTest("select V from P where ID = 3 and ID in (3, 5);");
+        assertNull(result.core.collectorFragment);
+        assertNull(result.core.getPartitioningInListParamIndexes());
+    }
+
+    private static AdHocPlannedStmtBatch batchOf(AdHocPlannedStatement stmt, Object[] userParams) {
+        return new AdHocPlannedStmtBatch(userParams, Arrays.asList(stmt), -1, null, null, null);
+    }
+
+    private static List<Long> keysOf(AdHocPlannedStmtBatch batch) {
+        List<Long> keys = new ArrayList<>();
+        for (byte[] key : batch.partitioningInListKeys()) {
+            keys.add((Long) VoltType.BIGINT.bytesToValue(key));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
 }
@@ -610,6 +610,44 @@ public class TestPlansGroupBy extends PlannerTestCase {
         checkPartialAggregate(pns, true);
     }
 
+    private void checkHashAggregateOnHashJoin(List<AbstractPlanNode> pns) {
+        assertEquals(2, pns.size());
+        AbstractPlanNode pn = pns.get(1).getChild(0);
+        // A hash join does not keep the order of its outer child, so the index
+        // can't be used for grouping and the aggregate is hashed instead
+        assertEquals(PlanNodeType.HASHJOIN, pn.getPlanNodeType());
+        assertNotNull(pn.getInlinePlanNode(PlanNodeType.HASHAGGREGATE));
+        while (pn.getPlanNodeType() == PlanNodeType.HASHJOIN) {
+            pn = pn.getChild(0);
+        }
+        assertEquals(PlanNodeType.SEQSCAN, pn.getPlanNodeType());
+    }
+
+    public void testHashAggregateOnHashJoin() {
+        String sql;
+        List<AbstractPlanNode> pns;
+
+        // Equality joins on unindexed inner columns are planned as hash joins
+        sql = "SELECT G.G_D1, COUNT(*) " +
+                "FROM G LEFT OUTER JOIN R2 ON G.G_D2 = R2.C " +
+                "GROUP BY G.G_D1";
+        pns = compileToFragments(sql);
+        checkHashAggregateOnHashJoin(pns);
+
+        sql = "SELECT G.G_D1, R2.A, COUNT(*) " +
+                "FROM G LEFT OUTER JOIN R2 ON G.G_D2 = R2.C " +
+                "GROUP BY G.G_D1, R2.A";
+        pns = compileToFragments(sql);
+        checkHashAggregateOnHashJoin(pns);
+
+        // three table joins with aggregate
+        sql = "SELECT G.G_D1, COUNT(*) " +
+                "FROM G LEFT OUTER JOIN R2 ON G.G_D2 = R2.C " +
+                "     LEFT OUTER JOIN R1 ON G.G_D3 = R1.C1 " +
+                "GROUP BY G.G_D1";
+        pns = compileToFragments(sql);
+        checkHashAggregateOnHashJoin(pns);
+    }
 
     // check group by query with limit
     // Query has group by from partition column and limit, does not have order by
@@ -28,12 +28,14 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
+import org.voltdb.plannodes.MergeJoinPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
-import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.OrderByPlanNode;
 import org.voltdb.plannodes.SchemaColumn;
 import org.voltdb.plannodes.SeqScanPlanNode;
@@ -63,6 +65,10 @@ public class TestPlansJoin extends PlannerTestCase {
         @Override
         public String toString() { return m_string; }
         ExpressionType toOperator() { return m_operator; }
+        // Only equality can be hashed, the other operators join a sequential scan in a nest loop
+        PlanNodeType toSeqScanJoinType() {
+            return m_operator == ExpressionType.COMPARE_EQUAL ? PlanNodeType.HASHJOIN : PlanNodeType.NESTLOOP;
+        }
     }
 
     public void testBasicInnerJoin() {
@@ -75,13 +81,13 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 USING(C)";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         followAssertedLeftChain(pn,
                 PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
+                PlanNodeType.HASHJOIN);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
 
         for (JoinOp joinOp : JoinOp.JOIN_OPS) {
@@ -106,7 +112,7 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 5,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
 
         query = "SELECT R1.A, R1.C, D FROM R1 JOIN R2 ON R1.C" +
@@ -114,21 +120,21 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 3,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
 
         query = "SELECT R1.A, C, R1.D FROM R1 JOIN R2 USING(C)";
         pn = compileToTopDownTree(query, 3,
                 PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
 
         query = "SELECT R1.A, R2.C, R1.D FROM R1 JOIN R2 ON R1.C" +
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 3, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
         assertEquals("R1", selectColumns.get(0).getTableName());
@@ -138,7 +144,7 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT R1.A, C, R1.D FROM R1 JOIN R2 USING(C)";
         pn = compileToTopDownTree(query, 3, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
         assertEquals("R1", selectColumns.get(0).getTableName());
@@ -188,8 +194,8 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C JOIN R3 ON R3.C" +
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 7, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -199,8 +205,8 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -208,8 +214,8 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT C FROM R1 INNER JOIN R2 USING (C) INNER JOIN R3 USING(C)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -218,14 +224,14 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R3_NOC.A";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 null, // weakened. soon, replace with: NESTLOOPINDEX, SEQSCAN?
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
+                PlanNodeType.HASHJOIN);
         if (joinOp == JoinOp.EQUAL) { // weaken test for now
-            node = followAssertedLeftChain(node, PlanNodeType.NESTLOOP,
+            node = followAssertedLeftChain(node, PlanNodeType.HASHJOIN,
                     PlanNodeType.NESTLOOPINDEX,
                     PlanNodeType.SEQSCAN);
         }
@@ -257,7 +263,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         AbstractExpression predicate;
         boolean theOpIsOnTheLeft;
@@ -265,11 +271,11 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1, R2 WHERE R1.A" +
                 joinOp + "R2.A AND R1.C > 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -285,12 +291,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1, R2 WHERE R1.A" +
                 joinOp + "R2.A AND R1.C > R2.C";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         theOpIsOnTheLeft = (predicate != null) &&
@@ -312,12 +318,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 ON R1.A" +
                 joinOp + "R2.A WHERE R1.C > 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -337,12 +343,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 ON R1.A" +
                 joinOp + "R2.A WHERE R1.C > R2.C";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         theOpIsOnTheLeft = (predicate != null) &&
@@ -365,14 +371,14 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.A AND R1.C" +
                 joinOp + "R3.C AND R1.A > 0";
         pn = compileToTopDownTree(query, 7, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -384,7 +390,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals("R3", seqScan.getTargetTableName());
         assertNull(seqScan.getPredicate());
 
-        nlj = (NestLoopPlanNode) nlj.getChild(0);
+        nlj = (AbstractJoinPlanNode) nlj.getChild(0);
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -405,12 +411,12 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.A AND R1.C" +
                 joinOp + "R2.C WHERE R1.A > 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
@@ -433,13 +439,13 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT A, C FROM R1 JOIN R2 USING (A, C)";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
@@ -452,13 +458,13 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT A, C FROM R1 JOIN R2 USING (A, C) WHERE A > 0";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
@@ -480,14 +486,14 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.A JOIN R3 ON R1.C" +
                 joinOp + "R3.C WHERE R1.A > 0";
         pn = compileToTopDownTree(query, 7, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -499,7 +505,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals("R3", seqScan.getTargetTableName());
         assertNull(seqScan.getPredicate());
 
-        nlj = (NestLoopPlanNode) nlj.getChild(0);
+        nlj = (AbstractJoinPlanNode) nlj.getChild(0);
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -522,7 +528,7 @@ public class TestPlansJoin extends PlannerTestCase {
         List<AbstractPlanNode> lpn;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         AbstractExpression predicate;
         SeqScanPlanNode seqScan;
         SchemaColumn sc0;
@@ -530,7 +536,7 @@ public class TestPlansJoin extends PlannerTestCase {
 
         query = "SELECT max(A) FROM R1 JOIN R2 USING(A)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
         for (SchemaColumn sc : selectColumns) {
@@ -540,12 +546,12 @@ public class TestPlansJoin extends PlannerTestCase {
             assertNotSame(-1, tve.getColumnIndex());
         }
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
+                PlanNodeType.HASHJOIN);
         assertNotNull(AggregatePlanNode.getInlineAggregationNode(node));
 
         query = "SELECT distinct(A) FROM R1 JOIN R2 USING(A)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
         for (SchemaColumn sc : selectColumns) {
@@ -559,7 +565,7 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
@@ -577,12 +583,12 @@ public class TestPlansJoin extends PlannerTestCase {
         assertProjectingCoordinator(lpn);
         pn = lpn.get(1);
         assertTopDownTree(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_EQUAL,
@@ -603,8 +609,8 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM P1 LABEL LEFT JOIN R2 USING(A) WHERE A > 0";
         lpn = compileToFragments(query);
         node = followAssertedLeftChain(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -629,12 +635,12 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = lpn.get(1);
         assertTopDownTree(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -663,7 +669,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -677,7 +683,7 @@ public class TestPlansJoin extends PlannerTestCase {
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getPreJoinPredicate();
         theConstantIsOnTheLeft = (predicate != null) &&
                 (predicate.getLeft() != null) &&
@@ -711,7 +717,7 @@ public class TestPlansJoin extends PlannerTestCase {
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getPreJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_EQUAL,
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
@@ -731,11 +737,11 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.A" +
                 joinOp + "R2.A AND R2.C = 1 ";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE);
@@ -747,11 +753,11 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 5,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE);
@@ -778,7 +784,7 @@ public class TestPlansJoin extends PlannerTestCase {
         node = followAssertedLeftChain(pn, true,
                 PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getPreJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_EQUAL,
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
@@ -810,7 +816,7 @@ public class TestPlansJoin extends PlannerTestCase {
         node = followAssertedLeftChain(pn, true,
                 PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getPreJoinPredicate();
         theConstantIsOnTheLeft = (predicate != null) &&
                 (predicate.getLeft() != null) &&
@@ -849,7 +855,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String pattern;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         AbstractExpression predicate;
 
         query = "SELECT * FROM R1, R2";
@@ -858,7 +864,7 @@ public class TestPlansJoin extends PlannerTestCase {
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getJoinPredicate());
 
         for (JoinOp joinOp : JoinOp.JOIN_OPS) {
@@ -875,17 +881,17 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         AbstractExpression predicate;
 
         query = "SELECT * FROM R1 JOIN R2 ON ABS(R1.A) " +
                 joinOp + " ABS(R2.A) ";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
                 ExpressionType.FUNCTION,
@@ -896,11 +902,11 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1, R2 WHERE ABS(R1.A) " +
                 joinOp + " ABS(R2.A) ";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN, PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
                 ExpressionType.FUNCTION,
@@ -953,7 +959,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         NestLoopIndexPlanNode nlij;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -1044,14 +1050,14 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R1.A WHERE R3.C > 0 AND R2.C >= 5";
         pn = compileToTopDownTree(query, 7, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.NESTLOOPINDEX,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -1137,23 +1143,45 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOPINDEX,
-                PlanNodeType.SEQSCAN);
+                PlanNodeType.MERGEJOIN,
+                PlanNodeType.INDEXSCAN);
 
         query = "SELECT X.A FROM R4 X, R4 Y WHERE X.A" +
                 joinOp + "Y.A ORDER BY Y.A, X.C";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOPINDEX,
-                PlanNodeType.SEQSCAN);
+                PlanNodeType.MERGEJOIN,
+                PlanNodeType.INDEXSCAN);
+    }
+
+    public void testMergeJoinScansInnerIndexInPlace() {
+        // The inner index is walked in place, however large the inner table,
+        // instead of being read into a temp table for the join. R4 is keyed
+        // on (A, C, D), so probing it on A alone would match a run of rows
+        // for each outer tuple; walking both indexes once is cheaper.
+        String query = "SELECT X.A, Y.C FROM R4 X, R4 Y WHERE X.A = Y.A";
+        AbstractPlanNode pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
+                PlanNodeType.PROJECTION,
+                PlanNodeType.MERGEJOIN,
+                PlanNodeType.INDEXSCAN);
+        AbstractPlanNode node = followAssertedLeftChain(pn, PlanNodeType.SEND,
+                PlanNodeType.PROJECTION,
+                PlanNodeType.MERGEJOIN);
+        MergeJoinPlanNode mj = (MergeJoinPlanNode) node;
+        assertEquals(1, mj.getChildCount());
+        assertEquals("X", ((IndexScanPlanNode) mj.getChild(0)).getTargetTableAlias());
+        IndexScanPlanNode indexScan = mj.getInlineIndexScan();
+        assertEquals("Y", indexScan.getTargetTableAlias());
+        assertTrue(indexScan.getSearchKeyExpressions().isEmpty());
+        assertNull(indexScan.getPredicate());
     }
 
     public void testMultiColumnJoin() {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         NestLoopIndexPlanNode nlij;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -1162,13 +1190,13 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT A, C FROM R2 JOIN R1 USING(A, C)";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                PlanNodeType.HASHJOIN);
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
                 ExpressionType.COMPARE_EQUAL,
@@ -1223,7 +1251,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         NestLoopIndexPlanNode nlij;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -1233,13 +1261,13 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
                 joinOp.toOperator(),
@@ -1346,7 +1374,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         AbstractExpression predicate;
 
@@ -1354,12 +1382,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1376,12 +1404,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C AND R1.A = 5";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         predicate = nlj.getPreJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_EQUAL,
@@ -1410,7 +1438,7 @@ public class TestPlansJoin extends PlannerTestCase {
         List<AbstractPlanNode> lpn;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         AbstractExpression predicate;
 
@@ -1420,13 +1448,13 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1463,7 +1491,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         AbstractExpression predicate;
         SeqScanPlanNode seqScan;
         IndexScanPlanNode indexScan;
@@ -1472,12 +1500,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -1496,12 +1524,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C AND R1.A > 0 AND R2.A < 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         predicate = nlj.getPreJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_GREATERTHAN,
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
@@ -1524,12 +1552,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C AND (R1.A > 0 OR R2.A < 0)";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         boolean theOrIsOnTheLeft = (predicate != null) &&
@@ -1571,12 +1599,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE R1.A > 0 AND R2.A IS NULL AND (R1.C > R2.C OR R2.C IS NULL)";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1604,15 +1632,18 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3.A" + joinOp + "R2.A Inner-Outer index join Expr. NLJ predicate.
         // R3.A > 3 Index Outer where expr pushed down to IndexScanPlanNode
         // R3.C < 0 non-index Outer where expr pushed down to IndexScanPlanNode as a predicate
+        // With an equality, hashing R2 beats rescanning it for every R3 row the index delivers,
+        // and both Outer where exprs are pushed down to the R3 SeqScanPlanNode instead.
         query = "SELECT * FROM R3 LEFT JOIN R2 ON R3.A" +
                 joinOp + "R2.A WHERE R3.A > 3 AND R3.C < 0";
+        PlanNodeType outerScanType = joinOp == JoinOp.EQUAL ? PlanNodeType.SEQSCAN : PlanNodeType.INDEXSCAN;
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.INDEXSCAN,
+                joinOp.toSeqScanJoinType(),
+                outerScanType,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1620,25 +1651,39 @@ public class TestPlansJoin extends PlannerTestCase {
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE);
         assertNull(nlj.getWherePredicate());
 
-        indexScan = (IndexScanPlanNode) nlj.getChild(0);
-        assertEquals(IndexLookupType.GT, indexScan.getLookupType());
-        assertNull(indexScan.getEndExpression());
-        predicate = indexScan.getPredicate();
-        assertExprTopDownTree(predicate, ExpressionType.COMPARE_LESSTHAN,
-                ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        if (joinOp == JoinOp.EQUAL) {
+            seqScan = (SeqScanPlanNode) nlj.getChild(0);
+            predicate = seqScan.getPredicate();
+            assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
+                    ExpressionType.COMPARE_LESSTHAN,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT,
+                    ExpressionType.COMPARE_GREATERTHAN,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        }
+        else {
+            indexScan = (IndexScanPlanNode) nlj.getChild(0);
+            assertEquals(IndexLookupType.GT, indexScan.getLookupType());
+            assertNull(indexScan.getEndExpression());
+            predicate = indexScan.getPredicate();
+            assertExprTopDownTree(predicate, ExpressionType.COMPARE_LESSTHAN,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        }
 
         // R3.C" + joinOp + "R2.C Inner-Outer non-index join Expr. NLJ predicate.
         // R3.A > 3 Index null rejecting inner where expr pushed down to IndexScanPlanNode
         // NLJ is simplified to be INNER
+        // The filtered R3 goes outer and a projection restores the column order.
+        // With an equality, the hash join scans R3 sequentially with the where expr
+        // as its predicate.
         query = "SELECT * FROM R2 LEFT JOIN R3 ON R3.C" +
                 joinOp + "R2.C WHERE R3.A > 3";
-        pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.SEQSCAN,
-                PlanNodeType.INDEXSCAN);
-        node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        pn = compileToTopDownTree(query, 4, true, PlanNodeType.SEND,
+                joinOp.toSeqScanJoinType(),
+                outerScanType,
+                PlanNodeType.SEQSCAN);
+        node = followAssertedLeftChain(pn, true, PlanNodeType.SEND,
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.INNER, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1646,15 +1691,24 @@ public class TestPlansJoin extends PlannerTestCase {
                 ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE);
         assertNull(nlj.getWherePredicate());
 
-        seqScan = (SeqScanPlanNode) nlj.getChild(0);
+        if (joinOp == JoinOp.EQUAL) {
+            seqScan = (SeqScanPlanNode) nlj.getChild(0);
+            assertEquals("R3", seqScan.getTargetTableName());
+            predicate = seqScan.getPredicate();
+            assertExprTopDownTree(predicate, ExpressionType.COMPARE_GREATERTHAN,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        }
+        else {
+            indexScan = (IndexScanPlanNode) nlj.getChild(0);
+            assertEquals(IndexLookupType.GT, indexScan.getLookupType());
+            assertNull(indexScan.getEndExpression());
+            assertNull(indexScan.getPredicate());
+        }
+
+        seqScan = (SeqScanPlanNode) nlj.getChild(1);
         assertEquals("R2", seqScan.getTargetTableName());
         assertNull(seqScan.getPredicate());
 
-        indexScan = (IndexScanPlanNode) nlj.getChild(1);
-        assertEquals(IndexLookupType.GT, indexScan.getLookupType());
-        assertNull(indexScan.getEndExpression());
-        assertNull(indexScan.getPredicate());
-
         if (joinOp != JoinOp.EQUAL) { // weaken test for now
             return;
         }
@@ -1689,7 +1743,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertProjectingCoordinator(lpn);
         pn = lpn.get(1);
         assertTopDownTree(pn, PlanNodeType.SEND,
-        PlanNodeType.NESTLOOP,
+        joinOp.toSeqScanJoinType(),
         PlanNodeType.SEQSCAN,
         PlanNodeType.SEQSCAN);
 
@@ -1709,7 +1763,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments(query);
         assertEquals(2, lpn.size());
         assertTopDownTree(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
@@ -1733,7 +1787,7 @@ public class TestPlansJoin extends PlannerTestCase {
         AbstractPlanNode pn;
         AbstractPlanNode node;
         NestLoopIndexPlanNode nlij;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -1741,12 +1795,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R3 LEFT JOIN R2 ON R3.A" +
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1765,13 +1819,13 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -1822,7 +1876,7 @@ public class TestPlansJoin extends PlannerTestCase {
         AbstractPlanNode pn;
         AbstractPlanNode node;
         NestLoopIndexPlanNode nlij;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
         SeqScanPlanNode seqScan;
@@ -1862,15 +1916,18 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3.A > 0 Inner index Join Expr is pushed down to the inner IndexScan node as an index
         // R3.C != 0 Non-index Inner Join Expression is pushed down to the inner IndexScan node as a predicate
         // R2.A < 6 Outer Join Expr is a pre-join predicate for NLJ
+        // With an equality, the hash join builds from a SeqScan of R3 instead that takes
+        // both Inner Join Exprs as its predicate.
         query = "SELECT * FROM R2 LEFT JOIN R3 ON R3.C" +
                 joinOp + "R2.A AND R3.A > 0 AND R3.C != 0 AND R2.A < 6";
+        PlanNodeType innerScanType = joinOp == JoinOp.EQUAL ? PlanNodeType.SEQSCAN : PlanNodeType.INDEXSCAN;
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
-                PlanNodeType.INDEXSCAN);
+                innerScanType);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         predicate = nlj.getPreJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_LESSTHAN,
@@ -1883,12 +1940,23 @@ public class TestPlansJoin extends PlannerTestCase {
 
         seqScan = (SeqScanPlanNode) nlj.getChild(0);
         assertNull(seqScan.getPredicate());
-        indexScan = (IndexScanPlanNode) nlj.getChild(1);
-        assertEquals(IndexLookupType.GT, indexScan.getLookupType());
-        assertNull(indexScan.getEndExpression());
-        predicate = indexScan.getPredicate();
-        assertExprTopDownTree(predicate, ExpressionType.COMPARE_NOTEQUAL,
-                ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        if (joinOp == JoinOp.EQUAL) {
+            seqScan = (SeqScanPlanNode) nlj.getChild(1);
+            predicate = seqScan.getPredicate();
+            assertExprTopDownTree(predicate, ExpressionType.CONJUNCTION_AND,
+                    ExpressionType.COMPARE_GREATERTHAN,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT,
+                    ExpressionType.COMPARE_NOTEQUAL,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        }
+        else {
+            indexScan = (IndexScanPlanNode) nlj.getChild(1);
+            assertEquals(IndexLookupType.GT, indexScan.getLookupType());
+            assertNull(indexScan.getEndExpression());
+            predicate = indexScan.getPredicate();
+            assertExprTopDownTree(predicate, ExpressionType.COMPARE_NOTEQUAL,
+                    ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_CONSTANT);
+        }
 
         // R2.A" + joinOp + "R3.A Inner-Outer index join Expr. NLIJ/Inlined IndexScan
         // R3.A IS NULL Inner where expr - part of the NLIJ where predicate
@@ -1948,7 +2016,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals(2, lpn.size());
         pn = lpn.get(1);
         assertTopDownTree(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
@@ -1969,7 +2037,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals(2, lpn.size());
         pn = lpn.get(1);
         assertTopDownTree(pn, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
@@ -1995,7 +2063,7 @@ public class TestPlansJoin extends PlannerTestCase {
         List<AbstractPlanNode> lpn;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         NestLoopIndexPlanNode nlij;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -2019,7 +2087,7 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = lpn.get(0);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, joinOp.toOperator(),
@@ -2107,7 +2175,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         AbstractPlanNode node;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         SeqScanPlanNode seqScan;
         IndexScanPlanNode indexScan;
         AbstractExpression predicate;
@@ -2118,53 +2186,54 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 5,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE R2.C > 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                  PlanNodeType.PROJECTION,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 RIGHT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE R1.C > 0";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R3 ON R1.C" +
                 joinOp + "R3.C WHERE R3.A > 0";
+        // The filtered R3 goes outer, sequentially scanned for the hash join
         pn = compileToTopDownTree(query, 5,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.SEQSCAN,
-                PlanNodeType.INDEXSCAN);
+                joinOp.toSeqScanJoinType(),
+                joinOp == JoinOp.EQUAL ? PlanNodeType.SEQSCAN : PlanNodeType.INDEXSCAN,
+                PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,
                     true,
                     PlanNodeType.SEND,
-                    PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                    joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R3 ON R1.C" +
@@ -2184,13 +2253,13 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R2.C WHERE ABS(R2.C) < 10";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                  PlanNodeType.PROJECTION,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 RIGHT JOIN R2 ON R1.C" +
@@ -2198,14 +2267,14 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 5,
                     true,
                     PlanNodeType.SEND,
-                    PlanNodeType.NESTLOOP,
+                    joinOp.toSeqScanJoinType(),
                     PlanNodeType.SEQSCAN,
                     PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,
                     true,
                     PlanNodeType.SEND,
-                    PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                    joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
@@ -2213,27 +2282,27 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 5,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.LEFT);
 
         query = "SELECT * FROM R1 RIGHT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE ABS(R2.C) < 10";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                  PlanNodeType.PROJECTION,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.LEFT);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
@@ -2248,42 +2317,42 @@ public class TestPlansJoin extends PlannerTestCase {
                  true,
                  PlanNodeType.SEND,
                  PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE ABS(R2.C) <  10 OR R2.C IS NOT NULL";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                  PlanNodeType.PROJECTION,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE ABS(R1.C) <  10 AND R1.C > 3";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.LEFT);
 
         query = "SELECT * FROM R1 LEFT JOIN R2 ON R1.C" +
                 joinOp + "R2.C WHERE ABS(R1.C) <  10 OR R2.C IS NOT NULL";
         pn = compileToTopDownTree(query, 5, PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.LEFT);
 
         // Test with seqscan with different filers.
@@ -2292,15 +2361,15 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compileToTopDownTree(query, 4,
                 true,
                 PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         //* enable for debug */ System.out.println(pn.toExplainPlanString());
         node = followAssertedLeftChain(pn,
                     true,
                     PlanNodeType.SEND,
-                    PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                    joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.INNER);
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -2312,13 +2381,13 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R1.A WHERE R2.A IS NULL";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                  PlanNodeType.PROJECTION,
-                 PlanNodeType.NESTLOOP);
-        nlj = (NestLoopPlanNode) node;
+                 joinOp.toSeqScanJoinType());
+        nlj = (AbstractJoinPlanNode) node;
         assertEquals(nlj.getJoinType(), JoinType.LEFT);
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
@@ -2434,11 +2503,11 @@ public class TestPlansJoin extends PlannerTestCase {
         assertProjectingCoordinator(lpn);
 
         assertTopDownTree(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.NESTLOOPINDEX,
                 PlanNodeType.NESTLOOPINDEX,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
@@ -2455,11 +2524,11 @@ public class TestPlansJoin extends PlannerTestCase {
         assertProjectingCoordinator(lpn);
 
         assertTopDownTree(lpn.get(1), PlanNodeType.SEND,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.NESTLOOPINDEX,
                 PlanNodeType.NESTLOOPINDEX,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                joinOp.toSeqScanJoinType(),
+                joinOp.toSeqScanJoinType(),
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
@@ -2496,14 +2565,14 @@ public class TestPlansJoin extends PlannerTestCase {
         compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
         query = "SELECT lr.a a, rr.a FROM r1 lr JOIN r1 rr using (a) ORDER BY a;";
         compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
@@ -2516,8 +2585,8 @@ public class TestPlansJoin extends PlannerTestCase {
                 " INNER JOIN R3 USING(C);";
         compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2535,7 +2604,7 @@ public class TestPlansJoin extends PlannerTestCase {
         compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2544,7 +2613,7 @@ public class TestPlansJoin extends PlannerTestCase {
         compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2553,7 +2622,7 @@ public class TestPlansJoin extends PlannerTestCase {
         compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
                 PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2712,7 +2781,7 @@ public class TestPlansJoin extends PlannerTestCase {
                 joinOp + "R3.A";
         compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 null,
                 PlanNodeType.SEQSCAN);
 
@@ -2726,7 +2795,7 @@ public class TestPlansJoin extends PlannerTestCase {
         String query;
         AbstractPlanNode pn;
         OrderByPlanNode orderBy;
-        NestLoopPlanNode nlj;
+        AbstractJoinPlanNode nlj;
         AggregatePlanNode aggr;
         List<SchemaColumn> selectColumns;
         SchemaColumn col;
@@ -2738,7 +2807,7 @@ public class TestPlansJoin extends PlannerTestCase {
                 "WHERE C > 0 GROUP BY C ORDER BY C";
         pn = compileToTopDownTree(query, 2, PlanNodeType.SEND,
                 PlanNodeType.ORDERBY,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
 
@@ -2749,7 +2818,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals(ExpressionType.VALUE_TUPLE, s.get(0).getExpressionType());
 
         // WHERE
-        nlj = (NestLoopPlanNode) orderBy.getChild(0);
+        nlj = (AbstractJoinPlanNode) orderBy.getChild(0);
         assertNull(nlj.getPreJoinPredicate());
         predicate = nlj.getJoinPredicate();
         assertExprTopDownTree(predicate, ExpressionType.COMPARE_EQUAL,
@@ -2778,8 +2847,8 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT C FROM R1 FULL JOIN R2 USING (C) FULL JOIN R3 USING (C)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2793,8 +2862,8 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT C FROM R1 JOIN R2 USING (C) JOIN R3 USING (C)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
@@ -2809,7 +2878,7 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT C FROM R1 LEFT JOIN R2 USING (C)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
@@ -2823,7 +2892,7 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT C FROM R1 RIGHT JOIN R2 USING (C)";
         pn = compileToTopDownTree(query, 1, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         selectColumns = pn.getOutputSchema().getColumns();
@@ -2834,6 +2903,69 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals(ExpressionType.VALUE_TUPLE, colExp.getExpressionType());
     }
 
+    public void testHashJoinKeys() {
+        AbstractPlanNode pn;
+        HashJoinPlanNode hj;
+
+        // Every equality between the two sides is a key, the rest filters the matches
+        pn = compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.A = R2.A AND R2.C = R1.C AND R1.D > R2.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        hj = (HashJoinPlanNode) pn.getChild(0);
+        assertEquals(2, hj.getOuterHashKeys().size());
+        assertEquals(2, hj.getInnerHashKeys().size());
+        for (AbstractExpression key : hj.getOuterHashKeys()) {
+            assertEquals("R1", ((TupleValueExpression) key).getTableName());
+        }
+        for (AbstractExpression key : hj.getInnerHashKeys()) {
+            assertEquals("R2", ((TupleValueExpression) key).getTableName());
+        }
+        assertExprTopDownTree(hj.getJoinPredicate(), ExpressionType.CONJUNCTION_AND,
+                ExpressionType.CONJUNCTION_AND,
+                ExpressionType.COMPARE_EQUAL,
+                ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE,
+                ExpressionType.COMPARE_EQUAL,
+                ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE,
+                ExpressionType.COMPARE_LESSTHAN,
+                ExpressionType.VALUE_TUPLE, ExpressionType.VALUE_TUPLE);
+
+        // Keys can be expressions as long as each one stays on its own side
+        pn = compileToTopDownTree("SELECT * FROM R1 LEFT JOIN R2 ON R1.A + R1.C = R2.A * R2.C", 5,
+                true,
+                PlanNodeType.SEND,
+                PlanNodeType.HASHJOIN,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+        hj = (HashJoinPlanNode) pn.getChild(0);
+        assertEquals(JoinType.LEFT, hj.getJoinType());
+        assertEquals(1, hj.getOuterHashKeys().size());
+        assertEquals(ExpressionType.OPERATOR_PLUS, hj.getOuterHashKeys().get(0).getExpressionType());
+        assertEquals(ExpressionType.OPERATOR_MULTIPLY, hj.getInnerHashKeys().get(0).getExpressionType());
+
+        // Keys of different types would hash apart
+        compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.A + R1.C = R2.A", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+
+        // An equality that mixes the sides has nothing to hash on
+        compileToTopDownTree("SELECT * FROM R1 JOIN R2 ON R1.A + R2.A = R1.C", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+
+        // NOT DISTINCT matches NULLs, which never match in the hash table
+        compileToTopDownTree("SELECT * FROM R1 FULL JOIN R2 ON R1.A IS NOT DISTINCT FROM R2.A", 5,
+                PlanNodeType.SEND,
+                PlanNodeType.NESTLOOP,
+                PlanNodeType.SEQSCAN,
+                PlanNodeType.SEQSCAN);
+    }
+
     public void testJoinOrders() {
         String query;
         AbstractPlanNode pn;
@@ -2844,12 +2976,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R2 JOIN R1 USING (C) WHERE R1.A > 0";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN);
         sn = (AbstractScanPlanNode) node;
         assertEquals("R1", sn.getTargetTableName());
@@ -2858,12 +2990,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 USING (C) WHERE R1.A > 0 AND R2.A = 3";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN);
         sn = (AbstractScanPlanNode) node;
         assertEquals("R2", sn.getTargetTableName());
@@ -2872,12 +3004,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 USING (C) WHERE R1.A > 0 AND R1.A < 3 AND R2.A = 3";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN);
         sn = (AbstractScanPlanNode) node;
         assertEquals("R2", sn.getTargetTableName());
@@ -2886,12 +3018,12 @@ public class TestPlansJoin extends PlannerTestCase {
         query = "SELECT * FROM R1 JOIN R2 USING (C) WHERE R1.A = 0 AND R1.D < 3 AND R2.A = 3";
         pn = compileToTopDownTree(query, 4, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN,
                 PlanNodeType.SEQSCAN);
         node = followAssertedLeftChain(pn, PlanNodeType.SEND,
                 PlanNodeType.PROJECTION,
-                PlanNodeType.NESTLOOP,
+                PlanNodeType.HASHJOIN,
                 PlanNodeType.SEQSCAN);
         sn = (AbstractScanPlanNode) node;
         assertEquals("R1", sn.getTargetTableName());
@@ -3071,7 +3203,9 @@ public class TestPlansJoin extends PlannerTestCase {
             explained = buildExplainPlan(compileToFragments(query));
             assertEquals(1, StringUtils.countMatches(explained, "FULL"));
             assertEquals(1, StringUtils.countMatches(explained, "SORT"));
-            assertEquals(1, StringUtils.countMatches(explained, "Serial AGGREGATION"));
+            // The hash join doesn't deliver the index order that serial aggregation needs
+            assertEquals(1, StringUtils.countMatches(explained,
+                    joinOp == JoinOp.EQUAL ? "Hash AGGREGATION" : "Serial AGGREGATION"));
         }
     }
 
@@ -286,16 +286,19 @@ public class TestPlansOrderBy extends PlannerTestCase {
         validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 " +
                 "ORDER BY T.T_D0 DESC, T.T_D1 DESC LIMIT ?");
 
-        // filter on indexed column on one table, prefix join constraint,
-        // ORDER BY looking for 1 recovered spoiler -> no ORDER BY node
-        validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 AND Tmanykeys.T_D0 = ?  " +
+        // filter on indexed column on one table, prefix join constraint on indexed key
+        // from the other table (joined on the unindexed T.T_D2, rescanning T for every
+        // Tmanykeys row would cost more than the sort), ORDER BY looking for 1 recovered
+        // spoiler -> no ORDER BY node
+        validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D0 AND Tmanykeys.T_D0 = ?  " +
                 "ORDER BY Tmanykeys.T_D1 LIMIT ?");
         // This query requires additional recognition of transitive equality to eliminate the ORDER BY.
         // See ENG-4728.
         //*See ENG-4728.*/ validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 AND T.T_D2 = ?  " +
         //*See ENG-4728.*/        "ORDER BY Tmanykeys.T_D1 LIMIT ?");
-        // ORDER BY is not recovered, but index is chosen for sorting purpose --> no ORDER BY node
-        validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D1 = T.T_D2 AND T.T_D0 = ?  " +
+        // ORDER BY is not recovered, and hashing on the unindexed columns beats the nest loop
+        // that would keep the Tmanykeys index order --> ORDER BY node
+        validateIndexedBruteForcePlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D1 = T.T_D2 AND T.T_D0 = ?  " +
                 "ORDER BY Tmanykeys.T_D0 LIMIT ?");
 
         // test NLJ --> need ORDER BY node
@@ -838,17 +841,22 @@ public class TestPlansOrderBy extends PlannerTestCase {
     public void testOrderByFullJoin() {
 
         // ORDER BY with FULL join still requires an ORDER BY node even if the
-        // outer table output is ordered by its index
-        validatePlan("SELECT L.T_D0, L.T_D1 FROM T2 L FULL JOIN T2 R ON L.T_D2 = R.T_D2 ORDER BY 1,2",
+        // outer table output is ordered by its index. The equality gets a hash join
+        // of two sequential scans instead, still followed by the ORDER BY node.
+        validatePlan("SELECT L.T_D0, L.T_D1 FROM T2 L FULL JOIN T2 R ON L.T_D2 IS NOT DISTINCT FROM R.T_D2 ORDER BY 1,2",
                 true, true, true);
+        validatePlan("SELECT L.T_D0, L.T_D1 FROM T2 L FULL JOIN T2 R ON L.T_D2 = R.T_D2 ORDER BY 1,2",
+                false, true, true);
 
         // Same test but with a distributed table
         validateMergeReceive("SELECT L.P_D1 FROM P L FULL JOIN P R ON L.P_D0 = R.P_D0 ORDER BY 1;",
                 false, new int[] {1});
 
         // With aggregate
-        validatePlan("SELECT L.T_D0, L.T_D1, SUM(L.T_D2) FROM T2 L FULL JOIN T2 R ON L.T_D2 = R.T_D2 GROUP BY L.T_D0, L.T_D1 ORDER BY 1,2",
+        validatePlan("SELECT L.T_D0, L.T_D1, SUM(L.T_D2) FROM T2 L FULL JOIN T2 R ON L.T_D2 IS NOT DISTINCT FROM R.T_D2 GROUP BY L.T_D0, L.T_D1 ORDER BY 1,2",
                 true, true, true, false, true);
+        validatePlan("SELECT L.T_D0, L.T_D1, SUM(L.T_D2) FROM T2 L FULL JOIN T2 R ON L.T_D2 = R.T_D2 GROUP BY L.T_D0, L.T_D1 ORDER BY 1,2",
+                false, true, true, true, false);
 
         // Partitioned with aggregate
         validateMultiPartitionedPlan("SELECT L.P_D1, SUM(L.P_D2) FROM P L FULL JOIN P R ON L.P_D0 = R.P_D0 GROUP BY L.P_D1 ORDER BY 1;",
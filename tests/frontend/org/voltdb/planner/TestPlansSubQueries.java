@@ -1239,7 +1239,11 @@ public class TestPlansSubQueries extends PlannerTestCase {
         }
         assertTrue(nlpn instanceof NestLoopPlanNode);
         assertEquals(JoinType.INNER, ((NestLoopPlanNode) nlpn).getJoinType());
+        // The unique match on P2 goes outer, so that T1 is scanned only once
         pn = nlpn.getChild(0);
+        checkPrimaryKeyIndexScan(pn, "P2");
+
+        pn = nlpn.getChild(1);
         checkSeqScan(pn, "T1");
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         pn = pn.getChild(0);
@@ -1247,9 +1251,6 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PARTIALAGGREGATE));
 
-        pn = nlpn.getChild(1);
-        checkPrimaryKeyIndexScan(pn, "P2");
-
 
         planNodes = compileToFragments(
                 "SELECT * FROM (SELECT A, C FROM P1 GROUP BY A, C) T1, P2 " +
@@ -1265,6 +1266,9 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertTrue(nlpn instanceof NestLoopPlanNode);
         assertEquals(JoinType.INNER, ((NestLoopPlanNode) nlpn).getJoinType());
         pn = nlpn.getChild(0);
+        checkPrimaryKeyIndexScan(pn, "P2");
+
+        pn = nlpn.getChild(1);
         checkSeqScan(pn, "T1");
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         pn = pn.getChild(0);
@@ -1272,9 +1276,6 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PARTIALAGGREGATE));
 
-        pn = nlpn.getChild(1);
-        checkPrimaryKeyIndexScan(pn, "P2");
-
 
         // Group by C, A instead of A, C
         planNodes = compileToFragments(
@@ -1291,6 +1292,9 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertTrue(nlpn instanceof NestLoopPlanNode);
         assertEquals(JoinType.INNER, ((NestLoopPlanNode) nlpn).getJoinType());
         pn = nlpn.getChild(0);
+        checkPrimaryKeyIndexScan(pn, "P2");
+
+        pn = nlpn.getChild(1);
         checkSeqScan(pn, "T1");
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         pn = pn.getChild(0);
@@ -1298,9 +1302,6 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PROJECTION));
         assertNotNull(pn.getInlinePlanNode(PlanNodeType.PARTIALAGGREGATE));
 
-        pn = nlpn.getChild(1);
-        checkPrimaryKeyIndexScan(pn, "P2");
-
     }
 
     public void testTableAggSubquery() {
@@ -1748,7 +1749,7 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertFalse(planNodes.get(0).toExplainPlanString().contains("JOIN"));
 
         assertTrue(planNodes.get(1).toExplainPlanString().contains("AGGREGATION"));
-        assertTrue(planNodes.get(1).toExplainPlanString().contains("INDEX INNER JOIN"));
+        assertTrue(planNodes.get(1).toExplainPlanString().contains("MERGE INNER JOIN"));
         assertTrue(planNodes.get(1).toExplainPlanString().contains("LOOP INNER JOIN"));
 
         // Distinct without GROUP BY
@@ -1779,7 +1780,7 @@ public class TestPlansSubQueries extends PlannerTestCase {
         assertFalse(planNodes.get(0).toExplainPlanString().contains("JOIN"));
 
         assertTrue(planNodes.get(1).toExplainPlanString().contains("AGGREGATION"));
-        assertTrue(planNodes.get(1).toExplainPlanString().contains("INDEX INNER JOIN"));
+        assertTrue(planNodes.get(1).toExplainPlanString().contains("MERGE INNER JOIN"));
         assertTrue(planNodes.get(1).toExplainPlanString().contains("LOOP INNER JOIN"));
 
         failToCompile(
@@ -2080,10 +2081,11 @@ public class TestPlansSubQueries extends PlannerTestCase {
         nlpn = pn.getChild(0);
         assertTrue(nlpn instanceof NestLoopPlanNode);
         assertEquals(JoinType.INNER, ((NestLoopPlanNode) nlpn).getJoinType());
+        // The index scan under T1 is estimated to deliver fewer rows than R1, so T1 goes outer
         pn = nlpn.getChild(0);
-        checkSeqScan(pn, "R1", "A", "C");
-        pn = nlpn.getChild(1);
         checkSeqScan(pn, "T1", "C");
+        pn = nlpn.getChild(1);
+        checkSeqScan(pn, "R1", "A", "C");
         checkSubquerySimplification(sql, equivalentSql);
 
 
@@ -28,11 +28,12 @@ import java.util.List;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ConstantValueExpression;
 import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
-import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.NodeSchema;
 import org.voltdb.plannodes.OrderByPlanNode;
 import org.voltdb.plannodes.ProjectionPlanNode;
@@ -51,7 +52,7 @@ public class TestSelfJoins  extends PlannerTestCase {
         if (pn instanceof ProjectionPlanNode) {
             pn = pn.getChild(0);
         }
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
         assertEquals(2, pn.getChildCount());
         AbstractPlanNode c = pn.getChild(0);
@@ -72,7 +73,7 @@ public class TestSelfJoins  extends PlannerTestCase {
         if (pn instanceof ProjectionPlanNode) {
             pn = pn.getChild(0);
         }
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
         assertEquals(2, pn.getChildCount());
         c = pn.getChild(0);
@@ -91,7 +92,7 @@ public class TestSelfJoins  extends PlannerTestCase {
         if (pn instanceof ProjectionPlanNode) {
             pn = pn.getChild(0);
         }
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select A,B.C  FROM R1 A JOIN R2 B USING(A)");
@@ -115,8 +116,8 @@ public class TestSelfJoins  extends PlannerTestCase {
         if (pn instanceof ProjectionPlanNode) {
             pn = pn.getChild(0);
         }
-        assertTrue(pn instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) pn;
+        assertTrue(pn instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) pn;
         assertNotNull(nl.getPreJoinPredicate());
         AbstractExpression p = nl.getPreJoinPredicate();
         assertEquals(ExpressionType.COMPARE_GREATERTHAN, p.getExpressionType());
@@ -1245,7 +1245,7 @@ public class TestWindowedFunctions extends PlannerTestCase {
                          1,
                          PlanNodeType.SEND,
                          PlanNodeType.PROJECTION,
-                         PlanNodeType.NESTLOOPINDEX,
+                         PlanNodeType.MERGEJOIN,
                          PlanNodeType.INDEXSCAN);
         }
         if (IS_ENABLED) {
@@ -739,6 +739,131 @@ public class GenerateEETests extends EEPlanGenerator {
         generateTests("executors", "TestGeneratedString", GSDB);
     }
 
+    public void generatedHashJoinPlan() throws Exception {
+        Database db = getDatabase();
+        // The equality on B is hashed.  B = 20 and 30 only match on
+        // the outer side, B = 40 only on the inner side.  The generator
+        // can't express NULLs in the answers, so the unmatched sides
+        // are coalesced to -1.
+        final TableConfig AAAConfig = new TableConfig("AAA",
+                                                      db,
+                                                      new Integer[][] {
+                                                          { 1,  10,    1 },
+                                                          { 2,  20,    2 },
+                                                          { 3,  30,    3 } });
+        final TableConfig BBBConfig = new TableConfig("BBB",
+                                                      db,
+                                                      new Integer[][] {
+                                                          { 1,  10,  100 },
+                                                          { 2,  10,  200 },
+                                                          { 3,  40,  300 } });
+        final TableConfig innerOutput = new TableConfig("test_join",
+                                                        db,
+                                                        new Integer[][] {
+                                                            { 1,  10,  100 },
+                                                            { 1,  10,  200 } });
+        final TableConfig leftOutput = new TableConfig("test_output",
+                                                       db,
+                                                       new Integer[][] {
+                                                           { 1,  10,  100 },
+                                                           { 1,  10,  200 },
+                                                           { 2,  20,   -1 },
+                                                           { 3,  30,   -1 } });
+        final TableConfig fullOutput = new TableConfig("test_sum_output",
+                                                       db,
+                                                       new Integer[][] {
+                                                           { -1, 40,  300 },
+                                                           { 1,  10,  100 },
+                                                           { 1,  10,  200 },
+                                                           { 2,  20,   -1 },
+                                                           { 3,  30,   -1 } });
+        DBConfig HJDB = new DBConfig(getClass(),
+                                     GenerateEETests.class.getResource(DDL_FILENAME),
+                                     getCatalogString(),
+                                     AAAConfig,
+                                     BBBConfig,
+                                     innerOutput,
+                                     leftOutput,
+                                     fullOutput);
+        HJDB.addTest(new TestConfig("test_hash_inner_join",
+                                    "select AAA.A, AAA.B, BBB.C from AAA join BBB on AAA.B = BBB.B "
+                                    + "order by AAA.A, AAA.B, BBB.C;",
+                                    false,
+                                    innerOutput));
+        HJDB.addTest(new TestConfig("test_hash_left_join",
+                                    "select AAA.A, AAA.B, coalesce(BBB.C, -1) as C "
+                                    + "from AAA left join BBB on AAA.B = BBB.B "
+                                    + "order by AAA.A, AAA.B, C;",
+                                    false,
+                                    leftOutput));
+        HJDB.addTest(new TestConfig("test_hash_full_join",
+                                    "select coalesce(AAA.A, -1) as A, coalesce(AAA.B, BBB.B) as B, coalesce(BBB.C, -1) as C "
+                                    + "from AAA full join BBB on AAA.B = BBB.B "
+                                    + "order by A, B, C;",
+                                    false,
+                                    fullOutput));
+        generateTests("executors", "TestHashJoin", HJDB);
+    }
+
+    public void generatedMergeJoinPlan() throws Exception {
+        Database db = getDatabase();
+        // Both tables are indexed on B, so the join walks the two
+        // indexes side by side.  B = 10 repeats on both sides, B = 5
+        // and 30 only appear on the inner side and B = 20 only on the
+        // outer side.
+        final TableConfig DDDConfig = new TableConfig("DDD",
+                                                      db,
+                                                      new Integer[][] {
+                                                          { 1,  10,    1 },
+                                                          { 2,  10,    2 },
+                                                          { 3,  20,    3 },
+                                                          { 4,  40,    4 } });
+        final TableConfig EEEConfig = new TableConfig("EEE",
+                                                      db,
+                                                      new Integer[][] {
+                                                          { 1,   5,   50 },
+                                                          { 2,  10,  100 },
+                                                          { 3,  10,  200 },
+                                                          { 4,  30,  300 },
+                                                          { 5,  40,  400 } });
+        final TableConfig innerOutput = new TableConfig("test_join",
+                                                        db,
+                                                        new Integer[][] {
+                                                            { 1,  10,  100 },
+                                                            { 1,  10,  200 },
+                                                            { 2,  10,  100 },
+                                                            { 2,  10,  200 },
+                                                            { 4,  40,  400 } });
+        final TableConfig leftOutput = new TableConfig("test_output",
+                                                       db,
+                                                       new Integer[][] {
+                                                           { 1,  10,  100 },
+                                                           { 1,  10,  200 },
+                                                           { 2,  10,  100 },
+                                                           { 2,  10,  200 },
+                                                           { 3,  20,   -1 },
+                                                           { 4,  40,  400 } });
+        DBConfig MJDB = new DBConfig(getClass(),
+                                     GenerateEETests.class.getResource(DDL_FILENAME),
+                                     getCatalogString(),
+                                     DDDConfig,
+                                     EEEConfig,
+                                     innerOutput,
+                                     leftOutput);
+        MJDB.addTest(new TestConfig("test_merge_inner_join",
+                                    "select DDD.A, DDD.B, EEE.C from DDD join EEE on DDD.B = EEE.B "
+                                    + "order by DDD.A, DDD.B, EEE.C;",
+                                    false,
+                                    innerOutput));
+        MJDB.addTest(new TestConfig("test_merge_left_join",
+                                    "select DDD.A, DDD.B, coalesce(EEE.C, -1) as C "
+                                    + "from DDD left join EEE on DDD.B = EEE.B "
+                                    + "order by DDD.A, DDD.B, C;",
+                                    false,
+                                    leftOutput));
+        generateTests("executors", "TestMergeJoin", MJDB);
+    }
+
     @Override
     protected void tearDown() throws Exception {
         super.tearDown();
@@ -756,6 +881,8 @@ public class GenerateEETests extends EEPlanGenerator {
             tg.generatedSumPlan();
             tg.generatedRankPlan();
             tg.generatedStringPlan();
+            tg.generatedHashJoinPlan();
+            tg.generatedMergeJoinPlan();
         } catch (Exception e) {
             System.err.printf("Unexpected exception: %s\n", e.getMessage());
             e.printStackTrace();
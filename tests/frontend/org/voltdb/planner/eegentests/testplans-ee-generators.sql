@@ -19,6 +19,8 @@ DROP TABLE T1 IF EXISTS;
 DROP TABLE T2 IF EXISTS;
 DROP TABLE PWEE_WITH_INDEX IF EXISTS;
 DROP TABLE IIANSWER IF EXISTS;
+DROP TABLE DDD IF EXISTS;
+DROP TABLE EEE IF EXISTS;
 
 CREATE TABLE T (
   A INTEGER,
@@ -137,3 +139,17 @@ CREATE TABLE P2 (
   BBB     INTEGER,
 );
 PARTITION TABLE P2 ON COLUMN ID;
+
+CREATE TABLE DDD (
+  A INTEGER,
+  B INTEGER,
+  C INTEGER
+);
+CREATE INDEX DDD_B ON DDD (B);
+
+CREATE TABLE EEE (
+  A INTEGER,
+  B INTEGER,
+  C INTEGER
+);
+CREATE INDEX EEE_B ON EEE (B);
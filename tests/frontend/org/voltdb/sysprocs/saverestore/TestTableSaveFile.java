@@ -0,0 +1,215 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.SnapshotRestoreStats;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.utils.CompressionCodec;
+import org.voltdb.utils.CompressionService;
+
+public class TestTableSaveFile extends TestCase {
+
+    private static final String TABLE_NAME = "RESTORE_ME";
+    private static final int CHUNKS = 200;
+    private static final int ROWS_PER_CHUNK = 50;
+    private static final int PARTITIONS = 3;
+
+    private File m_file;
+
+    private static VoltTable newTable() {
+        return new VoltTable(new ColumnInfo("ID", VoltType.BIGINT), new ColumnInfo("PAYLOAD", VoltType.STRING));
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        m_file = File.createTempFile("TestTableSaveFile", ".vpt");
+        writeSaveFile();
+    }
+
+    private void writeSaveFile() throws Exception {
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(
+                m_file, 0, "cluster", "database", TABLE_NAME, PARTITIONS, false,
+                Arrays.asList(0, 1, 2), newTable(), 42, System.currentTimeMillis());
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            VoltTable vt = newTable();
+            for (int row = 0; row < ROWS_PER_CHUNK; row++) {
+                vt.addRow(chunk * 1000L + row, "chunk " + chunk + " row " + row);
+            }
+            // Saved chunks are the partition id followed by the row count and rows
+            ByteBuffer tableBuf = PrivateVoltTableFactory.getTableDataReference(vt);
+            tableBuf.position(4 + tableBuf.getInt(0));
+            final BBContainer cont = DBBPool.allocateDirect(4 + tableBuf.remaining());
+            cont.b().putInt(chunk % PARTITIONS);
+            cont.b().put(tableBuf);
+            cont.b().flip();
+            target.write(new Callable<BBContainer>() {
+                @Override
+                public BBContainer call() {
+                    return cont;
+                }
+            }, 0).get();
+        }
+        target.close();
+        SnapshotRestoreStats.reset();
+    }
+
+    @Override
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    private List<Long> readChunks(Integer[] partitions, boolean continueOnCorruptedChunk, TableSaveFile[] out)
+            throws IOException {
+        List<Long> firstIds = new ArrayList<Long>();
+        TableSaveFile saveFile = new TableSaveFile(
+                new FileInputStream(m_file), 8, partitions, continueOnCorruptedChunk);
+        if (out != null) {
+            out[0] = saveFile;
+        }
+        try {
+            while (saveFile.hasMoreChunks()) {
+                BBContainer c = saveFile.getNextChunk();
+                if (c == null) {
+                    continue;
+                }
+                try {
+                    VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                    assertEquals(ROWS_PER_CHUNK, vt.getRowCount());
+                    vt.advanceRow();
+                    firstIds.add(vt.getLong(0));
+                } finally {
+                    c.discard();
+                }
+            }
+        } finally {
+            saveFile.close();
+        }
+        return firstIds;
+    }
+
+    /*
+     * Chunks decompress in parallel but must come out in the order they were saved
+     */
+    @Test
+    public void testChunksArriveInFileOrder() throws Exception {
+        List<Long> firstIds = readChunks(null, false, null);
+        assertEquals(CHUNKS, firstIds.size());
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            assertEquals(chunk * 1000L, firstIds.get(chunk).longValue());
+        }
+
+        SnapshotRestoreStats.TableProgress progress = SnapshotRestoreStats.getTableProgress(TABLE_NAME);
+        assertEquals(CHUNKS, progress.getChunksRead());
+        assertEquals(CHUNKS, progress.getChunksLoaded());
+        assertEquals(0, progress.getChunksCorrupt());
+    }
+
+    @Test
+    public void testIrrelevantPartitionsSkipped() throws Exception {
+        List<Long> firstIds = readChunks(new Integer[] { 1 }, false, null);
+        List<Long> expected = new ArrayList<Long>();
+        for (int chunk = 1; chunk < CHUNKS; chunk += PARTITIONS) {
+            expected.add(chunk * 1000L);
+        }
+        assertEquals(expected, firstIds);
+        assertEquals(CHUNKS, SnapshotRestoreStats.getTableProgress(TABLE_NAME).getChunksRead());
+    }
+
+    /*
+     * Flip a byte in the payload of the last chunk
+     */
+    private void corruptLastChunk() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.seek(raf.length() - 10);
+            int b = raf.read();
+            raf.seek(raf.length() - 10);
+            raf.write(~b);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testContinueOnCorruptedChunk() throws Exception {
+        corruptLastChunk();
+        TableSaveFile saveFile[] = new TableSaveFile[1];
+        List<Long> firstIds = readChunks(null, true, saveFile);
+        assertEquals(CHUNKS - 1, firstIds.size());
+        for (int chunk = 0; chunk < CHUNKS - 1; chunk++) {
+            assertEquals(chunk * 1000L, firstIds.get(chunk).longValue());
+        }
+        assertTrue(saveFile[0].getCorruptedPartitionIds().contains((CHUNKS - 1) % PARTITIONS));
+        assertEquals(1, SnapshotRestoreStats.getTableProgress(TABLE_NAME).getChunksCorrupt());
+    }
+
+    @Test
+    public void testCorruptedChunkFailsRead() throws Exception {
+        corruptLastChunk();
+        try {
+            readChunks(null, false, null);
+            fail("Expected the corrupted chunk to fail the read");
+        } catch (IOException expected) {
+        }
+    }
+
+    /*
+     * The codec is recorded in the header, whatever the current setting is when reading
+     */
+    @Test
+    public void testEveryCodecRestores() throws Exception {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            try {
+                CompressionService.setCodec(CompressionService.Use.SNAPSHOT, codec);
+                writeSaveFile();
+            } finally {
+                CompressionService.setCodec(CompressionService.Use.SNAPSHOT, CompressionCodec.SNAPPY);
+            }
+            List<Long> firstIds = readChunks(null, false, null);
+            assertEquals(codec.name(), CHUNKS, firstIds.size());
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                assertEquals(chunk * 1000L, firstIds.get(chunk).longValue());
+            }
+        }
+    }
+}
@@ -39,6 +39,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TimeZone;
@@ -1201,6 +1204,61 @@ public class TestCSVLoader {
         test_Interface(myOptions, myData, invalidLineCnt, validLineCnt );
     }
 
+    @Test
+    public void testParallelParsers() throws Exception
+    {
+        String []myOptions = {
+                "-f" + path_csv,
+                "--reportdir=" + reportDir,
+                "--maxerrors=50",
+                "--user=",
+                "--password=",
+                "--port=",
+                "--separator=,",
+                "--quotechar=\"",
+                "--skip=1",
+                "--escape=\\",
+                "--parsers=4",
+                "--header",
+                "BlAh"
+        };
+        // Rows with line breaks and escaped quotes inside quotes, and some rows that don't convert
+        List<String> myData = new ArrayList<String>();
+        List<Integer> invalidLines = new ArrayList<Integer>();
+        myData.add("clm_integer,clm_tinyint,clm_smallint,clm_bigint,clm_string,clm_decimal,clm_float,clm_timestamp,clm_point,clm_geography");
+        int line = 1;
+        for (int i = 0; i < 200; i++) {
+            String string = (i % 10 == 3) ? "\"multi\nline " + i + "\"" : (i % 10 == 5) ? "\"a \"\"quote\"\" " + i + "\"" : "row " + i;
+            String tinyint = (i % 50 == 7) ? "abc" : "1";
+            myData.add(i + "," + tinyint + ",2," + (i * 1000) + "," + string + ",1.10,1.11,,,");
+            line += (i % 10 == 3) ? 2 : 1;
+            if (i % 50 == 7) {
+                invalidLines.add(line);
+            }
+        }
+        long minChunkBytes = CSVFileSplitter.MIN_CHUNK_BYTES;
+        CSVFileSplitter.MIN_CHUNK_BYTES = 256;
+        try {
+            // The skipped line count includes the header, so row 0 is skipped
+            test_Interface(myOptions, myData.toArray(new String[0]), invalidLines.size(), 199 - invalidLines.size());
+        } finally {
+            CSVFileSplitter.MIN_CHUNK_BYTES = minChunkBytes;
+        }
+
+        VoltTable rows = client.callProcedure("@AdHoc",
+                "SELECT clm_integer, clm_string FROM BLAH WHERE clm_integer IN (0, 3, 5) ORDER BY clm_integer;").getResults()[0];
+        assertTrue(rows.advanceRow());
+        assertEquals("multi\nline 3", rows.getString(1));
+        assertTrue(rows.advanceRow());
+        assertEquals("a \"quote\" 5", rows.getString(1));
+
+        // Errors are reported with the line numbers of the whole file
+        String log = new String(Files.readAllBytes(Paths.get(CSVLoader.pathLogfile)), StandardCharsets.UTF_8);
+        for (int invalidLine : invalidLines) {
+            assertTrue(log.contains("Invalid input on line " + invalidLine + "."));
+        }
+    }
+
     @Test
     public void testHeaderNULL() throws Exception
     {
@@ -24,8 +24,14 @@
 package org.voltdb.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 
 public class TestCompressionService extends TestCase {
@@ -46,4 +52,70 @@ public class TestCompressionService extends TestCase {
 
         assertEquals(someText, result);
     }
+
+    public void testEveryCodecRoundTrips() throws IOException {
+        Random r = new Random(42);
+        for (int size : new int[] { 1, 100, 1024 * 64, 1024 * 1024 * 2 }) {
+            BBContainer input = DBBPool.allocateDirect(size);
+            // Half repetitive and half random so there is something to compress
+            for (int ii = 0; ii < size; ii++) {
+                input.b().put((byte)(ii < size / 2 ? ii % 7 : r.nextInt()));
+            }
+            input.b().flip();
+            for (CompressionCodec codec : CompressionCodec.values()) {
+                assertEquals(codec, CompressionCodec.fromId(codec.id()));
+                BBContainer compressed = DBBPool.allocateDirect(codec.maxCompressedLength(size) + 8);
+                BBContainer output = DBBPool.allocateDirect(size + 8);
+                try {
+                    // The output starts at its position, which stays put, and the input isn't consumed
+                    compressed.b().position(8);
+                    final int compressedLength = codec.compress(input.b(), compressed.b());
+                    assertEquals(8, compressed.b().position());
+                    assertEquals(8 + compressedLength, compressed.b().limit());
+                    assertEquals(0, input.b().position());
+                    assertTrue(compressedLength <= CompressionCodec.maxCompressedLengthOfAny(size));
+
+                    assertEquals(size, codec.uncompressedLength(compressed.b()));
+                    output.b().position(8);
+                    assertEquals(size, codec.uncompress(compressed.b(), output.b()));
+                    assertEquals(8, output.b().position());
+                    assertEquals(input.b(), output.b());
+                } finally {
+                    compressed.discard();
+                    output.discard();
+                }
+            }
+            input.discard();
+        }
+    }
+
+    public void testCorruptBlockFails() throws IOException {
+        BBContainer input = DBBPool.allocateDirect(1024);
+        BBContainer compressed = DBBPool.allocateDirect(CompressionCodec.maxCompressedLengthOfAny(1024));
+        BBContainer output = DBBPool.allocateDirect(1024);
+        try {
+            for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.LZ4, CompressionCodec.DEFLATE }) {
+                input.b().clear();
+                compressed.b().clear();
+                output.b().clear();
+                codec.compress(input.b(), compressed.b());
+                ByteBuffer truncated = compressed.b().duplicate();
+                truncated.limit(truncated.limit() - 2);
+                try {
+                    codec.uncompress(truncated, output.b());
+                    fail("Expected a truncated " + codec + " block to fail");
+                } catch (IOException expected) {
+                }
+            }
+            try {
+                CompressionCodec.fromId(200);
+                fail("Expected an unknown codec id to fail");
+            } catch (IOException expected) {
+            }
+        } finally {
+            input.discard();
+            compressed.discard();
+            output.discard();
+        }
+    }
 }
@@ -647,6 +647,32 @@ public class TestPersistentBinaryDeque {
         assertTrue(names.first().equals("pbd_nonce.3.pbd"));
     }
 
+    @Test
+    public void testOfferWithEveryCodecThenReopen() throws Exception {
+        System.out.println("Running testOfferWithEveryCodecThenReopen");
+        // Entries compressed by different codecs can share a segment
+        try {
+            for (int ii = 0; ii < 12; ii++) {
+                CompressionCodec codec = CompressionCodec.values()[ii % CompressionCodec.values().length];
+                CompressionService.setCodec(CompressionService.Use.OVERFLOW, codec);
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+            }
+        } finally {
+            CompressionService.setCodec(CompressionService.Use.OVERFLOW, CompressionCodec.SNAPPY);
+        }
+        m_pbd.sync();
+        m_pbd.close();
+
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        for (int ii = 0; ii < 12; ii++) {
+            BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            assertTrue(getFilledBuffer(ii).equals(retval.b()));
+            retval.discard();
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
     @Test
     public void testInvalidDirectory() throws Exception {
         System.out.println("Running testInvalidDirectory");
@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+/**
+ * Runs all of the PersistentBinaryDeque tests against memory mapped segments, plus
+ * a writer and reader running concurrently.
+ */
+public class TestPersistentBinaryDequeMMap extends TestPersistentBinaryDeque {
+
+    private static final String CONCURRENT_NONCE = "pbd_mmap_concurrent";
+    private static final String FAILED_READ_NONCE = "pbd_mmap_failed_read";
+
+    @BeforeClass
+    public static void useMMap() {
+        System.setProperty(PersistentBinaryDeque.USE_MMAP_PROPERTY, "true");
+    }
+
+    @AfterClass
+    public static void resetMMap() {
+        System.clearProperty(PersistentBinaryDeque.USE_MMAP_PROPERTY);
+    }
+
+    private static ByteBuffer getSmallBuffer(int value, boolean direct) {
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(1024) : ByteBuffer.allocate(1024);
+        while (buf.remaining() > 3) {
+            buf.putInt(value);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    @Test
+    public void testConcurrentWriterAndReader() throws Exception {
+        System.out.println("Running testConcurrentWriterAndReader");
+        final int count = 200000;
+        final PersistentBinaryDeque pbd =
+                new PersistentBinaryDeque(CONCURRENT_NONCE, TEST_DIR, new VoltLogger("EXPORT"));
+        final BinaryDequeReader reader = pbd.openForRead("concurrent");
+        final AtomicReference<Throwable> writerError = new AtomicReference<>();
+        try {
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int ii = 0; ii < count; ii++) {
+                            // alternate compressed (direct) and uncompressed (heap) entries
+                            pbd.offer(DBBPool.wrapBB(getSmallBuffer(ii, ii % 2 == 0)));
+                        }
+                    } catch (Throwable t) {
+                        writerError.set(t);
+                    }
+                }
+            };
+            writer.start();
+
+            int next = 0;
+            while (next < count) {
+                BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                if (cont == null) {
+                    assertNull(writerError.get());
+                    Thread.yield();
+                    continue;
+                }
+                try {
+                    assertTrue(getSmallBuffer(next, false).equals(cont.b()));
+                } finally {
+                    cont.discard();
+                }
+                next++;
+            }
+            writer.join();
+            assertNull(writerError.get());
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+            assertEquals(0, reader.getNumObjects());
+        } finally {
+            pbd.closeAndDelete();
+        }
+    }
+
+    @Test
+    public void testFailedReadStillLetsSegmentBeDeleted() throws Exception {
+        System.out.println("Running testFailedReadStillLetsSegmentBeDeleted");
+        final PersistentBinaryDeque pbd =
+                new PersistentBinaryDeque(FAILED_READ_NONCE, TEST_DIR, new VoltLogger("EXPORT"));
+        final BinaryDequeReader reader = pbd.openForRead("failed");
+        try {
+            // Direct buffers are compressed, so reading them asks the factory for a container
+            final int total = 100;
+            for (int ii = 0; ii < total; ii++) {
+                pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+            }
+            assertTrue(getSortedDirectoryListing().contains(FAILED_READ_NONCE + ".0.pbd"));
+
+            try {
+                reader.poll(new BinaryDeque.OutputContainerFactory() {
+                    @Override
+                    public BBContainer getContainer(int minimumSize) {
+                        throw new IllegalStateException("no container for you");
+                    }
+                });
+                fail("Expected the container factory to fail");
+            } catch (IllegalStateException expected) {
+            }
+            for (int ii = 1; ii < total; ii++) {
+                BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                try {
+                    assertEquals(getFilledBuffer(ii), cont.b());
+                } finally {
+                    cont.discard();
+                }
+            }
+            // The entry that failed counts as discarded, so the first segment went away
+            assertFalse(getSortedDirectoryListing().contains(FAILED_READ_NONCE + ".0.pbd"));
+        } finally {
+            pbd.closeAndDelete();
+        }
+    }
+}
@@ -1364,6 +1364,77 @@ public class TestVoltBulkLoader extends TestCase {
         }
     }
 
+    // Many small batches from several threads, with duplicate keys failing some of them,
+    // so that staged batches are reused after both successful and failed requests.
+    public void testConcurrentInsertsReuseBatches() throws Exception {
+        startServer("create table test1 (clm_integer integer not null, clm_string varchar(20), " +
+                "primary key (clm_integer));", false, "test1", "test1");
+
+        final int threadNum = 4;
+        final int rowsPerThread = 2000;
+        final ArrayList<Object> failedRows = new ArrayList<Object>();
+        Client client = ClientFactory.createClient(new ClientConfig());
+        final VoltBulkLoader bulkLoader;
+        try {
+            client.createConnection("localhost");
+            bulkLoader = client.getNewBulkLoader("test1", 10, new BulkLoaderFailureCallBack() {
+                @Override
+                public void failureCallback(Object rowHandle, Object[] fieldList, ClientResponse response) {
+                    synchronized (failedRows) {
+                        failedRows.add(rowHandle);
+                    }
+                }
+            });
+
+            Thread[] threads = new Thread[threadNum];
+            for (int t = 0; t < threadNum; t++) {
+                final int base = t * rowsPerThread;
+                threads[t] = new Thread("loaderThread-" + t) {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < rowsPerThread; i++) {
+                                // Every 100th row repeats the key of the row before it
+                                int key = (i % 100 == 99) ? base + i - 1 : base + i;
+                                bulkLoader.insertRow(base + i, key, "row " + key);
+                            }
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            bulkLoader.drain();
+
+            int duplicates = threadNum * rowsPerThread / 100;
+            assertEquals(threadNum * rowsPerThread, bulkLoader.getCompletedRowCount());
+            assertEquals(0, bulkLoader.getOutstandingRowCount());
+            assertEquals(duplicates, failedRows.size());
+            for (Object rowHandle : failedRows) {
+                assertEquals(99, (Integer) rowHandle % 100);
+            }
+
+            VoltTable result = client.callProcedure("@AdHoc",
+                    "select count(*), sum(clm_integer) from test1 where clm_string = 'row ' || cast(clm_integer as varchar);").getResults()[0];
+            result.advanceRow();
+            assertEquals(threadNum * rowsPerThread - duplicates, result.getLong(0));
+
+            bulkLoader.close();
+        } finally {
+            client.close();
+
+            if (localServer != null) {
+                localServer.shutdown();
+                localServer.join();
+            }
+            localServer = null;
+        }
+    }
+
     static class MyRunnable implements Runnable {
         private VoltBulkLoader loader;
         private Random random;
@@ -152,7 +152,7 @@ def run_readlines(cmd):
     fd.close()
     return result
 
-def run_csvloader(schema, data_file):
+def run_csvloader(schema, data_file, parsers=1):
     rowcount = options.ROW_COUNT
     elapsed_results = []
     parsing_results = []
@@ -163,6 +163,8 @@ def run_csvloader(schema, data_file):
         cmd = "%s --servers=%s" % (os.path.join(home, CSVLOADER), ','.join(options.servers))
         if options.csvoptions:
             cmd += " -o " + ",".join(options.csvoptions)
+        if parsers > 1:
+            cmd += " --parsers=%d" % parsers
         cmd += " %s -f %s" % (schema, data_file)
         if options.VERBOSE:
             print "starting csvloader with command: " + cmd
@@ -198,12 +200,14 @@ def run_csvloader(schema, data_file):
         return (average(pr), std(pr))
 
     avg, stddev = analyze_results(elapsed_results)
-    print "statistics for %s execution time avg: %f stddev: %f rows/sec: %f rows: %d file size: %d tries: %d" %\
-                 (schema, avg, stddev, rowcount/avg, rowcount, os.path.getsize(data_file), options.TRIES)
+    file_size = os.path.getsize(data_file)
+    print "statistics for %s execution time avg: %f stddev: %f rows/sec: %f MB/sec: %f rows: %d file size: %d tries: %d parsers: %d" %\
+                 (schema, avg, stddev, rowcount/avg, file_size/avg/(1024*1024), rowcount, file_size, options.TRIES, parsers)
     if options.statsfile:
         with open(options.statsfile, "a") as sf:
             # report duration in milliseconds for stats collector
-            print >>sf, "%s,%f,%d,0,0,0,0,0,0,0,0,0,0" % (schema, avg*1000.0, rowcount)
+            name = schema if parsers == 1 else "%s_%dparsers" % (schema, parsers)
+            print >>sf, "%s,%f,%d,0,0,0,0,0,0,0,0,0,0" % (name, avg*1000.0, rowcount)
     return (rowcount, avg, stddev)
 
 def get_table_row_count(table_name):
@@ -272,6 +276,12 @@ def parse_cmdline():
                             default=None,
                             help ="comma separated list of options to be passed to the csvloader")
 
+    parser.add_option ("-p", "--parsers",
+                            type = "string",
+                            action = "callback", callback = list_callback,
+                            default=["1"],
+                            help ="comma separated list of csvloader parser thread counts to run each case with")
+
     parser.add_option ("-v", "--verbose",
                             dest = "VERBOSE",
                             action="store_true", default=False,
@@ -425,4 +435,5 @@ for schema in cases:
         sys.exit(1)
 
     data_file = globals()[CASES[schema]](options.REGENERATE)
-    run_csvloader(schema, data_file)
+    for parsers in options.parsers:
+        run_csvloader(schema, data_file, int(parsers))
@@ -80,8 +80,15 @@ function benchmark() {
     PYTHONPATH=$VOLTDB_LIB/python VOLTDB_HOME=$VOLTDB_BIN/.. $PYTHON $APPNAME.py -v --servers=$SERVERS --rows=1000 --tries=1 /tmp/csvbenchmark
 }
 
+# compare csvloader throughput on a larger file as the number of parser threads grows
+function benchmark-parsers() {
+    mkdir -p /tmp/csvbenchmark
+    PYTHONPATH=$VOLTDB_LIB/python VOLTDB_HOME=$VOLTDB_BIN/.. $PYTHON $APPNAME.py -v --servers=$SERVERS --rows=2000000 --tries=3 \
+        --case=narrow_long_noix,generic_noix --parsers=1,2,4,8 /tmp/csvbenchmark
+}
+
 function help() {
-    echo "Usage: ./run.sh {clean|catalog|server|benchmark}"
+    echo "Usage: ./run.sh {clean|catalog|server|benchmark|benchmark-parsers}"
 }
 
 # Run the target passed as the first arg on the command line
@@ -178,7 +178,7 @@ public class CSVParser {
         return null;
     }
 
-    public String[] parseLine(String nextLine) throws IOException {
+    public String[] parseLine(CharSequence nextLine) throws IOException {
         List<Object> list = parseLine(nextLine, false);
         if (list != null) {
             return list.toArray(new String[list.size()]);
@@ -191,14 +191,14 @@ public class CSVParser {
     }
 
     /**
-     * Parses an incoming String and returns an array of elements.
+     * Parses an incoming line and returns an array of elements.
      *
-     * @param nextLine the string to parse
+     * @param nextLine the characters to parse
      * @param multi
      * @return the comma-tokenized list of elements, or null if nextLine is null
      * @throws IOException if bad things happen during the read
      */
-    private List<Object> parseLine(String nextLine, boolean multi) throws IOException {
+    private List<Object> parseLine(CharSequence nextLine, boolean multi) throws IOException {
 
         if (!multi && pending != null) {
             pending = null;
@@ -299,7 +299,7 @@ public class CSVParser {
      * @param i        current index in line
      * @return true if the following character is a quote
      */
-    private boolean isNextCharacterEscapedQuote(String nextLine, boolean inQuotes, int i) {
+    private boolean isNextCharacterEscapedQuote(CharSequence nextLine, boolean inQuotes, int i) {
         return inQuotes  // we are in quotes, therefore there can be escaped quotes in here.
                 && nextLine.length() > (i + 1)  // there is indeed another character to check.
                 && nextLine.charAt(i + 1) == quotechar;
@@ -313,7 +313,7 @@ public class CSVParser {
      * @param i        current index in line
      * @return true if the following character is a quote
      */
-    protected boolean isNextCharacterEscapable(String nextLine, boolean inQuotes, int i) {
+    protected boolean isNextCharacterEscapable(CharSequence nextLine, boolean inQuotes, int i) {
         return inQuotes  // we are in quotes, therefore there can be escaped quotes in here.
                 && nextLine.length() > (i + 1)  // there is indeed another character to check.
                 && (nextLine.charAt(i + 1) == quotechar || nextLine.charAt(i + 1) == this.escape);
@@ -326,7 +326,7 @@ public class CSVParser {
      * @param i
      * @return
      */
-    protected boolean isNullcaseForEscape(String nextLine, boolean inQuotes, int i, String sb) {
+    protected boolean isNullcaseForEscape(CharSequence nextLine, boolean inQuotes, int i, String sb) {
         boolean result = false, hasmet = false;
         for (int k = 0; k < sb.length(); k++) {
             char c = sb.charAt(k);